@@ -0,0 +1,237 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.application.converter.jackson;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.base.GeneratorBase;
+import com.fasterxml.jackson.core.json.JsonWriteContext;
+import org.bson.BsonBinary;
+import org.bson.BsonWriter;
+import org.bson.types.Decimal128;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A Jackson generator that writes straight to a {@link BsonWriter}, so that an object can be serialized into BSON without
+ * first being written as JSON or converted into a {@code Map}. Integers are written as int32 or int64, floating point numbers as doubles,
+ * big decimals (and integers that don't fit in an int64) as decimal128 and binary data as BSON binary. Raw JSON cannot be written.
+ */
+class BsonWriterJsonGenerator extends GeneratorBase {
+    private final BsonWriter writer;
+
+    BsonWriterJsonGenerator(int features, ObjectCodec codec, BsonWriter writer) {
+        super(features, codec);
+        this.writer = writer;
+    }
+
+    @Override
+    public void writeStartArray() throws IOException {
+        _verifyValueWrite("start an array");
+        _writeContext = _writeContext.createChildArrayContext();
+        writer.writeStartArray();
+    }
+
+    @Override
+    public void writeEndArray() throws IOException {
+        if (!_writeContext.inArray()) {
+            _reportError("Current context not Array but " + _writeContext.typeDesc());
+        }
+        _writeContext = _writeContext.clearAndGetParent();
+        writer.writeEndArray();
+    }
+
+    @Override
+    public void writeStartObject() throws IOException {
+        _verifyValueWrite("start an object");
+        _writeContext = _writeContext.createChildObjectContext();
+        writer.writeStartDocument();
+    }
+
+    @Override
+    public void writeEndObject() throws IOException {
+        if (!_writeContext.inObject()) {
+            _reportError("Current context not Object but " + _writeContext.typeDesc());
+        }
+        _writeContext = _writeContext.clearAndGetParent();
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public void writeFieldName(String name) throws IOException {
+        if (_writeContext.writeFieldName(name) == JsonWriteContext.STATUS_EXPECT_VALUE) {
+            _reportError("Can not write a field name, expecting a value");
+        }
+        writer.writeName(name);
+    }
+
+    @Override
+    public void writeString(String text) throws IOException {
+        if (text == null) {
+            writeNull();
+            return;
+        }
+        _verifyValueWrite("write a string");
+        writer.writeString(text);
+    }
+
+    @Override
+    public void writeString(char[] text, int offset, int len) throws IOException {
+        writeString(new String(text, offset, len));
+    }
+
+    @Override
+    public void writeRawUTF8String(byte[] text, int offset, int length) throws IOException {
+        writeString(new String(text, offset, length, UTF_8));
+    }
+
+    @Override
+    public void writeUTF8String(byte[] text, int offset, int length) throws IOException {
+        writeString(new String(text, offset, length, UTF_8));
+    }
+
+    @Override
+    public void writeRaw(String text) {
+        _reportUnsupportedOperation();
+    }
+
+    @Override
+    public void writeRaw(String text, int offset, int len) {
+        _reportUnsupportedOperation();
+    }
+
+    @Override
+    public void writeRaw(char[] text, int offset, int len) {
+        _reportUnsupportedOperation();
+    }
+
+    @Override
+    public void writeRaw(char c) {
+        _reportUnsupportedOperation();
+    }
+
+    @Override
+    public void writeBinary(Base64Variant bv, byte[] data, int offset, int len) throws IOException {
+        if (data == null) {
+            writeNull();
+            return;
+        }
+        _verifyValueWrite("write a binary value");
+        byte[] bytes = new byte[len];
+        System.arraycopy(data, offset, bytes, 0, len);
+        writer.writeBinaryData(new BsonBinary(bytes));
+    }
+
+    @Override
+    public void writeNumber(int v) throws IOException {
+        _verifyValueWrite("write a number");
+        writer.writeInt32(v);
+    }
+
+    @Override
+    public void writeNumber(long v) throws IOException {
+        _verifyValueWrite("write a number");
+        writer.writeInt64(v);
+    }
+
+    @Override
+    public void writeNumber(BigInteger v) throws IOException {
+        if (v == null) {
+            writeNull();
+        } else if (v.bitLength() < Long.SIZE) {
+            writeNumber(v.longValue());
+        } else {
+            writeNumber(new BigDecimal(v));
+        }
+    }
+
+    @Override
+    public void writeNumber(double v) throws IOException {
+        _verifyValueWrite("write a number");
+        writer.writeDouble(v);
+    }
+
+    @Override
+    public void writeNumber(float v) throws IOException {
+        writeNumber((double) v);
+    }
+
+    @Override
+    public void writeNumber(BigDecimal v) throws IOException {
+        if (v == null) {
+            writeNull();
+            return;
+        }
+        _verifyValueWrite("write a number");
+        try {
+            writer.writeDecimal128(new Decimal128(v));
+        } catch (NumberFormatException e) {
+            // Not representable as a decimal128 without rounding
+            writer.writeDouble(v.doubleValue());
+        }
+    }
+
+    @Override
+    public void writeNumber(String encodedValue) throws IOException {
+        if (encodedValue == null) {
+            writeNull();
+            return;
+        }
+        try {
+            writeNumber(Long.parseLong(encodedValue));
+        } catch (NumberFormatException e) {
+            try {
+                writeNumber(new BigDecimal(encodedValue));
+            } catch (NumberFormatException e2) {
+                // For example "NaN"
+                writeString(encodedValue);
+            }
+        }
+    }
+
+    @Override
+    public void writeBoolean(boolean state) throws IOException {
+        _verifyValueWrite("write a boolean value");
+        writer.writeBoolean(state);
+    }
+
+    @Override
+    public void writeNull() throws IOException {
+        _verifyValueWrite("write a null");
+        writer.writeNull();
+    }
+
+    @Override
+    public void flush() {
+        writer.flush();
+    }
+
+    @Override
+    protected void _releaseBuffers() {
+    }
+
+    @Override
+    protected void _verifyValueWrite(String typeMsg) throws IOException {
+        if (_writeContext.writeValue() == JsonWriteContext.STATUS_EXPECT_NAME) {
+            _reportError("Can not " + typeMsg + ", expecting field name");
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.application.converter.jackson;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.bson.*;
+import org.bson.io.BasicOutputBuffer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Serializes objects into BSON and deserializes objects from BSON using Jackson, without going through JSON or a generic {@code Map} representation.
+ * This class must only be loaded if {@code org.mongodb:bson} is available on the classpath.
+ */
+class JacksonBsonBridge {
+
+    private JacksonBsonBridge() {
+    }
+
+    static boolean isBsonDocument(Object value) {
+        return value instanceof BsonDocument;
+    }
+
+    /**
+     * Serialize the {@code value}, which must be serialized as a JSON object by the {@code objectMapper}, into a {@link RawBsonDocument}.
+     */
+    static RawBsonDocument serialize(ObjectMapper objectMapper, Object value) {
+        BasicOutputBuffer outputBuffer = new BasicOutputBuffer();
+        try (BsonBinaryWriter bsonWriter = new BsonBinaryWriter(outputBuffer);
+             JsonGenerator generator = new BsonWriterJsonGenerator(JsonGenerator.Feature.collectDefaults(), objectMapper, bsonWriter)) {
+            objectMapper.writeValue(generator, value);
+        } catch (BsonInvalidOperationException e) {
+            throw new IllegalArgumentException(value.getClass().getName() + " must be serialized to a JSON object in order to be represented as BSON", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new RawBsonDocument(outputBuffer.getInternalBuffer(), 0, outputBuffer.getPosition());
+    }
+
+    /**
+     * Deserialize the {@code bsonDocument} into an instance of {@code type}. The BSON values are fed to Jackson as tokens, i.e. the document is not
+     * converted into a {@code Map} or JSON first.
+     */
+    static <T> T deserialize(ObjectMapper objectMapper, Object bsonDocument, Class<T> type) {
+        BsonDocument document = (BsonDocument) bsonDocument;
+        TokenBuffer tokenBuffer = new TokenBuffer(objectMapper, false);
+        try (BsonReader reader = document instanceof RawBsonDocument ? ((RawBsonDocument) document).asBsonReader() : new BsonDocumentReader(document)) {
+            reader.readBsonType();
+            copyValue(reader, tokenBuffer);
+            return objectMapper.readValue(tokenBuffer.asParser(objectMapper), type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void copyValue(BsonReader reader, JsonGenerator generator) throws IOException {
+        switch (reader.getCurrentBsonType()) {
+            case DOCUMENT:
+                reader.readStartDocument();
+                generator.writeStartObject();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    generator.writeFieldName(reader.readName());
+                    copyValue(reader, generator);
+                }
+                reader.readEndDocument();
+                generator.writeEndObject();
+                break;
+            case ARRAY:
+                reader.readStartArray();
+                generator.writeStartArray();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    copyValue(reader, generator);
+                }
+                reader.readEndArray();
+                generator.writeEndArray();
+                break;
+            case STRING:
+                generator.writeString(reader.readString());
+                break;
+            case INT32:
+                generator.writeNumber(reader.readInt32());
+                break;
+            case INT64:
+                generator.writeNumber(reader.readInt64());
+                break;
+            case DOUBLE:
+                generator.writeNumber(reader.readDouble());
+                break;
+            case DECIMAL128:
+                generator.writeNumber(reader.readDecimal128().bigDecimalValue());
+                break;
+            case BOOLEAN:
+                generator.writeBoolean(reader.readBoolean());
+                break;
+            case DATE_TIME:
+                // Same as a java.util.Date that is serialized by Jackson using the default settings
+                generator.writeNumber(reader.readDateTime());
+                break;
+            case BINARY:
+                generator.writeBinary(reader.readBinaryData().getData());
+                break;
+            case OBJECT_ID:
+                generator.writeString(reader.readObjectId().toHexString());
+                break;
+            case SYMBOL:
+                generator.writeString(reader.readSymbol());
+                break;
+            case NULL:
+                reader.readNull();
+                generator.writeNull();
+                break;
+            case UNDEFINED:
+                reader.readUndefined();
+                generator.writeNull();
+                break;
+            default:
+                throw new IllegalArgumentException("BSON type " + reader.getCurrentBsonType() + " cannot be deserialized by Jackson");
+        }
+    }
+}
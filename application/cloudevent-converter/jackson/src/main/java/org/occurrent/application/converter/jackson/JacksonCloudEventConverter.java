@@ -40,11 +40,17 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * An {@link CloudEventConverter} that uses a Jackson {@link ObjectMapper} to serialize a domain event to JSON (content type {@value #DEFAULT_CONTENT_TYPE}) that is used as data in a {@link CloudEvent}.
+ * <p>
+ * If {@code org.mongodb:bson} is available on the classpath, cloud events whose data is a {@code org.bson.BsonDocument} (such as the cloud events
+ * created by this converter when {@link Builder#bsonData(boolean)} is enabled, or read from a MongoDB event store with {@code rawBsonData} enabled) are deserialized straight from BSON. Enable {@link Builder#bsonData(boolean)} to also serialize domain events
+ * straight into BSON when the event store is MongoDB.
+ * </p>
  *
  * @param <T> The type of your domain event(s) to convert
  */
 public class JacksonCloudEventConverter<T> implements CloudEventConverter<T> {
     private static final String DEFAULT_CONTENT_TYPE = "application/json";
+    private static final boolean BSON_AVAILABLE = isClassPresent("org.bson.BsonDocument");
 
     private final ObjectMapper objectMapper;
     private final URI cloudEventSource;
@@ -53,6 +59,7 @@ public class JacksonCloudEventConverter<T> implements CloudEventConverter<T> {
     private final Function<T, OffsetDateTime> timeMapper;
     private final Function<T, String> subjectMapper;
     private final String contentType;
+    private final boolean bsonData;
 
     /**
      * Create a new instance of the {@link JacksonCloudEventConverter} that does the following:
@@ -72,16 +79,19 @@ public class JacksonCloudEventConverter<T> implements CloudEventConverter<T> {
      * @see Builder The Builder for more advanced configuration
      */
     public JacksonCloudEventConverter(ObjectMapper objectMapper, URI cloudEventSource) {
-        this(objectMapper, cloudEventSource, defaultIdMapperFunction(), defaultTypeMapper(), defaultTimeMapperFunction(), defaultSubjectMapperFunction(), DEFAULT_CONTENT_TYPE);
+        this(objectMapper, cloudEventSource, defaultIdMapperFunction(), defaultTypeMapper(), defaultTimeMapperFunction(), defaultSubjectMapperFunction(), DEFAULT_CONTENT_TYPE, false);
     }
 
-    private JacksonCloudEventConverter(ObjectMapper objectMapper, URI cloudEventSource, Function<T, String> idMapper, CloudEventTypeMapper<T> cloudEventTypeMapper, Function<T, OffsetDateTime> timeMapper, Function<T, String> subjectMapper, String contentType) {
+    private JacksonCloudEventConverter(ObjectMapper objectMapper, URI cloudEventSource, Function<T, String> idMapper, CloudEventTypeMapper<T> cloudEventTypeMapper, Function<T, OffsetDateTime> timeMapper, Function<T, String> subjectMapper, String contentType, boolean bsonData) {
         requireNonNull(objectMapper, ObjectMapper.class.getSimpleName() + " cannot be null");
         requireNonNull(cloudEventSource, "cloudEventSource cannot be null");
         requireNonNull(idMapper, "idMapper cannot be null");
         requireNonNull(cloudEventTypeMapper, CloudEventTypeMapper.class.getSimpleName() + " cannot be null");
         requireNonNull(timeMapper, "timeMapper cannot be null");
         requireNonNull(subjectMapper, "subjectMapper cannot be null");
+        if (bsonData && !BSON_AVAILABLE) {
+            throw new IllegalArgumentException("Serializing domain events to BSON requires org.mongodb:bson to be available on the classpath");
+        }
         this.objectMapper = objectMapper;
         this.cloudEventSource = cloudEventSource;
         this.idMapper = idMapper;
@@ -89,6 +99,7 @@ public class JacksonCloudEventConverter<T> implements CloudEventConverter<T> {
         this.subjectMapper = subjectMapper;
         this.contentType = contentType;
         this.cloudEventTypeMapper = cloudEventTypeMapper;
+        this.bsonData = bsonData;
     }
 
     /**
@@ -100,9 +111,14 @@ public class JacksonCloudEventConverter<T> implements CloudEventConverter<T> {
     @Override
     public CloudEvent toCloudEvent(T domainEvent) {
         requireNonNull(domainEvent, "Domain event cannot be null");
-        // @formatter:off
-        PojoCloudEventData<Map<String, Object>> cloudEventData = PojoCloudEventData.wrap(objectMapper.convertValue(domainEvent, new TypeReference<Map<String, Object>>() {}), objectMapper::writeValueAsBytes);
-        // @formatter:on
+        final CloudEventData cloudEventData;
+        if (bsonData) {
+            cloudEventData = PojoCloudEventData.wrap(JacksonBsonBridge.serialize(objectMapper, domainEvent), __ -> objectMapper.writeValueAsBytes(domainEvent));
+        } else {
+            // @formatter:off
+            cloudEventData = PojoCloudEventData.wrap(objectMapper.convertValue(domainEvent, new TypeReference<Map<String, Object>>() {}), objectMapper::writeValueAsBytes);
+            // @formatter:on
+        }
         return CloudEventBuilder.v1()
                 .withId(idMapper.apply(domainEvent))
                 .withSource(cloudEventSource)
@@ -133,7 +149,9 @@ public class JacksonCloudEventConverter<T> implements CloudEventConverter<T> {
         }
 
         final T domainEvent;
-        if (data instanceof PojoCloudEventData && ((PojoCloudEventData<Object>) data).getValue() instanceof Map) {
+        if (BSON_AVAILABLE && data instanceof PojoCloudEventData && JacksonBsonBridge.isBsonDocument(((PojoCloudEventData<?>) data).getValue())) {
+            domainEvent = JacksonBsonBridge.deserialize(objectMapper, ((PojoCloudEventData<?>) data).getValue(), domainEventType);
+        } else if (data instanceof PojoCloudEventData && ((PojoCloudEventData<Object>) data).getValue() instanceof Map) {
             Map<String, Object> value = (Map<String, Object>) ((PojoCloudEventData<?>) data).getValue();
             domainEvent = objectMapper.convertValue(value, domainEventType);
         } else {
@@ -160,6 +178,7 @@ public class JacksonCloudEventConverter<T> implements CloudEventConverter<T> {
         private CloudEventTypeMapper<T> cloudEventTypeMapper = defaultTypeMapper();
         private Function<T, OffsetDateTime> timeMapper = defaultTimeMapperFunction();
         private Function<T, String> subjectMapper = defaultSubjectMapperFunction();
+        private boolean bsonData = false;
 
         public Builder(ObjectMapper objectMapper, URI cloudEventSource) {
             this.objectMapper = objectMapper;
@@ -206,11 +225,21 @@ public class JacksonCloudEventConverter<T> implements CloudEventConverter<T> {
             return this;
         }
 
+        /**
+         * @param bsonData {@code true} to serialize the domain event straight into a {@code org.bson.RawBsonDocument} that is used as cloud event data, instead of
+         *                 converting it into a {@code Map}. This avoids the intermediate {@code Map} when the cloud events are written to MongoDB, but requires
+         *                 {@code org.mongodb:bson} on the classpath and that the domain event is serialized as a JSON object. By default, {@code false} is used.
+         */
+        public Builder<T> bsonData(boolean bsonData) {
+            this.bsonData = bsonData;
+            return this;
+        }
+
         /**
          * @return A {@link JacksonCloudEventConverter} instance with the configured settings
          */
         public JacksonCloudEventConverter<T> build() {
-            return new JacksonCloudEventConverter<>(objectMapper, cloudEventSource, idMapper, cloudEventTypeMapper, timeMapper, subjectMapper, contentType);
+            return new JacksonCloudEventConverter<>(objectMapper, cloudEventSource, idMapper, cloudEventTypeMapper, timeMapper, subjectMapper, contentType, bsonData);
         }
     }
 
@@ -230,4 +259,13 @@ public class JacksonCloudEventConverter<T> implements CloudEventConverter<T> {
     private static <T> Function<T, String> defaultSubjectMapperFunction() {
         return __ -> null;
     }
+
+    private static boolean isClassPresent(String className) {
+        try {
+            Class.forName(className, false, JacksonCloudEventConverter.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
 }
\ No newline at end of file
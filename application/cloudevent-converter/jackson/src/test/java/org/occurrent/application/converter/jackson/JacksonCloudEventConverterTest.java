@@ -20,6 +20,11 @@ package org.occurrent.application.converter.jackson;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.cloudevents.CloudEvent;
 import io.cloudevents.core.builder.CloudEventBuilder;
+import io.cloudevents.core.data.PojoCloudEventData;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.RawBsonDocument;
 import org.junit.jupiter.api.Test;
 import org.occurrent.application.converter.typemapper.ReflectionCloudEventTypeMapper;
 import org.occurrent.domain.DomainEvent;
@@ -125,4 +130,64 @@ public class JacksonCloudEventConverterTest {
                 () -> assertThat(nameDefined.getTimestamp()).isEqualTo(new Date(LocalDateTime.of(2021, 9, 24, 11, 21, 31, 299_000_000).atZone(UTC).toInstant().toEpochMilli()))
         );
     }
+
+    @SuppressWarnings("ConstantConditions")
+    @Test
+    void converts_domain_event_to_cloud_event_with_bson_data_when_bson_data_is_enabled() throws Exception {
+        // Given
+        ObjectMapper objectMapper = new ObjectMapper();
+        JacksonCloudEventConverter<DomainEvent> cloudEventConverter = new JacksonCloudEventConverter.Builder<DomainEvent>(objectMapper, CLOUD_EVENT_SOURCE).bsonData(true).build();
+        NameDefined domainEvent = new NameDefined(UUID.randomUUID().toString(), new Date(), "name");
+
+        // When
+        CloudEvent cloudEvent = cloudEventConverter.toCloudEvent(domainEvent);
+
+        // Then
+        Object data = ((PojoCloudEventData<?>) cloudEvent.getData()).getValue();
+        assertAll(
+                () -> assertThat(data).isInstanceOf(RawBsonDocument.class),
+                () -> assertThat(((RawBsonDocument) data).getString("eventId").getValue()).isEqualTo(domainEvent.getEventId()),
+                () -> assertThat(((RawBsonDocument) data).getInt64("timestamp").getValue()).isEqualTo(domainEvent.getTimestamp().getTime()),
+                () -> assertThat(((RawBsonDocument) data).getString("name").getValue()).isEqualTo("name"),
+                () -> assertThat(new String(cloudEvent.getData().toBytes(), UTF_8)).isEqualTo(objectMapper.writeValueAsString(domainEvent))
+        );
+    }
+
+    @Test
+    void converts_cloud_event_with_bson_data_back_to_domain_event() {
+        // Given
+        ObjectMapper objectMapper = new ObjectMapper();
+        JacksonCloudEventConverter<DomainEvent> cloudEventConverter = new JacksonCloudEventConverter.Builder<DomainEvent>(objectMapper, CLOUD_EVENT_SOURCE).bsonData(true).build();
+        NameDefined domainEvent = new NameDefined(UUID.randomUUID().toString(), new Date(), "name");
+        CloudEvent cloudEvent = cloudEventConverter.toCloudEvent(domainEvent);
+
+        // When
+        DomainEvent converted = cloudEventConverter.toDomainEvent(cloudEvent);
+
+        // Then
+        assertThat(converted).isEqualTo(domainEvent);
+    }
+
+    @Test
+    void converts_cloud_event_with_bson_document_data_to_domain_event_when_bson_data_is_not_enabled() {
+        // Given
+        ObjectMapper objectMapper = new ObjectMapper();
+        JacksonCloudEventConverter<DomainEvent> cloudEventConverter = new JacksonCloudEventConverter<>(objectMapper, CLOUD_EVENT_SOURCE);
+        BsonDocument data = new BsonDocument("eventId", new BsonString("6ec13db8-b216-41cc-9e61-d4553cfc5476"))
+                .append("timestamp", new BsonDateTime(1632482491299L))
+                .append("name", new BsonString("name"));
+
+        CloudEvent cloudEvent = CloudEventBuilder.v1()
+                .withId(UUID.randomUUID().toString())
+                .withSource(CLOUD_EVENT_SOURCE)
+                .withType(NameDefined.class.getName())
+                .withData(PojoCloudEventData.wrap(data, document -> document.toJson().getBytes(UTF_8)))
+                .build();
+
+        // When
+        DomainEvent domainEvent = cloudEventConverter.toDomainEvent(cloudEvent);
+
+        // Then
+        assertThat(domainEvent).isEqualTo(new NameDefined("6ec13db8-b216-41cc-9e61-d4553cfc5476", new Date(1632482491299L), "name"));
+    }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.application.service.blocking.generic;
+
+import io.cloudevents.CloudEvent;
+import org.occurrent.application.converter.CloudEventConverter;
+import org.occurrent.application.snapshot.Snapshot;
+import org.occurrent.application.snapshot.SnapshotPolicy;
+import org.occurrent.application.snapshot.SnapshotStore;
+import org.occurrent.eventstore.api.WriteConditionNotFulfilledException;
+import org.occurrent.eventstore.api.WriteResult;
+import org.occurrent.eventstore.api.blocking.EventStore;
+import org.occurrent.eventstore.api.blocking.EventStream;
+import org.occurrent.retry.RetryStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An application service that, instead of reading all events in a stream on each command, reads the latest {@link Snapshot} of the stream from a
+ * {@link SnapshotStore} and only the events that were written after it. The {@code stateFunction} is used to apply these events to the state of the
+ * snapshot, and the resulting state is passed to the domain function. After the new events have been written, a new snapshot is saved if the
+ * {@link SnapshotPolicy} says so.
+ * <p>
+ * The events after the snapshot are read using {@code EventStore.readAfterVersion(streamId, snapshot.getVersion())}. If the stream has a lower version than the
+ * snapshot, for example because the stream has been deleted and recreated, the snapshot is deleted and the state is recreated from all events in the stream.
+ * </p>
+ *
+ * @param <T> The type of the event to store. Normally this would be your custom "DomainEvent" class, but it could also be {@link CloudEvent}.
+ * @param <S> The type of the state that is snapshotted, for example your aggregate.
+ */
+public class SnapshottingApplicationService<T, S> {
+    private static final Logger log = LoggerFactory.getLogger(SnapshottingApplicationService.class);
+
+    private final EventStore eventStore;
+    private final CloudEventConverter<T> cloudEventConverter;
+    private final SnapshotStore<S> snapshotStore;
+    private final SnapshotPolicy snapshotPolicy;
+    private final BiFunction<S, Stream<T>, S> stateFunction;
+    private final RetryStrategy retryStrategy;
+    private final Clock clock;
+
+    /**
+     * Create a {@code SnapshottingApplicationService} that uses the {@link GenericApplicationService#defaultRetryStrategy()}.
+     *
+     * @param eventStore          The event store to use
+     * @param cloudEventConverter The cloud event converter
+     * @param snapshotStore       The snapshot store to use
+     * @param snapshotPolicy      Decides when to take a new snapshot
+     * @param stateFunction       A <i>pure</i> function that applies events to a state and returns the new state. The state is {@code null} if the stream has no snapshot.
+     * @see #SnapshottingApplicationService(EventStore, CloudEventConverter, SnapshotStore, SnapshotPolicy, BiFunction, RetryStrategy, Clock)
+     */
+    public SnapshottingApplicationService(EventStore eventStore, CloudEventConverter<T> cloudEventConverter, SnapshotStore<S> snapshotStore, SnapshotPolicy snapshotPolicy,
+                                          BiFunction<S, Stream<T>, S> stateFunction) {
+        this(eventStore, cloudEventConverter, snapshotStore, snapshotPolicy, stateFunction, GenericApplicationService.defaultRetryStrategy(), Clock.systemUTC());
+    }
+
+    /**
+     * Create a {@code SnapshottingApplicationService}
+     *
+     * @param eventStore          The event store to use
+     * @param cloudEventConverter The cloud event converter
+     * @param snapshotStore       The snapshot store to use
+     * @param snapshotPolicy      Decides when to take a new snapshot
+     * @param stateFunction       A <i>pure</i> function that applies events to a state and returns the new state. The state is {@code null} if the stream has no snapshot.
+     * @param retryStrategy       The retry strategy to use if, for example, a {@link WriteConditionNotFulfilledException} is thrown.
+     * @param clock               The clock that is used for {@link Snapshot#getCreatedAt()}
+     */
+    public SnapshottingApplicationService(EventStore eventStore, CloudEventConverter<T> cloudEventConverter, SnapshotStore<S> snapshotStore, SnapshotPolicy snapshotPolicy,
+                                          BiFunction<S, Stream<T>, S> stateFunction, RetryStrategy retryStrategy, Clock clock) {
+        if (eventStore == null) throw new IllegalArgumentException(EventStore.class.getSimpleName() + " cannot be null");
+        if (cloudEventConverter == null) throw new IllegalArgumentException(CloudEventConverter.class.getSimpleName() + " cannot be null");
+        if (snapshotStore == null) throw new IllegalArgumentException(SnapshotStore.class.getSimpleName() + " cannot be null");
+        if (snapshotPolicy == null) throw new IllegalArgumentException(SnapshotPolicy.class.getSimpleName() + " cannot be null");
+        if (stateFunction == null) throw new IllegalArgumentException("State function cannot be null");
+        if (retryStrategy == null) throw new IllegalArgumentException(RetryStrategy.class.getSimpleName() + " cannot be null");
+        if (clock == null) throw new IllegalArgumentException(Clock.class.getSimpleName() + " cannot be null");
+        this.eventStore = eventStore;
+        this.cloudEventConverter = cloudEventConverter;
+        this.snapshotStore = snapshotStore;
+        this.snapshotPolicy = snapshotPolicy;
+        this.stateFunction = stateFunction;
+        this.retryStrategy = retryStrategy;
+        this.clock = clock;
+    }
+
+    /**
+     * Recreate the current state of the stream from the latest snapshot and the events written after it, pass it to the {@code functionThatCallsDomainModel}
+     * and write the returned events to the event store. The {@code sideEffect} is executed <i>after</i> the events have been written to the event store.
+     *
+     * @param streamId                     The id of the stream to load the state from and also write the events returned from {@code functionThatCallsDomainModel} to.
+     * @param functionThatCallsDomainModel A <i>pure</i> function that calls the domain model with the current state (which is {@code null} if the stream is empty).
+     * @param sideEffect                   Side-effects that are executed <i>after</i> the events have been written to the event store.
+     * @return The {@link WriteResult}
+     */
+    public WriteResult execute(String streamId, Function<S, Stream<T>> functionThatCallsDomainModel, Consumer<Stream<T>> sideEffect) {
+        Objects.requireNonNull(streamId, "Stream id cannot be null");
+        Objects.requireNonNull(functionThatCallsDomainModel, "Function that calls domain model cannot be null");
+
+        ExecutionResult<T, S> result = retryStrategy.execute(() -> {
+            Snapshot<S> snapshot = snapshotStore.read(streamId).orElse(null);
+            // Only read the events that were written after the snapshot
+            EventStream<CloudEvent> eventStream = snapshot == null ? eventStore.read(streamId) : eventStore.readAfterVersion(streamId, snapshot.getVersion());
+            if (snapshot != null && eventStream.version() < snapshot.getVersion()) {
+                // The stream has been deleted (and possibly recreated) after the snapshot was taken. Delete the snapshot since
+                // it would otherwise prevent newer snapshots, with a lower version, from being saved.
+                snapshotStore.delete(streamId);
+                snapshot = null;
+                eventStream = eventStore.read(streamId);
+            }
+
+            S currentState = stateFunction.apply(snapshot == null ? null : snapshot.getState(), cloudEventConverter.toDomainEvents(eventStream.events()));
+            Stream<T> newDomainEvents = functionThatCallsDomainModel.apply(currentState);
+            // The new events are needed both to write them and to calculate the state of the next snapshot
+            List<T> newEvents = newDomainEvents == null ? Collections.emptyList() : newDomainEvents.collect(Collectors.toList());
+
+            WriteResult writeResult = eventStore.write(streamId, eventStream.version(), cloudEventConverter.toCloudEvents(newEvents.stream()));
+            return new ExecutionResult<>(writeResult, newEvents, currentState, snapshot);
+        });
+
+        WriteResult writeResult = result.writeResult;
+        long streamVersion = writeResult.getStreamVersion();
+        Snapshot<S> latestSnapshot = result.snapshot;
+        if (streamVersion > (latestSnapshot == null ? 0 : latestSnapshot.getVersion()) && snapshotPolicy.shouldTakeSnapshot(streamVersion, latestSnapshot)) {
+            S newState = result.newEvents.isEmpty() ? result.state : stateFunction.apply(result.state, result.newEvents.stream());
+            saveSnapshot(new Snapshot<>(streamId, streamVersion, newState, clock.instant()));
+        }
+
+        // Invoke side-effect
+        if (sideEffect != null) {
+            sideEffect.accept(result.newEvents.stream());
+        }
+        return writeResult;
+    }
+
+    /**
+     * Recreate the current state of the stream from the latest snapshot and the events written after it, pass it to the {@code functionThatCallsDomainModel}
+     * and write the returned events to the event store.
+     *
+     * @param streamId                     The id of the stream to load the state from and also write the events returned from {@code functionThatCallsDomainModel} to.
+     * @param functionThatCallsDomainModel A <i>pure</i> function that calls the domain model with the current state (which is {@code null} if the stream is empty).
+     * @return The {@link WriteResult}
+     * @see #execute(String, Function, Consumer)
+     */
+    public WriteResult execute(String streamId, Function<S, Stream<T>> functionThatCallsDomainModel) {
+        return execute(streamId, functionThatCallsDomainModel, null);
+    }
+
+    private void saveSnapshot(Snapshot<S> snapshot) {
+        try {
+            snapshotStore.save(snapshot);
+        } catch (RuntimeException e) {
+            // The events have already been written and the snapshot is only an optimization, the next command will simply read more events
+            log.warn("Failed to save snapshot of stream {} at version {}, the next command will read the events from the previous snapshot.", snapshot.getStreamId(), snapshot.getVersion(), e);
+        }
+    }
+
+    private static class ExecutionResult<T, S> {
+        private final WriteResult writeResult;
+        private final List<T> newEvents;
+        private final S state;
+        private final Snapshot<S> snapshot;
+
+        private ExecutionResult(WriteResult writeResult, List<T> newEvents, S state, Snapshot<S> snapshot) {
+            this.writeResult = writeResult;
+            this.newEvents = newEvents;
+            this.state = state;
+            this.snapshot = snapshot;
+        }
+    }
+}
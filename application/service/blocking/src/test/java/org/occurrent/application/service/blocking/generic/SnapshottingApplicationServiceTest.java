@@ -0,0 +1,160 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.application.service.blocking.generic;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.occurrent.application.converter.CloudEventConverter;
+import org.occurrent.application.converter.generic.GenericCloudEventConverter;
+import org.occurrent.application.snapshot.Snapshot;
+import org.occurrent.application.snapshot.SnapshotPolicy;
+import org.occurrent.application.snapshot.inmemory.InMemorySnapshotStore;
+import org.occurrent.domain.DomainEvent;
+import org.occurrent.domain.DomainEventConverter;
+import org.occurrent.domain.NameDefined;
+import org.occurrent.domain.NameWasChanged;
+import org.occurrent.eventstore.api.WriteResult;
+import org.occurrent.eventstore.inmemory.InMemoryEventStore;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+@DisplayName("snapshotting application service")
+public class SnapshottingApplicationServiceTest {
+    private static final Instant NOW = Instant.parse("2021-03-04T10:00:00Z");
+
+    private InMemoryEventStore eventStore;
+    private InMemorySnapshotStore<String> snapshotStore;
+    private CloudEventConverter<DomainEvent> cloudEventConverter;
+    // The number of events that have been applied to the state by each invocation of the state function
+    private List<Integer> numberOfAppliedEvents;
+
+    @BeforeEach
+    void initialize_application_service() {
+        DomainEventConverter domainEventConverter = new DomainEventConverter(new ObjectMapper());
+        cloudEventConverter = new GenericCloudEventConverter<>(domainEventConverter::convertToDomainEvent, domainEventConverter::convertToCloudEvent);
+        eventStore = new InMemoryEventStore();
+        snapshotStore = new InMemorySnapshotStore<>();
+        numberOfAppliedEvents = new CopyOnWriteArrayList<>();
+    }
+
+    @Test
+    void takes_snapshots_according_to_the_snapshot_policy() {
+        // Given
+        SnapshottingApplicationService<DomainEvent, String> applicationService = newApplicationService(SnapshotPolicy.everyNEvents(2));
+
+        // When
+        WriteResult writeResult = Stream.of("name1", "name2", "name3", "name4", "name5")
+                .map(name -> applicationService.execute("stream", currentName -> defineOrChangeName(currentName, name)))
+                .reduce((__, second) -> second).orElseThrow(IllegalStateException::new);
+
+        // Then
+        assertAll(
+                () -> assertThat(writeResult).isEqualTo(new WriteResult("stream", 5)),
+                () -> assertThat(snapshotStore.read("stream")).hasValue(new Snapshot<>("stream", 4, "name4", NOW))
+        );
+    }
+
+    @Test
+    void only_applies_the_events_written_after_the_latest_snapshot() {
+        // Given
+        SnapshottingApplicationService<DomainEvent, String> applicationService = newApplicationService(SnapshotPolicy.everyNEvents(3));
+        Stream.of("name1", "name2", "name3", "name4").forEach(name -> applicationService.execute("stream", currentName -> defineOrChangeName(currentName, name)));
+        numberOfAppliedEvents.clear();
+        List<String> currentNames = new CopyOnWriteArrayList<>();
+
+        // When
+        applicationService.execute("stream", currentName -> {
+            currentNames.add(currentName);
+            return defineOrChangeName(currentName, "name5");
+        });
+
+        // Then
+        assertAll(
+                () -> assertThat(currentNames).containsExactly("name4"),
+                // Event 4 when recreating the state from the snapshot at version 3
+                () -> assertThat(numberOfAppliedEvents).containsExactly(1),
+                () -> assertThat(eventStore.read("stream").version()).isEqualTo(5)
+        );
+    }
+
+    @Test
+    void ignores_the_snapshot_when_the_stream_has_been_deleted() {
+        // Given
+        SnapshottingApplicationService<DomainEvent, String> applicationService = newApplicationService(SnapshotPolicy.everyNEvents(1));
+        applicationService.execute("stream", currentName -> defineOrChangeName(currentName, "name1"));
+        eventStore.deleteEventStream("stream");
+        List<String> currentNames = new CopyOnWriteArrayList<>();
+
+        // When
+        WriteResult writeResult = applicationService.execute("stream", currentName -> {
+            currentNames.add(currentName);
+            return defineOrChangeName(currentName, "name2");
+        });
+
+        // Then
+        assertAll(
+                () -> assertThat(currentNames).containsNull(),
+                () -> assertThat(writeResult).isEqualTo(new WriteResult("stream", 1)),
+                () -> assertThat(snapshotStore.read("stream")).hasValue(new Snapshot<>("stream", 1, "name2", NOW))
+        );
+    }
+
+    @Test
+    void side_effect_is_invoked_with_the_new_events() {
+        // Given
+        SnapshottingApplicationService<DomainEvent, String> applicationService = newApplicationService(SnapshotPolicy.never());
+        List<DomainEvent> sideEffectEvents = new CopyOnWriteArrayList<>();
+
+        // When
+        applicationService.execute("stream", currentName -> defineOrChangeName(currentName, "name1"), events -> sideEffectEvents.addAll(events.collect(Collectors.toList())));
+
+        // Then
+        assertAll(
+                () -> assertThat(sideEffectEvents).extracting(DomainEvent::getName).containsExactly("name1"),
+                () -> assertThat(snapshotStore.read("stream")).isEmpty()
+        );
+    }
+
+    private SnapshottingApplicationService<DomainEvent, String> newApplicationService(SnapshotPolicy snapshotPolicy) {
+        return new SnapshottingApplicationService<>(eventStore, cloudEventConverter, snapshotStore, snapshotPolicy, (currentName, events) -> {
+            List<DomainEvent> eventList = events.collect(Collectors.toList());
+            numberOfAppliedEvents.add(eventList.size());
+            return eventList.stream().map(DomainEvent::getName).reduce((__, name) -> name).orElse(currentName);
+        }, GenericApplicationService.defaultRetryStrategy(), Clock.fixed(NOW, UTC));
+    }
+
+    private static Stream<DomainEvent> defineOrChangeName(String currentName, String newName) {
+        if (currentName == null) {
+            return Stream.of(new NameDefined(UUID.randomUUID().toString(), LocalDateTime.now(), newName));
+        }
+        return Stream.of(new NameWasChanged(UUID.randomUUID().toString(), LocalDateTime.now(), newName));
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.application.snapshot;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A snapshot of the state of an event stream, i.e. the result of applying all events in the stream up to and including {@code version}.
+ *
+ * @param <S> The type of the state, for example your aggregate or a representation of it.
+ */
+public class Snapshot<S> {
+    private final String streamId;
+    private final long version;
+    private final S state;
+    private final Instant createdAt;
+
+    /**
+     * @param streamId  The id of the stream that the snapshot was created from
+     * @param version   The version of the stream that the snapshot represents, i.e. the stream version of the last event that was applied to the state.
+     *                  This is the same version as returned by {@code EventStream.version()} and {@code WriteResult.getStreamVersion()}.
+     * @param state     The state
+     * @param createdAt When the snapshot was created
+     */
+    public Snapshot(String streamId, long version, S state, Instant createdAt) {
+        requireNonNull(streamId, "Stream id cannot be null");
+        requireNonNull(state, "State cannot be null");
+        requireNonNull(createdAt, "Created at cannot be null");
+        if (version < 1) {
+            throw new IllegalArgumentException("Version must be greater than zero");
+        }
+        this.streamId = streamId;
+        this.version = version;
+        this.state = state;
+        this.createdAt = createdAt;
+    }
+
+    public String getStreamId() {
+        return streamId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public S getState() {
+        return state;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Snapshot)) return false;
+        Snapshot<?> snapshot = (Snapshot<?>) o;
+        return version == snapshot.version && Objects.equals(streamId, snapshot.streamId) && Objects.equals(state, snapshot.state) && Objects.equals(createdAt, snapshot.createdAt);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(streamId, version, state, createdAt);
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", Snapshot.class.getSimpleName() + "[", "]")
+                .add("streamId='" + streamId + "'")
+                .add("version=" + version)
+                .add("state=" + state)
+                .add("createdAt=" + createdAt)
+                .toString();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.application.snapshot;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Decides when a new {@link Snapshot} should be taken of an event stream, given the version of the stream after a write and the latest snapshot (if any).
+ * Use the static factory methods, such as {@link #everyNEvents(long)} or {@link #every(Duration)}, or combine policies using {@link #or(SnapshotPolicy)}
+ * and {@link #and(SnapshotPolicy)}.
+ */
+@FunctionalInterface
+public interface SnapshotPolicy {
+
+    /**
+     * @param streamVersion  The current version of the event stream
+     * @param latestSnapshot The latest snapshot of the event stream, or {@code null} if the stream has no snapshot.
+     * @return {@code true} if a new snapshot should be taken at {@code streamVersion}, {@code false} otherwise.
+     */
+    boolean shouldTakeSnapshot(long streamVersion, Snapshot<?> latestSnapshot);
+
+    /**
+     * Take a snapshot when at least {@code numberOfEvents} events have been written to the stream since the latest snapshot (or since the stream was created).
+     *
+     * @param numberOfEvents The number of events between snapshots
+     * @return A {@link SnapshotPolicy}
+     */
+    static SnapshotPolicy everyNEvents(long numberOfEvents) {
+        if (numberOfEvents < 1) {
+            throw new IllegalArgumentException("Number of events must be greater than zero");
+        }
+        return (streamVersion, latestSnapshot) -> streamVersion - (latestSnapshot == null ? 0 : latestSnapshot.getVersion()) >= numberOfEvents;
+    }
+
+    /**
+     * Take a snapshot when the latest snapshot is older than {@code duration}, or when the stream doesn't have a snapshot.
+     *
+     * @param duration The minimum time between snapshots
+     * @return A {@link SnapshotPolicy}
+     */
+    static SnapshotPolicy every(Duration duration) {
+        return every(duration, Clock.systemUTC());
+    }
+
+    /**
+     * Take a snapshot when the latest snapshot is older than {@code duration}, according to the supplied {@code clock}, or when the stream doesn't have a snapshot.
+     *
+     * @param duration The minimum time between snapshots
+     * @param clock    The clock to use
+     * @return A {@link SnapshotPolicy}
+     */
+    static SnapshotPolicy every(Duration duration, Clock clock) {
+        requireNonNull(duration, "Duration cannot be null");
+        requireNonNull(clock, Clock.class.getSimpleName() + " cannot be null");
+        if (duration.isNegative()) {
+            throw new IllegalArgumentException("Duration cannot be negative");
+        }
+        return (streamVersion, latestSnapshot) -> {
+            if (latestSnapshot == null) {
+                return true;
+            }
+            Instant nextSnapshotTime = latestSnapshot.getCreatedAt().plus(duration);
+            return streamVersion > latestSnapshot.getVersion() && !clock.instant().isBefore(nextSnapshotTime);
+        };
+    }
+
+    /**
+     * @return A {@link SnapshotPolicy} that never takes any snapshots
+     */
+    static SnapshotPolicy never() {
+        return (streamVersion, latestSnapshot) -> false;
+    }
+
+    /**
+     * @param other Another policy
+     * @return A {@link SnapshotPolicy} that takes a snapshot if this policy <i>or</i> the {@code other} policy says so.
+     */
+    default SnapshotPolicy or(SnapshotPolicy other) {
+        requireNonNull(other, SnapshotPolicy.class.getSimpleName() + " cannot be null");
+        return (streamVersion, latestSnapshot) -> shouldTakeSnapshot(streamVersion, latestSnapshot) || other.shouldTakeSnapshot(streamVersion, latestSnapshot);
+    }
+
+    /**
+     * @param other Another policy
+     * @return A {@link SnapshotPolicy} that takes a snapshot if this policy <i>and</i> the {@code other} policy says so.
+     */
+    default SnapshotPolicy and(SnapshotPolicy other) {
+        requireNonNull(other, SnapshotPolicy.class.getSimpleName() + " cannot be null");
+        return (streamVersion, latestSnapshot) -> shouldTakeSnapshot(streamVersion, latestSnapshot) && other.shouldTakeSnapshot(streamVersion, latestSnapshot);
+    }
+}
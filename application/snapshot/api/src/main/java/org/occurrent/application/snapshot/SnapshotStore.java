@@ -0,0 +1,52 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.application.snapshot;
+
+import java.util.Optional;
+
+/**
+ * Stores the latest {@link Snapshot} of event streams so that the state of a stream can be recreated from the snapshot and the events
+ * that were written after it, instead of from all events in the stream. Only the latest snapshot of each stream is kept.
+ *
+ * @param <S> The type of the snapshot state
+ */
+public interface SnapshotStore<S> {
+
+    /**
+     * Read the latest snapshot of a stream
+     *
+     * @param streamId The id of the stream
+     * @return The latest snapshot of the stream, or {@code Optional.empty()} if no snapshot has been saved for the stream.
+     */
+    Optional<Snapshot<S>> read(String streamId);
+
+    /**
+     * Save a snapshot. If a snapshot with the same or a higher version has already been saved for the stream, the existing snapshot is kept
+     * so that concurrent writers never replace a newer snapshot with an older one.
+     *
+     * @param snapshot The snapshot to save
+     */
+    void save(Snapshot<S> snapshot);
+
+    /**
+     * Delete the snapshot of a stream, for example after the stream has been deleted from the event store.
+     *
+     * @param streamId The id of the stream
+     */
+    void delete(String streamId);
+}
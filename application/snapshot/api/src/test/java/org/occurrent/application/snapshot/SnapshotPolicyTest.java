@@ -0,0 +1,98 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.application.snapshot;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+@DisplayName("snapshot policy")
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class SnapshotPolicyTest {
+    private static final Instant NOW = Instant.parse("2021-03-04T10:00:00Z");
+
+    @Nested
+    @DisplayName("every n events")
+    class EveryNEvents {
+
+        @Test
+        void takes_snapshot_when_n_events_have_been_written_since_the_latest_snapshot() {
+            // Given
+            SnapshotPolicy policy = SnapshotPolicy.everyNEvents(10);
+            Snapshot<String> snapshot = new Snapshot<>("stream", 5, "state", NOW);
+
+            // Then
+            assertAll(
+                    () -> assertThat(policy.shouldTakeSnapshot(9, null)).isFalse(),
+                    () -> assertThat(policy.shouldTakeSnapshot(10, null)).isTrue(),
+                    () -> assertThat(policy.shouldTakeSnapshot(14, snapshot)).isFalse(),
+                    () -> assertThat(policy.shouldTakeSnapshot(15, snapshot)).isTrue()
+            );
+        }
+    }
+
+    @Nested
+    @DisplayName("every duration")
+    class Every {
+
+        @Test
+        void takes_snapshot_when_the_latest_snapshot_is_older_than_the_duration() {
+            // Given
+            SnapshotPolicy policy = SnapshotPolicy.every(Duration.ofMinutes(10), Clock.fixed(NOW, UTC));
+
+            // Then
+            assertAll(
+                    () -> assertThat(policy.shouldTakeSnapshot(1, null)).isTrue(),
+                    () -> assertThat(policy.shouldTakeSnapshot(6, new Snapshot<>("stream", 5, "state", NOW.minusSeconds(599)))).isFalse(),
+                    () -> assertThat(policy.shouldTakeSnapshot(6, new Snapshot<>("stream", 5, "state", NOW.minusSeconds(600)))).isTrue(),
+                    () -> assertThat(policy.shouldTakeSnapshot(5, new Snapshot<>("stream", 5, "state", NOW.minusSeconds(600)))).isFalse()
+            );
+        }
+    }
+
+    @Nested
+    @DisplayName("composition")
+    class Composition {
+
+        @Test
+        void policies_can_be_combined_using_and_and_or() {
+            // Given
+            SnapshotPolicy everyTenEvents = SnapshotPolicy.everyNEvents(10);
+            SnapshotPolicy everyMinute = SnapshotPolicy.every(Duration.ofMinutes(1), Clock.fixed(NOW, UTC));
+            Snapshot<String> snapshot = new Snapshot<>("stream", 5, "state", NOW.minusSeconds(120));
+
+            // Then
+            assertAll(
+                    () -> assertThat(everyTenEvents.or(everyMinute).shouldTakeSnapshot(6, snapshot)).isTrue(),
+                    () -> assertThat(everyTenEvents.and(everyMinute).shouldTakeSnapshot(6, snapshot)).isFalse(),
+                    () -> assertThat(everyTenEvents.and(everyMinute).shouldTakeSnapshot(15, snapshot)).isTrue(),
+                    () -> assertThat(SnapshotPolicy.never().or(everyTenEvents).shouldTakeSnapshot(15, snapshot)).isTrue()
+            );
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.application.snapshot.inmemory;
+
+import org.occurrent.application.snapshot.Snapshot;
+import org.occurrent.application.snapshot.SnapshotStore;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link SnapshotStore} that keeps the snapshots in memory. This is mainly useful for testing and/or demo purposes, or as a cache in front of the
+ * event store when the application is only running in a single instance.
+ *
+ * @param <S> The type of the snapshot state
+ */
+public class InMemorySnapshotStore<S> implements SnapshotStore<S> {
+
+    private final ConcurrentMap<String, Snapshot<S>> snapshots = new ConcurrentHashMap<>();
+
+    @Override
+    public Optional<Snapshot<S>> read(String streamId) {
+        requireNonNull(streamId, "Stream id cannot be null");
+        return Optional.ofNullable(snapshots.get(streamId));
+    }
+
+    @Override
+    public void save(Snapshot<S> snapshot) {
+        requireNonNull(snapshot, Snapshot.class.getSimpleName() + " cannot be null");
+        snapshots.merge(snapshot.getStreamId(), snapshot, (existing, newSnapshot) -> newSnapshot.getVersion() > existing.getVersion() ? newSnapshot : existing);
+    }
+
+    @Override
+    public void delete(String streamId) {
+        requireNonNull(streamId, "Stream id cannot be null");
+        snapshots.remove(streamId);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.application.snapshot.inmemory;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Test;
+import org.occurrent.application.snapshot.Snapshot;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("in-memory snapshot store")
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class InMemorySnapshotStoreTest {
+
+    private final InMemorySnapshotStore<String> snapshotStore = new InMemorySnapshotStore<>();
+
+    @Test
+    void read_returns_empty_when_no_snapshot_has_been_saved() {
+        assertThat(snapshotStore.read("stream")).isEmpty();
+    }
+
+    @Test
+    void save_replaces_older_snapshots() {
+        // Given
+        Snapshot<String> snapshot1 = new Snapshot<>("stream", 2, "state1", Instant.now());
+        Snapshot<String> snapshot2 = new Snapshot<>("stream", 4, "state2", Instant.now());
+
+        // When
+        snapshotStore.save(snapshot1);
+        snapshotStore.save(snapshot2);
+
+        // Then
+        assertThat(snapshotStore.read("stream")).hasValue(snapshot2);
+    }
+
+    @Test
+    void save_never_replaces_a_newer_snapshot() {
+        // Given
+        Snapshot<String> snapshot1 = new Snapshot<>("stream", 4, "state1", Instant.now());
+        Snapshot<String> snapshot2 = new Snapshot<>("stream", 2, "state2", Instant.now());
+
+        // When
+        snapshotStore.save(snapshot1);
+        snapshotStore.save(snapshot2);
+
+        // Then
+        assertThat(snapshotStore.read("stream")).hasValue(snapshot1);
+    }
+
+    @Test
+    void delete_removes_the_snapshot() {
+        // Given
+        snapshotStore.save(new Snapshot<>("stream", 2, "state", Instant.now()));
+
+        // When
+        snapshotStore.delete("stream");
+
+        // Then
+        assertThat(snapshotStore.read("stream")).isEmpty();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.application.snapshot.mongodb.nativedriver;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.ReplaceOptions;
+import org.bson.Document;
+import org.occurrent.application.snapshot.Snapshot;
+import org.occurrent.application.snapshot.SnapshotStore;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static com.mongodb.client.model.Filters.*;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A native sync Java MongoDB implementation of {@link SnapshotStore}. There's one document per event stream in the collection, whose {@code _id}
+ * is the stream id, so reading the latest snapshot of a stream is a single point lookup. The state is stored as a sub-document that is created and
+ * read by the supplied functions, for example using a Jackson {@code ObjectMapper} or a MongoDB {@code Codec}.
+ *
+ * @param <S> The type of the snapshot state
+ */
+public class NativeMongoSnapshotStore<S> implements SnapshotStore<S> {
+    static final String ID = "_id";
+    static final String VERSION = "version";
+    static final String CREATED_AT = "createdAt";
+    static final String STATE = "state";
+
+    private final MongoCollection<Document> snapshotCollection;
+    private final Function<S, Document> stateToDocument;
+    private final Function<Document, S> documentToState;
+
+    /**
+     * Create a {@code NativeMongoSnapshotStore} that stores snapshots in the supplied collection
+     *
+     * @param database               The database
+     * @param snapshotCollectionName The name of the collection into which snapshots will be stored
+     * @param stateToDocument        A function that converts the snapshot state into a {@link Document}
+     * @param documentToState        A function that converts a {@link Document} created by {@code stateToDocument} back into the snapshot state
+     */
+    public NativeMongoSnapshotStore(MongoDatabase database, String snapshotCollectionName, Function<S, Document> stateToDocument, Function<Document, S> documentToState) {
+        this(requireNonNull(database, "Database cannot be null").getCollection(requireNonNull(snapshotCollectionName, "Snapshot collection name cannot be null")), stateToDocument, documentToState);
+    }
+
+    /**
+     * Create a {@code NativeMongoSnapshotStore} that stores snapshots in the supplied collection
+     *
+     * @param snapshotCollection The collection into which snapshots will be stored
+     * @param stateToDocument    A function that converts the snapshot state into a {@link Document}
+     * @param documentToState    A function that converts a {@link Document} created by {@code stateToDocument} back into the snapshot state
+     */
+    public NativeMongoSnapshotStore(MongoCollection<Document> snapshotCollection, Function<S, Document> stateToDocument, Function<Document, S> documentToState) {
+        requireNonNull(snapshotCollection, "Snapshot collection cannot be null");
+        requireNonNull(stateToDocument, "State to document function cannot be null");
+        requireNonNull(documentToState, "Document to state function cannot be null");
+        this.snapshotCollection = snapshotCollection;
+        this.stateToDocument = stateToDocument;
+        this.documentToState = documentToState;
+    }
+
+    @Override
+    public Optional<Snapshot<S>> read(String streamId) {
+        requireNonNull(streamId, "Stream id cannot be null");
+        Document document = snapshotCollection.find(eq(ID, streamId)).first();
+        if (document == null) {
+            return Optional.empty();
+        }
+        S state = documentToState.apply(document.get(STATE, Document.class));
+        return Optional.of(new Snapshot<>(streamId, document.getLong(VERSION), state, document.getDate(CREATED_AT).toInstant()));
+    }
+
+    @Override
+    public void save(Snapshot<S> snapshot) {
+        requireNonNull(snapshot, Snapshot.class.getSimpleName() + " cannot be null");
+        Document document = new Document(ID, snapshot.getStreamId())
+                .append(VERSION, snapshot.getVersion())
+                .append(CREATED_AT, Date.from(snapshot.getCreatedAt()))
+                .append(STATE, stateToDocument.apply(snapshot.getState()));
+        try {
+            // Only replace older snapshots, if the stored snapshot is newer the filter doesn't match and the upsert fails with a duplicate key error
+            snapshotCollection.replaceOne(and(eq(ID, snapshot.getStreamId()), lt(VERSION, snapshot.getVersion())), document, new ReplaceOptions().upsert(true));
+        } catch (MongoWriteException e) {
+            if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void delete(String streamId) {
+        requireNonNull(streamId, "Stream id cannot be null");
+        snapshotCollection.deleteOne(eq(ID, streamId));
+    }
+}
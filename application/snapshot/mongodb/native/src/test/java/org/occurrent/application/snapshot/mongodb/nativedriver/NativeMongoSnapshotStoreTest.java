@@ -0,0 +1,105 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.application.snapshot.mongodb.nativedriver;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.Document;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.occurrent.application.snapshot.Snapshot;
+import org.occurrent.testsupport.mongodb.FlushMongoDBExtension;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Instant;
+
+import static java.time.temporal.ChronoUnit.MILLIS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers
+@DisplayName("native mongo snapshot store")
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class NativeMongoSnapshotStoreTest {
+
+    @Container
+    private static final MongoDBContainer mongoDBContainer = new MongoDBContainer("mongo:4.2.8").withReuse(true);
+
+    @RegisterExtension
+    FlushMongoDBExtension flushMongoDBExtension = new FlushMongoDBExtension(new ConnectionString(mongoDBContainer.getReplicaSetUrl()));
+
+    private MongoClient mongoClient;
+    private NativeMongoSnapshotStore<String> snapshotStore;
+
+    @BeforeEach
+    void create_snapshot_store() {
+        ConnectionString connectionString = new ConnectionString(mongoDBContainer.getReplicaSetUrl() + ".snapshots");
+        mongoClient = MongoClients.create(connectionString);
+        snapshotStore = new NativeMongoSnapshotStore<>(mongoClient.getDatabase(connectionString.getDatabase()), connectionString.getCollection(),
+                state -> new Document("name", state), document -> document.getString("name"));
+    }
+
+    @AfterEach
+    void close_mongo_client() {
+        mongoClient.close();
+    }
+
+    @Test
+    void read_returns_the_saved_snapshot() {
+        // Given
+        Snapshot<String> snapshot = new Snapshot<>("stream", 2, "John Doe", Instant.now().truncatedTo(MILLIS));
+
+        // When
+        snapshotStore.save(snapshot);
+
+        // Then
+        assertThat(snapshotStore.read("stream")).hasValue(snapshot);
+    }
+
+    @Test
+    void save_never_replaces_a_newer_snapshot() {
+        // Given
+        Snapshot<String> snapshot1 = new Snapshot<>("stream", 4, "John Doe", Instant.now().truncatedTo(MILLIS));
+        Snapshot<String> snapshot2 = new Snapshot<>("stream", 2, "Jane Doe", Instant.now().truncatedTo(MILLIS));
+        Snapshot<String> snapshot3 = new Snapshot<>("stream", 6, "Jane Doe", Instant.now().truncatedTo(MILLIS));
+
+        // When
+        snapshotStore.save(snapshot1);
+        snapshotStore.save(snapshot2);
+
+        // Then
+        assertThat(snapshotStore.read("stream")).hasValue(snapshot1);
+        snapshotStore.save(snapshot3);
+        assertThat(snapshotStore.read("stream")).hasValue(snapshot3);
+    }
+
+    @Test
+    void delete_removes_the_snapshot() {
+        // Given
+        snapshotStore.save(new Snapshot<>("stream", 2, "John Doe", Instant.now()));
+
+        // When
+        snapshotStore.delete("stream");
+
+        // Then
+        assertThat(snapshotStore.read("stream")).isEmpty();
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.binaryserialization.internal;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.CloudEventData;
+import io.cloudevents.core.builder.CloudEventBuilder;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A compact binary format for cloud events that is shared by the event stores that serialize cloud events themselves (such as the off-heap
+ * storage of the in-memory event store and the file event store), so that their formats can't diverge. The format is:
+ * <pre>
+ * | id | source | type | data content type | data schema | subject | time | extension count (int) | (name, type, value)* | data length (int) | data |
+ * </pre>
+ * Strings are stored as their UTF-8 length (int, {@code -1} for {@code null}) followed by the UTF-8 bytes.
+ */
+public class BinaryCloudEventSerialization {
+    private static final byte STRING = 0;
+    private static final byte INTEGER = 1;
+    private static final byte LONG = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte URI_TYPE = 4;
+    private static final byte TIME = 5;
+    private static final byte BYTES = 6;
+
+    private BinaryCloudEventSerialization() {
+    }
+
+    /**
+     * Write the {@code cloudEvent} to {@code out}.
+     *
+     * @param out              The output to write to
+     * @param cloudEvent       The cloud event to write
+     * @param includeExtension Decides which extensions to write, allows the caller to store some extensions (such as the stream id) elsewhere
+     */
+    public static void writeCloudEvent(DataOutputStream out, CloudEvent cloudEvent, Predicate<String> includeExtension) throws IOException {
+        writeString(out, cloudEvent.getId());
+        writeString(out, cloudEvent.getSource() == null ? null : cloudEvent.getSource().toString());
+        writeString(out, cloudEvent.getType());
+        writeString(out, cloudEvent.getDataContentType());
+        writeString(out, cloudEvent.getDataSchema() == null ? null : cloudEvent.getDataSchema().toString());
+        writeString(out, cloudEvent.getSubject());
+        writeTime(out, cloudEvent.getTime());
+
+        Set<String> extensionNames = cloudEvent.getExtensionNames();
+        int extensionCount = (int) extensionNames.stream().filter(includeExtension).count();
+        out.writeInt(extensionCount);
+        for (String extensionName : extensionNames) {
+            if (includeExtension.test(extensionName)) {
+                writeString(out, extensionName);
+                writeExtensionValue(out, extensionName, cloudEvent.getExtension(extensionName));
+            }
+        }
+
+        CloudEventData data = cloudEvent.getData();
+        if (data == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] dataBytes = data.toBytes();
+            out.writeInt(dataBytes.length);
+            out.write(dataBytes);
+        }
+    }
+
+    /**
+     * Read a cloud event that was written by {@link #writeCloudEvent(DataOutputStream, CloudEvent, Predicate)}, starting at the current position of the {@code buffer}.
+     * The position of the {@code buffer} is moved past the cloud event.
+     *
+     * @param buffer   The buffer to read from
+     * @param copyData {@code true} to copy the data of the cloud event into a byte array, {@code false} to let the data refer to the {@code buffer}
+     *                 and copy the bytes only when {@link CloudEventData#toBytes()} is called.
+     * @return A {@link CloudEventBuilder} with all attributes, extensions and data of the cloud event, which allows the caller to add extensions that are stored elsewhere.
+     */
+    public static CloudEventBuilder readCloudEvent(ByteBuffer buffer, boolean copyData) {
+        CloudEventBuilder builder = CloudEventBuilder.v1()
+                .withId(readString(buffer))
+                .withSource(toUri(readString(buffer)))
+                .withType(readString(buffer))
+                .withDataContentType(readString(buffer))
+                .withDataSchema(toUri(readString(buffer)))
+                .withSubject(readString(buffer))
+                .withTime(readTime(buffer));
+
+        int extensionCount = buffer.getInt();
+        for (int i = 0; i < extensionCount; i++) {
+            readExtension(buffer, builder, readString(buffer));
+        }
+
+        int dataLength = buffer.getInt();
+        if (dataLength >= 0) {
+            if (copyData) {
+                byte[] data = new byte[dataLength];
+                buffer.get(data);
+                builder.withData(data);
+            } else {
+                ByteBuffer data = buffer.slice();
+                data.limit(dataLength);
+                buffer.position(buffer.position() + dataLength);
+                builder.withData(new ByteBufferCloudEventData(data));
+            }
+        }
+        return builder;
+    }
+
+    public static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = string.getBytes(UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    public static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final String string;
+        if (buffer.hasArray()) {
+            string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.duplicate().get(bytes);
+            string = new String(bytes, UTF_8);
+        }
+        buffer.position(buffer.position() + length);
+        return string;
+    }
+
+    private static void writeTime(DataOutputStream out, OffsetDateTime time) throws IOException {
+        if (time == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            Instant instant = time.toInstant();
+            out.writeLong(instant.getEpochSecond());
+            out.writeInt(instant.getNano());
+            out.writeInt(time.getOffset().getTotalSeconds());
+        }
+    }
+
+    private static OffsetDateTime readTime(ByteBuffer buffer) {
+        if (buffer.get() == 0) {
+            return null;
+        }
+        Instant instant = Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+        return OffsetDateTime.ofInstant(instant, ZoneOffset.ofTotalSeconds(buffer.getInt()));
+    }
+
+    private static void writeExtensionValue(DataOutputStream out, String extensionName, Object value) throws IOException {
+        if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof URI) {
+            out.writeByte(URI_TYPE);
+            writeString(out, value.toString());
+        } else if (value instanceof OffsetDateTime) {
+            out.writeByte(TIME);
+            writeTime(out, (OffsetDateTime) value);
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            out.writeInt(((byte[]) value).length);
+            out.write((byte[]) value);
+        } else {
+            throw new IllegalArgumentException("Cloud event extension " + extensionName + " has an unsupported type: " + (value == null ? null : value.getClass().getName()));
+        }
+    }
+
+    private static void readExtension(ByteBuffer buffer, CloudEventBuilder builder, String extensionName) {
+        byte type = buffer.get();
+        switch (type) {
+            case STRING:
+                builder.withExtension(extensionName, readString(buffer));
+                break;
+            case INTEGER:
+                builder.withExtension(extensionName, buffer.getInt());
+                break;
+            case LONG:
+                builder.withExtension(extensionName, buffer.getLong());
+                break;
+            case BOOLEAN:
+                builder.withExtension(extensionName, buffer.get() != 0);
+                break;
+            case URI_TYPE:
+                builder.withExtension(extensionName, toUri(readString(buffer)));
+                break;
+            case TIME:
+                builder.withExtension(extensionName, readTime(buffer));
+                break;
+            case BYTES:
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                builder.withExtension(extensionName, bytes);
+                break;
+            default:
+                throw new IllegalStateException("Unrecognized extension type " + type + " of cloud event extension " + extensionName);
+        }
+    }
+
+    private static URI toUri(String uri) {
+        return uri == null ? null : URI.create(uri);
+    }
+
+    /**
+     * Cloud event data that refers to the bytes in a {@link ByteBuffer} (such as a memory-mapped file), the bytes are copied only when they're requested.
+     */
+    private static class ByteBufferCloudEventData implements CloudEventData {
+        private final ByteBuffer data;
+
+        private ByteBufferCloudEventData(ByteBuffer data) {
+            this.data = data;
+        }
+
+        @Override
+        public byte[] toBytes() {
+            byte[] bytes = new byte[data.remaining()];
+            data.duplicate().get(bytes);
+            return bytes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CloudEventData)) return false;
+            return Arrays.equals(toBytes(), ((CloudEventData) o).toBytes());
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(toBytes());
+        }
+
+        @Override
+        public String toString() {
+            return "ByteBufferCloudEventData{" +
+                    "length=" + data.remaining() +
+                    '}';
+        }
+    }
+}
@@ -20,7 +20,9 @@ import io.cloudevents.CloudEvent;
 import org.occurrent.filter.Filter;
 import org.occurrent.filter.Filter.CompositionFilter;
 
+import java.util.List;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import static org.occurrent.filter.Filter.All;
 import static org.occurrent.filter.Filter.SingleConditionFilter;
@@ -31,25 +33,50 @@ import static org.occurrent.filter.Filter.SingleConditionFilter;
 public class FilterMatcher {
 
     public static boolean matchesFilter(CloudEvent cloudEvent, Filter filter) {
+        return compile(filter).test(cloudEvent);
+    }
+
+    /**
+     * Compile the {@code filter} into a {@link Predicate} that checks if a cloud event matches the filter. This is useful when the same filter
+     * is matched against many cloud events since the structure of the filter is only traversed once.
+     *
+     * @param filter The filter to compile
+     * @return A predicate that returns {@code true} if a cloud event matches the {@code filter}
+     */
+    public static Predicate<CloudEvent> compile(Filter filter) {
         if (filter == null) {
             throw new IllegalArgumentException(Filter.class.getSimpleName() + " cannot be null");
         }
 
-        final boolean matches;
+        final Predicate<CloudEvent> predicate;
         if (filter instanceof All) {
-            matches = true;
+            predicate = __ -> true;
         } else if (filter instanceof SingleConditionFilter) {
             SingleConditionFilter scf = (SingleConditionFilter) filter;
-            matches = ConditionMatcher.matchesCondition(cloudEvent, scf.fieldName, scf.condition);
+            predicate = cloudEvent -> ConditionMatcher.matchesCondition(cloudEvent, scf.fieldName, scf.condition);
         } else if (filter instanceof CompositionFilter) {
             CompositionFilter cf = (CompositionFilter) filter;
-            Predicate<Filter> matchingPredicate = f -> matchesFilter(cloudEvent, f);
+            List<Predicate<CloudEvent>> predicates = cf.filters.stream().map(FilterMatcher::compile).collect(Collectors.toList());
             switch (cf.operator) {
                 case AND:
-                    matches = cf.filters.stream().allMatch(matchingPredicate);
+                    predicate = cloudEvent -> {
+                        for (Predicate<CloudEvent> p : predicates) {
+                            if (!p.test(cloudEvent)) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    };
                     break;
                 case OR:
-                    matches = cf.filters.stream().anyMatch(matchingPredicate);
+                    predicate = cloudEvent -> {
+                        for (Predicate<CloudEvent> p : predicates) {
+                            if (p.test(cloudEvent)) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    };
                     break;
                 default:
                     throw new IllegalArgumentException("Unrecognized composition operator: " + cf.operator.getClass().getName());
@@ -58,6 +85,6 @@ public class FilterMatcher {
             throw new IllegalArgumentException("Unrecognized filter: " + filter.getClass().getName());
         }
 
-        return matches;
+        return predicate;
     }
 }
\ No newline at end of file
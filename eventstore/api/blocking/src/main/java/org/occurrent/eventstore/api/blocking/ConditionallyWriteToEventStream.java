@@ -22,7 +22,10 @@ import org.occurrent.eventstore.api.WriteCondition;
 import org.occurrent.eventstore.api.WriteConditionNotFulfilledException;
 import org.occurrent.eventstore.api.WriteResult;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.occurrent.eventstore.api.WriteCondition.streamVersionEq;
@@ -89,4 +92,26 @@ public interface ConditionallyWriteToEventStream {
      * @throws DuplicateCloudEventException        If a cloud event in the supplied <code>events</code> stream already exists in the event store
      */
     WriteResult write(String streamId, WriteCondition writeCondition, Stream<CloudEvent> events);
+
+    /**
+     * Conditionally write events to several event streams in one call. The map key is the id of the stream and the value
+     * describes the {@link WriteCondition} and events to write to this stream (see {@link EventStreamWrite}). Use a map
+     * that maintains insertion order (such as {@link java.util.LinkedHashMap}) if the order of the writes is important.
+     * <p>
+     * The default implementation writes to each stream separately using {@link #write(String, WriteCondition, Stream)}, which means that
+     * streams that are written before a failing write condition is detected are <i>not</i> rolled back. Event store implementations that support it
+     * (for example the MongoDB event stores) override this method and write to all streams atomically.
+     * </p>
+     *
+     * @param writes The writes to perform, keyed by stream id
+     * @return One {@link WriteResult} per stream, in the iteration order of {@code writes}.
+     * @throws WriteConditionNotFulfilledException When the write condition of any of the streams was not fulfilled
+     * @throws DuplicateCloudEventException        If a cloud event in any of the supplied streams already exists in the event store
+     */
+    default List<WriteResult> writeAll(Map<String, EventStreamWrite> writes) {
+        Objects.requireNonNull(writes, "Writes cannot be null");
+        return writes.entrySet().stream()
+                .map(entry -> write(entry.getKey(), entry.getValue().writeCondition, entry.getValue().events))
+                .collect(Collectors.toList());
+    }
 }
\ No newline at end of file
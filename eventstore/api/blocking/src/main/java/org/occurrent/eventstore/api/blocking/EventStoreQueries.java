@@ -17,9 +17,14 @@
 package org.occurrent.eventstore.api.blocking;
 
 import io.cloudevents.CloudEvent;
+import org.occurrent.eventstore.api.ContinuationToken;
+import org.occurrent.eventstore.api.EventPage;
 import org.occurrent.eventstore.api.SortBy;
+import org.occurrent.eventstore.api.internal.KeysetPagination;
 import org.occurrent.filter.Filter;
 
+import java.util.List;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static java.util.Objects.requireNonNull;
@@ -38,6 +43,30 @@ public interface EventStoreQueries {
      */
     Stream<CloudEvent> query(Filter filter, int skip, int limit, SortBy sortBy);
 
+    /**
+     * Query the event store one page at a time using keyset (cursor) pagination. Pass <code>null</code> as {@code continuationToken} to get the first page,
+     * and then the {@link EventPage#getNextContinuationToken() next continuation token} of the previous page to get the next one. Contrary to
+     * {@link #query(Filter, int, int, SortBy)}, the event store doesn't need to skip all events in the previous pages, so deep pages are as fast to
+     * find as the first one, provided that there's an index that matches the sort order.
+     * <p>
+     * The sort order is made unique by appending {@code streamid} and {@code streamversion} (unless they're already included), so a suitable index
+     * for e.g. {@code SortBy.time(ASCENDING)} is {@code (time, streamid, streamversion)}. Natural order and data fields cannot be used with continuation tokens.
+     * </p>
+     *
+     * @param filter            The filter
+     * @param pageSize          The maximum number of events in the page
+     * @param sortBy            The sort order, a continuation token can only be used with the sort order it was created for.
+     * @param continuationToken The continuation token returned with the previous page, or <code>null</code> to get the first page.
+     * @return The page
+     */
+    default EventPage query(Filter filter, int pageSize, SortBy sortBy, ContinuationToken continuationToken) {
+        requireNonNull(filter, "Filter cannot be null");
+        int limit = KeysetPagination.limitFor(pageSize);
+        KeysetPagination keysetPagination = KeysetPagination.of(sortBy);
+        List<CloudEvent> events = query(keysetPagination.filter(filter, continuationToken), 0, limit, keysetPagination.sortBy()).collect(Collectors.toList());
+        return keysetPagination.page(events, pageSize);
+    }
+
     /**
      * Count specific events in the event store that matches the supplied {@code filter}.
      *
@@ -19,6 +19,7 @@ package org.occurrent.eventstore.api.blocking;
 import java.util.Iterator;
 import java.util.List;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -64,6 +65,41 @@ public interface EventStream<T> extends Iterable<T> {
         return events().collect(Collectors.toList());
     }
 
+    /**
+     * Filter the events of the {@link EventStream}. The id and version of the returned {@link EventStream} are the same as for this {@link EventStream}.
+     *
+     * @param predicate The predicate that events must match to be included
+     * @return A new {@link EventStream} that only contains the events matching the {@code predicate}.
+     */
+    default EventStream<T> filter(Predicate<T> predicate) {
+        return new EventStream<T>() {
+
+            @Override
+            public String id() {
+                return EventStream.this.id();
+            }
+
+            @Override
+            public long version() {
+                return EventStream.this.version();
+            }
+
+            @Override
+            public Stream<T> events() {
+                return EventStream.this.events().filter(predicate);
+            }
+
+            @Override
+            public String toString() {
+                return "EventStream{" +
+                        "id='" + id() + '\'' +
+                        ", version=" + version() +
+                        ", events=" + events() +
+                        '}';
+            }
+        };
+    }
+
     /**
      * Apply a mapping function to the {@link EventStream}
      *
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.api.blocking;
+
+import io.cloudevents.CloudEvent;
+import org.occurrent.eventstore.api.WriteCondition;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+import static org.occurrent.eventstore.api.WriteCondition.anyStreamVersion;
+import static org.occurrent.eventstore.api.WriteCondition.streamVersionEq;
+
+/**
+ * Describes the events that should be written to a single event stream, and the {@link WriteCondition} that must be fulfilled
+ * for them to be written, when writing to several event streams at once using {@link ConditionallyWriteToEventStream#writeAll(java.util.Map)}.
+ */
+public class EventStreamWrite {
+    public final WriteCondition writeCondition;
+    public final Stream<CloudEvent> events;
+
+    private EventStreamWrite(WriteCondition writeCondition, Stream<CloudEvent> events) {
+        requireNonNull(writeCondition, WriteCondition.class.getSimpleName() + " cannot be null");
+        requireNonNull(events, "Events cannot be null");
+        this.writeCondition = writeCondition;
+        this.events = events;
+    }
+
+    /**
+     * Write the {@code events} if the {@code writeCondition} is fulfilled.
+     */
+    public static EventStreamWrite of(WriteCondition writeCondition, Stream<CloudEvent> events) {
+        return new EventStreamWrite(writeCondition, events);
+    }
+
+    /**
+     * Write the {@code events} if the stream version is equal to {@code expectedStreamVersion}.
+     */
+    public static EventStreamWrite of(long expectedStreamVersion, Stream<CloudEvent> events) {
+        return new EventStreamWrite(streamVersionEq(expectedStreamVersion), events);
+    }
+
+    /**
+     * Write the {@code events} if the stream version is equal to {@code expectedStreamVersion}.
+     */
+    public static EventStreamWrite of(long expectedStreamVersion, CloudEvent... events) {
+        return of(expectedStreamVersion, Arrays.stream(events));
+    }
+
+    /**
+     * Write the {@code events} regardless of the current stream version.
+     */
+    public static EventStreamWrite unconditionally(Stream<CloudEvent> events) {
+        return new EventStreamWrite(anyStreamVersion(), events);
+    }
+
+    /**
+     * Write the {@code events} regardless of the current stream version.
+     */
+    public static EventStreamWrite unconditionally(CloudEvent... events) {
+        return unconditionally(Arrays.stream(events));
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", EventStreamWrite.class.getSimpleName() + "[", "]")
+                .add("writeCondition=" + writeCondition)
+                .add("events=" + events)
+                .toString();
+    }
+}
@@ -18,6 +18,14 @@ package org.occurrent.eventstore.api.blocking;
 
 import io.cloudevents.CloudEvent;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.occurrent.cloudevents.OccurrentExtensionGetter.getStreamVersion;
+import static org.occurrent.eventstore.api.internal.VersionRange.requireValidVersionRange;
+
 /**
  * An interface that should be implemented by event stores that supports reading an {@link EventStream}.
  */
@@ -40,4 +48,57 @@ public interface ReadEventStream {
      * @return An {@link EventStream} containing the events of the stream. Will return an {@link EventStream} with version {@code 0} if event stream doesn't exists.
      */
     EventStream<CloudEvent> read(String streamId, int skip, int limit);
+
+    /**
+     * Read the events of a particular event stream whose stream version is greater than {@code fromVersionExclusive} and less than or equal to {@code toVersionInclusive}.
+     * Contrary to {@link #read(String, int, int)}, the events are selected by their stream version and not by their position in the stream, which means that
+     * the result is correct even if events have been deleted from the stream, and that event stores can look up the first event directly instead of skipping
+     * the preceding events. This is typically used to read the events that were written after a snapshot, or after the last event that a consumer has seen.
+     * <p>
+     * The default implementation reads all events in the stream and filters them, event store implementations are encouraged to override this method
+     * with a more efficient alternative.
+     * </p>
+     *
+     * @param streamId             The id of the stream to read.
+     * @param fromVersionExclusive Only include events whose stream version is greater than this version, use {@code 0} to read from the beginning of the stream.
+     * @param toVersionInclusive   Only include events whose stream version is less than or equal to this version, use {@code Long.MAX_VALUE} to read to the end of the stream.
+     * @return An {@link EventStream} containing the events in the version range. The {@link EventStream#version()} is the current version of the event stream
+     * (not {@code toVersionInclusive}), and it's {@code 0} if event stream doesn't exists.
+     */
+    default EventStream<CloudEvent> readVersionRange(String streamId, long fromVersionExclusive, long toVersionInclusive) {
+        requireValidVersionRange(streamId, fromVersionExclusive, toVersionInclusive);
+        return read(streamId).filter(cloudEvent -> {
+            long streamVersion = getStreamVersion(cloudEvent);
+            return streamVersion > fromVersionExclusive && streamVersion <= toVersionInclusive;
+        });
+    }
+
+    /**
+     * Read the events of a particular event stream whose stream version is greater than {@code fromVersionExclusive}.
+     *
+     * @param streamId             The id of the stream to read.
+     * @param fromVersionExclusive Only include events whose stream version is greater than this version.
+     * @return An {@link EventStream} containing the events written after {@code fromVersionExclusive}. Will return an {@link EventStream} with version {@code 0} if event stream doesn't exists.
+     * @see #readVersionRange(String, long, long)
+     */
+    default EventStream<CloudEvent> readAfterVersion(String streamId, long fromVersionExclusive) {
+        return readVersionRange(streamId, fromVersionExclusive, Long.MAX_VALUE);
+    }
+
+    /**
+     * Find the current version of several event streams without reading their events.
+     * <p>
+     * The default implementation reads each event stream separately, event store implementations are encouraged to override this method
+     * with a more efficient alternative.
+     * </p>
+     *
+     * @param streamIds The ids of the streams whose versions to find.
+     * @return A map from stream id to the current version of the stream. Streams that don't exist are included with version {@code 0}.
+     */
+    default Map<String, Long> streamVersions(Collection<String> streamIds) {
+        Objects.requireNonNull(streamIds, "Stream ids cannot be null");
+        Map<String, Long> streamVersions = new LinkedHashMap<>();
+        streamIds.forEach(streamId -> streamVersions.put(streamId, read(streamId).version()));
+        return streamVersions;
+    }
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.api;
+
+import java.util.Objects;
+import java.util.StringJoiner;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An opaque token that points to the position after the last event of a page returned by {@code EventStoreQueries.query(filter, pageSize, sortBy, continuationToken)}.
+ * Pass it to the next invocation of {@code query} to get the next page. The token encodes the sort key of the last event in the page, which means that the next
+ * page can be found using an index seek instead of skipping all previous events.
+ * <p>
+ * Use {@link #asString()} to transfer the token to a client (for example in a REST API) and {@link #fromString(String)} to recreate it.
+ * </p>
+ */
+public final class ContinuationToken {
+    private final String value;
+
+    private ContinuationToken(String value) {
+        requireNonNull(value, ContinuationToken.class.getSimpleName() + " cannot be null");
+        if (value.trim().isEmpty()) {
+            throw new IllegalArgumentException(ContinuationToken.class.getSimpleName() + " cannot be empty");
+        }
+        this.value = value;
+    }
+
+    /**
+     * Recreate a continuation token from its string representation
+     *
+     * @param value The string representation, as returned by {@link #asString()}.
+     * @return A {@link ContinuationToken}
+     */
+    public static ContinuationToken fromString(String value) {
+        return new ContinuationToken(value);
+    }
+
+    /**
+     * @return The string representation of this continuation token. It's url safe.
+     */
+    public String asString() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ContinuationToken)) return false;
+        ContinuationToken that = (ContinuationToken) o;
+        return Objects.equals(value, that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(value);
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", ContinuationToken.class.getSimpleName() + "[", "]")
+                .add("value='" + value + "'")
+                .toString();
+    }
+}
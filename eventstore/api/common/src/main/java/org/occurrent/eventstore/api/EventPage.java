@@ -0,0 +1,83 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.api;
+
+import io.cloudevents.CloudEvent;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.StringJoiner;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A page of cloud events returned by {@code EventStoreQueries.query(filter, pageSize, sortBy, continuationToken)}.
+ */
+public final class EventPage {
+    private final List<CloudEvent> events;
+    private final ContinuationToken nextContinuationToken;
+
+    public EventPage(List<CloudEvent> events, ContinuationToken nextContinuationToken) {
+        requireNonNull(events, "Events cannot be null");
+        this.events = Collections.unmodifiableList(events);
+        this.nextContinuationToken = nextContinuationToken;
+    }
+
+    /**
+     * @return The events in this page
+     */
+    public List<CloudEvent> getEvents() {
+        return events;
+    }
+
+    /**
+     * @return The {@link ContinuationToken} that should be used to get the next page, or an empty {@code Optional} if this is the last page.
+     */
+    public Optional<ContinuationToken> getNextContinuationToken() {
+        return Optional.ofNullable(nextContinuationToken);
+    }
+
+    /**
+     * @return <code>true</code> if there are more events after this page, <code>false</code> otherwise.
+     */
+    public boolean hasNext() {
+        return nextContinuationToken != null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EventPage)) return false;
+        EventPage eventPage = (EventPage) o;
+        return Objects.equals(events, eventPage.events) && Objects.equals(nextContinuationToken, eventPage.nextContinuationToken);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(events, nextContinuationToken);
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", EventPage.class.getSimpleName() + "[", "]")
+                .add("events=" + events)
+                .add("nextContinuationToken=" + nextContinuationToken)
+                .toString();
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.api.internal;
+
+import io.cloudevents.CloudEvent;
+import org.occurrent.condition.Condition;
+import org.occurrent.eventstore.api.ContinuationToken;
+import org.occurrent.eventstore.api.EventPage;
+import org.occurrent.eventstore.api.SortBy;
+import org.occurrent.eventstore.api.SortBy.ComposableSortStep;
+import org.occurrent.eventstore.api.SortBy.MultipleSortStepsImpl;
+import org.occurrent.eventstore.api.SortBy.NaturalImpl;
+import org.occurrent.eventstore.api.SortBy.SingleFieldImpl;
+import org.occurrent.eventstore.api.SortBy.SortDirection;
+import org.occurrent.filter.Filter;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.*;
+
+import static java.util.Objects.requireNonNull;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_VERSION;
+import static org.occurrent.filter.Filter.*;
+
+/**
+ * Implements keyset (cursor) pagination on top of {@code query(filter, skip, limit, sortBy)}. The sort order is made unique by appending
+ * {@value org.occurrent.cloudevents.OccurrentCloudEventExtension#STREAM_ID} and {@value org.occurrent.cloudevents.OccurrentCloudEventExtension#STREAM_VERSION}
+ * (unless they're already part of it), and the {@link ContinuationToken} contains the values of these fields for the last event in a page. The next page is
+ * then found by a {@link Filter} that only matches events that are sorted after these values, for example {@code time > t or (time = t and streamid > s) or
+ * (time = t and streamid = s and streamversion > v)}. Since this is a regular {@link Filter}, each event store translates it to a native query that can use an index.
+ */
+public class KeysetPagination {
+    private static final int TOKEN_FORMAT_VERSION = 1;
+
+    private static final Set<String> ATTRIBUTE_NAMES = new HashSet<>(Arrays.asList(SPEC_VERSION, ID, TYPE, SOURCE, SUBJECT, DATA_SCHEMA, DATA_CONTENT_TYPE));
+
+    private static final byte STRING = 'S';
+    private static final byte LONG = 'L';
+    private static final byte INTEGER = 'I';
+    private static final byte BOOLEAN = 'B';
+    private static final byte OFFSET_DATE_TIME = 'T';
+
+    private final List<SingleFieldImpl> key;
+
+    private KeysetPagination(List<SingleFieldImpl> key) {
+        this.key = key;
+    }
+
+    /**
+     * @param sortBy The sort order requested by the user. Natural order is not supported since it cannot be expressed as a filter.
+     * @return A {@link KeysetPagination} instance for the given {@code sortBy}.
+     */
+    public static KeysetPagination of(SortBy sortBy) {
+        requireNonNull(sortBy, SortBy.class.getSimpleName() + " cannot be null");
+        List<SingleFieldImpl> key = new ArrayList<>();
+        if (sortBy instanceof SingleFieldImpl) {
+            key.add((SingleFieldImpl) sortBy);
+        } else if (sortBy instanceof MultipleSortStepsImpl) {
+            for (SortBy step : ((MultipleSortStepsImpl) sortBy).steps) {
+                if (!(step instanceof SingleFieldImpl)) {
+                    throw unsupportedSortBy();
+                }
+                key.add((SingleFieldImpl) step);
+            }
+        } else if (sortBy instanceof NaturalImpl) {
+            throw unsupportedSortBy();
+        } else {
+            throw new IllegalArgumentException("Internal error: Unrecognized " + SortBy.class.getSimpleName() + " instance: " + sortBy.getClass().getSimpleName());
+        }
+
+        key.stream().filter(field -> field.fieldName.startsWith(DATA + ".")).findFirst().ifPresent(field -> {
+            throw new IllegalArgumentException("Cannot use continuation tokens when sorting by data field " + field.fieldName);
+        });
+
+        SortDirection tieBreakerDirection = key.get(key.size() - 1).direction;
+        for (String tieBreaker : Arrays.asList(STREAM_ID, STREAM_VERSION)) {
+            if (key.stream().noneMatch(field -> field.fieldName.equals(tieBreaker))) {
+                key.add((SingleFieldImpl) SortBy.field(tieBreaker, tieBreakerDirection));
+            }
+        }
+        return new KeysetPagination(Collections.unmodifiableList(key));
+    }
+
+    /**
+     * @return The unique sort order that must be used when querying the event store
+     */
+    public SortBy sortBy() {
+        return key.stream().map(ComposableSortStep.class::cast).reduce(ComposableSortStep::then).orElseThrow(IllegalStateException::new);
+    }
+
+    /**
+     * @param filter            The filter supplied by the user
+     * @param continuationToken The continuation token, or <code>null</code> if the first page should be returned.
+     * @return A filter that matches the events, matched by {@code filter}, that are sorted after the {@code continuationToken}.
+     */
+    public Filter filter(Filter filter, ContinuationToken continuationToken) {
+        requireNonNull(filter, Filter.class.getSimpleName() + " cannot be null");
+        if (continuationToken == null) {
+            return filter;
+        }
+
+        List<Object> values = decode(continuationToken);
+        Filter after = null;
+        for (int i = 0; i < key.size(); i++) {
+            SingleFieldImpl field = key.get(i);
+            Filter clause = Filter.filter(field.fieldName, field.direction == SortDirection.ASCENDING ? Condition.gt(values.get(i)) : Condition.lt(values.get(i)));
+            for (int j = i - 1; j >= 0; j--) {
+                clause = Filter.filter(key.get(j).fieldName, Condition.eq(values.get(j))).and(clause);
+            }
+            after = after == null ? clause : after.or(clause);
+        }
+        return filter instanceof All ? after : filter.and(after);
+    }
+
+    /**
+     * @return The number of events to ask the event store for in order to know if there's a next page.
+     */
+    public static int limitFor(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be greater than zero");
+        }
+        return pageSize == Integer.MAX_VALUE ? pageSize : pageSize + 1;
+    }
+
+    /**
+     * @param events   The events returned by the event store when querying with limit {@link #limitFor(int)}.
+     * @param pageSize The page size
+     * @return The {@link EventPage}
+     */
+    public EventPage page(List<CloudEvent> events, int pageSize) {
+        if (events.size() <= pageSize) {
+            return new EventPage(events, null);
+        }
+        List<CloudEvent> page = events.subList(0, pageSize);
+        return new EventPage(new ArrayList<>(page), encode(page.get(pageSize - 1)));
+    }
+
+    private ContinuationToken encode(CloudEvent cloudEvent) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(TOKEN_FORMAT_VERSION);
+            out.writeByte(key.size());
+            for (SingleFieldImpl field : key) {
+                out.writeUTF(field.fieldName);
+                out.writeByte(field.direction.ordinal());
+                writeValue(out, field.fieldName, valueOf(cloudEvent, field.fieldName));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return ContinuationToken.fromString(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray()));
+    }
+
+    private List<Object> decode(ContinuationToken continuationToken) {
+        final byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(continuationToken.asString().getBytes(StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw invalidToken(e);
+        }
+
+        List<Object> values = new ArrayList<>(key.size());
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readByte() != TOKEN_FORMAT_VERSION) {
+                throw invalidToken(null);
+            } else if (in.readByte() != key.size()) {
+                throw createdForAnotherSortOrder();
+            }
+            for (SingleFieldImpl field : key) {
+                if (!field.fieldName.equals(in.readUTF()) || field.direction.ordinal() != in.readByte()) {
+                    throw createdForAnotherSortOrder();
+                }
+                values.add(readValue(in));
+            }
+        } catch (IOException e) {
+            throw invalidToken(e);
+        }
+        return values;
+    }
+
+    private static Object valueOf(CloudEvent cloudEvent, String fieldName) {
+        final Object value;
+        if (TIME.equals(fieldName)) {
+            value = cloudEvent.getTime();
+        } else if (ATTRIBUTE_NAMES.contains(fieldName)) {
+            value = cloudEvent.getAttribute(fieldName);
+        } else {
+            value = cloudEvent.getExtension(fieldName);
+        }
+
+        if (value == null) {
+            throw new IllegalStateException("Cannot create a " + ContinuationToken.class.getSimpleName() + " since cloud event " + cloudEvent.getId() + " doesn't have a value for sort field " + fieldName);
+        }
+        // URI's and spec versions are represented as strings in filters
+        return value instanceof URI || value instanceof Enum ? value.toString() : value;
+    }
+
+    private static void writeValue(DataOutputStream out, String fieldName, Object value) throws IOException {
+        if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof OffsetDateTime) {
+            out.writeByte(OFFSET_DATE_TIME);
+            out.writeUTF(value.toString());
+        } else {
+            throw new IllegalArgumentException("Cannot use continuation tokens when sorting by " + fieldName + " since values of type " + value.getClass().getName() + " are not supported");
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case STRING:
+                return in.readUTF();
+            case LONG:
+                return in.readLong();
+            case INTEGER:
+                return in.readInt();
+            case BOOLEAN:
+                return in.readBoolean();
+            case OFFSET_DATE_TIME:
+                return OffsetDateTime.parse(in.readUTF());
+            default:
+                throw invalidToken(null);
+        }
+    }
+
+    private static IllegalArgumentException unsupportedSortBy() {
+        return new IllegalArgumentException("Cannot use continuation tokens when sorting by natural order, sort by one or more fields instead");
+    }
+
+    private static IllegalArgumentException createdForAnotherSortOrder() {
+        return new IllegalArgumentException(ContinuationToken.class.getSimpleName() + " was created for another sort order");
+    }
+
+    private static IllegalArgumentException invalidToken(Throwable cause) {
+        return new IllegalArgumentException("Invalid " + ContinuationToken.class.getSimpleName(), cause);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.eventstore.api.internal;
+
+import io.cloudevents.CloudEvent;
+import org.occurrent.eventstore.api.SortBy;
+import org.occurrent.eventstore.api.SortBy.MultipleSortStepsImpl;
+import org.occurrent.eventstore.api.SortBy.NaturalImpl;
+import org.occurrent.eventstore.api.SortBy.SingleFieldImpl;
+
+import java.net.URI;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.occurrent.eventstore.api.SortBy.SortDirection.ASCENDING;
+import static org.occurrent.filter.Filter.*;
+
+/**
+ * Merges the (sorted) query results of several partitions, such as the partitions of a partitioned event store or the tiers of a tiered event store,
+ * into a single result with the same sort order.
+ */
+public class PartitionOrdering {
+    private static final Set<String> ATTRIBUTE_NAMES = new HashSet<>(Arrays.asList(SPEC_VERSION, ID, TYPE, SOURCE, SUBJECT, DATA_SCHEMA, DATA_CONTENT_TYPE));
+
+    private final Comparator<PartitionedCloudEvent> comparator;
+
+    private PartitionOrdering(Comparator<PartitionedCloudEvent> comparator) {
+        this.comparator = comparator;
+    }
+
+    public static PartitionOrdering of(SortBy sortBy) {
+        // Events that are equal according to the sort order are taken from the partition with the lowest index first to make the result deterministic
+        return new PartitionOrdering(toComparator(sortBy).thenComparingInt(event -> event.partition));
+    }
+
+    /**
+     * @param sortedEventsPerPartition The query result of each partition, in partition index order. Each result must be sorted according to the {@link SortBy} of this ordering.
+     * @return A lazy stream that merges the events in the supplied streams. Closing it closes all supplied streams.
+     */
+    public Stream<CloudEvent> merge(List<Stream<CloudEvent>> sortedEventsPerPartition) {
+        Iterator<CloudEvent> iterator = new Iterator<CloudEvent>() {
+            private PriorityQueue<PartitionedCloudEvent> heads;
+            private List<Iterator<CloudEvent>> iterators;
+
+            @Override
+            public boolean hasNext() {
+                initializeIfNeeded();
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public CloudEvent next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                PartitionedCloudEvent head = heads.poll();
+                addNextHead(head.partition);
+                return head.cloudEvent;
+            }
+
+            // The partitions are not queried until the first event is requested
+            private void initializeIfNeeded() {
+                if (heads != null) {
+                    return;
+                }
+                heads = new PriorityQueue<>(Math.max(1, sortedEventsPerPartition.size()), comparator);
+                iterators = new ArrayList<>(sortedEventsPerPartition.size());
+                for (int partition = 0; partition < sortedEventsPerPartition.size(); partition++) {
+                    iterators.add(sortedEventsPerPartition.get(partition).iterator());
+                    addNextHead(partition);
+                }
+            }
+
+            private void addNextHead(int partition) {
+                Iterator<CloudEvent> events = iterators.get(partition);
+                if (events.hasNext()) {
+                    heads.add(new PartitionedCloudEvent(partition, events.next()));
+                }
+            }
+        };
+
+        Stream<CloudEvent> merged = StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+        return merged.onClose(() -> sortedEventsPerPartition.forEach(Stream::close));
+    }
+
+    private static Comparator<PartitionedCloudEvent> toComparator(SortBy sortBy) {
+        final Comparator<PartitionedCloudEvent> comparator;
+        if (sortBy instanceof NaturalImpl) {
+            // There's no natural order between partitions, the events of the partitions are returned one partition at a time
+            Comparator<PartitionedCloudEvent> partitionOrder = Comparator.comparingInt(event -> event.partition);
+            comparator = ((NaturalImpl) sortBy).direction == ASCENDING ? partitionOrder : partitionOrder.reversed();
+        } else if (sortBy instanceof SingleFieldImpl) {
+            comparator = toComparator((SingleFieldImpl) sortBy);
+        } else if (sortBy instanceof MultipleSortStepsImpl) {
+            comparator = ((MultipleSortStepsImpl) sortBy).steps.stream()
+                    .map(PartitionOrdering::toComparator)
+                    .reduce(Comparator::thenComparing)
+                    .orElseThrow(() -> new IllegalStateException("Internal error: Expecting " + MultipleSortStepsImpl.class.getSimpleName() + " to have at least one step"));
+        } else {
+            throw new IllegalArgumentException("Internal error: Unrecognized " + SortBy.class.getSimpleName() + " instance: " + sortBy.getClass().getSimpleName());
+        }
+        return comparator;
+    }
+
+    private static Comparator<PartitionedCloudEvent> toComparator(SingleFieldImpl singleField) {
+        String fieldName = singleField.fieldName;
+        if (fieldName.startsWith(DATA + ".")) {
+            throw new IllegalArgumentException("Cannot sort by data field " + fieldName + " when merging the query results of several event stores");
+        }
+        // Missing values are sorted first in ascending order, just as in MongoDB
+        Comparator<PartitionedCloudEvent> comparator = Comparator.comparing(event -> valueOf(event.cloudEvent, fieldName), Comparator.nullsFirst(PartitionOrdering::compareValues));
+        return singleField.direction == ASCENDING ? comparator : comparator.reversed();
+    }
+
+    private static Object valueOf(CloudEvent cloudEvent, String fieldName) {
+        final Object value;
+        if (TIME.equals(fieldName)) {
+            // The same order as a time stored as a date, a time stored as an RFC 3339 string is sorted as a string by the underlying event store
+            OffsetDateTime time = cloudEvent.getTime();
+            value = time == null ? null : time.toInstant();
+        } else if (ATTRIBUTE_NAMES.contains(fieldName)) {
+            value = cloudEvent.getAttribute(fieldName);
+        } else {
+            value = cloudEvent.getExtension(fieldName);
+        }
+        return value instanceof URI || value instanceof Enum ? value.toString() : value;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareValues(Object value1, Object value2) {
+        if (value1 instanceof Number && value2 instanceof Number && value1.getClass() != value2.getClass()) {
+            return Double.compare(((Number) value1).doubleValue(), ((Number) value2).doubleValue());
+        } else if (value1 instanceof Comparable && value1.getClass() == value2.getClass()) {
+            return ((Comparable) value1).compareTo(value2);
+        }
+        // Values of different types are ordered by type, just to get a consistent order
+        return value1.getClass().getName().compareTo(value2.getClass().getName());
+    }
+
+    private static class PartitionedCloudEvent {
+        private final int partition;
+        private final CloudEvent cloudEvent;
+
+        private PartitionedCloudEvent(int partition, CloudEvent cloudEvent) {
+            this.partition = partition;
+            this.cloudEvent = cloudEvent;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.api.internal;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Validation of the arguments to {@code readVersionRange}, shared by all event store implementations.
+ */
+public class VersionRange {
+
+    private VersionRange() {
+    }
+
+    /**
+     * Make sure that the arguments to {@code readVersionRange(streamId, fromVersionExclusive, toVersionInclusive)} are valid.
+     *
+     * @throws NullPointerException     If {@code streamId} is {@code null}
+     * @throws IllegalArgumentException If {@code fromVersionExclusive} is negative or if {@code toVersionInclusive} is less than {@code fromVersionExclusive}
+     */
+    public static void requireValidVersionRange(String streamId, long fromVersionExclusive, long toVersionInclusive) {
+        requireNonNull(streamId, "Stream id cannot be null");
+        if (fromVersionExclusive < 0) {
+            throw new IllegalArgumentException("fromVersionExclusive cannot be negative");
+        }
+        if (toVersionInclusive < fromVersionExclusive) {
+            throw new IllegalArgumentException("toVersionInclusive cannot be less than fromVersionExclusive");
+        }
+    }
+}
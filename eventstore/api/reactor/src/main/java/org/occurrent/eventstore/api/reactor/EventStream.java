@@ -22,6 +22,7 @@ import reactor.core.publisher.Mono;
 import java.util.Iterator;
 import java.util.List;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 /**
@@ -73,6 +74,41 @@ public interface EventStream<T> extends Iterable<T> {
     }
 
 
+    /**
+     * Filter the events of the {@link EventStream}. The id and version of the returned {@link EventStream} are the same as for this {@link EventStream}.
+     *
+     * @param predicate The predicate that events must match to be included
+     * @return A new {@link EventStream} that only contains the events matching the {@code predicate}.
+     */
+    default EventStream<T> filter(Predicate<T> predicate) {
+        return new EventStream<T>() {
+
+            @Override
+            public String id() {
+                return EventStream.this.id();
+            }
+
+            @Override
+            public long version() {
+                return EventStream.this.version();
+            }
+
+            @Override
+            public Flux<T> events() {
+                return EventStream.this.events().filter(predicate);
+            }
+
+            @Override
+            public String toString() {
+                return "EventStream{" +
+                        "id='" + id() + '\'' +
+                        ", version=" + version() +
+                        ", events=" + events() +
+                        '}';
+            }
+        };
+    }
+
     /**
      * Apply a mapping function to the {@link EventStream}
      *
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.eventstore.file;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.CloudEventData;
+import org.occurrent.binaryserialization.internal.BinaryCloudEventSerialization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+import static org.occurrent.binaryserialization.internal.BinaryCloudEventSerialization.readString;
+import static org.occurrent.binaryserialization.internal.BinaryCloudEventSerialization.writeString;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_VERSION;
+
+/**
+ * Binary (de-)serialization of the record payloads that are stored in a {@link Segment}. The payload starts with a fixed
+ * size header so that the global position, stream version and batch information can be read without decoding the cloud event:
+ * <pre>
+ * | position (long) | stream version (long) | remaining records in batch (int) | stream id (string) | cloud event attributes, extensions and data |
+ * </pre>
+ * The cloud event itself is serialized by {@link BinaryCloudEventSerialization}, without the stream id and version extensions.
+ * When decoding, the data of the cloud event is not copied until {@link CloudEventData#toBytes()} is called.
+ */
+class CloudEventRecord {
+    private static final int POSITION_OFFSET = 0;
+    private static final int STREAM_VERSION_OFFSET = 8;
+    private static final int REMAINING_IN_BATCH_OFFSET = 16;
+    private static final int STREAM_ID_OFFSET = 20;
+
+    private CloudEventRecord() {
+    }
+
+    static ByteBuffer encode(long position, String streamId, long streamVersion, int remainingInBatch, CloudEvent cloudEvent) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(position);
+            out.writeLong(streamVersion);
+            out.writeInt(remainingInBatch);
+            writeString(out, streamId);
+            // Stream id and version are stored in the header
+            BinaryCloudEventSerialization.writeCloudEvent(out, cloudEvent, CloudEventRecord::isStoredAsExtension);
+            out.flush();
+            return ByteBuffer.wrap(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static long position(ByteBuffer payload) {
+        return payload.getLong(POSITION_OFFSET);
+    }
+
+    static long streamVersion(ByteBuffer payload) {
+        return payload.getLong(STREAM_VERSION_OFFSET);
+    }
+
+    static int remainingInBatch(ByteBuffer payload) {
+        return payload.getInt(REMAINING_IN_BATCH_OFFSET);
+    }
+
+    static String streamId(ByteBuffer payload) {
+        ByteBuffer buffer = payload.duplicate();
+        buffer.position(STREAM_ID_OFFSET);
+        return readString(buffer);
+    }
+
+    static CloudEvent decode(ByteBuffer payload) {
+        ByteBuffer buffer = payload.duplicate();
+        long streamVersion = buffer.getLong(STREAM_VERSION_OFFSET);
+        buffer.position(STREAM_ID_OFFSET);
+        String streamId = readString(buffer);
+        return BinaryCloudEventSerialization.readCloudEvent(buffer, false)
+                .withExtension(STREAM_ID, streamId)
+                .withExtension(STREAM_VERSION, streamVersion)
+                .build();
+    }
+
+    private static boolean isStoredAsExtension(String extensionName) {
+        return !STREAM_ID.equals(extensionName) && !STREAM_VERSION.equals(extensionName);
+    }
+}
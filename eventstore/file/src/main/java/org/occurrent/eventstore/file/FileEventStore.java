@@ -0,0 +1,764 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.eventstore.file;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.SpecVersion;
+import org.occurrent.cloudevents.OccurrentExtensionGetter;
+import org.occurrent.eventstore.api.LongConditionEvaluator;
+import org.occurrent.eventstore.api.SortBy;
+import org.occurrent.eventstore.api.SortBy.MultipleSortStepsImpl;
+import org.occurrent.eventstore.api.SortBy.NaturalImpl;
+import org.occurrent.eventstore.api.SortBy.SingleFieldImpl;
+import org.occurrent.eventstore.api.WriteCondition;
+import org.occurrent.eventstore.api.WriteCondition.StreamVersionWriteCondition;
+import org.occurrent.eventstore.api.WriteConditionNotFulfilledException;
+import org.occurrent.eventstore.api.WriteResult;
+import org.occurrent.eventstore.api.blocking.*;
+import org.occurrent.filter.Filter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static io.cloudevents.core.v1.CloudEventV1.*;
+import static java.util.Comparator.comparing;
+import static java.util.Objects.requireNonNull;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_VERSION;
+import static org.occurrent.eventstore.api.SortBy.SortDirection.ASCENDING;
+import static org.occurrent.eventstore.api.SortBy.SortDirection.DESCENDING;
+import static org.occurrent.eventstore.api.internal.VersionRange.requireValidVersionRange;
+import static org.occurrent.eventstore.file.Segment.STATUS_ACTIVE;
+import static org.occurrent.eventstore.file.Segment.STATUS_DELETED;
+import static org.occurrent.inmemory.filtermatching.FilterMatcher.matchesFilter;
+
+/**
+ * An {@link EventStore} that stores events in append-only, memory-mapped segment files in a local directory. This is useful when
+ * you need a durable event store on a single node, for example for edge nodes or batch jobs, but a MongoDB replica set is overkill.
+ * It also supports the {@link EventStoreOperations} and {@link EventStoreQueries} contracts.
+ * <p>
+ * Each event is stored as a record with a global position, which defines the "natural" order of the event store. The global position and
+ * stream version of each event are kept in an in-memory index that is rebuilt from the segment files when the event store is created.
+ * Writes are serialized and all events of a single write are written atomically, a write that is interrupted by a crash is discarded when the event store
+ * is created the next time. Reads never take any lock and the data of the events is read directly from the memory-mapped segments.
+ * </p>
+ * <p>
+ * Deleting an event only marks it as deleted in the segment file, and updating an event appends the updated event (with the same global position and
+ * stream version) and marks the old one as deleted. The space used by deleted events is never reclaimed.
+ * </p>
+ * <p>
+ * Only one {@code FileEventStore} instance (in one JVM) may use a directory at the same time.
+ * </p>
+ */
+public class FileEventStore implements EventStore, EventStoreOperations, EventStoreQueries, AutoCloseable {
+    private static final Pattern SEGMENT_FILE_NAME = Pattern.compile("segment-(\\d{10})\\.dat");
+
+    private final FileEventStoreConfig config;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // The segments in order, only the last one is appended to
+    private final List<Segment> segments = new ArrayList<>();
+    // The location of every event keyed by global position, i.e. in natural order
+    private final ConcurrentSkipListMap<Long, RecordLocation> log = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, StreamIndex> streams = new ConcurrentHashMap<>();
+    // Guarded by writeLock
+    private long nextPosition = 1;
+    private volatile boolean closed;
+
+    /**
+     * Create an instance of {@link FileEventStore} that stores the events in the directory specified in the {@code config}.
+     * Existing segment files in the directory are opened and indexed.
+     *
+     * @param config The configuration to use
+     */
+    public FileEventStore(FileEventStoreConfig config) {
+        requireNonNull(config, FileEventStoreConfig.class.getSimpleName() + " cannot be null");
+        this.config = config;
+        try {
+            Files.createDirectories(config.directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        openSegments();
+        recover();
+    }
+
+    @Override
+    public EventStream<CloudEvent> read(String streamId, int skip, int limit) {
+        requireNonNull(streamId, "Stream id cannot be null");
+        requireOpen();
+        StreamIndex streamIndex = streams.get(streamId);
+        if (streamIndex == null) {
+            return new EventStreamImpl(streamId, 0, new long[0], 0, 0);
+        }
+        StreamEntries entries = streamIndex.entries;
+        int fromIndex = Math.min(skip, entries.size);
+        int toIndex = (int) Math.min(entries.size, (long) fromIndex + limit);
+        return new EventStreamImpl(streamId, entries.streamVersion(), entries.positions, fromIndex, toIndex);
+    }
+
+    @Override
+    public EventStream<CloudEvent> readVersionRange(String streamId, long fromVersionExclusive, long toVersionInclusive) {
+        requireValidVersionRange(streamId, fromVersionExclusive, toVersionInclusive);
+        requireOpen();
+        StreamIndex streamIndex = streams.get(streamId);
+        if (streamIndex == null) {
+            return new EventStreamImpl(streamId, 0, new long[0], 0, 0);
+        }
+        StreamEntries entries = streamIndex.entries;
+        return new EventStreamImpl(streamId, entries.streamVersion(), entries.positions, entries.indexOfFirstEventAfter(fromVersionExclusive), entries.indexOfFirstEventAfter(toVersionInclusive));
+    }
+
+    @Override
+    public Map<String, Long> streamVersions(Collection<String> streamIds) {
+        requireNonNull(streamIds, "Stream ids cannot be null");
+        requireOpen();
+        Map<String, Long> streamVersions = new LinkedHashMap<>();
+        streamIds.forEach(streamId -> {
+            StreamIndex streamIndex = streams.get(streamId);
+            streamVersions.put(streamId, streamIndex == null ? 0 : streamIndex.entries.streamVersion());
+        });
+        return streamVersions;
+    }
+
+    @Override
+    public WriteResult write(String streamId, Stream<CloudEvent> events) {
+        return write(streamId, WriteCondition.anyStreamVersion(), events);
+    }
+
+    @Override
+    public WriteResult write(String streamId, WriteCondition writeCondition, Stream<CloudEvent> events) {
+        requireNonNull(streamId, "Stream id cannot be null");
+        requireNonNull(writeCondition, WriteCondition.class.getSimpleName() + " cannot be null");
+        requireNonNull(events, "Events cannot be null");
+        return writeAtomically(Collections.singletonList(new StreamWrite(streamId, writeCondition, toList(events)))).get(0);
+    }
+
+    /**
+     * Write events to several streams. All events are written atomically, i.e. no events are written if the write condition of any stream is not fulfilled.
+     */
+    @Override
+    public List<WriteResult> writeAll(Map<String, EventStreamWrite> writes) {
+        requireNonNull(writes, "Writes cannot be null");
+        List<StreamWrite> streamWrites = writes.entrySet().stream()
+                .map(entry -> new StreamWrite(requireNonNull(entry.getKey(), "Stream id cannot be null"), requireNonNull(entry.getValue(), EventStreamWrite.class.getSimpleName() + " cannot be null").writeCondition, toList(entry.getValue().events)))
+                .collect(Collectors.toList());
+        return writeAtomically(streamWrites);
+    }
+
+    private List<WriteResult> writeAtomically(List<StreamWrite> streamWrites) {
+        writeLock.lock();
+        try {
+            requireOpen();
+            // Check all write conditions before writing anything
+            Map<String, Long> currentStreamVersions = new HashMap<>();
+            for (StreamWrite streamWrite : streamWrites) {
+                long currentStreamVersion = currentStreamVersions.computeIfAbsent(streamWrite.streamId, this::currentStreamVersion);
+                if (!isConditionFulfilledBy(streamWrite.writeCondition, currentStreamVersion)) {
+                    throw new WriteConditionNotFulfilledException(streamWrite.streamId, currentStreamVersion, streamWrite.writeCondition, String.format("%s was not fulfilled. Expected version %s but was %s.", WriteCondition.class.getSimpleName(), streamWrite.writeCondition, currentStreamVersion));
+                }
+                currentStreamVersions.put(streamWrite.streamId, currentStreamVersion + streamWrite.events.size());
+            }
+
+            int numberOfRecords = streamWrites.stream().mapToInt(streamWrite -> streamWrite.events.size()).sum();
+            List<RecordLocation> written = new ArrayList<>(numberOfRecords);
+            List<WriteResult> writeResults = new ArrayList<>(streamWrites.size());
+            long position = nextPosition;
+            try {
+                for (StreamWrite streamWrite : streamWrites) {
+                    long streamVersion = currentStreamVersion(streamWrite.streamId, written);
+                    for (CloudEvent cloudEvent : streamWrite.events) {
+                        streamVersion++;
+                        int remainingInBatch = numberOfRecords - written.size() - 1;
+                        ByteBuffer payload = CloudEventRecord.encode(position, streamWrite.streamId, streamVersion, remainingInBatch, cloudEvent);
+                        written.add(append(payload, position, streamWrite.streamId, streamVersion));
+                        position++;
+                    }
+                    writeResults.add(new WriteResult(streamWrite.streamId, streamVersion));
+                }
+                sync(written);
+            } catch (RuntimeException e) {
+                // Make sure that the events that were written are not visible when the event store is recreated
+                written.forEach(location -> location.segment.setStatus(location.offset, STATUS_DELETED));
+                throw e;
+            }
+
+            nextPosition = position;
+            for (RecordLocation location : written) {
+                log.put(location.position, location);
+                streams.computeIfAbsent(location.streamId, __ -> new StreamIndex()).append(location.streamVersion, location.position);
+            }
+            return writeResults;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // The current version of the stream, including events written in the current (not yet published) batch
+    private long currentStreamVersion(String streamId, List<RecordLocation> written) {
+        long streamVersion = currentStreamVersion(streamId);
+        for (RecordLocation location : written) {
+            if (location.streamId.equals(streamId)) {
+                streamVersion = location.streamVersion;
+            }
+        }
+        return streamVersion;
+    }
+
+    private long currentStreamVersion(String streamId) {
+        StreamIndex streamIndex = streams.get(streamId);
+        return streamIndex == null ? 0 : streamIndex.entries.streamVersion();
+    }
+
+    @Override
+    public boolean exists(String streamId) {
+        requireOpen();
+        StreamIndex streamIndex = streams.get(streamId);
+        return streamIndex != null && streamIndex.entries.size > 0;
+    }
+
+    @Override
+    public void deleteEventStream(String streamId) {
+        requireNonNull(streamId, "StreamId cannot be null");
+        modify(() -> {
+            StreamIndex streamIndex = streams.remove(streamId);
+            if (streamIndex != null) {
+                StreamEntries entries = streamIndex.entries;
+                for (int i = 0; i < entries.size; i++) {
+                    markAsDeleted(log.remove(entries.positions[i]));
+                }
+            }
+        });
+    }
+
+    @Override
+    public void deleteEvent(String cloudEventId, URI cloudEventSource) {
+        Predicate<CloudEvent> cloudEventMatchesInput = uniqueCloudEvent(cloudEventId, cloudEventSource);
+        modify(() -> findFirst(cloudEventMatchesInput).ifPresent(this::delete));
+    }
+
+    @Override
+    public void delete(Filter filter) {
+        requireNonNull(filter, "Filter cannot be null");
+        modify(() -> log.values().stream()
+                .filter(location -> matchesFilter(location.cloudEvent(), filter))
+                .collect(Collectors.toList())
+                .forEach(this::delete));
+    }
+
+    @Override
+    public Optional<CloudEvent> updateEvent(String cloudEventId, URI cloudEventSource, Function<CloudEvent, CloudEvent> updateFunction) {
+        requireNonNull(updateFunction, "Update function cannot be null");
+        Predicate<CloudEvent> cloudEventMatchesInput = uniqueCloudEvent(cloudEventId, cloudEventSource);
+        writeLock.lock();
+        try {
+            requireOpen();
+            return findFirst(cloudEventMatchesInput).map(location -> {
+                CloudEvent updatedCloudEvent = updateFunction.apply(location.cloudEvent());
+                if (updatedCloudEvent == null) {
+                    throw new IllegalArgumentException("It's not allowed to return a null CloudEvent from the update function.");
+                }
+                // Append the updated event before the old one is deleted so that it's never lost
+                ByteBuffer payload = CloudEventRecord.encode(location.position, location.streamId, location.streamVersion, 0, updatedCloudEvent);
+                RecordLocation updatedLocation = append(payload, location.position, location.streamId, location.streamVersion);
+                markAsDeleted(location);
+                sync(Arrays.asList(updatedLocation, location));
+                log.put(location.position, updatedLocation);
+                return updatedLocation.cloudEvent();
+            });
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Stream<CloudEvent> query(Filter filter, int skip, int limit, SortBy sortBy) {
+        requireNonNull(filter, Filter.class.getSimpleName() + " cannot be null");
+        requireNonNull(sortBy, SortBy.class.getSimpleName() + " cannot be null");
+        requireOpen();
+
+        if (sortBy instanceof NaturalImpl) {
+            Collection<RecordLocation> locations = ((NaturalImpl) sortBy).direction == ASCENDING ? log.values() : log.descendingMap().values();
+            return matching(locations.stream(), filter).map(PositionedCloudEvent::cloudEvent).skip(skip).limit(limit);
+        }
+
+        Comparator<PositionedCloudEvent> comparator = toComparator(sortBy);
+        Stream<PositionedCloudEvent> events = matching(log.values().stream(), filter);
+        return (comparator == null ? events : events.sorted(comparator)).map(PositionedCloudEvent::cloudEvent).skip(skip).limit(limit);
+    }
+
+    @Override
+    public long count(Filter filter) {
+        requireNonNull(filter, Filter.class.getSimpleName() + " cannot be null");
+        requireOpen();
+        if (filter instanceof Filter.All) {
+            return log.size();
+        }
+        return matching(log.values().stream(), filter).count();
+    }
+
+    @Override
+    public boolean exists(Filter filter) {
+        requireNonNull(filter, Filter.class.getSimpleName() + " cannot be null");
+        requireOpen();
+        return matching(log.values().stream(), filter).findAny().isPresent();
+    }
+
+    /**
+     * Close the segment files. The event store cannot be used after it has been closed.
+     */
+    @Override
+    public void close() {
+        writeLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            segments.forEach(segment -> {
+                segment.force();
+                segment.close();
+            });
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private Stream<PositionedCloudEvent> matching(Stream<RecordLocation> locations, Filter filter) {
+        return locations.map(location -> new PositionedCloudEvent(location.position, decode(location)))
+                .filter(event -> matchesFilter(event.cloudEvent, filter));
+    }
+
+    private Optional<RecordLocation> findFirst(Predicate<CloudEvent> predicate) {
+        return log.values().stream().filter(location -> predicate.test(location.cloudEvent())).findFirst();
+    }
+
+    // Must be called while holding the write lock
+    private void delete(RecordLocation location) {
+        log.remove(location.position, location);
+        markAsDeleted(location);
+        StreamIndex streamIndex = streams.get(location.streamId);
+        if (streamIndex != null && streamIndex.remove(location.position) && streamIndex.entries.size == 0) {
+            streams.remove(location.streamId, streamIndex);
+        }
+    }
+
+    private void modify(Runnable modification) {
+        writeLock.lock();
+        try {
+            requireOpen();
+            modification.run();
+            if (config.syncOnWrite) {
+                segments.forEach(Segment::force);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static void markAsDeleted(RecordLocation location) {
+        if (location != null) {
+            location.segment.setStatus(location.offset, STATUS_DELETED);
+        }
+    }
+
+    // Must be called while holding the write lock
+    private RecordLocation append(ByteBuffer payload, long position, String streamId, long streamVersion) {
+        Segment segment = segments.get(segments.size() - 1);
+        int offset = segment.append(payload, STATUS_ACTIVE);
+        if (offset < 0) {
+            // A record that's larger than the segment size gets a segment of its own
+            int size = (int) Math.min(Integer.MAX_VALUE, Math.max(config.segmentSize, (long) Segment.HEADER_SIZE + Segment.RECORD_HEADER_SIZE + payload.remaining()));
+            segment.seal();
+            segment.force();
+            segment = createSegment(segments.size(), size);
+            offset = segment.append(payload, STATUS_ACTIVE);
+            if (offset < 0) {
+                throw new IllegalArgumentException("Cloud event is too large to be stored (" + payload.remaining() + " bytes)");
+            }
+        }
+        return new RecordLocation(segment, offset, position, streamId, streamVersion);
+    }
+
+    private void sync(List<RecordLocation> locations) {
+        if (config.syncOnWrite) {
+            locations.stream().map(location -> location.segment).distinct().forEach(Segment::force);
+        }
+    }
+
+    private void requireOpen() {
+        if (closed) {
+            throw new IllegalStateException(FileEventStore.class.getSimpleName() + " is closed");
+        }
+    }
+
+    // Streams are consumed lazily so the event store may have been closed after the stream was created
+    private CloudEvent decode(RecordLocation location) {
+        requireOpen();
+        return location.cloudEvent();
+    }
+
+    private void openSegments() {
+        List<Path> segmentFiles;
+        try (Stream<Path> files = Files.list(config.directory)) {
+            segmentFiles = files.filter(path -> SEGMENT_FILE_NAME.matcher(path.getFileName().toString()).matches()).sorted().collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        for (Path segmentFile : segmentFiles) {
+            Matcher matcher = SEGMENT_FILE_NAME.matcher(segmentFile.getFileName().toString());
+            if (!matcher.matches() || Integer.parseInt(matcher.group(1)) != segments.size()) {
+                throw new IllegalStateException("Segment file " + segmentFile + " is out of sequence, expected segment " + segments.size());
+            }
+            segments.add(Segment.open(segmentFile, segments.size()));
+        }
+
+        if (segments.isEmpty()) {
+            createSegment(0, config.segmentSize);
+        }
+    }
+
+    private Segment createSegment(int index, int size) {
+        Segment segment = Segment.create(config.directory.resolve(String.format("segment-%010d.dat", index)), index, size);
+        segments.add(segment);
+        return segment;
+    }
+
+    // Rebuild the in-memory indexes from the segment files
+    private void recover() {
+        Map<String, List<RecordLocation>> locationsByStreamId = new HashMap<>();
+        List<RecordLocation> pendingBatch = new ArrayList<>();
+        for (Segment segment : segments) {
+            boolean isLastSegment = segment.index == segments.size() - 1;
+            int offset = Segment.HEADER_SIZE;
+            while (true) {
+                int nextOffset = segment.next(offset);
+                if (nextOffset < 0) {
+                    if (isLastSegment) {
+                        // Discard a partially written record
+                        segment.truncate(offset);
+                    } else if (!segment.isEnd(offset)) {
+                        throw new IllegalStateException("Segment " + segment + " is corrupt at offset " + offset);
+                    }
+                    break;
+                }
+
+                ByteBuffer payload = segment.payload(offset);
+                RecordLocation location = new RecordLocation(segment, offset, CloudEventRecord.position(payload), CloudEventRecord.streamId(payload), CloudEventRecord.streamVersion(payload));
+                nextPosition = Math.max(nextPosition, location.position + 1);
+                if (segment.status(offset) == STATUS_ACTIVE) {
+                    pendingBatch.add(location);
+                }
+                if (CloudEventRecord.remainingInBatch(payload) == 0) {
+                    pendingBatch.forEach(pendingLocation -> {
+                        // A later record with the same position is an updated event
+                        RecordLocation replaced = log.put(pendingLocation.position, pendingLocation);
+                        if (replaced == null) {
+                            locationsByStreamId.computeIfAbsent(pendingLocation.streamId, __ -> new ArrayList<>()).add(pendingLocation);
+                        } else {
+                            markAsDeleted(replaced);
+                        }
+                    });
+                    pendingBatch.clear();
+                }
+                offset = nextOffset;
+            }
+        }
+        // The last batch was never completely written
+        pendingBatch.forEach(FileEventStore::markAsDeleted);
+
+        locationsByStreamId.forEach((streamId, locations) -> {
+            StreamIndex streamIndex = new StreamIndex();
+            locations.stream()
+                    .sorted(comparing(location -> location.streamVersion))
+                    .forEach(location -> streamIndex.append(location.streamVersion, location.position));
+            streams.put(streamId, streamIndex);
+        });
+    }
+
+    private static List<CloudEvent> toList(Stream<CloudEvent> events) {
+        List<CloudEvent> cloudEvents = events.collect(Collectors.toList());
+        cloudEvents.forEach(cloudEvent -> {
+            if (cloudEvent.getSpecVersion() != SpecVersion.V1) {
+                throw new IllegalArgumentException("Spec version needs to be " + SpecVersion.V1);
+            }
+        });
+        return cloudEvents;
+    }
+
+    private static boolean isConditionFulfilledBy(WriteCondition writeCondition, long version) {
+        if (writeCondition.isAnyStreamVersion()) {
+            return true;
+        }
+
+        if (!(writeCondition instanceof StreamVersionWriteCondition)) {
+            return false;
+        }
+
+        StreamVersionWriteCondition c = (StreamVersionWriteCondition) writeCondition;
+        return LongConditionEvaluator.evaluate(c.condition, version);
+    }
+
+    private static Predicate<CloudEvent> uniqueCloudEvent(String cloudEventId, URI cloudEventSource) {
+        requireNonNull(cloudEventId, "CloudEvent id cannot be null");
+        requireNonNull(cloudEventSource, "CloudEvent source cannot be null");
+        return e -> e.getId().equals(cloudEventId) && e.getSource().equals(cloudEventSource);
+    }
+
+    private static Comparator<PositionedCloudEvent> toComparator(SortBy sortBy) {
+        final Comparator<PositionedCloudEvent> comparator;
+        if (sortBy instanceof NaturalImpl) {
+            Comparator<PositionedCloudEvent> temp = Comparator.comparingLong(event -> event.position);
+            comparator = ((NaturalImpl) sortBy).direction == DESCENDING ? temp.reversed() : temp;
+        } else if (sortBy instanceof SingleFieldImpl) {
+            comparator = toComparator((SingleFieldImpl) sortBy);
+        } else if (sortBy instanceof MultipleSortStepsImpl) {
+            comparator = ((MultipleSortStepsImpl) sortBy).steps.stream()
+                    .map(FileEventStore::toComparator)
+                    .filter(Objects::nonNull)
+                    .reduce(Comparator::thenComparing)
+                    .orElse(null);
+        } else {
+            throw new IllegalStateException("Internal error: Unrecognized \"sort by\" " + sortBy);
+        }
+        return comparator;
+    }
+
+    private static Comparator<PositionedCloudEvent> toComparator(SingleFieldImpl singleField) {
+        String fieldName = singleField.fieldName;
+        final Comparator<CloudEvent> comparator;
+        switch (fieldName) {
+            case TIME:
+                comparator = comparing(CloudEvent::getTime);
+                break;
+            case STREAM_VERSION:
+                comparator = comparing(OccurrentExtensionGetter::getStreamVersion);
+                break;
+            case STREAM_ID:
+                comparator = comparing(OccurrentExtensionGetter::getStreamId);
+                break;
+            case ID:
+                comparator = comparing(CloudEvent::getId);
+                break;
+            case SOURCE:
+                comparator = comparing(CloudEvent::getSource);
+                break;
+            case SUBJECT:
+                comparator = comparing(CloudEvent::getSubject);
+                break;
+            case TYPE:
+                comparator = comparing(CloudEvent::getType);
+                break;
+            case SPECVERSION:
+                comparator = comparing(CloudEvent::getSpecVersion);
+                break;
+            case DATACONTENTTYPE:
+                comparator = comparing(CloudEvent::getDataContentType);
+                break;
+            case DATASCHEMA:
+                comparator = comparing(CloudEvent::getDataSchema);
+                break;
+            default:
+                throw new IllegalStateException("Unexpected value: " + fieldName);
+        }
+
+        Comparator<PositionedCloudEvent> positionedComparator = comparing(event -> event.cloudEvent, comparator);
+        return singleField.direction == ASCENDING ? positionedComparator : positionedComparator.reversed();
+    }
+
+    private static class StreamWrite {
+        private final String streamId;
+        private final WriteCondition writeCondition;
+        private final List<CloudEvent> events;
+
+        private StreamWrite(String streamId, WriteCondition writeCondition, List<CloudEvent> events) {
+            this.streamId = streamId;
+            this.writeCondition = requireNonNull(writeCondition, WriteCondition.class.getSimpleName() + " cannot be null");
+            this.events = events;
+        }
+    }
+
+    /**
+     * Where an event is stored
+     */
+    private static class RecordLocation {
+        private final Segment segment;
+        private final int offset;
+        private final long position;
+        private final String streamId;
+        private final long streamVersion;
+
+        private RecordLocation(Segment segment, int offset, long position, String streamId, long streamVersion) {
+            this.segment = segment;
+            this.offset = offset;
+            this.position = position;
+            this.streamId = streamId;
+            this.streamVersion = streamVersion;
+        }
+
+        private CloudEvent cloudEvent() {
+            return CloudEventRecord.decode(segment.payload(offset));
+        }
+    }
+
+    private static class PositionedCloudEvent {
+        private final long position;
+        private final CloudEvent cloudEvent;
+
+        private PositionedCloudEvent(long position, CloudEvent cloudEvent) {
+            this.position = position;
+            this.cloudEvent = cloudEvent;
+        }
+
+        private CloudEvent cloudEvent() {
+            return cloudEvent;
+        }
+    }
+
+    /**
+     * The stream versions and global positions of the events in a stream, ordered by stream version. Only modified while holding the write lock,
+     * readers use the latest published {@link StreamEntries}.
+     */
+    private static class StreamIndex {
+        private volatile StreamEntries entries = new StreamEntries(new long[0], new long[0], 0);
+
+        private void append(long streamVersion, long position) {
+            StreamEntries current = entries;
+            long[] versions = current.versions;
+            long[] positions = current.positions;
+            if (current.size == versions.length) {
+                int capacity = Math.max(8, versions.length * 2);
+                versions = Arrays.copyOf(versions, capacity);
+                positions = Arrays.copyOf(positions, capacity);
+            }
+            // The slots after "current.size" are never seen by readers of the current entries
+            versions[current.size] = streamVersion;
+            positions[current.size] = position;
+            entries = new StreamEntries(versions, positions, current.size + 1);
+        }
+
+        private boolean remove(long position) {
+            StreamEntries current = entries;
+            long[] versions = new long[current.versions.length];
+            long[] positions = new long[current.positions.length];
+            int size = 0;
+            for (int i = 0; i < current.size; i++) {
+                if (current.positions[i] != position) {
+                    versions[size] = current.versions[i];
+                    positions[size] = current.positions[i];
+                    size++;
+                }
+            }
+            if (size == current.size) {
+                return false;
+            }
+            entries = new StreamEntries(versions, positions, size);
+            return true;
+        }
+    }
+
+    private static class StreamEntries {
+        private final long[] versions;
+        private final long[] positions;
+        private final int size;
+
+        private StreamEntries(long[] versions, long[] positions, int size) {
+            this.versions = versions;
+            this.positions = positions;
+            this.size = size;
+        }
+
+        private long streamVersion() {
+            return size == 0 ? 0 : versions[size - 1];
+        }
+
+        // The index of the first event whose stream version is greater than streamVersion, or size if there's no such event
+        private int indexOfFirstEventAfter(long streamVersion) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (versions[mid] <= streamVersion) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private class EventStreamImpl implements EventStream<CloudEvent> {
+        private final String streamId;
+        private final long version;
+        private final long[] positions;
+        private final int fromIndex;
+        private final int toIndex;
+
+        private EventStreamImpl(String streamId, long version, long[] positions, int fromIndex, int toIndex) {
+            this.streamId = streamId;
+            this.version = version;
+            this.positions = positions;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+        }
+
+        @Override
+        public String id() {
+            return streamId;
+        }
+
+        @Override
+        public long version() {
+            return version;
+        }
+
+        @Override
+        public Stream<CloudEvent> events() {
+            // Events are decoded lazily, and events that have been deleted after the stream was read are skipped
+            return IntStream.range(fromIndex, toIndex)
+                    .mapToObj(i -> log.get(positions[i]))
+                    .filter(Objects::nonNull)
+                    .map(FileEventStore.this::decode);
+        }
+
+        @Override
+        public String toString() {
+            return "EventStreamImpl{" +
+                    "streamId='" + streamId + '\'' +
+                    ", version=" + version +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.eventstore.file;
+
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Configuration for the {@link FileEventStore}
+ */
+public class FileEventStoreConfig {
+    /**
+     * The default size of each segment file (64 Mb)
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    public final Path directory;
+    public final int segmentSize;
+    public final boolean syncOnWrite;
+
+    private FileEventStoreConfig(Path directory, int segmentSize, boolean syncOnWrite) {
+        requireNonNull(directory, "Directory cannot be null");
+        if (segmentSize < 1024) {
+            throw new IllegalArgumentException("Segment size must be at least 1024 bytes");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncOnWrite = syncOnWrite;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FileEventStoreConfig)) return false;
+        FileEventStoreConfig that = (FileEventStoreConfig) o;
+        return segmentSize == that.segmentSize && syncOnWrite == that.syncOnWrite && Objects.equals(directory, that.directory);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(directory, segmentSize, syncOnWrite);
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", FileEventStoreConfig.class.getSimpleName() + "[", "]")
+                .add("directory=" + directory)
+                .add("segmentSize=" + segmentSize)
+                .add("syncOnWrite=" + syncOnWrite)
+                .toString();
+    }
+
+    public static final class Builder {
+        private Path directory;
+        private int segmentSize = DEFAULT_SEGMENT_SIZE;
+        private boolean syncOnWrite = false;
+
+        /**
+         * @param directory The directory in which the segment files are stored. It's created if it doesn't exist. Required.
+         * @return A same {@code Builder instance}
+         */
+        public Builder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * @param segmentSize The size, in bytes, of each segment file. A new segment file is created when the current segment is full.
+         *                    A single write larger than the segment size gets a segment of its own. Default is {@value #DEFAULT_SEGMENT_SIZE}.
+         * @return A same {@code Builder instance}
+         */
+        public Builder segmentSize(int segmentSize) {
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * Force the written events to the storage device before each write returns. When disabled (default), the events are written to the memory-mapped
+         * segment and flushed to disk by the operating system, which means that they survive a crash of the JVM but not necessarily a crash of the operating system
+         * or a power failure. Enabling it makes writes considerably slower.
+         *
+         * @param syncOnWrite {@code true} to force the events to disk on each write, {@code false} otherwise.
+         * @return A same {@code Builder instance}
+         */
+        public Builder syncOnWrite(boolean syncOnWrite) {
+            this.syncOnWrite = syncOnWrite;
+            return this;
+        }
+
+        public FileEventStoreConfig build() {
+            return new FileEventStoreConfig(directory, segmentSize, syncOnWrite);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.eventstore.file;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * An append-only, memory-mapped segment file. A segment starts with a small header followed by records:
+ * <pre>
+ * | length (int) | crc32 of payload (int) | status (byte) | payload (length - 5 bytes) |
+ * </pre>
+ * A length of {@code 0} marks the end of the records in the segment, since the file is pre-allocated with zeros. The status is the only
+ * part of a record that's ever modified after it has been written, which is how events are deleted.
+ * <p>
+ * Records are only appended by a single writer at a time, whereas any number of threads may read the records that have been written.
+ * </p>
+ */
+class Segment implements AutoCloseable {
+    static final byte STATUS_ACTIVE = 1;
+    static final byte STATUS_DELETED = 2;
+
+    private static final int MAGIC = 0x4F434346; // "OCCF"
+    private static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 9;
+
+    final int index;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    // Only accessed by the writer
+    private int writeOffset = HEADER_SIZE;
+
+    private Segment(int index, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.index = index;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static Segment create(Path path, int index, int size) {
+        try {
+            FileChannel channel = FileChannel.open(path, CREATE_NEW, READ, WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, FORMAT_VERSION);
+            return new Segment(index, path, channel, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static Segment open(Path path, int index) {
+        try {
+            FileChannel channel = FileChannel.open(path, READ, WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                channel.close();
+                throw new IllegalStateException(path + " is not an event store segment file");
+            } else if (buffer.getInt(4) != FORMAT_VERSION) {
+                channel.close();
+                throw new IllegalStateException(path + " has an unsupported format version " + buffer.getInt(4));
+            }
+            return new Segment(index, path, channel, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Append a record to the segment.
+     *
+     * @return The offset of the record in this segment, or {@code -1} if the record doesn't fit in the segment.
+     */
+    int append(ByteBuffer payload, byte status) {
+        int payloadLength = payload.remaining();
+        int offset = writeOffset;
+        if ((long) offset + RECORD_HEADER_SIZE + payloadLength > buffer.capacity()) {
+            return -1;
+        }
+
+        ByteBuffer target = buffer.duplicate();
+        target.position(offset + RECORD_HEADER_SIZE);
+        target.put(payload.duplicate());
+        buffer.putInt(offset + 4, crc(offset + RECORD_HEADER_SIZE, payloadLength));
+        buffer.put(offset + 8, status);
+        // The length is written last, a record isn't visible when recovering until it's written
+        buffer.putInt(offset, RECORD_HEADER_SIZE - 4 + payloadLength);
+        writeOffset = offset + RECORD_HEADER_SIZE + payloadLength;
+        return offset;
+    }
+
+    /**
+     * @return A read-only view of the payload of the record at the given {@code offset}. The bytes are not copied.
+     */
+    ByteBuffer payload(int offset) {
+        int length = buffer.getInt(offset);
+        ByteBuffer payload = buffer.asReadOnlyBuffer();
+        payload.limit(offset + 4 + length);
+        payload.position(offset + RECORD_HEADER_SIZE);
+        return payload.slice();
+    }
+
+    byte status(int offset) {
+        return buffer.get(offset + 8);
+    }
+
+    void setStatus(int offset, byte status) {
+        buffer.put(offset + 8, status);
+    }
+
+    /**
+     * Find the offset of the record following the record at {@code offset}, validating the record in the process.
+     *
+     * @return The offset of the next record, or {@code -1} if there's no valid record at {@code offset}.
+     */
+    int next(int offset) {
+        if (offset + RECORD_HEADER_SIZE > buffer.capacity()) {
+            return -1;
+        }
+        int length = buffer.getInt(offset);
+        if (length < RECORD_HEADER_SIZE - 4 || (long) offset + 4 + length > buffer.capacity()) {
+            return -1;
+        }
+        int payloadLength = length - (RECORD_HEADER_SIZE - 4);
+        if (buffer.getInt(offset + 4) != crc(offset + RECORD_HEADER_SIZE, payloadLength)) {
+            return -1;
+        }
+        return offset + 4 + length;
+    }
+
+    /**
+     * @return {@code true} if {@code offset} is the end of the records in this segment
+     */
+    boolean isEnd(int offset) {
+        return offset + 4 > buffer.capacity() || buffer.getInt(offset) == 0;
+    }
+
+    /**
+     * Mark the end of the records in this segment, no more records will be appended to it.
+     */
+    void seal() {
+        if (writeOffset + 4 <= buffer.capacity()) {
+            buffer.putInt(writeOffset, 0);
+        }
+    }
+
+    /**
+     * Continue appending at {@code offset}, discarding whatever (partially written) data that exists after it.
+     */
+    void truncate(int offset) {
+        for (int i = offset; i < buffer.capacity(); i++) {
+            if (buffer.get(i) != 0) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+        writeOffset = offset;
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    private int crc(int offset, int length) {
+        ByteBuffer bytes = buffer.duplicate();
+        bytes.limit(offset + length);
+        bytes.position(offset);
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes);
+        return (int) crc32.getValue();
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+}
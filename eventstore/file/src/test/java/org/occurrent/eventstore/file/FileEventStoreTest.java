@@ -0,0 +1,463 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.eventstore.file;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.io.TempDir;
+import org.occurrent.domain.DomainEvent;
+import org.occurrent.domain.NameDefined;
+import org.occurrent.domain.NameWasChanged;
+import org.occurrent.eventstore.api.SortBy;
+import org.occurrent.eventstore.api.WriteCondition;
+import org.occurrent.eventstore.api.WriteConditionNotFulfilledException;
+import org.occurrent.eventstore.api.WriteResult;
+import org.occurrent.eventstore.api.blocking.EventStream;
+import org.occurrent.eventstore.api.blocking.EventStreamWrite;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_VERSION;
+import static org.occurrent.condition.Condition.gte;
+import static org.occurrent.eventstore.api.SortBy.SortDirection.ASCENDING;
+import static org.occurrent.eventstore.api.SortBy.SortDirection.DESCENDING;
+import static org.occurrent.eventstore.api.WriteCondition.streamVersionEq;
+import static org.occurrent.filter.Filter.*;
+import static org.occurrent.functional.CheckedFunction.unchecked;
+import static org.occurrent.time.TimeConversion.toLocalDateTime;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+public class FileEventStoreTest {
+
+    private static final URI NAME_SOURCE = URI.create("http://name");
+
+    @TempDir
+    Path directory;
+
+    private ObjectMapper objectMapper;
+    private FileEventStore eventStore;
+
+    @BeforeEach
+    void create_event_store() {
+        objectMapper = new ObjectMapper();
+        eventStore = new FileEventStore(new FileEventStoreConfig.Builder().directory(directory).build());
+    }
+
+    @AfterEach
+    void close_event_store() {
+        eventStore.close();
+    }
+
+    @Test
+    void read_and_write() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+        DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(1), "Jan Doe");
+
+        // When
+        WriteResult writeResult = persist("name", event1, event2);
+
+        // Then
+        EventStream<CloudEvent> eventStream = eventStore.read("name");
+        assertAll(
+                () -> assertThat(writeResult).isEqualTo(new WriteResult("name", 2)),
+                () -> assertThat(eventStream.version()).isEqualTo(2),
+                () -> assertThat(eventStream.events().map(deserialize())).containsExactly(event1, event2),
+                () -> assertThat(eventStream.events().map(e -> e.getExtension(STREAM_ID))).containsOnly("name"),
+                () -> assertThat(eventStream.events().map(e -> e.getExtension(STREAM_VERSION))).containsExactly(1L, 2L),
+                () -> assertThat(eventStore.read("name", 1, 1).events().map(deserialize())).containsExactly(event2),
+                () -> assertThat(eventStore.exists("name")).isTrue(),
+                () -> assertThat(eventStore.exists("unknown")).isFalse()
+        );
+    }
+
+    @Test
+    void read_version_range_returns_the_events_whose_stream_version_is_in_the_range() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+        DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+        DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Hello Doe");
+        persist("name", event1, event2, event3);
+        eventStore.deleteEvent(event2.getEventId(), NAME_SOURCE);
+
+        // When
+        EventStream<CloudEvent> eventStream = eventStore.readVersionRange("name", 0, 2);
+
+        // Then
+        assertAll(
+                () -> assertThat(eventStream.version()).isEqualTo(3),
+                () -> assertThat(eventStream.events().map(deserialize())).containsExactly(event1),
+                () -> assertThat(eventStore.readAfterVersion("name", 1).events().map(deserialize())).containsExactly(event3)
+        );
+    }
+
+    @Test
+    void cloud_event_attributes_and_extensions_are_preserved() {
+        // Given
+        CloudEvent cloudEvent = CloudEventBuilder.v1()
+                .withId(UUID.randomUUID().toString())
+                .withSource(NAME_SOURCE)
+                .withType("type")
+                .withSubject("subject")
+                .withDataContentType("application/json")
+                .withDataSchema(URI.create("urn:schema"))
+                .withTime(OffsetDateTime.of(2021, 3, 4, 10, 11, 12, 123456789, UTC))
+                .withExtension("stringext", "value")
+                .withExtension("intext", 42)
+                .withExtension("booleanext", true)
+                .withData("{\"name\":\"John Doe\"}".getBytes())
+                .build();
+
+        // When
+        eventStore.write("name", Stream.of(cloudEvent));
+
+        // Then
+        CloudEvent storedCloudEvent = eventStore.read("name").events().findFirst().orElseThrow(IllegalStateException::new);
+        assertAll(
+                () -> assertThat(storedCloudEvent.getId()).isEqualTo(cloudEvent.getId()),
+                () -> assertThat(storedCloudEvent.getSource()).isEqualTo(cloudEvent.getSource()),
+                () -> assertThat(storedCloudEvent.getType()).isEqualTo(cloudEvent.getType()),
+                () -> assertThat(storedCloudEvent.getSubject()).isEqualTo(cloudEvent.getSubject()),
+                () -> assertThat(storedCloudEvent.getDataContentType()).isEqualTo(cloudEvent.getDataContentType()),
+                () -> assertThat(storedCloudEvent.getDataSchema()).isEqualTo(cloudEvent.getDataSchema()),
+                () -> assertThat(storedCloudEvent.getTime()).isEqualTo(cloudEvent.getTime()),
+                () -> assertThat(storedCloudEvent.getExtension("stringext")).isEqualTo("value"),
+                () -> assertThat(storedCloudEvent.getExtension("intext")).isEqualTo(42),
+                () -> assertThat(storedCloudEvent.getExtension("booleanext")).isEqualTo(true),
+                () -> assertThat(storedCloudEvent.getData().toBytes()).isEqualTo(cloudEvent.getData().toBytes())
+        );
+    }
+
+    @Nested
+    @DisplayName("write condition")
+    class WriteConditionTest {
+
+        @Test
+        void writes_events_when_write_condition_is_fulfilled() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            persist("name", event1);
+
+            // When
+            WriteResult writeResult = eventStore.write("name", streamVersionEq(1), Stream.of(event2).map(convertDomainEventToCloudEvent()));
+
+            // Then
+            assertAll(
+                    () -> assertThat(writeResult).isEqualTo(new WriteResult("name", 2)),
+                    () -> assertThat(eventStore.read("name").events().map(deserialize())).containsExactly(event1, event2)
+            );
+        }
+
+        @Test
+        void throws_write_condition_not_fulfilled_exception_when_write_condition_is_not_fulfilled() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            persist("name", event1);
+
+            // When
+            Throwable throwable = catchThrowable(() -> eventStore.write("name", streamVersionEq(0), Stream.of(event2).map(convertDomainEventToCloudEvent())));
+
+            // Then
+            assertAll(
+                    () -> assertThat(throwable).isExactlyInstanceOf(WriteConditionNotFulfilledException.class).hasMessage("WriteCondition was not fulfilled. Expected version to be equal to 0 but was 1."),
+                    () -> assertThat(eventStore.read("name").events().map(deserialize())).containsExactly(event1)
+            );
+        }
+
+        @Test
+        void write_all_writes_no_events_when_the_write_condition_of_any_stream_is_not_fulfilled() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameDefined(UUID.randomUUID().toString(), now, "Hello Doe");
+            persist("name1", event1);
+
+            Map<String, EventStreamWrite> writes = new LinkedHashMap<>();
+            writes.put("name2", EventStreamWrite.of(0, convertDomainEventToCloudEvent().apply(event3)));
+            writes.put("name1", EventStreamWrite.of(0, convertDomainEventToCloudEvent().apply(event2)));
+
+            // When
+            Throwable throwable = catchThrowable(() -> eventStore.writeAll(writes));
+
+            // Then
+            assertAll(
+                    () -> assertThat(throwable).isExactlyInstanceOf(WriteConditionNotFulfilledException.class),
+                    () -> assertThat(eventStore.exists("name2")).isFalse(),
+                    () -> assertThat(eventStore.read("name1").version()).isEqualTo(1)
+            );
+        }
+    }
+
+    @Nested
+    @DisplayName("durability")
+    class Durability {
+
+        @Test
+        void events_are_read_from_the_segment_files_when_the_event_store_is_recreated() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameDefined(UUID.randomUUID().toString(), now, "Hello Doe");
+            persist("name1", event1, event2);
+            persist("name2", event3);
+
+            // When
+            recreateEventStore(FileEventStoreConfig.DEFAULT_SEGMENT_SIZE);
+
+            // Then
+            WriteResult writeResult = persist("name1", new NameWasChanged(UUID.randomUUID().toString(), now, "Another Doe"));
+            assertAll(
+                    () -> assertThat(writeResult).isEqualTo(new WriteResult("name1", 3)),
+                    () -> assertThat(eventStore.all().map(deserialize()).limit(3)).containsExactly(event1, event2, event3),
+                    () -> assertThat(eventStore.count()).isEqualTo(4)
+            );
+        }
+
+        @Test
+        void events_are_written_to_new_segments_when_a_segment_is_full() throws IOException {
+            // Given
+            Path segmentDirectory = directory.resolve("small-segments");
+            recreateEventStore(segmentDirectory, 1024);
+            LocalDateTime now = LocalDateTime.now();
+            List<DomainEvent> events = IntStream.range(0, 50).mapToObj(i -> new NameWasChanged(UUID.randomUUID().toString(), now, "name" + i)).collect(Collectors.toList());
+
+            // When
+            events.forEach(event -> persist("name", event));
+            recreateEventStore(segmentDirectory, 1024);
+
+            // Then
+            try (Stream<Path> files = Files.list(segmentDirectory)) {
+                assertThat(files.count()).isGreaterThan(1);
+            }
+            assertAll(
+                    () -> assertThat(eventStore.read("name").version()).isEqualTo(50),
+                    () -> assertThat(eventStore.read("name").events().map(deserialize())).containsExactlyElementsOf(events)
+            );
+        }
+
+        @Test
+        void partially_written_records_are_discarded_when_the_event_store_is_recreated() throws IOException {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            persist("name", event1);
+            eventStore.close();
+            Path segmentFile = directory.resolve("segment-0000000000.dat");
+            int endOfRecords = (int) (Segment.HEADER_SIZE + 4 + ByteBuffer.wrap(Files.readAllBytes(segmentFile), Segment.HEADER_SIZE, 4).getInt());
+            try (FileChannel channel = FileChannel.open(segmentFile, StandardOpenOption.WRITE)) {
+                // A record whose length was written but whose content wasn't
+                channel.write(ByteBuffer.allocate(8).putInt(100).putInt(12345).flip(), endOfRecords);
+            }
+
+            // When
+            eventStore = new FileEventStore(new FileEventStoreConfig.Builder().directory(directory).build());
+
+            // Then
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            persist("name", event2);
+            recreateEventStore(FileEventStoreConfig.DEFAULT_SEGMENT_SIZE);
+            assertThat(eventStore.read("name").events().map(deserialize())).containsExactly(event1, event2);
+        }
+    }
+
+    @Nested
+    @DisplayName("operations")
+    class Operations {
+
+        @Test
+        void deleted_and_updated_events_are_persisted() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            String eventId2 = UUID.randomUUID().toString();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(eventId2, now, "Jan Doe");
+            DomainEvent event3 = new NameDefined(UUID.randomUUID().toString(), now, "Hello Doe");
+            DomainEvent event4 = new NameDefined(UUID.randomUUID().toString(), now, "Another Doe");
+            persist("name1", event1, event2);
+            persist("name2", event3);
+            persist("name3", event4);
+            NameWasChanged updatedEvent2 = new NameWasChanged(eventId2, now, "Updated Doe");
+
+            // When
+            eventStore.deleteEventStream("name2");
+            eventStore.deleteEvent(event4.getEventId(), NAME_SOURCE);
+            Optional<CloudEvent> updatedCloudEvent = eventStore.updateEvent(eventId2, NAME_SOURCE, c -> CloudEventBuilder.v1(c).withData(unchecked(objectMapper::writeValueAsBytes).apply(updatedEvent2)).build());
+            recreateEventStore(FileEventStoreConfig.DEFAULT_SEGMENT_SIZE);
+
+            // Then
+            assertAll(
+                    () -> assertThat(updatedCloudEvent.map(deserialize())).hasValue(updatedEvent2),
+                    () -> assertThat(eventStore.exists("name2")).isFalse(),
+                    () -> assertThat(eventStore.exists("name3")).isFalse(),
+                    () -> assertThat(eventStore.read("name1").events().map(deserialize())).containsExactly(event1, updatedEvent2),
+                    () -> assertThat(eventStore.all().map(deserialize())).containsExactly(event1, updatedEvent2)
+            );
+        }
+
+        @Test
+        void delete_by_filter_deletes_matching_events() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            persist("name", event1, event2);
+
+            // When
+            eventStore.delete(type(NameDefined.class.getName()));
+
+            // Then
+            assertAll(
+                    () -> assertThat(eventStore.read("name").events().map(deserialize())).containsExactly(event2),
+                    () -> assertThat(eventStore.read("name").version()).isEqualTo(2),
+                    () -> assertThat(eventStore.count(type(NameDefined.class.getName()))).isZero()
+            );
+        }
+    }
+
+    @Nested
+    @DisplayName("queries")
+    class Queries {
+
+        @Test
+        void query_returns_events_in_the_requested_order() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now.plusHours(2), "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameDefined(UUID.randomUUID().toString(), now.plusHours(1), "Hello Doe");
+            persist("name2", event1);
+            persist("name1", event2, event3);
+
+            // Then
+            assertAll(
+                    () -> assertThat(eventStore.all().map(deserialize())).containsExactly(event1, event2, event3),
+                    () -> assertThat(eventStore.all(SortBy.natural(DESCENDING)).map(deserialize())).containsExactly(event3, event2, event1),
+                    () -> assertThat(eventStore.all(SortBy.time(ASCENDING)).map(deserialize())).containsExactly(event2, event3, event1),
+                    () -> assertThat(eventStore.all(1, 1).map(deserialize())).containsExactly(event2),
+                    () -> assertThat(eventStore.query(type(NameDefined.class.getName()).and(time(gte(now.plusMinutes(90).atOffset(UTC))))).map(deserialize())).containsExactly(event1),
+                    () -> assertThat(eventStore.count(streamId("name1"))).isEqualTo(2),
+                    () -> assertThat(eventStore.exists(subject("Hello Doe"))).isTrue()
+            );
+        }
+    }
+
+    @Nested
+    @DisplayName("close")
+    class Close {
+
+        @Test
+        void reading_from_a_closed_event_store_throws_illegal_state_exception() {
+            // Given
+            persist("name", new NameDefined(UUID.randomUUID().toString(), LocalDateTime.now(), "John Doe"));
+
+            // When
+            eventStore.close();
+
+            // Then
+            assertAll(
+                    () -> assertThat(catchThrowable(() -> eventStore.read("name"))).isExactlyInstanceOf(IllegalStateException.class),
+                    () -> assertThat(catchThrowable(() -> eventStore.readVersionRange("name", 0, 1))).isExactlyInstanceOf(IllegalStateException.class),
+                    () -> assertThat(catchThrowable(() -> eventStore.exists("name"))).isExactlyInstanceOf(IllegalStateException.class),
+                    () -> assertThat(catchThrowable(() -> eventStore.streamVersions(Collections.singletonList("name")))).isExactlyInstanceOf(IllegalStateException.class),
+                    () -> assertThat(catchThrowable(() -> eventStore.all())).isExactlyInstanceOf(IllegalStateException.class),
+                    () -> assertThat(catchThrowable(() -> eventStore.count())).isExactlyInstanceOf(IllegalStateException.class),
+                    () -> assertThat(catchThrowable(() -> eventStore.exists(subject("John Doe")))).isExactlyInstanceOf(IllegalStateException.class)
+            );
+        }
+
+        @Test
+        void consuming_an_event_stream_that_was_read_before_the_event_store_was_closed_throws_illegal_state_exception() {
+            // Given
+            persist("name", new NameDefined(UUID.randomUUID().toString(), LocalDateTime.now(), "John Doe"));
+            EventStream<CloudEvent> eventStream = eventStore.read("name");
+            Stream<CloudEvent> all = eventStore.all();
+
+            // When
+            eventStore.close();
+
+            // Then
+            assertAll(
+                    () -> assertThat(catchThrowable(() -> eventStream.events().count())).isExactlyInstanceOf(IllegalStateException.class),
+                    () -> assertThat(catchThrowable(all::count)).isExactlyInstanceOf(IllegalStateException.class)
+            );
+        }
+    }
+
+    private void recreateEventStore(int segmentSize) {
+        recreateEventStore(directory, segmentSize);
+    }
+
+    private void recreateEventStore(Path directory, int segmentSize) {
+        eventStore.close();
+        eventStore = new FileEventStore(new FileEventStoreConfig.Builder().directory(directory).segmentSize(segmentSize).build());
+    }
+
+    private WriteResult persist(String streamId, DomainEvent... events) {
+        return eventStore.write(streamId, WriteCondition.anyStreamVersion(), Arrays.stream(events).map(convertDomainEventToCloudEvent()));
+    }
+
+    private Function<DomainEvent, CloudEvent> convertDomainEventToCloudEvent() {
+        return e -> CloudEventBuilder.v1()
+                .withId(e.getEventId())
+                .withSource(NAME_SOURCE)
+                .withType(e.getClass().getName())
+                .withTime(toLocalDateTime(e.getTimestamp()).atOffset(UTC))
+                .withSubject(e.getName())
+                .withData(unchecked(objectMapper::writeValueAsBytes).apply(e))
+                .build();
+    }
+
+    private Function<CloudEvent, DomainEvent> deserialize() {
+        return cloudEvent -> {
+            try {
+                return (DomainEvent) objectMapper.readValue(cloudEvent.getData().toBytes(), Class.forName(cloudEvent.getType()));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        };
+    }
+}
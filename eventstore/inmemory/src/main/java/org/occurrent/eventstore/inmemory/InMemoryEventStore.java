@@ -31,30 +31,31 @@ import org.occurrent.eventstore.api.blocking.EventStore;
 import org.occurrent.eventstore.api.blocking.EventStoreOperations;
 import org.occurrent.eventstore.api.blocking.EventStoreQueries;
 import org.occurrent.eventstore.api.blocking.EventStream;
+import org.occurrent.eventstore.inmemory.SecondaryIndexes.Candidates;
 import org.occurrent.filter.Filter;
 import org.occurrent.functionalsupport.internal.FunctionalSupport.Pair;
 
 import java.net.URI;
 import java.util.*;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.LongStream;
 import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
 
 import static io.cloudevents.core.v1.CloudEventV1.*;
 import static java.util.Comparator.comparing;
 import static java.util.Objects.requireNonNull;
-import static java.util.Spliterators.spliteratorUnknownSize;
 import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
 import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_VERSION;
 import static org.occurrent.eventstore.api.SortBy.SortDirection.ASCENDING;
 import static org.occurrent.eventstore.api.SortBy.SortDirection.DESCENDING;
+import static org.occurrent.eventstore.api.internal.VersionRange.requireValidVersionRange;
 import static org.occurrent.functionalsupport.internal.FunctionalSupport.not;
 import static org.occurrent.functionalsupport.internal.FunctionalSupport.zip;
 import static org.occurrent.inmemory.filtermatching.FilterMatcher.matchesFilter;
@@ -62,11 +63,23 @@ import static org.occurrent.inmemory.filtermatching.FilterMatcher.matchesFilter;
 /**
  * This is an {@link EventStore} that stores events in-memory. This is mainly useful for testing
  * and/or demo purposes. It also supports the {@link EventStoreOperations} contract.
+ * <p>
+ * Each event stream is guarded by its own lock, so writes to different streams never contend with each other. The events of a stream are
+ * kept in an append-only array that is published to readers after each write, which means that writes append in (amortized) constant time and
+ * that reads don't need to take any lock. All events are also appended to a global log that is used for queries and preserves the natural
+ * (insertion) order of the events. Secondary indexes can be enabled using {@link InMemoryEventStoreConfig} to avoid iterating the global log
+ * for queries that filter on the indexed fields. The events can also be stored off-heap, see {@link InMemoryEventStoreConfig.Builder#offHeap(boolean)}.
+ * </p>
  */
 public class InMemoryEventStore implements EventStore, EventStoreOperations, EventStoreQueries {
 
-    // We cannot use ConcurrentMap since it doesn't maintain insertion order
-    private final Map<String, List<CloudEvent>> state = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final ConcurrentMap<String, EventStreamState> streams = new ConcurrentHashMap<>();
+    // All events keyed by their sequence number, i.e. in insertion order which is the "natural" order of the event store
+    private final ConcurrentSkipListMap<Long, StoredEvent> log = new ConcurrentSkipListMap<>();
+    private final AtomicLong sequenceNumber = new AtomicLong();
+    private final SecondaryIndexes indexes;
+    // Null unless the events are stored off-heap
+    private final OffHeapEventStorage offHeapStorage;
 
     private final Consumer<Stream<CloudEvent>> listener;
 
@@ -88,21 +101,61 @@ public class InMemoryEventStore implements EventStore, EventStoreOperations, Eve
      * @param listener A listener that will be invoked after events have been written to the datastore (synchronously!)
      */
     public InMemoryEventStore(Consumer<Stream<CloudEvent>> listener) {
+        this(listener, new InMemoryEventStoreConfig.Builder().build());
+    }
+
+    /**
+     * Create an instance of {@link InMemoryEventStore} with the given configuration
+     *
+     * @param config The configuration to use
+     */
+    public InMemoryEventStore(InMemoryEventStoreConfig config) {
+        // @formatter:off
+        this(__ -> {}, config);
+        // @formatter:on
+    }
+
+    /**
+     * Create an instance of {@link InMemoryEventStore} with the given configuration that has a <code>listener</code> that will be invoked
+     * after events have been written to the event store.
+     *
+     * @param listener A listener that will be invoked after events have been written to the datastore (synchronously!)
+     * @param config   The configuration to use
+     * @see #InMemoryEventStore(Consumer)
+     */
+    public InMemoryEventStore(Consumer<Stream<CloudEvent>> listener, InMemoryEventStoreConfig config) {
         if (listener == null) {
             throw new IllegalArgumentException("listener cannot be null");
         }
+        requireNonNull(config, InMemoryEventStoreConfig.class.getSimpleName() + " cannot be null");
         this.listener = listener;
+        this.indexes = new SecondaryIndexes(config.indexedFields);
+        this.offHeapStorage = config.offHeap ? new OffHeapEventStorage(config.slabSize) : null;
     }
 
     @Override
     public EventStream<CloudEvent> read(String streamId, int skip, int limit) {
-        List<CloudEvent> events = state.get(streamId);
-        if (events == null) {
+        EventStreamState eventStreamState = streams.get(streamId);
+        if (eventStreamState == null) {
             return new EventStreamImpl(streamId, 0, Collections.emptyList());
-        } else if (skip == 0 && limit == Integer.MAX_VALUE) {
-            return new EventStreamImpl(streamId, calculateStreamVersion(events), events);
         }
-        return new EventStreamImpl(streamId, calculateStreamVersion(events), events.subList(skip, limit));
+        StoredEvents events = eventStreamState.events;
+        int fromIndex = Math.min(skip, events.size);
+        int toIndex = (int) Math.min(events.size, (long) fromIndex + limit);
+        return new EventStreamImpl(streamId, events.streamVersion(), new CloudEventListView(events.array, fromIndex, toIndex));
+    }
+
+    @Override
+    public EventStream<CloudEvent> readVersionRange(String streamId, long fromVersionExclusive, long toVersionInclusive) {
+        requireValidVersionRange(streamId, fromVersionExclusive, toVersionInclusive);
+        EventStreamState eventStreamState = streams.get(streamId);
+        if (eventStreamState == null) {
+            return new EventStreamImpl(streamId, 0, Collections.emptyList());
+        }
+        StoredEvents events = eventStreamState.events;
+        int fromIndex = events.indexOfFirstEventAfter(fromVersionExclusive);
+        int toIndex = events.indexOfFirstEventAfter(toVersionInclusive);
+        return new EventStreamImpl(streamId, events.streamVersion(), new CloudEventListView(events.array, fromIndex, toIndex));
     }
 
     @Override
@@ -110,36 +163,39 @@ public class InMemoryEventStore implements EventStore, EventStoreOperations, Eve
         requireTrue(writeCondition != null, WriteCondition.class.getSimpleName() + " cannot be null");
         Stream<CloudEvent> cloudEventStream = events.peek(e -> requireTrue(e.getSpecVersion() == SpecVersion.V1, "Spec version needs to be " + SpecVersion.V1));
 
-        final AtomicReference<List<CloudEvent>> newCloudEvents = new AtomicReference<>();
-        final AtomicLong currentStreamVersionContainer = new AtomicLong();
-        state.compute(streamId, (__, currentEvents) -> {
-            long currentStreamVersion = calculateStreamVersion(currentEvents);
-            currentStreamVersionContainer.set(currentStreamVersion);
-
-            if (currentEvents == null && isConditionFulfilledBy(writeCondition, 0)) {
-                List<CloudEvent> cloudEvents = applyOccurrentCloudEventExtension(cloudEventStream, streamId, 0);
-                newCloudEvents.set(cloudEvents);
-                return cloudEvents;
-            } else if (currentEvents != null && isConditionFulfilledBy(writeCondition, currentStreamVersion)) {
-                List<CloudEvent> eventList = new ArrayList<>(currentEvents);
-                List<CloudEvent> newEvents = applyOccurrentCloudEventExtension(cloudEventStream, streamId, currentStreamVersion);
-                newCloudEvents.set(newEvents);
-                eventList.addAll(newEvents);
-                return eventList;
-            } else {
-                throw new WriteConditionNotFulfilledException(streamId, currentStreamVersion, writeCondition, String.format("%s was not fulfilled. Expected version %s but was %s.", WriteCondition.class.getSimpleName(), writeCondition.toString(), currentStreamVersion));
+        List<CloudEvent> addedEvents;
+        long currentStreamVersion;
+        while (true) {
+            EventStreamState eventStreamState = streams.computeIfAbsent(streamId, EventStreamState::new);
+            synchronized (eventStreamState) {
+                if (eventStreamState.removed) {
+                    // The stream was deleted after we got hold of it, try again with a new one
+                    continue;
+                }
+
+                currentStreamVersion = eventStreamState.events.streamVersion();
+                if (!isConditionFulfilledBy(writeCondition, currentStreamVersion)) {
+                    if (!eventStreamState.exists) {
+                        // Don't leave an empty stream behind when the first write to the stream failed
+                        eventStreamState.remove(streams);
+                    }
+                    throw new WriteConditionNotFulfilledException(streamId, currentStreamVersion, writeCondition, String.format("%s was not fulfilled. Expected version %s but was %s.", WriteCondition.class.getSimpleName(), writeCondition.toString(), currentStreamVersion));
+                }
+
+                addedEvents = applyOccurrentCloudEventExtension(cloudEventStream, streamId, currentStreamVersion);
+                eventStreamState.append(addedEvents);
+                break;
             }
-        });
+        }
 
         final WriteResult writeResult;
-        List<CloudEvent> addedEvents = newCloudEvents.get();
-        if (addedEvents != null && !addedEvents.isEmpty()) {
+        if (!addedEvents.isEmpty()) {
             listener.accept(addedEvents.stream());
             CloudEvent cloudEvent = addedEvents.get(addedEvents.size() - 1);
             long streamVersion = OccurrentExtensionGetter.getStreamVersion(cloudEvent);
             writeResult = new WriteResult(streamId, streamVersion);
         } else {
-            writeResult = new WriteResult(streamId, currentStreamVersionContainer.get());
+            writeResult = new WriteResult(streamId, currentStreamVersion);
         }
 
         return writeResult;
@@ -158,7 +214,8 @@ public class InMemoryEventStore implements EventStore, EventStoreOperations, Eve
 
     @Override
     public boolean exists(String streamId) {
-        return state.containsKey(streamId);
+        EventStreamState eventStreamState = streams.get(streamId);
+        return eventStreamState != null && eventStreamState.exists;
     }
 
     private static boolean isConditionFulfilledBy(WriteCondition writeCondition, long version) {
@@ -177,7 +234,15 @@ public class InMemoryEventStore implements EventStore, EventStoreOperations, Eve
     @Override
     public void deleteEventStream(String streamId) {
         requireNonNull(streamId, "StreamId cannot be null");
-        state.remove(streamId);
+        EventStreamState eventStreamState = streams.get(streamId);
+        if (eventStreamState == null) {
+            return;
+        }
+
+        synchronized (eventStreamState) {
+            eventStreamState.remove(streams);
+            eventStreamState.removeEvents(__ -> true);
+        }
     }
 
     @Override
@@ -189,19 +254,26 @@ public class InMemoryEventStore implements EventStore, EventStoreOperations, Eve
             return;
         }
 
-        state.computeIfPresent(streamId, (__, events) -> {
-            List<CloudEvent> newEvents = events.stream().filter(cloudEventMatchesInput.negate()).collect(Collectors.toList());
-            if (newEvents.isEmpty()) {
-                return null;
+        EventStreamState eventStreamState = streams.get(streamId);
+        if (eventStreamState == null) {
+            return;
+        }
+
+        synchronized (eventStreamState) {
+            if (eventStreamState.removeEvents(cloudEventMatchesInput) && eventStreamState.events.size == 0) {
+                eventStreamState.remove(streams);
             }
-            return newEvents;
-        });
+        }
     }
 
     @Override
     public void delete(Filter filter) {
         requireNonNull(filter, "Filter cannot be null");
-        state.replaceAll((streamId, cloudEvents) -> cloudEvents.stream().filter(not(cloudEvent -> matchesFilter(cloudEvent, filter))).collect(Collectors.toList()));
+        for (EventStreamState eventStreamState : streams.values()) {
+            synchronized (eventStreamState) {
+                eventStreamState.removeEvents(cloudEvent -> matchesFilter(cloudEvent, filter));
+            }
+        }
     }
 
     @Override
@@ -210,19 +282,31 @@ public class InMemoryEventStore implements EventStore, EventStoreOperations, Eve
 
         Predicate<CloudEvent> cloudEventPredicate = uniqueCloudEvent(cloudEventId, cloudEventSource);
         return findStreamIdByCloudEvent(cloudEventPredicate)
-                .map(streamId -> state.computeIfPresent(streamId, (__, events) ->
-                        events.stream().map(cloudEvent -> {
+                .map(streams::get)
+                .flatMap(eventStreamState -> {
+                    synchronized (eventStreamState) {
+                        StoredEvents events = eventStreamState.events;
+                        Map<StoredEvent, CloudEvent> updatedCloudEvents = new LinkedHashMap<>();
+                        for (int i = 0; i < events.size; i++) {
+                            StoredEvent storedEvent = events.array[i];
+                            CloudEvent cloudEvent = storedEvent.cloudEvent();
                             if (cloudEventPredicate.test(cloudEvent)) {
                                 CloudEvent updatedCloudEvent = updateFunction.apply(cloudEvent);
                                 if (updatedCloudEvent == null) {
                                     throw new IllegalArgumentException("It's not allowed to return a null CloudEvent from the update function.");
                                 }
-                                return updatedCloudEvent;
-                            } else {
-                                return cloudEvent;
+                                updatedCloudEvents.put(storedEvent, updatedCloudEvent);
                             }
-                        }).collect(Collectors.toList())))
-                .flatMap(events -> events.stream().filter(cloudEventPredicate).findFirst());
+                        }
+                        // The stored events are shared with the log, so the update is visible to queries as well
+                        updatedCloudEvents.forEach((storedEvent, updatedCloudEvent) -> {
+                            indexes.remove(storedEvent, storedEvent.cloudEvent());
+                            storedEvent.update(updatedCloudEvent);
+                            indexes.add(storedEvent, updatedCloudEvent);
+                        });
+                        return new CloudEventListView(events.array, 0, events.size).stream().filter(cloudEventPredicate).findFirst();
+                    }
+                });
     }
 
     @Override
@@ -230,22 +314,17 @@ public class InMemoryEventStore implements EventStore, EventStoreOperations, Eve
         Objects.requireNonNull(filter, Filter.class.getSimpleName() + " cannot be null");
         Objects.requireNonNull(sortBy, SortBy.class.getSimpleName() + " cannot be null");
 
-        Stream<CloudEvent> stream;
-        synchronized (state) {
-            stream = state.values().stream().flatMap(List::stream).filter(cloudEvent -> matchesFilter(cloudEvent, filter));
-        }
-
+        NavigableMap<Long, StoredEvent> candidates = candidates(filter);
         final Stream<CloudEvent> streamToSort;
         final Map<CloudEvent, Integer> cloudEventPositionCache;
         if (sortBy instanceof NaturalImpl) {
             SortDirection order = ((NaturalImpl) sortBy).direction;
-            if (order == ASCENDING) {
-                return stream.skip(skip).limit(limit);
-            } else {
-                Iterator<CloudEvent> cloudEventIterator = stream.collect(Collectors.toCollection(LinkedList::new)).descendingIterator();
-                return StreamSupport.stream(spliteratorUnknownSize(cloudEventIterator, Spliterator.ORDERED), false).skip(skip).limit(limit);
-            }
-        } else if (isMultipleSortStepsContainingNaturalOrder(sortBy)) {
+            Collection<StoredEvent> storedEvents = order == ASCENDING ? candidates.values() : candidates.descendingMap().values();
+            return matchingCloudEvents(storedEvents.stream(), filter).skip(skip).limit(limit);
+        }
+
+        Stream<CloudEvent> stream = matchingCloudEvents(candidates.values().stream(), filter);
+        if (isMultipleSortStepsContainingNaturalOrder(sortBy)) {
             cloudEventPositionCache = stream.collect(LinkedHashMap::new, (cache, event) -> cache.put(event, cache.size()), LinkedHashMap::putAll);
             streamToSort = cloudEventPositionCache.keySet().stream();
         } else {
@@ -264,6 +343,16 @@ public class InMemoryEventStore implements EventStore, EventStoreOperations, Eve
         return streamToUse.skip(skip).limit(limit);
     }
 
+    // The events that may match the filter in natural order, all events unless the filter can use a secondary index
+    private NavigableMap<Long, StoredEvent> candidates(Filter filter) {
+        Candidates candidates = indexes.find(filter);
+        return candidates == null ? log : candidates.events();
+    }
+
+    private static Stream<CloudEvent> matchingCloudEvents(Stream<StoredEvent> storedEvents, Filter filter) {
+        return storedEvents.filter(not(StoredEvent::isDeleted)).map(StoredEvent::cloudEvent).filter(cloudEvent -> matchesFilter(cloudEvent, filter));
+    }
+
     private static boolean isMultipleSortStepsContainingNaturalOrder(SortBy sortBy) {
         if (sortBy instanceof MultipleSortStepsImpl) {
             return ((MultipleSortStepsImpl) sortBy).steps.stream().anyMatch(NaturalImpl.class::isInstance);
@@ -273,9 +362,11 @@ public class InMemoryEventStore implements EventStore, EventStoreOperations, Eve
 
     @Override
     public long count(Filter filter) {
-        synchronized (state) {
-            return state.values().stream().mapToLong(cloudEvents -> cloudEvents.stream().filter(cloudEvent -> matchesFilter(cloudEvent, filter)).count()).reduce(0, Long::sum);
+        Candidates candidates = indexes.find(filter);
+        if (candidates != null && candidates.exact) {
+            return candidates.count();
         }
+        return matchingCloudEvents((candidates == null ? log : candidates.events()).values().stream(), filter).count();
     }
 
     @Override
@@ -351,18 +442,151 @@ public class InMemoryEventStore implements EventStore, EventStoreOperations, Eve
     }
 
     private Optional<String> findStreamIdByCloudEvent(Predicate<CloudEvent> predicate) {
-        return state.entrySet().stream()
-                .filter(entry -> entry.getValue().stream().anyMatch(predicate))
-                .map(Entry::getKey)
+        return log.values().stream()
+                .filter(not(StoredEvent::isDeleted))
+                .filter(storedEvent -> predicate.test(storedEvent.cloudEvent()))
+                .map(storedEvent -> storedEvent.streamId)
                 .findFirst();
     }
 
-    @SuppressWarnings("ConstantConditions")
-    private static long calculateStreamVersion(List<CloudEvent> events) {
-        if (events == null || events.isEmpty()) {
-            return 0;
+    /**
+     * The state of a single event stream. All modifications are made while holding the lock of the instance,
+     * whereas reads just use the latest published {@link StoredEvents}.
+     */
+    private class EventStreamState {
+        private static final int INITIAL_CAPACITY = 8;
+
+        private final String streamId;
+        private volatile StoredEvents events = new StoredEvents(new StoredEvent[0], 0);
+        // Set to true when the first write to the stream has succeeded
+        private volatile boolean exists;
+        // Set to true when the stream has been removed from the event store, writers must then create a new state
+        private boolean removed;
+
+        private EventStreamState(String streamId) {
+            this.streamId = streamId;
+        }
+
+        private void append(List<CloudEvent> cloudEvents) {
+            exists = true;
+            if (cloudEvents.isEmpty()) {
+                return;
+            }
+
+            StoredEvents current = events;
+            int newSize = current.size + cloudEvents.size();
+            StoredEvent[] array = current.array;
+            if (newSize > array.length) {
+                array = Arrays.copyOf(array, Math.max(newSize, Math.max(INITIAL_CAPACITY, array.length * 2)));
+            }
+
+            // Only the slots after "current.size" are written, and they're never seen by readers of the current (or any older) StoredEvents
+            int index = current.size;
+            for (CloudEvent cloudEvent : cloudEvents) {
+                long eventSequenceNumber = sequenceNumber.incrementAndGet();
+                StoredEvent storedEvent = offHeapStorage == null ? StoredEvent.onHeap(eventSequenceNumber, streamId, cloudEvent) : StoredEvent.offHeap(eventSequenceNumber, streamId, cloudEvent, offHeapStorage);
+                array[index++] = storedEvent;
+                log.put(storedEvent.sequenceNumber, storedEvent);
+                indexes.add(storedEvent, cloudEvent);
+            }
+            events = new StoredEvents(array, newSize);
+        }
+
+        /**
+         * Remove all events matching the {@code predicate} (copy-on-write) from the stream, the log and the indexes.
+         *
+         * @return {@code true} if any event was removed
+         */
+        private boolean removeEvents(Predicate<CloudEvent> predicate) {
+            StoredEvents current = events;
+            StoredEvent[] array = new StoredEvent[current.array.length];
+            int size = 0;
+            for (int i = 0; i < current.size; i++) {
+                StoredEvent storedEvent = current.array[i];
+                CloudEvent cloudEvent = storedEvent.cloudEvent();
+                if (predicate.test(cloudEvent)) {
+                    storedEvent.deleted = true;
+                    log.remove(storedEvent.sequenceNumber);
+                    indexes.remove(storedEvent, cloudEvent);
+                } else {
+                    array[size++] = storedEvent;
+                }
+            }
+
+            if (size == current.size) {
+                return false;
+            }
+            events = new StoredEvents(array, size);
+            return true;
+        }
+
+        private void remove(ConcurrentMap<String, EventStreamState> streams) {
+            removed = true;
+            streams.remove(streamId, this);
+        }
+    }
+
+    /**
+     * An immutable snapshot of the events in a stream, i.e. the first {@code size} elements of {@code array}.
+     */
+    private static class StoredEvents {
+        private final StoredEvent[] array;
+        private final int size;
+
+        private StoredEvents(StoredEvent[] array, int size) {
+            this.array = array;
+            this.size = size;
+        }
+
+        private long streamVersion() {
+            if (size == 0) {
+                return 0;
+            }
+            return array[size - 1].streamVersion;
+        }
+
+        /**
+         * @return The index of the first event whose stream version is greater than {@code streamVersion}, or {@code size} if there's no such event.
+         * The stream versions are increasing (but not necessarily contiguous since events may have been deleted) so a binary search is used.
+         */
+        private int indexOfFirstEventAfter(long streamVersion) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (array[mid].streamVersion <= streamVersion) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private static class CloudEventListView extends AbstractList<CloudEvent> implements RandomAccess {
+        private final StoredEvent[] array;
+        private final int fromIndex;
+        private final int toIndex;
+
+        private CloudEventListView(StoredEvent[] array, int fromIndex, int toIndex) {
+            this.array = array;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+        }
+
+        @Override
+        public CloudEvent get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            return array[fromIndex + index].cloudEvent();
+        }
+
+        @Override
+        public int size() {
+            return toIndex - fromIndex;
         }
-        return (long) events.get(events.size() - 1).getExtension(STREAM_VERSION);
     }
 
     private static Comparator<CloudEvent> toComparator(Map<CloudEvent, Integer> cloudEventPositionCache, SortBy sortBy) {
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.eventstore.inmemory;
+
+import org.occurrent.cloudevents.OccurrentCloudEventExtension;
+import org.occurrent.filter.Filter;
+
+import java.util.*;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Configuration for the {@link InMemoryEventStore}
+ */
+public class InMemoryEventStoreConfig {
+    /**
+     * The fields that can be indexed by the {@link InMemoryEventStore}.
+     */
+    public static final Set<String> INDEXABLE_FIELDS = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(Filter.TYPE, Filter.SUBJECT, Filter.SOURCE, OccurrentCloudEventExtension.STREAM_ID, Filter.TIME)));
+
+    /**
+     * The default size of the off-heap slabs (16 MB)
+     */
+    public static final int DEFAULT_SLAB_SIZE = 16 * 1024 * 1024;
+
+    public final Set<String> indexedFields;
+    public final boolean offHeap;
+    public final int slabSize;
+
+    private InMemoryEventStoreConfig(Set<String> indexedFields, boolean offHeap, int slabSize) {
+        requireNonNull(indexedFields, "Indexed fields cannot be null");
+        if (slabSize < 1) {
+            throw new IllegalArgumentException("Slab size must be greater than zero");
+        }
+        for (String indexedField : indexedFields) {
+            if (!INDEXABLE_FIELDS.contains(indexedField)) {
+                throw new IllegalArgumentException("Field " + indexedField + " cannot be indexed, only " + String.join(", ", INDEXABLE_FIELDS) + " are supported");
+            }
+        }
+        this.indexedFields = Collections.unmodifiableSet(new LinkedHashSet<>(indexedFields));
+        this.offHeap = offHeap;
+        this.slabSize = slabSize;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof InMemoryEventStoreConfig)) return false;
+        InMemoryEventStoreConfig that = (InMemoryEventStoreConfig) o;
+        return offHeap == that.offHeap && slabSize == that.slabSize && Objects.equals(indexedFields, that.indexedFields);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(indexedFields, offHeap, slabSize);
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", InMemoryEventStoreConfig.class.getSimpleName() + "[", "]")
+                .add("indexedFields=" + indexedFields)
+                .add("offHeap=" + offHeap)
+                .add("slabSize=" + slabSize)
+                .toString();
+    }
+
+    public static final class Builder {
+        private final Set<String> indexedFields = new LinkedHashSet<>();
+        private boolean offHeap = false;
+        private int slabSize = DEFAULT_SLAB_SIZE;
+
+        /**
+         * Maintain secondary indexes for the given fields. Queries and counts whose {@link Filter} contains an equality or range condition
+         * (such as {@code Filter.type("MyEvent")} or {@code Filter.time(gte(someTime))}) on an indexed field will then only look at the events that
+         * match the condition instead of every event in the event store. Counts whose filter only consists of conditions on a single indexed field are
+         * answered without looking at the events at all. Supported fields are {@value Filter#TYPE}, {@value Filter#SUBJECT}, {@value Filter#SOURCE},
+         * {@value OccurrentCloudEventExtension#STREAM_ID} and {@value Filter#TIME}. No fields are indexed by default.
+         * <br><br>
+         * Each index makes writes slightly more expensive and uses some additional memory.
+         *
+         * @param fieldNames The names of the fields to index, for example {@link Filter#TYPE}.
+         * @return A same {@code Builder instance}
+         */
+        public Builder index(String... fieldNames) {
+            requireNonNull(fieldNames, "Field names cannot be null");
+            Collections.addAll(indexedFields, fieldNames);
+            return this;
+        }
+
+        /**
+         * Store the events off-heap, serialized into direct {@link java.nio.ByteBuffer} slabs, instead of as {@code CloudEvent} instances on the heap.
+         * This drastically reduces the number of objects that the garbage collector needs to trace when the event store contains a large number of events.
+         * The {@code CloudEvent} instances are instead materialized each time they're read or queried, which makes reads and (non-indexed) queries slower.
+         * Default is {@code false}.
+         *
+         * @param offHeap {@code true} to store the events off-heap, {@code false} to store them on the heap.
+         * @return A same {@code Builder instance}
+         */
+        public Builder offHeap(boolean offHeap) {
+            this.offHeap = offHeap;
+            return this;
+        }
+
+        /**
+         * The size, in bytes, of each off-heap slab. Only used if {@link #offHeap(boolean)} is enabled. A slab is released when none of the events
+         * stored in it are used anymore, so smaller slabs make memory used by deleted or updated events available sooner. Default is {@value #DEFAULT_SLAB_SIZE}.
+         *
+         * @param slabSize The size of each slab in bytes
+         * @return A same {@code Builder instance}
+         */
+        public Builder slabSize(int slabSize) {
+            this.slabSize = slabSize;
+            return this;
+        }
+
+        public InMemoryEventStoreConfig build() {
+            return new InMemoryEventStoreConfig(indexedFields, offHeap, slabSize);
+        }
+    }
+}
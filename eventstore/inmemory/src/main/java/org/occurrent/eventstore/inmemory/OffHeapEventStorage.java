@@ -0,0 +1,81 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.eventstore.inmemory;
+
+import io.cloudevents.CloudEvent;
+import org.occurrent.binaryserialization.internal.BinaryCloudEventSerialization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Serializes cloud events (using {@link BinaryCloudEventSerialization}) into large, direct (off-heap) {@link ByteBuffer} slabs that are allocated one after the other ("bump allocation").
+ * Each stored cloud event is represented by a slice of its slab, so a slab is released by the garbage collector when no slice refers to it anymore.
+ * The memory of deleted and updated events is thus only reclaimed once all other events in the same slab are gone as well.
+ */
+class OffHeapEventStorage {
+    private final int slabSize;
+    private ByteBuffer currentSlab;
+
+    OffHeapEventStorage(int slabSize) {
+        this.slabSize = slabSize;
+    }
+
+    /**
+     * Serialize the {@code cloudEvent} into a slab
+     *
+     * @return A read-only slice of the slab that contains the serialized cloud event
+     */
+    ByteBuffer store(CloudEvent cloudEvent) {
+        byte[] bytes = serialize(cloudEvent);
+        synchronized (this) {
+            if (currentSlab == null || currentSlab.remaining() < bytes.length) {
+                // Events that are larger than the slab size get a slab of their own
+                currentSlab = ByteBuffer.allocateDirect(Math.max(slabSize, bytes.length));
+            }
+            ByteBuffer slice = currentSlab.slice();
+            slice.limit(bytes.length);
+            slice.put(bytes).flip();
+            currentSlab.position(currentSlab.position() + bytes.length);
+            return slice.asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * Materialize the cloud event that was stored in the {@code slice} by {@link #store(CloudEvent)}
+     */
+    static CloudEvent load(ByteBuffer slice) {
+        // The data is copied so that the returned cloud event doesn't keep the slab from being garbage collected
+        return BinaryCloudEventSerialization.readCloudEvent(slice.duplicate(), true).build();
+    }
+
+    private static byte[] serialize(CloudEvent cloudEvent) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            BinaryCloudEventSerialization.writeCloudEvent(out, cloudEvent, __ -> true);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.eventstore.inmemory;
+
+import io.cloudevents.CloudEvent;
+import org.occurrent.condition.Condition;
+import org.occurrent.condition.Condition.MultiOperandCondition;
+import org.occurrent.condition.Condition.SingleOperandCondition;
+import org.occurrent.filter.Filter;
+import org.occurrent.filter.Filter.CompositionFilter;
+import org.occurrent.filter.Filter.SingleConditionFilter;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
+import static org.occurrent.filter.Filter.*;
+
+/**
+ * Secondary indexes of the {@link InMemoryEventStore}. Each index maps the value of a field to the events that have this value, in natural order.
+ * The values are kept sorted, so both equality and range conditions can be answered by the index.
+ * <p>
+ * An index never decides whether an event matches a filter, it only narrows down the events that need to be checked. The only exception is
+ * {@link Candidates#exact}, which is {@code true} when the candidates are exactly the events that match the filter.
+ * </p>
+ */
+class SecondaryIndexes {
+    private final Map<String, ConcurrentSkipListMap<Object, IndexEntry>> indexes;
+
+    SecondaryIndexes(Set<String> fieldNames) {
+        Map<String, ConcurrentSkipListMap<Object, IndexEntry>> indexes = new HashMap<>();
+        fieldNames.forEach(fieldName -> indexes.put(fieldName, new ConcurrentSkipListMap<>()));
+        this.indexes = Collections.unmodifiableMap(indexes);
+    }
+
+    /**
+     * Index the {@code storedEvent} using the values of {@code cloudEvent}. Must be called while holding the lock of the stream that the event belongs to.
+     */
+    void add(StoredEvent storedEvent, CloudEvent cloudEvent) {
+        indexes.forEach((fieldName, index) -> {
+            Object key = indexKey(cloudEvent, fieldName);
+            if (key != null) {
+                index.computeIfAbsent(key, __ -> new IndexEntry()).add(storedEvent);
+            }
+        });
+    }
+
+    /**
+     * Remove the {@code storedEvent}, that was indexed using the values of {@code cloudEvent}, from the indexes.
+     * Must be called while holding the lock of the stream that the event belongs to.
+     */
+    void remove(StoredEvent storedEvent, CloudEvent cloudEvent) {
+        indexes.forEach((fieldName, index) -> {
+            Object key = indexKey(cloudEvent, fieldName);
+            IndexEntry indexEntry = key == null ? null : index.get(key);
+            if (indexEntry != null) {
+                // Empty entries are kept since another stream may concurrently add an event to it
+                indexEntry.remove(storedEvent);
+            }
+        });
+    }
+
+    /**
+     * Find the events that may match the {@code filter} using the indexes.
+     *
+     * @return The candidates or {@code null} if the {@code filter} cannot be answered by the indexes.
+     */
+    Candidates find(Filter filter) {
+        if (indexes.isEmpty()) {
+            return null;
+        } else if (filter instanceof SingleConditionFilter) {
+            SingleConditionFilter singleConditionFilter = (SingleConditionFilter) filter;
+            ConcurrentSkipListMap<Object, IndexEntry> index = indexes.get(singleConditionFilter.fieldName);
+            if (index == null) {
+                return null;
+            }
+            return find(singleConditionFilter.fieldName, index, singleConditionFilter.condition);
+        } else if (filter instanceof CompositionFilter) {
+            CompositionFilter compositionFilter = (CompositionFilter) filter;
+            switch (compositionFilter.operator) {
+                case AND:
+                    // Use the most selective index, the events are then matched against the rest of the filter
+                    return compositionFilter.filters.stream()
+                            .map(this::find)
+                            .filter(Objects::nonNull)
+                            .min(Comparator.comparingLong(Candidates::count))
+                            .map(candidates -> compositionFilter.filters.size() == 1 ? candidates : candidates.inexact())
+                            .orElse(null);
+                case OR:
+                    List<Candidates> candidatesList = new ArrayList<>();
+                    for (Filter childFilter : compositionFilter.filters) {
+                        Candidates candidates = find(childFilter);
+                        if (candidates == null) {
+                            return null;
+                        }
+                        candidatesList.add(candidates);
+                    }
+                    return Candidates.union(candidatesList);
+                default:
+                    return null;
+            }
+        }
+        return null;
+    }
+
+    private static Candidates find(String fieldName, ConcurrentSkipListMap<Object, IndexEntry> index, Condition<?> condition) {
+        if (condition instanceof SingleOperandCondition) {
+            KeyRange keyRange = KeyRange.ALL.narrow(fieldName, (SingleOperandCondition<?>) condition);
+            return keyRange == null ? null : new Candidates(fieldName, keyRange.apply(index).values(), true);
+        } else if (condition instanceof MultiOperandCondition) {
+            MultiOperandCondition<?> multiOperandCondition = (MultiOperandCondition<?>) condition;
+            switch (multiOperandCondition.operationName) {
+                case AND:
+                    // Narrow down the range by each condition, for example "time >= x and time < y"
+                    KeyRange keyRange = KeyRange.ALL;
+                    boolean exact = true;
+                    for (Condition<?> operation : multiOperandCondition.operations) {
+                        KeyRange narrowedKeyRange = operation instanceof SingleOperandCondition ? keyRange.narrow(fieldName, (SingleOperandCondition<?>) operation) : null;
+                        if (narrowedKeyRange == null) {
+                            exact = false;
+                        } else {
+                            keyRange = narrowedKeyRange;
+                        }
+                    }
+                    return keyRange == KeyRange.ALL ? null : new Candidates(fieldName, keyRange.apply(index).values(), exact);
+                case OR:
+                    List<Candidates> candidatesList = new ArrayList<>();
+                    for (Condition<?> operation : multiOperandCondition.operations) {
+                        Candidates candidates = find(fieldName, index, operation);
+                        if (candidates == null) {
+                            return null;
+                        }
+                        candidatesList.add(candidates);
+                    }
+                    return Candidates.union(candidatesList);
+                default:
+                    return null;
+            }
+        }
+        return null;
+    }
+
+    private static Class<?> keyType(String fieldName) {
+        return TIME.equals(fieldName) ? OffsetDateTime.class : String.class;
+    }
+
+    // Extract the value in the same way as the in-memory filter matching does
+    private static Object indexKey(CloudEvent cloudEvent, String fieldName) {
+        switch (fieldName) {
+            case TYPE:
+                return cloudEvent.getType();
+            case SUBJECT:
+                return cloudEvent.getSubject();
+            case SOURCE:
+                return cloudEvent.getSource() == null ? null : cloudEvent.getSource().toString();
+            case TIME:
+                return cloudEvent.getTime();
+            case STREAM_ID:
+                return cloudEvent.getExtension(STREAM_ID);
+            default:
+                throw new IllegalStateException("Internal error: Field " + fieldName + " cannot be indexed");
+        }
+    }
+
+    /**
+     * A range of keys in an index, a {@code null} bound means that the range is unbounded in that direction.
+     */
+    private static class KeyRange {
+        private static final KeyRange ALL = new KeyRange(null, false, null, false, false);
+
+        private final Comparable<Object> from;
+        private final boolean fromInclusive;
+        private final Comparable<Object> to;
+        private final boolean toInclusive;
+        private final boolean empty;
+
+        private KeyRange(Comparable<Object> from, boolean fromInclusive, Comparable<Object> to, boolean toInclusive, boolean empty) {
+            this.from = from;
+            this.fromInclusive = fromInclusive;
+            this.to = to;
+            this.toInclusive = toInclusive;
+            this.empty = empty;
+        }
+
+        /**
+         * @return The intersection of this range and the keys matching the {@code condition}, or {@code null} if the {@code condition} cannot be expressed as a range.
+         */
+        @SuppressWarnings("unchecked")
+        private KeyRange narrow(String fieldName, SingleOperandCondition<?> condition) {
+            Object operand = condition.operand;
+            if (operand == null || operand.getClass() != keyType(fieldName)) {
+                return null;
+            }
+
+            Comparable<Object> key = (Comparable<Object>) operand;
+            switch (condition.singleOperandConditionName) {
+                case EQ:
+                    return withFrom(key, true).withTo(key, true);
+                case LT:
+                    return withTo(key, false);
+                case LTE:
+                    return withTo(key, true);
+                case GT:
+                    return withFrom(key, false);
+                case GTE:
+                    return withFrom(key, true);
+                default:
+                    return null;
+            }
+        }
+
+        private KeyRange withFrom(Comparable<Object> key, boolean inclusive) {
+            if (from != null) {
+                int comparison = key.compareTo(from);
+                if (comparison < 0 || (comparison == 0 && (!fromInclusive || inclusive))) {
+                    return this;
+                }
+            }
+            return new KeyRange(key, inclusive, to, toInclusive, empty).verify();
+        }
+
+        private KeyRange withTo(Comparable<Object> key, boolean inclusive) {
+            if (to != null) {
+                int comparison = key.compareTo(to);
+                if (comparison > 0 || (comparison == 0 && (!toInclusive || inclusive))) {
+                    return this;
+                }
+            }
+            return new KeyRange(from, fromInclusive, key, inclusive, empty).verify();
+        }
+
+        private KeyRange verify() {
+            if (from != null && to != null) {
+                int comparison = from.compareTo(to);
+                if (comparison > 0 || (comparison == 0 && !(fromInclusive && toInclusive))) {
+                    return new KeyRange(from, fromInclusive, to, toInclusive, true);
+                }
+            }
+            return this;
+        }
+
+        private NavigableMap<Object, IndexEntry> apply(ConcurrentSkipListMap<Object, IndexEntry> index) {
+            if (empty) {
+                return Collections.emptyNavigableMap();
+            } else if (from != null && to != null) {
+                return index.subMap(from, fromInclusive, to, toInclusive);
+            } else if (from != null) {
+                return index.tailMap(from, fromInclusive);
+            } else if (to != null) {
+                return index.headMap(to, toInclusive);
+            }
+            return index;
+        }
+    }
+
+    private static class IndexEntry {
+        private final ConcurrentSkipListMap<Long, StoredEvent> events = new ConcurrentSkipListMap<>();
+        private final AtomicLong count = new AtomicLong();
+
+        private void add(StoredEvent storedEvent) {
+            if (events.put(storedEvent.sequenceNumber, storedEvent) == null) {
+                count.incrementAndGet();
+            }
+        }
+
+        private void remove(StoredEvent storedEvent) {
+            if (events.remove(storedEvent.sequenceNumber, storedEvent)) {
+                count.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * The events that may match a filter.
+     */
+    static class Candidates {
+        private final String fieldName;
+        private final Collection<IndexEntry> indexEntries;
+        /**
+         * {@code true} if the candidates are exactly the events that match the filter, i.e. the {@link #count()} is the number of matching events.
+         */
+        final boolean exact;
+
+        private Candidates(String fieldName, Collection<IndexEntry> indexEntries, boolean exact) {
+            this.fieldName = fieldName;
+            this.indexEntries = indexEntries;
+            this.exact = exact;
+        }
+
+        private static Candidates union(List<Candidates> candidatesList) {
+            // The same entry can be included several times if the conditions overlap, it must only be counted once
+            Set<IndexEntry> indexEntries = Collections.newSetFromMap(new IdentityHashMap<>());
+            candidatesList.forEach(candidates -> indexEntries.addAll(candidates.indexEntries));
+            String fieldName = candidatesList.get(0).fieldName;
+            // Entries from different indexes may contain the same event
+            boolean exact = candidatesList.stream().allMatch(candidates -> candidates.exact && Objects.equals(candidates.fieldName, fieldName));
+            return new Candidates(exact ? fieldName : null, indexEntries, exact);
+        }
+
+        private Candidates inexact() {
+            return new Candidates(fieldName, indexEntries, false);
+        }
+
+        /**
+         * @return The number of candidates, without looking at the events
+         */
+        long count() {
+            return indexEntries.stream().mapToLong(indexEntry -> indexEntry.count.get()).sum();
+        }
+
+        /**
+         * @return The candidate events in natural order, keyed by their sequence number
+         */
+        NavigableMap<Long, StoredEvent> events() {
+            if (indexEntries.size() == 1) {
+                return indexEntries.iterator().next().events;
+            }
+            NavigableMap<Long, StoredEvent> events = new TreeMap<>();
+            indexEntries.forEach(indexEntry -> events.putAll(indexEntry.events));
+            return events;
+        }
+    }
+}
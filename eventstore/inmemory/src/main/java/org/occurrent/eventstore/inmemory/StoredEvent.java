@@ -0,0 +1,105 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.eventstore.inmemory;
+
+import io.cloudevents.CloudEvent;
+import org.occurrent.cloudevents.OccurrentExtensionGetter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An event stored in the {@link InMemoryEventStore}. The same instance is referenced from the event stream, the global log and the
+ * secondary indexes, so that an updated or deleted event is immediately visible everywhere.
+ */
+abstract class StoredEvent {
+    // The position of the event in the global log, i.e. the "natural" order of the event store
+    final long sequenceNumber;
+    final String streamId;
+    // Kept on the heap so that the version of a stream can be found without materializing the cloud event
+    final long streamVersion;
+    volatile boolean deleted;
+
+    private StoredEvent(long sequenceNumber, String streamId, CloudEvent cloudEvent) {
+        this.sequenceNumber = sequenceNumber;
+        this.streamId = streamId;
+        this.streamVersion = OccurrentExtensionGetter.getStreamVersion(cloudEvent);
+    }
+
+    static StoredEvent onHeap(long sequenceNumber, String streamId, CloudEvent cloudEvent) {
+        return new OnHeap(sequenceNumber, streamId, cloudEvent);
+    }
+
+    static StoredEvent offHeap(long sequenceNumber, String streamId, CloudEvent cloudEvent, OffHeapEventStorage storage) {
+        return new OffHeap(sequenceNumber, streamId, cloudEvent, storage);
+    }
+
+    boolean isDeleted() {
+        return deleted;
+    }
+
+    abstract CloudEvent cloudEvent();
+
+    /**
+     * Replace the cloud event, must be called while holding the lock of the stream that the event belongs to.
+     */
+    abstract void update(CloudEvent cloudEvent);
+
+    private static class OnHeap extends StoredEvent {
+        private volatile CloudEvent cloudEvent;
+
+        private OnHeap(long sequenceNumber, String streamId, CloudEvent cloudEvent) {
+            super(sequenceNumber, streamId, cloudEvent);
+            this.cloudEvent = cloudEvent;
+        }
+
+        @Override
+        CloudEvent cloudEvent() {
+            return cloudEvent;
+        }
+
+        @Override
+        void update(CloudEvent cloudEvent) {
+            this.cloudEvent = cloudEvent;
+        }
+    }
+
+    /**
+     * A stored event whose cloud event is serialized into an off-heap slab, the cloud event is materialized each time it's requested.
+     * The slice references the slab, which is freed by the garbage collector when no (live or deleted) event refers to it anymore.
+     */
+    private static class OffHeap extends StoredEvent {
+        private final OffHeapEventStorage storage;
+        private volatile ByteBuffer slice;
+
+        private OffHeap(long sequenceNumber, String streamId, CloudEvent cloudEvent, OffHeapEventStorage storage) {
+            super(sequenceNumber, streamId, cloudEvent);
+            this.storage = storage;
+            this.slice = storage.store(cloudEvent);
+        }
+
+        @Override
+        CloudEvent cloudEvent() {
+            return OffHeapEventStorage.load(slice);
+        }
+
+        @Override
+        void update(CloudEvent cloudEvent) {
+            this.slice = storage.store(cloudEvent);
+        }
+    }
+}
@@ -30,24 +30,35 @@ import org.occurrent.domain.DomainEvent;
 import org.occurrent.domain.Name;
 import org.occurrent.domain.NameDefined;
 import org.occurrent.domain.NameWasChanged;
+import org.occurrent.eventstore.api.ContinuationToken;
+import org.occurrent.eventstore.api.EventPage;
 import org.occurrent.eventstore.api.SortBy;
 import org.occurrent.eventstore.api.WriteCondition;
 import org.occurrent.eventstore.api.WriteConditionNotFulfilledException;
 import org.occurrent.eventstore.api.WriteResult;
 import org.occurrent.eventstore.api.blocking.EventStore;
 import org.occurrent.eventstore.api.blocking.EventStream;
+import org.occurrent.eventstore.api.blocking.EventStreamWrite;
 import org.occurrent.filter.Filter;
 
 import java.net.URI;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -209,6 +220,151 @@ public class InMemoryEventStoreTest {
         }
     }
 
+    @Test
+    void read_skips_and_limits_the_events_in_the_stream() {
+        // Given
+        InMemoryEventStore inMemoryEventStore = new InMemoryEventStore();
+        LocalDateTime now = LocalDateTime.now();
+        DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+        DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+        DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Hello Doe");
+        unconditionallyPersist(inMemoryEventStore, "name", Stream.of(event1, event2, event3));
+
+        // When
+        EventStream<CloudEvent> eventStream = inMemoryEventStore.read("name", 1, 1);
+
+        // Then
+        assertAll(
+                () -> assertThat(eventStream.version()).isEqualTo(3L),
+                () -> assertThat(eventStream.events().map(deserialize(objectMapper))).containsExactly(event2),
+                () -> assertThat(inMemoryEventStore.read("name", 2, 10).events().map(deserialize(objectMapper))).containsExactly(event3),
+                () -> assertThat(inMemoryEventStore.read("name", 5, 10).events()).isEmpty()
+        );
+    }
+
+    @Test
+    void read_version_range_returns_the_events_whose_stream_version_is_in_the_range() {
+        // Given
+        InMemoryEventStore inMemoryEventStore = new InMemoryEventStore();
+        LocalDateTime now = LocalDateTime.now();
+        DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+        DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+        DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Hello Doe");
+        DomainEvent event4 = new NameWasChanged(UUID.randomUUID().toString(), now, "Another Doe");
+        unconditionallyPersist(inMemoryEventStore, "name", Stream.of(event1, event2, event3, event4));
+
+        // When
+        EventStream<CloudEvent> eventStream = inMemoryEventStore.readVersionRange("name", 1, 3);
+
+        // Then
+        assertAll(
+                () -> assertThat(eventStream.version()).isEqualTo(4L),
+                () -> assertThat(eventStream.events().map(deserialize(objectMapper))).containsExactly(event2, event3),
+                () -> assertThat(inMemoryEventStore.readAfterVersion("name", 3).events().map(deserialize(objectMapper))).containsExactly(event4),
+                () -> assertThat(inMemoryEventStore.readAfterVersion("name", 4).events()).isEmpty(),
+                () -> assertThat(inMemoryEventStore.readAfterVersion("unknown", 0).version()).isZero()
+        );
+    }
+
+    @Test
+    void read_version_range_selects_events_by_stream_version_when_events_have_been_deleted_from_the_stream() {
+        // Given
+        InMemoryEventStore inMemoryEventStore = new InMemoryEventStore();
+        LocalDateTime now = LocalDateTime.now();
+        DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+        DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+        DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Hello Doe");
+        unconditionallyPersist(inMemoryEventStore, "name", Stream.of(event1, event2, event3));
+        inMemoryEventStore.deleteEvent(event1.getEventId(), NAME_SOURCE);
+
+        // When
+        EventStream<CloudEvent> eventStream = inMemoryEventStore.readAfterVersion("name", 2);
+
+        // Then
+        assertThat(eventStream.events().map(deserialize(objectMapper))).containsExactly(event3);
+    }
+
+    @Test
+    void read_version_range_throws_iae_when_the_range_is_invalid() {
+        // Given
+        InMemoryEventStore inMemoryEventStore = new InMemoryEventStore();
+
+        // When
+        Throwable throwable = catchThrowable(() -> inMemoryEventStore.readVersionRange("name", 3, 2));
+
+        // Then
+        assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class).hasMessage("toVersionInclusive cannot be less than fromVersionExclusive");
+    }
+
+    @Nested
+    @DisplayName("concurrency")
+    class Concurrency {
+
+        @Test
+        void concurrent_writes_to_different_streams_are_all_persisted_in_stream_order() throws Exception {
+            // Given
+            InMemoryEventStore inMemoryEventStore = new InMemoryEventStore();
+            int numberOfStreams = 8;
+            int numberOfWritesPerStream = 200;
+            ExecutorService executorService = Executors.newFixedThreadPool(numberOfStreams);
+
+            // When
+            try {
+                List<Future<?>> futures = IntStream.range(0, numberOfStreams)
+                        .mapToObj(streamIndex -> executorService.submit(() -> {
+                            for (int i = 0; i < numberOfWritesPerStream; i++) {
+                                conditionallyPersist(inMemoryEventStore, "name" + streamIndex, streamVersionEq(i), Stream.of(new NameDefined(UUID.randomUUID().toString(), LocalDateTime.now(), "name" + i)));
+                            }
+                        }))
+                        .collect(Collectors.toList());
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executorService.shutdown();
+            }
+
+            // Then
+            List<CloudEvent> allEvents = inMemoryEventStore.all().collect(Collectors.toList());
+            assertAll(
+                    () -> assertThat(inMemoryEventStore.count()).isEqualTo(numberOfStreams * numberOfWritesPerStream),
+                    () -> assertThat(inMemoryEventStore.read("name3").version()).isEqualTo(numberOfWritesPerStream),
+                    () -> assertThat(inMemoryEventStore.read("name3").events().map(e -> e.getExtension(STREAM_VERSION))).containsExactlyElementsOf(LongStream.rangeClosed(1, numberOfWritesPerStream).boxed().collect(Collectors.toList())),
+                    () -> assertThat(allEvents.stream().filter(e -> "name3".equals(e.getExtension(STREAM_ID))).map(e -> e.getExtension(STREAM_VERSION))).containsExactlyElementsOf(LongStream.rangeClosed(1, numberOfWritesPerStream).boxed().collect(Collectors.toList()))
+            );
+        }
+    }
+
+    @Nested
+    @DisplayName("write all")
+    class WriteAllTest {
+
+        @Test
+        void writes_events_to_all_streams_and_returns_one_write_result_per_stream() {
+            // Given
+            InMemoryEventStore inMemoryEventStore = new InMemoryEventStore();
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameDefined(UUID.randomUUID().toString(), now, "Hello Doe");
+            unconditionallyPersist(inMemoryEventStore, "name1", event1);
+
+            Map<String, EventStreamWrite> writes = new LinkedHashMap<>();
+            writes.put("name1", EventStreamWrite.of(1, convertDomainEventToCloudEvent(objectMapper).apply(event2)));
+            writes.put("name2", EventStreamWrite.of(0, convertDomainEventToCloudEvent(objectMapper).apply(event3)));
+
+            // When
+            List<WriteResult> writeResults = inMemoryEventStore.writeAll(writes);
+
+            // Then
+            assertAll(
+                    () -> assertThat(writeResults).containsExactly(new WriteResult("name1", 2), new WriteResult("name2", 1)),
+                    () -> assertThat(inMemoryEventStore.read("name1").events().map(deserialize(objectMapper))).containsExactly(event1, event2),
+                    () -> assertThat(inMemoryEventStore.read("name2").events().map(deserialize(objectMapper))).containsExactly(event3)
+            );
+        }
+    }
+
     @Nested
     @DisplayName("exists")
     class Exists {
@@ -1305,6 +1461,89 @@ public class InMemoryEventStoreTest {
         }
     }
 
+    @Nested
+    @DisplayName("continuation token")
+    class ContinuationTokenTest {
+        private InMemoryEventStore inMemoryEventStore;
+
+        @BeforeEach
+        void create_event_store() {
+            inMemoryEventStore = new InMemoryEventStore();
+        }
+
+        @Test
+        void query_with_continuation_token_returns_all_events_page_by_page_when_events_have_the_same_time() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+            NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(1), "name2");
+            NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now, "name3");
+            NameWasChanged nameWasChanged2 = new NameWasChanged(UUID.randomUUID().toString(), now.minusHours(1), "name4");
+            unconditionallyPersist(inMemoryEventStore, "name2", Stream.of(nameDefined2, nameWasChanged1));
+            unconditionallyPersist(inMemoryEventStore, "name1", nameDefined1);
+            unconditionallyPersist(inMemoryEventStore, "name3", nameWasChanged2);
+
+            // When
+            EventPage page1 = inMemoryEventStore.query(Filter.all(), 2, SortBy.time(ASCENDING), null);
+            EventPage page2 = inMemoryEventStore.query(Filter.all(), 2, SortBy.time(ASCENDING), page1.getNextContinuationToken().get());
+
+            // Then
+            assertAll(
+                    () -> assertThat(page1.getEvents().stream().map(deserialize(objectMapper))).containsExactly(nameWasChanged2, nameDefined1),
+                    () -> assertThat(page2.getEvents().stream().map(deserialize(objectMapper))).containsExactly(nameDefined2, nameWasChanged1),
+                    () -> assertThat(page2.hasNext()).isFalse()
+            );
+        }
+
+        @Test
+        void query_with_continuation_token_applies_the_filter_and_the_sort_direction() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            NameDefined nameDefined = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+            NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(1), "name2");
+            NameWasChanged nameWasChanged2 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(2), "name3");
+            NameWasChanged nameWasChanged3 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(3), "name4");
+            unconditionallyPersist(inMemoryEventStore, "name", Stream.of(nameDefined, nameWasChanged1, nameWasChanged2, nameWasChanged3));
+
+            // When
+            Filter filter = type(NameWasChanged.class.getName());
+            EventPage page1 = inMemoryEventStore.query(filter, 1, SortBy.time(DESCENDING), null);
+            EventPage page2 = inMemoryEventStore.query(filter, 1, SortBy.time(DESCENDING), page1.getNextContinuationToken().get());
+            EventPage page3 = inMemoryEventStore.query(filter, 1, SortBy.time(DESCENDING), ContinuationToken.fromString(page2.getNextContinuationToken().get().asString()));
+
+            // Then
+            assertAll(
+                    () -> assertThat(page1.getEvents().stream().map(deserialize(objectMapper))).containsExactly(nameWasChanged3),
+                    () -> assertThat(page2.getEvents().stream().map(deserialize(objectMapper))).containsExactly(nameWasChanged2),
+                    () -> assertThat(page3.getEvents().stream().map(deserialize(objectMapper))).containsExactly(nameWasChanged1),
+                    () -> assertThat(page3.hasNext()).isFalse()
+            );
+        }
+
+        @Test
+        void query_with_continuation_token_created_for_another_sort_order_throws_iae() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            unconditionallyPersist(inMemoryEventStore, "name", Stream.of(new NameDefined(UUID.randomUUID().toString(), now, "name1"), new NameWasChanged(UUID.randomUUID().toString(), now, "name2")));
+            ContinuationToken continuationToken = inMemoryEventStore.query(Filter.all(), 1, SortBy.time(ASCENDING), null).getNextContinuationToken().get();
+
+            // When
+            Throwable throwable = catchThrowable(() -> inMemoryEventStore.query(Filter.all(), 1, SortBy.streamVersion(ASCENDING), continuationToken));
+
+            // Then
+            assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class).hasMessage("ContinuationToken was created for another sort order");
+        }
+
+        @Test
+        void query_with_continuation_token_and_natural_sort_order_throws_iae() {
+            // When
+            Throwable throwable = catchThrowable(() -> inMemoryEventStore.query(Filter.all(), 1, SortBy.natural(ASCENDING), null));
+
+            // Then
+            assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class).hasMessage("Cannot use continuation tokens when sorting by natural order, sort by one or more fields instead");
+        }
+    }
+
     @Nested
     @DisplayName("count")
     class CountTest {
@@ -1349,6 +1588,195 @@ public class InMemoryEventStoreTest {
         }
     }
 
+    @Nested
+    @DisplayName("secondary indexes")
+    class SecondaryIndexesTest {
+        private InMemoryEventStore inMemoryEventStore;
+
+        @BeforeEach
+        void create_event_store() {
+            inMemoryEventStore = new InMemoryEventStore(new InMemoryEventStoreConfig.Builder().index(TYPE, STREAM_ID, TIME).build());
+        }
+
+        @Test
+        void query_filter_by_indexed_field_returns_matching_events_in_natural_order() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name");
+            NameWasChanged nameWasChanged = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(1), "name2");
+            NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.plusHours(2), "name3");
+
+            // When
+            unconditionallyPersist(inMemoryEventStore, "name2", nameDefined2);
+            unconditionallyPersist(inMemoryEventStore, "name1", Stream.of(nameDefined1, nameWasChanged));
+
+            // Then
+            assertAll(
+                    () -> assertThat(inMemoryEventStore.query(type(NameDefined.class.getName())).map(deserialize(objectMapper))).containsExactly(nameDefined2, nameDefined1),
+                    () -> assertThat(inMemoryEventStore.query(type(NameDefined.class.getName()), SortBy.natural(DESCENDING)).map(deserialize(objectMapper))).containsExactly(nameDefined1, nameDefined2),
+                    () -> assertThat(inMemoryEventStore.query(type(NameDefined.class.getName()), SortBy.time(ASCENDING)).map(deserialize(objectMapper))).containsExactly(nameDefined1, nameDefined2),
+                    () -> assertThat(inMemoryEventStore.query(type(NameDefined.class.getName()).or(streamId("name1"))).map(deserialize(objectMapper))).containsExactly(nameDefined2, nameDefined1, nameWasChanged),
+                    () -> assertThat(inMemoryEventStore.query(type(NameDefined.class.getName()).and(subject("unknown")))).isEmpty()
+            );
+        }
+
+        @Test
+        void query_filter_by_indexed_time_range_returns_events_in_the_range() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            NameDefined nameDefined = new NameDefined(UUID.randomUUID().toString(), now, "name");
+            NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(1), "name2");
+            NameWasChanged nameWasChanged2 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(2), "name3");
+
+            // When
+            unconditionallyPersist(inMemoryEventStore, "name1", Stream.of(nameDefined, nameWasChanged1));
+            unconditionallyPersist(inMemoryEventStore, "name2", nameWasChanged2);
+
+            // Then
+            assertAll(
+                    () -> assertThat(inMemoryEventStore.query(time(and(gt(OffsetDateTime.of(now.plusMinutes(50), UTC)), lt(OffsetDateTime.of(now.plusMinutes(110), UTC))))).map(deserialize(objectMapper))).containsExactly(nameWasChanged1),
+                    () -> assertThat(inMemoryEventStore.query(time(and(gte(OffsetDateTime.of(now.plusMinutes(35), UTC)), lte(OffsetDateTime.of(now.plusHours(4), UTC))))).map(deserialize(objectMapper))).containsExactly(nameWasChanged1, nameWasChanged2),
+                    () -> assertThat(inMemoryEventStore.query(time(and(gt(OffsetDateTime.of(now.plusHours(3), UTC)), lt(OffsetDateTime.of(now.plusHours(1), UTC)))))).isEmpty(),
+                    () -> assertThat(inMemoryEventStore.query(time(lt(OffsetDateTime.of(now.plusMinutes(90), UTC))).and(streamId("name2")))).isEmpty(),
+                    () -> assertThat(inMemoryEventStore.count(time(gte(OffsetDateTime.of(now.plusMinutes(30), UTC))))).isEqualTo(2)
+            );
+        }
+
+        @Test
+        void count_filter_by_indexed_field_reflects_deleted_and_updated_events() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            String eventId2 = UUID.randomUUID().toString();
+            NameDefined nameDefined = new NameDefined(UUID.randomUUID().toString(), now, "name");
+            NameWasChanged nameWasChanged1 = new NameWasChanged(eventId2, now.plusHours(1), "name2");
+            NameWasChanged nameWasChanged2 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(2), "name3");
+            unconditionallyPersist(inMemoryEventStore, "name1", Stream.of(nameDefined, nameWasChanged1));
+            unconditionallyPersist(inMemoryEventStore, "name2", nameWasChanged2);
+
+            // When
+            inMemoryEventStore.deleteEventStream("name2");
+            inMemoryEventStore.updateEvent(eventId2, NAME_SOURCE, c -> CloudEventBuilder.v1(c).withType(NameDefined.class.getName()).build());
+
+            // Then
+            assertAll(
+                    () -> assertThat(inMemoryEventStore.count(type(NameWasChanged.class.getName()))).isEqualTo(0),
+                    () -> assertThat(inMemoryEventStore.count(type(NameDefined.class.getName()))).isEqualTo(2),
+                    () -> assertThat(inMemoryEventStore.count(type(NameDefined.class.getName()).or(type(NameWasChanged.class.getName())))).isEqualTo(2),
+                    () -> assertThat(inMemoryEventStore.count(streamId("name2"))).isEqualTo(0),
+                    () -> assertThat(inMemoryEventStore.query(type(NameWasChanged.class.getName()))).isEmpty()
+            );
+        }
+
+        @Test
+        void throws_iae_when_configuring_an_index_for_a_field_that_cannot_be_indexed() {
+            // When
+            Throwable throwable = catchThrowable(() -> new InMemoryEventStoreConfig.Builder().index(DATA_CONTENT_TYPE).build());
+
+            // Then
+            assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class).hasMessageStartingWith("Field datacontenttype cannot be indexed");
+        }
+    }
+
+    @Nested
+    @DisplayName("off-heap storage")
+    class OffHeapStorageTest {
+        private List<CloudEvent> publishedEvents;
+        private InMemoryEventStore inMemoryEventStore;
+
+        @BeforeEach
+        void create_event_store() {
+            publishedEvents = new CopyOnWriteArrayList<>();
+            inMemoryEventStore = new InMemoryEventStore(stream -> publishedEvents.addAll(stream.collect(Collectors.toList())), new InMemoryEventStoreConfig.Builder().offHeap(true).slabSize(1024).index(TYPE).build());
+        }
+
+        @Test
+        void events_that_are_spread_over_several_slabs_are_materialized_when_read() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            List<DomainEvent> events = IntStream.range(0, 20).mapToObj(i -> new NameWasChanged(UUID.randomUUID().toString(), now.plusMinutes(i), "name" + i)).collect(Collectors.toList());
+            // Larger than the slab size
+            DomainEvent largeEvent = new NameDefined(UUID.randomUUID().toString(), now, IntStream.range(0, 2000).mapToObj(i -> "x").collect(Collectors.joining()));
+
+            // When
+            unconditionallyPersist(inMemoryEventStore, "name", events.stream());
+            unconditionallyPersist(inMemoryEventStore, "name", largeEvent);
+
+            // Then
+            EventStream<CloudEvent> eventStream = inMemoryEventStore.read("name");
+            assertAll(
+                    () -> assertThat(eventStream.version()).isEqualTo(21),
+                    () -> assertThat(eventStream.events().map(deserialize(objectMapper))).containsExactlyElementsOf(Stream.concat(events.stream(), Stream.of(largeEvent)).collect(Collectors.toList())),
+                    () -> assertThat(eventStream.events().map(e -> e.getExtension(STREAM_VERSION))).containsExactlyElementsOf(LongStream.rangeClosed(1, 21).boxed().collect(Collectors.toList())),
+                    () -> assertThat(inMemoryEventStore.query(type(NameDefined.class.getName())).map(deserialize(objectMapper))).containsExactly(largeEvent),
+                    () -> assertThat(publishedEvents).hasSize(21)
+            );
+        }
+
+        @Test
+        void cloud_event_attributes_and_extensions_are_preserved() {
+            // Given
+            CloudEvent cloudEvent = CloudEventBuilder.v1()
+                    .withId(UUID.randomUUID().toString())
+                    .withSource(NAME_SOURCE)
+                    .withType("type")
+                    .withSubject("subject")
+                    .withDataContentType("application/json")
+                    .withDataSchema(URI.create("urn:schema"))
+                    .withTime(OffsetDateTime.of(2021, 3, 4, 10, 11, 12, 123456789, ZoneOffset.ofHours(2)))
+                    .withExtension("stringext", "value")
+                    .withExtension("intext", 42)
+                    .withExtension("booleanext", true)
+                    .withData("{\"name\":\"John Doe\"}".getBytes(UTF_8))
+                    .build();
+
+            // When
+            inMemoryEventStore.write("name", Stream.of(cloudEvent));
+
+            // Then
+            CloudEvent storedCloudEvent = inMemoryEventStore.read("name").events().findFirst().orElseThrow(IllegalStateException::new);
+            assertAll(
+                    () -> assertThat(storedCloudEvent.getId()).isEqualTo(cloudEvent.getId()),
+                    () -> assertThat(storedCloudEvent.getSource()).isEqualTo(cloudEvent.getSource()),
+                    () -> assertThat(storedCloudEvent.getType()).isEqualTo(cloudEvent.getType()),
+                    () -> assertThat(storedCloudEvent.getSubject()).isEqualTo(cloudEvent.getSubject()),
+                    () -> assertThat(storedCloudEvent.getDataContentType()).isEqualTo(cloudEvent.getDataContentType()),
+                    () -> assertThat(storedCloudEvent.getDataSchema()).isEqualTo(cloudEvent.getDataSchema()),
+                    () -> assertThat(storedCloudEvent.getTime()).isEqualTo(cloudEvent.getTime()),
+                    () -> assertThat(storedCloudEvent.getExtension("stringext")).isEqualTo("value"),
+                    () -> assertThat(storedCloudEvent.getExtension("intext")).isEqualTo(42),
+                    () -> assertThat(storedCloudEvent.getExtension("booleanext")).isEqualTo(true),
+                    () -> assertThat(storedCloudEvent.getExtension(STREAM_ID)).isEqualTo("name"),
+                    () -> assertThat(storedCloudEvent.getExtension(STREAM_VERSION)).isEqualTo(1L),
+                    () -> assertThat(storedCloudEvent.getData().toBytes()).isEqualTo(cloudEvent.getData().toBytes())
+            );
+        }
+
+        @Test
+        void updated_and_deleted_events_are_reflected_in_reads_and_queries() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            String eventId2 = UUID.randomUUID().toString();
+            NameDefined nameDefined = new NameDefined(UUID.randomUUID().toString(), now, "name");
+            NameWasChanged nameWasChanged1 = new NameWasChanged(eventId2, now.plusHours(1), "name2");
+            NameWasChanged nameWasChanged2 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(2), "name3");
+            unconditionallyPersist(inMemoryEventStore, "name1", Stream.of(nameDefined, nameWasChanged1));
+            unconditionallyPersist(inMemoryEventStore, "name2", nameWasChanged2);
+            NameWasChanged updatedNameWasChanged1 = new NameWasChanged(eventId2, now.plusHours(1), "updated");
+
+            // When
+            inMemoryEventStore.deleteEventStream("name2");
+            inMemoryEventStore.updateEvent(eventId2, NAME_SOURCE, c -> CloudEventBuilder.v1(c).withData(unchecked(objectMapper::writeValueAsBytes).apply(updatedNameWasChanged1)).build());
+
+            // Then
+            assertAll(
+                    () -> assertThat(inMemoryEventStore.read("name1").events().map(deserialize(objectMapper))).containsExactly(nameDefined, updatedNameWasChanged1),
+                    () -> assertThat(inMemoryEventStore.query(type(NameWasChanged.class.getName())).map(deserialize(objectMapper))).containsExactly(updatedNameWasChanged1),
+                    () -> assertThat(inMemoryEventStore.exists("name2")).isFalse(),
+                    () -> assertThat(inMemoryEventStore.count()).isEqualTo(2)
+            );
+        }
+    }
+
     @Nested
     @DisplayName("exists")
     class ExistsTest {
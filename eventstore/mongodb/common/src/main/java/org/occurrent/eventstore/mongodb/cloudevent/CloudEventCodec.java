@@ -0,0 +1,333 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.cloudevent;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.CloudEventData;
+import io.cloudevents.SpecVersion;
+import io.cloudevents.core.data.PojoCloudEventData;
+import org.bson.BsonBinary;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.RawBsonDocumentCodec;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.json.JsonReader;
+import org.occurrent.eventstore.mongodb.internal.OccurrentCloudEventMongoDocumentMapper;
+import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
+
+import java.net.URI;
+import java.time.OffsetDateTime;
+import java.util.*;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_VERSION;
+import static org.occurrent.eventstore.mongodb.cloudevent.ContentType.isJson;
+import static org.occurrent.eventstore.mongodb.cloudevent.ContentType.isText;
+
+/**
+ * A {@link Codec} that writes a {@link CloudEvent} straight to a {@link BsonWriter}, without first building an intermediate {@link Document}
+ * (as {@link OccurrentCloudEventMongoDocumentMapper#convertToDocument(TimeRepresentation, String, long, CloudEvent)} does).
+ * The written document is equal to the document created by {@code convertToDocument}, and the "time" field is written
+ * according to the {@link TimeRepresentation}. Json data that is represented as a {@code String} or {@code byte[]} is piped
+ * from a {@link JsonReader} to the writer instead of being parsed into a {@link Document}.
+ * <p>
+ * Use {@link #withStreamPosition(String, long, CloudEvent)} to add the stream id and stream version to a cloud event before it's
+ * encoded, this is cheaper than recreating the cloud event with the Occurrent extensions. Decoding returns a {@link LazyBsonCloudEvent}.
+ * </p>
+ * <p>
+ * If a {@link CloudEventDataCompression} is supplied, the data of cloud events whose type has compression enabled is compressed (see {@link CloudEventDataCompression}).
+ * </p>
+ */
+public class CloudEventCodec implements Codec<CloudEvent> {
+    private static final String TIME = "time";
+    private static final String DATA = "data";
+    private static final RawBsonDocumentCodec RAW_BSON_DOCUMENT_CODEC = new RawBsonDocumentCodec();
+
+    private final TimeRepresentation timeRepresentation;
+    private final CodecRegistry codecRegistry;
+    private final CloudEventDataCompression dataCompression;
+
+    /**
+     * @param timeRepresentation The {@link TimeRepresentation} to use when writing the "time" field
+     * @param codecRegistry      The codec registry used to encode data that is represented as a {@link Document} or {@link Map} and non-standard extension values
+     */
+    public CloudEventCodec(TimeRepresentation timeRepresentation, CodecRegistry codecRegistry) {
+        this(timeRepresentation, codecRegistry, CloudEventDataCompression.none());
+    }
+
+    /**
+     * @param timeRepresentation The {@link TimeRepresentation} to use when writing the "time" field
+     * @param codecRegistry      The codec registry used to encode data that is represented as a {@link Document} or {@link Map} and non-standard extension values
+     * @param dataCompression    The {@link CloudEventDataCompression} to use when writing the "data" field
+     */
+    public CloudEventCodec(TimeRepresentation timeRepresentation, CodecRegistry codecRegistry, CloudEventDataCompression dataCompression) {
+        requireNonNull(timeRepresentation, TimeRepresentation.class.getSimpleName() + " cannot be null");
+        requireNonNull(codecRegistry, CodecRegistry.class.getSimpleName() + " cannot be null");
+        requireNonNull(dataCompression, CloudEventDataCompression.class.getSimpleName() + " cannot be null");
+        this.timeRepresentation = timeRepresentation;
+        this.codecRegistry = codecRegistry;
+        this.dataCompression = dataCompression;
+    }
+
+    /**
+     * Create a view of the {@code cloudEvent} that has the Occurrent stream id and stream version extensions. The {@code cloudEvent} is not copied.
+     *
+     * @param streamId      The id of the stream that the cloud event is written to
+     * @param streamVersion The stream version of the cloud event
+     * @param cloudEvent    The cloud event
+     * @return A {@link CloudEvent} with the {@code streamId} and {@code streamVersion} extensions.
+     */
+    public static CloudEvent withStreamPosition(String streamId, long streamVersion, CloudEvent cloudEvent) {
+        return new StreamPositionCloudEvent(streamId, streamVersion, cloudEvent);
+    }
+
+    @Override
+    public void encode(BsonWriter writer, CloudEvent cloudEvent, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writer.writeString("specversion", cloudEvent.getSpecVersion().toString());
+        writer.writeString("id", cloudEvent.getId());
+        writer.writeString("source", cloudEvent.getSource().toString());
+        writer.writeString("type", cloudEvent.getType());
+        writeStringIfDefined(writer, "datacontenttype", cloudEvent.getDataContentType());
+        if (cloudEvent.getDataSchema() != null) {
+            writer.writeString("dataschema", cloudEvent.getDataSchema().toString());
+        }
+        writeStringIfDefined(writer, "subject", cloudEvent.getSubject());
+        Object time = OccurrentCloudEventMongoDocumentMapper.convertTime(timeRepresentation, cloudEvent.getTime());
+        if (time instanceof Date) {
+            writer.writeDateTime(TIME, ((Date) time).getTime());
+        } else if (time != null) {
+            writer.writeString(TIME, (String) time);
+        }
+
+        if (cloudEvent instanceof StreamPositionCloudEvent) {
+            StreamPositionCloudEvent streamPositionCloudEvent = (StreamPositionCloudEvent) cloudEvent;
+            writeExtensions(writer, streamPositionCloudEvent.cloudEvent, true, encoderContext);
+            writer.writeString(STREAM_ID, streamPositionCloudEvent.streamId);
+            writer.writeInt64(STREAM_VERSION, streamPositionCloudEvent.streamVersion);
+        } else {
+            writeExtensions(writer, cloudEvent, false, encoderContext);
+        }
+
+        CloudEventData data = cloudEvent.getData();
+        if (data != null && dataCompression.isEnabledFor(cloudEvent.getType())) {
+            writeCompressibleData(writer, cloudEvent.getDataContentType(), data, encoderContext);
+        } else if (data != null) {
+            writer.writeName(DATA);
+            writeData(writer, cloudEvent.getDataContentType(), data, encoderContext);
+        }
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public CloudEvent decode(BsonReader reader, DecoderContext decoderContext) {
+        RawBsonDocument document = RAW_BSON_DOCUMENT_CODEC.decode(reader, decoderContext);
+        return new LazyBsonCloudEvent(document);
+    }
+
+    @Override
+    public Class<CloudEvent> getEncoderClass() {
+        return CloudEvent.class;
+    }
+
+    private void writeExtensions(BsonWriter writer, CloudEvent cloudEvent, boolean skipStreamPosition, EncoderContext encoderContext) {
+        for (String extensionName : cloudEvent.getExtensionNames()) {
+            if (skipStreamPosition && (STREAM_ID.equals(extensionName) || STREAM_VERSION.equals(extensionName))) {
+                continue;
+            }
+            Object value = cloudEvent.getExtension(extensionName);
+            if (value != null) {
+                writer.writeName(extensionName);
+                writeExtensionValue(writer, value, encoderContext);
+            }
+        }
+    }
+
+    // Mirrors how the cloud event context writer (and thus DocumentCloudEventWriter) represents extension values
+    private void writeExtensionValue(BsonWriter writer, Object value, EncoderContext encoderContext) {
+        if (value instanceof String) {
+            writer.writeString((String) value);
+        } else if (value instanceof Boolean) {
+            writer.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            writer.writeInt32((Integer) value);
+        } else if (value instanceof Long) {
+            writer.writeInt64((Long) value);
+        } else if (value instanceof Number) {
+            encodeWithRegistry(writer, value, encoderContext);
+        } else if (value instanceof byte[]) {
+            writer.writeString(Base64.getEncoder().encodeToString((byte[]) value));
+        } else {
+            // URI, OffsetDateTime and other values are represented by their string representation
+            writer.writeString(value.toString());
+        }
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private void writeData(BsonWriter writer, String contentType, CloudEventData data, EncoderContext encoderContext) {
+        Object pojo = data instanceof PojoCloudEventData ? ((PojoCloudEventData) data).getValue() : null;
+        if (pojo instanceof Document || pojo instanceof BsonDocument) {
+            // A RawBsonDocument (e.g. created by a cloud event converter that serializes directly to BSON) is copied as is
+            encodeWithRegistry(writer, pojo, encoderContext);
+        } else if (isJson(contentType)) {
+            if (pojo instanceof Map) {
+                encodeWithRegistry(writer, new Document((Map<String, Object>) pojo), encoderContext);
+            } else if (pojo instanceof String) {
+                writeJsonData(writer, (String) pojo);
+            } else {
+                writeJsonData(writer, new String(data.toBytes(), UTF_8));
+            }
+        } else if (isText(contentType)) {
+            writer.writeString(new String(data.toBytes(), UTF_8));
+        } else {
+            writer.writeBinaryData(new BsonBinary(data.toBytes()));
+        }
+    }
+
+    // The data is first written to a separate document, whose bytes are compressed if they're above the threshold
+    private void writeCompressibleData(BsonWriter writer, String contentType, CloudEventData data, EncoderContext encoderContext) {
+        BasicOutputBuffer outputBuffer = new BasicOutputBuffer();
+        try (BsonBinaryWriter dataWriter = new BsonBinaryWriter(outputBuffer)) {
+            dataWriter.writeStartDocument();
+            dataWriter.writeName(DATA);
+            writeData(dataWriter, contentType, data, encoderContext);
+            dataWriter.writeEndDocument();
+        }
+        byte[] dataDocument = outputBuffer.toByteArray();
+        byte[] compressed = dataCompression.compressIfAboveThreshold(dataDocument);
+        if (compressed == null) {
+            writer.writeName(DATA);
+            encodeWithRegistry(writer, new RawBsonDocument(dataDocument).get(DATA), encoderContext);
+        } else {
+            writer.writeString(CloudEventDataCompression.DATA_COMPRESSION, dataCompression.algorithm.extensionValue());
+            writer.writeBinaryData(DATA, new BsonBinary(compressed));
+        }
+    }
+
+    // Json that is not an object (e.g. an array or a string) is not representable as a document and is thus stored as a string
+    private static void writeJsonData(BsonWriter writer, String json) {
+        if (json.trim().startsWith("{")) {
+            writer.pipe(new JsonReader(json));
+        } else {
+            writer.writeString(json);
+        }
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private void encodeWithRegistry(BsonWriter writer, Object value, EncoderContext encoderContext) {
+        Codec codec = codecRegistry.get(value.getClass());
+        encoderContext.encodeWithChildContext(codec, writer, value);
+    }
+
+    private static void writeStringIfDefined(BsonWriter writer, String name, String value) {
+        if (value != null) {
+            writer.writeString(name, value);
+        }
+    }
+
+    private static class StreamPositionCloudEvent implements CloudEvent {
+        private final String streamId;
+        private final long streamVersion;
+        private final CloudEvent cloudEvent;
+
+        private StreamPositionCloudEvent(String streamId, long streamVersion, CloudEvent cloudEvent) {
+            requireNonNull(streamId, "Stream id cannot be null");
+            requireNonNull(cloudEvent, CloudEvent.class.getSimpleName() + " cannot be null");
+            this.streamId = streamId;
+            this.streamVersion = streamVersion;
+            this.cloudEvent = cloudEvent;
+        }
+
+        @Override
+        public CloudEventData getData() {
+            return cloudEvent.getData();
+        }
+
+        @Override
+        public SpecVersion getSpecVersion() {
+            return cloudEvent.getSpecVersion();
+        }
+
+        @Override
+        public String getId() {
+            return cloudEvent.getId();
+        }
+
+        @Override
+        public String getType() {
+            return cloudEvent.getType();
+        }
+
+        @Override
+        public URI getSource() {
+            return cloudEvent.getSource();
+        }
+
+        @Override
+        public String getDataContentType() {
+            return cloudEvent.getDataContentType();
+        }
+
+        @Override
+        public URI getDataSchema() {
+            return cloudEvent.getDataSchema();
+        }
+
+        @Override
+        public String getSubject() {
+            return cloudEvent.getSubject();
+        }
+
+        @Override
+        public OffsetDateTime getTime() {
+            return cloudEvent.getTime();
+        }
+
+        @Override
+        public Object getAttribute(String attributeName) {
+            return cloudEvent.getAttribute(attributeName);
+        }
+
+        @Override
+        public Object getExtension(String extensionName) {
+            if (STREAM_ID.equals(extensionName)) {
+                return streamId;
+            } else if (STREAM_VERSION.equals(extensionName)) {
+                return streamVersion;
+            }
+            return cloudEvent.getExtension(extensionName);
+        }
+
+        @Override
+        public Set<String> getExtensionNames() {
+            Set<String> extensionNames = new LinkedHashSet<>(cloudEvent.getExtensionNames());
+            extensionNames.add(STREAM_ID);
+            extensionNames.add(STREAM_VERSION);
+            return extensionNames;
+        }
+    }
+}
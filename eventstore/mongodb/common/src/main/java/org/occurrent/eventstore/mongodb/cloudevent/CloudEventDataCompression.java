@@ -0,0 +1,212 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.cloudevent;
+
+import org.bson.*;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.Binary;
+
+import java.util.*;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Configures compression of the data of cloud events that are stored in MongoDB. Compression is opt-in per cloud event type, and the data of a cloud event
+ * is only compressed if its (BSON) size is at least {@link #thresholdInBytes} bytes. Compressed data is stored as BSON binary and the algorithm is stored in the
+ * {@value #DATA_COMPRESSION} extension. The data is decompressed, and the {@value #DATA_COMPRESSION} extension is removed, when the cloud event is read
+ * from the event store or from a subscription, regardless of how the event store is configured.
+ * <p>
+ * Note that queries (and subscription filters) on {@code data} fields will not match cloud events whose data is compressed, so only enable compression
+ * for cloud event types whose data is never queried.
+ * </p>
+ */
+public class CloudEventDataCompression {
+    /**
+     * The name of the extension that contains the compression algorithm of a compressed cloud event.
+     */
+    public static final String DATA_COMPRESSION = "datacompression";
+
+    private static final String DATA = "data";
+    private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+    private static final CloudEventDataCompression NONE = new CloudEventDataCompression(null, 0, Collections.emptySet());
+
+    public final CompressionAlgorithm algorithm;
+    public final int thresholdInBytes;
+    public final Set<String> cloudEventTypes;
+
+    private CloudEventDataCompression(CompressionAlgorithm algorithm, int thresholdInBytes, Set<String> cloudEventTypes) {
+        this.algorithm = algorithm;
+        this.thresholdInBytes = thresholdInBytes;
+        this.cloudEventTypes = cloudEventTypes;
+    }
+
+    /**
+     * @return A {@code CloudEventDataCompression} that doesn't compress the data of any cloud event. This is the default.
+     */
+    public static CloudEventDataCompression none() {
+        return NONE;
+    }
+
+    /**
+     * Compress the data of cloud events of the given types, using the given algorithm, when the data is at least {@code thresholdInBytes} bytes.
+     *
+     * @param algorithm        The compression algorithm to use
+     * @param thresholdInBytes The minimum size, in bytes, of the data for it to be compressed
+     * @param cloudEventTypes  The cloud event types whose data should be compressed
+     * @return A new {@code CloudEventDataCompression}
+     */
+    public static CloudEventDataCompression compress(CompressionAlgorithm algorithm, int thresholdInBytes, Collection<String> cloudEventTypes) {
+        requireNonNull(algorithm, CompressionAlgorithm.class.getSimpleName() + " cannot be null");
+        requireNonNull(cloudEventTypes, "Cloud event types cannot be null");
+        if (thresholdInBytes < 0) {
+            throw new IllegalArgumentException("Threshold cannot be negative");
+        }
+        if (cloudEventTypes.isEmpty()) {
+            throw new IllegalArgumentException("At least one cloud event type must be specified");
+        }
+        return new CloudEventDataCompression(algorithm, thresholdInBytes, Collections.unmodifiableSet(new HashSet<>(cloudEventTypes)));
+    }
+
+    /**
+     * @see #compress(CompressionAlgorithm, int, Collection)
+     */
+    public static CloudEventDataCompression compress(CompressionAlgorithm algorithm, int thresholdInBytes, String cloudEventType, String... additionalCloudEventTypes) {
+        requireNonNull(cloudEventType, "Cloud event type cannot be null");
+        List<String> cloudEventTypes = new ArrayList<>();
+        cloudEventTypes.add(cloudEventType);
+        if (additionalCloudEventTypes != null) {
+            cloudEventTypes.addAll(Arrays.asList(additionalCloudEventTypes));
+        }
+        return compress(algorithm, thresholdInBytes, cloudEventTypes);
+    }
+
+    /**
+     * @param cloudEventType The cloud event type
+     * @return {@code true} if the data of cloud events of the given type should be compressed (if above the threshold), {@code false} otherwise.
+     */
+    public boolean isEnabledFor(String cloudEventType) {
+        return algorithm != null && cloudEventTypes.contains(cloudEventType);
+    }
+
+    /**
+     * Compress the data of the {@code cloudEventDocument}, in place, if compression is enabled for its type and the data is at least {@link #thresholdInBytes} bytes.
+     *
+     * @param cloudEventDocument The cloud event document, as created by the {@link DocumentCloudEventWriter}
+     */
+    public void compressData(Document cloudEventDocument) {
+        Object data = cloudEventDocument.get(DATA);
+        if (data == null || !isEnabledFor(cloudEventDocument.getString("type"))) {
+            return;
+        }
+
+        BasicOutputBuffer outputBuffer = new BasicOutputBuffer();
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(outputBuffer)) {
+            DOCUMENT_CODEC.encode(writer, new Document(DATA, data), EncoderContext.builder().build());
+        }
+        byte[] compressed = compressIfAboveThreshold(outputBuffer.toByteArray());
+        if (compressed != null) {
+            cloudEventDocument.put(DATA_COMPRESSION, algorithm.extensionValue());
+            cloudEventDocument.put(DATA, new Binary(compressed));
+        }
+    }
+
+    /**
+     * @param dataDocument The BSON bytes of a document with a single "data" field that contains the cloud event data
+     * @return The compressed {@code dataDocument}, or {@code null} if it's smaller than the threshold or doesn't get any smaller by compressing it.
+     */
+    byte[] compressIfAboveThreshold(byte[] dataDocument) {
+        if (dataDocument.length < thresholdInBytes) {
+            return null;
+        }
+        byte[] compressed = algorithm.compress(dataDocument);
+        return compressed.length < dataDocument.length ? compressed : null;
+    }
+
+    /**
+     * Decompress the data of a cloud event document whose data has been compressed.
+     *
+     * @param cloudEventDocument The cloud event document
+     * @return A copy of {@code cloudEventDocument} with decompressed data and without the {@value #DATA_COMPRESSION} extension,
+     * or {@code cloudEventDocument} itself if its data is not compressed.
+     */
+    public static Document decompressData(Document cloudEventDocument) {
+        Object algorithm = cloudEventDocument.get(DATA_COMPRESSION);
+        if (algorithm == null) {
+            return cloudEventDocument;
+        }
+        Object data = cloudEventDocument.get(DATA);
+        byte[] compressed = data instanceof Binary ? ((Binary) data).getData() : (byte[]) data;
+        byte[] decompressed = CompressionAlgorithm.fromExtensionValue(algorithm.toString()).decompress(compressed);
+        Document dataDocument = DOCUMENT_CODEC.decode(new RawBsonDocument(decompressed).asBsonReader(), DecoderContext.builder().build());
+
+        Document document = new Document(cloudEventDocument);
+        document.remove(DATA_COMPRESSION);
+        document.put(DATA, dataDocument.get(DATA));
+        return document;
+    }
+
+    /**
+     * Decompress the data of a raw cloud event document whose data has been compressed.
+     *
+     * @param cloudEventDocument The raw cloud event document
+     * @return A copy of {@code cloudEventDocument} with decompressed data and without the {@value #DATA_COMPRESSION} extension,
+     * or {@code cloudEventDocument} itself if its data is not compressed.
+     */
+    public static RawBsonDocument decompressData(RawBsonDocument cloudEventDocument) {
+        BsonValue algorithm = cloudEventDocument.get(DATA_COMPRESSION);
+        if (algorithm == null) {
+            return cloudEventDocument;
+        }
+        byte[] compressed = cloudEventDocument.getBinary(DATA).getData();
+        byte[] decompressed = CompressionAlgorithm.fromExtensionValue(algorithm.asString().getValue()).decompress(compressed);
+
+        BsonDocument document = new BsonDocument();
+        cloudEventDocument.forEach((name, value) -> {
+            if (!DATA_COMPRESSION.equals(name) && !DATA.equals(name)) {
+                document.put(name, value);
+            }
+        });
+        document.put(DATA, new RawBsonDocument(decompressed).get(DATA));
+        return new RawBsonDocument(document, new BsonDocumentCodec());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CloudEventDataCompression)) return false;
+        CloudEventDataCompression that = (CloudEventDataCompression) o;
+        return thresholdInBytes == that.thresholdInBytes && algorithm == that.algorithm && Objects.equals(cloudEventTypes, that.cloudEventTypes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(algorithm, thresholdInBytes, cloudEventTypes);
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", CloudEventDataCompression.class.getSimpleName() + "[", "]")
+                .add("algorithm=" + algorithm)
+                .add("thresholdInBytes=" + thresholdInBytes)
+                .add("cloudEventTypes=" + cloudEventTypes)
+                .toString();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.cloudevent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The algorithms that can be used to compress the data of a cloud event, see {@link CloudEventDataCompression}.
+ */
+public enum CompressionAlgorithm {
+    /**
+     * Gzip, as implemented by the JDK.
+     */
+    GZIP {
+        @Override
+        byte[] compress(byte[] bytes) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(bytes.length / 2);
+            try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+                gzipOutputStream.write(bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return outputStream.toByteArray();
+        }
+
+        @Override
+        byte[] decompress(byte[] bytes) {
+            try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream(bytes.length * 4);
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, read);
+                }
+                return outputStream.toByteArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    },
+    /**
+     * <a href="https://facebook.github.io/zstd/">Zstandard</a>, which is both faster and compresses better than gzip.
+     * Requires {@code com.github.luben:zstd-jni} on the classpath.
+     */
+    ZSTD {
+        @Override
+        byte[] compress(byte[] bytes) {
+            return ZstdCompression.compress(bytes);
+        }
+
+        @Override
+        byte[] decompress(byte[] bytes) {
+            return ZstdCompression.decompress(bytes);
+        }
+    };
+
+    abstract byte[] compress(byte[] bytes);
+
+    abstract byte[] decompress(byte[] bytes);
+
+    /**
+     * @return The name of the algorithm as it's stored in the {@value CloudEventDataCompression#DATA_COMPRESSION} extension.
+     */
+    String extensionValue() {
+        // Locale.ROOT since the value is persisted and must not depend on the default locale (e.g. "gzıp" in a Turkish locale)
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    static CompressionAlgorithm fromExtensionValue(String extensionValue) {
+        for (CompressionAlgorithm algorithm : values()) {
+            if (algorithm.extensionValue().equals(extensionValue)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Cloud event data is compressed with an unknown algorithm: " + extensionValue);
+    }
+}
@@ -87,25 +87,28 @@ public class DocumentCloudEventReader implements CloudEventReader {
         // Let's handle data
         Object data = document.get(DATA_ATTRIBUTE_NAME);
         if (data != null) {
-            Object contentType = document.get(CONTENT_TYPE_ATTRIBUTE_NAME);
-            final CloudEventData ceData;
-            if (isJson(contentType)) {
-                ceData = convertJsonData(data);
-            } else if (data instanceof byte[]) {
-                ceData = BytesCloudEventData.wrap((byte[]) data);
-            } else if (data instanceof String) {
-                ceData = BytesCloudEventData.wrap(((String) data).getBytes(UTF_8));
-            } else if (data instanceof Binary) {
-                ceData = BytesCloudEventData.wrap(((Binary) data).getData());
-            } else {
-                throw CloudEventRWException.newInvalidDataType(data.getClass().getName(), String.class.getName(), byte[].class.getName(), Binary.class.getName());
-            }
-
+            CloudEventData ceData = convertData(document.get(CONTENT_TYPE_ATTRIBUTE_NAME), data);
             writer.end(mapper != null ? mapper.map(ceData) : ceData);
         }
         return writer.end();
     }
 
+    static CloudEventData convertData(Object contentType, Object data) {
+        final CloudEventData ceData;
+        if (isJson(contentType)) {
+            ceData = convertJsonData(data);
+        } else if (data instanceof byte[]) {
+            ceData = BytesCloudEventData.wrap((byte[]) data);
+        } else if (data instanceof String) {
+            ceData = BytesCloudEventData.wrap(((String) data).getBytes(UTF_8));
+        } else if (data instanceof Binary) {
+            ceData = BytesCloudEventData.wrap(((Binary) data).getData());
+        } else {
+            throw CloudEventRWException.newInvalidDataType(data.getClass().getName(), String.class.getName(), byte[].class.getName(), Binary.class.getName());
+        }
+        return ceData;
+    }
+
     @SuppressWarnings("unchecked")
     private static CloudEventData convertJsonData(Object data) {
         final CloudEventData ceData;
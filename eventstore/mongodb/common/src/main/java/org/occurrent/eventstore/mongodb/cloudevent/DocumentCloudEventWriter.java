@@ -25,6 +25,7 @@ import io.cloudevents.rw.CloudEventContextWriter;
 import io.cloudevents.rw.CloudEventRWException;
 import io.cloudevents.rw.CloudEventWriter;
 import io.cloudevents.rw.CloudEventWriterFactory;
+import org.bson.BsonDocument;
 import org.bson.Document;
 
 import java.time.OffsetDateTime;
@@ -81,6 +82,8 @@ public class DocumentCloudEventWriter implements CloudEventWriterFactory<Documen
         if (isPojoCloudEventDataWrapping(cloudEventData, Document.class)) {
             Document document = (Document) ((PojoCloudEventData) cloudEventData).getValue();
             this.document.put("data", document);
+        } else if (isPojoCloudEventDataWrapping(cloudEventData, BsonDocument.class)) {
+            this.document.put("data", ((PojoCloudEventData) cloudEventData).getValue());
         } else if (isJson(contentType)) {
             if (isPojoCloudEventDataWrapping(cloudEventData, Map.class)) {
                 Map<String, Object> data = (Map<String, Object>) ((PojoCloudEventData) cloudEventData).getValue();
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.cloudevent;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.CloudEventData;
+import io.cloudevents.SpecVersion;
+import io.cloudevents.core.data.PojoCloudEventData;
+import io.cloudevents.rw.CloudEventRWException;
+import io.cloudevents.types.Time;
+import org.bson.*;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.io.ByteBufferBsonInput;
+
+import java.net.URI;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.ZoneOffset.UTC;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_VERSION;
+
+/**
+ * A {@link CloudEvent} that is backed by the raw BSON bytes of a cloud event document, as returned by MongoDB, instead of being copied into a
+ * {@code CloudEventV1} by the {@link DocumentCloudEventReader}. Attributes, extensions and data are decoded only when they're accessed for the first time,
+ * so consumers that only look at e.g. the type or subject of an event don't pay for decoding the rest of it.
+ * <p>
+ * The values are the same as those of the cloud event created by the {@link DocumentCloudEventReader}, and the time is converted to UTC if it's stored as a date.
+ * Json data that is stored as a document is thus exposed as a {@code PojoCloudEventData} wrapping a {@link Document}, unless the cloud event is created with {@code rawBsonData}
+ * in which case it's exposed as a {@code PojoCloudEventData} wrapping the embedded {@link BsonDocument} so that converters that can read BSON don't have to decode it.
+ * Instances are thread-safe.
+ * </p>
+ */
+public class LazyBsonCloudEvent implements CloudEvent {
+    private static final String ID = "_id";
+    private static final String DATA = "data";
+    private static final String VALUE = "value";
+    private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+
+    private final RawBsonDocument document;
+    private final boolean rawBsonData;
+
+    private volatile SpecVersion specVersion;
+    private volatile String id;
+    private volatile String type;
+    private volatile URI source;
+    private volatile String dataContentType;
+    private volatile URI dataSchema;
+    private volatile String subject;
+    private volatile OffsetDateTime time;
+    private volatile Set<String> extensionNames;
+    private volatile CloudEventData data;
+
+    public LazyBsonCloudEvent(RawBsonDocument document) {
+        this(document, false);
+    }
+
+    /**
+     * @param document    The raw cloud event document
+     * @param rawBsonData {@code true} to expose json data that is stored as a document as the embedded {@link BsonDocument} instead of a {@link Document}
+     */
+    public LazyBsonCloudEvent(RawBsonDocument document, boolean rawBsonData) {
+        Objects.requireNonNull(document, RawBsonDocument.class.getSimpleName() + " cannot be null");
+        this.document = document;
+        this.rawBsonData = rawBsonData;
+    }
+
+    @Override
+    public CloudEventData getData() {
+        CloudEventData data = this.data;
+        if (data == null) {
+            BsonValue value = document.get(DATA);
+            if (rawBsonData && value != null && value.isDocument() && ContentType.isJson(getDataContentType())) {
+                data = PojoCloudEventData.wrap(value.asDocument(), bsonDocument -> bsonDocument.toJson().getBytes(UTF_8));
+                this.data = data;
+            } else if (value != null && !value.isNull()) {
+                // Decoded in the same way as by the DocumentCloudEventReader, so that json data stored as a document is a Document (Map) of plain Java values
+                data = DocumentCloudEventReader.convertData(getDataContentType(), decode(value));
+                this.data = data;
+            }
+        }
+        return data;
+    }
+
+    @Override
+    public SpecVersion getSpecVersion() {
+        SpecVersion specVersion = this.specVersion;
+        if (specVersion == null) {
+            specVersion = SpecVersion.parse(getString("specversion"));
+            this.specVersion = specVersion;
+        }
+        return specVersion;
+    }
+
+    @Override
+    public String getId() {
+        String id = this.id;
+        if (id == null) {
+            id = getString("id");
+            this.id = id;
+        }
+        return id;
+    }
+
+    @Override
+    public String getType() {
+        String type = this.type;
+        if (type == null) {
+            type = getString("type");
+            this.type = type;
+        }
+        return type;
+    }
+
+    @Override
+    public URI getSource() {
+        URI source = this.source;
+        if (source == null) {
+            source = getUri("source");
+            this.source = source;
+        }
+        return source;
+    }
+
+    @Override
+    public String getDataContentType() {
+        String dataContentType = this.dataContentType;
+        if (dataContentType == null) {
+            dataContentType = getString("datacontenttype");
+            this.dataContentType = dataContentType;
+        }
+        return dataContentType;
+    }
+
+    @Override
+    public URI getDataSchema() {
+        URI dataSchema = this.dataSchema;
+        if (dataSchema == null) {
+            dataSchema = getUri("dataschema");
+            this.dataSchema = dataSchema;
+        }
+        return dataSchema;
+    }
+
+    @Override
+    public String getSubject() {
+        String subject = this.subject;
+        if (subject == null) {
+            subject = getString("subject");
+            this.subject = subject;
+        }
+        return subject;
+    }
+
+    @Override
+    public OffsetDateTime getTime() {
+        OffsetDateTime time = this.time;
+        if (time == null) {
+            BsonValue value = document.get("time");
+            if (value == null || value.isNull()) {
+                return null;
+            } else if (value.isDateTime()) {
+                time = OffsetDateTime.ofInstant(Instant.ofEpochMilli(value.asDateTime().getValue()), UTC);
+            } else {
+                time = Time.parseTime("time", toString(value));
+            }
+            this.time = time;
+        }
+        return time;
+    }
+
+    @Override
+    public Object getAttribute(String attributeName) throws IllegalArgumentException {
+        switch (attributeName) {
+            case "specversion":
+                return getSpecVersion();
+            case "id":
+                return getId();
+            case "type":
+                return getType();
+            case "source":
+                return getSource();
+            case "datacontenttype":
+                return getDataContentType();
+            case "dataschema":
+                return getDataSchema();
+            case "subject":
+                return getSubject();
+            case "time":
+                return getTime();
+            default:
+                throw CloudEventRWException.newInvalidAttributeName(attributeName);
+        }
+    }
+
+    @Override
+    public Object getExtension(String extensionName) {
+        if (!isExtension(extensionName)) {
+            return null;
+        }
+        BsonValue value = document.get(extensionName);
+        if (value == null || value.isNull()) {
+            return null;
+        } else if (value.isString()) {
+            return value.asString().getValue();
+        } else if (STREAM_VERSION.equals(extensionName) && value.isNumber()) {
+            return value.asNumber().longValue();
+        } else if (value.isInt32()) {
+            return value.asInt32().getValue();
+        } else if (value.isInt64()) {
+            return value.asInt64().getValue();
+        } else if (value.isDouble()) {
+            return value.asDouble().getValue();
+        } else if (value.isBoolean()) {
+            return value.asBoolean().getValue();
+        }
+
+        // Same as DocumentCloudEventReader for other types
+        Object decoded = decode(value);
+        return decoded instanceof Number ? decoded : decoded.toString();
+    }
+
+    @Override
+    public Set<String> getExtensionNames() {
+        Set<String> extensionNames = this.extensionNames;
+        if (extensionNames == null) {
+            extensionNames = new HashSet<>();
+            // Only the field names are read, the values are skipped
+            try (BsonBinaryReader reader = new BsonBinaryReader(new ByteBufferBsonInput(document.getByteBuffer()))) {
+                reader.readStartDocument();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    String name = reader.readName();
+                    if (isExtension(name)) {
+                        extensionNames.add(name);
+                    }
+                    reader.skipValue();
+                }
+            }
+            extensionNames = Collections.unmodifiableSet(extensionNames);
+            this.extensionNames = extensionNames;
+        }
+        return extensionNames;
+    }
+
+    private String getString(String name) {
+        BsonValue value = document.get(name);
+        return value == null || value.isNull() ? null : toString(value);
+    }
+
+    private URI getUri(String name) {
+        String value = getString(name);
+        return value == null ? null : URI.create(value);
+    }
+
+    private static String toString(BsonValue value) {
+        return value.isString() ? value.asString().getValue() : decode(value).toString();
+    }
+
+    private static boolean isExtension(String name) {
+        return !ID.equals(name) && !DATA.equals(name) && !SpecVersion.V1.getAllAttributes().contains(name);
+    }
+
+    // Decode a single value in the same way as it would have been decoded into a org.bson.Document
+    private static Object decode(BsonValue value) {
+        BsonDocument wrapper = new BsonDocument(VALUE, value);
+        return DOCUMENT_CODEC.decode(new BsonDocumentReader(wrapper), DecoderContext.builder().build()).get(VALUE);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LazyBsonCloudEvent)) return false;
+        LazyBsonCloudEvent that = (LazyBsonCloudEvent) o;
+        return Objects.equals(document, that.document);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(document);
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", LazyBsonCloudEvent.class.getSimpleName() + "[", "]")
+                .add("document=" + document.toJson())
+                .toString();
+    }
+}
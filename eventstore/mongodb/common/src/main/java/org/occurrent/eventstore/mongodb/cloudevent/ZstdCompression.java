@@ -0,0 +1,40 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.cloudevent;
+
+import com.github.luben.zstd.Zstd;
+
+/**
+ * Isolates the (optional) zstd-jni dependency so that it's only loaded when {@link CompressionAlgorithm#ZSTD} is used.
+ */
+class ZstdCompression {
+
+    private ZstdCompression() {
+    }
+
+    static byte[] compress(byte[] bytes) {
+        return Zstd.compress(bytes);
+    }
+
+    static byte[] decompress(byte[] bytes) {
+        long decompressedSize = Zstd.decompressedSize(bytes);
+        if (decompressedSize <= 0 || decompressedSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cannot determine the decompressed size of zstd compressed cloud event data");
+        }
+        return Zstd.decompress(bytes, (int) decompressedSize);
+    }
+}
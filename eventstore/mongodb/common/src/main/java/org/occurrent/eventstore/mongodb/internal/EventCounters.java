@@ -0,0 +1,414 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.internal;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import io.cloudevents.CloudEvent;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.occurrent.condition.Condition;
+import org.occurrent.condition.Condition.MultiOperandCondition;
+import org.occurrent.condition.Condition.SingleOperandCondition;
+import org.occurrent.filter.Filter;
+import org.occurrent.filter.Filter.CompositionFilter;
+import org.occurrent.filter.Filter.SingleConditionFilter;
+
+import java.util.*;
+
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
+import static org.occurrent.condition.Condition.MultiOperandConditionName.OR;
+import static org.occurrent.condition.Condition.SingleOperandConditionName.EQ;
+
+/**
+ * Field names and helpers for the documents in the (optional) "event counters" collection. There's one document per value of each counted attribute (cloud event type, cloud event source
+ * and/or event stream) in this collection. The {@code _id} of a document is the name of the attribute and its value, for example {@code "type:com.company.SomethingHappened"},
+ * and the {@code count} field contains the number of events with this value. The counters are maintained in the same transaction as the events are written, updated
+ * and deleted so that {@code count} and {@code exists} for filters on these attributes can be served from the counters instead of by counting documents in the event collection.
+ * <p>
+ * Since all events with the same value update the same counter document, only the stream id is counted by default. Counting a low-cardinality attribute, such as the type,
+ * makes concurrent transactions that write events with the same value conflict.
+ * </p>
+ * <p>
+ * The event counters collection also contains a {@link #backfillMarker() backfill marker} document that is inserted by the event store that populates the counters from
+ * the existing events, so that this is only done once even if several event stores are started concurrently. The counters are populated in batches, each
+ * batch of counters is {@link #recount(Collection, Iterable) recounted} in a transaction so that events that are written concurrently are neither lost nor
+ * counted twice (the transaction conflicts with, and is retried after, the transactions that write events that update the same counters). The counters must not be
+ * used until the backfill marker is {@link #isBackfillCompleted(Document) completed}.
+ * </p>
+ */
+public class EventCounters {
+    public static final String ID = "_id";
+    public static final String COUNT = "count";
+
+    private static final String TYPE = "type";
+    private static final String SOURCE = "source";
+    private static final String BACKFILL_MARKER_ID = "occurrent:backfill";
+    private static final String COUNTED_ATTRIBUTES = "countedAttributes";
+    private static final String BACKFILL_COMPLETED = "completed";
+
+    /**
+     * The number of counters that are recounted in each transaction when the counters are populated from the existing events
+     */
+    public static final int BACKFILL_BATCH_SIZE = 1000;
+    /**
+     * The number of times that a transaction that recounts a batch of counters is attempted when it conflicts with concurrent writes
+     */
+    public static final int BACKFILL_MAX_ATTEMPTS = 10;
+
+    /**
+     * The attributes that can be counted
+     */
+    public static final List<String> COUNTABLE_ATTRIBUTES = Collections.unmodifiableList(Arrays.asList(TYPE, SOURCE, STREAM_ID));
+    /**
+     * The attributes that are counted unless configured otherwise
+     */
+    public static final List<String> DEFAULT_COUNTED_ATTRIBUTES = Collections.singletonList(STREAM_ID);
+
+    private final List<String> countedAttributes;
+
+    /**
+     * @param countedAttributes The attributes to count, must be a non-empty subset of {@link #COUNTABLE_ATTRIBUTES}.
+     */
+    public EventCounters(List<String> countedAttributes) {
+        this.countedAttributes = Collections.unmodifiableList(new ArrayList<>(requireCountableAttributes(countedAttributes)));
+    }
+
+    /**
+     * Make sure that {@code countedAttributes} is a non-empty subset of {@link #COUNTABLE_ATTRIBUTES}.
+     *
+     * @return The {@code countedAttributes}
+     * @throws IllegalArgumentException If {@code countedAttributes} is {@code null}, empty or contains other attributes.
+     */
+    public static List<String> requireCountableAttributes(List<String> countedAttributes) {
+        if (countedAttributes == null || countedAttributes.isEmpty()) {
+            throw new IllegalArgumentException("At least one attribute must be counted");
+        }
+        for (String countedAttribute : countedAttributes) {
+            if (!COUNTABLE_ATTRIBUTES.contains(countedAttribute)) {
+                throw new IllegalArgumentException("Cannot count attribute " + countedAttribute + ", only " + String.join(", ", COUNTABLE_ATTRIBUTES) + " can be counted");
+            }
+        }
+        return countedAttributes;
+    }
+
+    /**
+     * @param streamId    The id of the stream that the {@code cloudEvents} were written to
+     * @param cloudEvents The cloud events that were written
+     * @return The increments of the counters after the {@code cloudEvents} have been written.
+     */
+    public Map<String, Long> incrementsAfterWrite(String streamId, Collection<CloudEvent> cloudEvents) {
+        Map<String, Long> increments = new LinkedHashMap<>();
+        for (CloudEvent cloudEvent : cloudEvents) {
+            if (countedAttributes.contains(TYPE)) {
+                increments.merge(counterId(TYPE, cloudEvent.getType()), 1L, Long::sum);
+            }
+            if (countedAttributes.contains(SOURCE)) {
+                increments.merge(counterId(SOURCE, cloudEvent.getSource().toString()), 1L, Long::sum);
+            }
+        }
+        if (!cloudEvents.isEmpty() && countedAttributes.contains(STREAM_ID)) {
+            increments.put(counterId(STREAM_ID, streamId), (long) cloudEvents.size());
+        }
+        return increments;
+    }
+
+    /**
+     * @param cloudEventDocuments The cloud event documents that were written
+     * @return The increments of the counters after the {@code cloudEventDocuments} have been written.
+     */
+    public Map<String, Long> incrementsAfterWrite(Collection<Document> cloudEventDocuments) {
+        Map<String, Long> increments = new LinkedHashMap<>();
+        cloudEventDocuments.forEach(cloudEventDocument -> merge(increments, cloudEventDocument, 1));
+        return increments;
+    }
+
+    /**
+     * @param deletedCloudEventDocument A cloud event document that has been deleted
+     * @return The decrements (negative increments) of the counters after the {@code deletedCloudEventDocument} has been deleted.
+     */
+    public Map<String, Long> decrementsAfterDelete(Document deletedCloudEventDocument) {
+        Map<String, Long> decrements = new LinkedHashMap<>();
+        merge(decrements, deletedCloudEventDocument, -1);
+        return decrements;
+    }
+
+    /**
+     * @param countsOfDeletedEvents The result of the {@link #countEvents(Bson)} aggregation for the events that have been deleted
+     * @return The decrements (negative increments) of the counters after the events have been deleted.
+     */
+    public static Map<String, Long> decrementsAfterDelete(Iterable<Document> countsOfDeletedEvents) {
+        Map<String, Long> decrements = new LinkedHashMap<>();
+        countsOfDeletedEvents.forEach(counter -> decrements.put(counter.getString(ID), -count(counter)));
+        return decrements;
+    }
+
+    /**
+     * @param cloudEventDocument        A cloud event document before it was updated
+     * @param updatedCloudEventDocument The same cloud event document after it was updated
+     * @return The increments of the counters after the cloud event has been updated, empty if the counted attributes were not changed.
+     */
+    public Map<String, Long> incrementsAfterUpdate(Document cloudEventDocument, Document updatedCloudEventDocument) {
+        Map<String, Long> increments = new LinkedHashMap<>();
+        merge(increments, cloudEventDocument, -1);
+        merge(increments, updatedCloudEventDocument, 1);
+        increments.values().removeIf(increment -> increment == 0);
+        return increments;
+    }
+
+    /**
+     * @param increments The increments (or decrements) of the counters
+     * @return The writes that should be made to the event counters collection to apply the {@code increments}. Counters that reach zero are removed.
+     */
+    public static List<WriteModel<Document>> updates(Map<String, Long> increments) {
+        List<WriteModel<Document>> updates = new ArrayList<>();
+        List<String> decrementedCounters = new ArrayList<>();
+        increments.forEach((counterId, increment) -> {
+            if (increment != 0) {
+                updates.add(new UpdateOneModel<>(Filters.eq(ID, counterId), Updates.inc(COUNT, increment), new UpdateOptions().upsert(true)));
+            }
+            if (increment < 0) {
+                decrementedCounters.add(counterId);
+            }
+        });
+        if (!decrementedCounters.isEmpty()) {
+            updates.add(new DeleteManyModel<>(Filters.and(Filters.in(ID, decrementedCounters), Filters.lte(COUNT, 0))));
+        }
+        return updates;
+    }
+
+    /**
+     * Creates an aggregation pipeline, to be run against the event collection, that counts the events matching the {@code eventFilter}
+     * per counter. Each resulting document has the same format as the documents in the event counters collection.
+     *
+     * @param eventFilter The filter that selects the events to count.
+     * @return The aggregation pipeline
+     */
+    public List<Bson> countEvents(Bson eventFilter) {
+        List<Bson> pipeline = new ArrayList<>();
+        pipeline.add(Aggregates.match(eventFilter));
+        pipeline.addAll(countPerCounter());
+        return pipeline;
+    }
+
+    /**
+     * @return The stages of an aggregation pipeline that counts the events, that are passed to the first stage, per counter.
+     * Use {@link #countEvents(Bson)} unless the {@code $match} stage is created by other means.
+     */
+    public List<Document> countPerCounter() {
+        List<Document> counterIds = new ArrayList<>();
+        countedAttributes.forEach(attribute -> counterIds.add(new Document("$concat", Arrays.asList(attribute + ":", "$" + attribute))));
+        return Arrays.asList(
+                new Document("$project", new Document(ID, 0).append(COUNT, counterIds)),
+                new Document("$unwind", "$" + COUNT),
+                new Document("$group", new Document(ID, "$" + COUNT).append(COUNT, new Document("$sum", 1L))));
+    }
+
+    /**
+     * Creates an aggregation pipeline, to be run against the event collection, that finds the ids of all counters of the events in the event collection.
+     * Each resulting document contains the {@link #ID} of a counter. Use {@link #recount(Collection, Iterable)} to populate the counters in batches.
+     *
+     * @return The aggregation pipeline
+     */
+    public List<Bson> counterIdsOfAllEvents() {
+        List<Bson> pipeline = new ArrayList<>(countEvents(new Document()));
+        pipeline.add(Aggregates.project(Projections.include(ID)));
+        return pipeline;
+    }
+
+    /**
+     * @param counterIds The ids of some counters
+     * @return A filter, to be used with {@link #countEvents(Bson)}, that selects the events that are counted by the counters with the given ids.
+     */
+    public Bson eventsCountedBy(Collection<String> counterIds) {
+        Map<String, List<String>> valuesPerAttribute = new LinkedHashMap<>();
+        for (String counterId : counterIds) {
+            int separator = counterId.indexOf(':');
+            valuesPerAttribute.computeIfAbsent(counterId.substring(0, separator), __ -> new ArrayList<>()).add(counterId.substring(separator + 1));
+        }
+        List<Bson> filters = new ArrayList<>();
+        valuesPerAttribute.forEach((attribute, values) -> filters.add(Filters.in(attribute, values)));
+        return filters.size() == 1 ? filters.get(0) : Filters.or(filters);
+    }
+
+    /**
+     * Creates the writes that replace the counters with the given ids by the result of the {@link #countEvents(Bson)} aggregation for the
+     * {@link #eventsCountedBy(Collection) events counted by} these counters. Counters without events are removed.
+     * <p>
+     * The aggregation and the writes must be made in the same transaction. Every counter in {@code counterIds} is written, so the transaction conflicts with
+     * concurrent transactions that write events that update the same counters, instead of overwriting their increments or counting their events twice.
+     * </p>
+     *
+     * @param counterIds The ids of the counters to replace
+     * @param counts     The result of the {@link #countEvents(Bson)} aggregation, may contain counters that are not included in {@code counterIds}, these are ignored.
+     * @return The writes that should be made to the event counters collection.
+     */
+    public static List<WriteModel<Document>> recount(Collection<String> counterIds, Iterable<Document> counts) {
+        Map<String, Long> countPerCounter = new HashMap<>();
+        counts.forEach(counter -> countPerCounter.put(counter.getString(ID), count(counter)));
+        List<WriteModel<Document>> writes = new ArrayList<>();
+        for (String counterId : counterIds) {
+            long count = countPerCounter.getOrDefault(counterId, 0L);
+            if (count > 0) {
+                writes.add(new ReplaceOneModel<>(Filters.eq(ID, counterId), new Document(ID, counterId).append(COUNT, count), new ReplaceOptions().upsert(true)));
+            } else {
+                writes.add(new DeleteOneModel<>(Filters.eq(ID, counterId)));
+            }
+        }
+        return writes;
+    }
+
+    /**
+     * @param throwable An exception thrown by a transaction that {@link #recount(Collection, Iterable) recounts} counters
+     * @return {@code true} if the transaction can be retried, for example because it conflicted with a concurrent write.
+     */
+    public static boolean isTransientTransactionError(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException && ((MongoException) cause).hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return A document that marks that the counters are being populated from the existing events, with the attributes that are counted.
+     * Insert it before populating the counters, if the insert fails because of a duplicate key, the counters have already been (or are being) populated by another event store.
+     * Update it with {@link #backfillCompleted()} once all counters have been populated.
+     */
+    public Document backfillMarker() {
+        return new Document(ID, BACKFILL_MARKER_ID).append(COUNTED_ATTRIBUTES, countedAttributes).append(BACKFILL_COMPLETED, false);
+    }
+
+    /**
+     * @return The update of the {@link #backfillMarker() backfill marker} document that marks that all counters have been populated
+     */
+    public static Bson backfillCompleted() {
+        return Updates.set(BACKFILL_COMPLETED, true);
+    }
+
+    /**
+     * @param backfillMarker The {@link #backfillMarker() backfill marker} document in the event counters collection, or {@code null} if it doesn't exist.
+     * @return {@code true} if all counters have been populated so that they can be used to count events, {@code false} otherwise.
+     */
+    public static boolean isBackfillCompleted(Document backfillMarker) {
+        return backfillMarker != null && Boolean.TRUE.equals(backfillMarker.get(BACKFILL_COMPLETED));
+    }
+
+    /**
+     * @return A query that finds the {@link #backfillMarker() backfill marker} document
+     */
+    public static Bson backfillMarkerQuery() {
+        return Filters.eq(ID, BACKFILL_MARKER_ID);
+    }
+
+    /**
+     * Make sure that the counters in an existing event counters collection were populated for the same attributes as are counted by this instance.
+     *
+     * @param backfillMarker The {@link #backfillMarker() backfill marker} document in the event counters collection
+     * @throws IllegalStateException If other attributes are counted
+     */
+    public void requireSameCountedAttributes(Document backfillMarker) {
+        List<?> countedAttributesInCollection = backfillMarker.get(COUNTED_ATTRIBUTES, List.class);
+        if (!new HashSet<>(countedAttributes).equals(new HashSet<>(countedAttributesInCollection))) {
+            throw new IllegalStateException("The event counters collection counts the attributes " + countedAttributesInCollection + " but the event store is configured to count " + countedAttributes
+                    + ". Drop the event counters collection to recreate it with the new attributes.");
+        }
+    }
+
+    /**
+     * Find the counters whose sum is the number of events matching the {@code filter}. This is possible for filters that only use
+     * "equal to" conditions on a single counted attribute, such as {@code Filter.type("type")} or {@code Filter.type("type1").or(Filter.type("type2"))},
+     * since each event has exactly one value for each attribute.
+     *
+     * @param filter The filter
+     * @return The ids of the counters to sum, or an empty {@code Optional} if the {@code filter} cannot be served from the counters.
+     */
+    public Optional<Set<String>> counterIdsOf(Filter filter) {
+        Set<String> counterIds = new LinkedHashSet<>();
+        String attribute = collectCounterIds(filter, null, counterIds);
+        return attribute == null ? Optional.empty() : Optional.of(counterIds);
+    }
+
+    /**
+     * @param counter A document from the event counters collection, or a result of the {@link #countEvents(Bson)} aggregation.
+     * @return The count of the counter
+     */
+    public static long count(Document counter) {
+        Object count = counter.get(COUNT);
+        return count == null ? 0 : ((Number) count).longValue();
+    }
+
+    // Returns the attribute that the filter is defined for, or null if the filter cannot be served from the counters
+    private String collectCounterIds(Filter filter, String expectedAttribute, Set<String> counterIds) {
+        if (filter instanceof SingleConditionFilter) {
+            SingleConditionFilter singleConditionFilter = (SingleConditionFilter) filter;
+            String attribute = singleConditionFilter.fieldName;
+            if (!countedAttributes.contains(attribute) || (expectedAttribute != null && !expectedAttribute.equals(attribute))) {
+                return null;
+            }
+            return collectCounterIds(attribute, singleConditionFilter.condition, counterIds) ? attribute : null;
+        } else if (filter instanceof CompositionFilter && ((CompositionFilter) filter).operator == Filter.CompositionOperator.OR) {
+            String attribute = expectedAttribute;
+            for (Filter composedFilter : ((CompositionFilter) filter).filters) {
+                attribute = collectCounterIds(composedFilter, attribute, counterIds);
+                if (attribute == null) {
+                    return null;
+                }
+            }
+            return attribute;
+        }
+        return null;
+    }
+
+    private static boolean collectCounterIds(String attribute, Condition<?> condition, Set<String> counterIds) {
+        if (condition instanceof SingleOperandCondition) {
+            SingleOperandCondition<?> singleOperandCondition = (SingleOperandCondition<?>) condition;
+            if (singleOperandCondition.singleOperandConditionName != EQ || !(singleOperandCondition.operand instanceof String)) {
+                return false;
+            }
+            counterIds.add(counterId(attribute, (String) singleOperandCondition.operand));
+            return true;
+        } else if (condition instanceof MultiOperandCondition && ((MultiOperandCondition<?>) condition).operationName == OR) {
+            for (Condition<?> operation : ((MultiOperandCondition<?>) condition).operations) {
+                if (!collectCounterIds(attribute, operation, counterIds)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void merge(Map<String, Long> increments, Document cloudEventDocument, long increment) {
+        countedAttributes.forEach(attribute -> increments.merge(counterId(attribute, cloudEventDocument.getString(attribute)), increment, Long::sum));
+    }
+
+    private static String counterId(String attribute, String value) {
+        return attribute + ":" + value;
+    }
+}
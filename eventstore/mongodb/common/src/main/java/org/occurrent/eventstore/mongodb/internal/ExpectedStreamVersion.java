@@ -0,0 +1,48 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.internal;
+
+import org.occurrent.condition.Condition;
+import org.occurrent.condition.Condition.SingleOperandCondition;
+import org.occurrent.eventstore.api.WriteCondition;
+import org.occurrent.eventstore.api.WriteCondition.StreamVersionWriteCondition;
+
+import java.util.OptionalLong;
+
+import static org.occurrent.condition.Condition.SingleOperandConditionName.EQ;
+
+/**
+ * Extracts the exact stream version that a {@link WriteCondition} expects, if any.
+ */
+public class ExpectedStreamVersion {
+
+    /**
+     * @param writeCondition The write condition
+     * @return The stream version if the {@code writeCondition} is equal to {@code WriteCondition.streamVersionEq(version)}, or an empty {@code OptionalLong} otherwise.
+     */
+    public static OptionalLong fromWriteCondition(WriteCondition writeCondition) {
+        if (writeCondition == null || writeCondition.isAnyStreamVersion() || !(writeCondition instanceof StreamVersionWriteCondition)) {
+            return OptionalLong.empty();
+        }
+
+        Condition<Long> condition = ((StreamVersionWriteCondition) writeCondition).condition;
+        if (condition instanceof SingleOperandCondition && ((SingleOperandCondition<Long>) condition).singleOperandConditionName == EQ) {
+            return OptionalLong.of(((SingleOperandCondition<Long>) condition).operand);
+        }
+        return OptionalLong.empty();
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.internal;
+
+import io.cloudevents.CloudEvent;
+import org.occurrent.eventstore.api.WriteCondition;
+import org.occurrent.eventstore.api.WriteConditionNotFulfilledException;
+import org.occurrent.eventstore.api.WriteResult;
+import org.occurrent.functionalsupport.internal.FunctionalSupport.Pair;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Coalesces concurrent writes to different event streams into a single write, using a "group commit" technique.
+ * <p>
+ * The first thread that finds no commit in progress becomes the "leader". The leader waits at most {@code maxWait} for other writes to arrive
+ * (or until {@code maxBatchSize} writes are pending) and then writes all pending writes in one go using the supplied {@code batchWriter}, which must write
+ * all streams atomically. Threads that arrive while a commit is in progress wait until it has finished, and their writes are then included in the next batch.
+ * Each thread gets its own {@link WriteResult}, or its own exception, back.
+ * Each pending write has its own identity, which is used to hand results and failures back to the thread that issued the write.
+ * </p>
+ * <p>
+ * Note that the writes of all threads in a batch are written in the transaction started by the {@code batchWriter}. The coalescer must thus never be
+ * used for writes that are part of a transaction managed by the caller, since such writes would then commit or roll back together with the
+ * writes of unrelated threads.
+ * </p>
+ * <p>
+ * If the {@code batchWriter} throws a {@link WriteConditionNotFulfilledException}, only the write to that stream fails and the rest of the batch is retried.
+ * Other failures can't be attributed to a single write, so each write in the batch is then retried separately.
+ * </p>
+ */
+public class GroupCommitWriteCoalescer {
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final Function<Map<String, Pair<WriteCondition, List<CloudEvent>>>, List<WriteResult>> batchWriter;
+    private final BlockingQueue<PendingWrite> pendingWrites = new LinkedBlockingQueue<>();
+    private final ReentrantLock commitLock = new ReentrantLock();
+
+    /**
+     * @param maxBatchSize The maximum number of writes that are written in a single batch
+     * @param maxWait      The maximum time the leader waits for more writes to arrive before writing the batch. {@link Duration#ZERO} means that
+     *                     the leader writes whatever is pending without waiting, i.e. batches only form while a previous batch is being written.
+     * @param batchWriter  A function that writes events to several event streams atomically (typically in a transaction)
+     */
+    public GroupCommitWriteCoalescer(int maxBatchSize, Duration maxWait, Function<Map<String, Pair<WriteCondition, List<CloudEvent>>>, List<WriteResult>> batchWriter) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Max batch size must be greater than zero");
+        }
+        requireNonNull(maxWait, "Max wait cannot be null");
+        if (maxWait.isNegative()) {
+            throw new IllegalArgumentException("Max wait cannot be negative");
+        }
+        requireNonNull(batchWriter, "Batch writer cannot be null");
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.batchWriter = batchWriter;
+    }
+
+    /**
+     * Write the {@code events} to the stream when the {@code writeCondition} is fulfilled, possibly together with concurrent writes to other streams.
+     * Blocks until the events have been written.
+     *
+     * @return The {@link WriteResult} of the write to the {@code streamId}
+     * @throws WriteConditionNotFulfilledException If the {@code writeCondition} was not fulfilled
+     */
+    public WriteResult write(String streamId, WriteCondition writeCondition, List<CloudEvent> events) {
+        requireNonNull(streamId, "Stream id cannot be null");
+        requireNonNull(writeCondition, WriteCondition.class.getSimpleName() + " cannot be null");
+        requireNonNull(events, "Events cannot be null");
+
+        PendingWrite pendingWrite = new PendingWrite(streamId, writeCondition, events);
+        pendingWrites.add(pendingWrite);
+        while (!pendingWrite.result.isDone()) {
+            // Wait for the commit in progress (if any), the write may have been included in it
+            commitLock.lock();
+            try {
+                if (!pendingWrite.result.isDone()) {
+                    commit(collectBatch());
+                }
+            } finally {
+                commitLock.unlock();
+            }
+        }
+        return pendingWrite.join();
+    }
+
+    private List<PendingWrite> collectBatch() {
+        List<PendingWrite> batch = new ArrayList<>();
+        pendingWrites.drainTo(batch, maxBatchSize);
+        long deadline = System.nanoTime() + maxWaitNanos;
+        try {
+            while (batch.size() < maxBatchSize) {
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    break;
+                }
+                PendingWrite pendingWrite = pendingWrites.poll(remainingNanos, NANOSECONDS);
+                if (pendingWrite == null) {
+                    break;
+                }
+                batch.add(pendingWrite);
+                pendingWrites.drainTo(batch, maxBatchSize - batch.size());
+            }
+        } catch (InterruptedException e) {
+            // Write what we've got so far
+            Thread.currentThread().interrupt();
+        }
+        return batch;
+    }
+
+    private void commit(List<PendingWrite> batch) {
+        try {
+            // Several writes to the same stream must be written in order, so they're written in separate rounds
+            List<PendingWrite> remaining = batch;
+            while (!remaining.isEmpty()) {
+                Map<Long, PendingWrite> round = new LinkedHashMap<>();
+                Set<String> streamIdsInRound = new HashSet<>();
+                List<PendingWrite> nextRound = new ArrayList<>();
+                for (PendingWrite pendingWrite : remaining) {
+                    if (streamIdsInRound.add(pendingWrite.streamId)) {
+                        round.put(pendingWrite.id, pendingWrite);
+                    } else {
+                        nextRound.add(pendingWrite);
+                    }
+                }
+                writeRound(round);
+                remaining = nextRound;
+            }
+        } catch (Throwable e) {
+            // Never leave a writer waiting forever
+            batch.forEach(pendingWrite -> pendingWrite.result.completeExceptionally(e));
+            throw e;
+        }
+    }
+
+    private void writeRound(Map<Long, PendingWrite> round) {
+        while (!round.isEmpty()) {
+            try {
+                complete(round.values(), batchWriter.apply(toBatch(round.values())));
+                return;
+            } catch (WriteConditionNotFulfilledException e) {
+                PendingWrite failedWrite = findFailedWrite(round.values(), e);
+                if (failedWrite == null) {
+                    writeIndividually(round.values());
+                    return;
+                }
+                round.remove(failedWrite.id);
+                failedWrite.result.completeExceptionally(e);
+            } catch (RuntimeException e) {
+                if (round.size() == 1) {
+                    round.values().iterator().next().result.completeExceptionally(e);
+                } else {
+                    writeIndividually(round.values());
+                }
+                return;
+            }
+        }
+    }
+
+    private void writeIndividually(Collection<PendingWrite> writes) {
+        for (PendingWrite pendingWrite : writes) {
+            try {
+                complete(Collections.singletonList(pendingWrite), batchWriter.apply(toBatch(Collections.singletonList(pendingWrite))));
+            } catch (RuntimeException e) {
+                pendingWrite.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    // The batch writer passes the write condition it was given to the exception, so the failed write is the one with the same stream id
+    // and the very same write condition instance. Returns null if the exception can't be attributed to a single write in the round.
+    private static PendingWrite findFailedWrite(Collection<PendingWrite> writes, WriteConditionNotFulfilledException e) {
+        List<PendingWrite> candidates = new ArrayList<>(1);
+        for (PendingWrite pendingWrite : writes) {
+            if (pendingWrite.streamId.equals(e.eventStreamId) && pendingWrite.writeCondition == e.writeCondition) {
+                candidates.add(pendingWrite);
+            }
+        }
+        return candidates.size() == 1 ? candidates.get(0) : null;
+    }
+
+    // Stream ids are unique within a batch, so each write result belongs to the (only) write to its stream
+    private static void complete(Collection<PendingWrite> writes, List<WriteResult> writeResults) {
+        Map<String, PendingWrite> writesByStreamId = new HashMap<>();
+        writes.forEach(pendingWrite -> writesByStreamId.put(pendingWrite.streamId, pendingWrite));
+        for (WriteResult writeResult : writeResults) {
+            PendingWrite pendingWrite = writesByStreamId.get(writeResult.getStreamId());
+            if (pendingWrite != null) {
+                pendingWrite.result.complete(writeResult);
+            }
+        }
+        writes.forEach(pendingWrite -> pendingWrite.result.completeExceptionally(new IllegalStateException("Internal error: No write result was returned for stream " + pendingWrite.streamId)));
+    }
+
+    private static Map<String, Pair<WriteCondition, List<CloudEvent>>> toBatch(Collection<PendingWrite> writes) {
+        Map<String, Pair<WriteCondition, List<CloudEvent>>> batch = new LinkedHashMap<>();
+        writes.forEach(pendingWrite -> batch.put(pendingWrite.streamId, new Pair<>(pendingWrite.writeCondition, pendingWrite.events)));
+        return batch;
+    }
+
+    private static class PendingWrite {
+        private static final AtomicLong ID_GENERATOR = new AtomicLong();
+
+        private final long id = ID_GENERATOR.incrementAndGet();
+        private final String streamId;
+        private final WriteCondition writeCondition;
+        private final List<CloudEvent> events;
+        private final CompletableFuture<WriteResult> result = new CompletableFuture<>();
+
+        private PendingWrite(String streamId, WriteCondition writeCondition, List<CloudEvent> events) {
+            this.streamId = streamId;
+            this.writeCondition = writeCondition;
+            this.events = events;
+        }
+
+        private WriteResult join() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -20,23 +20,34 @@ import com.mongodb.ErrorCategory;
 import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoCommandException;
 import com.mongodb.MongoException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.WriteError;
 import com.mongodb.bulk.BulkWriteError;
+import org.bson.BsonDocument;
 import org.occurrent.eventstore.api.DuplicateCloudEventException;
 import org.occurrent.eventstore.api.WriteCondition;
 import org.occurrent.eventstore.api.WriteConditionNotFulfilledException;
 
 import java.net.URI;
+import java.util.List;
+
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_VERSION;
 
 /**
- * Translates a {@link MongoBulkWriteException} to a {@link DuplicateCloudEventException}.
+ * Translates MongoDB write exceptions to {@link DuplicateCloudEventException} or {@link WriteConditionNotFulfilledException}.
  */
 public class MongoExceptionTranslator {
+    private static final int DUPLICATE_KEY_ERROR_CODE = 11000;
+    private static final String STREAM_ID_AND_STREAM_VERSION_INDEX_NAME = STREAM_ID + "_1_" + STREAM_VERSION + "_1";
 
     /**
-     * Translates a {@link MongoBulkWriteException} to a {@link DuplicateCloudEventException}.
+     * Translates a {@link MongoBulkWriteException} or {@link MongoWriteException} to a {@link DuplicateCloudEventException}, or to a
+     * {@link WriteConditionNotFulfilledException} if the duplicate key violates the unique stream id and stream version index
+     * (which means that another writer has written to the same stream concurrently).
      *
-     * @param e The {@code MongoBulkWriteException} to translate
-     * @return The resulting {@code DuplicateCloudEventException}
+     * @param e The {@code MongoException} to translate
+     * @return The resulting {@code RuntimeException}
      */
     public static RuntimeException translateException(WriteContext ctx, MongoException e) {
         final RuntimeException runtimeException;
@@ -44,27 +55,67 @@ public class MongoExceptionTranslator {
             MongoBulkWriteException mongoBulkWriteException = (MongoBulkWriteException) e;
             runtimeException = mongoBulkWriteException.getWriteErrors().stream()
                     .filter(bulkWriteError -> ErrorCategory.fromErrorCode(bulkWriteError.getCode()) == ErrorCategory.DUPLICATE_KEY)
-                    .map(bulkWriteError -> translateToDuplicateCloudEventException(mongoBulkWriteException, bulkWriteError))
+                    .map(bulkWriteError -> isDuplicateStreamVersion(ctx, bulkWriteError) ? concurrentWriteToSameStream(ctx) : translateToDuplicateCloudEventException(mongoBulkWriteException, bulkWriteError.getMessage()))
                     .findFirst()
-                    .map(RuntimeException.class::cast)
                     .orElse(e);
+        } else if (e instanceof MongoWriteException && ((MongoWriteException) e).getError().getCategory() == ErrorCategory.DUPLICATE_KEY) {
+            WriteError writeError = ((MongoWriteException) e).getError();
+            runtimeException = isDuplicateStreamVersion(ctx, writeError) ? concurrentWriteToSameStream(ctx) : translateToDuplicateCloudEventException(e, writeError.getMessage());
         } else if (e instanceof MongoCommandException && e.getCode() == 112) {
             // See https://github.com/johanhaleby/occurrent/issues/85
             // We increase version by 1 since this error only happens when two or more clients write to the same stream at the same time
             // while also have read the same previous event stream version. This means that one of these write "have won" and the
             // version has increased by at least one.
-            long eventStreamVersion = ctx.eventStreamVersion + 1;
-            runtimeException = new WriteConditionNotFulfilledException(ctx.eventStreamId, eventStreamVersion, ctx.writeCondition,
-                    String.format("%s was not fulfilled. Expected version %s but was %s.", WriteCondition.class.getSimpleName(), ctx.writeCondition.toString(), eventStreamVersion));
+            runtimeException = concurrentWriteToSameStream(ctx);
         } else {
             runtimeException = e;
         }
         return runtimeException;
     }
 
-    private static DuplicateCloudEventException translateToDuplicateCloudEventException(MongoBulkWriteException e, BulkWriteError bulk) {
+    /**
+     * Find the index of the write that caused {@code e}. For a {@link MongoBulkWriteException} this is the index of the first duplicate key
+     * error (which is the error that {@link #translateException(WriteContext, MongoException)} translates), or the index of the first write error
+     * if there's no duplicate key error. For all other exceptions {@code 0} is returned.
+     *
+     * @param e The {@code MongoException}
+     * @return The index of the failing write in the list of written documents
+     */
+    public static int indexOfFailingWrite(MongoException e) {
+        if (!(e instanceof MongoBulkWriteException) || ((MongoBulkWriteException) e).getWriteErrors().isEmpty()) {
+            return 0;
+        }
+        List<BulkWriteError> writeErrors = ((MongoBulkWriteException) e).getWriteErrors();
+        return writeErrors.stream()
+                .filter(bulkWriteError -> ErrorCategory.fromErrorCode(bulkWriteError.getCode()) == ErrorCategory.DUPLICATE_KEY)
+                .findFirst()
+                .orElse(writeErrors.get(0))
+                .getIndex();
+    }
+
+    // A duplicate stream version can only be translated into a WriteConditionNotFulfilledException if there's an actual write condition to report
+    private static boolean isDuplicateStreamVersion(WriteContext ctx, WriteError writeError) {
+        return !ctx.writeCondition.isAnyStreamVersion() && writeError.getCode() == DUPLICATE_KEY_ERROR_CODE && violatesStreamIdAndStreamVersionIndex(writeError);
+    }
+
+    // The key pattern is only included in the error details by MongoDB 4.4+, older versions only include the index name in the error message
+    private static boolean violatesStreamIdAndStreamVersionIndex(WriteError writeError) {
+        BsonDocument keyPattern = writeError.getDetails().getDocument("keyPattern", null);
+        if (keyPattern != null) {
+            return keyPattern.size() == 2 && keyPattern.containsKey(STREAM_ID) && keyPattern.containsKey(STREAM_VERSION);
+        }
+        String errorMessage = writeError.getMessage();
+        return errorMessage != null && errorMessage.contains(" index: " + STREAM_ID_AND_STREAM_VERSION_INDEX_NAME + " ");
+    }
+
+    private static WriteConditionNotFulfilledException concurrentWriteToSameStream(WriteContext ctx) {
+        long eventStreamVersion = ctx.eventStreamVersion + 1;
+        return new WriteConditionNotFulfilledException(ctx.eventStreamId, eventStreamVersion, ctx.writeCondition,
+                String.format("%s was not fulfilled. Expected version %s but was %s.", WriteCondition.class.getSimpleName(), ctx.writeCondition.toString(), eventStreamVersion));
+    }
+
+    private static DuplicateCloudEventException translateToDuplicateCloudEventException(MongoException e, String errorMessage) {
         final DuplicateCloudEventException translatedException;
-        String errorMessage = bulk.getMessage();
         if (errorMessage.contains("{ id: \"") && errorMessage.contains(", source: \"")) {
             int idKeyStartIndex = errorMessage.indexOf("{ id: \"");
             int idValueStartIndex = idKeyStartIndex + "{ id: \"".length();
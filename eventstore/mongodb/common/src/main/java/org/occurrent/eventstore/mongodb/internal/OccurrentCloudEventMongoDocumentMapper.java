@@ -19,9 +19,12 @@ package org.occurrent.eventstore.mongodb.internal;
 import io.cloudevents.CloudEvent;
 import io.cloudevents.core.builder.CloudEventBuilder;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
 import org.occurrent.cloudevents.OccurrentCloudEventExtension;
+import org.occurrent.eventstore.mongodb.cloudevent.CloudEventDataCompression;
 import org.occurrent.eventstore.mongodb.cloudevent.DocumentCloudEventReader;
 import org.occurrent.eventstore.mongodb.cloudevent.DocumentCloudEventWriter;
+import org.occurrent.eventstore.mongodb.cloudevent.LazyBsonCloudEvent;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
 
 import java.time.OffsetDateTime;
@@ -35,39 +38,57 @@ import static org.occurrent.time.internal.RFC3339.RFC_3339_DATE_TIME_FORMATTER;
 
 /**
  * Class responsible for converting a {@link CloudEvent} (that contains the Occurrent extensions)
- * into a MongoDB {@link Document} and vice versa.
+ * into a MongoDB {@link Document} and vice versa. Compressed cloud event data (see {@link CloudEventDataCompression}) is decompressed when converting to a {@link CloudEvent}.
  */
 public class OccurrentCloudEventMongoDocumentMapper {
 
     public static Document convertToDocument(TimeRepresentation timeRepresentation, String streamId, long streamVersion, CloudEvent cloudEvent) {
+        return convertToDocument(timeRepresentation, CloudEventDataCompression.none(), streamId, streamVersion, cloudEvent);
+    }
+
+    public static Document convertToDocument(TimeRepresentation timeRepresentation, CloudEventDataCompression dataCompression, String streamId, long streamVersion, CloudEvent cloudEvent) {
         Document cloudEventDocument = DocumentCloudEventWriter.toDocument(cloudEvent);
         cloudEventDocument.put(OccurrentCloudEventExtension.STREAM_ID, streamId);
         cloudEventDocument.put(OccurrentCloudEventExtension.STREAM_VERSION, streamVersion);
 
         if (timeRepresentation == DATE && cloudEvent.getTime() != null) {
-            OffsetDateTime time = cloudEvent.getTime();
-            if (!time.truncatedTo(MILLIS).equals(time)) {
-                throw new IllegalArgumentException("The " + OffsetDateTime.class.getSimpleName() + " in the CloudEvent time field contains micro-/nanoseconds. " +
-                        "This is is not possible to represent when using " + TimeRepresentation.class.getSimpleName() + " " + DATE.name() +
-                        ", either change to " + TimeRepresentation.class.getSimpleName() + " " + RFC_3339_STRING.name() +
-                        " or remove micro-/nanoseconds using \"offsetDateTime.truncatedTo(ChronoUnit.MILLIS)\".");
-            } else if (!time.equals(time.withOffsetSameInstant(UTC))) {
-                throw new IllegalArgumentException("The " + OffsetDateTime.class.getSimpleName() + " in the CloudEvent time field is not defined in UTC. " +
-                        TimeRepresentation.class.getSimpleName() + " " + DATE.name() + " require UTC as timezone to not loose precision. " +
-                        "Either change to " + TimeRepresentation.class.getSimpleName() + " " + RFC_3339_STRING.name() +
-                        " or convert the " + OffsetDateTime.class.getSimpleName() + " to UTC using e.g. \"offsetDateTime.withOffsetSameInstant(ZoneOffset.UTC)\".");
-            }
-
             // Convert date string to a date in order to be able to perform date/time queries on the "time" property name
-            Date date = Date.from(time.toInstant());
-            cloudEventDocument.put("time", date);
+            cloudEventDocument.put("time", convertTime(timeRepresentation, cloudEvent.getTime()));
         }
 
+        dataCompression.compressData(cloudEventDocument);
         return cloudEventDocument;
     }
 
+    /**
+     * Convert the time of a cloud event into the value that is stored in the "time" field of the cloud event document.
+     *
+     * @param timeRepresentation The {@link TimeRepresentation} to use
+     * @param time               The time of the cloud event, may be {@code null}.
+     * @return A {@link Date} if {@code timeRepresentation} is {@link TimeRepresentation#DATE}, otherwise the time as a {@code String}.
+     * @throws IllegalArgumentException If the time cannot be represented as a {@link Date} without loosing precision.
+     */
+    public static Object convertTime(TimeRepresentation timeRepresentation, OffsetDateTime time) {
+        if (time == null) {
+            return null;
+        } else if (timeRepresentation != DATE) {
+            return time.toString();
+        } else if (!time.truncatedTo(MILLIS).equals(time)) {
+            throw new IllegalArgumentException("The " + OffsetDateTime.class.getSimpleName() + " in the CloudEvent time field contains micro-/nanoseconds. " +
+                    "This is is not possible to represent when using " + TimeRepresentation.class.getSimpleName() + " " + DATE.name() +
+                    ", either change to " + TimeRepresentation.class.getSimpleName() + " " + RFC_3339_STRING.name() +
+                    " or remove micro-/nanoseconds using \"offsetDateTime.truncatedTo(ChronoUnit.MILLIS)\".");
+        } else if (!time.equals(time.withOffsetSameInstant(UTC))) {
+            throw new IllegalArgumentException("The " + OffsetDateTime.class.getSimpleName() + " in the CloudEvent time field is not defined in UTC. " +
+                    TimeRepresentation.class.getSimpleName() + " " + DATE.name() + " require UTC as timezone to not loose precision. " +
+                    "Either change to " + TimeRepresentation.class.getSimpleName() + " " + RFC_3339_STRING.name() +
+                    " or convert the " + OffsetDateTime.class.getSimpleName() + " to UTC using e.g. \"offsetDateTime.withOffsetSameInstant(ZoneOffset.UTC)\".");
+        }
+        return Date.from(time.toInstant());
+    }
+
     public static CloudEvent convertToCloudEvent(TimeRepresentation timeRepresentation, Document cloudEventDocument) {
-        Document document = new Document(cloudEventDocument);
+        Document document = new Document(CloudEventDataCompression.decompressData(cloudEventDocument));
         document.remove("_id");
 
         if (timeRepresentation == DATE) {
@@ -84,4 +105,20 @@ public class OccurrentCloudEventMongoDocumentMapper {
         // When converting to JSON (document.toJson()) the stream version is interpreted as an int in Jackson, we convert it manually to long afterwards.
         return CloudEventBuilder.v1(cloudEvent).withExtension(OccurrentCloudEventExtension.STREAM_VERSION, document.getLong(OccurrentCloudEventExtension.STREAM_VERSION)).build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Convert a raw cloud event document into a {@link CloudEvent} that decodes its attributes, extensions and data lazily (see {@link LazyBsonCloudEvent}).
+     * The time is decoded correctly regardless of {@link TimeRepresentation}.
+     */
+    public static CloudEvent convertToCloudEvent(RawBsonDocument cloudEventDocument) {
+        return convertToCloudEvent(cloudEventDocument, false);
+    }
+
+    /**
+     * Same as {@link #convertToCloudEvent(RawBsonDocument)} but json data that is stored as a document is exposed as the embedded {@link org.bson.BsonDocument}
+     * if {@code rawBsonData} is {@code true} (see {@link LazyBsonCloudEvent#LazyBsonCloudEvent(RawBsonDocument, boolean)}).
+     */
+    public static CloudEvent convertToCloudEvent(RawBsonDocument cloudEventDocument, boolean rawBsonData) {
+        return new LazyBsonCloudEvent(CloudEventDataCompression.decompressData(cloudEventDocument), rawBsonData);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.eventstore.mongodb.internal;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Facet;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_VERSION;
+
+/**
+ * Support for reading an event stream, and its current version, in a single round-trip to MongoDB instead of first finding
+ * the current version of the stream and then querying its events.
+ * <p>
+ * When the entire stream is read, the events are found using an ordinary ascending query and the version of the stream is the
+ * stream version of the last event. When only a part of the stream is read (skip/limit or a version range), the version cannot
+ * be derived from the events, so an aggregation with a {@code $facet} stage returns both the events and the current version in a single document.
+ * This document cannot exceed the maximum BSON document size (16 MB), so the event stores fall back to reading the events with a cursor if
+ * it's {@link #isResultTooLarge(MongoException) too large}. They also use a cursor if query/read options or lazy cloud events are configured,
+ * since these can't be applied to the aggregation.
+ * </p>
+ */
+public class SingleRoundTripStreamRead {
+    private static final String EVENTS = "events";
+    private static final String VERSION = "version";
+    private static final int BSON_OBJECT_TOO_LARGE = 10334;
+    // Used by older MongoDB versions when the result of an aggregation exceeds the maximum document size
+    private static final int AGGREGATION_RESULT_TOO_LARGE = 16389;
+
+    private SingleRoundTripStreamRead() {
+    }
+
+    /**
+     * @return {@code true} if the read is for the entire stream, i.e. no events are skipped or limited and no version range is specified.
+     */
+    public static boolean isEntireStream(long fromVersionExclusive, long toVersionInclusive, int skip, int limit) {
+        return fromVersionExclusive == 0 && toVersionInclusive == Long.MAX_VALUE && skip == 0 && limit == Integer.MAX_VALUE;
+    }
+
+    /**
+     * Creates an aggregation pipeline, to be run against the event collection, that returns a single document with the events of the stream in the given version range
+     * (in stream version order), as well as the current version of the stream. Use {@link #events(Document)} and {@link #version(Document)} to get them from the result.
+     * The events are sorted using the (streamid, streamversion) index before the {@code $facet} stage so that no in-memory sort is required.
+     *
+     * @return The aggregation pipeline
+     */
+    public static List<Bson> partOfStream(String streamId, long fromVersionExclusive, long toVersionInclusive, int skip, int limit) {
+        List<Bson> eventsPipeline = new ArrayList<>();
+        Bson versionRange = Filters.lte(STREAM_VERSION, toVersionInclusive);
+        if (fromVersionExclusive > 0) {
+            versionRange = Filters.and(Filters.gt(STREAM_VERSION, fromVersionExclusive), versionRange);
+        }
+        eventsPipeline.add(Aggregates.match(versionRange));
+        if (skip != 0) {
+            eventsPipeline.add(Aggregates.skip(skip));
+        }
+        if (limit != Integer.MAX_VALUE) {
+            eventsPipeline.add(Aggregates.limit(limit));
+        }
+
+        return Arrays.asList(
+                Aggregates.match(Filters.eq(STREAM_ID, streamId)),
+                Aggregates.sort(Sorts.ascending(STREAM_VERSION)),
+                Aggregates.facet(
+                        new Facet(EVENTS, eventsPipeline),
+                        new Facet(VERSION, Aggregates.group(null, Accumulators.max(VERSION, "$" + STREAM_VERSION)))));
+    }
+
+    /**
+     * @param e An exception thrown when running the {@link #partOfStream(String, long, long, int, int)} pipeline
+     * @return {@code true} if the document returned by the pipeline would exceed the maximum BSON document size
+     */
+    public static boolean isResultTooLarge(MongoException e) {
+        return e.getCode() == BSON_OBJECT_TOO_LARGE || e.getCode() == AGGREGATION_RESULT_TOO_LARGE;
+    }
+
+    /**
+     * @param result The document returned by the {@link #partOfStream(String, long, long, int, int)} pipeline, may be {@code null}.
+     * @return The cloud event documents in the result
+     */
+    public static List<Document> events(Document result) {
+        if (result == null) {
+            return Collections.emptyList();
+        }
+        return result.getList(EVENTS, Document.class, Collections.emptyList());
+    }
+
+    /**
+     * @param result The document returned by the {@link #partOfStream(String, long, long, int, int)} pipeline, may be {@code null}.
+     * @return The current version of the stream, or {@code 0} if the stream doesn't exist.
+     */
+    public static long version(Document result) {
+        if (result == null) {
+            return 0;
+        }
+        List<Document> versions = result.getList(VERSION, Document.class, Collections.emptyList());
+        return versions.isEmpty() ? 0 : versions.get(0).getLong(VERSION);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.internal;
+
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.MergeOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_VERSION;
+
+/**
+ * Field names of the documents in the (optional) "stream heads" collection. There's one document per event stream
+ * in this collection and the {@code _id} of the document is the stream id. The documents are maintained in the same
+ * transaction as the events are written so that the current version of a stream can be found using a single point lookup.
+ */
+public class StreamHeads {
+    public static final String ID = "_id";
+    public static final String VERSION = "version";
+    public static final String LAST_EVENT_TIME = "lastEventTime";
+    public static final String EVENT_COUNT = "eventCount";
+
+    private static final String TIME = "time";
+
+    private StreamHeads() {
+    }
+
+    /**
+     * @param cloudEventDocuments The (non-empty) list of cloud event documents that were written to a single stream, in stream version order.
+     * @return The update that should be upserted into the stream head document after the {@code cloudEventDocuments} have been written.
+     */
+    public static Bson updateAfterWrite(List<Document> cloudEventDocuments) {
+        Document lastCloudEventDocument = cloudEventDocuments.get(cloudEventDocuments.size() - 1);
+        return updateAfterWrite(lastCloudEventDocument.getLong(STREAM_VERSION), lastCloudEventDocument.get(TIME), cloudEventDocuments.size());
+    }
+
+    /**
+     * @param lastStreamVersion The stream version of the last cloud event that was written to the stream
+     * @param lastEventTime     The value of the "time" field of the last cloud event that was written to the stream, may be {@code null}.
+     * @param numberOfEvents    The number of cloud events that were written to the stream
+     * @return The update that should be upserted into the stream head document after the cloud events have been written.
+     */
+    public static Bson updateAfterWrite(long lastStreamVersion, Object lastEventTime, int numberOfEvents) {
+        return Updates.combine(
+                Updates.set(VERSION, lastStreamVersion),
+                Updates.set(LAST_EVENT_TIME, lastEventTime),
+                Updates.inc(EVENT_COUNT, numberOfEvents));
+    }
+
+    /**
+     * @param updatedCloudEventDocument A cloud event document that has been updated.
+     * @return The update that should be applied to the stream head document, if the {@code updatedCloudEventDocument} is the last event in the stream.
+     */
+    public static Bson updateAfterEventUpdate(Document updatedCloudEventDocument) {
+        return Updates.set(LAST_EVENT_TIME, updatedCloudEventDocument.get(TIME));
+    }
+
+    /**
+     * Creates an aggregation pipeline, to be run against the event collection, that calculates the stream head document
+     * of each stream that has events matching the {@code eventFilter}. Streams without any events will not be included in the result.
+     *
+     * @param eventFilter The filter that selects the events whose streams heads to recalculate.
+     * @return The aggregation pipeline
+     */
+    public static List<Bson> recalculate(Bson eventFilter) {
+        return Arrays.asList(
+                Aggregates.match(eventFilter),
+                Aggregates.sort(Sorts.ascending(STREAM_ID, STREAM_VERSION)),
+                Aggregates.group("$" + STREAM_ID,
+                        Accumulators.last(VERSION, "$" + STREAM_VERSION),
+                        Accumulators.last(LAST_EVENT_TIME, "$" + TIME),
+                        Accumulators.sum(EVENT_COUNT, 1)));
+    }
+
+    /**
+     * Creates an aggregation pipeline, to be run against the event collection, that creates the stream head document of every stream in the event collection
+     * and stores it in the {@code streamHeadsCollectionName} collection. An existing stream head document is only replaced if it's behind the events in the
+     * event collection, e.g. because events were written by an event store that didn't have the stream heads collection enabled. Since a stream head is never moved
+     * backwards, it's safe to run the pipeline while other event stores are writing events (and updating the stream heads).
+     *
+     * @param streamHeadsCollectionName The name of the stream heads collection
+     * @return The aggregation pipeline
+     */
+    public static List<Bson> backfill(String streamHeadsCollectionName) {
+        List<Bson> pipeline = new ArrayList<>(recalculate(new Document()));
+        // Replace the existing stream head ("$$ROOT") with the recalculated one ("$$new") only if the recalculated version is greater
+        Document replaceIfBehind = new Document("$replaceWith", new Document("$cond", Arrays.asList(
+                new Document("$gt", Arrays.asList("$$new." + VERSION, "$" + VERSION)), "$$new", "$$ROOT")));
+        pipeline.add(Aggregates.merge(streamHeadsCollectionName, new MergeOptions()
+                .uniqueIdentifier(ID)
+                .whenMatched(MergeOptions.WhenMatched.PIPELINE)
+                .whenMatchedPipeline(Collections.singletonList(replaceIfBehind))
+                .whenNotMatched(MergeOptions.WhenNotMatched.INSERT)));
+        return pipeline;
+    }
+}
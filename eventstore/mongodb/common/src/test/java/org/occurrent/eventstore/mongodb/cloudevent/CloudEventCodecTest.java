@@ -0,0 +1,181 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.cloudevent;
+
+import com.mongodb.MongoClientSettings;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.v1.CloudEventBuilder;
+import io.cloudevents.core.data.PojoCloudEventData;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.occurrent.eventstore.mongodb.internal.OccurrentCloudEventMongoDocumentMapper.convertToDocument;
+import static org.occurrent.mongodb.timerepresentation.TimeRepresentation.DATE;
+
+@DisplayName("cloud event codec")
+class CloudEventCodecTest {
+
+    @Nested
+    @DisplayName("encodes the same document as OccurrentCloudEventMongoDocumentMapper when")
+    class SameDocumentAsMapper {
+
+        @ParameterizedTest
+        @EnumSource(TimeRepresentation.class)
+        void data_is_json_bytes(TimeRepresentation timeRepresentation) {
+            CloudEvent cloudEvent = cloudEvent().withData("application/json", "{\"name\" : \"hello\", \"age\" : 2, \"tags\" : [\"a\", \"b\"], \"nested\" : {\"value\" : 1.5}}".getBytes(UTF_8)).build();
+            assertEncodedDocumentIsEqualToDocumentCreatedByMapper(timeRepresentation, cloudEvent);
+        }
+
+        @ParameterizedTest
+        @EnumSource(TimeRepresentation.class)
+        void data_is_a_json_array(TimeRepresentation timeRepresentation) {
+            CloudEvent cloudEvent = cloudEvent().withData("application/json", "[1, 2]".getBytes(UTF_8)).build();
+            assertEncodedDocumentIsEqualToDocumentCreatedByMapper(timeRepresentation, cloudEvent);
+        }
+
+        @ParameterizedTest
+        @EnumSource(TimeRepresentation.class)
+        void data_is_a_map(TimeRepresentation timeRepresentation) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("name", "hello");
+            data.put("age", 2L);
+            CloudEvent cloudEvent = cloudEvent().withData(PojoCloudEventData.wrap(data, __ -> new byte[0])).build();
+            assertEncodedDocumentIsEqualToDocumentCreatedByMapper(timeRepresentation, cloudEvent);
+        }
+
+        @ParameterizedTest
+        @EnumSource(TimeRepresentation.class)
+        void data_is_a_document(TimeRepresentation timeRepresentation) {
+            Document data = new Document("name", "hello").append("nested", new Document("value", true));
+            CloudEvent cloudEvent = cloudEvent().withData(PojoCloudEventData.wrap(data, document -> document.toJson().getBytes(UTF_8))).build();
+            assertEncodedDocumentIsEqualToDocumentCreatedByMapper(timeRepresentation, cloudEvent);
+        }
+
+        @ParameterizedTest
+        @EnumSource(TimeRepresentation.class)
+        void data_is_a_raw_bson_document(TimeRepresentation timeRepresentation) {
+            RawBsonDocument data = RawBsonDocument.parse("{\"name\" : \"hello\", \"nested\" : {\"value\" : {\"$numberLong\" : \"2\"}}}");
+            CloudEvent cloudEvent = cloudEvent().withData(PojoCloudEventData.wrap(data, document -> document.toJson().getBytes(UTF_8))).build();
+            assertEncodedDocumentIsEqualToDocumentCreatedByMapper(timeRepresentation, cloudEvent);
+        }
+
+        @ParameterizedTest
+        @EnumSource(TimeRepresentation.class)
+        void data_is_text(TimeRepresentation timeRepresentation) {
+            CloudEvent cloudEvent = cloudEvent().withData("text/plain", "hello".getBytes(UTF_8)).build();
+            assertEncodedDocumentIsEqualToDocumentCreatedByMapper(timeRepresentation, cloudEvent);
+        }
+
+        @ParameterizedTest
+        @EnumSource(TimeRepresentation.class)
+        void data_is_binary(TimeRepresentation timeRepresentation) {
+            CloudEvent cloudEvent = cloudEvent().withData("application/octet-stream", new byte[]{1, 2, 3}).build();
+            assertEncodedDocumentIsEqualToDocumentCreatedByMapper(timeRepresentation, cloudEvent);
+        }
+
+        @ParameterizedTest
+        @EnumSource(TimeRepresentation.class)
+        void cloud_event_has_no_data_and_no_optional_attributes(TimeRepresentation timeRepresentation) {
+            CloudEvent cloudEvent = new CloudEventBuilder().withId("id").withSource(URI.create("urn:name")).withType("type").build();
+            assertEncodedDocumentIsEqualToDocumentCreatedByMapper(timeRepresentation, cloudEvent);
+        }
+
+        @ParameterizedTest
+        @EnumSource(TimeRepresentation.class)
+        void cloud_event_already_has_occurrent_extensions(TimeRepresentation timeRepresentation) {
+            CloudEvent cloudEvent = cloudEvent().withExtension("streamid", "another").withExtension("streamversion", 10L).build();
+            assertEncodedDocumentIsEqualToDocumentCreatedByMapper(timeRepresentation, cloudEvent);
+        }
+    }
+
+    @Test
+    void encoding_time_with_nanoseconds_when_time_representation_is_date_throws_iae() {
+        // Given
+        CloudEvent cloudEvent = cloudEvent().withTime(OffsetDateTime.of(LocalDateTime.of(2020, 7, 26, 9, 13, 3, 223_000_001), UTC)).build();
+        CloudEventCodec codec = new CloudEventCodec(DATE, MongoClientSettings.getDefaultCodecRegistry());
+
+        // When
+        Throwable throwable = catchThrowable(() -> new RawBsonDocument(CloudEventCodec.withStreamPosition("streamid", 1L, cloudEvent), codec));
+
+        // Then
+        assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class).hasMessageContaining("contains micro-/nanoseconds");
+    }
+
+    @Test
+    void decoded_cloud_event_is_equal_to_the_encoded_cloud_event_with_stream_position() {
+        // Given
+        CloudEvent cloudEvent = cloudEvent().withData("application/json", "{\"name\" : \"hello\"}".getBytes(UTF_8)).build();
+        CloudEventCodec codec = new CloudEventCodec(DATE, MongoClientSettings.getDefaultCodecRegistry());
+        RawBsonDocument document = new RawBsonDocument(CloudEventCodec.withStreamPosition("streamid", 2L, cloudEvent), codec);
+
+        // When
+        CloudEvent decoded = document.decode(codec);
+
+        // Then
+        assertAll(
+                () -> assertThat(decoded.getId()).isEqualTo("id"),
+                () -> assertThat(decoded.getTime()).isEqualTo(cloudEvent.getTime()),
+                () -> assertThat(decoded.getExtension("intextension")).isEqualTo(2),
+                () -> assertThat(decoded.getExtension("streamid")).isEqualTo("streamid"),
+                () -> assertThat(decoded.getExtension("streamversion")).isEqualTo(2L),
+                () -> assertThat(new String(decoded.getData().toBytes(), UTF_8)).isEqualTo("{\"name\": \"hello\"}")
+        );
+    }
+
+    private static void assertEncodedDocumentIsEqualToDocumentCreatedByMapper(TimeRepresentation timeRepresentation, CloudEvent cloudEvent) {
+        // Given
+        CloudEventCodec codec = new CloudEventCodec(timeRepresentation, MongoClientSettings.getDefaultCodecRegistry());
+
+        // When
+        RawBsonDocument encoded = new RawBsonDocument(CloudEventCodec.withStreamPosition("streamid", 2L, cloudEvent), codec);
+
+        // Then
+        RawBsonDocument expected = new RawBsonDocument(convertToDocument(timeRepresentation, "streamid", 2L, cloudEvent), new DocumentCodec());
+        assertThat(encoded).isEqualTo(expected);
+    }
+
+    private static CloudEventBuilder cloudEvent() {
+        return new CloudEventBuilder()
+                .withId("id")
+                .withSource(URI.create("urn:name"))
+                .withType("type")
+                .withSubject("subject")
+                .withTime(OffsetDateTime.of(LocalDateTime.of(2020, 7, 26, 9, 13, 3, 223_000000), ZoneOffset.UTC))
+                .withDataSchema(URI.create("urn:schema"))
+                .withExtension("intextension", 2)
+                .withExtension("booleanextension", true);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.cloudevent;
+
+import com.mongodb.MongoClientSettings;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.v1.CloudEventBuilder;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.Binary;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.Locale;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.occurrent.eventstore.mongodb.cloudevent.CloudEventDataCompression.DATA_COMPRESSION;
+import static org.occurrent.eventstore.mongodb.internal.OccurrentCloudEventMongoDocumentMapper.convertToCloudEvent;
+import static org.occurrent.eventstore.mongodb.internal.OccurrentCloudEventMongoDocumentMapper.convertToDocument;
+import static org.occurrent.mongodb.timerepresentation.TimeRepresentation.RFC_3339_STRING;
+
+@DisplayName("cloud event data compression")
+class CloudEventDataCompressionTest {
+    private static final String LARGE_JSON = "{\"name\" : \"" + String.join("", Collections.nCopies(200, "hello ")) + "\", \"age\" : {\"$numberLong\" : \"42\"}}";
+
+    @Nested
+    @DisplayName("when writing documents")
+    class DocumentTest {
+
+        @ParameterizedTest
+        @EnumSource(CompressionAlgorithm.class)
+        void data_of_enabled_cloud_event_type_above_threshold_is_compressed_and_decompressed_when_read(CompressionAlgorithm algorithm) {
+            // Given
+            CloudEvent cloudEvent = cloudEvent("type", LARGE_JSON);
+
+            // When
+            Document document = convertToDocument(RFC_3339_STRING, CloudEventDataCompression.compress(algorithm, 100, "type"), "streamid", 1L, cloudEvent);
+
+            // Then
+            CloudEvent expected = convertToCloudEvent(RFC_3339_STRING, convertToDocument(RFC_3339_STRING, "streamid", 1L, cloudEvent));
+            CloudEvent read = convertToCloudEvent(RFC_3339_STRING, document);
+            assertAll(
+                    () -> assertThat(document.get("data")).isInstanceOf(Binary.class),
+                    () -> assertThat(document.getString(DATA_COMPRESSION)).isEqualTo(algorithm.name().toLowerCase(Locale.ROOT)),
+                    () -> assertThat(read).isEqualTo(expected),
+                    () -> assertThat(read.getExtensionNames()).doesNotContain(DATA_COMPRESSION)
+            );
+        }
+
+        @Test
+        void data_below_threshold_is_not_compressed() {
+            // Given
+            CloudEvent cloudEvent = cloudEvent("type", LARGE_JSON);
+
+            // When
+            Document document = convertToDocument(RFC_3339_STRING, CloudEventDataCompression.compress(CompressionAlgorithm.GZIP, 100_000, "type"), "streamid", 1L, cloudEvent);
+
+            // Then
+            assertAll(
+                    () -> assertThat(document.get("data")).isInstanceOf(Document.class),
+                    () -> assertThat(document).doesNotContainKey(DATA_COMPRESSION)
+            );
+        }
+
+        @Test
+        void data_of_cloud_event_type_without_compression_is_not_compressed() {
+            // Given
+            CloudEvent cloudEvent = cloudEvent("another", LARGE_JSON);
+
+            // When
+            Document document = convertToDocument(RFC_3339_STRING, CloudEventDataCompression.compress(CompressionAlgorithm.GZIP, 0, "type"), "streamid", 1L, cloudEvent);
+
+            // Then
+            assertAll(
+                    () -> assertThat(document.get("data")).isInstanceOf(Document.class),
+                    () -> assertThat(document).doesNotContainKey(DATA_COMPRESSION)
+            );
+        }
+    }
+
+    @Nested
+    @DisplayName("when encoding with CloudEventCodec")
+    class CodecTest {
+
+        @ParameterizedTest
+        @EnumSource(TimeRepresentation.class)
+        void compressed_data_is_decompressed_when_read_as_lazy_cloud_event_and_as_document(TimeRepresentation timeRepresentation) {
+            // Given
+            CloudEvent cloudEvent = cloudEvent("type", LARGE_JSON);
+            CloudEventCodec codec = new CloudEventCodec(timeRepresentation, MongoClientSettings.getDefaultCodecRegistry(), CloudEventDataCompression.compress(CompressionAlgorithm.ZSTD, 100, "type"));
+
+            // When
+            RawBsonDocument encoded = new RawBsonDocument(CloudEventCodec.withStreamPosition("streamid", 1L, cloudEvent), codec);
+
+            // Then
+            CloudEvent expected = convertToCloudEvent(timeRepresentation, convertToDocument(timeRepresentation, "streamid", 1L, cloudEvent));
+            CloudEvent lazy = convertToCloudEvent(encoded);
+            CloudEvent fromDocument = convertToCloudEvent(timeRepresentation, encoded.decode(new DocumentCodec()));
+            assertAll(
+                    () -> assertThat(encoded.isBinary("data")).isTrue(),
+                    () -> assertThat(encoded.getString(DATA_COMPRESSION).getValue()).isEqualTo("zstd"),
+                    () -> assertThat(fromDocument).isEqualTo(expected),
+                    () -> assertThat(lazy.getExtensionNames()).containsExactlyInAnyOrderElementsOf(expected.getExtensionNames()),
+                    () -> assertThat(new String(lazy.getData().toBytes(), UTF_8)).isEqualTo(new String(expected.getData().toBytes(), UTF_8))
+            );
+        }
+
+        @Test
+        void data_below_threshold_is_written_as_is() {
+            // Given
+            CloudEvent cloudEvent = cloudEvent("type", LARGE_JSON);
+            CloudEventCodec codec = new CloudEventCodec(RFC_3339_STRING, MongoClientSettings.getDefaultCodecRegistry(), CloudEventDataCompression.compress(CompressionAlgorithm.GZIP, 100_000, "type"));
+
+            // When
+            RawBsonDocument encoded = new RawBsonDocument(CloudEventCodec.withStreamPosition("streamid", 1L, cloudEvent), codec);
+
+            // Then
+            assertThat(encoded).isEqualTo(new RawBsonDocument(convertToDocument(RFC_3339_STRING, "streamid", 1L, cloudEvent), new DocumentCodec()));
+        }
+    }
+
+    @Test
+    void compression_must_be_enabled_for_at_least_one_cloud_event_type() {
+        assertThatThrownBy(() -> CloudEventDataCompression.compress(CompressionAlgorithm.GZIP, 0, Collections.emptyList()))
+                .isExactlyInstanceOf(IllegalArgumentException.class)
+                .hasMessage("At least one cloud event type must be specified");
+    }
+
+    private static CloudEvent cloudEvent(String type, String json) {
+        return new CloudEventBuilder()
+                .withId("id")
+                .withSource(URI.create("urn:name"))
+                .withType(type)
+                .withTime(OffsetDateTime.of(LocalDateTime.of(2020, 7, 26, 9, 13, 3, 223_000000), UTC))
+                .withData("application/json", json.getBytes(UTF_8))
+                .build();
+    }
+}
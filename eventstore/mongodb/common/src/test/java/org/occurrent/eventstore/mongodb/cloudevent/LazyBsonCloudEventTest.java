@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.cloudevent;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.data.PojoCloudEventData;
+import io.cloudevents.core.v1.CloudEventBuilder;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.occurrent.eventstore.mongodb.internal.OccurrentCloudEventMongoDocumentMapper.convertToCloudEvent;
+import static org.occurrent.eventstore.mongodb.internal.OccurrentCloudEventMongoDocumentMapper.convertToDocument;
+
+class LazyBsonCloudEventTest {
+
+    @ParameterizedTest
+    @EnumSource(TimeRepresentation.class)
+    void lazy_cloud_event_has_the_same_attributes_extensions_and_data_as_the_cloud_event_read_from_a_document(TimeRepresentation timeRepresentation) {
+        // Given
+        CloudEvent cloudEvent = new CloudEventBuilder()
+                .withId("id")
+                .withSource(URI.create("urn:name"))
+                .withType("type")
+                .withSubject("subject")
+                .withTime(OffsetDateTime.of(LocalDateTime.of(2020, 7, 26, 9, 13, 3, 223_000000), UTC))
+                .withDataSchema(URI.create("urn:schema"))
+                .withExtension("intextension", 2)
+                .withExtension("booleanextension", true)
+                .withData("application/json", "{\"name\" : \"hello\"}".getBytes(UTF_8))
+                .build();
+        Document document = convertToDocument(timeRepresentation, "streamid", 2L, cloudEvent);
+        document.put("_id", "object id");
+
+        // When
+        CloudEvent lazyCloudEvent = convertToCloudEvent(new RawBsonDocument(document, new DocumentCodec()));
+
+        // Then
+        CloudEvent expected = convertToCloudEvent(timeRepresentation, document);
+        assertAll(
+                () -> assertThat(lazyCloudEvent.getSpecVersion()).isEqualTo(expected.getSpecVersion()),
+                () -> assertThat(lazyCloudEvent.getId()).isEqualTo(expected.getId()),
+                () -> assertThat(lazyCloudEvent.getSource()).isEqualTo(expected.getSource()),
+                () -> assertThat(lazyCloudEvent.getType()).isEqualTo(expected.getType()),
+                () -> assertThat(lazyCloudEvent.getSubject()).isEqualTo(expected.getSubject()),
+                () -> assertThat(lazyCloudEvent.getTime()).isEqualTo(expected.getTime()),
+                () -> assertThat(lazyCloudEvent.getDataSchema()).isEqualTo(expected.getDataSchema()),
+                () -> assertThat(lazyCloudEvent.getDataContentType()).isEqualTo(expected.getDataContentType()),
+                () -> assertThat(lazyCloudEvent.getExtensionNames()).containsExactlyInAnyOrderElementsOf(expected.getExtensionNames()),
+                () -> assertThat(lazyCloudEvent.getExtensionNames()).allSatisfy(name -> assertThat(lazyCloudEvent.getExtension(name)).isEqualTo(expected.getExtension(name))),
+                () -> assertThat(new String(lazyCloudEvent.getData().toBytes(), UTF_8)).isEqualTo(new String(expected.getData().toBytes(), UTF_8))
+        );
+    }
+
+    @Test
+    void lazy_cloud_event_exposes_json_data_stored_as_a_document_as_a_document_of_plain_java_values() {
+        // Given
+        CloudEvent cloudEvent = new CloudEventBuilder()
+                .withId("id")
+                .withSource(URI.create("urn:name"))
+                .withType("type")
+                .withData("application/json", "{\"name\" : \"hello\", \"age\" : 42}".getBytes(UTF_8))
+                .build();
+        Document document = convertToDocument(TimeRepresentation.DATE, "streamid", 1L, cloudEvent);
+
+        // When
+        CloudEvent lazyCloudEvent = convertToCloudEvent(new RawBsonDocument(document, new DocumentCodec()));
+
+        // Then
+        CloudEvent expected = convertToCloudEvent(TimeRepresentation.DATE, document);
+        Object data = ((PojoCloudEventData<?>) lazyCloudEvent.getData()).getValue();
+        assertAll(
+                () -> assertThat(data).isExactlyInstanceOf(Document.class),
+                () -> assertThat(data).isEqualTo(((PojoCloudEventData<?>) expected.getData()).getValue()),
+                () -> assertThat(((Document) data).get("age")).isEqualTo(42)
+        );
+    }
+
+    @Test
+    void lazy_cloud_event_exposes_json_data_stored_as_a_document_as_the_embedded_bson_document_when_raw_bson_data_is_enabled() {
+        // Given
+        CloudEvent cloudEvent = new CloudEventBuilder()
+                .withId("id")
+                .withSource(URI.create("urn:name"))
+                .withType("type")
+                .withData("application/json", "{\"name\" : \"hello\", \"age\" : 42}".getBytes(UTF_8))
+                .build();
+        Document document = convertToDocument(TimeRepresentation.DATE, "streamid", 1L, cloudEvent);
+
+        // When
+        CloudEvent lazyCloudEvent = convertToCloudEvent(new RawBsonDocument(document, new DocumentCodec()), true);
+
+        // Then
+        Object data = ((PojoCloudEventData<?>) lazyCloudEvent.getData()).getValue();
+        assertAll(
+                () -> assertThat(data).isInstanceOf(BsonDocument.class),
+                () -> assertThat(((BsonDocument) data).getInt32("age").getValue()).isEqualTo(42),
+                () -> assertThat(new String(lazyCloudEvent.getData().toBytes(), UTF_8)).isEqualTo("{\"name\": \"hello\", \"age\": 42}")
+        );
+    }
+
+    @Test
+    void lazy_cloud_event_returns_null_for_missing_attributes_and_data() {
+        // Given
+        CloudEvent cloudEvent = new CloudEventBuilder()
+                .withId("id")
+                .withSource(URI.create("urn:name"))
+                .withType("type")
+                .build();
+        Document document = convertToDocument(TimeRepresentation.DATE, "streamid", 1L, cloudEvent);
+
+        // When
+        CloudEvent lazyCloudEvent = convertToCloudEvent(new RawBsonDocument(document, new DocumentCodec()));
+
+        // Then
+        assertAll(
+                () -> assertThat(lazyCloudEvent.getSubject()).isNull(),
+                () -> assertThat(lazyCloudEvent.getTime()).isNull(),
+                () -> assertThat(lazyCloudEvent.getData()).isNull(),
+                () -> assertThat(lazyCloudEvent.getExtension("unknown")).isNull(),
+                () -> assertThat(lazyCloudEvent.getExtension("streamversion")).isEqualTo(1L)
+        );
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.eventstore.mongodb.internal;
+
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.occurrent.condition.Condition;
+import org.occurrent.filter.Filter;
+
+import java.net.URI;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+@DisplayName("event counters")
+class EventCountersTest {
+
+    private final EventCounters eventCounters = new EventCounters(EventCounters.COUNTABLE_ATTRIBUTES);
+
+    @Nested
+    @DisplayName("counter ids of filter")
+    class CounterIdsOfFilter {
+
+        @Test
+        void equal_to_condition_on_a_counted_attribute_is_served_by_a_single_counter() {
+            assertAll(
+                    () -> assertThat(eventCounters.counterIdsOf(Filter.type("NameDefined"))).contains(Collections.singleton("type:NameDefined")),
+                    () -> assertThat(eventCounters.counterIdsOf(Filter.source(URI.create("urn:test")))).contains(Collections.singleton("source:urn:test")),
+                    () -> assertThat(eventCounters.counterIdsOf(Filter.streamId("stream"))).contains(Collections.singleton("streamid:stream"))
+            );
+        }
+
+        @Test
+        void or_composition_of_equal_to_conditions_on_the_same_attribute_is_served_by_several_counters() {
+            // When
+            Optional<Set<String>> counterIds = eventCounters.counterIdsOf(Filter.type("NameDefined").or(Filter.type("NameWasChanged")));
+
+            // Then
+            assertThat(counterIds).contains(new LinkedHashSet<>(Arrays.asList("type:NameDefined", "type:NameWasChanged")));
+        }
+
+        @Test
+        void or_condition_of_equal_to_conditions_is_served_by_several_counters() {
+            // When
+            Optional<Set<String>> counterIds = eventCounters.counterIdsOf(Filter.type(Condition.or("NameDefined", "NameWasChanged")));
+
+            // Then
+            assertThat(counterIds).contains(new LinkedHashSet<>(Arrays.asList("type:NameDefined", "type:NameWasChanged")));
+        }
+
+        @Test
+        void filters_that_cannot_be_served_by_counters_are_not_reduced() {
+            assertAll(
+                    () -> assertThat(eventCounters.counterIdsOf(Filter.type("NameDefined").and(Filter.streamId("stream")))).isEmpty(),
+                    () -> assertThat(eventCounters.counterIdsOf(Filter.type("NameDefined").or(Filter.streamId("stream")))).isEmpty(),
+                    () -> assertThat(eventCounters.counterIdsOf(Filter.type(Condition.ne("NameDefined")))).isEmpty(),
+                    () -> assertThat(eventCounters.counterIdsOf(Filter.subject("subject"))).isEmpty(),
+                    () -> assertThat(eventCounters.counterIdsOf(Filter.all())).isEmpty()
+            );
+        }
+    }
+
+    @Nested
+    @DisplayName("increments")
+    class Increments {
+
+        @Test
+        void update_that_changes_a_counted_attribute_moves_the_event_between_counters() {
+            // Given
+            Document cloudEventDocument = cloudEventDocument("NameDefined", "urn:test", "stream");
+            Document updatedCloudEventDocument = cloudEventDocument("NameWasChanged", "urn:test", "stream");
+
+            // When
+            Map<String, Long> increments = eventCounters.incrementsAfterUpdate(cloudEventDocument, updatedCloudEventDocument);
+
+            // Then
+            Map<String, Long> expected = new LinkedHashMap<>();
+            expected.put("type:NameDefined", -1L);
+            expected.put("type:NameWasChanged", 1L);
+            assertThat(increments).isEqualTo(expected);
+        }
+
+        @Test
+        void writes_of_several_events_are_counted_per_counter() {
+            // When
+            Map<String, Long> increments = eventCounters.incrementsAfterWrite(Arrays.asList(
+                    cloudEventDocument("NameDefined", "urn:test", "stream"),
+                    cloudEventDocument("NameWasChanged", "urn:test", "stream")));
+
+            // Then
+            assertAll(
+                    () -> assertThat(increments).containsEntry("type:NameDefined", 1L).containsEntry("type:NameWasChanged", 1L),
+                    () -> assertThat(increments).containsEntry("source:urn:test", 2L).containsEntry("streamid:stream", 2L)
+            );
+        }
+
+        @Test
+        void updates_remove_counters_that_may_have_reached_zero() {
+            // Given
+            Map<String, Long> increments = new LinkedHashMap<>();
+            increments.put("type:NameDefined", -1L);
+            increments.put("type:NameWasChanged", 1L);
+            increments.put("source:urn:test", 0L);
+
+            // When
+            List<WriteModel<Document>> updates = EventCounters.updates(increments);
+
+            // Then
+            assertThat(updates).hasSize(3);
+            assertThat(updates.subList(0, 2)).allMatch(UpdateOneModel.class::isInstance);
+            assertThat(updates.get(2)).isInstanceOf(DeleteManyModel.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("counted attributes")
+    class CountedAttributes {
+
+        @Test
+        void only_the_stream_id_is_counted_by_default() {
+            // Given
+            EventCounters eventCounters = new EventCounters(EventCounters.DEFAULT_COUNTED_ATTRIBUTES);
+
+            // When
+            Map<String, Long> increments = eventCounters.incrementsAfterWrite(Collections.singletonList(cloudEventDocument("NameDefined", "urn:test", "stream")));
+
+            // Then
+            assertAll(
+                    () -> assertThat(increments).containsOnlyKeys("streamid:stream"),
+                    () -> assertThat(eventCounters.counterIdsOf(Filter.type("NameDefined"))).isEmpty()
+            );
+        }
+
+        @Test
+        void attributes_that_cannot_be_counted_are_rejected() {
+            assertAll(
+                    () -> assertThatThrownBy(() -> new EventCounters(Collections.singletonList("subject"))).isExactlyInstanceOf(IllegalArgumentException.class),
+                    () -> assertThatThrownBy(() -> new EventCounters(Collections.emptyList())).isExactlyInstanceOf(IllegalArgumentException.class)
+            );
+        }
+
+        @Test
+        void counters_that_were_populated_for_other_attributes_are_rejected() {
+            // Given
+            Document backfillMarker = new EventCounters(Arrays.asList("type", "streamid")).backfillMarker();
+
+            // When
+            Throwable throwable = catchThrowable(() -> new EventCounters(Collections.singletonList("streamid")).requireSameCountedAttributes(backfillMarker));
+
+            // Then
+            assertAll(
+                    () -> assertThat(throwable).isExactlyInstanceOf(IllegalStateException.class),
+                    () -> assertThatCode(() -> new EventCounters(Arrays.asList("streamid", "type")).requireSameCountedAttributes(backfillMarker)).doesNotThrowAnyException()
+            );
+        }
+    }
+
+    @Nested
+    @DisplayName("backfill")
+    class Backfill {
+
+        @Test
+        void events_counted_by_counters_are_selected_per_attribute() {
+            // When
+            Bson filter = eventCounters.eventsCountedBy(Arrays.asList("type:NameDefined", "streamid:stream1", "type:NameWasChanged", "source:urn:test:1"));
+
+            // Then
+            assertThat(filter).isEqualTo(Filters.or(Filters.in("type", Arrays.asList("NameDefined", "NameWasChanged")), Filters.in("streamid", Collections.singletonList("stream1")),
+                    Filters.in("source", Collections.singletonList("urn:test:1"))));
+        }
+
+        @Test
+        void recount_replaces_the_counters_and_removes_counters_without_events() {
+            // Given
+            List<Document> counts = Arrays.asList(new Document("_id", "streamid:stream1").append("count", 2L), new Document("_id", "type:NameDefined").append("count", 1L));
+
+            // When
+            List<WriteModel<Document>> writes = EventCounters.recount(Arrays.asList("streamid:stream1", "streamid:stream2"), counts);
+
+            // Then
+            assertAll(
+                    () -> assertThat(writes).hasSize(2),
+                    () -> assertThat(writes.get(0)).isInstanceOfSatisfying(ReplaceOneModel.class, replace -> assertThat(replace.getReplacement()).isEqualTo(new Document("_id", "streamid:stream1").append("count", 2L))),
+                    () -> assertThat(writes.get(1)).isInstanceOf(DeleteOneModel.class)
+            );
+        }
+
+        @Test
+        void counters_are_not_populated_until_the_backfill_marker_is_completed() {
+            // Given
+            Document backfillMarker = eventCounters.backfillMarker();
+
+            // When
+            Document completedBackfillMarker = new Document(backfillMarker).append("completed", true);
+
+            // Then
+            assertAll(
+                    () -> assertThat(EventCounters.isBackfillCompleted(null)).isFalse(),
+                    () -> assertThat(EventCounters.isBackfillCompleted(backfillMarker)).isFalse(),
+                    () -> assertThat(EventCounters.isBackfillCompleted(completedBackfillMarker)).isTrue()
+            );
+        }
+    }
+
+    private static Document cloudEventDocument(String type, String source, String streamId) {
+        return new Document("type", type).append("source", source).append("streamid", streamId);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.internal;
+
+import io.cloudevents.CloudEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.occurrent.eventstore.api.WriteCondition;
+import org.occurrent.eventstore.api.WriteConditionNotFulfilledException;
+import org.occurrent.eventstore.api.WriteResult;
+import org.occurrent.functionalsupport.internal.FunctionalSupport.Pair;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+@DisplayName("group commit write coalescer")
+@Timeout(10)
+class GroupCommitWriteCoalescerTest {
+
+    private ExecutorService executorService;
+    private List<Set<String>> batches;
+
+    @BeforeEach
+    void create_executor() {
+        executorService = Executors.newCachedThreadPool();
+        batches = new CopyOnWriteArrayList<>();
+    }
+
+    @AfterEach
+    void shutdown_executor() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    void concurrent_writes_to_different_streams_are_written_in_a_single_batch() throws Exception {
+        // Given
+        GroupCommitWriteCoalescer coalescer = new GroupCommitWriteCoalescer(4, Duration.ofSeconds(5), this::writeBatch);
+
+        // When
+        List<Future<WriteResult>> writeResults = new ArrayList<>();
+        for (String streamId : Arrays.asList("stream1", "stream2", "stream3", "stream4")) {
+            writeResults.add(executorService.submit(() -> coalescer.write(streamId, WriteCondition.streamVersionEq(0), Collections.emptyList())));
+        }
+
+        // Then
+        List<WriteResult> results = new ArrayList<>();
+        for (Future<WriteResult> writeResult : writeResults) {
+            results.add(writeResult.get());
+        }
+        assertAll(
+                () -> assertThat(batches).containsExactly(new HashSet<>(Arrays.asList("stream1", "stream2", "stream3", "stream4"))),
+                () -> assertThat(results).extracting(WriteResult::getStreamId).containsExactly("stream1", "stream2", "stream3", "stream4")
+        );
+    }
+
+    @Test
+    void write_condition_not_fulfilled_only_fails_the_write_to_the_stream_whose_condition_was_not_fulfilled() throws Exception {
+        // Given
+        GroupCommitWriteCoalescer coalescer = new GroupCommitWriteCoalescer(2, Duration.ofSeconds(5), batch -> {
+            if (batch.containsKey("stream2")) {
+                throw new WriteConditionNotFulfilledException("stream2", 1, batch.get("stream2").t1, "not fulfilled");
+            }
+            return writeBatch(batch);
+        });
+
+        // When
+        Future<WriteResult> writeResult1 = executorService.submit(() -> coalescer.write("stream1", WriteCondition.streamVersionEq(0), Collections.emptyList()));
+        Future<WriteResult> writeResult2 = executorService.submit(() -> coalescer.write("stream2", WriteCondition.streamVersionEq(0), Collections.emptyList()));
+
+        // Then
+        Throwable throwable = catchThrowable(writeResult2::get);
+        assertAll(
+                () -> assertThat(writeResult1.get()).isEqualTo(new WriteResult("stream1", 0)),
+                () -> assertThat(throwable).hasCauseExactlyInstanceOf(WriteConditionNotFulfilledException.class),
+                () -> assertThat(batches).containsExactly(Collections.singleton("stream1"))
+        );
+    }
+
+    @Test
+    void write_condition_not_fulfilled_that_cannot_be_attributed_to_a_pending_write_makes_each_write_to_be_retried_individually() throws Exception {
+        // Given
+        GroupCommitWriteCoalescer coalescer = new GroupCommitWriteCoalescer(2, Duration.ofSeconds(5), batch -> {
+            if (batch.size() > 1) {
+                throw new WriteConditionNotFulfilledException("stream2", 1, WriteCondition.streamVersionEq(0), "not fulfilled");
+            }
+            return writeBatch(batch);
+        });
+
+        // When
+        Future<WriteResult> writeResult1 = executorService.submit(() -> coalescer.write("stream1", WriteCondition.streamVersionEq(0), Collections.emptyList()));
+        Future<WriteResult> writeResult2 = executorService.submit(() -> coalescer.write("stream2", WriteCondition.streamVersionEq(0), Collections.emptyList()));
+
+        // Then
+        assertAll(
+                () -> assertThat(writeResult1.get()).isEqualTo(new WriteResult("stream1", 0)),
+                () -> assertThat(writeResult2.get()).isEqualTo(new WriteResult("stream2", 0)),
+                () -> assertThat(batches).containsExactlyInAnyOrder(Collections.singleton("stream1"), Collections.singleton("stream2"))
+        );
+    }
+
+    @Test
+    void writes_to_the_same_stream_are_written_in_separate_batches() throws Exception {
+        // Given
+        GroupCommitWriteCoalescer coalescer = new GroupCommitWriteCoalescer(2, Duration.ofSeconds(5), this::writeBatch);
+
+        // When
+        Future<WriteResult> writeResult1 = executorService.submit(() -> coalescer.write("stream", WriteCondition.anyStreamVersion(), Collections.emptyList()));
+        Future<WriteResult> writeResult2 = executorService.submit(() -> coalescer.write("stream", WriteCondition.anyStreamVersion(), Collections.emptyList()));
+
+        // Then
+        writeResult1.get();
+        writeResult2.get();
+        assertThat(batches).containsExactly(Collections.singleton("stream"), Collections.singleton("stream"));
+    }
+
+    @Test
+    void writes_without_concurrent_writers_are_written_when_max_wait_has_elapsed() {
+        // Given
+        GroupCommitWriteCoalescer coalescer = new GroupCommitWriteCoalescer(10, Duration.ofMillis(1), this::writeBatch);
+
+        // When
+        WriteResult writeResult = coalescer.write("stream", WriteCondition.streamVersionEq(0), Collections.emptyList());
+
+        // Then
+        assertThat(writeResult).isEqualTo(new WriteResult("stream", 0));
+    }
+
+    private List<WriteResult> writeBatch(Map<String, Pair<WriteCondition, List<CloudEvent>>> batch) {
+        batches.add(new HashSet<>(batch.keySet()));
+        return batch.entrySet().stream().map(entry -> new WriteResult(entry.getKey(), entry.getValue().t2.size())).collect(Collectors.toList());
+    }
+}
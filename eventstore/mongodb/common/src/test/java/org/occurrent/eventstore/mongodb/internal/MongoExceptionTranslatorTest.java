@@ -0,0 +1,78 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.eventstore.mongodb.internal;
+
+import com.mongodb.MongoWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteError;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.occurrent.eventstore.api.DuplicateCloudEventException;
+import org.occurrent.eventstore.api.WriteConditionNotFulfilledException;
+import org.occurrent.eventstore.mongodb.internal.MongoExceptionTranslator.WriteContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.occurrent.eventstore.api.WriteCondition.streamVersionEq;
+
+@DisplayName("mongo exception translator")
+class MongoExceptionTranslatorTest {
+
+    private static final WriteContext WRITE_CONTEXT = new WriteContext("stream", 2, streamVersionEq(2));
+
+    @Test
+    void duplicate_key_error_with_stream_id_and_stream_version_key_pattern_is_translated_to_write_condition_not_fulfilled() {
+        // Given
+        BsonDocument details = new BsonDocument("keyPattern", new BsonDocument("streamid", new BsonInt32(1)).append("streamversion", new BsonInt32(1)));
+        MongoWriteException e = new MongoWriteException(new WriteError(11000, "E11000 duplicate key error", details), new ServerAddress());
+
+        // When
+        RuntimeException translated = MongoExceptionTranslator.translateException(WRITE_CONTEXT, e);
+
+        // Then
+        assertThat(translated).isExactlyInstanceOf(WriteConditionNotFulfilledException.class);
+        assertThat(((WriteConditionNotFulfilledException) translated).eventStreamVersion).isEqualTo(3);
+    }
+
+    @Test
+    void duplicate_key_error_naming_the_stream_id_and_stream_version_index_is_translated_to_write_condition_not_fulfilled() {
+        // Given
+        String errorMessage = "E11000 duplicate key error collection: test.events index: streamid_1_streamversion_1 dup key: { streamid: \"stream\", streamversion: 3 }";
+        MongoWriteException e = new MongoWriteException(new WriteError(11000, errorMessage, new BsonDocument()), new ServerAddress());
+
+        // When
+        RuntimeException translated = MongoExceptionTranslator.translateException(WRITE_CONTEXT, e);
+
+        // Then
+        assertThat(translated).isExactlyInstanceOf(WriteConditionNotFulfilledException.class);
+    }
+
+    @Test
+    void duplicate_key_error_on_id_and_source_is_translated_to_duplicate_cloud_event_even_if_message_mentions_stream_id() {
+        // Given
+        String errorMessage = "E11000 duplicate key error collection: test.events index: id_1_source_1 dup key: { id: \"streamid: 1\", source: \"urn:test\" }";
+        BsonDocument details = new BsonDocument("keyPattern", new BsonDocument("id", new BsonInt32(1)).append("source", new BsonInt32(1)));
+        MongoWriteException e = new MongoWriteException(new WriteError(11000, errorMessage, details), new ServerAddress());
+
+        // When
+        RuntimeException translated = MongoExceptionTranslator.translateException(WRITE_CONTEXT, e);
+
+        // Then
+        assertThat(translated).isExactlyInstanceOf(DuplicateCloudEventException.class);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.eventstore.mongodb.internal;
+
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.mongodb.MongoClientSettings.getDefaultCodecRegistry;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+@DisplayName("single round-trip stream read")
+class SingleRoundTripStreamReadTest {
+
+    @Test
+    void read_is_for_entire_stream_when_no_skip_limit_or_version_range_is_specified() {
+        assertAll(
+                () -> assertThat(SingleRoundTripStreamRead.isEntireStream(0, Long.MAX_VALUE, 0, Integer.MAX_VALUE)).isTrue(),
+                () -> assertThat(SingleRoundTripStreamRead.isEntireStream(0, Long.MAX_VALUE, 1, Integer.MAX_VALUE)).isFalse(),
+                () -> assertThat(SingleRoundTripStreamRead.isEntireStream(0, Long.MAX_VALUE, 0, 10)).isFalse(),
+                () -> assertThat(SingleRoundTripStreamRead.isEntireStream(2, Long.MAX_VALUE, 0, Integer.MAX_VALUE)).isFalse(),
+                () -> assertThat(SingleRoundTripStreamRead.isEntireStream(0, 5, 0, Integer.MAX_VALUE)).isFalse()
+        );
+    }
+
+    @Test
+    void pipeline_sorts_the_events_of_the_stream_before_the_facet_stage() {
+        // When
+        List<Bson> pipeline = SingleRoundTripStreamRead.partOfStream("name", 2, 5, 1, 2);
+
+        // Then
+        List<BsonDocument> stages = pipeline.stream().map(stage -> stage.toBsonDocument(BsonDocument.class, getDefaultCodecRegistry())).collect(Collectors.toList());
+        assertAll(
+                () -> assertThat(stages).extracting(BsonDocument::getFirstKey).containsExactly("$match", "$sort", "$facet"),
+                () -> assertThat(stages.get(0)).isEqualTo(BsonDocument.parse("{$match: {streamid: 'name'}}")),
+                () -> assertThat(stages.get(1)).isEqualTo(BsonDocument.parse("{$sort: {streamversion: 1}}")),
+                () -> assertThat(stages.get(2).getDocument("$facet").getArray("events")).containsExactly(
+                        BsonDocument.parse("{$match: {$and: [{streamversion: {$gt: {$numberLong: '2'}}}, {streamversion: {$lte: {$numberLong: '5'}}}]}}"),
+                        BsonDocument.parse("{$skip: 1}"),
+                        BsonDocument.parse("{$limit: 2}"))
+        );
+    }
+
+    @Test
+    void events_and_version_are_extracted_from_the_result() {
+        // Given
+        Document event1 = new Document("streamversion", 3L);
+        Document event2 = new Document("streamversion", 4L);
+        Document result = new Document("events", Arrays.asList(event1, event2)).append("version", Collections.singletonList(new Document("_id", null).append("version", 7L)));
+
+        // Then
+        assertAll(
+                () -> assertThat(SingleRoundTripStreamRead.events(result)).containsExactly(event1, event2),
+                () -> assertThat(SingleRoundTripStreamRead.version(result)).isEqualTo(7L)
+        );
+    }
+
+    @Test
+    void version_is_zero_and_there_are_no_events_when_stream_does_not_exist() {
+        // Given
+        Document result = new Document("events", Collections.emptyList()).append("version", Collections.emptyList());
+
+        // Then
+        assertAll(
+                () -> assertThat(SingleRoundTripStreamRead.events(result)).isEmpty(),
+                () -> assertThat(SingleRoundTripStreamRead.version(result)).isZero(),
+                () -> assertThat(SingleRoundTripStreamRead.version(null)).isZero()
+        );
+    }
+}
@@ -21,8 +21,15 @@ import com.mongodb.client.FindIterable;
 import io.cloudevents.CloudEvent;
 import org.bson.Document;
 import org.bson.conversions.Bson;
+import org.occurrent.eventstore.mongodb.cloudevent.CloudEventDataCompression;
+import org.occurrent.eventstore.mongodb.internal.EventCounters;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.StringJoiner;
 import java.util.function.Function;
@@ -36,6 +43,16 @@ public class EventStoreConfig {
     public final TransactionOptions transactionOptions;
     public final TimeRepresentation timeRepresentation;
     public final Function<FindIterable<Document>, FindIterable<Document>> queryOptions;
+    public final boolean transactionlessAppend;
+    public final String streamHeadsCollectionName;
+    public final int groupCommitMaxBatchSize;
+    public final Duration groupCommitMaxWait;
+    public final boolean lazyCloudEvents;
+    public final boolean rawBsonData;
+    public final CloudEventDataCompression dataCompression;
+    public final boolean singleRoundTripReads;
+    public final String eventCountersCollectionName;
+    public final List<String> eventCounterAttributes;
 
     /**
      * Create an {@link EventStoreConfig} indicating to the event store that it should represent time according to the supplied
@@ -60,11 +77,29 @@ public class EventStoreConfig {
      * @see TimeRepresentation
      */
     public EventStoreConfig(TimeRepresentation timeRepresentation, TransactionOptions transactionOptions) {
-        this(timeRepresentation, transactionOptions, DEFAULT_QUERY_OPTIONS_FUNCTION);
+        this(timeRepresentation, transactionOptions, DEFAULT_QUERY_OPTIONS_FUNCTION, false, null, 0, null, false, false, CloudEventDataCompression.none(), false, null, EventCounters.DEFAULT_COUNTED_ATTRIBUTES);
     }
 
-    private EventStoreConfig(TimeRepresentation timeRepresentation, TransactionOptions transactionOptions, Function<FindIterable<Document>, FindIterable<Document>> queryOptions) {
+    private EventStoreConfig(TimeRepresentation timeRepresentation, TransactionOptions transactionOptions, Function<FindIterable<Document>, FindIterable<Document>> queryOptions, boolean transactionlessAppend, String streamHeadsCollectionName, int groupCommitMaxBatchSize, Duration groupCommitMaxWait, boolean lazyCloudEvents, boolean rawBsonData, CloudEventDataCompression dataCompression, boolean singleRoundTripReads, String eventCountersCollectionName, List<String> eventCounterAttributes) {
         Objects.requireNonNull(timeRepresentation, "Time representation cannot be null");
+        if (transactionlessAppend && streamHeadsCollectionName != null) {
+            throw new IllegalArgumentException("Transactionless append cannot be combined with a stream heads collection since the stream heads must be updated in the same transaction as the events are written");
+        }
+        if (transactionlessAppend && eventCountersCollectionName != null) {
+            throw new IllegalArgumentException("Transactionless append cannot be combined with an event counters collection since the event counters must be updated in the same transaction as the events are written");
+        }
+        if (groupCommitMaxBatchSize < 0) {
+            throw new IllegalArgumentException("Group commit max batch size cannot be negative");
+        }
+        if (groupCommitMaxBatchSize > 0 && (groupCommitMaxWait == null || groupCommitMaxWait.isNegative())) {
+            throw new IllegalArgumentException("Group commit max wait must be zero or positive when group commit is enabled");
+        }
+        if (rawBsonData && !lazyCloudEvents) {
+            throw new IllegalArgumentException("Raw BSON data requires lazy cloud events since it's the lazy cloud events that expose the data as the raw BSON document");
+        }
+        if (lazyCloudEvents && queryOptions != null && queryOptions != DEFAULT_QUERY_OPTIONS_FUNCTION) {
+            throw new IllegalArgumentException("Query options cannot be combined with lazy cloud events since the query options are defined for documents of type " + Document.class.getName());
+        }
         if (transactionOptions == null) {
             this.transactionOptions = TransactionOptions.builder().build();
         } else {
@@ -72,6 +107,21 @@ public class EventStoreConfig {
         }
         this.timeRepresentation = timeRepresentation;
         this.queryOptions = queryOptions == null ? DEFAULT_QUERY_OPTIONS_FUNCTION : queryOptions;
+        this.transactionlessAppend = transactionlessAppend;
+        this.streamHeadsCollectionName = streamHeadsCollectionName;
+        this.groupCommitMaxBatchSize = groupCommitMaxBatchSize;
+        this.groupCommitMaxWait = groupCommitMaxWait;
+        this.lazyCloudEvents = lazyCloudEvents;
+        this.rawBsonData = rawBsonData;
+        this.dataCompression = dataCompression == null ? CloudEventDataCompression.none() : dataCompression;
+        this.singleRoundTripReads = singleRoundTripReads;
+        this.eventCountersCollectionName = eventCountersCollectionName;
+        this.eventCounterAttributes = Collections.unmodifiableList(new ArrayList<>(EventCounters.requireCountableAttributes(eventCounterAttributes)));
+    }
+
+    // The single round-trip read of a part of a stream is an aggregation, to which the (find) query and read options can't be applied
+    boolean hasCustomQueryOrReadOptions() {
+        return queryOptions != DEFAULT_QUERY_OPTIONS_FUNCTION;
     }
 
     @Override
@@ -79,12 +129,12 @@ public class EventStoreConfig {
         if (this == o) return true;
         if (!(o instanceof EventStoreConfig)) return false;
         EventStoreConfig that = (EventStoreConfig) o;
-        return Objects.equals(transactionOptions, that.transactionOptions) && timeRepresentation == that.timeRepresentation && Objects.equals(queryOptions, that.queryOptions);
+        return transactionlessAppend == that.transactionlessAppend && Objects.equals(transactionOptions, that.transactionOptions) && timeRepresentation == that.timeRepresentation && Objects.equals(queryOptions, that.queryOptions) && Objects.equals(streamHeadsCollectionName, that.streamHeadsCollectionName) && groupCommitMaxBatchSize == that.groupCommitMaxBatchSize && Objects.equals(groupCommitMaxWait, that.groupCommitMaxWait) && lazyCloudEvents == that.lazyCloudEvents && rawBsonData == that.rawBsonData && Objects.equals(dataCompression, that.dataCompression) && singleRoundTripReads == that.singleRoundTripReads && Objects.equals(eventCountersCollectionName, that.eventCountersCollectionName) && Objects.equals(eventCounterAttributes, that.eventCounterAttributes);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(transactionOptions, timeRepresentation, queryOptions);
+        return Objects.hash(transactionOptions, timeRepresentation, queryOptions, transactionlessAppend, streamHeadsCollectionName, groupCommitMaxBatchSize, groupCommitMaxWait, lazyCloudEvents, rawBsonData, dataCompression, singleRoundTripReads, eventCountersCollectionName, eventCounterAttributes);
     }
 
     @Override
@@ -93,6 +143,16 @@ public class EventStoreConfig {
                 .add("transactionOptions=" + transactionOptions)
                 .add("timeRepresentation=" + timeRepresentation)
                 .add("queryOptions=" + queryOptions)
+                .add("transactionlessAppend=" + transactionlessAppend)
+                .add("streamHeadsCollectionName=" + streamHeadsCollectionName)
+                .add("groupCommitMaxBatchSize=" + groupCommitMaxBatchSize)
+                .add("groupCommitMaxWait=" + groupCommitMaxWait)
+                .add("lazyCloudEvents=" + lazyCloudEvents)
+                .add("rawBsonData=" + rawBsonData)
+                .add("dataCompression=" + dataCompression)
+                .add("singleRoundTripReads=" + singleRoundTripReads)
+                .add("eventCountersCollectionName=" + eventCountersCollectionName)
+                .add("eventCounterAttributes=" + eventCounterAttributes)
                 .toString();
     }
 
@@ -100,6 +160,16 @@ public class EventStoreConfig {
         private TransactionOptions transactionOptions;
         private TimeRepresentation timeRepresentation;
         private Function<FindIterable<Document>, FindIterable<Document>> queryOptions = DEFAULT_QUERY_OPTIONS_FUNCTION;
+        private boolean transactionlessAppend = false;
+        private String streamHeadsCollectionName;
+        private int groupCommitMaxBatchSize = 0;
+        private Duration groupCommitMaxWait;
+        private boolean lazyCloudEvents = false;
+        private boolean rawBsonData = false;
+        private CloudEventDataCompression dataCompression = CloudEventDataCompression.none();
+        private boolean singleRoundTripReads = false;
+        private String eventCountersCollectionName;
+        private List<String> eventCounterAttributes = EventCounters.DEFAULT_COUNTED_ATTRIBUTES;
 
         /**
          * @param transactionOptions The default {@link TransactionOptions} that the event store will use when starting transactions. May be <code>null</code>.
@@ -134,8 +204,156 @@ public class EventStoreConfig {
             return this;
         }
 
+        /**
+         * Enable "transactionless append". When enabled, writes of a single event with an exact write condition such as {@code WriteCondition.streamVersionEq(n)}
+         * will insert the event with stream version {@code n+1} directly, without starting a transaction and without finding the current stream version first
+         * (only an index lookup that verifies that version {@code n} exists is made, to prevent gaps in the stream). The unique index on stream id and stream version
+         * guarantees that a concurrent write to the same stream fails, which is then reported as a {@link org.occurrent.eventstore.api.WriteConditionNotFulfilledException}.
+         * This saves a sorted query and a transaction commit for each append.
+         * <br><br>
+         * Writes of several events (that needs to be atomic) and writes with other write conditions are still performed in a transaction. Default is {@code false}.
+         *
+         * @param transactionlessAppend {@code true} to enable transactionless append, {@code false} otherwise.
+         * @return A same {@code Builder instance}
+         */
+        public Builder transactionlessAppend(boolean transactionlessAppend) {
+            this.transactionlessAppend = transactionlessAppend;
+            return this;
+        }
+
+        /**
+         * Maintain a "stream heads" collection, with the given name, that contains one document per event stream with the current version,
+         * the time of the last event and the number of events in the stream. The stream head document is updated in the same transaction as the events are written.
+         * When enabled, finding the current version of a stream (which is done on every read and write), {@link org.occurrent.eventstore.api.blocking.EventStore#exists(String)} and
+         * {@link org.occurrent.eventstore.api.blocking.ReadEventStream#streamVersions(java.util.Collection)} are single point lookups in the stream heads collection instead of index scans
+         * in the event collection. If the stream heads collection doesn't exist when the event store is created, it's created and populated from the events in the event collection.
+         * <br><br>
+         * Cannot be combined with {@link #transactionlessAppend(boolean)}. Default is {@code null}, i.e. no stream heads collection is maintained.
+         *
+         * @param streamHeadsCollectionName The name of the stream heads collection, or {@code null} to disable stream heads.
+         * @return A same {@code Builder instance}
+         */
+        public Builder streamHeadsCollectionName(String streamHeadsCollectionName) {
+            this.streamHeadsCollectionName = streamHeadsCollectionName;
+            return this;
+        }
+
+        /**
+         * Enable "group commit" of concurrent writes. When enabled, concurrent calls to {@link org.occurrent.eventstore.api.blocking.EventStore#write(String, org.occurrent.eventstore.api.WriteCondition, java.util.stream.Stream)}
+         * for different event streams are coalesced and written in a single transaction. The first writer waits at most {@code maxWait} for other writes to arrive (or until {@code maxBatchSize}
+         * writes are pending) before the batch is written, and writes that arrive while a batch is being written are included in the next batch. Each writer still gets its own
+         * {@link org.occurrent.eventstore.api.WriteResult}, and a {@link org.occurrent.eventstore.api.WriteConditionNotFulfilledException} only fails the write whose condition was not fulfilled.
+         * <br><br>
+         * This trades latency for throughput: a single write may be delayed by up to {@code maxWait}, but the number of transactions is reduced considerably under high concurrency.
+         * A {@code maxWait} of {@link Duration#ZERO} never delays a write, batches are then only formed from writes that arrive while the previous batch is being written. Group commit is disabled by default.
+         *
+         * @param maxBatchSize The maximum number of writes to include in a single transaction, must be greater than zero.
+         * @param maxWait      The maximum time to wait for more writes before writing a batch.
+         * @return A same {@code Builder instance}
+         */
+        public Builder groupCommit(int maxBatchSize, Duration maxWait) {
+            if (maxBatchSize < 1) {
+                throw new IllegalArgumentException("Group commit max batch size must be greater than zero");
+            }
+            this.groupCommitMaxBatchSize = maxBatchSize;
+            this.groupCommitMaxWait = Objects.requireNonNull(maxWait, "Group commit max wait cannot be null");
+            return this;
+        }
+
+        /**
+         * Enable "lazy cloud events". When enabled, {@link org.occurrent.eventstore.api.blocking.EventStore#read(String)} and the {@link org.occurrent.eventstore.api.blocking.EventStoreQueries}
+         * fetch the events as {@link org.bson.RawBsonDocument}'s and return {@link CloudEvent}'s that decode their attributes, extensions and data from the raw BSON only when they're accessed
+         * for the first time. This saves both CPU and allocations when the events are not fully consumed, for example if only the type or subject of an event is used to decide whether to skip it.
+         * <br><br>
+         * Cannot be combined with {@link #queryOptions(Function)}. Default is {@code false}.
+         *
+         * @param lazyCloudEvents {@code true} to enable lazy cloud events, {@code false} otherwise.
+         * @return A same {@code Builder instance}
+         */
+        public Builder lazyCloudEvents(boolean lazyCloudEvents) {
+            this.lazyCloudEvents = lazyCloudEvents;
+            return this;
+        }
+
+        /**
+         * Expose json data that is stored as a document as the embedded {@link org.bson.BsonDocument} of the lazy cloud event, instead of decoding it into a {@link org.bson.Document},
+         * i.e. the {@code CloudEventData} is a {@code PojoCloudEventData} wrapping a {@code BsonDocument}. Converters that can read BSON, such as the {@code JacksonCloudEventConverter}
+         * (when {@code org.mongodb:bson} is on the classpath), then deserialize the domain events straight from the raw BSON. Note that converters that expect the data to be a {@code Map}
+         * of plain Java values will not work when this is enabled.
+         * <br><br>
+         * Requires {@link #lazyCloudEvents(boolean)}. Default is {@code false}.
+         *
+         * @param rawBsonData {@code true} to expose json data as the raw BSON document, {@code false} otherwise.
+         * @return A same {@code Builder instance}
+         */
+        public Builder rawBsonData(boolean rawBsonData) {
+            this.rawBsonData = rawBsonData;
+            return this;
+        }
+
+        /**
+         * Compress the data of cloud events of certain types before they're written to MongoDB, see {@link CloudEventDataCompression}. Compressed data is always
+         * decompressed when read, regardless of this setting. Note that queries on {@code data} fields will not match cloud events whose data is compressed.
+         * Default is {@link CloudEventDataCompression#none()}.
+         *
+         * @param dataCompression The {@link CloudEventDataCompression} to use
+         * @return A same {@code Builder instance}
+         */
+        public Builder dataCompression(CloudEventDataCompression dataCompression) {
+            this.dataCompression = dataCompression;
+            return this;
+        }
+
+        /**
+         * Enable "single round-trip reads". By default, {@link org.occurrent.eventstore.api.blocking.EventStore#read(String)} first finds the current version of the stream and then queries its events,
+         * i.e. two round-trips to MongoDB. When enabled, reading an entire stream only queries the events and the version of the stream is derived from the last event, and reading a part of a stream
+         * (skip/limit or a version range) uses a single aggregation that returns both the events and the current version of the stream. The semantics of the returned
+         * {@link org.occurrent.eventstore.api.blocking.EventStream} are the same.
+         * <br><br>
+         * Note that the events are fetched before the {@code EventStream} is returned (since the version must be known), so this is intended for streams that are read entirely anyway,
+         * such as when loading the events of an aggregate. A part of a stream cannot exceed the maximum BSON document size (16 MB) and lazy cloud events are not used for such reads. Default is {@code false}.
+         *
+         * @param singleRoundTripReads {@code true} to enable single round-trip reads, {@code false} otherwise.
+         * @return A same {@code Builder instance}
+         */
+        public Builder singleRoundTripReads(boolean singleRoundTripReads) {
+            this.singleRoundTripReads = singleRoundTripReads;
+            return this;
+        }
+
+        /**
+         * Maintain an "event counters" collection, with the given name, that contains the number of events per value of the {@link #eventCounterAttributes(String...) counted attributes}.
+         * The counters are updated in the same transaction as the events are written, updated or deleted. When enabled, {@link org.occurrent.eventstore.api.blocking.EventStoreQueries#count(org.occurrent.filter.Filter)}
+         * and {@link org.occurrent.eventstore.api.blocking.EventStoreQueries#exists(org.occurrent.filter.Filter)} are served from the counters, instead of by counting the documents in the event collection,
+         * for filters such as {@code Filter.streamId("streamId")} (or {@code Filter.type("type")} if the type is counted) and "or" compositions of such filters on the same attribute.
+         * Other filters are counted in the event collection as before. The first event store that is created with event counters populates the counters from the events in the event collection, in batches that are recounted in transactions so that concurrent writes are neither lost nor counted twice. Until this is completed, count and exists are served from the event collection.
+         * <br><br>
+         * Cannot be combined with {@link #transactionlessAppend(boolean)}. Default is {@code null}, i.e. no event counters collection is maintained.
+         *
+         * @param eventCountersCollectionName The name of the event counters collection, or {@code null} to disable event counters.
+         * @return A same {@code Builder instance}
+         */
+        public Builder eventCountersCollectionName(String eventCountersCollectionName) {
+            this.eventCountersCollectionName = eventCountersCollectionName;
+            return this;
+        }
+
+        /**
+         * The attributes to count in the {@link #eventCountersCollectionName(String) event counters collection}, any of {@code "type"}, {@code "source"} and {@code "streamid"}.
+         * All writes of events with the same value of a counted attribute update the same counter document, so concurrent transactions writing events of the same type
+         * (or from the same source) conflict and are retried if the type (or source) is counted. Changing the counted attributes requires that the event counters collection is dropped,
+         * so that it's recreated with the new attributes. Default is {@code "streamid"}.
+         *
+         * @param eventCounterAttributes The attributes to count
+         * @return A same {@code Builder instance}
+         */
+        public Builder eventCounterAttributes(String... eventCounterAttributes) {
+            this.eventCounterAttributes = eventCounterAttributes == null ? null : Arrays.asList(eventCounterAttributes);
+            return this;
+        }
+
         public EventStoreConfig build() {
-            return new EventStoreConfig(timeRepresentation, transactionOptions, queryOptions);
+            return new EventStoreConfig(timeRepresentation, transactionOptions, queryOptions, transactionlessAppend, streamHeadsCollectionName, groupCommitMaxBatchSize, groupCommitMaxWait, lazyCloudEvents, rawBsonData, dataCompression, singleRoundTripReads, eventCountersCollectionName, eventCounterAttributes);
         }
     }
 }
\ No newline at end of file
@@ -16,16 +16,27 @@
 
 package org.occurrent.eventstore.mongodb.nativedriver;
 
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoCommandException;
 import com.mongodb.MongoException;
+import com.mongodb.MongoWriteException;
 import com.mongodb.TransactionOptions;
 import com.mongodb.client.*;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
 import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.Indexes;
 import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOptions;
 import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
 import io.cloudevents.CloudEvent;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
 import org.bson.conversions.Bson;
 import org.occurrent.cloudevents.OccurrentExtensionGetter;
 import org.occurrent.condition.Condition;
@@ -34,16 +45,25 @@ import org.occurrent.eventstore.api.blocking.EventStore;
 import org.occurrent.eventstore.api.blocking.EventStoreOperations;
 import org.occurrent.eventstore.api.blocking.EventStoreQueries;
 import org.occurrent.eventstore.api.blocking.EventStream;
+import org.occurrent.eventstore.api.blocking.EventStreamWrite;
+import org.occurrent.eventstore.mongodb.cloudevent.CloudEventCodec;
+import org.occurrent.eventstore.mongodb.cloudevent.CloudEventDataCompression;
+import org.occurrent.eventstore.mongodb.internal.EventCounters;
+import org.occurrent.eventstore.mongodb.internal.ExpectedStreamVersion;
+import org.occurrent.eventstore.mongodb.internal.GroupCommitWriteCoalescer;
 import org.occurrent.eventstore.mongodb.internal.MongoExceptionTranslator.WriteContext;
+import org.occurrent.eventstore.mongodb.internal.OccurrentCloudEventMongoDocumentMapper;
+import org.occurrent.eventstore.mongodb.internal.SingleRoundTripStreamRead;
+import org.occurrent.eventstore.mongodb.internal.StreamHeads;
 import org.occurrent.filter.Filter;
 import org.occurrent.functionalsupport.internal.FunctionalSupport.Pair;
 import org.occurrent.mongodb.spring.filterbsonfilterconversion.internal.FilterToBsonFilterConverter;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
 
 import java.net.URI;
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -55,12 +75,16 @@ import static com.mongodb.client.model.Filters.*;
 import static com.mongodb.client.model.Sorts.ascending;
 import static com.mongodb.client.model.Sorts.descending;
 import static java.util.Objects.requireNonNull;
+import static org.bson.codecs.configuration.CodecRegistries.fromCodecs;
+import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
 import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
 import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_VERSION;
 import static org.occurrent.eventstore.api.SortBy.*;
 import static org.occurrent.eventstore.api.SortBy.SortDirection.ASCENDING;
 import static org.occurrent.eventstore.api.WriteCondition.StreamVersionWriteCondition;
 import static org.occurrent.eventstore.api.WriteCondition.anyStreamVersion;
+import static org.occurrent.eventstore.api.internal.VersionRange.requireValidVersionRange;
+import static org.occurrent.eventstore.mongodb.internal.MongoExceptionTranslator.indexOfFailingWrite;
 import static org.occurrent.eventstore.mongodb.internal.MongoExceptionTranslator.translateException;
 import static org.occurrent.eventstore.mongodb.internal.OccurrentCloudEventMongoDocumentMapper.convertToCloudEvent;
 import static org.occurrent.eventstore.mongodb.internal.OccurrentCloudEventMongoDocumentMapper.convertToDocument;
@@ -75,10 +99,23 @@ public class MongoEventStore implements EventStore, EventStoreOperations, EventS
     private static final String NATURAL = "$natural";
 
     private final MongoCollection<Document> eventCollection;
+    // Events are written using a CloudEventCodec to avoid creating an intermediate Document for each event
+    private final MongoCollection<CloudEvent> cloudEventCollection;
     private final MongoClient mongoClient;
     private final TimeRepresentation timeRepresentation;
+    private final CloudEventDataCompression dataCompression;
     private final TransactionOptions transactionOptions;
     private final Function<FindIterable<Document>, FindIterable<Document>> queryOptions;
+    private final boolean transactionlessAppend;
+    private final MongoCollection<Document> streamHeadsCollection;
+    private final MongoCollection<Document> eventCountersCollection;
+    private final EventCounters eventCounters;
+    private volatile boolean eventCountersPopulated;
+    private final GroupCommitWriteCoalescer groupCommitWriteCoalescer;
+    private final boolean lazyCloudEvents;
+    private final boolean rawBsonData;
+    private final boolean singleRoundTripReads;
+    private final boolean singleRoundTripPartialReads;
 
     /**
      * Create a new instance of {@code MongoEventStore}
@@ -111,17 +148,47 @@ public class MongoEventStore implements EventStore, EventStoreOperations, EventS
         this.eventCollection = eventCollection;
         transactionOptions = config.transactionOptions;
         this.timeRepresentation = config.timeRepresentation;
+        this.dataCompression = config.dataCompression;
+        this.cloudEventCollection = eventCollection.withDocumentClass(CloudEvent.class)
+                .withCodecRegistry(fromRegistries(fromCodecs(new CloudEventCodec(timeRepresentation, eventCollection.getCodecRegistry(), dataCompression)), eventCollection.getCodecRegistry()));
         this.queryOptions = config.queryOptions;
-        initializeEventStore(eventCollection, database);
+        this.transactionlessAppend = config.transactionlessAppend;
+        this.lazyCloudEvents = config.lazyCloudEvents;
+        this.rawBsonData = config.rawBsonData;
+        this.singleRoundTripReads = config.singleRoundTripReads;
+        this.singleRoundTripPartialReads = config.singleRoundTripReads && !config.lazyCloudEvents && !config.hasCustomQueryOrReadOptions();
+        this.streamHeadsCollection = config.streamHeadsCollectionName == null ? null : database.getCollection(config.streamHeadsCollectionName);
+        this.eventCountersCollection = config.eventCountersCollectionName == null ? null : database.getCollection(config.eventCountersCollectionName);
+        this.eventCounters = new EventCounters(config.eventCounterAttributes);
+        this.groupCommitWriteCoalescer = config.groupCommitMaxBatchSize == 0 ? null : new GroupCommitWriteCoalescer(config.groupCommitMaxBatchSize, config.groupCommitMaxWait, this::writeAllInTransaction);
+        initializeEventStore(mongoClient, transactionOptions, eventCollection, streamHeadsCollection, eventCountersCollection, eventCounters, database);
     }
 
     @Override
     public EventStream<CloudEvent> read(String streamId, int skip, int limit) {
-        EventStream<Document> eventStream = readEventStream(streamId, skip, limit);
-        return eventStream.map(document -> convertToCloudEvent(timeRepresentation, document));
+        return readEventStream(streamId, 0, Long.MAX_VALUE, skip, limit);
     }
 
-    private EventStreamImpl<Document> readEventStream(String streamId, int skip, int limit) {
+    @Override
+    public EventStream<CloudEvent> readVersionRange(String streamId, long fromVersionExclusive, long toVersionInclusive) {
+        requireValidVersionRange(streamId, fromVersionExclusive, toVersionInclusive);
+        return readEventStream(streamId, fromVersionExclusive, toVersionInclusive, 0, Integer.MAX_VALUE);
+    }
+
+    private EventStreamImpl<CloudEvent> readEventStream(String streamId, long fromVersionExclusive, long toVersionInclusive, int skip, int limit) {
+        if (singleRoundTripReads && SingleRoundTripStreamRead.isEntireStream(fromVersionExclusive, toVersionInclusive, skip, limit)) {
+            return readEntireEventStreamInSingleRoundTrip(streamId);
+        } else if (singleRoundTripPartialReads) {
+            try {
+                return readPartOfEventStreamInSingleRoundTrip(streamId, fromVersionExclusive, toVersionInclusive, skip, limit);
+            } catch (MongoCommandException e) {
+                if (!SingleRoundTripStreamRead.isResultTooLarge(e)) {
+                    throw e;
+                }
+                // Fall back to reading the events with a cursor
+            }
+        }
+
         long currentStreamVersion = currentStreamVersion(streamId, null);
         if (currentStreamVersion == 0) {
             return new EventStreamImpl<>(streamId, 0, Stream.empty());
@@ -129,11 +196,32 @@ public class MongoEventStore implements EventStore, EventStoreOperations, EventS
 
         // We use "lte" currentStreamVersion so that we don't have the start transactions on read. This means that even
         // if another thread has inserted more events after we've read "currentStreamVersion" it doesn't matter.
-        Stream<Document> documentStream = readCloudEvents(streamIdAndStreamVersionLessThanOrEqualTo(streamId, currentStreamVersion), skip, limit, SortBy.streamVersion(ASCENDING));
-        return new EventStreamImpl<>(streamId, currentStreamVersion, documentStream);
+        Bson query = streamIdAndStreamVersionLessThanOrEqualTo(streamId, Math.min(currentStreamVersion, toVersionInclusive));
+        if (fromVersionExclusive > 0) {
+            // The lower bound of the version range makes MongoDB start the scan of the (streamid, streamversion) index at the first event to read
+            query = and(query, gt(STREAM_VERSION, fromVersionExclusive));
+        }
+        Stream<CloudEvent> cloudEventStream = readCloudEvents(query, skip, limit, SortBy.streamVersion(ASCENDING));
+        return new EventStreamImpl<>(streamId, currentStreamVersion, cloudEventStream);
+    }
+
+    private EventStreamImpl<CloudEvent> readEntireEventStreamInSingleRoundTrip(String streamId) {
+        List<CloudEvent> cloudEvents = readCloudEvents(streamIdEqualTo(streamId), 0, Integer.MAX_VALUE, SortBy.streamVersion(ASCENDING)).collect(Collectors.toList());
+        long currentStreamVersion = cloudEvents.isEmpty() ? 0 : OccurrentExtensionGetter.getStreamVersion(cloudEvents.get(cloudEvents.size() - 1));
+        return new EventStreamImpl<>(streamId, currentStreamVersion, cloudEvents.stream());
+    }
+
+    private EventStreamImpl<CloudEvent> readPartOfEventStreamInSingleRoundTrip(String streamId, long fromVersionExclusive, long toVersionInclusive, int skip, int limit) {
+        Document result = eventCollection.aggregate(SingleRoundTripStreamRead.partOfStream(streamId, fromVersionExclusive, toVersionInclusive, skip, limit)).first();
+        List<CloudEvent> cloudEvents = SingleRoundTripStreamRead.events(result).stream().map(document -> convertToCloudEvent(timeRepresentation, document)).collect(Collectors.toList());
+        return new EventStreamImpl<>(streamId, SingleRoundTripStreamRead.version(result), cloudEvents.stream());
     }
 
     private long currentStreamVersion(String streamId, ClientSession clientSession) {
+        if (streamHeadsCollection != null) {
+            return currentStreamVersionFromStreamHead(streamId, clientSession);
+        }
+
         Bson streamIdFilter = streamIdEqualTo(streamId);
         final FindIterable<Document> documents;
         if (clientSession == null) {
@@ -151,19 +239,30 @@ public class MongoEventStore implements EventStore, EventStoreOperations, EventS
         return currentStreamVersion;
     }
 
-    private Stream<Document> readCloudEvents(Bson query, int skip, int limit, SortBy sortBy) {
-        final FindIterable<Document> documentsWithoutSkipAndLimit = eventCollection.find(query);
+    private long currentStreamVersionFromStreamHead(String streamId, ClientSession clientSession) {
+        Bson streamHeadFilter = eq(StreamHeads.ID, streamId);
+        final FindIterable<Document> streamHeads = clientSession == null ? streamHeadsCollection.find(streamHeadFilter) : streamHeadsCollection.find(clientSession, streamHeadFilter);
+        final Document streamHead = streamHeads.projection(Projections.include(StreamHeads.VERSION)).first();
+        return streamHead == null ? 0 : streamHead.getLong(StreamHeads.VERSION);
+    }
 
-        final FindIterable<Document> documentsWithSkipAndLimit;
-        if (skip != 0 || limit != Integer.MAX_VALUE) {
-            documentsWithSkipAndLimit = documentsWithoutSkipAndLimit.skip(skip).limit(limit);
-        } else {
-            documentsWithSkipAndLimit = documentsWithoutSkipAndLimit;
+    private Stream<CloudEvent> readCloudEvents(Bson query, int skip, int limit, SortBy sortBy) {
+        Bson sort = convertToMongoDBSort(sortBy);
+        if (lazyCloudEvents) {
+            // The raw documents are decoded lazily by the cloud events
+            FindIterable<RawBsonDocument> documents = withSkipAndLimit(eventCollection.find(query, RawBsonDocument.class), skip, limit).sort(sort);
+            return StreamSupport.stream(documents.spliterator(), false).map(document -> convertToCloudEvent(document, rawBsonData));
         }
 
-        Bson sort = convertToMongoDBSort(sortBy);
+        FindIterable<Document> documents = withSkipAndLimit(eventCollection.find(query), skip, limit).sort(sort);
+        return StreamSupport.stream(queryOptions.apply(documents).spliterator(), false).map(document -> convertToCloudEvent(timeRepresentation, document));
+    }
 
-        return StreamSupport.stream(queryOptions.apply(documentsWithSkipAndLimit.sort(sort)).spliterator(), false);
+    private static <T> FindIterable<T> withSkipAndLimit(FindIterable<T> documents, int skip, int limit) {
+        if (skip != 0 || limit != Integer.MAX_VALUE) {
+            return documents.skip(skip).limit(limit);
+        }
+        return documents;
     }
 
     @Override
@@ -177,6 +276,22 @@ public class MongoEventStore implements EventStore, EventStoreOperations, EventS
             throw new IllegalArgumentException(WriteCondition.class.getSimpleName() + " cannot be null");
         }
 
+        final Stream<CloudEvent> eventsToWrite;
+        OptionalLong expectedStreamVersion = ExpectedStreamVersion.fromWriteCondition(writeCondition);
+        if (transactionlessAppend && expectedStreamVersion.isPresent()) {
+            List<CloudEvent> eventList = events.collect(Collectors.toList());
+            if (eventList.size() == 1 && streamHasVersion(streamId, expectedStreamVersion.getAsLong())) {
+                return appendWithoutTransaction(streamId, expectedStreamVersion.getAsLong(), writeCondition, eventList.get(0));
+            }
+            eventsToWrite = eventList.stream();
+        } else {
+            eventsToWrite = events;
+        }
+
+        if (groupCommitWriteCoalescer != null) {
+            return groupCommitWriteCoalescer.write(streamId, writeCondition, eventsToWrite.collect(Collectors.toList()));
+        }
+
         try (ClientSession clientSession = mongoClient.startSession()) {
             Long newStreamVersion = clientSession.withTransaction(() -> {
                 long currentStreamVersion = currentStreamVersion(streamId, clientSession);
@@ -185,25 +300,165 @@ public class MongoEventStore implements EventStore, EventStoreOperations, EventS
                     throw new WriteConditionNotFulfilledException(streamId, currentStreamVersion, writeCondition, String.format("%s was not fulfilled. Expected version %s but was %s.", WriteCondition.class.getSimpleName(), writeCondition, currentStreamVersion));
                 }
 
-                List<Document> cloudEventDocuments = zip(LongStream.iterate(currentStreamVersion + 1, i -> i + 1).boxed(), events, Pair::new)
-                        .map(pair -> convertToDocument(timeRepresentation, streamId, pair.t1, pair.t2))
+                List<CloudEvent> cloudEvents = zip(LongStream.iterate(currentStreamVersion + 1, i -> i + 1).boxed(), eventsToWrite, Pair::new)
+                        .map(pair -> CloudEventCodec.withStreamPosition(streamId, pair.t1, pair.t2))
                         .collect(Collectors.toList());
 
-                if (cloudEventDocuments.isEmpty()) {
+                if (cloudEvents.isEmpty()) {
                     return currentStreamVersion;
                 } else {
                     try {
-                        eventCollection.insertMany(clientSession, cloudEventDocuments);
+                        cloudEventCollection.insertMany(clientSession, cloudEvents);
                     } catch (MongoException e) {
                         throw translateException(new WriteContext(streamId, currentStreamVersion, writeCondition), e);
                     }
-                    return cloudEventDocuments.get(cloudEventDocuments.size() - 1).getLong(STREAM_VERSION);
+                    long lastStreamVersion = currentStreamVersion + cloudEvents.size();
+                    if (streamHeadsCollection != null) {
+                        streamHeadsCollection.updateOne(clientSession, eq(StreamHeads.ID, streamId), streamHeadUpdate(lastStreamVersion, cloudEvents), new UpdateOptions().upsert(true));
+                    }
+                    updateEventCounters(eventCounters.incrementsAfterWrite(streamId, cloudEvents), clientSession);
+                    return lastStreamVersion;
                 }
             }, transactionOptions);
             return new WriteResult(streamId, newStreamVersion);
         }
     }
 
+    // Relies on the unique (streamid, streamversion) index to detect concurrent writes instead of using a transaction
+    private WriteResult appendWithoutTransaction(String streamId, long expectedStreamVersion, WriteCondition writeCondition, CloudEvent event) {
+        long newStreamVersion = expectedStreamVersion + 1;
+        try {
+            cloudEventCollection.insertOne(CloudEventCodec.withStreamPosition(streamId, newStreamVersion, event));
+        } catch (MongoException e) {
+            throw translateException(new WriteContext(streamId, expectedStreamVersion, writeCondition), e);
+        }
+        return new WriteResult(streamId, newStreamVersion);
+    }
+
+    // The unique index prevents two writers from writing the same version, but it doesn't prevent gaps. We thus make sure
+    // that the expected version actually exists (using a covered index lookup) before appending the next version.
+    private boolean streamHasVersion(String streamId, long streamVersion) {
+        if (streamVersion == 0) {
+            return true;
+        }
+        return eventCollection.find(and(streamIdEqualTo(streamId), eq(STREAM_VERSION, streamVersion))).projection(Projections.fields(Projections.include(STREAM_ID, STREAM_VERSION), Projections.excludeId())).limit(1).first() != null;
+    }
+
+    private Bson streamHeadUpdate(long lastStreamVersion, List<CloudEvent> writtenCloudEvents) {
+        CloudEvent lastCloudEvent = writtenCloudEvents.get(writtenCloudEvents.size() - 1);
+        return StreamHeads.updateAfterWrite(lastStreamVersion, OccurrentCloudEventMongoDocumentMapper.convertTime(timeRepresentation, lastCloudEvent.getTime()), writtenCloudEvents.size());
+    }
+
+    /**
+     * Write events to several event streams in a single transaction. The current version of all streams are fetched using a single
+     * aggregation and all events are inserted using a single {@code insertMany}. If the write condition of any stream is not fulfilled
+     * no events are written.
+     */
+    @Override
+    public List<WriteResult> writeAll(Map<String, EventStreamWrite> writes) {
+        requireNonNull(writes, "Writes cannot be null");
+        if (writes.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // Materialize the events before starting the transaction so that the transaction body can be retried by the driver
+        Map<String, Pair<WriteCondition, List<CloudEvent>>> eventsToWrite = new LinkedHashMap<>();
+        writes.forEach((streamId, write) -> {
+            requireNonNull(write, EventStreamWrite.class.getSimpleName() + " for stream " + streamId + " cannot be null");
+            eventsToWrite.put(streamId, new Pair<>(write.writeCondition, write.events.collect(Collectors.toList())));
+        });
+        return writeAllInTransaction(eventsToWrite);
+    }
+
+    private List<WriteResult> writeAllInTransaction(Map<String, Pair<WriteCondition, List<CloudEvent>>> eventsToWrite) {
+        try (ClientSession clientSession = mongoClient.startSession()) {
+            return clientSession.withTransaction(() -> {
+                Map<String, Long> currentStreamVersions = currentStreamVersions(eventsToWrite.keySet(), clientSession);
+
+                List<CloudEvent> cloudEvents = new ArrayList<>();
+                List<UpdateOneModel<Document>> streamHeadUpdates = new ArrayList<>();
+                Map<String, Long> eventCounterIncrements = new HashMap<>();
+                List<WriteResult> writeResults = new ArrayList<>(eventsToWrite.size());
+                for (Entry<String, Pair<WriteCondition, List<CloudEvent>>> entry : eventsToWrite.entrySet()) {
+                    String streamId = entry.getKey();
+                    WriteCondition writeCondition = entry.getValue().t1;
+                    long currentStreamVersion = currentStreamVersions.getOrDefault(streamId, 0L);
+                    if (!isFulfilled(currentStreamVersion, writeCondition)) {
+                        throw new WriteConditionNotFulfilledException(streamId, currentStreamVersion, writeCondition, String.format("%s was not fulfilled. Expected version %s but was %s.", WriteCondition.class.getSimpleName(), writeCondition, currentStreamVersion));
+                    }
+
+                    List<CloudEvent> events = entry.getValue().t2;
+                    long streamVersion = currentStreamVersion;
+                    for (CloudEvent event : events) {
+                        cloudEvents.add(CloudEventCodec.withStreamPosition(streamId, ++streamVersion, event));
+                    }
+                    if (!events.isEmpty()) {
+                        streamHeadUpdates.add(new UpdateOneModel<>(eq(StreamHeads.ID, streamId), streamHeadUpdate(streamVersion, events), new UpdateOptions().upsert(true)));
+                        eventCounters.incrementsAfterWrite(streamId, events).forEach((counterId, increment) -> eventCounterIncrements.merge(counterId, increment, Long::sum));
+                    }
+                    writeResults.add(new WriteResult(streamId, streamVersion));
+                }
+
+                if (!cloudEvents.isEmpty()) {
+                    try {
+                        cloudEventCollection.insertMany(clientSession, cloudEvents);
+                    } catch (MongoException e) {
+                        // Report the stream of the event that actually failed, not just the first stream in the batch
+                        String failingStreamId = failingStreamId(cloudEvents, indexOfFailingWrite(e));
+                        throw translateException(new WriteContext(failingStreamId, currentStreamVersions.getOrDefault(failingStreamId, 0L), eventsToWrite.get(failingStreamId).t1), e);
+                    }
+                    if (streamHeadsCollection != null) {
+                        streamHeadsCollection.bulkWrite(clientSession, streamHeadUpdates);
+                    }
+                    updateEventCounters(eventCounterIncrements, clientSession);
+                }
+                return writeResults;
+            }, transactionOptions);
+        }
+    }
+
+    private static String failingStreamId(List<CloudEvent> writtenCloudEvents, int indexOfFailingWrite) {
+        int index = indexOfFailingWrite < writtenCloudEvents.size() ? indexOfFailingWrite : 0;
+        return (String) writtenCloudEvents.get(index).getExtension(STREAM_ID);
+    }
+
+    /**
+     * Find the current version of several event streams. If a stream heads collection is configured this is a single lookup
+     * in the stream heads collection, otherwise the versions are found using a single aggregation on the event collection.
+     */
+    @Override
+    public Map<String, Long> streamVersions(Collection<String> streamIds) {
+        requireNonNull(streamIds, "Stream ids cannot be null");
+        Map<String, Long> currentStreamVersions = streamIds.isEmpty() ? Collections.emptyMap() : currentStreamVersions(streamIds, null);
+        Map<String, Long> streamVersions = new LinkedHashMap<>();
+        streamIds.forEach(streamId -> streamVersions.put(streamId, currentStreamVersions.getOrDefault(streamId, 0L)));
+        return streamVersions;
+    }
+
+    private Map<String, Long> currentStreamVersions(Collection<String> streamIds, ClientSession clientSession) {
+        Map<String, Long> currentStreamVersions = new HashMap<>();
+        if (streamHeadsCollection != null) {
+            Bson streamHeadsFilter = in(StreamHeads.ID, streamIds);
+            FindIterable<Document> streamHeads = clientSession == null ? streamHeadsCollection.find(streamHeadsFilter) : streamHeadsCollection.find(clientSession, streamHeadsFilter);
+            for (Document streamHead : streamHeads.projection(Projections.include(StreamHeads.VERSION))) {
+                currentStreamVersions.put(streamHead.getString(StreamHeads.ID), streamHead.getLong(StreamHeads.VERSION));
+            }
+            return currentStreamVersions;
+        }
+
+        // Sorting on the (streamid, streamversion) index in the same direction as $first allows MongoDB to only visit the
+        // latest index entry for each stream.
+        List<Bson> pipeline = Arrays.asList(
+                Aggregates.match(in(STREAM_ID, streamIds)),
+                Aggregates.sort(descending(STREAM_ID, STREAM_VERSION)),
+                Aggregates.group("$" + STREAM_ID, Accumulators.first(STREAM_VERSION, "$" + STREAM_VERSION)));
+        AggregateIterable<Document> documents = clientSession == null ? eventCollection.aggregate(pipeline) : eventCollection.aggregate(clientSession, pipeline);
+        for (Document document : documents) {
+            currentStreamVersions.put(document.getString(ID), document.getLong(STREAM_VERSION));
+        }
+        return currentStreamVersions;
+    }
+
     private static boolean isFulfilled(long currentStreamVersion, WriteCondition writeCondition) {
         if (writeCondition.isAnyStreamVersion()) {
             return true;
@@ -219,24 +474,101 @@ public class MongoEventStore implements EventStore, EventStoreOperations, EventS
 
     @Override
     public boolean exists(String streamId) {
-        return eventCollection.countDocuments(eq(STREAM_ID, streamId)) > 0;
+        if (streamHeadsCollection != null) {
+            return streamHeadsCollection.find(eq(StreamHeads.ID, streamId)).projection(Projections.include(StreamHeads.ID)).first() != null;
+        }
+        return eventCollection.find(streamIdEqualTo(streamId)).projection(Projections.fields(Projections.include(STREAM_ID), Projections.excludeId())).limit(1).first() != null;
     }
 
     @Override
     public void deleteEventStream(String streamId) {
-        eventCollection.deleteMany(eq(STREAM_ID, streamId));
+        if (streamHeadsCollection == null && eventCountersCollection == null) {
+            eventCollection.deleteMany(eq(STREAM_ID, streamId));
+        } else {
+            try (ClientSession clientSession = mongoClient.startSession()) {
+                clientSession.withTransaction(() -> {
+                    Map<String, Long> eventCounterDecrements = countEventsToDelete(eq(STREAM_ID, streamId), clientSession);
+                    DeleteResult deleteResult = eventCollection.deleteMany(clientSession, eq(STREAM_ID, streamId));
+                    if (streamHeadsCollection != null) {
+                        streamHeadsCollection.deleteOne(clientSession, eq(StreamHeads.ID, streamId));
+                    }
+                    updateEventCounters(eventCounterDecrements, clientSession);
+                    return deleteResult;
+                }, transactionOptions);
+            }
+        }
     }
 
     @Override
     public void deleteEvent(String cloudEventId, URI cloudEventSource) {
-        eventCollection.deleteOne(uniqueCloudEvent(cloudEventId, cloudEventSource));
+        Bson cloudEvent = uniqueCloudEvent(cloudEventId, cloudEventSource);
+        if (streamHeadsCollection == null && eventCountersCollection == null) {
+            eventCollection.deleteOne(cloudEvent);
+        } else {
+            try (ClientSession clientSession = mongoClient.startSession()) {
+                clientSession.withTransaction(() -> {
+                    Document deletedDocument = eventCollection.findOneAndDelete(clientSession, cloudEvent);
+                    if (deletedDocument != null) {
+                        recalculateStreamHeads(Collections.singletonList(deletedDocument.getString(STREAM_ID)), clientSession);
+                        updateEventCounters(eventCounters.decrementsAfterDelete(deletedDocument), clientSession);
+                    }
+                    return deletedDocument;
+                }, transactionOptions);
+            }
+        }
     }
 
     @Override
     public void delete(Filter filter) {
         requireNonNull(filter, "Filter cannot be null");
         final Bson bson = FilterToBsonFilterConverter.convertFilterToBsonFilter(timeRepresentation, filter);
-        eventCollection.deleteMany(bson);
+        if (streamHeadsCollection == null && eventCountersCollection == null) {
+            eventCollection.deleteMany(bson);
+        } else {
+            try (ClientSession clientSession = mongoClient.startSession()) {
+                clientSession.withTransaction(() -> {
+                    List<String> affectedStreamIds = streamHeadsCollection == null ? Collections.emptyList() : eventCollection.distinct(clientSession, STREAM_ID, bson, String.class).into(new ArrayList<>());
+                    Map<String, Long> eventCounterDecrements = countEventsToDelete(bson, clientSession);
+                    DeleteResult deleteResult = eventCollection.deleteMany(clientSession, bson);
+                    recalculateStreamHeads(affectedStreamIds, clientSession);
+                    updateEventCounters(eventCounterDecrements, clientSession);
+                    return deleteResult;
+                }, transactionOptions);
+            }
+        }
+    }
+
+    private Map<String, Long> countEventsToDelete(Bson eventFilter, ClientSession clientSession) {
+        if (eventCountersCollection == null) {
+            return Collections.emptyMap();
+        }
+        return EventCounters.decrementsAfterDelete(eventCollection.aggregate(clientSession, eventCounters.countEvents(eventFilter)));
+    }
+
+    private void updateEventCounters(Map<String, Long> increments, ClientSession clientSession) {
+        if (eventCountersCollection == null) {
+            return;
+        }
+        List<WriteModel<Document>> updates = EventCounters.updates(increments);
+        if (!updates.isEmpty()) {
+            eventCountersCollection.bulkWrite(clientSession, updates);
+        }
+    }
+
+    // Recalculates the stream heads from the events that remain in the event collection, stream heads of streams without events are removed
+    private void recalculateStreamHeads(List<String> streamIds, ClientSession clientSession) {
+        if (streamHeadsCollection == null || streamIds.isEmpty()) {
+            return;
+        }
+        Set<String> streamIdsWithoutEvents = new HashSet<>(streamIds);
+        for (Document streamHead : eventCollection.aggregate(clientSession, StreamHeads.recalculate(in(STREAM_ID, streamIds)))) {
+            String streamId = streamHead.getString(StreamHeads.ID);
+            streamIdsWithoutEvents.remove(streamId);
+            streamHeadsCollection.replaceOne(clientSession, eq(StreamHeads.ID, streamId), streamHead, new ReplaceOptions().upsert(true));
+        }
+        if (!streamIdsWithoutEvents.isEmpty()) {
+            streamHeadsCollection.deleteMany(clientSession, in(StreamHeads.ID, streamIdsWithoutEvents));
+        }
     }
 
     @Override
@@ -247,13 +579,23 @@ public class MongoEventStore implements EventStore, EventStoreOperations, EventS
         final Optional<CloudEvent> result;
         try (ClientSession clientSession = mongoClient.startSession()) {
             result = clientSession.withTransaction(
-                    () -> updateCloudEvent(updateFunction, () -> eventCollection.find(clientSession, cloudEvent), updatedDocument -> eventCollection.replaceOne(clientSession, cloudEvent, updatedDocument)),
+                    () -> updateCloudEvent(updateFunction, () -> eventCollection.find(clientSession, cloudEvent), (document, updatedDocument) -> {
+                        UpdateResult updateResult = eventCollection.replaceOne(clientSession, cloudEvent, updatedDocument);
+                        if (streamHeadsCollection != null) {
+                            // The time of the last event in the stream is stored in the stream head
+                            Bson streamHeadOfLastEvent = and(eq(StreamHeads.ID, updatedDocument.getString(STREAM_ID)), eq(StreamHeads.VERSION, updatedDocument.getLong(STREAM_VERSION)));
+                            streamHeadsCollection.updateOne(clientSession, streamHeadOfLastEvent, StreamHeads.updateAfterEventUpdate(updatedDocument));
+                        }
+                        // The type or source of the event may have been changed
+                        updateEventCounters(eventCounters.incrementsAfterUpdate(document, updatedDocument), clientSession);
+                        return updateResult;
+                    }),
                     transactionOptions);
         }
         return result;
     }
 
-    private Optional<CloudEvent> updateCloudEvent(Function<CloudEvent, CloudEvent> fn, Supplier<FindIterable<Document>> cloudEventFinder, Function<Document, UpdateResult> cloudEventUpdater) {
+    private Optional<CloudEvent> updateCloudEvent(Function<CloudEvent, CloudEvent> fn, Supplier<FindIterable<Document>> cloudEventFinder, BiFunction<Document, Document, UpdateResult> cloudEventUpdater) {
         Document document = cloudEventFinder.get().first();
         if (document == null) {
             return Optional.empty();
@@ -265,9 +607,9 @@ public class MongoEventStore implements EventStore, EventStoreOperations, EventS
             } else if (!Objects.equals(updatedCloudEvent, currentCloudEvent)) {
                 String streamId = OccurrentExtensionGetter.getStreamId(currentCloudEvent);
                 long streamVersion = OccurrentExtensionGetter.getStreamVersion(currentCloudEvent);
-                Document updatedDocument = convertToDocument(timeRepresentation, streamId, streamVersion, updatedCloudEvent);
+                Document updatedDocument = convertToDocument(timeRepresentation, dataCompression, streamId, streamVersion, updatedCloudEvent);
                 updatedDocument.put(ID, document.get(ID)); // Insert the Mongo ObjectID
-                cloudEventUpdater.apply(updatedDocument);
+                cloudEventUpdater.apply(document, updatedDocument);
             }
             return Optional.of(updatedCloudEvent);
         }
@@ -277,8 +619,7 @@ public class MongoEventStore implements EventStore, EventStoreOperations, EventS
     public Stream<CloudEvent> query(Filter filter, int skip, int limit, SortBy sortBy) {
         requireNonNull(filter, "Filter cannot be null");
         final Bson query = FilterToBsonFilterConverter.convertFilterToBsonFilter(timeRepresentation, filter);
-        return readCloudEvents(query, skip, limit, sortBy)
-                .map(document -> convertToCloudEvent(timeRepresentation, document));
+        return readCloudEvents(query, skip, limit, sortBy);
     }
 
     @Override
@@ -286,12 +627,30 @@ public class MongoEventStore implements EventStore, EventStoreOperations, EventS
         requireNonNull(filter, "Filter cannot be null");
         if (filter instanceof Filter.All) {
             return eventCollection.estimatedDocumentCount();
+        }
+
+        Optional<Set<String>> counterIds = eventCountersCollection == null ? Optional.empty() : eventCounters.counterIdsOf(filter);
+        if (counterIds.isPresent() && eventCountersPopulated()) {
+            long count = 0;
+            for (Document counter : eventCountersCollection.find(in(EventCounters.ID, counterIds.get())).projection(Projections.include(EventCounters.COUNT))) {
+                count += EventCounters.count(counter);
+            }
+            return count;
         } else {
             final Bson query = FilterToBsonFilterConverter.convertFilterToBsonFilter(timeRepresentation, filter);
             return eventCollection.countDocuments(query);
         }
     }
 
+    // The counters cannot be used until they have been populated from the events that were written before the event counters collection was enabled,
+    // which may be done by another event store that was started concurrently.
+    private boolean eventCountersPopulated() {
+        if (!eventCountersPopulated) {
+            eventCountersPopulated = EventCounters.isBackfillCompleted(eventCountersCollection.find(EventCounters.backfillMarkerQuery()).first());
+        }
+        return eventCountersPopulated;
+    }
+
     @Override
     public boolean exists(Filter filter) {
         requireNonNull(filter, "Filter cannot be null");
@@ -325,7 +684,7 @@ public class MongoEventStore implements EventStore, EventStoreOperations, EventS
         }
     }
 
-    private static void initializeEventStore(MongoCollection<Document> eventStoreCollection, MongoDatabase mongoDatabase) {
+    private static void initializeEventStore(MongoClient mongoClient, TransactionOptions transactionOptions, MongoCollection<Document> eventStoreCollection, MongoCollection<Document> streamHeadsCollection, MongoCollection<Document> eventCountersCollection, EventCounters eventCounters, MongoDatabase mongoDatabase) {
         String eventStoreCollectionName = eventStoreCollection.getNamespace().getCollectionName();
         if (!collectionExists(mongoDatabase, eventStoreCollectionName)) {
             mongoDatabase.createCollection(eventStoreCollectionName);
@@ -335,6 +694,72 @@ public class MongoEventStore implements EventStore, EventStoreOperations, EventS
         // Create a streamId + streamVersion ascending index (note that we don't need to index stream id separately since it's covered by this compound index)
         // Note also that this index supports when sorting both ascending and descending since MongoDB can traverse an index in both directions.
         eventStoreCollection.createIndex(Indexes.compoundIndex(Indexes.ascending(STREAM_ID), Indexes.ascending(STREAM_VERSION)), new IndexOptions().unique(true));
+
+        if (streamHeadsCollection != null) {
+            String streamHeadsCollectionName = streamHeadsCollection.getNamespace().getCollectionName();
+            if (!collectionExists(mongoDatabase, streamHeadsCollectionName)) {
+                // Create the collection explicitly since collections cannot be created implicitly inside a transaction (before MongoDB 4.4)
+                mongoDatabase.createCollection(streamHeadsCollectionName);
+            }
+            // Populate the stream heads from the events that have been written before the stream heads collection was enabled, or while it was disabled
+            if (eventStoreCollection.find().limit(1).first() != null) {
+                eventStoreCollection.aggregate(StreamHeads.backfill(streamHeadsCollectionName)).toCollection();
+            }
+        }
+
+        if (eventCountersCollection != null) {
+            String eventCountersCollectionName = eventCountersCollection.getNamespace().getCollectionName();
+            if (!collectionExists(mongoDatabase, eventCountersCollectionName)) {
+                // Create the collection explicitly since collections cannot be created implicitly inside a transaction (before MongoDB 4.4)
+                mongoDatabase.createCollection(eventCountersCollectionName);
+            }
+            initializeEventCounters(mongoClient, transactionOptions, eventStoreCollection, eventCountersCollection, eventCounters);
+        }
+    }
+
+    // Populate the counters from the events that have been written before the event counters collection was enabled. Only the event store that manages
+    // to insert the backfill marker does this, so that the counters are only populated once even if several event stores are started concurrently.
+    // The counters are recounted in batches, each in a transaction that conflicts with (and is retried after) concurrent writes that update the same counters.
+    private static void initializeEventCounters(MongoClient mongoClient, TransactionOptions transactionOptions, MongoCollection<Document> eventStoreCollection,
+                                                MongoCollection<Document> eventCountersCollection, EventCounters eventCounters) {
+        try {
+            eventCountersCollection.insertOne(eventCounters.backfillMarker());
+        } catch (MongoWriteException e) {
+            if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                throw e;
+            }
+            eventCounters.requireSameCountedAttributes(eventCountersCollection.find(EventCounters.backfillMarkerQuery()).first());
+            return;
+        }
+
+        try {
+            List<String> counterIds = new ArrayList<>();
+            for (Document counter : eventStoreCollection.aggregate(eventCounters.counterIdsOfAllEvents())) {
+                counterIds.add(counter.getString(EventCounters.ID));
+                if (counterIds.size() == EventCounters.BACKFILL_BATCH_SIZE) {
+                    recountEventCounters(mongoClient, transactionOptions, eventStoreCollection, eventCountersCollection, eventCounters, counterIds);
+                    counterIds.clear();
+                }
+            }
+            if (!counterIds.isEmpty()) {
+                recountEventCounters(mongoClient, transactionOptions, eventStoreCollection, eventCountersCollection, eventCounters, counterIds);
+            }
+            eventCountersCollection.updateOne(EventCounters.backfillMarkerQuery(), EventCounters.backfillCompleted());
+        } catch (RuntimeException e) {
+            // Allow the counters to be populated the next time an event store is started
+            eventCountersCollection.deleteOne(EventCounters.backfillMarkerQuery());
+            throw e;
+        }
+    }
+
+    private static void recountEventCounters(MongoClient mongoClient, TransactionOptions transactionOptions, MongoCollection<Document> eventStoreCollection,
+                                             MongoCollection<Document> eventCountersCollection, EventCounters eventCounters, List<String> counterIds) {
+        try (ClientSession clientSession = mongoClient.startSession()) {
+            clientSession.withTransaction(() -> {
+                List<Document> counts = eventStoreCollection.aggregate(clientSession, eventCounters.countEvents(eventCounters.eventsCountedBy(counterIds))).into(new ArrayList<>());
+                return eventCountersCollection.bulkWrite(clientSession, EventCounters.recount(counterIds, counts));
+            }, transactionOptions);
+        }
     }
 
     private static boolean collectionExists(MongoDatabase mongoDatabase, String collectionName) {
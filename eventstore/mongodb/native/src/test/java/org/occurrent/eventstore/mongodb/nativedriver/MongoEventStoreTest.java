@@ -28,20 +28,26 @@ import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Updates;
 import io.cloudevents.CloudEvent;
 import io.cloudevents.core.builder.CloudEventBuilder;
 import io.cloudevents.core.data.PojoCloudEventData;
 import io.github.artsok.RepeatedIfExceptionsTest;
 import org.awaitility.Awaitility;
+import org.bson.BsonDocument;
 import org.bson.Document;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.condition.EnabledForJreRange;
 import org.junit.jupiter.api.condition.EnabledOnJre;
 import org.junit.jupiter.api.condition.EnabledOnOs;
 import org.junit.jupiter.api.extension.RegisterExtension;
+import org.occurrent.application.converter.jackson.JacksonCloudEventConverter;
 import org.occurrent.domain.*;
+import org.occurrent.eventstore.mongodb.cloudevent.CloudEventDataCompression;
+import org.occurrent.eventstore.mongodb.cloudevent.CompressionAlgorithm;
 import org.occurrent.eventstore.api.*;
 import org.occurrent.eventstore.api.blocking.EventStream;
+import org.occurrent.eventstore.api.blocking.EventStreamWrite;
 import org.occurrent.filter.Filter;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
 import org.occurrent.testsupport.mongodb.FlushMongoDBExtension;
@@ -51,6 +57,7 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 
 import java.io.IOException;
 import java.net.URI;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
@@ -59,6 +66,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.*;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -71,6 +81,7 @@ import static java.time.ZoneOffset.UTC;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.Assertions.entry;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.condition.JRE.JAVA_11;
 import static org.junit.jupiter.api.condition.JRE.JAVA_8;
@@ -375,6 +386,61 @@ class MongoEventStoreTest {
         }
     }
 
+    @Nested
+    @DisplayName("read version range")
+    class ReadVersionRangeTest {
+
+        @Test
+        void read_version_range_returns_the_events_whose_stream_version_is_in_the_range_and_the_version_of_the_entire_stream() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Hello Doe");
+            DomainEvent event4 = new NameWasChanged(UUID.randomUUID().toString(), now, "Another Doe");
+            persist("name", Stream.of(event1, event2, event3, event4));
+
+            // When
+            EventStream<CloudEvent> eventStream = eventStore.readVersionRange("name", 1, 3);
+
+            // Then
+            assertAll(
+                    () -> assertThat(eventStream.version()).isEqualTo(4L),
+                    () -> assertThat(deserialize(eventStream.events())).containsExactly(event2, event3)
+            );
+        }
+
+        @Test
+        void read_after_version_returns_the_events_after_the_version() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Hello Doe");
+            persist("name", Stream.of(event1, event2, event3));
+
+            // When
+            EventStream<CloudEvent> eventStream = eventStore.readAfterVersion("name", 2);
+
+            // Then
+            assertAll(
+                    () -> assertThat(eventStream.version()).isEqualTo(3L),
+                    () -> assertThat(deserialize(eventStream.events())).containsExactly(event3),
+                    () -> assertThat(eventStore.readAfterVersion("name", 3).events()).isEmpty(),
+                    () -> assertThat(eventStore.readAfterVersion("unknown", 0).version()).isZero()
+            );
+        }
+
+        @Test
+        void read_version_range_throws_iae_when_the_range_is_invalid() {
+            // When
+            Throwable throwable = catchThrowable(() -> eventStore.readVersionRange("name", 3, 2));
+
+            // Then
+            assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class).hasMessage("toVersionInclusive cannot be less than fromVersionExclusive");
+        }
+    }
+
     @Nested
     @DisplayName("write result")
     class WriteResultTest {
@@ -447,6 +513,665 @@ class MongoEventStoreTest {
     }
 
 
+    @Nested
+    @DisplayName("lazy cloud events")
+    class LazyCloudEventsTest {
+
+        @BeforeEach
+        void create_event_store_with_lazy_cloud_events() {
+            eventStore = newMongoEventStore(new EventStoreConfig.Builder().timeRepresentation(TimeRepresentation.DATE).lazyCloudEvents(true).build());
+        }
+
+        @Test
+        void read_and_query_return_the_same_events_as_when_lazy_cloud_events_are_disabled() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            persist("name", Stream.of(event1, event2));
+
+            // When
+            EventStream<CloudEvent> eventStream = eventStore.read("name");
+
+            // Then
+            assertAll(
+                    () -> assertThat(eventStream.version()).isEqualTo(2),
+                    () -> assertThat(deserialize(eventStream.events())).containsExactly(event1, event2),
+                    () -> assertThat(deserialize(eventStore.query(Filter.type(NameWasChanged.class.getSimpleName())))).containsExactly(event2)
+            );
+        }
+
+        @Test
+        void json_data_is_deserialized_straight_from_bson_by_the_jackson_cloud_event_converter_when_raw_bson_data_is_enabled() {
+            // Given
+            eventStore = newMongoEventStore(new EventStoreConfig.Builder().timeRepresentation(TimeRepresentation.DATE).lazyCloudEvents(true).rawBsonData(true).build());
+            JacksonCloudEventConverter<DomainEvent> cloudEventConverter = new JacksonCloudEventConverter.Builder<DomainEvent>(objectMapper, URI.create("http://name")).bsonData(true).build();
+            DomainEvent domainEvent = new NameDefined(UUID.randomUUID().toString(), LocalDateTime.now(), "John Doe");
+            eventStore.write("name", Stream.of(cloudEventConverter.toCloudEvent(domainEvent)));
+
+            // When
+            CloudEvent cloudEvent = eventStore.read("name").events().findFirst().orElseThrow(IllegalStateException::new);
+
+            // Then
+            assertAll(
+                    () -> assertThat(((PojoCloudEventData<?>) cloudEvent.getData()).getValue()).isInstanceOf(BsonDocument.class),
+                    () -> assertThat(cloudEventConverter.toDomainEvent(cloudEvent)).isEqualTo(domainEvent)
+            );
+        }
+
+        @Test
+        void raw_bson_data_cannot_be_enabled_without_lazy_cloud_events() {
+            // When
+            Throwable throwable = catchThrowable(() -> new EventStoreConfig.Builder().timeRepresentation(TimeRepresentation.DATE).rawBsonData(true).build());
+
+            // Then
+            assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("single round-trip reads")
+    class SingleRoundTripReadsTest {
+
+        @BeforeEach
+        void create_event_store_with_single_round_trip_reads() {
+            eventStore = newMongoEventStore(new EventStoreConfig.Builder().timeRepresentation(TimeRepresentation.DATE).singleRoundTripReads(true).build());
+        }
+
+        @Test
+        void read_returns_all_events_and_the_version_of_the_stream() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            persist("name", Stream.of(event1, event2));
+
+            // When
+            EventStream<CloudEvent> eventStream = eventStore.read("name");
+
+            // Then
+            assertAll(
+                    () -> assertThat(eventStream.version()).isEqualTo(2),
+                    () -> assertThat(deserialize(eventStream.events())).containsExactly(event1, event2)
+            );
+        }
+
+        @Test
+        void read_with_skip_and_limit_returns_the_version_of_the_entire_stream() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Doe");
+            persist("name", Stream.of(event1, event2, event3));
+
+            // When
+            EventStream<CloudEvent> eventStream = eventStore.read("name", 1, 1);
+
+            // Then
+            assertAll(
+                    () -> assertThat(eventStream.version()).isEqualTo(3),
+                    () -> assertThat(deserialize(eventStream.events())).containsExactly(event2)
+            );
+        }
+
+        @Test
+        void read_version_range_returns_the_events_in_the_range_and_the_version_of_the_entire_stream() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Doe");
+            persist("name", Stream.of(event1, event2, event3));
+
+            // When
+            EventStream<CloudEvent> eventStream = eventStore.readVersionRange("name", 1, 2);
+
+            // Then
+            assertAll(
+                    () -> assertThat(eventStream.version()).isEqualTo(3),
+                    () -> assertThat(deserialize(eventStream.events())).containsExactly(event2)
+            );
+        }
+
+        @Test
+        void read_returns_version_zero_when_stream_does_not_exist() {
+            // When
+            EventStream<CloudEvent> eventStream = eventStore.read("name", 0, 10);
+
+            // Then
+            assertAll(
+                    () -> assertThat(eventStream.version()).isZero(),
+                    () -> assertThat(eventStream.events()).isEmpty()
+            );
+        }
+    }
+
+    @Nested
+    @DisplayName("data compression")
+    class DataCompressionTest {
+
+        @BeforeEach
+        void create_event_store_with_data_compression() {
+            eventStore = newMongoEventStore(new EventStoreConfig.Builder().timeRepresentation(TimeRepresentation.DATE)
+                    .dataCompression(CloudEventDataCompression.compress(CompressionAlgorithm.GZIP, 0, NameDefined.class.getSimpleName())).build());
+        }
+
+        @Test
+        void compresses_data_of_configured_cloud_event_types_and_decompresses_it_when_read() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+
+            // When
+            persist("name", Stream.of(event1, event2));
+
+            // Then
+            String databaseName = new ConnectionString(mongoDBContainer.getReplicaSetUrl()).getDatabase();
+            MongoCollection<Document> events = mongoClient.getDatabase(Objects.requireNonNull(databaseName)).getCollection("events");
+            assertAll(
+                    () -> assertThat(events.find(Filters.eq("type", NameDefined.class.getSimpleName())).first()).containsEntry(CloudEventDataCompression.DATA_COMPRESSION, "gzip"),
+                    () -> assertThat(events.find(Filters.eq("type", NameWasChanged.class.getSimpleName())).first()).doesNotContainKey(CloudEventDataCompression.DATA_COMPRESSION),
+                    () -> assertThat(deserialize(eventStore.read("name").events())).containsExactly(event1, event2)
+            );
+        }
+    }
+
+    @Nested
+    @DisplayName("transactionless append")
+    class TransactionlessAppendTest {
+
+        @BeforeEach
+        void create_event_store_with_transactionless_append() {
+            eventStore = newMongoEventStore(new EventStoreConfig.Builder().timeRepresentation(TimeRepresentation.RFC_3339_STRING).transactionlessAppend(true).build());
+        }
+
+        @Test
+        void appends_event_when_stream_version_is_equal_to_expected_version() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            persist("name", WriteCondition.streamVersionEq(0), event1);
+
+            // When
+            persist("name", WriteCondition.streamVersionEq(1), event2);
+
+            // Then
+            EventStream<CloudEvent> eventStream = eventStore.read("name");
+            assertAll(
+                    () -> assertThat(eventStream.version()).isEqualTo(2),
+                    () -> assertThat(deserialize(eventStream.events())).containsExactly(event1, event2)
+            );
+        }
+
+        @Test
+        void throws_write_condition_not_fulfilled_when_another_event_has_already_been_written_with_the_next_version() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Doe");
+            persist("name", WriteCondition.streamVersionEq(0), event1);
+            persist("name", WriteCondition.streamVersionEq(1), event2);
+
+            // When
+            Throwable throwable = catchThrowable(() -> persist("name", WriteCondition.streamVersionEq(1), event3));
+
+            // Then
+            assertThat(throwable).isExactlyInstanceOf(WriteConditionNotFulfilledException.class)
+                    .hasMessage("WriteCondition was not fulfilled. Expected version to be equal to 1 but was 2.");
+        }
+
+        @Test
+        void throws_write_condition_not_fulfilled_when_expected_version_is_greater_than_current_version() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            persist("name", WriteCondition.streamVersionEq(0), event1);
+
+            // When
+            Throwable throwable = catchThrowable(() -> persist("name", WriteCondition.streamVersionEq(5), event2));
+
+            // Then
+            assertThat(throwable).isExactlyInstanceOf(WriteConditionNotFulfilledException.class)
+                    .hasMessage("WriteCondition was not fulfilled. Expected version to be equal to 5 but was 1.");
+        }
+    }
+
+    @Nested
+    @DisplayName("stream heads")
+    class StreamHeadsTest {
+
+        @BeforeEach
+        void create_event_store_with_stream_heads() {
+            eventStore = newMongoEventStore(new EventStoreConfig.Builder().timeRepresentation(TimeRepresentation.RFC_3339_STRING).streamHeadsCollectionName("streamheads").build());
+        }
+
+        @Test
+        void stream_head_is_updated_when_events_are_written() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Doe");
+            persist("name", WriteCondition.streamVersionEq(0), Arrays.asList(event1, event2));
+
+            // When
+            persist("name", WriteCondition.streamVersionEq(2), event3);
+
+            // Then
+            Document streamHead = streamHeadsCollection().find(Filters.eq("_id", "name")).first();
+            EventStream<CloudEvent> eventStream = eventStore.read("name");
+            assertAll(
+                    () -> assertThat(streamHead).isNotNull(),
+                    () -> assertThat(streamHead.getLong("version")).isEqualTo(3),
+                    () -> assertThat(streamHead.getInteger("eventCount")).isEqualTo(3),
+                    () -> assertThat(eventStream.version()).isEqualTo(3),
+                    () -> assertThat(deserialize(eventStream.events())).containsExactly(event1, event2, event3)
+            );
+        }
+
+        @Test
+        void write_condition_is_evaluated_against_the_stream_head() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            persist("name", WriteCondition.streamVersionEq(0), event1);
+
+            // When
+            Throwable throwable = catchThrowable(() -> persist("name", WriteCondition.streamVersionEq(0), event2));
+
+            // Then
+            assertThat(throwable).isExactlyInstanceOf(WriteConditionNotFulfilledException.class)
+                    .hasMessage("WriteCondition was not fulfilled. Expected version to be equal to 0 but was 1.");
+        }
+
+        @Test
+        void exists_and_stream_versions_are_found_from_stream_heads() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            persist("name1", new NameDefined(UUID.randomUUID().toString(), now, "John Doe"));
+            persist("name2", Arrays.asList(new NameDefined(UUID.randomUUID().toString(), now, "Jane Doe"), new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe")));
+
+            // When
+            Map<String, Long> streamVersions = eventStore.streamVersions(Arrays.asList("name1", "name2", "name3"));
+
+            // Then
+            assertAll(
+                    () -> assertThat(streamVersions).containsExactly(entry("name1", 1L), entry("name2", 2L), entry("name3", 0L)),
+                    () -> assertThat(eventStore.exists("name1")).isTrue(),
+                    () -> assertThat(eventStore.exists("name3")).isFalse()
+            );
+        }
+
+        @Test
+        void stream_head_is_removed_when_event_stream_is_deleted() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            persist("name", new NameDefined(UUID.randomUUID().toString(), now, "John Doe"));
+
+            // When
+            eventStore.deleteEventStream("name");
+
+            // Then
+            assertAll(
+                    () -> assertThat(streamHeadsCollection().countDocuments()).isZero(),
+                    () -> assertThat(eventStore.exists("name")).isFalse()
+            );
+        }
+
+        @Test
+        void stream_head_is_recalculated_when_event_is_deleted() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            persist("name", Arrays.asList(event1, event2));
+
+            // When
+            eventStore.deleteEvent(event2.getEventId(), NAME_SOURCE);
+
+            // Then
+            Document streamHead = streamHeadsCollection().find(Filters.eq("_id", "name")).first();
+            assertAll(
+                    () -> assertThat(streamHead).isNotNull(),
+                    () -> assertThat(streamHead.getLong("version")).isEqualTo(1),
+                    () -> assertThat(streamHead.getInteger("eventCount")).isEqualTo(1),
+                    () -> assertThat(eventStore.read("name").version()).isEqualTo(1)
+            );
+        }
+
+        @Test
+        void stream_heads_are_created_from_existing_events_when_stream_heads_collection_is_enabled() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            eventStore = newMongoEventStore(TimeRepresentation.RFC_3339_STRING);
+            mongoClient.getDatabase(databaseName()).getCollection("streamheads").drop();
+            persist("name1", new NameDefined(UUID.randomUUID().toString(), now, "John Doe"));
+            persist("name2", Arrays.asList(new NameDefined(UUID.randomUUID().toString(), now, "Jane Doe"), new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe")));
+
+            // When
+            eventStore = newMongoEventStore(new EventStoreConfig.Builder().timeRepresentation(TimeRepresentation.RFC_3339_STRING).streamHeadsCollectionName("streamheads").build());
+
+            // Then
+            assertAll(
+                    () -> assertThat(streamHeadsCollection().countDocuments()).isEqualTo(2),
+                    () -> assertThat(eventStore.streamVersions(Arrays.asList("name1", "name2"))).containsExactly(entry("name1", 1L), entry("name2", 2L))
+            );
+        }
+
+        @Test
+        void stream_heads_are_updated_from_events_written_while_stream_heads_collection_was_disabled_when_it_is_enabled_again() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            EventStoreConfig withStreamHeads = new EventStoreConfig.Builder().timeRepresentation(TimeRepresentation.RFC_3339_STRING).streamHeadsCollectionName("streamheads").build();
+            eventStore = newMongoEventStore(withStreamHeads);
+            persist("name", new NameDefined(UUID.randomUUID().toString(), now, "John Doe"));
+            eventStore = newMongoEventStore(TimeRepresentation.RFC_3339_STRING);
+            persist("name", new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Doe"));
+
+            // When
+            eventStore = newMongoEventStore(withStreamHeads);
+            persist("name", new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe"));
+
+            // Then
+            Document streamHead = streamHeadsCollection().find(Filters.eq("_id", "name")).first();
+            assertAll(
+                    () -> assertThat(streamHead.getLong("version")).isEqualTo(3L),
+                    () -> assertThat(eventStore.read("name").version()).isEqualTo(3L)
+            );
+        }
+
+        @Test
+        void stream_heads_cannot_be_combined_with_transactionless_append() {
+            // When
+            Throwable throwable = catchThrowable(() -> new EventStoreConfig.Builder().timeRepresentation(TimeRepresentation.RFC_3339_STRING).streamHeadsCollectionName("streamheads").transactionlessAppend(true).build());
+
+            // Then
+            assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class);
+        }
+
+        private MongoCollection<Document> streamHeadsCollection() {
+            return mongoClient.getDatabase(databaseName()).getCollection("streamheads");
+        }
+
+        private String databaseName() {
+            return Objects.requireNonNull(new ConnectionString(mongoDBContainer.getReplicaSetUrl()).getDatabase());
+        }
+    }
+
+    @Nested
+    @DisplayName("event counters")
+    class EventCountersTest {
+
+        @BeforeEach
+        void create_event_store_with_event_counters() {
+            eventStore = newMongoEventStore(new EventStoreConfig.Builder().timeRepresentation(TimeRepresentation.RFC_3339_STRING).eventCountersCollectionName("eventcounters").eventCounterAttributes("type", "source", "streamid").build());
+        }
+
+        @Test
+        void counters_are_incremented_when_events_are_written() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            persist("name1", Arrays.asList(new NameDefined(UUID.randomUUID().toString(), now, "John Doe"), new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe")));
+
+            // When
+            eventStore.writeAll(Collections.singletonMap("name2", EventStreamWrite.unconditionally(convertDomainEventToCloudEvent().apply(new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Doe")))));
+
+            // Then
+            assertAll(
+                    () -> assertThat(counter("type:" + NameWasChanged.class.getSimpleName())).isEqualTo(2),
+                    () -> assertThat(counter("source:" + NAME_SOURCE)).isEqualTo(3),
+                    () -> assertThat(counter("streamid:name1")).isEqualTo(2),
+                    () -> assertThat(eventStore.count(Filter.type(NameWasChanged.class.getSimpleName()))).isEqualTo(2),
+                    () -> assertThat(eventStore.count(Filter.type(NameWasChanged.class.getSimpleName()).or(Filter.type(NameDefined.class.getSimpleName())))).isEqualTo(3),
+                    () -> assertThat(eventStore.count(Filter.streamId("name2"))).isEqualTo(1),
+                    () -> assertThat(eventStore.exists(Filter.source(NAME_SOURCE))).isTrue(),
+                    () -> assertThat(eventStore.exists(Filter.streamId("name3"))).isFalse()
+            );
+        }
+
+        @Test
+        void counters_are_decremented_when_events_are_deleted() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Doe");
+            persist("name1", Arrays.asList(event1, event2));
+            persist("name2", event3);
+
+            // When
+            eventStore.deleteEvent(event1.getEventId(), NAME_SOURCE);
+            eventStore.delete(Filter.id(event2.getEventId()));
+            eventStore.deleteEventStream("name2");
+
+            // Then
+            assertAll(
+                    () -> assertThat(eventCountersCollection().countDocuments(Filters.exists("count"))).isZero(),
+                    () -> assertThat(eventStore.count(Filter.type(NameWasChanged.class.getSimpleName()))).isZero()
+            );
+        }
+
+        @Test
+        void counters_are_updated_when_the_type_of_an_event_is_updated() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            persist("name", event);
+
+            // When
+            eventStore.updateEvent(event.getEventId(), NAME_SOURCE, cloudEvent -> CloudEventBuilder.v1(cloudEvent).withType("updated").build());
+
+            // Then
+            assertAll(
+                    () -> assertThat(eventStore.count(Filter.type("updated"))).isEqualTo(1),
+                    () -> assertThat(eventStore.count(Filter.type(NameDefined.class.getSimpleName()))).isZero(),
+                    () -> assertThat(eventStore.count(Filter.streamId("name"))).isEqualTo(1)
+            );
+        }
+
+        @Test
+        void counters_are_created_from_existing_events_when_event_counters_collection_is_enabled() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            eventStore = newMongoEventStore(TimeRepresentation.RFC_3339_STRING);
+            eventCountersCollection().drop();
+            persist("name", Arrays.asList(new NameDefined(UUID.randomUUID().toString(), now, "John Doe"), new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe")));
+
+            // When
+            eventStore = newMongoEventStore(new EventStoreConfig.Builder().timeRepresentation(TimeRepresentation.RFC_3339_STRING).eventCountersCollectionName("eventcounters").eventCounterAttributes("type", "source", "streamid").build());
+
+            // Then
+            assertAll(
+                    () -> assertThat(eventCountersCollection().countDocuments(Filters.exists("count"))).isEqualTo(4),
+                    () -> assertThat(eventStore.count(Filter.type(NameDefined.class.getSimpleName()))).isEqualTo(1),
+                    () -> assertThat(eventStore.count(Filter.streamId("name"))).isEqualTo(2)
+            );
+        }
+
+        @Test
+        void counters_are_not_used_until_they_have_been_created_from_the_existing_events() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            persist("name", Arrays.asList(new NameDefined(UUID.randomUUID().toString(), now, "John Doe"), new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe")));
+            // Simulate that another event store is still creating the counters from the existing events
+            eventCountersCollection().updateOne(Filters.eq("_id", "occurrent:backfill"), Updates.set("completed", false));
+            eventCountersCollection().updateOne(Filters.eq("_id", "streamid:name"), Updates.set("count", 1L));
+
+            // When
+            eventStore = newMongoEventStore(new EventStoreConfig.Builder().timeRepresentation(TimeRepresentation.RFC_3339_STRING).eventCountersCollectionName("eventcounters").eventCounterAttributes("type", "source", "streamid").build());
+
+            // Then
+            assertAll(
+                    () -> assertThat(eventStore.count(Filter.streamId("name"))).isEqualTo(2),
+                    () -> assertThat(eventStore.exists(Filter.type(NameWasChanged.class.getSimpleName()))).isTrue()
+            );
+        }
+
+        @Test
+        void filters_that_cannot_be_served_from_the_counters_are_counted_in_the_event_collection() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            persist("name", Arrays.asList(new NameDefined(UUID.randomUUID().toString(), now, "John Doe"), new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe")));
+
+            // When
+            long count = eventStore.count(Filter.type(NameDefined.class.getSimpleName()).and(Filter.streamId("name")));
+
+            // Then
+            assertThat(count).isEqualTo(1);
+        }
+
+        @Test
+        void event_counters_cannot_be_combined_with_transactionless_append() {
+            // When
+            Throwable throwable = catchThrowable(() -> new EventStoreConfig.Builder().timeRepresentation(TimeRepresentation.RFC_3339_STRING).eventCountersCollectionName("eventcounters").transactionlessAppend(true).build());
+
+            // Then
+            assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class);
+        }
+
+        private long counter(String counterId) {
+            Document counter = eventCountersCollection().find(Filters.eq("_id", counterId)).first();
+            return counter == null ? 0 : counter.getLong("count");
+        }
+
+        private MongoCollection<Document> eventCountersCollection() {
+            return mongoClient.getDatabase(Objects.requireNonNull(new ConnectionString(mongoDBContainer.getReplicaSetUrl()).getDatabase())).getCollection("eventcounters");
+        }
+    }
+
+    @Nested
+    @DisplayName("group commit")
+    class GroupCommitTest {
+
+        private ExecutorService executorService;
+
+        @BeforeEach
+        void create_event_store_with_group_commit() {
+            eventStore = newMongoEventStore(new EventStoreConfig.Builder().timeRepresentation(TimeRepresentation.RFC_3339_STRING).groupCommit(10, Duration.ofMillis(200)).build());
+            executorService = Executors.newCachedThreadPool();
+        }
+
+        @AfterEach
+        void shutdown_executor_service() {
+            executorService.shutdownNow();
+        }
+
+        @Test
+        void concurrent_writes_to_different_streams_are_all_written() throws Exception {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            persist("name1", new NameDefined(UUID.randomUUID().toString(), now, "John Doe"));
+
+            // When
+            Future<WriteResult> writeResult1 = executorService.submit(() -> eventStore.write("name1", streamVersionEq(1), Stream.of(new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe")).map(convertDomainEventToCloudEvent())));
+            Future<WriteResult> writeResult2 = executorService.submit(() -> eventStore.write("name2", streamVersionEq(0), Stream.of(new NameDefined(UUID.randomUUID().toString(), now, "Jane Doe")).map(convertDomainEventToCloudEvent())));
+            Future<WriteResult> writeResult3 = executorService.submit(() -> eventStore.write("name3", streamVersionEq(0), Stream.of(new NameDefined(UUID.randomUUID().toString(), now, "Jake Doe")).map(convertDomainEventToCloudEvent())));
+
+            // Then
+            assertAll(
+                    () -> assertThat(writeResult1.get()).isEqualTo(new WriteResult("name1", 2)),
+                    () -> assertThat(writeResult2.get()).isEqualTo(new WriteResult("name2", 1)),
+                    () -> assertThat(writeResult3.get()).isEqualTo(new WriteResult("name3", 1)),
+                    () -> assertThat(eventStore.count()).isEqualTo(4)
+            );
+        }
+
+        @Test
+        void write_condition_that_is_not_fulfilled_only_fails_the_write_to_that_stream() throws Exception {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            persist("name1", new NameDefined(UUID.randomUUID().toString(), now, "John Doe"));
+
+            // When
+            Future<WriteResult> writeResult1 = executorService.submit(() -> eventStore.write("name1", streamVersionEq(0), Stream.of(new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe")).map(convertDomainEventToCloudEvent())));
+            Future<WriteResult> writeResult2 = executorService.submit(() -> eventStore.write("name2", streamVersionEq(0), Stream.of(new NameDefined(UUID.randomUUID().toString(), now, "Jane Doe")).map(convertDomainEventToCloudEvent())));
+
+            // Then
+            Throwable throwable = catchThrowable(writeResult1::get);
+            assertAll(
+                    () -> assertThat(throwable).hasCauseExactlyInstanceOf(WriteConditionNotFulfilledException.class),
+                    () -> assertThat(writeResult2.get()).isEqualTo(new WriteResult("name2", 1)),
+                    () -> assertThat(eventStore.read("name1").version()).isEqualTo(1)
+            );
+        }
+    }
+
+    @Nested
+    @DisplayName("write all")
+    class WriteAllTest {
+
+        @Test
+        void writes_events_to_all_streams_and_returns_one_write_result_per_stream() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+            NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(1), "name2");
+            NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.plusHours(2), "name3");
+            persist("name1", nameDefined1);
+
+            Map<String, EventStreamWrite> writes = new LinkedHashMap<>();
+            writes.put("name1", EventStreamWrite.of(1, convertDomainEventToCloudEvent().apply(nameWasChanged1)));
+            writes.put("name2", EventStreamWrite.of(0, convertDomainEventToCloudEvent().apply(nameDefined2)));
+
+            // When
+            List<WriteResult> writeResults = eventStore.writeAll(writes);
+
+            // Then
+            assertAll(
+                    () -> assertThat(writeResults).containsExactly(new WriteResult("name1", 2), new WriteResult("name2", 1)),
+                    () -> assertThat(deserialize(eventStore.read("name1").events())).containsExactly(nameDefined1, nameWasChanged1),
+                    () -> assertThat(deserialize(eventStore.read("name2").events())).containsExactly(nameDefined2)
+            );
+        }
+
+        @Test
+        void writes_no_events_to_any_stream_when_write_condition_of_one_stream_is_not_fulfilled() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+            NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(1), "name2");
+            NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.plusHours(2), "name3");
+            persist("name1", nameDefined1);
+
+            Map<String, EventStreamWrite> writes = new LinkedHashMap<>();
+            writes.put("name2", EventStreamWrite.of(0, convertDomainEventToCloudEvent().apply(nameDefined2)));
+            writes.put("name1", EventStreamWrite.of(0, convertDomainEventToCloudEvent().apply(nameWasChanged1)));
+
+            // When
+            Throwable throwable = catchThrowable(() -> eventStore.writeAll(writes));
+
+            // Then
+            assertAll(
+                    () -> assertThat(throwable).isExactlyInstanceOf(WriteConditionNotFulfilledException.class).hasMessage("WriteCondition was not fulfilled. Expected version to be equal to 0 but was 1."),
+                    () -> assertThat(eventStore.exists("name2")).isFalse(),
+                    () -> assertThat(eventStore.read("name1").version()).isEqualTo(1)
+            );
+        }
+
+        @Test
+        void returns_current_stream_version_for_streams_without_events_to_write() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            persist("name1", new NameDefined(UUID.randomUUID().toString(), now, "name1"));
+
+            Map<String, EventStreamWrite> writes = new LinkedHashMap<>();
+            writes.put("name1", EventStreamWrite.unconditionally(Stream.empty()));
+            writes.put("name2", EventStreamWrite.unconditionally(Stream.empty()));
+
+            // When
+            List<WriteResult> writeResults = eventStore.writeAll(writes);
+
+            // Then
+            assertThat(writeResults).containsExactly(new WriteResult("name1", 1), new WriteResult("name2", 0));
+        }
+    }
+
     @SuppressWarnings("ConstantConditions")
     @Nested
     @DisplayName("deletion")
@@ -1550,6 +2275,29 @@ class MongoEventStoreTest {
                     assertThat(deserialize(events)).containsExactly(nameWasChanged2, nameDefined, nameWasChanged1);
                 }
 
+                @Test
+                void query_with_continuation_token_returns_all_events_page_by_page() {
+                    // Given
+                    LocalDateTime now = LocalDateTime.now();
+                    NameDefined nameDefined = new NameDefined(UUID.randomUUID().toString(), now, "name");
+                    NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now, "name2");
+                    NameWasChanged nameWasChanged2 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(1), "name3");
+                    persist("name1", nameDefined);
+                    persist("name3", nameWasChanged1);
+                    persist("name2", nameWasChanged2);
+
+                    // When
+                    EventPage page1 = eventStore.query(Filter.all(), 2, SortBy.time(DESCENDING), null);
+                    EventPage page2 = eventStore.query(Filter.all(), 2, SortBy.time(DESCENDING), page1.getNextContinuationToken().get());
+
+                    // Then
+                    assertAll(
+                            () -> assertThat(deserialize(page1.getEvents().stream())).containsExactly(nameWasChanged2, nameWasChanged1),
+                            () -> assertThat(deserialize(page2.getEvents().stream())).containsExactly(nameDefined),
+                            () -> assertThat(page2.hasNext()).isFalse()
+                    );
+                }
+
             }
 
             @Nested
@@ -16,13 +16,19 @@
 
 package org.occurrent.eventstore.mongodb.spring.blocking;
 
+import com.mongodb.ErrorCategory;
 import com.mongodb.MongoException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.WriteModel;
 import io.cloudevents.CloudEvent;
 import io.cloudevents.core.v1.CloudEventV1;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
 import org.occurrent.cloudevents.OccurrentCloudEventExtension;
 import org.occurrent.cloudevents.OccurrentExtensionGetter;
 import org.occurrent.condition.Condition;
@@ -32,36 +38,60 @@ import org.occurrent.eventstore.api.blocking.EventStore;
 import org.occurrent.eventstore.api.blocking.EventStoreOperations;
 import org.occurrent.eventstore.api.blocking.EventStoreQueries;
 import org.occurrent.eventstore.api.blocking.EventStream;
+import org.occurrent.eventstore.api.blocking.EventStreamWrite;
+import org.occurrent.eventstore.mongodb.cloudevent.CloudEventDataCompression;
+import org.occurrent.eventstore.mongodb.internal.EventCounters;
+import org.occurrent.eventstore.mongodb.internal.ExpectedStreamVersion;
+import org.occurrent.eventstore.mongodb.internal.GroupCommitWriteCoalescer;
 import org.occurrent.eventstore.mongodb.internal.MongoExceptionTranslator.WriteContext;
+import org.occurrent.eventstore.mongodb.internal.OccurrentCloudEventMongoDocumentMapper;
+import org.occurrent.eventstore.mongodb.internal.SingleRoundTripStreamRead;
+import org.occurrent.eventstore.mongodb.internal.StreamHeads;
 import org.occurrent.filter.Filter;
+import org.occurrent.functionalsupport.internal.FunctionalSupport.Pair;
 import org.occurrent.mongodb.spring.filterqueryconversion.internal.FilterConverter;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Collation;
 import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Meta;
+import org.springframework.data.mongodb.core.query.Meta.CursorOption;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.data.util.StreamUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import java.net.URI;
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.util.Objects.requireNonNull;
 import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
 import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_VERSION;
 import static org.occurrent.eventstore.api.SortBy.SortDirection.ASCENDING;
+import static org.occurrent.eventstore.api.internal.VersionRange.requireValidVersionRange;
+import static org.occurrent.eventstore.mongodb.internal.MongoExceptionTranslator.indexOfFailingWrite;
 import static org.occurrent.eventstore.mongodb.internal.MongoExceptionTranslator.translateException;
 import static org.occurrent.eventstore.mongodb.internal.OccurrentCloudEventMongoDocumentMapper.convertToCloudEvent;
 import static org.occurrent.eventstore.mongodb.internal.OccurrentCloudEventMongoDocumentMapper.convertToDocument;
 import static org.occurrent.functionalsupport.internal.FunctionalSupport.mapWithIndex;
 import static org.occurrent.mongodb.spring.sortconversion.internal.SortConverter.convertToSpringSort;
+import static org.springframework.data.domain.Sort.Direction.ASC;
 import static org.springframework.data.domain.Sort.Direction.DESC;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
 import static org.springframework.data.mongodb.SessionSynchronization.ALWAYS;
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 
@@ -76,9 +106,20 @@ public class SpringMongoEventStore implements EventStore, EventStoreOperations,
     private final MongoTemplate mongoTemplate;
     private final String eventStoreCollectionName;
     private final TimeRepresentation timeRepresentation;
+    private final CloudEventDataCompression dataCompression;
     private final TransactionTemplate transactionTemplate;
     private final Function<Query, Query> queryOptions;
     private final Function<Query, Query> readOptions;
+    private final boolean transactionlessAppend;
+    private final String streamHeadsCollectionName;
+    private final String eventCountersCollectionName;
+    private final EventCounters eventCounters;
+    private volatile boolean eventCountersPopulated;
+    private final GroupCommitWriteCoalescer groupCommitWriteCoalescer;
+    private final boolean lazyCloudEvents;
+    private final boolean rawBsonData;
+    private final boolean singleRoundTripReads;
+    private final boolean singleRoundTripPartialReads;
 
     /**
      * Create a new instance of {@code SpringBlockingMongoEventStore}
@@ -93,15 +134,30 @@ public class SpringMongoEventStore implements EventStore, EventStoreOperations,
         this.eventStoreCollectionName = config.eventStoreCollectionName;
         this.transactionTemplate = config.transactionTemplate;
         this.timeRepresentation = config.timeRepresentation;
+        this.dataCompression = config.dataCompression;
         this.queryOptions = config.queryOptions;
         this.readOptions = config.readOptions;
-        initializeEventStore(eventStoreCollectionName, mongoTemplate);
+        this.transactionlessAppend = config.transactionlessAppend;
+        this.streamHeadsCollectionName = config.streamHeadsCollectionName;
+        this.eventCountersCollectionName = config.eventCountersCollectionName;
+        this.eventCounters = new EventCounters(config.eventCounterAttributes);
+        this.lazyCloudEvents = config.lazyCloudEvents;
+        this.rawBsonData = config.rawBsonData;
+        this.singleRoundTripReads = config.singleRoundTripReads;
+        this.singleRoundTripPartialReads = config.singleRoundTripReads && !config.lazyCloudEvents && !config.hasCustomQueryOrReadOptions();
+        this.groupCommitWriteCoalescer = config.groupCommitMaxBatchSize == 0 ? null : new GroupCommitWriteCoalescer(config.groupCommitMaxBatchSize, config.groupCommitMaxWait, this::writeAllInTransaction);
+        initializeEventStore(eventStoreCollectionName, streamHeadsCollectionName, eventCountersCollectionName, eventCounters, mongoTemplate, transactionTemplate);
     }
 
     @Override
     public EventStream<CloudEvent> read(String streamId, int skip, int limit) {
-        final EventStream<Document> eventStream = readEventStream(streamId, skip, limit);
-        return requireNonNull(eventStream).map(document -> convertToCloudEvent(timeRepresentation, document));
+        return readEventStream(streamId, 0, Long.MAX_VALUE, skip, limit);
+    }
+
+    @Override
+    public EventStream<CloudEvent> readVersionRange(String streamId, long fromVersionExclusive, long toVersionInclusive) {
+        requireValidVersionRange(streamId, fromVersionExclusive, toVersionInclusive);
+        return readEventStream(streamId, fromVersionExclusive, toVersionInclusive, 0, Integer.MAX_VALUE);
     }
 
     @SuppressWarnings("ConstantConditions")
@@ -111,6 +167,23 @@ public class SpringMongoEventStore implements EventStore, EventStoreOperations,
             throw new IllegalArgumentException(WriteCondition.class.getSimpleName() + " cannot be null");
         }
 
+        final Stream<CloudEvent> eventsToWrite;
+        OptionalLong expectedStreamVersion = ExpectedStreamVersion.fromWriteCondition(writeCondition);
+        if (transactionlessAppend && expectedStreamVersion.isPresent()) {
+            List<CloudEvent> eventList = events.collect(Collectors.toList());
+            if (eventList.size() == 1 && streamHasVersion(streamId, expectedStreamVersion.getAsLong())) {
+                return appendWithoutTransaction(streamId, expectedStreamVersion.getAsLong(), writeCondition, eventList.get(0));
+            }
+            eventsToWrite = eventList.stream();
+        } else {
+            eventsToWrite = events;
+        }
+
+        // Writes made in a caller managed transaction must commit or roll back with that transaction, and not with the writes of other threads
+        if (groupCommitWriteCoalescer != null && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            return groupCommitWriteCoalescer.write(streamId, writeCondition, eventsToWrite.collect(Collectors.toList()));
+        }
+
         long newStreamVersion = transactionTemplate.execute(transactionStatus -> {
             long currentStreamVersion = currentStreamVersion(streamId);
 
@@ -118,10 +191,14 @@ public class SpringMongoEventStore implements EventStore, EventStoreOperations,
                 throw new WriteConditionNotFulfilledException(streamId, currentStreamVersion, writeCondition, String.format("%s was not fulfilled. Expected version %s but was %s.", WriteCondition.class.getSimpleName(), writeCondition, currentStreamVersion));
             }
 
-            List<Document> cloudEventDocuments = mapWithIndex(events, currentStreamVersion, pair -> convertToDocument(timeRepresentation, streamId, pair.t1, pair.t2)).collect(Collectors.toList());
+            List<Document> cloudEventDocuments = mapWithIndex(eventsToWrite, currentStreamVersion, pair -> convertToDocument(timeRepresentation, dataCompression, streamId, pair.t1, pair.t2)).collect(Collectors.toList());
 
             if (!cloudEventDocuments.isEmpty()) {
                 insertAll(streamId, currentStreamVersion, writeCondition, cloudEventDocuments);
+                if (streamHeadsCollectionName != null) {
+                    mongoTemplate.upsert(streamHeadIdEqualTo(streamId), streamHeadUpdateAfterWrite(cloudEventDocuments), streamHeadsCollectionName);
+                }
+                updateEventCounters(eventCounters.incrementsAfterWrite(cloudEventDocuments));
                 return cloudEventDocuments.get(cloudEventDocuments.size() - 1).getLong(OccurrentCloudEventExtension.STREAM_VERSION);
             } else {
                 return currentStreamVersion;
@@ -130,21 +207,118 @@ public class SpringMongoEventStore implements EventStore, EventStoreOperations,
         return new WriteResult(streamId, newStreamVersion);
     }
 
+    // Relies on the unique (streamid, streamversion) index to detect concurrent writes instead of using a transaction
+    private WriteResult appendWithoutTransaction(String streamId, long expectedStreamVersion, WriteCondition writeCondition, CloudEvent event) {
+        long newStreamVersion = expectedStreamVersion + 1;
+        Document cloudEventDocument = convertToDocument(timeRepresentation, dataCompression, streamId, newStreamVersion, event);
+        insertAll(streamId, expectedStreamVersion, writeCondition, Collections.singletonList(cloudEventDocument));
+        return new WriteResult(streamId, newStreamVersion);
+    }
+
+    // The unique index prevents two writers from writing the same version, but it doesn't prevent gaps. We thus make sure
+    // that the expected version actually exists (using an index lookup) before appending the next version.
+    private boolean streamHasVersion(String streamId, long streamVersion) {
+        if (streamVersion == 0) {
+            return true;
+        }
+        return mongoTemplate.exists(Query.query(streamIdEqualToCriteria(streamId).and(STREAM_VERSION).is(streamVersion)), eventStoreCollectionName);
+    }
+
+    /**
+     * Write events to several event streams in a single transaction. The current version of all streams are fetched using a single
+     * aggregation and all events are inserted using a single insert. If the write condition of any stream is not fulfilled
+     * no events are written.
+     */
+    @Override
+    public List<WriteResult> writeAll(Map<String, EventStreamWrite> writes) {
+        requireNonNull(writes, "Writes cannot be null");
+        if (writes.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // Materialize the events before starting the transaction so that a retry of the transaction doesn't consume the streams twice
+        Map<String, Pair<WriteCondition, List<CloudEvent>>> eventsToWrite = new LinkedHashMap<>();
+        writes.forEach((streamId, write) -> {
+            requireNonNull(write, EventStreamWrite.class.getSimpleName() + " for stream " + streamId + " cannot be null");
+            eventsToWrite.put(streamId, new Pair<>(write.writeCondition, write.events.collect(Collectors.toList())));
+        });
+        return writeAllInTransaction(eventsToWrite);
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    private List<WriteResult> writeAllInTransaction(Map<String, Pair<WriteCondition, List<CloudEvent>>> eventsToWrite) {
+        return transactionTemplate.execute(transactionStatus -> {
+            Map<String, Long> currentStreamVersions = currentStreamVersions(eventsToWrite.keySet());
+
+            List<Document> cloudEventDocuments = new ArrayList<>();
+            List<org.springframework.data.util.Pair<Query, Update>> streamHeadUpdates = new ArrayList<>();
+            List<WriteResult> writeResults = new ArrayList<>(eventsToWrite.size());
+            for (Entry<String, Pair<WriteCondition, List<CloudEvent>>> entry : eventsToWrite.entrySet()) {
+                String streamId = entry.getKey();
+                WriteCondition writeCondition = entry.getValue().t1;
+                long currentStreamVersion = currentStreamVersions.getOrDefault(streamId, 0L);
+                if (!isFulfilled(currentStreamVersion, writeCondition)) {
+                    throw new WriteConditionNotFulfilledException(streamId, currentStreamVersion, writeCondition, String.format("%s was not fulfilled. Expected version %s but was %s.", WriteCondition.class.getSimpleName(), writeCondition, currentStreamVersion));
+                }
+
+                List<Document> cloudEventDocumentsForStream = new ArrayList<>();
+                long streamVersion = currentStreamVersion;
+                for (CloudEvent event : entry.getValue().t2) {
+                    cloudEventDocumentsForStream.add(convertToDocument(timeRepresentation, dataCompression, streamId, ++streamVersion, event));
+                }
+                if (!cloudEventDocumentsForStream.isEmpty()) {
+                    cloudEventDocuments.addAll(cloudEventDocumentsForStream);
+                    streamHeadUpdates.add(org.springframework.data.util.Pair.of(streamHeadIdEqualTo(streamId), streamHeadUpdateAfterWrite(cloudEventDocumentsForStream)));
+                }
+                writeResults.add(new WriteResult(streamId, streamVersion));
+            }
+
+            if (!cloudEventDocuments.isEmpty()) {
+                // Report the stream of the event that actually failed, not just the first stream in the batch
+                insertAll(cloudEventDocuments, indexOfFailingWrite -> {
+                    String failingStreamId = cloudEventDocuments.get(indexOfFailingWrite < cloudEventDocuments.size() ? indexOfFailingWrite : 0).getString(STREAM_ID);
+                    return new WriteContext(failingStreamId, currentStreamVersions.getOrDefault(failingStreamId, 0L), eventsToWrite.get(failingStreamId).t1);
+                });
+                if (streamHeadsCollectionName != null) {
+                    mongoTemplate.bulkOps(BulkMode.ORDERED, streamHeadsCollectionName).upsert(streamHeadUpdates).execute();
+                }
+                updateEventCounters(eventCounters.incrementsAfterWrite(cloudEventDocuments));
+            }
+            return writeResults;
+        });
+    }
+
     @Override
     public WriteResult write(String streamId, Stream<CloudEvent> events) {
         return write(streamId, StreamVersionWriteCondition.any(), events);
     }
 
+    /**
+     * Find the current version of several event streams. If a stream heads collection is configured this is a single lookup
+     * in the stream heads collection, otherwise the versions are found using a single aggregation on the event collection.
+     */
+    @Override
+    public Map<String, Long> streamVersions(Collection<String> streamIds) {
+        requireNonNull(streamIds, "Stream ids cannot be null");
+        Map<String, Long> currentStreamVersions = streamIds.isEmpty() ? Collections.emptyMap() : currentStreamVersions(streamIds);
+        Map<String, Long> streamVersions = new LinkedHashMap<>();
+        streamIds.forEach(streamId -> streamVersions.put(streamId, currentStreamVersions.getOrDefault(streamId, 0L)));
+        return streamVersions;
+    }
+
     @Override
     public boolean exists(String streamId) {
+        if (streamHeadsCollectionName != null) {
+            return mongoTemplate.exists(streamHeadIdEqualTo(streamId), streamHeadsCollectionName);
+        }
         return mongoTemplate.exists(queryOptions.apply(streamIdEqualTo(streamId)), eventStoreCollectionName);
     }
 
     @Override
     public boolean exists(Filter filter) {
         requireNonNull(filter, "Filter cannot be null");
-        if (filter instanceof Filter.All) {
-            return count() > 0;
+        if (filter instanceof Filter.All || (eventCountersCollectionName != null && eventCounters.counterIdsOf(filter).isPresent() && eventCountersPopulated())) {
+            return count(filter) > 0;
         } else {
             final Query query = FilterConverter.convertFilterToQuery(timeRepresentation, filter);
             return mongoTemplate.exists(queryOptions.apply(query), eventStoreCollectionName);
@@ -155,9 +329,14 @@ public class SpringMongoEventStore implements EventStore, EventStoreOperations,
     public void deleteEventStream(String streamId) {
         requireNonNull(streamId, "Stream id cannot be null");
 
-        transactionTemplate.executeWithoutResult(
-                __ -> mongoTemplate.remove(Query.query(streamIdEqualToCriteria(streamId)), eventStoreCollectionName)
-        );
+        transactionTemplate.executeWithoutResult(__ -> {
+            Map<String, Long> eventCounterDecrements = countEventsToDelete(streamIdEqualToCriteria(streamId));
+            mongoTemplate.remove(Query.query(streamIdEqualToCriteria(streamId)), eventStoreCollectionName);
+            if (streamHeadsCollectionName != null) {
+                mongoTemplate.remove(streamHeadIdEqualTo(streamId), streamHeadsCollectionName);
+            }
+            updateEventCounters(eventCounterDecrements);
+        });
     }
 
     @Override
@@ -165,14 +344,82 @@ public class SpringMongoEventStore implements EventStore, EventStoreOperations,
         requireNonNull(cloudEventId, "Cloud event id cannot be null");
         requireNonNull(cloudEventSource, "Cloud event source cannot be null");
 
-        mongoTemplate.remove(cloudEventIdEqualTo(cloudEventId, cloudEventSource), eventStoreCollectionName);
+        if (streamHeadsCollectionName == null && eventCountersCollectionName == null) {
+            mongoTemplate.remove(cloudEventIdEqualTo(cloudEventId, cloudEventSource), eventStoreCollectionName);
+        } else {
+            transactionTemplate.executeWithoutResult(__ -> {
+                Document deletedDocument = mongoTemplate.findAndRemove(cloudEventIdEqualTo(cloudEventId, cloudEventSource), Document.class, eventStoreCollectionName);
+                if (deletedDocument != null) {
+                    recalculateStreamHeads(Collections.singletonList(deletedDocument.getString(STREAM_ID)));
+                    updateEventCounters(eventCounters.decrementsAfterDelete(deletedDocument));
+                }
+            });
+        }
     }
 
     @Override
     public void delete(Filter filter) {
         requireNonNull(filter, "Filter cannot be null");
         final Query query = FilterConverter.convertFilterToQuery(timeRepresentation, filter);
-        mongoTemplate.remove(query, eventStoreCollectionName);
+        if (streamHeadsCollectionName == null && eventCountersCollectionName == null) {
+            mongoTemplate.remove(query, eventStoreCollectionName);
+        } else {
+            transactionTemplate.executeWithoutResult(__ -> {
+                List<String> affectedStreamIds = streamHeadsCollectionName == null ? Collections.emptyList() : mongoTemplate.findDistinct(query, STREAM_ID, eventStoreCollectionName, String.class);
+                Map<String, Long> eventCounterDecrements = countEventsToDelete(FilterConverter.convertFilterToCriteria(null, timeRepresentation, filter));
+                mongoTemplate.remove(query, eventStoreCollectionName);
+                recalculateStreamHeads(affectedStreamIds);
+                updateEventCounters(eventCounterDecrements);
+            });
+        }
+    }
+
+    private Map<String, Long> countEventsToDelete(Criteria criteria) {
+        if (eventCountersCollectionName == null) {
+            return Collections.emptyMap();
+        }
+        List<AggregationOperation> operations = new ArrayList<>();
+        operations.add(match(criteria));
+        eventCounters.countPerCounter().forEach(stage -> operations.add(context -> stage));
+        return EventCounters.decrementsAfterDelete(mongoTemplate.aggregate(newAggregation(operations), eventStoreCollectionName, Document.class));
+    }
+
+    // The counters cannot be used until they have been populated from the events that were written before the event counters collection was enabled,
+    // which may be done by another event store that was started concurrently.
+    private boolean eventCountersPopulated() {
+        if (!eventCountersPopulated) {
+            eventCountersPopulated = EventCounters.isBackfillCompleted(mongoTemplate.execute(eventCountersCollectionName, collection -> collection.find(EventCounters.backfillMarkerQuery()).first()));
+        }
+        return eventCountersPopulated;
+    }
+
+    private void updateEventCounters(Map<String, Long> increments) {
+        if (eventCountersCollectionName == null) {
+            return;
+        }
+        List<WriteModel<Document>> updates = EventCounters.updates(increments);
+        if (!updates.isEmpty()) {
+            mongoTemplate.execute(eventCountersCollectionName, collection -> collection.bulkWrite(updates));
+        }
+    }
+
+    // Recalculates the stream heads from the events that remain in the event collection, stream heads of streams without events are removed
+    private void recalculateStreamHeads(List<String> streamIds) {
+        if (streamHeadsCollectionName == null || streamIds.isEmpty()) {
+            return;
+        }
+        Aggregation aggregation = newAggregation(
+                match(where(STREAM_ID).in(streamIds)),
+                sort(Sort.by(ASC, STREAM_ID, STREAM_VERSION)),
+                group(STREAM_ID).last(STREAM_VERSION).as(StreamHeads.VERSION).last(CloudEventV1.TIME).as(StreamHeads.LAST_EVENT_TIME).count().as(StreamHeads.EVENT_COUNT));
+        Set<String> streamIdsWithoutEvents = new HashSet<>(streamIds);
+        for (Document streamHead : mongoTemplate.aggregate(aggregation, eventStoreCollectionName, Document.class)) {
+            streamIdsWithoutEvents.remove(streamHead.getString(StreamHeads.ID));
+            mongoTemplate.save(streamHead, streamHeadsCollectionName);
+        }
+        if (!streamIdsWithoutEvents.isEmpty()) {
+            mongoTemplate.remove(Query.query(where(StreamHeads.ID).in(streamIdsWithoutEvents)), streamHeadsCollectionName);
+        }
     }
 
     @Override
@@ -191,9 +438,16 @@ public class SpringMongoEventStore implements EventStore, EventStoreOperations,
             } else if (!Objects.equals(updatedCloudEvent, currentCloudEvent)) {
                 String streamId = OccurrentExtensionGetter.getStreamId(currentCloudEvent);
                 long streamVersion = OccurrentExtensionGetter.getStreamVersion(currentCloudEvent);
-                Document updatedDocument = convertToDocument(timeRepresentation, streamId, streamVersion, updatedCloudEvent);
+                Document updatedDocument = convertToDocument(timeRepresentation, dataCompression, streamId, streamVersion, updatedCloudEvent);
                 updatedDocument.put(ID, document.get(ID)); // Insert the Mongo ObjectID
                 mongoTemplate.findAndReplace(cloudEventQuery, updatedDocument, eventStoreCollectionName);
+                if (streamHeadsCollectionName != null) {
+                    // The time of the last event in the stream is stored in the stream head
+                    Query streamHeadOfLastEvent = Query.query(where(StreamHeads.ID).is(streamId).and(StreamHeads.VERSION).is(streamVersion));
+                    mongoTemplate.updateFirst(streamHeadOfLastEvent, Update.update(StreamHeads.LAST_EVENT_TIME, updatedDocument.get(CloudEventV1.TIME)), streamHeadsCollectionName);
+                }
+                // The type or source of the event may have been changed
+                updateEventCounters(eventCounters.incrementsAfterUpdate(document, updatedDocument));
             }
             return Optional.of(updatedCloudEvent);
         };
@@ -207,8 +461,7 @@ public class SpringMongoEventStore implements EventStore, EventStoreOperations,
         requireNonNull(filter, Filter.class.getSimpleName() + " cannot be null");
         requireNonNull(sortBy, SortBy.class.getSimpleName() + " cannot be null");
         final Query query = queryOptions.apply(FilterConverter.convertFilterToQuery(timeRepresentation, filter));
-        return readCloudEvents(query, skip, limit, sortBy)
-                .map(document -> convertToCloudEvent(timeRepresentation, document));
+        return readCloudEvents(query, skip, limit, sortBy);
     }
 
     @Override
@@ -217,6 +470,13 @@ public class SpringMongoEventStore implements EventStore, EventStoreOperations,
         if (filter instanceof Filter.All) {
             //noinspection ConstantConditions
             return mongoTemplate.execute(eventStoreCollectionName, MongoCollection::estimatedDocumentCount);
+        }
+
+        Optional<Set<String>> counterIds = eventCountersCollectionName == null ? Optional.empty() : eventCounters.counterIdsOf(filter);
+        if (counterIds.isPresent() && eventCountersPopulated()) {
+            Query query = Query.query(where(EventCounters.ID).in(counterIds.get()));
+            query.fields().include(EventCounters.COUNT);
+            return mongoTemplate.find(query, Document.class, eventCountersCollectionName).stream().mapToLong(EventCounters::count).sum();
         } else {
             final Query query = queryOptions.apply(FilterConverter.convertFilterToQuery(timeRepresentation, filter));
             return mongoTemplate.count(query, eventStoreCollectionName);
@@ -269,12 +529,17 @@ public class SpringMongoEventStore implements EventStore, EventStoreOperations,
     }
 
     private void insertAll(String streamId, long streamVersion, WriteCondition writeCondition, List<Document> documents) {
+        insertAll(documents, __ -> new WriteContext(streamId, streamVersion, writeCondition));
+    }
+
+    private void insertAll(List<Document> documents, IntFunction<WriteContext> writeContextOfFailingWrite) {
         try {
             mongoTemplate.insert(documents, eventStoreCollectionName);
         } catch (DataAccessException e) {
             final Throwable rootCause = e.getRootCause();
             if (rootCause instanceof MongoException) {
-                throw translateException(new WriteContext(streamId, streamVersion, writeCondition), (MongoException) rootCause);
+                MongoException mongoException = (MongoException) rootCause;
+                throw translateException(writeContextOfFailingWrite.apply(indexOfFailingWrite(mongoException)), mongoException);
             } else {
                 throw e;
             }
@@ -303,7 +568,20 @@ public class SpringMongoEventStore implements EventStore, EventStoreOperations,
         return where(STREAM_ID).is(streamId);
     }
 
-    private EventStreamImpl<Document> readEventStream(String streamId, int skip, int limit) {
+    private EventStreamImpl<CloudEvent> readEventStream(String streamId, long fromVersionExclusive, long toVersionInclusive, int skip, int limit) {
+        if (singleRoundTripReads && SingleRoundTripStreamRead.isEntireStream(fromVersionExclusive, toVersionInclusive, skip, limit)) {
+            return readEntireEventStreamInSingleRoundTrip(streamId);
+        } else if (singleRoundTripPartialReads) {
+            try {
+                return readPartOfEventStreamInSingleRoundTrip(streamId, fromVersionExclusive, toVersionInclusive, skip, limit);
+            } catch (DataAccessException e) {
+                if (!(e.getRootCause() instanceof MongoException) || !SingleRoundTripStreamRead.isResultTooLarge((MongoException) e.getRootCause())) {
+                    throw e;
+                }
+                // Fall back to reading the events with a cursor
+            }
+        }
+
         long currentStreamVersion = currentStreamVersion(streamId);
         if (currentStreamVersion == 0) {
             return new EventStreamImpl<>(streamId, 0, Stream.empty());
@@ -311,12 +589,37 @@ public class SpringMongoEventStore implements EventStore, EventStoreOperations,
 
         // We use "lte" currentStreamVersion so that we don't have the start transactions on read. This means that even
         // if another thread has inserted more events after we've read "currentStreamVersion" it doesn't matter.
-        final Query query = readOptions.apply(Query.query(streamIdEqualToCriteria(streamId).and(STREAM_VERSION).lte(currentStreamVersion)));
-        Stream<Document> stream = readCloudEvents(query, skip, limit, SortBy.streamVersion(ASCENDING));
+        Criteria criteria = streamIdEqualToCriteria(streamId).and(STREAM_VERSION).lte(Math.min(currentStreamVersion, toVersionInclusive));
+        if (fromVersionExclusive > 0) {
+            // The lower bound of the version range makes MongoDB start the scan of the (streamid, streamversion) index at the first event to read
+            criteria = criteria.gt(fromVersionExclusive);
+        }
+        final Query query = readOptions.apply(Query.query(criteria));
+        Stream<CloudEvent> stream = readCloudEvents(query, skip, limit, SortBy.streamVersion(ASCENDING));
         return new EventStreamImpl<>(streamId, currentStreamVersion, stream);
     }
 
+    private EventStreamImpl<CloudEvent> readEntireEventStreamInSingleRoundTrip(String streamId) {
+        List<CloudEvent> cloudEvents = readCloudEvents(readOptions.apply(streamIdEqualTo(streamId)), 0, Integer.MAX_VALUE, SortBy.streamVersion(ASCENDING)).collect(Collectors.toList());
+        long currentStreamVersion = cloudEvents.isEmpty() ? 0 : OccurrentExtensionGetter.getStreamVersion(cloudEvents.get(cloudEvents.size() - 1));
+        return new EventStreamImpl<>(streamId, currentStreamVersion, cloudEvents.stream());
+    }
+
+    private EventStreamImpl<CloudEvent> readPartOfEventStreamInSingleRoundTrip(String streamId, long fromVersionExclusive, long toVersionInclusive, int skip, int limit) {
+        List<Bson> pipeline = SingleRoundTripStreamRead.partOfStream(streamId, fromVersionExclusive, toVersionInclusive, skip, limit);
+        Document result = mongoTemplate.execute(eventStoreCollectionName, collection -> collection.aggregate(pipeline).first());
+        List<CloudEvent> cloudEvents = SingleRoundTripStreamRead.events(result).stream().map(document -> convertToCloudEvent(timeRepresentation, document)).collect(Collectors.toList());
+        return new EventStreamImpl<>(streamId, SingleRoundTripStreamRead.version(result), cloudEvents.stream());
+    }
+
     private long currentStreamVersion(String streamId) {
+        if (streamHeadsCollectionName != null) {
+            Query query = streamHeadIdEqualTo(streamId);
+            query.fields().include(StreamHeads.VERSION);
+            Document streamHead = mongoTemplate.findOne(query, Document.class, streamHeadsCollectionName);
+            return streamHead == null ? 0 : streamHead.getLong(StreamHeads.VERSION);
+        }
+
         Query query = readOptions.apply(streamIdEqualTo(streamId));
         query.fields().include(STREAM_VERSION);
         Document documentWithLatestStreamVersion = mongoTemplate.findOne(queryOptions.apply(query.with(Sort.by(DESC, STREAM_VERSION)).limit(1)), Document.class, eventStoreCollectionName);
@@ -329,17 +632,95 @@ public class SpringMongoEventStore implements EventStore, EventStoreOperations,
         return currentStreamVersion;
     }
 
-    private Stream<Document> readCloudEvents(Query query, int skip, int limit, SortBy sortBy) {
+    private Map<String, Long> currentStreamVersions(Collection<String> streamIds) {
+        Map<String, Long> currentStreamVersions = new HashMap<>();
+        if (streamHeadsCollectionName != null) {
+            Query query = Query.query(where(StreamHeads.ID).in(streamIds));
+            query.fields().include(StreamHeads.VERSION);
+            for (Document streamHead : mongoTemplate.find(query, Document.class, streamHeadsCollectionName)) {
+                currentStreamVersions.put(streamHead.getString(StreamHeads.ID), streamHead.getLong(StreamHeads.VERSION));
+            }
+            return currentStreamVersions;
+        }
+
+        // Sorting on the (streamid, streamversion) index in the same direction as "first" allows MongoDB to only visit the
+        // latest index entry for each stream.
+        Aggregation aggregation = newAggregation(
+                match(where(STREAM_ID).in(streamIds)),
+                sort(Sort.by(DESC, STREAM_ID, STREAM_VERSION)),
+                group(STREAM_ID).first(STREAM_VERSION).as(STREAM_VERSION));
+        for (Document document : mongoTemplate.aggregate(aggregation, eventStoreCollectionName, Document.class)) {
+            currentStreamVersions.put(document.getString(ID), document.getLong(STREAM_VERSION));
+        }
+        return currentStreamVersions;
+    }
+
+    private Stream<CloudEvent> readCloudEvents(Query query, int skip, int limit, SortBy sortBy) {
         if (skip != 0 || limit != Integer.MAX_VALUE) {
             query.skip(skip).limit(limit);
         }
 
         Sort sort = convertToSpringSort(sortBy);
-        return StreamUtils.createStreamFromIterator(mongoTemplate.stream(query.with(sort), Document.class, eventStoreCollectionName));
+        if (lazyCloudEvents) {
+            // The raw documents are decoded lazily by the cloud events
+            return StreamSupport.stream(findRawDocuments(query.with(sort)).spliterator(), false).map(document -> convertToCloudEvent(document, rawBsonData));
+        }
+        return StreamUtils.createStreamFromIterator(mongoTemplate.stream(query.with(sort), Document.class, eventStoreCollectionName))
+                .map(document -> convertToCloudEvent(timeRepresentation, document));
+    }
+
+    // MongoTemplate always decodes the result into a Document (or entity) so we use the driver to get the raw documents. The options of the
+    // query (that may have been configured by the query and read options) are applied in the same way as MongoTemplate applies them.
+    private FindIterable<RawBsonDocument> findRawDocuments(Query query) {
+        return requireNonNull(mongoTemplate.execute(eventStoreCollectionName, collection -> {
+            FindIterable<RawBsonDocument> documents = collection.find(query.getQueryObject(), RawBsonDocument.class)
+                    .projection(query.getFieldsObject())
+                    .sort(query.getSortObject())
+                    .skip((int) query.getSkip())
+                    .limit(query.getLimit());
+
+            Meta meta = query.getMeta();
+            if (meta.getCursorBatchSize() != null) {
+                documents = documents.batchSize(meta.getCursorBatchSize());
+            }
+            if (meta.getMaxTimeMsec() != null) {
+                documents = documents.maxTime(meta.getMaxTimeMsec(), TimeUnit.MILLISECONDS);
+            }
+            if (meta.getComment() != null) {
+                documents = documents.comment(meta.getComment());
+            }
+            if (meta.getAllowDiskUse() != null) {
+                documents = documents.allowDiskUse(meta.getAllowDiskUse());
+            }
+            documents = documents.noCursorTimeout(meta.getFlags().contains(CursorOption.NO_TIMEOUT)).partial(meta.getFlags().contains(CursorOption.PARTIAL));
+
+            String hint = query.getHint();
+            if (hint != null && !hint.isEmpty()) {
+                documents = hint.trim().startsWith("{") ? documents.hint(Document.parse(hint)) : documents.hintString(hint);
+            }
+            Optional<Collation> collation = query.getCollation();
+            if (collation.isPresent()) {
+                documents = documents.collation(collation.get().toMongoCollation());
+            }
+            return documents;
+        }));
+    }
+
+    private static Query streamHeadIdEqualTo(String streamId) {
+        return Query.query(where(StreamHeads.ID).is(streamId));
+    }
+
+    private static Update streamHeadUpdateAfterWrite(List<Document> cloudEventDocuments) {
+        Document lastCloudEventDocument = cloudEventDocuments.get(cloudEventDocuments.size() - 1);
+        return new Update()
+                .set(StreamHeads.VERSION, lastCloudEventDocument.getLong(STREAM_VERSION))
+                .set(StreamHeads.LAST_EVENT_TIME, lastCloudEventDocument.get(CloudEventV1.TIME))
+                .inc(StreamHeads.EVENT_COUNT, cloudEventDocuments.size());
     }
 
     // Initialization
-    private static void initializeEventStore(String eventStoreCollectionName, MongoTemplate mongoTemplate) {
+    private static void initializeEventStore(String eventStoreCollectionName, String streamHeadsCollectionName, String eventCountersCollectionName, EventCounters eventCounters, MongoTemplate mongoTemplate,
+                                             TransactionTemplate transactionTemplate) {
         if (!mongoTemplate.collectionExists(eventStoreCollectionName)) {
             mongoTemplate.createCollection(eventStoreCollectionName);
         }
@@ -351,9 +732,83 @@ public class SpringMongoEventStore implements EventStore, EventStoreOperations,
         // Note also that this index supports sorting both ascending and descending since MongoDB can traverse an index in both directions.
         eventStoreCollection.createIndex(Indexes.compoundIndex(Indexes.ascending(STREAM_ID), Indexes.ascending(STREAM_VERSION)), new IndexOptions().unique(true));
 
+        if (streamHeadsCollectionName != null) {
+            if (!mongoTemplate.collectionExists(streamHeadsCollectionName)) {
+                // Create the collection explicitly since collections cannot be created implicitly inside a transaction (before MongoDB 4.4)
+                mongoTemplate.createCollection(streamHeadsCollectionName);
+            }
+            // Populate the stream heads from the events that have been written before the stream heads collection was enabled, or while it was disabled
+            if (eventStoreCollection.find().limit(1).first() != null) {
+                eventStoreCollection.aggregate(StreamHeads.backfill(streamHeadsCollectionName)).toCollection();
+            }
+        }
+
         // SessionSynchronization need to be "ALWAYS" in order for TransactionTemplate to work with mongo template!
         // See https://docs.spring.io/spring-data/mongodb/docs/current/reference/html/#mongo.transactions.transaction-template
         mongoTemplate.setSessionSynchronization(ALWAYS);
+
+        if (eventCountersCollectionName != null) {
+            if (!mongoTemplate.collectionExists(eventCountersCollectionName)) {
+                // Create the collection explicitly since collections cannot be created implicitly inside a transaction (before MongoDB 4.4)
+                mongoTemplate.createCollection(eventCountersCollectionName);
+            }
+            initializeEventCounters(eventStoreCollectionName, eventCountersCollectionName, eventCounters, mongoTemplate, transactionTemplate);
+        }
+    }
+
+    // Populate the counters from the events that have been written before the event counters collection was enabled. Only the event store that manages
+    // to insert the backfill marker does this, so that the counters are only populated once even if several event stores are started concurrently.
+    // The counters are recounted in batches, each in a transaction that conflicts with (and is retried after) concurrent writes that update the same counters.
+    private static void initializeEventCounters(String eventStoreCollectionName, String eventCountersCollectionName, EventCounters eventCounters, MongoTemplate mongoTemplate,
+                                                TransactionTemplate transactionTemplate) {
+        MongoCollection<Document> eventCountersCollection = mongoTemplate.getCollection(eventCountersCollectionName);
+        try {
+            eventCountersCollection.insertOne(eventCounters.backfillMarker());
+        } catch (MongoWriteException e) {
+            if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                throw e;
+            }
+            eventCounters.requireSameCountedAttributes(eventCountersCollection.find(EventCounters.backfillMarkerQuery()).first());
+            return;
+        }
+
+        try {
+            List<String> counterIds = new ArrayList<>();
+            for (Document counter : mongoTemplate.getCollection(eventStoreCollectionName).aggregate(eventCounters.counterIdsOfAllEvents())) {
+                counterIds.add(counter.getString(EventCounters.ID));
+                if (counterIds.size() == EventCounters.BACKFILL_BATCH_SIZE) {
+                    recountEventCounters(eventStoreCollectionName, eventCountersCollectionName, eventCounters, mongoTemplate, transactionTemplate, counterIds);
+                    counterIds.clear();
+                }
+            }
+            if (!counterIds.isEmpty()) {
+                recountEventCounters(eventStoreCollectionName, eventCountersCollectionName, eventCounters, mongoTemplate, transactionTemplate, counterIds);
+            }
+            eventCountersCollection.updateOne(EventCounters.backfillMarkerQuery(), EventCounters.backfillCompleted());
+        } catch (RuntimeException e) {
+            // Allow the counters to be populated the next time an event store is started
+            eventCountersCollection.deleteOne(EventCounters.backfillMarkerQuery());
+            throw e;
+        }
+    }
+
+    private static void recountEventCounters(String eventStoreCollectionName, String eventCountersCollectionName, EventCounters eventCounters, MongoTemplate mongoTemplate,
+                                             TransactionTemplate transactionTemplate, List<String> counterIds) {
+        List<Bson> countEvents = eventCounters.countEvents(eventCounters.eventsCountedBy(counterIds));
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(__ -> {
+                    List<Document> counts = mongoTemplate.execute(eventStoreCollectionName, collection -> collection.aggregate(countEvents).into(new ArrayList<>()));
+                    //noinspection ConstantConditions
+                    mongoTemplate.execute(eventCountersCollectionName, collection -> collection.bulkWrite(EventCounters.recount(counterIds, counts)));
+                });
+                return;
+            } catch (RuntimeException e) {
+                if (attempt == EventCounters.BACKFILL_MAX_ATTEMPTS || !EventCounters.isTransientTransactionError(e)) {
+                    throw e;
+                }
+            }
+        }
     }
 
     private static Query cloudEventIdEqualTo(String cloudEventId, URI cloudEventSource) {
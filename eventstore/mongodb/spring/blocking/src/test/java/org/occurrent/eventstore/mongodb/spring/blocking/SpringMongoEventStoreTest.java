@@ -23,6 +23,8 @@ import com.mongodb.ConnectionString;
 import com.mongodb.MongoBulkWriteException;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
 import io.cloudevents.CloudEvent;
 import io.cloudevents.core.builder.CloudEventBuilder;
 import io.cloudevents.core.data.PojoCloudEventData;
@@ -39,12 +41,14 @@ import org.occurrent.cloudevents.OccurrentCloudEventExtension;
 import org.occurrent.domain.*;
 import org.occurrent.eventstore.api.*;
 import org.occurrent.eventstore.api.blocking.EventStream;
+import org.occurrent.eventstore.api.blocking.EventStreamWrite;
 import org.occurrent.filter.Filter;
 import org.occurrent.functional.CheckedFunction;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
 import org.occurrent.testsupport.mongodb.FlushMongoDBExtension;
 import org.occurrent.time.TimeConversion;
 import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
 import org.testcontainers.containers.MongoDBContainer;
@@ -53,6 +57,7 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 
 import java.io.IOException;
 import java.net.URI;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
@@ -61,6 +66,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.*;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -74,6 +82,7 @@ import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.Assertions.entry;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.condition.JRE.JAVA_11;
 import static org.junit.jupiter.api.condition.JRE.JAVA_8;
@@ -288,6 +297,61 @@ public class SpringMongoEventStoreTest {
         );
     }
 
+    @Nested
+    @DisplayName("read version range")
+    class ReadVersionRangeTest {
+
+        @Test
+        void read_version_range_returns_the_events_whose_stream_version_is_in_the_range_and_the_version_of_the_entire_stream() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Hello Doe");
+            DomainEvent event4 = new NameWasChanged(UUID.randomUUID().toString(), now, "Another Doe");
+            persist("name", Stream.of(event1, event2, event3, event4));
+
+            // When
+            EventStream<CloudEvent> eventStream = eventStore.readVersionRange("name", 1, 3);
+
+            // Then
+            assertAll(
+                    () -> assertThat(eventStream.version()).isEqualTo(4L),
+                    () -> assertThat(deserialize(eventStream.events())).containsExactly(event2, event3)
+            );
+        }
+
+        @Test
+        void read_after_version_returns_the_events_after_the_version() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Hello Doe");
+            persist("name", Stream.of(event1, event2, event3));
+
+            // When
+            EventStream<CloudEvent> eventStream = eventStore.readAfterVersion("name", 2);
+
+            // Then
+            assertAll(
+                    () -> assertThat(eventStream.version()).isEqualTo(3L),
+                    () -> assertThat(deserialize(eventStream.events())).containsExactly(event3),
+                    () -> assertThat(eventStore.readAfterVersion("name", 3).events()).isEmpty(),
+                    () -> assertThat(eventStore.readAfterVersion("unknown", 0).version()).isZero()
+            );
+        }
+
+        @Test
+        void read_version_range_throws_iae_when_the_range_is_invalid() {
+            // When
+            Throwable throwable = catchThrowable(() -> eventStore.readVersionRange("name", 3, 2));
+
+            // Then
+            assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class).hasMessage("toVersionInclusive cannot be less than fromVersionExclusive");
+        }
+    }
+
     @Nested
     @DisplayName("write result")
     class WriteResultTest {
@@ -359,6 +423,441 @@ public class SpringMongoEventStoreTest {
         }
     }
 
+    @Nested
+    @DisplayName("transactionless append")
+    class TransactionlessAppendTest {
+
+        @BeforeEach
+        void create_event_store_with_transactionless_append() {
+            eventStore = new SpringMongoEventStore(mongoTemplate, new EventStoreConfig.Builder().eventStoreCollectionName(connectionString.getCollection()).transactionConfig(mongoTransactionManager).timeRepresentation(TimeRepresentation.RFC_3339_STRING).transactionlessAppend(true).build());
+        }
+
+        @Test
+        void appends_event_when_stream_version_is_equal_to_expected_version() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            persist("name", WriteCondition.streamVersionEq(0), event1);
+
+            // When
+            persist("name", WriteCondition.streamVersionEq(1), event2);
+
+            // Then
+            EventStream<CloudEvent> eventStream = eventStore.read("name");
+            assertAll(
+                    () -> assertThat(eventStream.version()).isEqualTo(2),
+                    () -> assertThat(deserialize(eventStream.events())).containsExactly(event1, event2)
+            );
+        }
+
+        @Test
+        void throws_write_condition_not_fulfilled_when_another_event_has_already_been_written_with_the_next_version() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Doe");
+            persist("name", WriteCondition.streamVersionEq(0), event1);
+            persist("name", WriteCondition.streamVersionEq(1), event2);
+
+            // When
+            Throwable throwable = catchThrowable(() -> persist("name", WriteCondition.streamVersionEq(1), event3));
+
+            // Then
+            assertThat(throwable).isExactlyInstanceOf(WriteConditionNotFulfilledException.class)
+                    .hasMessage("WriteCondition was not fulfilled. Expected version to be equal to 1 but was 2.");
+        }
+
+        @Test
+        void throws_write_condition_not_fulfilled_when_expected_version_is_greater_than_current_version() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            persist("name", WriteCondition.streamVersionEq(0), event1);
+
+            // When
+            Throwable throwable = catchThrowable(() -> persist("name", WriteCondition.streamVersionEq(5), event2));
+
+            // Then
+            assertThat(throwable).isExactlyInstanceOf(WriteConditionNotFulfilledException.class)
+                    .hasMessage("WriteCondition was not fulfilled. Expected version to be equal to 5 but was 1.");
+        }
+    }
+
+    @Nested
+    @DisplayName("stream heads")
+    class StreamHeadsTest {
+
+        @BeforeEach
+        void create_event_store_with_stream_heads() {
+            eventStore = newEventStoreWithStreamHeads();
+        }
+
+        @Test
+        void stream_head_is_updated_when_events_are_written() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Doe");
+            persist("name", WriteCondition.streamVersionEq(0), Arrays.asList(event1, event2));
+
+            // When
+            persist("name", WriteCondition.streamVersionEq(2), event3);
+
+            // Then
+            Document streamHead = mongoTemplate.getCollection("streamheads").find(Filters.eq("_id", "name")).first();
+            EventStream<CloudEvent> eventStream = eventStore.read("name");
+            assertAll(
+                    () -> assertThat(streamHead).isNotNull(),
+                    () -> assertThat(streamHead.getLong("version")).isEqualTo(3),
+                    () -> assertThat(streamHead.getInteger("eventCount")).isEqualTo(3),
+                    () -> assertThat(eventStream.version()).isEqualTo(3),
+                    () -> assertThat(deserialize(eventStream.events())).containsExactly(event1, event2, event3)
+            );
+        }
+
+        @Test
+        void write_condition_is_evaluated_against_the_stream_head() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            persist("name", WriteCondition.streamVersionEq(0), event1);
+
+            // When
+            Throwable throwable = catchThrowable(() -> persist("name", WriteCondition.streamVersionEq(0), event2));
+
+            // Then
+            assertThat(throwable).isExactlyInstanceOf(WriteConditionNotFulfilledException.class)
+                    .hasMessage("WriteCondition was not fulfilled. Expected version to be equal to 0 but was 1.");
+        }
+
+        @Test
+        void exists_and_stream_versions_are_found_from_stream_heads() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            persist("name1", new NameDefined(UUID.randomUUID().toString(), now, "John Doe"));
+            persist("name2", Arrays.asList(new NameDefined(UUID.randomUUID().toString(), now, "Jane Doe"), new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe")));
+
+            // When
+            Map<String, Long> streamVersions = eventStore.streamVersions(Arrays.asList("name1", "name2", "name3"));
+
+            // Then
+            assertAll(
+                    () -> assertThat(streamVersions).containsExactly(entry("name1", 1L), entry("name2", 2L), entry("name3", 0L)),
+                    () -> assertThat(eventStore.exists("name1")).isTrue(),
+                    () -> assertThat(eventStore.exists("name3")).isFalse()
+            );
+        }
+
+        @Test
+        void stream_head_is_recalculated_when_events_are_deleted() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            persist("name1", Arrays.asList(event1, event2));
+            persist("name2", new NameDefined(UUID.randomUUID().toString(), now, "Jane Doe"));
+
+            // When
+            eventStore.deleteEvent(event2.getEventId(), NAME_SOURCE);
+            eventStore.deleteEventStream("name2");
+
+            // Then
+            assertAll(
+                    () -> assertThat(eventStore.streamVersions(Arrays.asList("name1", "name2"))).containsExactly(entry("name1", 1L), entry("name2", 0L)),
+                    () -> assertThat(mongoTemplate.getCollection("streamheads").countDocuments()).isEqualTo(1)
+            );
+        }
+
+        @Test
+        void stream_heads_are_created_from_existing_events_when_stream_heads_collection_is_enabled() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            mongoTemplate.dropCollection("streamheads");
+            persist("name1", new NameDefined(UUID.randomUUID().toString(), now, "John Doe"));
+            persist("name2", Arrays.asList(new NameDefined(UUID.randomUUID().toString(), now, "Jane Doe"), new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe")));
+
+            // When
+            eventStore = newEventStoreWithStreamHeads();
+
+            // Then
+            assertAll(
+                    () -> assertThat(mongoTemplate.getCollection("streamheads").countDocuments()).isEqualTo(2),
+                    () -> assertThat(eventStore.streamVersions(Arrays.asList("name1", "name2"))).containsExactly(entry("name1", 1L), entry("name2", 2L))
+            );
+        }
+
+        @Test
+        void stream_heads_are_updated_from_events_written_while_stream_heads_collection_was_disabled_when_it_is_enabled_again() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            eventStore = newEventStoreWithStreamHeads();
+            persist("name", new NameDefined(UUID.randomUUID().toString(), now, "John Doe"));
+            eventStore = new SpringMongoEventStore(mongoTemplate, new EventStoreConfig.Builder().eventStoreCollectionName(connectionString.getCollection()).transactionConfig(mongoTransactionManager).timeRepresentation(TimeRepresentation.RFC_3339_STRING).build());
+            persist("name", new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Doe"));
+
+            // When
+            eventStore = newEventStoreWithStreamHeads();
+            persist("name", new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe"));
+
+            // Then
+            assertAll(
+                    () -> assertThat(mongoTemplate.getCollection("streamheads").find(new Document("_id", "name")).first().getLong("version")).isEqualTo(3L),
+                    () -> assertThat(eventStore.read("name").version()).isEqualTo(3L)
+            );
+        }
+
+        private SpringMongoEventStore newEventStoreWithStreamHeads() {
+            return new SpringMongoEventStore(mongoTemplate, new EventStoreConfig.Builder().eventStoreCollectionName(connectionString.getCollection()).transactionConfig(mongoTransactionManager).timeRepresentation(TimeRepresentation.RFC_3339_STRING).streamHeadsCollectionName("streamheads").build());
+        }
+    }
+
+    @Nested
+    @DisplayName("event counters")
+    class EventCountersTest {
+
+        @BeforeEach
+        void create_event_store_with_event_counters() {
+            eventStore = newEventStoreWithEventCounters();
+        }
+
+        @Test
+        void count_and_exists_are_served_from_the_event_counters() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            persist("name1", Arrays.asList(new NameDefined(UUID.randomUUID().toString(), now, "John Doe"), new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe")));
+            persist("name2", new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Doe"));
+
+            // When
+            long count = eventStore.count(type(NameWasChanged.class.getSimpleName()).or(type(NameDefined.class.getSimpleName())));
+
+            // Then
+            assertAll(
+                    () -> assertThat(count).isEqualTo(3),
+                    () -> assertThat(counter("type:" + NameWasChanged.class.getSimpleName())).isEqualTo(2),
+                    () -> assertThat(counter("streamid:name1")).isEqualTo(2),
+                    () -> assertThat(eventStore.exists(Filter.streamId("name2"))).isTrue(),
+                    () -> assertThat(eventStore.exists(Filter.streamId("name3"))).isFalse()
+            );
+        }
+
+        @Test
+        void counters_are_decremented_when_events_are_deleted() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            persist("name1", Arrays.asList(event1, event2));
+            persist("name2", new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Doe"));
+
+            // When
+            eventStore.deleteEvent(event1.getEventId(), NAME_SOURCE);
+            eventStore.delete(Filter.id(event2.getEventId()));
+            eventStore.deleteEventStream("name2");
+
+            // Then
+            assertAll(
+                    () -> assertThat(mongoTemplate.getCollection("eventcounters").countDocuments(Filters.exists("count"))).isZero(),
+                    () -> assertThat(eventStore.count(type(NameWasChanged.class.getSimpleName()))).isZero()
+            );
+        }
+
+        @Test
+        void counters_are_created_from_existing_events_when_event_counters_collection_is_enabled() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            persist("name", Arrays.asList(new NameDefined(UUID.randomUUID().toString(), now, "John Doe"), new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe")));
+            mongoTemplate.dropCollection("eventcounters");
+
+            // When
+            eventStore = newEventStoreWithEventCounters();
+
+            // Then
+            assertAll(
+                    () -> assertThat(mongoTemplate.getCollection("eventcounters").countDocuments(Filters.exists("count"))).isEqualTo(4),
+                    () -> assertThat(eventStore.count(Filter.streamId("name"))).isEqualTo(2)
+            );
+        }
+
+        @Test
+        void counters_are_not_used_until_they_have_been_created_from_the_existing_events() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            persist("name", Arrays.asList(new NameDefined(UUID.randomUUID().toString(), now, "John Doe"), new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe")));
+            // Simulate that another event store is still creating the counters from the existing events
+            mongoTemplate.getCollection("eventcounters").updateOne(Filters.eq("_id", "occurrent:backfill"), Updates.set("completed", false));
+            mongoTemplate.getCollection("eventcounters").updateOne(Filters.eq("_id", "streamid:name"), Updates.set("count", 1L));
+
+            // When
+            eventStore = newEventStoreWithEventCounters();
+
+            // Then
+            assertAll(
+                    () -> assertThat(eventStore.count(Filter.streamId("name"))).isEqualTo(2),
+                    () -> assertThat(eventStore.exists(type(NameWasChanged.class.getSimpleName()))).isTrue()
+            );
+        }
+
+        private long counter(String counterId) {
+            Document counter = mongoTemplate.getCollection("eventcounters").find(Filters.eq("_id", counterId)).first();
+            return counter == null ? 0 : counter.getLong("count");
+        }
+
+        private SpringMongoEventStore newEventStoreWithEventCounters() {
+            return new SpringMongoEventStore(mongoTemplate, new EventStoreConfig.Builder().eventStoreCollectionName(connectionString.getCollection()).transactionConfig(mongoTransactionManager).timeRepresentation(TimeRepresentation.RFC_3339_STRING).eventCountersCollectionName("eventcounters").eventCounterAttributes("type", "source", "streamid").build());
+        }
+    }
+
+    @Nested
+    @DisplayName("group commit")
+    class GroupCommitTest {
+
+        private ExecutorService executorService;
+
+        @BeforeEach
+        void create_event_store_with_group_commit() {
+            eventStore = new SpringMongoEventStore(mongoTemplate, new EventStoreConfig.Builder().eventStoreCollectionName(connectionString.getCollection()).transactionConfig(mongoTransactionManager).timeRepresentation(TimeRepresentation.RFC_3339_STRING).groupCommit(10, Duration.ofMillis(200)).build());
+            executorService = Executors.newCachedThreadPool();
+        }
+
+        @AfterEach
+        void shutdown_executor_service() {
+            executorService.shutdownNow();
+        }
+
+        @Test
+        void concurrent_writes_to_different_streams_are_all_written() throws Exception {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            persist("name1", new NameDefined(UUID.randomUUID().toString(), now, "John Doe"));
+
+            // When
+            Future<WriteResult> writeResult1 = executorService.submit(() -> eventStore.write("name1", WriteCondition.streamVersionEq(1), Stream.of(convertDomainEventCloudEvent(new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe")))));
+            Future<WriteResult> writeResult2 = executorService.submit(() -> eventStore.write("name2", WriteCondition.streamVersionEq(0), Stream.of(convertDomainEventCloudEvent(new NameDefined(UUID.randomUUID().toString(), now, "Jane Doe")))));
+            Future<WriteResult> writeResult3 = executorService.submit(() -> eventStore.write("name3", WriteCondition.streamVersionEq(0), Stream.of(convertDomainEventCloudEvent(new NameDefined(UUID.randomUUID().toString(), now, "Jake Doe")))));
+
+            // Then
+            assertAll(
+                    () -> assertThat(writeResult1.get()).isEqualTo(new WriteResult("name1", 2)),
+                    () -> assertThat(writeResult2.get()).isEqualTo(new WriteResult("name2", 1)),
+                    () -> assertThat(writeResult3.get()).isEqualTo(new WriteResult("name3", 1)),
+                    () -> assertThat(eventStore.count()).isEqualTo(4)
+            );
+        }
+
+        @Test
+        void write_condition_that_is_not_fulfilled_only_fails_the_write_to_that_stream() throws Exception {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            persist("name1", new NameDefined(UUID.randomUUID().toString(), now, "John Doe"));
+
+            // When
+            Future<WriteResult> writeResult1 = executorService.submit(() -> eventStore.write("name1", WriteCondition.streamVersionEq(0), Stream.of(convertDomainEventCloudEvent(new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe")))));
+            Future<WriteResult> writeResult2 = executorService.submit(() -> eventStore.write("name2", WriteCondition.streamVersionEq(0), Stream.of(convertDomainEventCloudEvent(new NameDefined(UUID.randomUUID().toString(), now, "Jane Doe")))));
+
+            // Then
+            Throwable throwable = catchThrowable(writeResult1::get);
+            assertAll(
+                    () -> assertThat(throwable).hasCauseExactlyInstanceOf(WriteConditionNotFulfilledException.class),
+                    () -> assertThat(writeResult2.get()).isEqualTo(new WriteResult("name2", 1)),
+                    () -> assertThat(eventStore.read("name1").version()).isEqualTo(1)
+            );
+        }
+
+        @Test
+        void writes_made_in_a_spring_managed_transaction_are_rolled_back_with_that_transaction() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            TransactionTemplate transactionTemplate = new TransactionTemplate(mongoTransactionManager);
+
+            // When
+            Throwable throwable = catchThrowable(() -> transactionTemplate.executeWithoutResult(__ -> {
+                eventStore.write("name1", WriteCondition.streamVersionEq(0), Stream.of(convertDomainEventCloudEvent(new NameDefined(UUID.randomUUID().toString(), now, "John Doe"))));
+                throw new IllegalStateException("expected");
+            }));
+
+            // Then
+            assertAll(
+                    () -> assertThat(throwable).isExactlyInstanceOf(IllegalStateException.class),
+                    () -> assertThat(eventStore.exists("name1")).isFalse()
+            );
+        }
+    }
+
+    @Nested
+    @DisplayName("write all")
+    class WriteAllTest {
+
+        @Test
+        void writes_events_to_all_streams_and_returns_one_write_result_per_stream() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+            NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(1), "name2");
+            NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.plusHours(2), "name3");
+            persist("name1", nameDefined1);
+
+            Map<String, EventStreamWrite> writes = new LinkedHashMap<>();
+            writes.put("name1", EventStreamWrite.of(1, convertDomainEventCloudEvent(nameWasChanged1)));
+            writes.put("name2", EventStreamWrite.of(0, convertDomainEventCloudEvent(nameDefined2)));
+
+            // When
+            List<WriteResult> writeResults = eventStore.writeAll(writes);
+
+            // Then
+            assertAll(
+                    () -> assertThat(writeResults).containsExactly(new WriteResult("name1", 2), new WriteResult("name2", 1)),
+                    () -> assertThat(deserialize(eventStore.read("name1").events())).containsExactly(nameDefined1, nameWasChanged1),
+                    () -> assertThat(deserialize(eventStore.read("name2").events())).containsExactly(nameDefined2)
+            );
+        }
+
+        @Test
+        void writes_no_events_to_any_stream_when_write_condition_of_one_stream_is_not_fulfilled() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+            NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusHours(1), "name2");
+            NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.plusHours(2), "name3");
+            persist("name1", nameDefined1);
+
+            Map<String, EventStreamWrite> writes = new LinkedHashMap<>();
+            writes.put("name2", EventStreamWrite.of(0, convertDomainEventCloudEvent(nameDefined2)));
+            writes.put("name1", EventStreamWrite.of(0, convertDomainEventCloudEvent(nameWasChanged1)));
+
+            // When
+            Throwable throwable = catchThrowable(() -> eventStore.writeAll(writes));
+
+            // Then
+            assertAll(
+                    () -> assertThat(throwable).isExactlyInstanceOf(WriteConditionNotFulfilledException.class).hasMessage("WriteCondition was not fulfilled. Expected version to be equal to 0 but was 1."),
+                    () -> assertThat(eventStore.exists("name2")).isFalse(),
+                    () -> assertThat(eventStore.read("name1").version()).isEqualTo(1)
+            );
+        }
+
+        @Test
+        void returns_current_stream_version_for_streams_without_events_to_write() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            persist("name1", new NameDefined(UUID.randomUUID().toString(), now, "name1"));
+
+            Map<String, EventStreamWrite> writes = new LinkedHashMap<>();
+            writes.put("name1", EventStreamWrite.unconditionally(Stream.empty()));
+            writes.put("name2", EventStreamWrite.unconditionally(Stream.empty()));
+
+            // When
+            List<WriteResult> writeResults = eventStore.writeAll(writes);
+
+            // Then
+            assertThat(writeResults).containsExactly(new WriteResult("name1", 1), new WriteResult("name2", 0));
+        }
+    }
+
     @Nested
     @DisplayName("count")
     class CountTest {
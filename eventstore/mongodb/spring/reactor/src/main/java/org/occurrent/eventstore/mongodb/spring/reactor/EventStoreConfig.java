@@ -17,12 +17,18 @@
 package org.occurrent.eventstore.mongodb.spring.reactor;
 
 import org.occurrent.eventstore.api.reactor.EventStoreQueries;
+import org.occurrent.eventstore.mongodb.cloudevent.CloudEventDataCompression;
+import org.occurrent.eventstore.mongodb.internal.EventCounters;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.transaction.ReactiveTransactionManager;
 import org.springframework.transaction.reactive.TransactionalOperator;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.StringJoiner;
 import java.util.function.Function;
@@ -35,12 +41,20 @@ import static java.util.Objects.requireNonNull;
 public class EventStoreConfig {
     private static final Function<Query, Query> DEFAULT_QUERY_OPTIONS_FUNCTION = Function.identity();
     private static final Function<Query, Query> DEFAULT_READ_OPTIONS_FUNCTION = Function.identity();
+    public static final int DEFAULT_WRITE_CHUNK_SIZE = 1000;
 
     public final String eventStoreCollectionName;
     public final TransactionalOperator transactionalOperator;
     public final TimeRepresentation timeRepresentation;
     public final Function<Query, Query> queryOptions;
     public final Function<Query, Query> readOptions;
+    public final boolean transactionlessAppend;
+    public final String streamHeadsCollectionName;
+    public final CloudEventDataCompression dataCompression;
+    public final boolean singleRoundTripReads;
+    public final int writeChunkSize;
+    public final String eventCountersCollectionName;
+    public final List<String> eventCounterAttributes;
 
     /**
      * Create a new instance of {@code EventStoreConfig}.
@@ -50,32 +64,53 @@ public class EventStoreConfig {
      * @param timeRepresentation       How time should be represented in the database
      */
     public EventStoreConfig(String eventStoreCollectionName, TransactionalOperator transactionalOperator, TimeRepresentation timeRepresentation) {
-        this(eventStoreCollectionName, transactionalOperator, timeRepresentation, DEFAULT_QUERY_OPTIONS_FUNCTION, DEFAULT_READ_OPTIONS_FUNCTION);
+        this(eventStoreCollectionName, transactionalOperator, timeRepresentation, DEFAULT_QUERY_OPTIONS_FUNCTION, DEFAULT_READ_OPTIONS_FUNCTION, false, null, CloudEventDataCompression.none(), false, DEFAULT_WRITE_CHUNK_SIZE, null, EventCounters.DEFAULT_COUNTED_ATTRIBUTES);
     }
 
-    private EventStoreConfig(String eventStoreCollectionName, TransactionalOperator transactionalOperator, TimeRepresentation timeRepresentation, Function<Query, Query> queryOptions, Function<Query, Query> readOptions) {
+    private EventStoreConfig(String eventStoreCollectionName, TransactionalOperator transactionalOperator, TimeRepresentation timeRepresentation, Function<Query, Query> queryOptions, Function<Query, Query> readOptions, boolean transactionlessAppend, String streamHeadsCollectionName, CloudEventDataCompression dataCompression, boolean singleRoundTripReads, int writeChunkSize, String eventCountersCollectionName, List<String> eventCounterAttributes) {
         requireNonNull(eventStoreCollectionName, "Event store collection name cannot be null");
         requireNonNull(transactionalOperator, TransactionalOperator.class.getSimpleName() + " cannot be null");
         requireNonNull(timeRepresentation, TimeRepresentation.class.getSimpleName() + " cannot be null");
+        if (transactionlessAppend && streamHeadsCollectionName != null) {
+            throw new IllegalArgumentException("Transactionless append cannot be combined with a stream heads collection since the stream heads must be updated in the same transaction as the events are written");
+        }
+        if (transactionlessAppend && eventCountersCollectionName != null) {
+            throw new IllegalArgumentException("Transactionless append cannot be combined with an event counters collection since the event counters must be updated in the same transaction as the events are written");
+        }
+        if (writeChunkSize < 1) {
+            throw new IllegalArgumentException("Write chunk size must be greater than zero");
+        }
         this.eventStoreCollectionName = eventStoreCollectionName;
         this.transactionalOperator = transactionalOperator;
         this.timeRepresentation = timeRepresentation;
         this.queryOptions = queryOptions == null ? DEFAULT_QUERY_OPTIONS_FUNCTION : queryOptions;
         this.readOptions = readOptions == null ? DEFAULT_READ_OPTIONS_FUNCTION : readOptions;
+        this.transactionlessAppend = transactionlessAppend;
+        this.streamHeadsCollectionName = streamHeadsCollectionName;
+        this.dataCompression = dataCompression == null ? CloudEventDataCompression.none() : dataCompression;
+        this.singleRoundTripReads = singleRoundTripReads;
+        this.writeChunkSize = writeChunkSize;
+        this.eventCountersCollectionName = eventCountersCollectionName;
+        this.eventCounterAttributes = Collections.unmodifiableList(new ArrayList<>(EventCounters.requireCountableAttributes(eventCounterAttributes)));
     }
 
 
+    // The single round-trip read of a part of a stream is an aggregation, to which the (find) query and read options can't be applied
+    boolean hasCustomQueryOrReadOptions() {
+        return queryOptions != DEFAULT_QUERY_OPTIONS_FUNCTION || readOptions != DEFAULT_READ_OPTIONS_FUNCTION;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof EventStoreConfig)) return false;
         EventStoreConfig that = (EventStoreConfig) o;
-        return Objects.equals(eventStoreCollectionName, that.eventStoreCollectionName) && Objects.equals(transactionalOperator, that.transactionalOperator) && timeRepresentation == that.timeRepresentation && Objects.equals(queryOptions, that.queryOptions) && Objects.equals(readOptions, that.readOptions);
+        return transactionlessAppend == that.transactionlessAppend && Objects.equals(eventStoreCollectionName, that.eventStoreCollectionName) && Objects.equals(transactionalOperator, that.transactionalOperator) && timeRepresentation == that.timeRepresentation && Objects.equals(queryOptions, that.queryOptions) && Objects.equals(readOptions, that.readOptions) && Objects.equals(streamHeadsCollectionName, that.streamHeadsCollectionName) && Objects.equals(dataCompression, that.dataCompression) && singleRoundTripReads == that.singleRoundTripReads && writeChunkSize == that.writeChunkSize && Objects.equals(eventCountersCollectionName, that.eventCountersCollectionName) && Objects.equals(eventCounterAttributes, that.eventCounterAttributes);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(eventStoreCollectionName, transactionalOperator, timeRepresentation, queryOptions, readOptions);
+        return Objects.hash(eventStoreCollectionName, transactionalOperator, timeRepresentation, queryOptions, readOptions, transactionlessAppend, streamHeadsCollectionName, dataCompression, singleRoundTripReads, writeChunkSize, eventCountersCollectionName, eventCounterAttributes);
     }
 
     @Override
@@ -86,6 +121,13 @@ public class EventStoreConfig {
                 .add("timeRepresentation=" + timeRepresentation)
                 .add("queryOptions=" + queryOptions)
                 .add("readOptions=" + readOptions)
+                .add("transactionlessAppend=" + transactionlessAppend)
+                .add("streamHeadsCollectionName=" + streamHeadsCollectionName)
+                .add("dataCompression=" + dataCompression)
+                .add("singleRoundTripReads=" + singleRoundTripReads)
+                .add("writeChunkSize=" + writeChunkSize)
+                .add("eventCountersCollectionName=" + eventCountersCollectionName)
+                .add("eventCounterAttributes=" + eventCounterAttributes)
                 .toString();
     }
 
@@ -95,6 +137,13 @@ public class EventStoreConfig {
         private TimeRepresentation timeRepresentation;
         private Function<Query, Query> queryOptions;
         private Function<Query, Query> readOptions;
+        private boolean transactionlessAppend = false;
+        private String streamHeadsCollectionName;
+        private CloudEventDataCompression dataCompression = CloudEventDataCompression.none();
+        private boolean singleRoundTripReads = false;
+        private int writeChunkSize = DEFAULT_WRITE_CHUNK_SIZE;
+        private String eventCountersCollectionName;
+        private List<String> eventCounterAttributes = EventCounters.DEFAULT_COUNTED_ATTRIBUTES;
 
         /**
          * @param eventStoreCollectionName The collection in which the events are persisted
@@ -163,8 +212,117 @@ public class EventStoreConfig {
             return this;
         }
 
+        /**
+         * Enable "transactionless append". When enabled, writes of a single event with an exact write condition such as {@code WriteCondition.streamVersionEq(n)}
+         * will insert the event with stream version {@code n+1} directly, without starting a transaction and without finding the current stream version first
+         * (only an index lookup that verifies that version {@code n} exists is made, to prevent gaps in the stream). The unique index on stream id and stream version
+         * guarantees that a concurrent write to the same stream fails, which is then reported as a {@link org.occurrent.eventstore.api.WriteConditionNotFulfilledException}.
+         * This saves a sorted query and a transaction commit for each append.
+         * <br><br>
+         * Writes of several events (that needs to be atomic) and writes with other write conditions are still performed in a transaction. Default is {@code false}.
+         *
+         * @param transactionlessAppend {@code true} to enable transactionless append, {@code false} otherwise.
+         * @return A same {@code Builder instance}
+         */
+        public Builder transactionlessAppend(boolean transactionlessAppend) {
+            this.transactionlessAppend = transactionlessAppend;
+            return this;
+        }
+
+        /**
+         * Maintain a "stream heads" collection, with the given name, that contains one document per event stream with the current version,
+         * the time of the last event and the number of events in the stream. The stream head document is updated in the same transaction as the events are written.
+         * When enabled, finding the current version of a stream (which is done on every read and write), {@link org.occurrent.eventstore.api.reactor.EventStore#exists(String)} and
+         * {@link org.occurrent.eventstore.api.reactor.ReadEventStream#streamVersions(java.util.Collection)} are single point lookups in the stream heads collection instead of index scans
+         * in the event collection. If the stream heads collection doesn't exist when the event store is created, it's created and populated from the events in the event collection.
+         * <br><br>
+         * Cannot be combined with {@link #transactionlessAppend(boolean)}. Default is {@code null}, i.e. no stream heads collection is maintained.
+         *
+         * @param streamHeadsCollectionName The name of the stream heads collection, or {@code null} to disable stream heads.
+         * @return A same {@code Builder instance}
+         */
+        public Builder streamHeadsCollectionName(String streamHeadsCollectionName) {
+            this.streamHeadsCollectionName = streamHeadsCollectionName;
+            return this;
+        }
+
+        /**
+         * Compress the data of cloud events of certain types before they're written to MongoDB, see {@link CloudEventDataCompression}. Compressed data is always
+         * decompressed when read, regardless of this setting. Note that queries on {@code data} fields will not match cloud events whose data is compressed.
+         * Default is {@link CloudEventDataCompression#none()}.
+         *
+         * @param dataCompression The {@link CloudEventDataCompression} to use
+         * @return A same {@code Builder instance}
+         */
+        public Builder dataCompression(CloudEventDataCompression dataCompression) {
+            this.dataCompression = dataCompression;
+            return this;
+        }
+
+        /**
+         * Enable "single round-trip reads". By default, {@link org.occurrent.eventstore.api.reactor.EventStore#read(String)} first finds the current version of the stream and then queries its events,
+         * i.e. two round-trips to MongoDB. When enabled, reading an entire stream only queries the events and the version of the stream is derived from the last event, and reading a part of a stream
+         * (skip/limit or a version range) uses a single aggregation that returns both the events and the current version of the stream. The semantics of the returned
+         * {@link org.occurrent.eventstore.api.reactor.EventStream} are the same.
+         * <br><br>
+         * Note that the events are fetched before the {@code EventStream} is returned (since the version must be known), so this is intended for streams that are read entirely anyway,
+         * such as when loading the events of an aggregate. A part of a stream cannot exceed the maximum BSON document size (16 MB). Default is {@code false}.
+         *
+         * @param singleRoundTripReads {@code true} to enable single round-trip reads, {@code false} otherwise.
+         * @return A same {@code Builder instance}
+         */
+        public Builder singleRoundTripReads(boolean singleRoundTripReads) {
+            this.singleRoundTripReads = singleRoundTripReads;
+            return this;
+        }
+
+        /**
+         * Configure the maximum number of events that are inserted at once by {@link org.occurrent.eventstore.api.reactor.EventStore#write(String, org.occurrent.eventstore.api.WriteCondition, reactor.core.publisher.Flux)}.
+         * The events are consumed from the {@code Flux} (with backpressure) and inserted in chunks of this size as they arrive, all in the same transaction. This means that
+         * the memory used by a write doesn't depend on the number of events that are written, which is important when importing or migrating streams with many events.
+         * Default is {@value #DEFAULT_WRITE_CHUNK_SIZE}.
+         *
+         * @param writeChunkSize The maximum number of events to insert at once, must be greater than zero.
+         * @return A same {@code Builder instance}
+         */
+        public Builder writeChunkSize(int writeChunkSize) {
+            this.writeChunkSize = writeChunkSize;
+            return this;
+        }
+
+        /**
+         * Maintain an "event counters" collection, with the given name, that contains the number of events per value of the {@link #eventCounterAttributes(String...) counted attributes}.
+         * The counters are updated in the same transaction as the events are written, updated or deleted. When enabled, {@link org.occurrent.eventstore.api.reactor.EventStoreQueries#count(org.occurrent.filter.Filter)}
+         * and {@link org.occurrent.eventstore.api.reactor.EventStoreQueries#exists(org.occurrent.filter.Filter)} are served from the counters, instead of by counting the documents in the event collection,
+         * for filters such as {@code Filter.streamId("streamId")} (or {@code Filter.type("type")} if the type is counted) and "or" compositions of such filters on the same attribute.
+         * Other filters are counted in the event collection as before. The first event store that is created with event counters populates the counters from the events in the event collection, in batches that are recounted in transactions so that concurrent writes are neither lost nor counted twice. Until this is completed, count and exists are served from the event collection.
+         * <br><br>
+         * Cannot be combined with {@link #transactionlessAppend(boolean)}. Default is {@code null}, i.e. no event counters collection is maintained.
+         *
+         * @param eventCountersCollectionName The name of the event counters collection, or {@code null} to disable event counters.
+         * @return A same {@code Builder instance}
+         */
+        public Builder eventCountersCollectionName(String eventCountersCollectionName) {
+            this.eventCountersCollectionName = eventCountersCollectionName;
+            return this;
+        }
+
+        /**
+         * The attributes to count in the {@link #eventCountersCollectionName(String) event counters collection}, any of {@code "type"}, {@code "source"} and {@code "streamid"}.
+         * All writes of events with the same value of a counted attribute update the same counter document, so concurrent transactions writing events of the same type
+         * (or from the same source) conflict and are retried if the type (or source) is counted. Changing the counted attributes requires that the event counters collection is dropped,
+         * so that it's recreated with the new attributes. Default is {@code "streamid"}.
+         *
+         * @param eventCounterAttributes The attributes to count
+         * @return A same {@code Builder instance}
+         */
+        public Builder eventCounterAttributes(String... eventCounterAttributes) {
+            this.eventCounterAttributes = eventCounterAttributes == null ? null : Arrays.asList(eventCounterAttributes);
+            return this;
+        }
+
         public EventStoreConfig build() {
-            return new EventStoreConfig(eventStoreCollectionName, transactionalOperator, timeRepresentation, queryOptions, readOptions);
+            return new EventStoreConfig(eventStoreCollectionName, transactionalOperator, timeRepresentation, queryOptions, readOptions, transactionlessAppend, streamHeadsCollectionName, dataCompression, singleRoundTripReads, writeChunkSize, eventCountersCollectionName, eventCounterAttributes);
         }
     }
 }
\ No newline at end of file
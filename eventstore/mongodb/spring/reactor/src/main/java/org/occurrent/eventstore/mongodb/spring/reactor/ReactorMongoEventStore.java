@@ -16,11 +16,16 @@
 
 package org.occurrent.eventstore.mongodb.spring.reactor;
 
+import com.mongodb.ErrorCategory;
 import com.mongodb.MongoException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.reactivestreams.client.MongoCollection;
 import io.cloudevents.CloudEvent;
+import io.cloudevents.core.v1.CloudEventV1;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 import org.occurrent.cloudevents.OccurrentExtensionGetter;
@@ -29,9 +34,14 @@ import org.occurrent.eventstore.api.reactor.EventStore;
 import org.occurrent.eventstore.api.reactor.EventStoreOperations;
 import org.occurrent.eventstore.api.reactor.EventStoreQueries;
 import org.occurrent.eventstore.api.reactor.EventStream;
+import org.occurrent.eventstore.mongodb.cloudevent.CloudEventDataCompression;
+import org.occurrent.eventstore.mongodb.internal.EventCounters;
+import org.occurrent.eventstore.mongodb.internal.ExpectedStreamVersion;
 import org.occurrent.eventstore.mongodb.internal.MongoExceptionTranslator;
 import org.occurrent.eventstore.mongodb.internal.MongoExceptionTranslator.WriteContext;
 import org.occurrent.eventstore.mongodb.internal.OccurrentCloudEventMongoDocumentMapper;
+import org.occurrent.eventstore.mongodb.internal.SingleRoundTripStreamRead;
+import org.occurrent.eventstore.mongodb.internal.StreamHeads;
 import org.occurrent.filter.Filter;
 import org.occurrent.mongodb.spring.filterqueryconversion.internal.FilterConverter;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
@@ -39,24 +49,30 @@ import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.UncategorizedMongoDbException;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
 import java.net.URI;
-import java.util.Collection;
-import java.util.Objects;
+import java.util.*;
 import java.util.function.Function;
 
 import static java.util.Objects.requireNonNull;
 import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
 import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_VERSION;
 import static org.occurrent.eventstore.api.SortBy.SortDirection.ASCENDING;
+import static org.occurrent.eventstore.api.internal.VersionRange.requireValidVersionRange;
 import static org.occurrent.mongodb.spring.sortconversion.internal.SortConverter.convertToSpringSort;
+import static org.springframework.data.domain.Sort.Direction.ASC;
 import static org.springframework.data.domain.Sort.Direction.DESC;
 import static org.springframework.data.mongodb.SessionSynchronization.ALWAYS;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 
 /**
@@ -71,9 +87,18 @@ public class ReactorMongoEventStore implements EventStore, EventStoreOperations,
     private final ReactiveMongoTemplate mongoTemplate;
     private final String eventStoreCollectionName;
     private final TimeRepresentation timeRepresentation;
+    private final CloudEventDataCompression dataCompression;
     private final TransactionalOperator transactionalOperator;
     private final Function<Query, Query> queryOptions;
     private final Function<Query, Query> readOptions;
+    private final boolean transactionlessAppend;
+    private final String streamHeadsCollectionName;
+    private final String eventCountersCollectionName;
+    private final EventCounters eventCounters;
+    private volatile boolean eventCountersPopulated;
+    private final boolean singleRoundTripReads;
+    private final boolean singleRoundTripPartialReads;
+    private final int writeChunkSize;
 
     /**
      * Create a new instance of {@code SpringReactorMongoEventStore}
@@ -88,9 +113,17 @@ public class ReactorMongoEventStore implements EventStore, EventStoreOperations,
         this.eventStoreCollectionName = config.eventStoreCollectionName;
         this.transactionalOperator = config.transactionalOperator;
         this.timeRepresentation = config.timeRepresentation;
+        this.dataCompression = config.dataCompression;
         this.queryOptions = config.queryOptions;
         this.readOptions = config.readOptions;
-        initializeEventStore(eventStoreCollectionName, mongoTemplate).block();
+        this.transactionlessAppend = config.transactionlessAppend;
+        this.streamHeadsCollectionName = config.streamHeadsCollectionName;
+        this.eventCountersCollectionName = config.eventCountersCollectionName;
+        this.eventCounters = new EventCounters(config.eventCounterAttributes);
+        this.singleRoundTripReads = config.singleRoundTripReads;
+        this.singleRoundTripPartialReads = config.singleRoundTripReads && !config.hasCustomQueryOrReadOptions();
+        this.writeChunkSize = config.writeChunkSize;
+        initializeEventStore(eventStoreCollectionName, streamHeadsCollectionName, eventCountersCollectionName, eventCounters, mongoTemplate, transactionalOperator).block();
     }
 
     @Override
@@ -104,49 +137,205 @@ public class ReactorMongoEventStore implements EventStore, EventStoreOperations,
             throw new IllegalArgumentException(WriteCondition.class.getSimpleName() + " cannot be null");
         }
 
+        OptionalLong expectedStreamVersion = ExpectedStreamVersion.fromWriteCondition(writeCondition);
+        if (transactionlessAppend && expectedStreamVersion.isPresent()) {
+            long expectedVersion = expectedStreamVersion.getAsLong();
+            return events.collectList().flatMap(eventList -> {
+                Mono<WriteResult> writeInTransaction = writeInTransaction(streamId, writeCondition, Flux.fromIterable(eventList));
+                if (eventList.size() == 1) {
+                    return streamHasVersion(streamId, expectedVersion)
+                            .flatMap(hasVersion -> hasVersion ? appendWithoutTransaction(streamId, expectedVersion, writeCondition, eventList.get(0)) : writeInTransaction);
+                } else {
+                    return writeInTransaction;
+                }
+            });
+        } else {
+            return writeInTransaction(streamId, writeCondition, events);
+        }
+    }
+
+    private Mono<WriteResult> writeInTransaction(String streamId, WriteCondition writeCondition, Flux<CloudEvent> events) {
         Mono<Long> operation = currentStreamVersion(streamId)
                 .flatMap(currentStreamVersion -> validateWriteCondition(streamId, writeCondition, currentStreamVersion))
-                .flatMap(currentStreamVersion -> {
-                    Flux<Document> documentFlux = convertEventsToMongoDocuments(streamId, events, currentStreamVersion);
-                    Mono<Long> newStreamVersionFlux = documentFlux.collectList().flatMap(documents -> {
-                        final long newStreamVersion;
-                        if (documents.isEmpty()) {
-                            newStreamVersion = currentStreamVersion;
-                        } else {
-                            newStreamVersion = documents.get(documents.size() - 1).getLong(STREAM_VERSION);
-                        }
-                        return insertAll(streamId, currentStreamVersion, writeCondition, documents).then(Mono.just(newStreamVersion));
-                    });
-                    return newStreamVersionFlux.switchIfEmpty(Mono.just(currentStreamVersion));
-                });
+                .flatMap(currentStreamVersion -> convertEventsToMongoDocuments(streamId, events, currentStreamVersion)
+                        // The events are inserted in chunks as they arrive so that all events never need to be kept in memory at once.
+                        // A prefetch of 1 makes sure that the next chunk is not requested before the previous chunk has been inserted.
+                        .buffer(writeChunkSize)
+                        .concatMap(documents -> insertAll(streamId, currentStreamVersion, writeCondition, documents)
+                                .then(Mono.defer(() -> updateEventCounters(eventCounters.incrementsAfterWrite(documents))))
+                                .then(Mono.fromSupplier(() -> WrittenEvents.from(documents))), 1)
+                        .reduce(WrittenEvents::andThen)
+                        .flatMap(writtenEvents -> updateStreamHeadAfterWrite(streamId, writtenEvents).thenReturn(writtenEvents.lastStreamVersion))
+                        .switchIfEmpty(Mono.just(currentStreamVersion)));
 
         return transactionalOperator.transactional(operation)
                 .map(newStreamVersion -> new WriteResult(streamId, newStreamVersion));
     }
 
+    private Mono<Void> updateStreamHeadAfterWrite(String streamId, WrittenEvents writtenEvents) {
+        if (streamHeadsCollectionName == null) {
+            return Mono.empty();
+        }
+        Update update = new Update()
+                .set(StreamHeads.VERSION, writtenEvents.lastStreamVersion)
+                .set(StreamHeads.LAST_EVENT_TIME, writtenEvents.lastEventTime)
+                .inc(StreamHeads.EVENT_COUNT, writtenEvents.numberOfEvents);
+        return mongoTemplate.upsert(streamHeadIdEqualTo(streamId), update, streamHeadsCollectionName).then();
+    }
+
+    private Mono<Void> updateEventCounters(Map<String, Long> increments) {
+        if (eventCountersCollectionName == null) {
+            return Mono.empty();
+        }
+        List<WriteModel<Document>> updates = EventCounters.updates(increments);
+        if (updates.isEmpty()) {
+            return Mono.empty();
+        }
+        return mongoTemplate.createMono(eventCountersCollectionName, collection -> collection.bulkWrite(updates)).then();
+    }
+
+    /**
+     * What's needed from the events that have been written so far to return the {@link WriteResult} and update the stream head, without keeping the events themselves.
+     */
+    private static class WrittenEvents {
+        private final long lastStreamVersion;
+        private final Object lastEventTime;
+        private final int numberOfEvents;
+
+        private WrittenEvents(long lastStreamVersion, Object lastEventTime, int numberOfEvents) {
+            this.lastStreamVersion = lastStreamVersion;
+            this.lastEventTime = lastEventTime;
+            this.numberOfEvents = numberOfEvents;
+        }
+
+        private static WrittenEvents from(List<Document> cloudEventDocuments) {
+            Document lastCloudEventDocument = cloudEventDocuments.get(cloudEventDocuments.size() - 1);
+            return new WrittenEvents(lastCloudEventDocument.getLong(STREAM_VERSION), lastCloudEventDocument.get(CloudEventV1.TIME), cloudEventDocuments.size());
+        }
+
+        private WrittenEvents andThen(WrittenEvents next) {
+            return new WrittenEvents(next.lastStreamVersion, next.lastEventTime, numberOfEvents + next.numberOfEvents);
+        }
+    }
+
+    // Relies on the unique (streamid, streamversion) index to detect concurrent writes instead of using a transaction
+    private Mono<WriteResult> appendWithoutTransaction(String streamId, long expectedStreamVersion, WriteCondition writeCondition, CloudEvent event) {
+        long newStreamVersion = expectedStreamVersion + 1;
+        Document cloudEventDocument = OccurrentCloudEventMongoDocumentMapper.convertToDocument(timeRepresentation, dataCompression, streamId, newStreamVersion, event);
+        return insertAll(streamId, expectedStreamVersion, writeCondition, Collections.singletonList(cloudEventDocument))
+                .then(Mono.fromSupplier(() -> new WriteResult(streamId, newStreamVersion)));
+    }
+
+    // The unique index prevents two writers from writing the same version, but it doesn't prevent gaps. We thus make sure
+    // that the expected version actually exists (using an index lookup) before appending the next version.
+    private Mono<Boolean> streamHasVersion(String streamId, long streamVersion) {
+        if (streamVersion == 0) {
+            return Mono.just(true);
+        }
+        return mongoTemplate.exists(Query.query(streamIdEqualToCriteria(streamId).and(STREAM_VERSION).is(streamVersion)), eventStoreCollectionName);
+    }
+
+    /**
+     * Find the current version of several event streams. If a stream heads collection is configured this is a single lookup
+     * in the stream heads collection, otherwise the versions are found using a single aggregation on the event collection.
+     */
+    @Override
+    public Mono<Map<String, Long>> streamVersions(Collection<String> streamIds) {
+        requireNonNull(streamIds, "Stream ids cannot be null");
+        if (streamIds.isEmpty()) {
+            return Mono.just(Collections.emptyMap());
+        }
+
+        final Flux<Document> documentsWithStreamVersions;
+        final String versionField;
+        if (streamHeadsCollectionName == null) {
+            // Sorting on the (streamid, streamversion) index in the same direction as "first" allows MongoDB to only visit the
+            // latest index entry for each stream.
+            Aggregation aggregation = newAggregation(
+                    match(where(STREAM_ID).in(streamIds)),
+                    sort(Sort.by(DESC, STREAM_ID, STREAM_VERSION)),
+                    group(STREAM_ID).first(STREAM_VERSION).as(STREAM_VERSION));
+            documentsWithStreamVersions = mongoTemplate.aggregate(aggregation, eventStoreCollectionName, Document.class);
+            versionField = STREAM_VERSION;
+        } else {
+            Query query = Query.query(where(StreamHeads.ID).in(streamIds));
+            query.fields().include(StreamHeads.VERSION);
+            documentsWithStreamVersions = mongoTemplate.find(query, Document.class, streamHeadsCollectionName);
+            versionField = StreamHeads.VERSION;
+        }
+
+        return documentsWithStreamVersions
+                .collectMap(document -> document.getString(ID), document -> document.getLong(versionField))
+                .map(currentStreamVersions -> {
+                    Map<String, Long> streamVersions = new LinkedHashMap<>();
+                    streamIds.forEach(streamId -> streamVersions.put(streamId, currentStreamVersions.getOrDefault(streamId, 0L)));
+                    return streamVersions;
+                });
+    }
+
     @Override
     public Mono<Boolean> exists(String streamId) {
+        if (streamHeadsCollectionName != null) {
+            return mongoTemplate.exists(streamHeadIdEqualTo(streamId), streamHeadsCollectionName);
+        }
         return mongoTemplate.exists(queryOptions.apply(streamIdEqualTo(streamId)), eventStoreCollectionName);
     }
 
     @Override
     public Mono<EventStream<CloudEvent>> read(String streamId, int skip, int limit) {
-        Mono<EventStreamImpl> eventStream = readEventStream(streamId, skip, limit);
+        Mono<EventStreamImpl> eventStream = readEventStream(streamId, 0, Long.MAX_VALUE, skip, limit);
+        return convertToCloudEvent(timeRepresentation, eventStream);
+    }
+
+    @Override
+    public Mono<EventStream<CloudEvent>> readVersionRange(String streamId, long fromVersionExclusive, long toVersionInclusive) {
+        requireValidVersionRange(streamId, fromVersionExclusive, toVersionInclusive);
+        Mono<EventStreamImpl> eventStream = readEventStream(streamId, fromVersionExclusive, toVersionInclusive, 0, Integer.MAX_VALUE);
         return convertToCloudEvent(timeRepresentation, eventStream);
     }
 
     // Read
-    private Mono<EventStreamImpl> readEventStream(String streamId, int skip, int limit) {
+    private Mono<EventStreamImpl> readEventStream(String streamId, long fromVersionExclusive, long toVersionInclusive, int skip, int limit) {
+        if (singleRoundTripReads && SingleRoundTripStreamRead.isEntireStream(fromVersionExclusive, toVersionInclusive, skip, limit)) {
+            return readEntireEventStreamInSingleRoundTrip(streamId);
+        } else if (singleRoundTripPartialReads) {
+            // Fall back to reading the events with a cursor if the result is too large
+            return readPartOfEventStreamInSingleRoundTrip(streamId, fromVersionExclusive, toVersionInclusive, skip, limit)
+                    .onErrorResume(e -> e instanceof MongoException && SingleRoundTripStreamRead.isResultTooLarge((MongoException) e),
+                            __ -> readEventStreamWithCursor(streamId, fromVersionExclusive, toVersionInclusive, skip, limit));
+        }
+        return readEventStreamWithCursor(streamId, fromVersionExclusive, toVersionInclusive, skip, limit);
+    }
+
+    private Mono<EventStreamImpl> readEventStreamWithCursor(String streamId, long fromVersionExclusive, long toVersionInclusive, int skip, int limit) {
         return currentStreamVersion(streamId)
                 .flatMap(currentStreamVersion -> {
                     // We use "lte" currentStreamVersion so that we don't have the start transactions on read. This means that even
                     // if another thread has inserted more events after we've read "currentStreamVersion" it doesn't matter.
-                    Flux<Document> cloudEventDocuments = readCloudEvents(readOptions.apply(streamIdAndStreamVersionLessThanOrEqualTo(streamId, currentStreamVersion)), skip, limit, SortBy.streamVersion(ASCENDING));
+                    Query query = streamIdAndStreamVersionInRange(streamId, fromVersionExclusive, Math.min(currentStreamVersion, toVersionInclusive));
+                    Flux<Document> cloudEventDocuments = readCloudEvents(readOptions.apply(query), skip, limit, SortBy.streamVersion(ASCENDING));
                     return Mono.just(new EventStreamImpl(streamId, currentStreamVersion, cloudEventDocuments));
                 })
                 .switchIfEmpty(Mono.fromSupplier(() -> new EventStreamImpl(streamId, 0, Flux.empty())));
     }
 
+    private Mono<EventStreamImpl> readEntireEventStreamInSingleRoundTrip(String streamId) {
+        return readCloudEvents(readOptions.apply(streamIdEqualTo(streamId)), 0, Integer.MAX_VALUE, SortBy.streamVersion(ASCENDING))
+                .collectList()
+                .map(documents -> {
+                    long currentStreamVersion = documents.isEmpty() ? 0 : documents.get(documents.size() - 1).getLong(STREAM_VERSION);
+                    return new EventStreamImpl(streamId, currentStreamVersion, Flux.fromIterable(documents));
+                });
+    }
+
+    private Mono<EventStreamImpl> readPartOfEventStreamInSingleRoundTrip(String streamId, long fromVersionExclusive, long toVersionInclusive, int skip, int limit) {
+        List<Bson> pipeline = SingleRoundTripStreamRead.partOfStream(streamId, fromVersionExclusive, toVersionInclusive, skip, limit);
+        return mongoTemplate.getCollection(eventStoreCollectionName)
+                .flatMap(collection -> Mono.from(collection.aggregate(pipeline).first()))
+                .map(result -> new EventStreamImpl(streamId, SingleRoundTripStreamRead.version(result), Flux.fromIterable(SingleRoundTripStreamRead.events(result))))
+                .switchIfEmpty(Mono.fromSupplier(() -> new EventStreamImpl(streamId, 0, Flux.empty())));
+    }
+
     private Flux<Document> readCloudEvents(Query query, int skip, int limit, SortBy sortBy) {
         if (isSkipOrLimitDefined(skip, limit)) {
             query.skip(skip).limit(limit);
@@ -157,6 +346,14 @@ public class ReactorMongoEventStore implements EventStore, EventStoreOperations,
     }
 
     private Mono<Long> currentStreamVersion(String streamId) {
+        if (streamHeadsCollectionName != null) {
+            Query query = streamHeadIdEqualTo(streamId);
+            query.fields().include(StreamHeads.VERSION);
+            return mongoTemplate.findOne(query, Document.class, streamHeadsCollectionName)
+                    .map(streamHead -> streamHead.getLong(StreamHeads.VERSION))
+                    .switchIfEmpty(Mono.just(0L));
+        }
+
         Query query = readOptions.apply(streamIdEqualTo(streamId));
         query.fields().include(STREAM_VERSION);
         return mongoTemplate.findOne(queryOptions.apply(query.with(Sort.by(DESC, STREAM_VERSION)).limit(1)), Document.class, eventStoreCollectionName)
@@ -192,7 +389,8 @@ public class ReactorMongoEventStore implements EventStore, EventStoreOperations,
     }
 
     // Initialization
-    private static Mono<Void> initializeEventStore(String eventStoreCollectionName, ReactiveMongoTemplate mongoTemplate) {
+    private static Mono<Void> initializeEventStore(String eventStoreCollectionName, String streamHeadsCollectionName, String eventCountersCollectionName, EventCounters eventCounters, ReactiveMongoTemplate mongoTemplate,
+                                                   TransactionalOperator transactionalOperator) {
         Mono<MongoCollection<Document>> createEventStoreCollection = createCollection(eventStoreCollectionName, mongoTemplate);
 
         // Cloud spec defines id + source must be unique!
@@ -206,7 +404,58 @@ public class ReactorMongoEventStore implements EventStore, EventStoreOperations,
         // See https://docs.spring.io/spring-data/mongodb/docs/current/reference/html/#mongo.transactions.transaction-template
         mongoTemplate.setSessionSynchronization(ALWAYS);
 
-        return createEventStoreCollection.then(indexIdAndSource).then(indexStreamIdAndAscendingStreamVersion).then();
+        return createEventStoreCollection.then(indexIdAndSource).then(indexStreamIdAndAscendingStreamVersion).then(initializeStreamHeads(eventStoreCollectionName, streamHeadsCollectionName, mongoTemplate))
+                .then(initializeEventCounters(eventStoreCollectionName, eventCountersCollectionName, eventCounters, mongoTemplate, transactionalOperator));
+    }
+
+    private static Mono<Void> initializeStreamHeads(String eventStoreCollectionName, String streamHeadsCollectionName, ReactiveMongoTemplate mongoTemplate) {
+        if (streamHeadsCollectionName == null) {
+            return Mono.empty();
+        }
+        // Create the collection explicitly since collections cannot be created implicitly inside a transaction (before MongoDB 4.4).
+        // Populate the stream heads from the events that have been written before the stream heads collection was enabled, or while it was disabled.
+        return mongoTemplate.collectionExists(streamHeadsCollectionName)
+                .flatMap(exists -> exists ? Mono.empty() : mongoTemplate.createCollection(streamHeadsCollectionName).then())
+                .then(mongoTemplate.getCollection(eventStoreCollectionName))
+                .flatMap(eventStoreCollection -> Mono.from(eventStoreCollection.find().first())
+                        .flatMap(__ -> Mono.from(eventStoreCollection.aggregate(StreamHeads.backfill(streamHeadsCollectionName)).toCollection())))
+                .then();
+    }
+
+    private static Mono<Void> initializeEventCounters(String eventStoreCollectionName, String eventCountersCollectionName, EventCounters eventCounters, ReactiveMongoTemplate mongoTemplate,
+                                                      TransactionalOperator transactionalOperator) {
+        if (eventCountersCollectionName == null) {
+            return Mono.empty();
+        }
+        // Create the collection explicitly since collections cannot be created implicitly inside a transaction (before MongoDB 4.4).
+        Mono<MongoCollection<Document>> createEventCountersCollection = mongoTemplate.collectionExists(eventCountersCollectionName)
+                .flatMap(exists -> exists ? mongoTemplate.getCollection(eventCountersCollectionName) : mongoTemplate.createCollection(eventCountersCollectionName));
+        // Populate the counters from the events that have been written before the event counters collection was enabled. Only the event store that manages
+        // to insert the backfill marker does this, so that the counters are only populated once even if several event stores are started concurrently.
+        // The counters are recounted in batches, each in a transaction that conflicts with (and is retried after) concurrent writes that update the same counters.
+        return createEventCountersCollection.flatMap(eventCountersCollection -> Mono.from(eventCountersCollection.insertOne(eventCounters.backfillMarker()))
+                .then(mongoTemplate.getCollection(eventStoreCollectionName))
+                .flatMap(eventStoreCollection -> Flux.from(eventStoreCollection.aggregate(eventCounters.counterIdsOfAllEvents()))
+                        .map(counter -> counter.getString(EventCounters.ID))
+                        .buffer(EventCounters.BACKFILL_BATCH_SIZE)
+                        .concatMap(counterIds -> recountEventCounters(eventStoreCollectionName, eventCountersCollectionName, eventCounters, mongoTemplate, transactionalOperator, counterIds), 1)
+                        .then(Mono.from(eventCountersCollection.updateOne(EventCounters.backfillMarkerQuery(), EventCounters.backfillCompleted())).then())
+                        // Allow the counters to be populated the next time an event store is started
+                        .onErrorResume(e -> Mono.from(eventCountersCollection.deleteOne(EventCounters.backfillMarkerQuery())).then(Mono.error(e))))
+                .onErrorResume(e -> e instanceof MongoWriteException && ((MongoWriteException) e).getError().getCategory() == ErrorCategory.DUPLICATE_KEY,
+                        __ -> Mono.from(eventCountersCollection.find(EventCounters.backfillMarkerQuery()).first()).doOnNext(eventCounters::requireSameCountedAttributes).then()))
+                .then();
+    }
+
+    private static Mono<Void> recountEventCounters(String eventStoreCollectionName, String eventCountersCollectionName, EventCounters eventCounters, ReactiveMongoTemplate mongoTemplate,
+                                                   TransactionalOperator transactionalOperator, List<String> counterIds) {
+        List<Bson> countEvents = eventCounters.countEvents(eventCounters.eventsCountedBy(counterIds));
+        Mono<BulkWriteResult> recount = mongoTemplate.createFlux(eventStoreCollectionName, collection -> collection.aggregate(countEvents))
+                .collectList()
+                .flatMap(counts -> mongoTemplate.createMono(eventCountersCollectionName, collection -> collection.bulkWrite(EventCounters.recount(counterIds, counts))));
+        return transactionalOperator.transactional(recount)
+                .retryWhen(Retry.max(EventCounters.BACKFILL_MAX_ATTEMPTS - 1).filter(EventCounters::isTransientTransactionError))
+                .then();
     }
 
     private static Mono<String> createIndex(String eventStoreCollectionName, ReactiveMongoTemplate mongoTemplate, Bson index, IndexOptions indexOptions) {
@@ -233,7 +482,14 @@ public class ReactorMongoEventStore implements EventStore, EventStoreOperations,
     public Mono<Void> deleteEventStream(String streamId) {
         requireNonNull(streamId, "Stream id cannot be null");
 
-        return mongoTemplate.remove(streamIdEqualTo(streamId), eventStoreCollectionName).then();
+        if (streamHeadsCollectionName == null && eventCountersCollectionName == null) {
+            return mongoTemplate.remove(streamIdEqualTo(streamId), eventStoreCollectionName).then();
+        }
+        Mono<Void> operation = countEventsToDelete(streamIdEqualToCriteria(streamId))
+                .flatMap(eventCounterDecrements -> mongoTemplate.remove(streamIdEqualTo(streamId), eventStoreCollectionName)
+                        .then(streamHeadsCollectionName == null ? Mono.empty() : mongoTemplate.remove(streamHeadIdEqualTo(streamId), streamHeadsCollectionName))
+                        .then(updateEventCounters(eventCounterDecrements)));
+        return transactionalOperator.transactional(operation);
     }
 
     @Override
@@ -241,14 +497,57 @@ public class ReactorMongoEventStore implements EventStore, EventStoreOperations,
         requireNonNull(cloudEventId, "Cloud event id cannot be null");
         requireNonNull(cloudEventSource, "Cloud event source cannot be null");
 
-        return mongoTemplate.remove(Query.query(where("id").is(cloudEventId).and("source").is(cloudEventSource)), eventStoreCollectionName).then();
+        if (streamHeadsCollectionName == null && eventCountersCollectionName == null) {
+            return mongoTemplate.remove(cloudEventIdIs(cloudEventId, cloudEventSource), eventStoreCollectionName).then();
+        }
+        Mono<Void> operation = mongoTemplate.findAndRemove(cloudEventIdIs(cloudEventId, cloudEventSource), Document.class, eventStoreCollectionName)
+                .flatMap(deletedDocument -> recalculateStreamHeads(Collections.singletonList(deletedDocument.getString(STREAM_ID)))
+                        .then(updateEventCounters(eventCounters.decrementsAfterDelete(deletedDocument))));
+        return transactionalOperator.transactional(operation);
     }
 
     @Override
     public Mono<Void> delete(Filter filter) {
         requireNonNull(filter, "Filter cannot be null");
         final Query query = FilterConverter.convertFilterToQuery(timeRepresentation, filter);
-        return mongoTemplate.remove(query, eventStoreCollectionName).then();
+        if (streamHeadsCollectionName == null && eventCountersCollectionName == null) {
+            return mongoTemplate.remove(query, eventStoreCollectionName).then();
+        }
+        Mono<List<String>> findAffectedStreamIds = streamHeadsCollectionName == null ? Mono.just(Collections.emptyList()) : mongoTemplate.findDistinct(query, STREAM_ID, eventStoreCollectionName, String.class).collectList();
+        Mono<Void> operation = findAffectedStreamIds
+                .flatMap(affectedStreamIds -> countEventsToDelete(FilterConverter.convertFilterToCriteria(null, timeRepresentation, filter))
+                        .flatMap(eventCounterDecrements -> mongoTemplate.remove(query, eventStoreCollectionName)
+                                .then(recalculateStreamHeads(affectedStreamIds))
+                                .then(updateEventCounters(eventCounterDecrements))));
+        return transactionalOperator.transactional(operation);
+    }
+
+    private Mono<Map<String, Long>> countEventsToDelete(Criteria criteria) {
+        if (eventCountersCollectionName == null) {
+            return Mono.just(Collections.emptyMap());
+        }
+        List<AggregationOperation> operations = new ArrayList<>();
+        operations.add(match(criteria));
+        eventCounters.countPerCounter().forEach(stage -> operations.add(context -> stage));
+        return mongoTemplate.aggregate(newAggregation(operations), eventStoreCollectionName, Document.class).collectList().map(EventCounters::decrementsAfterDelete);
+    }
+
+    // Recalculates the stream heads from the events that remain in the event collection, stream heads of streams without events are removed
+    private Mono<Void> recalculateStreamHeads(List<String> streamIds) {
+        if (streamHeadsCollectionName == null || streamIds.isEmpty()) {
+            return Mono.empty();
+        }
+        Aggregation aggregation = newAggregation(
+                match(where(STREAM_ID).in(streamIds)),
+                sort(Sort.by(ASC, STREAM_ID, STREAM_VERSION)),
+                group(STREAM_ID).last(STREAM_VERSION).as(StreamHeads.VERSION).last(CloudEventV1.TIME).as(StreamHeads.LAST_EVENT_TIME).count().as(StreamHeads.EVENT_COUNT));
+        Set<String> streamIdsWithoutEvents = new HashSet<>(streamIds);
+        return mongoTemplate.aggregate(aggregation, eventStoreCollectionName, Document.class)
+                .concatMap(streamHead -> {
+                    streamIdsWithoutEvents.remove(streamHead.getString(StreamHeads.ID));
+                    return mongoTemplate.save(streamHead, streamHeadsCollectionName);
+                })
+                .then(Mono.defer(() -> streamIdsWithoutEvents.isEmpty() ? Mono.empty() : mongoTemplate.remove(Query.query(where(StreamHeads.ID).in(streamIdsWithoutEvents)), streamHeadsCollectionName).then()));
     }
 
     @Override
@@ -266,9 +565,21 @@ public class ReactorMongoEventStore implements EventStore, EventStoreOperations,
                         } else if (!Objects.equals(updatedCloudEvent, currentCloudEvent)) {
                             String streamId = OccurrentExtensionGetter.getStreamId(currentCloudEvent);
                             long streamVersion = OccurrentExtensionGetter.getStreamVersion(currentCloudEvent);
-                            Document updatedDocument = OccurrentCloudEventMongoDocumentMapper.convertToDocument(timeRepresentation, streamId, streamVersion, updatedCloudEvent);
+                            Document updatedDocument = OccurrentCloudEventMongoDocumentMapper.convertToDocument(timeRepresentation, dataCompression, streamId, streamVersion, updatedCloudEvent);
                             updatedDocument.put(ID, document.get(ID)); // Insert the Mongo ObjectID
-                            result = mongoTemplate.findAndReplace(cloudEventQuery, updatedDocument, eventStoreCollectionName).thenReturn(updatedCloudEvent);
+                            Mono<Document> replaceCloudEvent = mongoTemplate.findAndReplace(cloudEventQuery, updatedDocument, eventStoreCollectionName);
+                            // The type or source of the event may have been changed
+                            Mono<Void> updateEventCounters = Mono.defer(() -> updateEventCounters(eventCounters.incrementsAfterUpdate(document, updatedDocument)));
+                            if (streamHeadsCollectionName == null) {
+                                result = replaceCloudEvent.then(updateEventCounters).thenReturn(updatedCloudEvent);
+                            } else {
+                                // The time of the last event in the stream is stored in the stream head
+                                Query streamHeadOfLastEvent = Query.query(where(StreamHeads.ID).is(streamId).and(StreamHeads.VERSION).is(streamVersion));
+                                result = replaceCloudEvent
+                                        .then(mongoTemplate.updateFirst(streamHeadOfLastEvent, Update.update(StreamHeads.LAST_EVENT_TIME, updatedDocument.get(CloudEventV1.TIME)), streamHeadsCollectionName))
+                                        .then(updateEventCounters)
+                                        .thenReturn(updatedCloudEvent);
+                            }
                         } else {
                             result = Mono.empty();
                         }
@@ -293,17 +604,37 @@ public class ReactorMongoEventStore implements EventStore, EventStoreOperations,
         if (filter instanceof Filter.All) {
             //noinspection NullableProblems
             return mongoTemplate.createMono(eventStoreCollectionName, MongoCollection::estimatedDocumentCount);
+        }
+
+        Optional<Set<String>> counterIds = eventCountersCollectionName == null ? Optional.empty() : eventCounters.counterIdsOf(filter);
+        Mono<Long> countEvents = Mono.defer(() -> mongoTemplate.count(queryOptions.apply(FilterConverter.convertFilterToQuery(timeRepresentation, filter)), eventStoreCollectionName));
+        if (counterIds.isPresent()) {
+            Query query = Query.query(where(EventCounters.ID).in(counterIds.get()));
+            query.fields().include(EventCounters.COUNT);
+            Mono<Long> countFromCounters = mongoTemplate.find(query, Document.class, eventCountersCollectionName).map(EventCounters::count).reduce(0L, Long::sum);
+            return eventCountersPopulated().flatMap(populated -> populated ? countFromCounters : countEvents);
         } else {
-            final Query query = queryOptions.apply(FilterConverter.convertFilterToQuery(timeRepresentation, filter));
-            return mongoTemplate.count(query, eventStoreCollectionName);
+            return countEvents;
+        }
+    }
+
+    // The counters cannot be used until they have been populated from the events that were written before the event counters collection was enabled,
+    // which may be done by another event store that was started concurrently.
+    private Mono<Boolean> eventCountersPopulated() {
+        if (eventCountersPopulated) {
+            return Mono.just(true);
         }
+        return mongoTemplate.createMono(eventCountersCollectionName, collection -> collection.find(EventCounters.backfillMarkerQuery()).first())
+                .map(EventCounters::isBackfillCompleted)
+                .defaultIfEmpty(false)
+                .doOnNext(populated -> eventCountersPopulated = populated);
     }
 
     @Override
     public Mono<Boolean> exists(Filter filter) {
         requireNonNull(filter, "Filter cannot be null");
-        if (filter instanceof Filter.All) {
-            return count().map(cnt -> cnt > 0);
+        if (filter instanceof Filter.All || (eventCountersCollectionName != null && eventCounters.counterIdsOf(filter).isPresent())) {
+            return count(filter).map(cnt -> cnt > 0);
         } else {
             final Query query = queryOptions.apply(FilterConverter.convertFilterToQuery(timeRepresentation, filter));
             return mongoTemplate.exists(query, eventStoreCollectionName);
@@ -349,8 +680,17 @@ public class ReactorMongoEventStore implements EventStore, EventStoreOperations,
         return where(STREAM_ID).is(streamId);
     }
 
-    private static Query streamIdAndStreamVersionLessThanOrEqualTo(String streamId, long streamVersion) {
-        return Query.query(streamIdEqualToCriteria(streamId).and(STREAM_VERSION).lte(streamVersion));
+    private static Query streamHeadIdEqualTo(String streamId) {
+        return Query.query(where(StreamHeads.ID).is(streamId));
+    }
+
+    private static Query streamIdAndStreamVersionInRange(String streamId, long fromVersionExclusive, long toVersionInclusive) {
+        Criteria criteria = streamIdEqualToCriteria(streamId).and(STREAM_VERSION).lte(toVersionInclusive);
+        if (fromVersionExclusive > 0) {
+            // The lower bound of the version range makes MongoDB start the scan of the (streamid, streamversion) index at the first event to read
+            criteria = criteria.gt(fromVersionExclusive);
+        }
+        return Query.query(criteria);
     }
 
     private static Query cloudEventIdIs(String cloudEventId, URI cloudEventSource) {
@@ -373,7 +713,7 @@ public class ReactorMongoEventStore implements EventStore, EventStoreOperations,
                 .map(streamVersionAndEvent -> {
                     long streamVersion = streamVersionAndEvent.getT1();
                     CloudEvent event = streamVersionAndEvent.getT2();
-                    return OccurrentCloudEventMongoDocumentMapper.convertToDocument(timeRepresentation, streamId, streamVersion, event);
+                    return OccurrentCloudEventMongoDocumentMapper.convertToDocument(timeRepresentation, dataCompression, streamId, streamVersion, event);
                 });
     }
 
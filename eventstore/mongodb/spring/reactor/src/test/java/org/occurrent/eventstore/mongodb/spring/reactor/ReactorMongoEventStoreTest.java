@@ -48,6 +48,7 @@ import org.occurrent.time.TimeConversion;
 import org.springframework.data.mongodb.ReactiveMongoTransactionManager;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.core.SimpleReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.transaction.reactive.TransactionalOperator;
 import org.testcontainers.containers.MongoDBContainer;
 import org.testcontainers.junit.jupiter.Container;
@@ -60,13 +61,16 @@ import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -75,6 +79,7 @@ import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.Assertions.entry;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertAll;
@@ -368,6 +373,60 @@ public class ReactorMongoEventStoreTest {
         );
     }
 
+    @Nested
+    @DisplayName("read version range")
+    class ReadVersionRangeTest {
+
+        @Test
+        void read_version_range_returns_the_events_whose_stream_version_is_in_the_range_and_the_version_of_the_entire_stream() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Hello Doe");
+            DomainEvent event4 = new NameWasChanged(UUID.randomUUID().toString(), now, "Another Doe");
+            persist("name", Arrays.asList(event1, event2, event3, event4)).block();
+
+            // When
+            VersionAndEvents versionAndEvents = deserialize(eventStore.readVersionRange("name", 1, 3));
+
+            // Then
+            assertAll(
+                    () -> assertThat(versionAndEvents.version).isEqualTo(4L),
+                    () -> assertThat(versionAndEvents.events).containsExactly(event2, event3)
+            );
+        }
+
+        @Test
+        void read_after_version_returns_the_events_after_the_version() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Hello Doe");
+            persist("name", Arrays.asList(event1, event2, event3)).block();
+
+            // When
+            VersionAndEvents versionAndEvents = deserialize(eventStore.readAfterVersion("name", 2));
+
+            // Then
+            assertAll(
+                    () -> assertThat(versionAndEvents.version).isEqualTo(3L),
+                    () -> assertThat(versionAndEvents.events).containsExactly(event3),
+                    () -> assertThat(deserialize(eventStore.readAfterVersion("unknown", 0)).version).isZero()
+            );
+        }
+
+        @Test
+        void read_version_range_throws_iae_when_the_range_is_invalid() {
+            // When
+            Throwable throwable = catchThrowable(() -> eventStore.readVersionRange("name", 3, 2));
+
+            // Then
+            assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class).hasMessage("toVersionInclusive cannot be less than fromVersionExclusive");
+        }
+    }
+
     @Nested
     @DisplayName("write result")
     class WriteResultTest {
@@ -440,6 +499,269 @@ public class ReactorMongoEventStoreTest {
     }
 
     @SuppressWarnings("ConstantConditions")
+    @Nested
+    @DisplayName("chunked writes")
+    class ChunkedWritesTest {
+
+        @Test
+        void events_are_written_in_chunks_with_consecutive_stream_versions() {
+            // Given
+            eventStore = new ReactorMongoEventStore(mongoTemplate, new EventStoreConfig.Builder().eventStoreCollectionName(connectionString.getCollection()).transactionConfig(reactiveMongoTransactionManager).timeRepresentation(RFC_3339_STRING)
+                    .streamHeadsCollectionName("streamheads").writeChunkSize(2).build());
+            LocalDateTime now = LocalDateTime.now();
+            List<DomainEvent> events = IntStream.rangeClosed(1, 5).mapToObj(i -> new NameWasChanged(UUID.randomUUID().toString(), now.plusMinutes(i), "name" + i)).collect(Collectors.toList());
+
+            // When
+            WriteResult writeResult = persist("name", events).block();
+
+            // Then
+            VersionAndEvents versionAndEvents = deserialize(eventStore.read("name"));
+            assertAll(
+                    () -> assertThat(writeResult.getStreamVersion()).isEqualTo(5L),
+                    () -> assertThat(versionAndEvents.version).isEqualTo(5L),
+                    () -> assertThat(versionAndEvents.events).containsExactlyElementsOf(events),
+                    () -> assertThat(mongoTemplate.findOne(new Query(), Document.class, "streamheads").block()).containsEntry("eventCount", 5)
+            );
+        }
+
+        @Test
+        void write_chunk_size_must_be_greater_than_zero() {
+            // When
+            Throwable throwable = catchThrowable(() -> new EventStoreConfig.Builder().eventStoreCollectionName(connectionString.getCollection()).transactionConfig(reactiveMongoTransactionManager).timeRepresentation(RFC_3339_STRING).writeChunkSize(0).build());
+
+            // Then
+            assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    @Nested
+    @DisplayName("transactionless append")
+    class TransactionlessAppendTest {
+
+        @BeforeEach
+        void create_event_store_with_transactionless_append() {
+            eventStore = new ReactorMongoEventStore(mongoTemplate, new EventStoreConfig.Builder().eventStoreCollectionName(connectionString.getCollection()).transactionConfig(reactiveMongoTransactionManager).timeRepresentation(RFC_3339_STRING).transactionlessAppend(true).build());
+        }
+
+        @Test
+        void appends_event_when_stream_version_is_equal_to_expected_version() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            persist("name", WriteCondition.streamVersionEq(0), event1).block();
+
+            // When
+            persist("name", WriteCondition.streamVersionEq(1), event2).block();
+
+            // Then
+            VersionAndEvents versionAndEvents = deserialize(eventStore.read("name"));
+            assertAll(
+                    () -> assertThat(versionAndEvents.version).isEqualTo(2),
+                    () -> assertThat(versionAndEvents.events).containsExactly(event1, event2)
+            );
+        }
+
+        @Test
+        void throws_write_condition_not_fulfilled_when_another_event_has_already_been_written_with_the_next_version() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Doe");
+            persist("name", WriteCondition.streamVersionEq(0), event1).block();
+            persist("name", WriteCondition.streamVersionEq(1), event2).block();
+
+            // When
+            Throwable throwable = catchThrowable(() -> persist("name", WriteCondition.streamVersionEq(1), event3).block());
+
+            // Then
+            assertThat(throwable).isExactlyInstanceOf(WriteConditionNotFulfilledException.class)
+                    .hasMessage("WriteCondition was not fulfilled. Expected version to be equal to 1 but was 2.");
+        }
+
+        @Test
+        void throws_write_condition_not_fulfilled_when_expected_version_is_greater_than_current_version() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            persist("name", WriteCondition.streamVersionEq(0), event1).block();
+
+            // When
+            Throwable throwable = catchThrowable(() -> persist("name", WriteCondition.streamVersionEq(5), event2).block());
+
+            // Then
+            assertThat(throwable).isExactlyInstanceOf(WriteConditionNotFulfilledException.class)
+                    .hasMessage("WriteCondition was not fulfilled. Expected version to be equal to 5 but was 1.");
+        }
+    }
+
+    @Nested
+    @DisplayName("stream heads")
+    class StreamHeadsTest {
+
+        @BeforeEach
+        void create_event_store_with_stream_heads() {
+            eventStore = newEventStoreWithStreamHeads();
+        }
+
+        @Test
+        void stream_head_is_updated_when_events_are_written() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            DomainEvent event3 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Doe");
+            persist("name", WriteCondition.streamVersionEq(0), Arrays.asList(event1, event2)).block();
+
+            // When
+            persist("name", WriteCondition.streamVersionEq(2), event3).block();
+
+            // Then
+            Document streamHead = mongoTemplate.findById("name", Document.class, "streamheads").block();
+            VersionAndEvents versionAndEvents = deserialize(eventStore.read("name"));
+            assertAll(
+                    () -> assertThat(streamHead).isNotNull(),
+                    () -> assertThat(streamHead.getLong("version")).isEqualTo(3),
+                    () -> assertThat(streamHead.getInteger("eventCount")).isEqualTo(3),
+                    () -> assertThat(versionAndEvents.version).isEqualTo(3),
+                    () -> assertThat(versionAndEvents.events).containsExactly(event1, event2, event3)
+            );
+        }
+
+        @Test
+        void write_condition_is_evaluated_against_the_stream_head() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            persist("name", WriteCondition.streamVersionEq(0), event1).block();
+
+            // When
+            Throwable throwable = catchThrowable(() -> persist("name", WriteCondition.streamVersionEq(0), event2).block());
+
+            // Then
+            assertThat(throwable).isExactlyInstanceOf(WriteConditionNotFulfilledException.class)
+                    .hasMessage("WriteCondition was not fulfilled. Expected version to be equal to 0 but was 1.");
+        }
+
+        @Test
+        void exists_and_stream_versions_are_found_from_stream_heads() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            persist("name1", new NameDefined(UUID.randomUUID().toString(), now, "John Doe")).block();
+            persist("name2", Arrays.asList(new NameDefined(UUID.randomUUID().toString(), now, "Jane Doe"), new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe"))).block();
+
+            // When
+            Map<String, Long> streamVersions = eventStore.streamVersions(Arrays.asList("name1", "name2", "name3")).block();
+
+            // Then
+            assertAll(
+                    () -> assertThat(streamVersions).containsExactly(entry("name1", 1L), entry("name2", 2L), entry("name3", 0L)),
+                    () -> assertThat(eventStore.exists("name1").block()).isTrue(),
+                    () -> assertThat(eventStore.exists("name3").block()).isFalse()
+            );
+        }
+
+        @Test
+        void stream_head_is_recalculated_when_events_are_deleted() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            persist("name1", Arrays.asList(event1, event2)).block();
+            persist("name2", new NameDefined(UUID.randomUUID().toString(), now, "Jane Doe")).block();
+
+            // When
+            eventStore.deleteEvent(event2.getEventId(), NAME_SOURCE).block();
+            eventStore.deleteEventStream("name2").block();
+
+            // Then
+            assertAll(
+                    () -> assertThat(eventStore.streamVersions(Arrays.asList("name1", "name2")).block()).containsExactly(entry("name1", 1L), entry("name2", 0L)),
+                    () -> assertThat(mongoTemplate.count(new Query(), "streamheads").block()).isEqualTo(1)
+            );
+        }
+
+        @Test
+        void stream_heads_are_created_from_existing_events_when_stream_heads_collection_is_enabled() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            mongoTemplate.dropCollection("streamheads").block();
+            persist("name1", new NameDefined(UUID.randomUUID().toString(), now, "John Doe")).block();
+            persist("name2", Arrays.asList(new NameDefined(UUID.randomUUID().toString(), now, "Jane Doe"), new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe"))).block();
+
+            // When
+            eventStore = newEventStoreWithStreamHeads();
+
+            // Then
+            assertAll(
+                    () -> assertThat(mongoTemplate.count(new Query(), "streamheads").block()).isEqualTo(2),
+                    () -> assertThat(eventStore.streamVersions(Arrays.asList("name1", "name2")).block()).containsExactly(entry("name1", 1L), entry("name2", 2L))
+            );
+        }
+
+        private ReactorMongoEventStore newEventStoreWithStreamHeads() {
+            return new ReactorMongoEventStore(mongoTemplate, new EventStoreConfig.Builder().eventStoreCollectionName(connectionString.getCollection()).transactionConfig(reactiveMongoTransactionManager).timeRepresentation(RFC_3339_STRING).streamHeadsCollectionName("streamheads").build());
+        }
+    }
+
+    @Nested
+    @DisplayName("event counters")
+    class EventCountersTest {
+
+        @BeforeEach
+        void create_event_store_with_event_counters() {
+            eventStore = newEventStoreWithEventCounters();
+        }
+
+        @Test
+        void count_and_exists_are_served_from_the_event_counters() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            persist("name1", Arrays.asList(new NameDefined(UUID.randomUUID().toString(), now, "John Doe"), new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe"))).block();
+            persist("name2", new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Doe")).block();
+
+            // When
+            long count = eventStore.count(type(NameWasChanged.class.getName()).or(type(NameDefined.class.getName()))).block();
+
+            // Then
+            assertAll(
+                    () -> assertThat(count).isEqualTo(3),
+                    () -> assertThat(mongoTemplate.findById("type:" + NameWasChanged.class.getName(), Document.class, "eventcounters").block()).containsEntry("count", 2L),
+                    () -> assertThat(eventStore.exists(streamId("name2")).block()).isTrue(),
+                    () -> assertThat(eventStore.exists(streamId("name3")).block()).isFalse()
+            );
+        }
+
+        @Test
+        void counters_are_decremented_when_events_are_deleted() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            DomainEvent event1 = new NameDefined(UUID.randomUUID().toString(), now, "John Doe");
+            DomainEvent event2 = new NameWasChanged(UUID.randomUUID().toString(), now, "Jan Doe");
+            persist("name1", Arrays.asList(event1, event2)).block();
+            persist("name2", new NameWasChanged(UUID.randomUUID().toString(), now, "Jane Doe")).block();
+
+            // When
+            eventStore.deleteEvent(event1.getEventId(), NAME_SOURCE).block();
+            eventStore.delete(id(event2.getEventId())).block();
+            eventStore.deleteEventStream("name2").block();
+
+            // Then
+            assertAll(
+                    () -> assertThat(mongoTemplate.count(Query.query(where("count").exists(true)), "eventcounters").block()).isZero(),
+                    () -> assertThat(eventStore.count(type(NameWasChanged.class.getName())).block()).isZero()
+            );
+        }
+
+        private ReactorMongoEventStore newEventStoreWithEventCounters() {
+            return new ReactorMongoEventStore(mongoTemplate, new EventStoreConfig.Builder().eventStoreCollectionName(connectionString.getCollection()).transactionConfig(reactiveMongoTransactionManager).timeRepresentation(RFC_3339_STRING).eventCountersCollectionName("eventcounters").eventCounterAttributes("type", "source", "streamid").build());
+        }
+    }
+
     @Nested
     @DisplayName("count")
     class CountTest {
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.eventstore.partitioned;
+
+import io.cloudevents.CloudEvent;
+import org.occurrent.eventstore.api.SortBy;
+import org.occurrent.eventstore.api.WriteCondition;
+import org.occurrent.eventstore.api.WriteResult;
+import org.occurrent.eventstore.api.blocking.*;
+import org.occurrent.eventstore.api.internal.PartitionOrdering;
+import org.occurrent.filter.Filter;
+
+import java.net.URI;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An {@link EventStore} that partitions the event streams between several underlying event stores, for example one {@code MongoEventStore} or {@code SpringMongoEventStore}
+ * per MongoDB collection. This allows one logical event store to grow past what the indexes of a single collection handle comfortably. For example:
+ * <pre>
+ * PartitionedEventStore eventStore = PartitionedEventStore.create(4, partition -> new MongoEventStore(mongoClient, "database", "events-" + partition, eventStoreConfig), PartitioningStrategy.hashOfStreamId());
+ * </pre>
+ * <p>
+ * The {@link PartitioningStrategy} decides which partition an event stream belongs to, and all reads and writes of the stream are made to this partition.
+ * {@link EventStoreQueries} are made against all partitions ("scatter-gather") and the results are merged according to the {@link SortBy}. Note that
+ * there's no natural order between partitions, so when sorting by natural order, the events of one partition are returned before the events of the next.
+ * </p>
+ * <p>
+ * Things to be aware of:
+ * <ul>
+ *     <li>The uniqueness of the cloud event id and source is only guaranteed within a partition.</li>
+ *     <li>{@link #writeAll(Map)} is only atomic for streams in the same partition.</li>
+ *     <li>Each partition must have its own collection, including its own stream heads collection if stream heads are enabled.</li>
+ *     <li>The number of partitions cannot be changed without moving the existing event streams to their new partitions.</li>
+ *     <li>When sorting by {@link SortBy#time(SortBy.SortDirection) time}, the merged results are ordered by the instant of the time. This is only exact if the partitions
+ *     also sort the time as an instant, such as MongoDB event stores that use {@code TimeRepresentation.DATE}. An event store that uses {@code TimeRepresentation.RFC_3339_STRING}
+ *     sorts the time as a string, which gives the same order only if all events use the same offset and fraction of second precision.</li>
+ * </ul>
+ */
+public class PartitionedEventStore implements EventStore, EventStoreOperations, EventStoreQueries {
+    private final List<Partition> partitions;
+    private final PartitioningStrategy partitioningStrategy;
+
+    /**
+     * Create a new instance of {@code PartitionedEventStore}
+     *
+     * @param partitions           The event store of each partition, the index of the event store in the list is the partition index.
+     * @param partitioningStrategy The {@link PartitioningStrategy} that decides which partition an event stream belongs to.
+     * @param <T>                  The type of the underlying event stores
+     */
+    public <T extends EventStore & EventStoreOperations & EventStoreQueries> PartitionedEventStore(List<T> partitions, PartitioningStrategy partitioningStrategy) {
+        requireNonNull(partitions, "Partitions cannot be null");
+        requireNonNull(partitioningStrategy, PartitioningStrategy.class.getSimpleName() + " cannot be null");
+        if (partitions.isEmpty()) {
+            throw new IllegalArgumentException("At least one partition must be specified");
+        }
+        this.partitions = Collections.unmodifiableList(partitions.stream().map(eventStore -> new Partition(requireNonNull(eventStore, "Partition cannot be null"), eventStore, eventStore)).collect(Collectors.toList()));
+        this.partitioningStrategy = partitioningStrategy;
+    }
+
+    /**
+     * Create a new instance of {@code PartitionedEventStore} with {@code numberOfPartitions} partitions
+     *
+     * @param numberOfPartitions   The number of partitions
+     * @param partitionFactory     Creates the event store of a partition, given the partition index (from {@code 0} to {@code numberOfPartitions - 1}).
+     * @param partitioningStrategy The {@link PartitioningStrategy} that decides which partition an event stream belongs to.
+     * @param <T>                  The type of the underlying event stores
+     * @return A new {@code PartitionedEventStore}
+     */
+    public static <T extends EventStore & EventStoreOperations & EventStoreQueries> PartitionedEventStore create(int numberOfPartitions, IntFunction<T> partitionFactory, PartitioningStrategy partitioningStrategy) {
+        if (numberOfPartitions < 1) {
+            throw new IllegalArgumentException("Number of partitions must be greater than zero");
+        }
+        requireNonNull(partitionFactory, "Partition factory cannot be null");
+        return new PartitionedEventStore(IntStream.range(0, numberOfPartitions).mapToObj(partitionFactory).collect(Collectors.toList()), partitioningStrategy);
+    }
+
+    /**
+     * @return The number of partitions
+     */
+    public int numberOfPartitions() {
+        return partitions.size();
+    }
+
+    /**
+     * @param streamId The id of the event stream
+     * @return The index of the partition that the event stream belongs to
+     */
+    public int partitionOf(String streamId) {
+        requireNonNull(streamId, "Stream id cannot be null");
+        int partition = partitioningStrategy.partitionOf(streamId, partitions.size());
+        if (partition < 0 || partition >= partitions.size()) {
+            throw new IllegalStateException(PartitioningStrategy.class.getSimpleName() + " returned partition " + partition + " for stream " + streamId + " but there are only " + partitions.size() + " partitions");
+        }
+        return partition;
+    }
+
+    @Override
+    public EventStream<CloudEvent> read(String streamId, int skip, int limit) {
+        return partitionFor(streamId).eventStore.read(streamId, skip, limit);
+    }
+
+    @Override
+    public EventStream<CloudEvent> readVersionRange(String streamId, long fromVersionExclusive, long toVersionInclusive) {
+        return partitionFor(streamId).eventStore.readVersionRange(streamId, fromVersionExclusive, toVersionInclusive);
+    }
+
+    @Override
+    public Map<String, Long> streamVersions(Collection<String> streamIds) {
+        requireNonNull(streamIds, "Stream ids cannot be null");
+        Map<Partition, List<String>> streamIdsByPartition = streamIds.stream().collect(Collectors.groupingBy(this::partitionFor, LinkedHashMap::new, Collectors.toList()));
+        Map<String, Long> streamVersionsInAllPartitions = new HashMap<>();
+        streamIdsByPartition.forEach((partition, streamIdsInPartition) -> streamVersionsInAllPartitions.putAll(partition.eventStore.streamVersions(streamIdsInPartition)));
+
+        Map<String, Long> streamVersions = new LinkedHashMap<>();
+        streamIds.forEach(streamId -> streamVersions.put(streamId, streamVersionsInAllPartitions.getOrDefault(streamId, 0L)));
+        return streamVersions;
+    }
+
+    @Override
+    public WriteResult write(String streamId, Stream<CloudEvent> events) {
+        return partitionFor(streamId).eventStore.write(streamId, events);
+    }
+
+    @Override
+    public WriteResult write(String streamId, WriteCondition writeCondition, Stream<CloudEvent> events) {
+        return partitionFor(streamId).eventStore.write(streamId, writeCondition, events);
+    }
+
+    /**
+     * Write events to several event streams. The writes to streams in the same partition are delegated to the {@code writeAll} method of the partition,
+     * so they're atomic if the underlying event store supports it. Writes to different partitions are made one partition at a time and are <i>not</i> atomic.
+     */
+    @Override
+    public List<WriteResult> writeAll(Map<String, EventStreamWrite> writes) {
+        requireNonNull(writes, "Writes cannot be null");
+        Map<Partition, Map<String, EventStreamWrite>> writesByPartition = new LinkedHashMap<>();
+        writes.forEach((streamId, write) -> writesByPartition.computeIfAbsent(partitionFor(streamId), ignored -> new LinkedHashMap<>()).put(streamId, write));
+
+        Map<String, WriteResult> writeResults = new HashMap<>();
+        writesByPartition.forEach((partition, writesInPartition) -> partition.eventStore.writeAll(writesInPartition).forEach(writeResult -> writeResults.put(writeResult.getStreamId(), writeResult)));
+        return writes.keySet().stream().map(writeResults::get).collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean exists(String streamId) {
+        return partitionFor(streamId).eventStore.exists(streamId);
+    }
+
+    @Override
+    public void deleteEventStream(String streamId) {
+        partitionFor(streamId).operations.deleteEventStream(streamId);
+    }
+
+    // We don't know which stream the cloud event belongs to, so we need to look in all partitions
+    @Override
+    public void deleteEvent(String cloudEventId, URI cloudEventSource) {
+        partitions.forEach(partition -> partition.operations.deleteEvent(cloudEventId, cloudEventSource));
+    }
+
+    @Override
+    public void delete(Filter filter) {
+        requireNonNull(filter, Filter.class.getSimpleName() + " cannot be null");
+        partitions.forEach(partition -> partition.operations.delete(filter));
+    }
+
+    @Override
+    public Optional<CloudEvent> updateEvent(String cloudEventId, URI cloudEventSource, Function<CloudEvent, CloudEvent> updateFunction) {
+        for (Partition partition : partitions) {
+            Optional<CloudEvent> updatedCloudEvent = partition.operations.updateEvent(cloudEventId, cloudEventSource, updateFunction);
+            if (updatedCloudEvent.isPresent()) {
+                return updatedCloudEvent;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Query all partitions and merge the results according to the {@code sortBy}. Each partition is asked for at most {@code skip + limit} events,
+     * and the {@code skip} and {@code limit} are then applied to the merged result.
+     */
+    @Override
+    public Stream<CloudEvent> query(Filter filter, int skip, int limit, SortBy sortBy) {
+        requireNonNull(filter, Filter.class.getSimpleName() + " cannot be null");
+        requireNonNull(sortBy, SortBy.class.getSimpleName() + " cannot be null");
+        if (skip < 0 || limit < 0) {
+            throw new IllegalArgumentException("skip and limit cannot be negative");
+        }
+
+        if (partitions.size() == 1) {
+            return partitions.get(0).queries.query(filter, skip, limit, sortBy);
+        }
+
+        PartitionOrdering partitionOrdering = PartitionOrdering.of(sortBy);
+
+        int limitPerPartition = (int) Math.min((long) skip + limit, Integer.MAX_VALUE);
+        List<Stream<CloudEvent>> eventsPerPartition = partitions.stream().map(partition -> partition.queries.query(filter, 0, limitPerPartition, sortBy)).collect(Collectors.toList());
+        Stream<CloudEvent> events = partitionOrdering.merge(eventsPerPartition);
+        if (skip != 0) {
+            events = events.skip(skip);
+        }
+        if (limit != Integer.MAX_VALUE) {
+            events = events.limit(limit);
+        }
+        return events;
+    }
+
+    @Override
+    public long count(Filter filter) {
+        requireNonNull(filter, Filter.class.getSimpleName() + " cannot be null");
+        return partitions.stream().mapToLong(partition -> partition.queries.count(filter)).sum();
+    }
+
+    @Override
+    public boolean exists(Filter filter) {
+        requireNonNull(filter, Filter.class.getSimpleName() + " cannot be null");
+        return partitions.stream().anyMatch(partition -> partition.queries.exists(filter));
+    }
+
+    private Partition partitionFor(String streamId) {
+        return partitions.get(partitionOf(streamId));
+    }
+
+    private static class Partition {
+        private final EventStore eventStore;
+        private final EventStoreOperations operations;
+        private final EventStoreQueries queries;
+
+        private Partition(EventStore eventStore, EventStoreOperations operations, EventStoreQueries queries) {
+            this.eventStore = eventStore;
+            this.operations = operations;
+            this.queries = queries;
+        }
+    }
+}
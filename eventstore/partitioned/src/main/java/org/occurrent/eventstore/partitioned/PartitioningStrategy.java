@@ -0,0 +1,66 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.eventstore.partitioned;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Decides which partition of a {@link PartitionedEventStore} that an event stream belongs to. All reads and writes of a stream
+ * go to its partition, so a strategy must always return the same partition for the same stream id (and number of partitions).
+ * This means that the number of partitions cannot be changed without moving the existing event streams to their new partitions.
+ */
+@FunctionalInterface
+public interface PartitioningStrategy {
+
+    /**
+     * @param streamId           The id of the event stream
+     * @param numberOfPartitions The number of partitions in the event store
+     * @return The index of the partition that the stream belongs to, between {@code 0} (inclusive) and {@code numberOfPartitions} (exclusive).
+     */
+    int partitionOf(String streamId, int numberOfPartitions);
+
+    /**
+     * Distribute the streams evenly between the partitions based on the hash code of the stream id. This is the default strategy.
+     * Note that {@link String#hashCode()} is defined by the Java language specification, so a stream always maps to the same partition.
+     *
+     * @return A {@link PartitioningStrategy} based on the hash of the stream id
+     */
+    static PartitioningStrategy hashOfStreamId() {
+        return (streamId, numberOfPartitions) -> Math.floorMod(streamId.hashCode(), numberOfPartitions);
+    }
+
+    /**
+     * Put all streams of the same category in the same partition. The category of a stream is the part of the stream id before the first
+     * occurrence of the {@code separator}, for example "order" for stream "order-1234" if the separator is "-". Stream ids without the separator
+     * are categories of their own. The category is then mapped to a partition based on its hash code.
+     *
+     * @param separator The separator between the category and the rest of the stream id
+     * @return A {@link PartitioningStrategy} based on the category prefix of the stream id
+     */
+    static PartitioningStrategy categoryPrefix(String separator) {
+        requireNonNull(separator, "Separator cannot be null");
+        if (separator.isEmpty()) {
+            throw new IllegalArgumentException("Separator cannot be empty");
+        }
+        return (streamId, numberOfPartitions) -> {
+            int separatorIndex = streamId.indexOf(separator);
+            String category = separatorIndex < 0 ? streamId : streamId.substring(0, separatorIndex);
+            return Math.floorMod(category.hashCode(), numberOfPartitions);
+        };
+    }
+}
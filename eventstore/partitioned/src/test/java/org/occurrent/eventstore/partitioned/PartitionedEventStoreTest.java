@@ -0,0 +1,251 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.eventstore.partitioned;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.occurrent.eventstore.api.EventPage;
+import org.occurrent.eventstore.api.SortBy;
+import org.occurrent.eventstore.api.WriteResult;
+import org.occurrent.eventstore.api.blocking.EventStream;
+import org.occurrent.eventstore.api.blocking.EventStreamWrite;
+import org.occurrent.eventstore.inmemory.InMemoryEventStore;
+import org.occurrent.filter.Filter;
+
+import java.net.URI;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.occurrent.condition.Condition.eq;
+import static org.occurrent.eventstore.api.SortBy.SortDirection.ASCENDING;
+import static org.occurrent.eventstore.api.SortBy.SortDirection.DESCENDING;
+import static org.occurrent.eventstore.api.WriteCondition.streamVersionEq;
+
+@DisplayName("partitioned event store")
+class PartitionedEventStoreTest {
+    private static final URI SOURCE = URI.create("http://name");
+    private static final OffsetDateTime NOW = OffsetDateTime.of(2021, 1, 1, 12, 0, 0, 0, UTC);
+
+    private List<InMemoryEventStore> partitions;
+    private PartitionedEventStore eventStore;
+
+    @BeforeEach
+    void create_partitioned_event_store() {
+        partitions = Arrays.asList(new InMemoryEventStore(), new InMemoryEventStore(), new InMemoryEventStore());
+        // Streams are named "<partition>-<name>" so that the tests know which partition a stream belongs to
+        eventStore = new PartitionedEventStore(partitions, (streamId, numberOfPartitions) -> Integer.parseInt(streamId.substring(0, streamId.indexOf('-'))));
+    }
+
+    @Nested
+    @DisplayName("streams")
+    class StreamsTest {
+
+        @Test
+        void events_are_written_to_and_read_from_the_partition_of_the_stream() {
+            // When
+            eventStore.write("1-name", Stream.of(cloudEvent("1", 1)));
+            eventStore.write("2-name", streamVersionEq(0), Stream.of(cloudEvent("2", 2), cloudEvent("3", 3)));
+
+            // Then
+            EventStream<CloudEvent> eventStream = eventStore.read("2-name");
+            assertAll(
+                    () -> assertThat(partitions.get(0).count()).isZero(),
+                    () -> assertThat(partitions.get(1).exists("1-name")).isTrue(),
+                    () -> assertThat(partitions.get(2).exists("2-name")).isTrue(),
+                    () -> assertThat(eventStream.version()).isEqualTo(2),
+                    () -> assertThat(eventStream.events()).extracting(CloudEvent::getId).containsExactly("2", "3"),
+                    () -> assertThat(eventStore.exists("1-name")).isTrue(),
+                    () -> assertThat(eventStore.exists("0-name")).isFalse()
+            );
+        }
+
+        @Test
+        void stream_versions_are_found_in_the_partition_of_each_stream() {
+            // Given
+            eventStore.write("0-name", Stream.of(cloudEvent("1", 1)));
+            eventStore.write("2-name", Stream.of(cloudEvent("2", 2), cloudEvent("3", 3)));
+
+            // When
+            Map<String, Long> streamVersions = eventStore.streamVersions(Arrays.asList("2-name", "1-name", "0-name"));
+
+            // Then
+            assertThat(streamVersions).containsExactly(entry("2-name", 2L), entry("1-name", 0L), entry("0-name", 1L));
+        }
+
+        @Test
+        void write_all_returns_the_write_results_in_the_order_of_the_writes() {
+            // Given
+            Map<String, EventStreamWrite> writes = new LinkedHashMap<>();
+            writes.put("2-name", EventStreamWrite.of(0, cloudEvent("1", 1)));
+            writes.put("0-name", EventStreamWrite.unconditionally(cloudEvent("2", 2), cloudEvent("3", 3)));
+            writes.put("2-other", EventStreamWrite.unconditionally(cloudEvent("4", 4)));
+
+            // When
+            List<WriteResult> writeResults = eventStore.writeAll(writes);
+
+            // Then
+            assertThat(writeResults).containsExactly(new WriteResult("2-name", 1), new WriteResult("0-name", 2), new WriteResult("2-other", 1));
+        }
+
+        @Test
+        void partitioning_strategy_returning_a_partition_that_does_not_exist_is_reported() {
+            // When
+            Throwable throwable = catchThrowable(() -> eventStore.read("3-name"));
+
+            // Then
+            assertThat(throwable).isExactlyInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("operations")
+    class OperationsTest {
+
+        @Test
+        void events_are_deleted_and_updated_in_the_partition_where_they_are_stored() {
+            // Given
+            eventStore.write("0-name", Stream.of(cloudEvent("1", 1)));
+            eventStore.write("1-name", Stream.of(cloudEvent("2", 2), cloudEvent("3", 3)));
+
+            // When
+            eventStore.deleteEvent("2", SOURCE);
+            Optional<CloudEvent> updatedCloudEvent = eventStore.updateEvent("3", SOURCE, cloudEvent -> CloudEventBuilder.v1(cloudEvent).withSubject("updated").build());
+
+            // Then
+            assertAll(
+                    () -> assertThat(updatedCloudEvent).hasValueSatisfying(cloudEvent -> assertThat(cloudEvent.getSubject()).isEqualTo("updated")),
+                    () -> assertThat(eventStore.read("1-name").events()).extracting(CloudEvent::getId, CloudEvent::getSubject).containsExactly(tuple("3", "updated")),
+                    () -> assertThat(eventStore.updateEvent("2", SOURCE, cloudEvent -> cloudEvent)).isEmpty()
+            );
+        }
+
+        @Test
+        void delete_by_filter_deletes_events_in_all_partitions() {
+            // Given
+            eventStore.write("0-name", Stream.of(cloudEvent("1", 1)));
+            eventStore.write("1-name", Stream.of(cloudEvent("2", 2), cloudEvent("3", 3)));
+
+            // When
+            eventStore.delete(Filter.id("1").or(Filter.id("3")));
+
+            // Then
+            assertThat(eventStore.all()).extracting(CloudEvent::getId).containsExactly("2");
+        }
+    }
+
+    @Nested
+    @DisplayName("queries")
+    class QueriesTest {
+
+        @BeforeEach
+        void write_events_to_all_partitions() {
+            eventStore.write("0-name", Stream.of(cloudEvent("1", 1), cloudEvent("5", 5)));
+            eventStore.write("1-name", Stream.of(cloudEvent("2", 2), cloudEvent("6", 6)));
+            eventStore.write("2-name", Stream.of(cloudEvent("3", 3), cloudEvent("4", 4)));
+        }
+
+        @Test
+        void query_merges_the_results_of_all_partitions_according_to_the_sort_order() {
+            assertAll(
+                    () -> assertThat(eventStore.all(SortBy.time(ASCENDING))).extracting(CloudEvent::getId).containsExactly("1", "2", "3", "4", "5", "6"),
+                    () -> assertThat(eventStore.all(SortBy.time(DESCENDING))).extracting(CloudEvent::getId).containsExactly("6", "5", "4", "3", "2", "1"),
+                    () -> assertThat(eventStore.all(SortBy.streamVersion(DESCENDING).then(SortBy.time(ASCENDING)))).extracting(CloudEvent::getId).containsExactly("4", "5", "6", "1", "2", "3")
+            );
+        }
+
+        @Test
+        void query_returns_the_events_of_one_partition_at_a_time_when_sorting_by_natural_order() {
+            assertAll(
+                    () -> assertThat(eventStore.all(SortBy.natural(ASCENDING))).extracting(CloudEvent::getId).containsExactly("1", "5", "2", "6", "3", "4"),
+                    () -> assertThat(eventStore.all(SortBy.natural(DESCENDING))).extracting(CloudEvent::getId).containsExactly("4", "3", "6", "2", "5", "1")
+            );
+        }
+
+        @Test
+        void skip_and_limit_are_applied_to_the_merged_result() {
+            // When
+            Stream<CloudEvent> events = eventStore.query(Filter.type("type"), 2, 3, SortBy.time(ASCENDING));
+
+            // Then
+            assertThat(events).extracting(CloudEvent::getId).containsExactly("3", "4", "5");
+        }
+
+        @Test
+        void count_and_exists_include_all_partitions() {
+            assertAll(
+                    () -> assertThat(eventStore.count()).isEqualTo(6),
+                    () -> assertThat(eventStore.count(Filter.streamVersion(eq(2L)))).isEqualTo(3),
+                    () -> assertThat(eventStore.exists(Filter.id("6"))).isTrue(),
+                    () -> assertThat(eventStore.exists(Filter.id("7"))).isFalse()
+            );
+        }
+
+        @Test
+        void continuation_tokens_can_be_used_to_page_through_all_partitions() {
+            // When
+            EventPage page1 = eventStore.query(Filter.all(), 4, SortBy.time(ASCENDING), null);
+            EventPage page2 = eventStore.query(Filter.all(), 4, SortBy.time(ASCENDING), page1.getNextContinuationToken().orElseThrow(IllegalStateException::new));
+
+            // Then
+            assertAll(
+                    () -> assertThat(page1.getEvents()).extracting(CloudEvent::getId).containsExactly("1", "2", "3", "4"),
+                    () -> assertThat(page2.getEvents()).extracting(CloudEvent::getId).containsExactly("5", "6"),
+                    () -> assertThat(page2.hasNext()).isFalse()
+            );
+        }
+    }
+
+    @Test
+    void hash_of_stream_id_and_category_prefix_strategies_always_return_an_existing_partition() {
+        // Given
+        List<String> streamIds = Arrays.asList("order-1", "order-2", "customer-1", "customer", "", "-");
+
+        // When
+        Set<Integer> hashPartitions = streamIds.stream().map(streamId -> PartitioningStrategy.hashOfStreamId().partitionOf(streamId, 3)).collect(Collectors.toSet());
+        Set<Integer> orderPartitions = Stream.of("order-1", "order-2", "order-3").map(streamId -> PartitioningStrategy.categoryPrefix("-").partitionOf(streamId, 3)).collect(Collectors.toSet());
+
+        // Then
+        assertAll(
+                () -> assertThat(hashPartitions).allMatch(partition -> partition >= 0 && partition < 3),
+                () -> assertThat(orderPartitions).hasSize(1),
+                () -> assertThat(PartitioningStrategy.categoryPrefix("-").partitionOf("customer-1", 3)).isEqualTo(PartitioningStrategy.categoryPrefix("-").partitionOf("customer", 3))
+        );
+    }
+
+    private static CloudEvent cloudEvent(String id, int minute) {
+        return CloudEventBuilder.v1()
+                .withId(id)
+                .withSource(SOURCE)
+                .withType("type")
+                .withTime(NOW.plusMinutes(minute))
+                .withData("{}".getBytes())
+                .build();
+    }
+}
@@ -0,0 +1,433 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.eventstore.tiered;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import org.occurrent.cloudevents.OccurrentExtensionGetter;
+import org.occurrent.eventstore.api.SortBy;
+import org.occurrent.eventstore.api.WriteCondition;
+import org.occurrent.eventstore.api.WriteResult;
+import org.occurrent.eventstore.api.blocking.*;
+import org.occurrent.eventstore.api.internal.PartitionOrdering;
+import org.occurrent.filter.Filter;
+
+import java.net.URI;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_ID;
+import static org.occurrent.cloudevents.OccurrentCloudEventExtension.STREAM_VERSION;
+import static org.occurrent.condition.Condition.*;
+import static org.occurrent.eventstore.api.internal.VersionRange.requireValidVersionRange;
+
+/**
+ * An {@link EventStore} that keeps recent events in a "hot" event store and moves old events to a "cold" event store, for example a {@code MongoEventStore}
+ * whose collection is created with a stronger block compressor:
+ * <pre>
+ * database.createCollection("events-cold", new CreateCollectionOptions().storageEngineOptions(new Document("wiredTiger", new Document("configString", "block_compressor=zstd"))));
+ * TieredEventStore eventStore = new TieredEventStore(new MongoEventStore(mongoClient, "database", "events", config), new MongoEventStore(mongoClient, "database", "events-cold", config));
+ * </pre>
+ * <p>
+ * Events are moved to the cold tier by calling {@link #archive(Filter)} (or {@link #archiveOlderThan(OffsetDateTime)}), typically from a scheduled job. All writes are made to the hot tier,
+ * while {@link #read(String)} and {@link EventStoreQueries} transparently merge the events of both tiers, in stream version order and according to the {@link SortBy} respectively.
+ * This means that the {@code TieredEventStore} can be passed to, for example, the {@code CatchupSubscriptionModel} to replay events from both tiers.
+ * The cold tier thus only adds to the cost of reads and queries that actually include old events, and the hot working set stays small.
+ * </p>
+ * <p>
+ * The events of a stream that are moved to the cold tier are always the oldest events of the stream (a prefix of the stream) and the latest event of each stream
+ * is always kept in the hot tier. This way the hot tier always knows the current version of each stream, so write conditions are evaluated by the hot tier alone.
+ * </p>
+ * <p>
+ * The cold tier assigns its own, consecutive, stream versions to the events that are moved to it. These differ from the stream versions of the events
+ * if events have been deleted from the stream before it was archived, so the stream version of each event is also stored in the {@value #TIERED_STREAM_VERSION}
+ * extension in the cold tier. {@link #read(String)} and queries return the events with their original stream version (and without the extension), but conditions on
+ * the stream version in a {@link Filter}, and sorting the events of several streams by stream version only, use the stream versions of the cold tier for the events in the cold tier.
+ * </p>
+ */
+public class TieredEventStore implements EventStore, EventStoreOperations, EventStoreQueries {
+    /**
+     * The name of the cloud event extension that contains the stream version of an event in the {@code TieredEventStore} when the event is stored in the cold tier.
+     */
+    public static final String TIERED_STREAM_VERSION = "tieredstreamversion";
+    private static final int ARCHIVE_BATCH_SIZE = 1000;
+
+    private final EventStore hotEventStore;
+    private final EventStoreOperations hotEventStoreOperations;
+    private final EventStoreQueries hotEventStoreQueries;
+    private final EventStore coldEventStore;
+    private final EventStoreOperations coldEventStoreOperations;
+    private final EventStoreQueries coldEventStoreQueries;
+
+    /**
+     * Create a new instance of {@code TieredEventStore}
+     *
+     * @param hotEventStore  The event store to which all events are written and that contains the recent events
+     * @param coldEventStore The event store to which old events are moved by {@link #archive(Filter)}
+     * @param <T>            The type of the hot event store
+     * @param <U>            The type of the cold event store
+     */
+    public <T extends EventStore & EventStoreOperations & EventStoreQueries, U extends EventStore & EventStoreOperations & EventStoreQueries> TieredEventStore(T hotEventStore, U coldEventStore) {
+        requireNonNull(hotEventStore, "Hot event store cannot be null");
+        requireNonNull(coldEventStore, "Cold event store cannot be null");
+        this.hotEventStore = hotEventStore;
+        this.hotEventStoreOperations = hotEventStore;
+        this.hotEventStoreQueries = hotEventStore;
+        this.coldEventStore = coldEventStore;
+        this.coldEventStoreOperations = coldEventStore;
+        this.coldEventStoreQueries = coldEventStore;
+    }
+
+    /**
+     * Move events that are older than {@code time} to the cold tier.
+     *
+     * @param time The time
+     * @return The number of events that were moved to the cold tier
+     * @see #archive(Filter)
+     */
+    public long archiveOlderThan(OffsetDateTime time) {
+        requireNonNull(time, "Time cannot be null");
+        return archive(Filter.time(lt(time)));
+    }
+
+    /**
+     * Move the events that matches the {@code filter} from the hot tier to the cold tier, stream by stream in batches. For each stream, the events are moved in stream version order
+     * until an event that doesn't match the {@code filter} is found, and the latest event of the stream is never moved. Versions of events that have been deleted from the stream are skipped. The events are written to the cold tier before they're removed
+     * from the hot tier. If archiving is interrupted, events may thus be in both tiers until {@code archive} is called again, and they may then be returned twice by queries
+     * (but never by {@link #read(String)}).
+     *
+     * @param filter The filter that selects the events to move, typically a filter on the time of the events.
+     * @return The number of events that were moved to the cold tier
+     */
+    public long archive(Filter filter) {
+        requireNonNull(filter, Filter.class.getSimpleName() + " cannot be null");
+        long numberOfArchivedEvents = 0;
+        StreamArchiving streamArchiving = null;
+        try (Stream<CloudEvent> eventsToArchive = hotEventStoreQueries.query(filter, SortBy.ascending(STREAM_ID, STREAM_VERSION))) {
+            for (Iterator<CloudEvent> iterator = eventsToArchive.iterator(); iterator.hasNext(); ) {
+                CloudEvent cloudEvent = iterator.next();
+                String streamId = OccurrentExtensionGetter.getStreamId(cloudEvent);
+                if (streamArchiving == null || !streamArchiving.streamId.equals(streamId)) {
+                    if (streamArchiving != null) {
+                        numberOfArchivedEvents += streamArchiving.complete();
+                    }
+                    streamArchiving = new StreamArchiving(streamId);
+                }
+                streamArchiving.add(cloudEvent);
+            }
+        }
+        if (streamArchiving != null) {
+            numberOfArchivedEvents += streamArchiving.complete();
+        }
+        return numberOfArchivedEvents;
+    }
+
+    @Override
+    public EventStream<CloudEvent> read(String streamId, int skip, int limit) {
+        return readVersionRange(streamId, 0, Long.MAX_VALUE, skip, limit);
+    }
+
+    @Override
+    public EventStream<CloudEvent> readVersionRange(String streamId, long fromVersionExclusive, long toVersionInclusive) {
+        requireValidVersionRange(streamId, fromVersionExclusive, toVersionInclusive);
+        return readVersionRange(streamId, fromVersionExclusive, toVersionInclusive, 0, Integer.MAX_VALUE);
+    }
+
+    private EventStream<CloudEvent> readVersionRange(String streamId, long fromVersionExclusive, long toVersionInclusive, int skip, int limit) {
+        ColdStream coldStream = coldStream(streamId);
+        while (true) {
+            // The events in the hot tier are read before the events in the cold tier. Since archive writes events to the cold tier before it removes them from the hot tier,
+            // events may have been removed from the hot tier by a concurrent archive only if the version of the cold tier has changed, and then the events are read again.
+            long archivedStreamVersion = coldStream.archivedStreamVersion;
+            boolean readEntireHotStream = archivedStreamVersion == 0 && fromVersionExclusive == 0 && toVersionInclusive == Long.MAX_VALUE;
+            long hotFromVersionExclusive = Math.max(archivedStreamVersion, fromVersionExclusive);
+            // Events that have been written to the cold tier but not yet removed from the hot tier (if archiving was interrupted) are only read from the cold tier
+            EventStream<CloudEvent> hotEventStream = readEntireHotStream ? hotEventStore.read(streamId, skip, limit) : hotEventStore.readVersionRange(streamId, hotFromVersionExclusive, Math.max(hotFromVersionExclusive, toVersionInclusive));
+            List<CloudEvent> hotEvents = hotEventStream.events().collect(Collectors.toList());
+            ColdStream coldStreamAfterHotRead = coldStream(streamId);
+            if (coldStreamAfterHotRead.coldStreamVersion != coldStream.coldStreamVersion) {
+                coldStream = coldStreamAfterHotRead;
+                continue;
+            }
+
+            long streamVersion = Math.max(archivedStreamVersion, hotEventStream.version());
+            if (readEntireHotStream) {
+                return new TieredEventStream(streamId, streamVersion, hotEvents.stream());
+            } else if (archivedStreamVersion <= fromVersionExclusive) {
+                // None of the events to read are in the cold tier
+                return skipAndLimit(new TieredEventStream(streamId, streamVersion, hotEvents.stream()), skip, limit);
+            }
+            Stream<CloudEvent> coldEvents = readColdEvents(streamId, coldStream, fromVersionExclusive, Math.min(archivedStreamVersion, toVersionInclusive));
+            return skipAndLimit(new TieredEventStream(streamId, streamVersion, Stream.concat(coldEvents, hotEvents.stream())), skip, limit);
+        }
+    }
+
+    private Stream<CloudEvent> readColdEvents(String streamId, ColdStream coldStream, long fromVersionExclusive, long toVersionInclusive) {
+        // The stream version of an event in the cold tier is at most its tiered stream version, and at least its tiered stream version minus
+        // the number of events that were deleted from the stream before it was archived.
+        long numberOfDeletedEvents = coldStream.archivedStreamVersion - coldStream.coldStreamVersion;
+        long coldFromVersionExclusive = Math.max(0, fromVersionExclusive - numberOfDeletedEvents);
+        long coldToVersionInclusive = Math.max(coldFromVersionExclusive, Math.min(coldStream.coldStreamVersion, toVersionInclusive));
+        return coldEventStore.readVersionRange(streamId, coldFromVersionExclusive, coldToVersionInclusive).events()
+                .map(TieredEventStore::withTieredStreamVersion)
+                .filter(cloudEvent -> {
+                    long streamVersion = OccurrentExtensionGetter.getStreamVersion(cloudEvent);
+                    return streamVersion > fromVersionExclusive && streamVersion <= toVersionInclusive;
+                });
+    }
+
+    @Override
+    public Map<String, Long> streamVersions(Collection<String> streamIds) {
+        // The latest event of a stream is always in the hot tier
+        return hotEventStore.streamVersions(streamIds);
+    }
+
+    @Override
+    public WriteResult write(String streamId, Stream<CloudEvent> events) {
+        return hotEventStore.write(streamId, events);
+    }
+
+    @Override
+    public WriteResult write(String streamId, WriteCondition writeCondition, Stream<CloudEvent> events) {
+        return hotEventStore.write(streamId, writeCondition, events);
+    }
+
+    @Override
+    public List<WriteResult> writeAll(Map<String, EventStreamWrite> writes) {
+        return hotEventStore.writeAll(writes);
+    }
+
+    @Override
+    public boolean exists(String streamId) {
+        return hotEventStore.exists(streamId);
+    }
+
+    @Override
+    public void deleteEventStream(String streamId) {
+        hotEventStoreOperations.deleteEventStream(streamId);
+        coldEventStoreOperations.deleteEventStream(streamId);
+    }
+
+    @Override
+    public void deleteEvent(String cloudEventId, URI cloudEventSource) {
+        hotEventStoreOperations.deleteEvent(cloudEventId, cloudEventSource);
+        coldEventStoreOperations.deleteEvent(cloudEventId, cloudEventSource);
+    }
+
+    @Override
+    public void delete(Filter filter) {
+        hotEventStoreOperations.delete(filter);
+        coldEventStoreOperations.delete(filter);
+    }
+
+    @Override
+    public Optional<CloudEvent> updateEvent(String cloudEventId, URI cloudEventSource, Function<CloudEvent, CloudEvent> updateFunction) {
+        Optional<CloudEvent> updatedCloudEvent = hotEventStoreOperations.updateEvent(cloudEventId, cloudEventSource, updateFunction);
+        return updatedCloudEvent.isPresent() ? updatedCloudEvent : coldEventStoreOperations.updateEvent(cloudEventId, cloudEventSource, updateFunction).map(TieredEventStore::withTieredStreamVersion);
+    }
+
+    /**
+     * Query both tiers and merge the results according to the {@code sortBy}. When sorting by natural order, the events in the cold tier are returned before the events in the hot tier.
+     * When sorting by time, the merged results are ordered by the instant of the time, see {@code PartitionedEventStore} for what this means when using {@code TimeRepresentation.RFC_3339_STRING}.
+     */
+    @Override
+    public Stream<CloudEvent> query(Filter filter, int skip, int limit, SortBy sortBy) {
+        requireNonNull(filter, Filter.class.getSimpleName() + " cannot be null");
+        requireNonNull(sortBy, SortBy.class.getSimpleName() + " cannot be null");
+        if (skip < 0 || limit < 0) {
+            throw new IllegalArgumentException("skip and limit cannot be negative");
+        }
+
+        int limitPerTier = (int) Math.min((long) skip + limit, Integer.MAX_VALUE);
+        // The cold tier is the first "partition" so that events in the cold tier are returned first when sorting by natural order
+        List<Stream<CloudEvent>> eventsPerTier = Arrays.asList(coldEventStoreQueries.query(filter, 0, limitPerTier, sortBy).map(TieredEventStore::withTieredStreamVersion), hotEventStoreQueries.query(filter, 0, limitPerTier, sortBy));
+        Stream<CloudEvent> events = PartitionOrdering.of(sortBy).merge(eventsPerTier);
+        return skipAndLimit(events, skip, limit);
+    }
+
+    @Override
+    public long count(Filter filter) {
+        return hotEventStoreQueries.count(filter) + coldEventStoreQueries.count(filter);
+    }
+
+    @Override
+    public boolean exists(Filter filter) {
+        return hotEventStoreQueries.exists(filter) || coldEventStoreQueries.exists(filter);
+    }
+
+    private ColdStream coldStream(String streamId) {
+        try (Stream<CloudEvent> lastColdEvent = coldEventStoreQueries.query(Filter.streamId(streamId), 0, 1, SortBy.descending(STREAM_VERSION))) {
+            return lastColdEvent.findFirst()
+                    .map(cloudEvent -> new ColdStream(OccurrentExtensionGetter.getStreamVersion(cloudEvent), OccurrentExtensionGetter.getStreamVersion(withTieredStreamVersion(cloudEvent))))
+                    .orElse(ColdStream.EMPTY);
+        }
+    }
+
+    // Events that were moved to the cold tier without the extension have the same stream version in both tiers
+    private static CloudEvent withTieredStreamVersion(CloudEvent coldCloudEvent) {
+        Object tieredStreamVersion = coldCloudEvent.getExtension(TIERED_STREAM_VERSION);
+        if (tieredStreamVersion == null) {
+            return coldCloudEvent;
+        }
+        return CloudEventBuilder.v1(coldCloudEvent).withExtension(STREAM_VERSION, ((Number) tieredStreamVersion).longValue()).withoutExtension(TIERED_STREAM_VERSION).build();
+    }
+
+    private static EventStream<CloudEvent> skipAndLimit(EventStream<CloudEvent> eventStream, int skip, int limit) {
+        if (skip == 0 && limit == Integer.MAX_VALUE) {
+            return eventStream;
+        }
+        return new TieredEventStream(eventStream.id(), eventStream.version(), skipAndLimit(eventStream.events(), skip, limit));
+    }
+
+    private static Stream<CloudEvent> skipAndLimit(Stream<CloudEvent> events, int skip, int limit) {
+        if (skip != 0) {
+            events = events.skip(skip);
+        }
+        if (limit != Integer.MAX_VALUE) {
+            events = events.limit(limit);
+        }
+        return events;
+    }
+
+    /**
+     * Moves the events of a single stream to the cold tier, as long as they're not preceded by an event that didn't match the filter and not the latest event in the stream.
+     */
+    private class StreamArchiving {
+        private final String streamId;
+        private final long hotStreamVersion;
+        private final List<CloudEvent> batch = new ArrayList<>();
+        private long coldStreamVersion;
+        private long archivedStreamVersion;
+        private long numberOfArchivedEvents;
+        private boolean completed;
+
+        private StreamArchiving(String streamId) {
+            this.streamId = streamId;
+            this.hotStreamVersion = hotEventStore.streamVersions(Collections.singletonList(streamId)).getOrDefault(streamId, 0L);
+            ColdStream coldStream = coldStream(streamId);
+            this.coldStreamVersion = coldStream.coldStreamVersion;
+            this.archivedStreamVersion = coldStream.archivedStreamVersion;
+        }
+
+        private void add(CloudEvent cloudEvent) {
+            long streamVersion = OccurrentExtensionGetter.getStreamVersion(cloudEvent);
+            if (completed || streamVersion <= archivedStreamVersion) {
+                // Events that are already in the cold tier are removed from the hot tier when the stream is completed
+                return;
+            } else if (streamVersion >= hotStreamVersion) {
+                // Never move the latest event
+                completed = true;
+                return;
+            }
+
+            batch.add(cloudEvent);
+            if (batch.size() == ARCHIVE_BATCH_SIZE) {
+                writeBatchToColdTier();
+            }
+        }
+
+        private long complete() {
+            writeBatchToColdTier();
+            if (archivedStreamVersion > 0) {
+                hotEventStoreOperations.delete(Filter.streamId(streamId).and(Filter.streamVersion(lte(archivedStreamVersion))));
+            }
+            return numberOfArchivedEvents;
+        }
+
+        private void writeBatchToColdTier() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            // The stream versions of the batch have gaps both for events that didn't match the filter and for events that have been deleted from the stream.
+            // Only the former stop the archiving, and they're found by comparing the batch with the events in the hot tier.
+            long lastStreamVersionInBatch = OccurrentExtensionGetter.getStreamVersion(batch.get(batch.size() - 1));
+            if (hotEventStoreQueries.count(Filter.streamId(streamId).and(Filter.streamVersion(and(gt(archivedStreamVersion), lte(lastStreamVersionInBatch))))) != batch.size()) {
+                removeEventsAfterFirstEventThatDidNotMatchTheFilter(lastStreamVersionInBatch);
+                completed = true;
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            Stream<CloudEvent> cloudEvents = batch.stream().map(cloudEvent -> CloudEventBuilder.v1(cloudEvent).withExtension(TIERED_STREAM_VERSION, OccurrentExtensionGetter.getStreamVersion(cloudEvent)).build());
+            coldEventStore.write(streamId, WriteCondition.streamVersionEq(coldStreamVersion), cloudEvents);
+            coldStreamVersion += batch.size();
+            archivedStreamVersion = OccurrentExtensionGetter.getStreamVersion(batch.get(batch.size() - 1));
+            numberOfArchivedEvents += batch.size();
+            batch.clear();
+        }
+
+        private void removeEventsAfterFirstEventThatDidNotMatchTheFilter(long lastStreamVersionInBatch) {
+            int numberOfMatchingEvents = 0;
+            try (Stream<CloudEvent> hotEvents = hotEventStore.readVersionRange(streamId, archivedStreamVersion, lastStreamVersionInBatch).events()) {
+                for (Iterator<CloudEvent> iterator = hotEvents.iterator(); iterator.hasNext() && numberOfMatchingEvents < batch.size(); numberOfMatchingEvents++) {
+                    if (OccurrentExtensionGetter.getStreamVersion(iterator.next()) != OccurrentExtensionGetter.getStreamVersion(batch.get(numberOfMatchingEvents))) {
+                        break;
+                    }
+                }
+            }
+            batch.subList(numberOfMatchingEvents, batch.size()).clear();
+        }
+    }
+
+    /**
+     * The stream version of the last event of a stream in the cold tier, and its stream version in the tiered event store.
+     */
+    private static class ColdStream {
+        private static final ColdStream EMPTY = new ColdStream(0, 0);
+
+        private final long coldStreamVersion;
+        private final long archivedStreamVersion;
+
+        private ColdStream(long coldStreamVersion, long archivedStreamVersion) {
+            this.coldStreamVersion = coldStreamVersion;
+            this.archivedStreamVersion = archivedStreamVersion;
+        }
+    }
+
+    private static class TieredEventStream implements EventStream<CloudEvent> {
+        private final String id;
+        private final long version;
+        private final Stream<CloudEvent> events;
+
+        private TieredEventStream(String id, long version, Stream<CloudEvent> events) {
+            this.id = id;
+            this.version = version;
+            this.events = events;
+        }
+
+        @Override
+        public String id() {
+            return id;
+        }
+
+        @Override
+        public long version() {
+            return version;
+        }
+
+        @Override
+        public Stream<CloudEvent> events() {
+            return events;
+        }
+    }
+}
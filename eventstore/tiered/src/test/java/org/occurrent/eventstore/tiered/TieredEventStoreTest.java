@@ -0,0 +1,339 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.eventstore.tiered;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.occurrent.cloudevents.OccurrentExtensionGetter;
+import org.occurrent.eventstore.api.SortBy;
+import org.occurrent.eventstore.api.blocking.EventStream;
+import org.occurrent.eventstore.inmemory.InMemoryEventStore;
+import org.occurrent.filter.Filter;
+
+import java.net.URI;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.occurrent.eventstore.api.SortBy.SortDirection.ASCENDING;
+import static org.occurrent.eventstore.api.SortBy.SortDirection.DESCENDING;
+import static org.occurrent.eventstore.api.WriteCondition.streamVersionEq;
+
+@DisplayName("tiered event store")
+class TieredEventStoreTest {
+    private static final URI SOURCE = URI.create("http://name");
+    private static final OffsetDateTime NOW = OffsetDateTime.of(2021, 1, 1, 12, 0, 0, 0, UTC);
+
+    private InMemoryEventStore hot;
+    private InMemoryEventStore cold;
+    private TieredEventStore eventStore;
+
+    @BeforeEach
+    void create_tiered_event_store() {
+        hot = new InMemoryEventStore();
+        cold = new InMemoryEventStore();
+        eventStore = new TieredEventStore(hot, cold);
+    }
+
+    @Nested
+    @DisplayName("archive")
+    class ArchiveTest {
+
+        @Test
+        void moves_old_events_to_the_cold_tier_but_keeps_the_latest_event_of_each_stream_in_the_hot_tier() {
+            // Given
+            eventStore.write("name1", Stream.of(cloudEvent("1", 1), cloudEvent("2", 2), cloudEvent("3", 3)));
+            eventStore.write("name2", Stream.of(cloudEvent("4", 4)));
+            eventStore.write("name3", Stream.of(cloudEvent("5", 5), cloudEvent("6", 60)));
+
+            // When
+            long numberOfArchivedEvents = eventStore.archiveOlderThan(NOW.plusMinutes(10));
+
+            // Then
+            assertAll(
+                    () -> assertThat(numberOfArchivedEvents).isEqualTo(3),
+                    () -> assertThat(cold.all()).extracting(CloudEvent::getId).containsExactlyInAnyOrder("1", "2", "5"),
+                    () -> assertThat(hot.all()).extracting(CloudEvent::getId).containsExactlyInAnyOrder("3", "4", "6"),
+                    () -> assertThat(eventStore.read("name1").version()).isEqualTo(3)
+            );
+        }
+
+        @Test
+        void only_moves_the_oldest_consecutive_events_of_a_stream() {
+            // Given
+            eventStore.write("name", Stream.of(cloudEvent("1", 1), cloudEvent("2", 20), cloudEvent("3", 3), cloudEvent("4", 40)));
+
+            // When
+            long numberOfArchivedEvents = eventStore.archiveOlderThan(NOW.plusMinutes(10));
+
+            // Then
+            assertAll(
+                    () -> assertThat(numberOfArchivedEvents).isEqualTo(1),
+                    () -> assertThat(cold.all()).extracting(CloudEvent::getId).containsExactly("1"),
+                    () -> assertThat(hot.all()).extracting(CloudEvent::getId).containsExactly("2", "3", "4")
+            );
+        }
+
+        @Test
+        void moves_events_after_versions_of_events_that_have_been_deleted_from_the_stream() {
+            // Given
+            eventStore.write("name", Stream.of(cloudEvent("1", 1), cloudEvent("2", 2), cloudEvent("3", 3), cloudEvent("4", 4), cloudEvent("5", 50)));
+            eventStore.deleteEvent("2", SOURCE);
+
+            // When
+            long numberOfArchivedEvents = eventStore.archiveOlderThan(NOW.plusMinutes(10));
+
+            // Then
+            assertAll(
+                    () -> assertThat(numberOfArchivedEvents).isEqualTo(3),
+                    () -> assertThat(cold.all()).extracting(CloudEvent::getId).containsExactly("1", "3", "4"),
+                    () -> assertThat(hot.all()).extracting(CloudEvent::getId).containsExactly("5"),
+                    () -> assertThat(eventStore.read("name").events()).extracting(OccurrentExtensionGetter::getStreamVersion).containsExactly(1L, 3L, 4L, 5L)
+            );
+        }
+
+        @Test
+        void stops_moving_events_at_an_event_that_does_not_match_the_filter_when_versions_of_events_have_been_deleted_from_the_stream() {
+            // Given
+            eventStore.write("name", Stream.of(cloudEvent("1", 1), cloudEvent("2", 2), cloudEvent("3", 30), cloudEvent("4", 4), cloudEvent("5", 50)));
+            eventStore.deleteEvent("2", SOURCE);
+
+            // When
+            long numberOfArchivedEvents = eventStore.archiveOlderThan(NOW.plusMinutes(10));
+
+            // Then
+            assertAll(
+                    () -> assertThat(numberOfArchivedEvents).isEqualTo(1),
+                    () -> assertThat(cold.all()).extracting(CloudEvent::getId).containsExactly("1"),
+                    () -> assertThat(hot.all()).extracting(CloudEvent::getId).containsExactly("3", "4", "5")
+            );
+        }
+
+        @Test
+        void archiving_again_continues_after_the_last_archived_version_when_versions_of_events_have_been_deleted_from_the_stream() {
+            // Given
+            eventStore.write("name", Stream.of(cloudEvent("1", 1), cloudEvent("2", 2), cloudEvent("3", 3), cloudEvent("4", 40), cloudEvent("5", 50)));
+            eventStore.deleteEvent("2", SOURCE);
+            eventStore.archiveOlderThan(NOW.plusMinutes(10));
+            eventStore.deleteEvent("4", SOURCE);
+
+            // When
+            long numberOfArchivedEvents = eventStore.archiveOlderThan(NOW.plusMinutes(60));
+
+            // Then
+            assertAll(
+                    () -> assertThat(numberOfArchivedEvents).isZero(),
+                    () -> assertThat(cold.all()).extracting(CloudEvent::getId).containsExactly("1", "3"),
+                    () -> assertThat(hot.all()).extracting(CloudEvent::getId).containsExactly("5"),
+                    () -> assertThat(eventStore.read("name").events()).extracting(CloudEvent::getId).containsExactly("1", "3", "5")
+            );
+        }
+
+        @Test
+        void archiving_again_continues_where_the_previous_archiving_stopped_and_removes_events_that_are_already_in_the_cold_tier() {
+            // Given
+            eventStore.write("name", Stream.of(cloudEvent("1", 1), cloudEvent("2", 2), cloudEvent("3", 3)));
+            eventStore.archive(Filter.id("1"));
+            // Simulate that archiving was interrupted after event "2" was written to the cold tier
+            cold.write("name", streamVersionEq(1), hot.read("name", 0, 1).events());
+
+            // When
+            long numberOfArchivedEvents = eventStore.archive(Filter.all());
+
+            // Then
+            assertAll(
+                    () -> assertThat(numberOfArchivedEvents).isZero(),
+                    () -> assertThat(cold.all()).extracting(CloudEvent::getId).containsExactly("1", "2"),
+                    () -> assertThat(hot.all()).extracting(CloudEvent::getId).containsExactly("3")
+            );
+        }
+    }
+
+    @Nested
+    @DisplayName("reads")
+    class ReadsTest {
+
+        @BeforeEach
+        void write_and_archive_events() {
+            eventStore.write("name", Stream.of(cloudEvent("1", 1), cloudEvent("2", 2), cloudEvent("3", 3), cloudEvent("4", 40), cloudEvent("5", 50)));
+            eventStore.archiveOlderThan(NOW.plusMinutes(10));
+        }
+
+        @Test
+        void read_returns_the_events_of_both_tiers_in_stream_version_order() {
+            // When
+            EventStream<CloudEvent> eventStream = eventStore.read("name");
+
+            // Then
+            assertAll(
+                    () -> assertThat(eventStream.version()).isEqualTo(5),
+                    () -> assertThat(eventStream.events()).extracting(CloudEvent::getId).containsExactly("1", "2", "3", "4", "5"),
+                    () -> assertThat(eventStore.read("name", 2, 2).events()).extracting(CloudEvent::getId).containsExactly("3", "4")
+            );
+        }
+
+        @Test
+        void read_version_range_only_reads_the_tiers_that_contain_the_versions() {
+            assertAll(
+                    () -> assertThat(eventStore.readVersionRange("name", 1, 2).events()).extracting(CloudEvent::getId).containsExactly("2"),
+                    () -> assertThat(eventStore.readVersionRange("name", 2, 4).events()).extracting(CloudEvent::getId).containsExactly("3", "4"),
+                    () -> assertThat(eventStore.readAfterVersion("name", 3).events()).extracting(CloudEvent::getId).containsExactly("4", "5")
+            );
+        }
+
+        @Test
+        void read_returns_the_stream_versions_of_the_events_in_the_tiered_event_store_when_versions_of_events_were_deleted_before_they_were_archived() {
+            // Given
+            InMemoryEventStore hotEventStore = new InMemoryEventStore();
+            InMemoryEventStore coldEventStore = new InMemoryEventStore();
+            TieredEventStore tieredEventStore = new TieredEventStore(hotEventStore, coldEventStore);
+            tieredEventStore.write("name", Stream.of(cloudEvent("1", 1), cloudEvent("2", 2), cloudEvent("3", 3), cloudEvent("4", 4), cloudEvent("5", 50)));
+            tieredEventStore.deleteEvent("2", SOURCE);
+            tieredEventStore.archiveOlderThan(NOW.plusMinutes(10));
+
+            // When
+            EventStream<CloudEvent> eventStream = tieredEventStore.readVersionRange("name", 2, 4);
+
+            // Then
+            assertAll(
+                    () -> assertThat(eventStream.version()).isEqualTo(5),
+                    () -> assertThat(eventStream.events()).extracting(CloudEvent::getId, OccurrentExtensionGetter::getStreamVersion).containsExactly(tuple("3", 3L), tuple("4", 4L)),
+                    () -> assertThat(tieredEventStore.readVersionRange("name", 0, 1).events()).extracting(CloudEvent::getId).containsExactly("1"),
+                    () -> assertThat(tieredEventStore.readAfterVersion("name", 3).events()).extracting(CloudEvent::getId).containsExactly("4", "5"),
+                    () -> assertThat(tieredEventStore.all()).extracting(CloudEvent::getId, OccurrentExtensionGetter::getStreamVersion).containsExactly(tuple("1", 1L), tuple("3", 3L), tuple("4", 4L), tuple("5", 5L)),
+                    () -> assertThat(tieredEventStore.all()).allSatisfy(cloudEvent -> assertThat(cloudEvent.getExtensionNames()).doesNotContain(TieredEventStore.TIERED_STREAM_VERSION))
+            );
+        }
+
+        @Test
+        void read_includes_events_that_are_archived_while_the_hot_tier_is_read() {
+            // Given
+            ArchivingOnReadEventStore hotArchivingOnRead = new ArchivingOnReadEventStore();
+            InMemoryEventStore coldEventStore = new InMemoryEventStore();
+            TieredEventStore tieredEventStore = new TieredEventStore(hotArchivingOnRead, coldEventStore);
+            tieredEventStore.write("name", Stream.of(cloudEvent("1", 1), cloudEvent("2", 2), cloudEvent("3", 3), cloudEvent("4", 40)));
+            hotArchivingOnRead.archiveOnNextRead(() -> tieredEventStore.archiveOlderThan(NOW.plusMinutes(10)));
+
+            // When
+            EventStream<CloudEvent> eventStream = tieredEventStore.read("name");
+
+            // Then
+            assertAll(
+                    () -> assertThat(eventStream.version()).isEqualTo(4),
+                    () -> assertThat(eventStream.events()).extracting(CloudEvent::getId).containsExactly("1", "2", "3", "4"),
+                    () -> assertThat(coldEventStore.all()).extracting(CloudEvent::getId).containsExactly("1", "2", "3")
+            );
+        }
+
+        @Test
+        void writes_are_made_to_the_hot_tier_with_the_current_stream_version() {
+            // When
+            eventStore.write("name", streamVersionEq(5), Stream.of(cloudEvent("6", 60)));
+
+            // Then
+            assertAll(
+                    () -> assertThat(eventStore.read("name").events()).extracting(CloudEvent::getId).containsExactly("1", "2", "3", "4", "5", "6"),
+                    () -> assertThat(hot.read("name").version()).isEqualTo(6)
+            );
+        }
+    }
+
+    @Nested
+    @DisplayName("queries and operations")
+    class QueriesAndOperationsTest {
+
+        @BeforeEach
+        void write_and_archive_events() {
+            eventStore.write("name1", Stream.of(cloudEvent("1", 1), cloudEvent("3", 30)));
+            eventStore.write("name2", Stream.of(cloudEvent("2", 2), cloudEvent("4", 40)));
+            eventStore.archiveOlderThan(NOW.plusMinutes(10));
+        }
+
+        @Test
+        void query_merges_the_events_of_both_tiers_according_to_the_sort_order() {
+            assertAll(
+                    () -> assertThat(eventStore.all(SortBy.time(ASCENDING))).extracting(CloudEvent::getId).containsExactly("1", "2", "3", "4"),
+                    () -> assertThat(eventStore.all(SortBy.time(DESCENDING))).extracting(CloudEvent::getId).containsExactly("4", "3", "2", "1"),
+                    () -> assertThat(eventStore.query(Filter.all(), 1, 2, SortBy.time(ASCENDING))).extracting(CloudEvent::getId).containsExactly("2", "3"),
+                    () -> assertThat(eventStore.count()).isEqualTo(4),
+                    () -> assertThat(eventStore.exists(Filter.id("1"))).isTrue()
+            );
+        }
+
+        @Test
+        void events_are_deleted_and_updated_in_the_tier_where_they_are_stored() {
+            // When
+            Optional<CloudEvent> updatedCloudEvent = eventStore.updateEvent("1", SOURCE, cloudEvent -> CloudEventBuilder.v1(cloudEvent).withSubject("updated").build());
+            eventStore.deleteEventStream("name2");
+
+            // Then
+            assertAll(
+                    () -> assertThat(updatedCloudEvent).hasValueSatisfying(cloudEvent -> assertThat(cloudEvent.getSubject()).isEqualTo("updated")),
+                    () -> assertThat(cold.all()).extracting(CloudEvent::getId, CloudEvent::getSubject).containsExactly(tuple("1", "updated")),
+                    () -> assertThat(eventStore.all()).extracting(CloudEvent::getId).containsExactly("1", "3")
+            );
+        }
+    }
+
+    // Runs an archive (once) just before the events are read, as if it was made concurrently
+    private static class ArchivingOnReadEventStore extends InMemoryEventStore {
+        private Runnable archive;
+
+        void archiveOnNextRead(Runnable archive) {
+            this.archive = archive;
+        }
+
+        @Override
+        public EventStream<CloudEvent> read(String streamId, int skip, int limit) {
+            runArchive();
+            return super.read(streamId, skip, limit);
+        }
+
+        @Override
+        public EventStream<CloudEvent> readVersionRange(String streamId, long fromVersionExclusive, long toVersionInclusive) {
+            runArchive();
+            return super.readVersionRange(streamId, fromVersionExclusive, toVersionInclusive);
+        }
+
+        private void runArchive() {
+            if (archive != null) {
+                Runnable archive = this.archive;
+                this.archive = null;
+                archive.run();
+            }
+        }
+    }
+
+    private static CloudEvent cloudEvent(String id, int minute) {
+        return CloudEventBuilder.v1()
+                .withId(id)
+                .withSource(SOURCE)
+                .withType("type")
+                .withTime(NOW.plusMinutes(minute))
+                .withData("{}".getBytes())
+                .build();
+    }
+}
@@ -1,11 +1,16 @@
 package org.occurrent.subscription.api.blocking;
 
 import io.cloudevents.CloudEvent;
+import org.occurrent.subscription.BatchConfig;
 import org.occurrent.subscription.StartAt;
 import org.occurrent.subscription.SubscriptionFilter;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.function.Consumer;
 
+import static java.util.Objects.requireNonNull;
+
 /**
  * The purpose of a subscription is to read events from an event store and react to these events.
  * <p>
@@ -57,4 +62,39 @@ public interface Subscribable {
     default Subscription subscribe(String subscriptionId, Consumer<CloudEvent> action) {
         return subscribe(subscriptionId, null, StartAt.subscriptionModelDefault(), action);
     }
+
+    /**
+     * Start listening to cloud events persisted to the event store using the supplied start position and <code>filter</code>, and deliver them to the
+     * <code>action</code> in batches as configured by the <code>batchConfig</code>. This allows the subscriber to e.g. update a read model using a single bulk write
+     * per batch instead of one write per event. The batch is delivered in the order that the cloud events were written and the position of the last
+     * cloud event in the batch can be found using {@code PositionAwareCloudEvent.getSubscriptionPositionOrThrowIAE(batch.get(batch.size() - 1))}
+     * if the subscription model is position aware.
+     * <p>
+     * Subscription models that don't support batching deliver each cloud event in a batch of its own.
+     * </p>
+     *
+     * @param subscriptionId The id of the subscription, must be unique!
+     * @param filter         The filter to use to limit which events that are of interest from the EventStore.
+     * @param startAt        The position to start the subscription from
+     * @param batchConfig    Configures the maximum size of a batch and the maximum time to wait for a batch to fill up
+     * @param action         This action will be invoked for each batch of cloud events that is stored in the EventStore. A batch is never empty.
+     */
+    default Subscription subscribeBatch(String subscriptionId, SubscriptionFilter filter, StartAt startAt, BatchConfig batchConfig, Consumer<List<CloudEvent>> action) {
+        requireNonNull(batchConfig, BatchConfig.class.getSimpleName() + " cannot be null");
+        requireNonNull(action, "Action cannot be null");
+        return subscribe(subscriptionId, filter, startAt, cloudEvent -> action.accept(Collections.singletonList(cloudEvent)));
+    }
+
+    /**
+     * Start listening to cloud events persisted to the event store at this moment in time, and deliver them to the <code>action</code> in batches
+     * as configured by the <code>batchConfig</code>.
+     *
+     * @param subscriptionId The id of the subscription, must be unique!
+     * @param batchConfig    Configures the maximum size of a batch and the maximum time to wait for a batch to fill up
+     * @param action         This action will be invoked for each batch of cloud events that is stored in the EventStore.
+     * @see #subscribeBatch(String, SubscriptionFilter, StartAt, BatchConfig, Consumer)
+     */
+    default Subscription subscribeBatch(String subscriptionId, BatchConfig batchConfig, Consumer<List<CloudEvent>> action) {
+        return subscribeBatch(subscriptionId, null, StartAt.subscriptionModelDefault(), batchConfig, action);
+    }
 }
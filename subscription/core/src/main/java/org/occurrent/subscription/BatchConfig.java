@@ -0,0 +1,81 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.subscription;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Configures how cloud events are batched when subscribing with {@code subscribeBatch}. A batch is delivered to the subscriber when it contains
+ * {@link #maxSize} cloud events, or when {@link #maxWait} has elapsed since the first cloud event in the batch was received, whichever comes first.
+ * Cloud events that the subscription model has already fetched are always included in the batch without waiting (up to {@link #maxSize}).
+ */
+public class BatchConfig {
+    public final int maxSize;
+    public final Duration maxWait;
+
+    /**
+     * @param maxSize The maximum number of cloud events in a batch, must be greater than zero.
+     * @param maxWait The maximum time to wait for more cloud events to arrive before the batch is delivered. {@link Duration#ZERO} means that only the cloud events
+     *                that are already fetched by the subscription model are included in the batch.
+     */
+    public BatchConfig(int maxSize, Duration maxWait) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be greater than zero");
+        }
+        requireNonNull(maxWait, "maxWait cannot be null");
+        if (maxWait.isNegative()) {
+            throw new IllegalArgumentException("maxWait cannot be negative");
+        }
+        this.maxSize = maxSize;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * @param maxSize The maximum number of cloud events in a batch, must be greater than zero.
+     * @param maxWait The maximum time to wait for more cloud events to arrive before the batch is delivered.
+     * @return A new {@link BatchConfig}
+     */
+    public static BatchConfig batchConfig(int maxSize, Duration maxWait) {
+        return new BatchConfig(maxSize, maxWait);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BatchConfig)) return false;
+        BatchConfig that = (BatchConfig) o;
+        return maxSize == that.maxSize && Objects.equals(maxWait, that.maxWait);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(maxSize, maxWait);
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", BatchConfig.class.getSimpleName() + "[", "]")
+                .add("maxSize=" + maxSize)
+                .add("maxWait=" + maxWait)
+                .toString();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.subscription;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates executors that are suitable for subscription models that block a thread per subscription, such as the {@code NativeMongoSubscriptionModel}
+ * and the {@code SpringMongoSubscriptionModel}.
+ * <p>
+ * On Java 21 and later, {@link #newVirtualThreadPerTaskExecutor()} runs each subscription on its own <a href="https://openjdk.org/jeps/444">virtual thread</a>.
+ * A virtual thread that blocks while waiting for the next change doesn't occupy a platform thread, which makes it possible to run thousands of subscriptions
+ * in the same JVM without having to size a thread pool. Occurrent is compiled for Java 8, which is why the virtual thread executor is looked up when the application is running,
+ * so the same artifact can be used on all Java versions.
+ * </p>
+ * <p>
+ * The {@code NativeMongoSubscriptionModel}, {@code NativeMongoMultiplexingSubscriptionModel}, {@code SpringMongoSubscriptionModel} and the {@code DurableSubscriptionModel},
+ * as well as the utilities that they use (batching, checkpointing and the write-behind mode of the MongoDB subscription position storages), guard their state with a {@link java.util.concurrent.locks.ReentrantLock} instead of {@code synchronized},
+ * since a virtual thread that blocks while holding a monitor (e.g. when waiting for a subscription to stop, when delivering a batch or when storing a subscription position) pins its carrier thread.
+ * Note that some operations block the calling thread on I/O, for example {@code DurableSubscriptionModel.pauseSubscription} stores the position of the subscription
+ * before it returns, which doesn't pin a virtual thread but occupies a platform thread if called from one. The {@code CompetingConsumerSubscriptionModel}, the lease based
+ * competing consumer strategies and the {@code InMemorySubscriptionModel} still use {@code synchronized} lifecycle methods.
+ * </p>
+ */
+public class SubscriptionExecutors {
+    private static final MethodHandle NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findNewVirtualThreadPerTaskExecutor();
+
+    private SubscriptionExecutors() {
+    }
+
+    /**
+     * @return {@code true} if virtual threads are supported by the JVM, i.e. if {@link #newVirtualThreadPerTaskExecutor()} can be used.
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Create an executor that starts a new virtual thread for each task (subscription). This is the same as {@code Executors.newVirtualThreadPerTaskExecutor()} in Java 21.
+     *
+     * @return A new executor that starts a new virtual thread for each task.
+     * @throws UnsupportedOperationException If virtual threads are not supported by the JVM
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR == null) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this JVM (" + System.getProperty("java.version") + "), Java 21 or later is required.");
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to create virtual thread per task executor", e);
+        }
+    }
+
+    /**
+     * Create an executor that starts a new virtual thread for each task (subscription) if virtual threads are supported by the JVM,
+     * otherwise a {@link Executors#newCachedThreadPool() cached thread pool} is returned.
+     *
+     * @return A new executor
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutorOrCachedThreadPool() {
+        return isVirtualThreadsSupported() ? newVirtualThreadPerTaskExecutor() : Executors.newCachedThreadPool();
+    }
+
+    private static MethodHandle findNewVirtualThreadPerTaskExecutor() {
+        final MethodHandle methodHandle;
+        try {
+            methodHandle = MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+
+        // Virtual threads are a preview feature in Java 19 and 20, and creating the executor fails unless preview features are enabled.
+        try {
+            ((ExecutorService) methodHandle.invoke()).shutdown();
+        } catch (Throwable e) {
+            return null;
+        }
+        return methodHandle;
+    }
+}
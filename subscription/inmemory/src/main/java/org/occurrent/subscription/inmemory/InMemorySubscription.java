@@ -19,9 +19,13 @@ package org.occurrent.subscription.inmemory;
 import io.cloudevents.CloudEvent;
 import org.occurrent.filter.Filter;
 import org.occurrent.retry.RetryStrategy;
+import org.occurrent.subscription.BatchConfig;
 import org.occurrent.subscription.api.blocking.Subscription;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.StringJoiner;
 import java.util.concurrent.BlockingQueue;
@@ -29,6 +33,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.function.Consumer;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static org.occurrent.inmemory.filtermatching.FilterMatcher.matchesFilter;
 import static org.occurrent.retry.internal.RetryExecution.executeWithRetry;
 
@@ -38,7 +43,8 @@ import static org.occurrent.retry.internal.RetryExecution.executeWithRetry;
 public class InMemorySubscription implements Subscription, Runnable {
     private final String id;
     private final BlockingQueue<CloudEvent> queue;
-    private final Consumer<CloudEvent> consumer;
+    private final Consumer<List<CloudEvent>> consumer;
+    private final BatchConfig batchConfig;
     private final Filter filter;
     private final RetryStrategy retryStrategy;
 
@@ -46,9 +52,10 @@ public class InMemorySubscription implements Subscription, Runnable {
 
     private final CountDownLatch started = new CountDownLatch(1);
 
-    InMemorySubscription(String id, BlockingQueue<CloudEvent> queue, Consumer<CloudEvent> consumer, Filter filter, RetryStrategy retryStrategy) {
+    InMemorySubscription(String id, BlockingQueue<CloudEvent> queue, BatchConfig batchConfig, Consumer<List<CloudEvent>> consumer, Filter filter, RetryStrategy retryStrategy) {
         this.id = id;
         this.queue = queue;
+        this.batchConfig = batchConfig;
         this.consumer = consumer;
         this.filter = filter;
         this.retryStrategy = retryStrategy;
@@ -83,12 +90,12 @@ public class InMemorySubscription implements Subscription, Runnable {
         if (this == o) return true;
         if (!(o instanceof InMemorySubscription)) return false;
         InMemorySubscription that = (InMemorySubscription) o;
-        return shutdown == that.shutdown && Objects.equals(id, that.id) && Objects.equals(queue, that.queue) && Objects.equals(consumer, that.consumer) && Objects.equals(filter, that.filter) && Objects.equals(retryStrategy, that.retryStrategy);
+        return shutdown == that.shutdown && Objects.equals(id, that.id) && Objects.equals(queue, that.queue) && Objects.equals(consumer, that.consumer) && Objects.equals(batchConfig, that.batchConfig) && Objects.equals(filter, that.filter) && Objects.equals(retryStrategy, that.retryStrategy);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, queue, consumer, filter, retryStrategy, shutdown);
+        return Objects.hash(id, queue, consumer, batchConfig, filter, retryStrategy, shutdown);
     }
 
     @Override
@@ -97,6 +104,7 @@ public class InMemorySubscription implements Subscription, Runnable {
                 .add("id='" + id + "'")
                 .add("queue=" + queue)
                 .add("consumer=" + consumer)
+                .add("batchConfig=" + batchConfig)
                 .add("filter=" + filter)
                 .add("retryStrategy=" + retryStrategy)
                 .add("shutdown=" + shutdown)
@@ -127,8 +135,36 @@ public class InMemorySubscription implements Subscription, Runnable {
             }
 
             if (cloudEvent != null) {
-                executeWithRetry(consumer, __ -> !shutdown, retryStrategy).accept(cloudEvent);
+                executeWithRetry(consumer, __ -> !shutdown, retryStrategy).accept(collectBatch(cloudEvent));
             }
         }
     }
+
+    private List<CloudEvent> collectBatch(CloudEvent firstCloudEvent) {
+        if (batchConfig.maxSize == 1) {
+            return Collections.singletonList(firstCloudEvent);
+        }
+        List<CloudEvent> batch = new ArrayList<>(batchConfig.maxSize);
+        batch.add(firstCloudEvent);
+        queue.drainTo(batch, batchConfig.maxSize - 1);
+        long deadline = System.nanoTime() + batchConfig.maxWait.toNanos();
+        try {
+            while (batch.size() < batchConfig.maxSize && !shutdown) {
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    break;
+                }
+                CloudEvent cloudEvent = queue.poll(remainingNanos, NANOSECONDS);
+                if (cloudEvent == null) {
+                    break;
+                }
+                batch.add(cloudEvent);
+                queue.drainTo(batch, batchConfig.maxSize - batch.size());
+            }
+        } catch (InterruptedException e) {
+            // Deliver what we've got so far
+            Thread.currentThread().interrupt();
+        }
+        return Collections.unmodifiableList(batch);
+    }
 }
\ No newline at end of file
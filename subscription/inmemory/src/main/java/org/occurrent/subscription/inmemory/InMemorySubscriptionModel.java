@@ -19,6 +19,7 @@ package org.occurrent.subscription.inmemory;
 import io.cloudevents.CloudEvent;
 import org.occurrent.filter.Filter;
 import org.occurrent.retry.RetryStrategy;
+import org.occurrent.subscription.BatchConfig;
 import org.occurrent.subscription.OccurrentSubscriptionFilter;
 import org.occurrent.subscription.StartAt;
 import org.occurrent.subscription.SubscriptionFilter;
@@ -27,6 +28,7 @@ import org.occurrent.subscription.api.blocking.SubscriptionModel;
 import org.occurrent.subscription.internal.ExecutorShutdown;
 
 import javax.annotation.PreDestroy;
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.*;
 import java.util.function.Consumer;
@@ -97,7 +99,15 @@ public class InMemorySubscriptionModel implements SubscriptionModel, Consumer<St
     }
 
     @Override
-    public synchronized Subscription subscribe(String subscriptionId, SubscriptionFilter filter, StartAt startAt, Consumer<CloudEvent> action) {
+    public Subscription subscribe(String subscriptionId, SubscriptionFilter filter, StartAt startAt, Consumer<CloudEvent> action) {
+        if (action == null) {
+            throw new IllegalArgumentException("action cannot be null");
+        }
+        return subscribeBatch(subscriptionId, filter, startAt, new BatchConfig(1, Duration.ZERO), cloudEvents -> action.accept(cloudEvents.get(0)));
+    }
+
+    @Override
+    public synchronized Subscription subscribeBatch(String subscriptionId, SubscriptionFilter filter, StartAt startAt, BatchConfig batchConfig, Consumer<List<CloudEvent>> action) {
         if (shutdown) {
             throw new IllegalStateException("Cannot subscribe when shutdown");
         } else if (subscriptionId == null) {
@@ -108,6 +118,8 @@ public class InMemorySubscriptionModel implements SubscriptionModel, Consumer<St
             throw new IllegalArgumentException("Subscription " + subscriptionId + " is already defined.");
         } else if (startAt == null) {
             throw new IllegalArgumentException(StartAt.class.getSimpleName() + " cannot be null");
+        } else if (batchConfig == null) {
+            throw new IllegalArgumentException(BatchConfig.class.getSimpleName() + " cannot be null");
         }
 
         StartAt startAtToUse = startAt.get();
@@ -117,7 +129,7 @@ public class InMemorySubscriptionModel implements SubscriptionModel, Consumer<St
 
         final Filter f = getFilter(filter);
 
-        InMemorySubscription subscription = new InMemorySubscription(subscriptionId, queueSupplier.get(), action, f, retryStrategy);
+        InMemorySubscription subscription = new InMemorySubscription(subscriptionId, queueSupplier.get(), batchConfig, action, f, retryStrategy);
         subscriptions.put(subscriptionId, subscription);
 
         if (!running) {
@@ -26,6 +26,7 @@ import org.occurrent.domain.NameDefined;
 import org.occurrent.domain.NameWasChanged;
 import org.occurrent.eventstore.inmemory.InMemoryEventStore;
 import org.occurrent.functional.CheckedFunction;
+import org.occurrent.subscription.BatchConfig;
 import org.occurrent.subscription.StartAt;
 import org.occurrent.subscription.StringBasedSubscriptionPosition;
 import org.occurrent.time.TimeConversion;
@@ -35,6 +36,7 @@ import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
@@ -152,6 +154,60 @@ public class InMemorySubscriptionModelTest {
         assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class).hasMessage("InMemorySubscriptionModel only supports starting from 'now' and 'default' (StartAt.now() or StartAt.subscriptionModelDefault())");
     }
     
+    @Nested
+    @DisplayName("batch subscription")
+    class BatchSubscriptionTest {
+
+        @Test
+        void events_written_together_are_delivered_in_a_single_batch() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            NameDefined nameDefined = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+            NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(1), "name2");
+            NameWasChanged nameWasChanged2 = new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(2), "name3");
+            CopyOnWriteArrayList<List<CloudEvent>> batches = new CopyOnWriteArrayList<>();
+            inMemorySubscriptionModel.subscribeBatch("subscription", new BatchConfig(10, Duration.ofMillis(200)), batches::add).waitUntilStarted();
+
+            // When
+            inMemoryEventStore.write("1", Stream.of(nameDefined, nameWasChanged1, nameWasChanged2).flatMap(InMemorySubscriptionModelTest.this::serialize));
+
+            // Then
+            await().atMost(2, SECONDS).untilAsserted(() -> assertThat(batches).hasSize(1));
+            assertThat(batches.get(0)).extracting(CloudEvent::getId).containsExactly(nameDefined.getEventId(), nameWasChanged1.getEventId(), nameWasChanged2.getEventId());
+        }
+
+        @Test
+        void batches_contain_at_most_max_size_events() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            NameDefined nameDefined = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+            NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(1), "name2");
+            NameWasChanged nameWasChanged2 = new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(2), "name3");
+            CopyOnWriteArrayList<List<CloudEvent>> batches = new CopyOnWriteArrayList<>();
+            inMemorySubscriptionModel.subscribeBatch("subscription", new BatchConfig(2, Duration.ofMillis(200)), batches::add).waitUntilStarted();
+
+            // When
+            inMemoryEventStore.write("1", Stream.of(nameDefined, nameWasChanged1, nameWasChanged2).flatMap(InMemorySubscriptionModelTest.this::serialize));
+
+            // Then
+            await().atMost(2, SECONDS).untilAsserted(() -> assertThat(batches).hasSize(2));
+            assertAll(
+                    () -> assertThat(batches.get(0)).extracting(CloudEvent::getId).containsExactly(nameDefined.getEventId(), nameWasChanged1.getEventId()),
+                    () -> assertThat(batches.get(1)).extracting(CloudEvent::getId).containsExactly(nameWasChanged2.getEventId())
+            );
+        }
+
+        @Test
+        void batch_config_cannot_be_null() {
+            // When
+            Throwable throwable = catchThrowable(() -> inMemorySubscriptionModel.subscribeBatch("subscription", null, batch -> {
+            }));
+
+            // Then
+            assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class).hasMessage("BatchConfig cannot be null");
+        }
+    }
+
     @Nested
     @DisplayName("Lifecycle")
     class LifeCycleTest {
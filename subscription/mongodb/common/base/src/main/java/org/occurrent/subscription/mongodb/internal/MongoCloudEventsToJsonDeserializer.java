@@ -20,6 +20,7 @@ import com.mongodb.client.model.changestream.ChangeStreamDocument;
 import com.mongodb.client.model.changestream.OperationType;
 import io.cloudevents.CloudEvent;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
 import org.occurrent.eventstore.mongodb.internal.OccurrentCloudEventMongoDocumentMapper;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
 
@@ -36,8 +37,12 @@ public class MongoCloudEventsToJsonDeserializer {
                 .map(document -> OccurrentCloudEventMongoDocumentMapper.convertToCloudEvent(timeRepresentation, document));
     }
 
-    private static Optional<Document> changeStreamDocumentToCloudEventAsJson(ChangeStreamDocument<Document> changeStreamDocument) {
-        final Document eventsAsJson;
+    public static Optional<CloudEvent> deserializeToLazyCloudEvent(ChangeStreamDocument<RawBsonDocument> changeStreamDocument) {
+        return changeStreamDocumentToCloudEventAsJson(changeStreamDocument).map(OccurrentCloudEventMongoDocumentMapper::convertToCloudEvent);
+    }
+
+    private static <T> Optional<T> changeStreamDocumentToCloudEventAsJson(ChangeStreamDocument<T> changeStreamDocument) {
+        final T eventsAsJson;
         OperationType operationType = changeStreamDocument.getOperationType();
         if (operationType == INSERT) {
             eventsAsJson = changeStreamDocument.getFullDocument();
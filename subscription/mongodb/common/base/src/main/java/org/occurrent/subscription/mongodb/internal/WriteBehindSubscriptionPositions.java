@@ -0,0 +1,164 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.occurrent.subscription.mongodb.internal;
+
+import org.occurrent.subscription.SubscriptionPosition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Coalesces the subscription positions that are saved by all subscriptions and writes them using a single batch write every {@code flushInterval}.
+ * Only the latest position of each subscription is written. If a batch write fails, the positions are retried on the next flush, unless a newer position
+ * has been saved for the subscription in the mean time. The {@code batchWriter} should therefore make a single attempt instead of retrying until it succeeds.
+ */
+public class WriteBehindSubscriptionPositions {
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindSubscriptionPositions.class);
+    private static final int SHUTDOWN_FLUSH_MAX_ATTEMPTS = 3;
+    private static final long SHUTDOWN_FLUSH_BACKOFF_MILLIS = 100;
+
+    private final Consumer<Map<String, SubscriptionPosition>> batchWriter;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, SubscriptionPosition> pendingPositions = new ConcurrentHashMap<>();
+    // Makes sure that a discarded position is not written by a flush that is in progress
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * @param flushInterval How often to write the pending subscription positions, must be greater than zero.
+     * @param batchWriter   Writes the subscription positions of several subscriptions in one batch
+     */
+    public WriteBehindSubscriptionPositions(Duration flushInterval, Consumer<Map<String, SubscriptionPosition>> batchWriter) {
+        requireNonNull(flushInterval, "flushInterval cannot be null");
+        requireNonNull(batchWriter, "batchWriter cannot be null");
+        if (flushInterval.isNegative() || flushInterval.isZero()) {
+            throw new IllegalArgumentException("flushInterval must be greater than zero");
+        }
+        this.batchWriter = batchWriter;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "occurrent-write-behind-subscription-positions");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long flushIntervalNanos = flushInterval.toNanos();
+        scheduler.scheduleWithFixedDelay(this::flushAndLogFailure, flushIntervalNanos, flushIntervalNanos, NANOSECONDS);
+    }
+
+    /**
+     * Save the subscription position on next flush, replacing any pending position of the subscription.
+     */
+    public void save(String subscriptionId, SubscriptionPosition subscriptionPosition) {
+        pendingPositions.put(subscriptionId, subscriptionPosition);
+    }
+
+    /**
+     * @return The subscription position that is waiting to be written, or {@code null} if there's no pending position for the subscription.
+     */
+    public SubscriptionPosition pending(String subscriptionId) {
+        return pendingPositions.get(subscriptionId);
+    }
+
+    /**
+     * Discard the pending subscription position, if any. A flush that is in progress is completed before this method returns so that
+     * the subscription position can be safely deleted from the storage afterwards.
+     */
+    public void discard(String subscriptionId) {
+        lock.lock();
+        try {
+            pendingPositions.remove(subscriptionId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write all pending subscription positions in the calling thread.
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            if (pendingPositions.isEmpty()) {
+                return;
+            }
+            Map<String, SubscriptionPosition> batch = new LinkedHashMap<>(pendingPositions);
+            batchWriter.accept(batch);
+            // Only remove the positions that were written, a newer position may have been saved while writing
+            batch.forEach(pendingPositions::remove);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop the background thread and write all pending subscription positions. The write is attempted at most {@value #SHUTDOWN_FLUSH_MAX_ATTEMPTS} times so that
+     * shutdown doesn't hang if the storage is unavailable. If it still fails, the pending positions are logged and discarded, which means that the cloud events
+     * after the last written positions are delivered again when the subscriptions are restarted.
+     */
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                flush();
+                return;
+            } catch (Exception e) {
+                if (attempt == SHUTDOWN_FLUSH_MAX_ATTEMPTS || !sleep(SHUTDOWN_FLUSH_BACKOFF_MILLIS)) {
+                    log.error("Failed to write the subscription positions of {} on shutdown, discarding them. The cloud events after the last written position of these subscriptions will be delivered again when they are restarted.",
+                            pendingPositions.keySet(), e);
+                    pendingPositions.clear();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void flushAndLogFailure() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("Failed to write {} subscription position(s), will retry on next flush.", pendingPositions.size(), e);
+        }
+    }
+}
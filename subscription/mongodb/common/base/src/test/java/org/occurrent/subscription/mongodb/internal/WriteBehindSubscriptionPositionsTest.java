@@ -0,0 +1,212 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.subscription.mongodb.internal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.occurrent.subscription.StringBasedSubscriptionPosition;
+import org.occurrent.subscription.SubscriptionPosition;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.Assertions.entry;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+@DisplayName("write-behind subscription positions")
+class WriteBehindSubscriptionPositionsTest {
+
+    private final List<Map<String, SubscriptionPosition>> batches = new CopyOnWriteArrayList<>();
+    private WriteBehindSubscriptionPositions writeBehind;
+
+    @AfterEach
+    void shutdown_write_behind() {
+        if (writeBehind != null) {
+            writeBehind.shutdown();
+        }
+    }
+
+    @Test
+    void only_the_latest_position_of_each_subscription_is_written() {
+        // Given
+        writeBehind = new WriteBehindSubscriptionPositions(Duration.ofMillis(50), batches::add);
+
+        // When
+        writeBehind.save("subscription", position("1"));
+        writeBehind.save("subscription", position("2"));
+        writeBehind.save("subscription", position("3"));
+
+        // Then
+        await().atMost(2, SECONDS).untilAsserted(() -> assertThat(batches).hasSize(1));
+        assertAll(
+                () -> assertThat(batches.get(0)).containsExactly(entry("subscription", position("3"))),
+                () -> assertThat(writeBehind.pending("subscription")).isNull()
+        );
+    }
+
+    @Test
+    void positions_of_several_subscriptions_are_written_in_a_single_batch() {
+        // Given
+        writeBehind = new WriteBehindSubscriptionPositions(Duration.ofHours(1), batches::add);
+
+        // When
+        writeBehind.save("subscription1", position("1"));
+        writeBehind.save("subscription2", position("2"));
+        writeBehind.save("subscription3", position("3"));
+        writeBehind.flush();
+
+        // Then
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0)).containsOnlyKeys("subscription1", "subscription2", "subscription3");
+    }
+
+    @Test
+    void pending_position_is_returned_until_it_has_been_written() {
+        // Given
+        writeBehind = new WriteBehindSubscriptionPositions(Duration.ofHours(1), batches::add);
+
+        // When
+        writeBehind.save("subscription", position("1"));
+
+        // Then
+        assertThat(writeBehind.pending("subscription")).isEqualTo(position("1"));
+        writeBehind.flush();
+        assertThat(writeBehind.pending("subscription")).isNull();
+    }
+
+    @Test
+    void positions_are_written_again_on_next_flush_when_batch_write_fails() {
+        // Given
+        AtomicBoolean fail = new AtomicBoolean(true);
+        writeBehind = new WriteBehindSubscriptionPositions(Duration.ofHours(1), batch -> {
+            if (fail.get()) {
+                throw new IllegalStateException("expected");
+            }
+            batches.add(batch);
+        });
+        writeBehind.save("subscription", position("1"));
+
+        // When
+        Throwable throwable = catchThrowable(writeBehind::flush);
+        fail.set(false);
+        writeBehind.flush();
+
+        // Then
+        assertAll(
+                () -> assertThat(throwable).isExactlyInstanceOf(IllegalStateException.class),
+                () -> assertThat(batches).containsExactly(singleton("subscription", position("1")))
+        );
+    }
+
+    @Test
+    void newer_position_saved_while_writing_is_written_on_next_flush() {
+        // Given
+        writeBehind = new WriteBehindSubscriptionPositions(Duration.ofHours(1), batch -> {
+            if (batches.isEmpty()) {
+                writeBehind.save("subscription", position("2"));
+            }
+            batches.add(batch);
+        });
+        writeBehind.save("subscription", position("1"));
+
+        // When
+        writeBehind.flush();
+        writeBehind.flush();
+
+        // Then
+        assertThat(batches).containsExactly(singleton("subscription", position("1")), singleton("subscription", position("2")));
+    }
+
+    @Test
+    void discarded_positions_are_not_written() {
+        // Given
+        writeBehind = new WriteBehindSubscriptionPositions(Duration.ofHours(1), batches::add);
+        writeBehind.save("subscription1", position("1"));
+        writeBehind.save("subscription2", position("2"));
+
+        // When
+        writeBehind.discard("subscription1");
+        writeBehind.flush();
+
+        // Then
+        assertThat(batches).containsExactly(singleton("subscription2", position("2")));
+    }
+
+    @Test
+    void pending_positions_are_written_on_shutdown() {
+        // Given
+        WriteBehindSubscriptionPositions writeBehind = new WriteBehindSubscriptionPositions(Duration.ofHours(1), batches::add);
+        writeBehind.save("subscription", position("1"));
+
+        // When
+        writeBehind.shutdown();
+
+        // Then
+        assertThat(batches).containsExactly(singleton("subscription", position("1")));
+    }
+
+    @Test
+    void pending_positions_are_discarded_on_shutdown_when_they_cannot_be_written() {
+        // Given
+        AtomicInteger attempts = new AtomicInteger();
+        WriteBehindSubscriptionPositions writeBehind = new WriteBehindSubscriptionPositions(Duration.ofHours(1), __ -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("expected");
+        });
+        writeBehind.save("subscription", position("1"));
+
+        // When
+        Throwable throwable = catchThrowable(writeBehind::shutdown);
+
+        // Then
+        assertAll(
+                () -> assertThat(throwable).isNull(),
+                () -> assertThat(attempts).hasValue(3),
+                () -> assertThat(writeBehind.pending("subscription")).isNull()
+        );
+    }
+
+    @Test
+    void flush_interval_must_be_greater_than_zero() {
+        // When
+        Throwable throwable = catchThrowable(() -> new WriteBehindSubscriptionPositions(Duration.ZERO, batches::add));
+
+        // Then
+        assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class).hasMessage("flushInterval must be greater than zero");
+    }
+
+    private static SubscriptionPosition position(String value) {
+        return new StringBasedSubscriptionPosition(value);
+    }
+
+    private static Map<String, SubscriptionPosition> singleton(String subscriptionId, SubscriptionPosition subscriptionPosition) {
+        Map<String, SubscriptionPosition> batch = new LinkedHashMap<>();
+        batch.put(subscriptionId, subscriptionPosition);
+        return batch;
+    }
+}
@@ -18,7 +18,10 @@ package org.occurrent.subscription.mongodb.nativedriver.blocking;
 
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
 import org.bson.BsonTimestamp;
 import org.bson.BsonValue;
 import org.bson.Document;
@@ -27,9 +30,13 @@ import org.occurrent.subscription.SubscriptionPosition;
 import org.occurrent.subscription.api.blocking.SubscriptionPositionStorage;
 import org.occurrent.subscription.mongodb.MongoOperationTimeSubscriptionPosition;
 import org.occurrent.subscription.mongodb.MongoResumeTokenSubscriptionPosition;
+import org.occurrent.subscription.mongodb.internal.WriteBehindSubscriptionPositions;
 
 import javax.annotation.PreDestroy;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Supplier;
 
 import static com.mongodb.client.model.Filters.eq;
@@ -45,6 +52,8 @@ public class NativeMongoSubscriptionPositionStorage implements SubscriptionPosit
 
     private final MongoCollection<Document> subscriptionPositionCollection;
     private final RetryStrategy retryStrategy;
+    // Only defined in write-behind mode
+    private final WriteBehindSubscriptionPositions writeBehindSubscriptionPositions;
 
     private volatile boolean shutdown = false;
 
@@ -86,15 +95,40 @@ public class NativeMongoSubscriptionPositionStorage implements SubscriptionPosit
      * @param retryStrategy                  A custom retry strategy to use if there's a problem reading/saving/deleting the position to the MongoDB storage.
      */
     public NativeMongoSubscriptionPositionStorage(MongoCollection<Document> subscriptionPositionCollection, RetryStrategy retryStrategy) {
+        this(subscriptionPositionCollection, retryStrategy, null);
+    }
+
+    /**
+     * Create a {@code BlockingSubscriptionPositionStorage} that uses the Native sync Java MongoDB driver to persists the subscription position in MongoDB.
+     * <p>
+     * If a {@code writeBehindFlushInterval} is specified, {@link #save(String, SubscriptionPosition)} doesn't write to MongoDB but records the position in memory.
+     * The latest position of every subscription that has been saved since the last flush is then written using a single unordered bulk write every {@code writeBehindFlushInterval}.
+     * This greatly reduces the write load when there are many subscriptions, at the expense of that the most recently saved positions may be lost if the
+     * application crashes (which means that a few events may be delivered again after a restart). {@link #read(String)} and {@link #exists(String)} take positions
+     * that are not yet written into account, and pending positions are written on {@link #shutdown()}
+     * (they are logged and discarded if they cannot be written within a few attempts).
+     * </p>
+     *
+     * @param subscriptionPositionCollection The collection into which subscription positions will be stored
+     * @param retryStrategy                  A custom retry strategy to use if there's a problem reading/saving/deleting the position to the MongoDB storage.
+     * @param writeBehindFlushInterval       How often to write the saved positions to MongoDB, or {@code null} to write each position when it's saved.
+     */
+    public NativeMongoSubscriptionPositionStorage(MongoCollection<Document> subscriptionPositionCollection, RetryStrategy retryStrategy, Duration writeBehindFlushInterval) {
         requireNonNull(subscriptionPositionCollection, "subscriptionPositionCollection cannot be null");
         requireNonNull(retryStrategy, RetryStrategy.class.getSimpleName() + " cannot be null");
         this.subscriptionPositionCollection = subscriptionPositionCollection;
         this.retryStrategy = retryStrategy;
+        this.writeBehindSubscriptionPositions = writeBehindFlushInterval == null ? null : new WriteBehindSubscriptionPositions(writeBehindFlushInterval, this::persistSubscriptionPositions);
     }
 
 
     @Override
     public SubscriptionPosition read(String subscriptionId) {
+        SubscriptionPosition pendingSubscriptionPosition = writeBehindSubscriptionPositions == null ? null : writeBehindSubscriptionPositions.pending(subscriptionId);
+        if (pendingSubscriptionPosition != null) {
+            return pendingSubscriptionPosition;
+        }
+
         Supplier<SubscriptionPosition> read = () -> {
             Document document = subscriptionPositionCollection.find(eq(ID, subscriptionId), Document.class).first();
             if (document == null) {
@@ -108,16 +142,13 @@ public class NativeMongoSubscriptionPositionStorage implements SubscriptionPosit
 
     @Override
     public SubscriptionPosition save(String subscriptionId, SubscriptionPosition subscriptionPosition) {
+        if (writeBehindSubscriptionPositions != null) {
+            writeBehindSubscriptionPositions.save(subscriptionId, requireNonNull(subscriptionPosition, SubscriptionPosition.class.getSimpleName() + " cannot be null"));
+            return subscriptionPosition;
+        }
+
         Supplier<SubscriptionPosition> save = () -> {
-            if (subscriptionPosition instanceof MongoResumeTokenSubscriptionPosition) {
-                persistResumeTokenSubscriptionPosition(subscriptionId, ((MongoResumeTokenSubscriptionPosition) subscriptionPosition).resumeToken);
-            } else if (subscriptionPosition instanceof MongoOperationTimeSubscriptionPosition) {
-                persistOperationTimeSubscriptionPosition(subscriptionId, ((MongoOperationTimeSubscriptionPosition) subscriptionPosition).operationTime);
-            } else {
-                String subscriptionPositionString = subscriptionPosition.asString();
-                Document document = generateGenericSubscriptionPositionDocument(subscriptionId, subscriptionPositionString);
-                persistDocumentSubscriptionPosition(subscriptionId, document);
-            }
+            persistDocumentSubscriptionPosition(subscriptionId, generateSubscriptionPositionDocument(subscriptionId, subscriptionPosition));
             return subscriptionPosition;
         };
 
@@ -126,34 +157,56 @@ public class NativeMongoSubscriptionPositionStorage implements SubscriptionPosit
 
     @Override
     public void delete(String subscriptionId) {
+        if (writeBehindSubscriptionPositions != null) {
+            writeBehindSubscriptionPositions.discard(subscriptionId);
+        }
         Runnable delete = () -> subscriptionPositionCollection.deleteOne(eq(ID, subscriptionId));
         executeWithRetry(delete, __ -> !shutdown, retryStrategy).run();
     }
 
     @Override
     public boolean exists(String subscriptionId) {
+        if (writeBehindSubscriptionPositions != null && writeBehindSubscriptionPositions.pending(subscriptionId) != null) {
+            return true;
+        }
         Supplier<Boolean> exists = () -> subscriptionPositionCollection.find(eq(ID, subscriptionId)).first() != null;
         return executeWithRetry(exists, __ -> !shutdown, retryStrategy).get();
     }
 
-    private void persistResumeTokenSubscriptionPosition(String subscriptionId, BsonValue resumeToken) {
-        persistDocumentSubscriptionPosition(subscriptionId, generateResumeTokenStreamPositionDocument(subscriptionId, resumeToken));
-    }
-
-    private void persistOperationTimeSubscriptionPosition(String subscriptionId, BsonTimestamp operationTime) {
-        persistDocumentSubscriptionPosition(subscriptionId, generateOperationTimeStreamPositionDocument(subscriptionId, operationTime));
+    private static Document generateSubscriptionPositionDocument(String subscriptionId, SubscriptionPosition subscriptionPosition) {
+        final Document document;
+        if (subscriptionPosition instanceof MongoResumeTokenSubscriptionPosition) {
+            document = generateResumeTokenStreamPositionDocument(subscriptionId, ((MongoResumeTokenSubscriptionPosition) subscriptionPosition).resumeToken);
+        } else if (subscriptionPosition instanceof MongoOperationTimeSubscriptionPosition) {
+            document = generateOperationTimeStreamPositionDocument(subscriptionId, ((MongoOperationTimeSubscriptionPosition) subscriptionPosition).operationTime);
+        } else {
+            document = generateGenericSubscriptionPositionDocument(subscriptionId, subscriptionPosition.asString());
+        }
+        return document;
     }
 
     void persistDocumentSubscriptionPosition(String subscriptionId, Document document) {
         subscriptionPositionCollection.replaceOne(eq(ID, subscriptionId), document, new ReplaceOptions().upsert(true));
     }
 
+    private void persistSubscriptionPositions(Map<String, SubscriptionPosition> subscriptionPositions) {
+        List<WriteModel<Document>> replacements = new ArrayList<>(subscriptionPositions.size());
+        subscriptionPositions.forEach((subscriptionId, subscriptionPosition) ->
+                replacements.add(new ReplaceOneModel<>(eq(ID, subscriptionId), generateSubscriptionPositionDocument(subscriptionId, subscriptionPosition), new ReplaceOptions().upsert(true))));
+        // Not retried since the positions are written again on the next flush if the bulk write fails
+        subscriptionPositionCollection.bulkWrite(replacements, new BulkWriteOptions().ordered(false));
+    }
+
     private static RetryStrategy defaultRetryStrategy() {
         return RetryStrategy.exponentialBackoff(Duration.ofMillis(100), Duration.ofSeconds(2), 2.0f);
     }
 
     @PreDestroy
     public void shutdown() {
+        // The pending positions are written with a limited number of attempts, so that shutdown doesn't hang if MongoDB is unavailable
+        if (writeBehindSubscriptionPositions != null) {
+            writeBehindSubscriptionPositions.shutdown();
+        }
         this.shutdown = true;
     }
 }
\ No newline at end of file
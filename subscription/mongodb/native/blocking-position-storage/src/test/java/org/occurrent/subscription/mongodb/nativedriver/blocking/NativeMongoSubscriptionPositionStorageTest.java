@@ -159,6 +159,40 @@ public class NativeMongoSubscriptionPositionStorageTest {
         assertThat(actualPosition).isEqualTo(expectedPosition);
     }
 
+    @Test
+    void write_behind_mode_writes_latest_subscription_position_of_each_subscription_in_the_background() {
+        // Given
+        NativeMongoSubscriptionPositionStorage storage = new NativeMongoSubscriptionPositionStorage(database.getCollection(TIMESTAMP_TOKEN_COLLECTION), RetryStrategy.none(), Duration.ofMillis(50));
+
+        // When
+        storage.save("subscription1", new StringBasedSubscriptionPosition("1"));
+        storage.save("subscription1", new StringBasedSubscriptionPosition("2"));
+        storage.save("subscription2", new StringBasedSubscriptionPosition("3"));
+
+        // Then
+        assertThat(storage.read("subscription1")).isEqualTo(new StringBasedSubscriptionPosition("2"));
+        await().atMost(2, SECONDS).untilAsserted(() -> assertThat(database.getCollection(TIMESTAMP_TOKEN_COLLECTION).countDocuments()).isEqualTo(2));
+        storage.shutdown();
+        assertThat(new NativeMongoSubscriptionPositionStorage(database.getCollection(TIMESTAMP_TOKEN_COLLECTION)).read("subscription1")).isEqualTo(new StringBasedSubscriptionPosition("2"));
+    }
+
+    @Test
+    void write_behind_mode_writes_pending_subscription_positions_on_shutdown_and_replaces_existing_positions() {
+        // Given
+        new NativeMongoSubscriptionPositionStorage(database.getCollection(TIMESTAMP_TOKEN_COLLECTION)).save("subscription1", new StringBasedSubscriptionPosition("1"));
+        NativeMongoSubscriptionPositionStorage storage = new NativeMongoSubscriptionPositionStorage(database.getCollection(TIMESTAMP_TOKEN_COLLECTION), RetryStrategy.none(), Duration.ofHours(1));
+        storage.save("subscription1", new StringBasedSubscriptionPosition("2"));
+        storage.save("subscription2", new StringBasedSubscriptionPosition("3"));
+
+        // When
+        storage.shutdown();
+
+        // Then
+        NativeMongoSubscriptionPositionStorage otherStorage = new NativeMongoSubscriptionPositionStorage(database.getCollection(TIMESTAMP_TOKEN_COLLECTION));
+        assertThat(otherStorage.read("subscription1")).isEqualTo(new StringBasedSubscriptionPosition("2"));
+        assertThat(otherStorage.read("subscription2")).isEqualTo(new StringBasedSubscriptionPosition("3"));
+    }
+
     @Test
     void blocking_spring_subscription_allows_resuming_events_from_where_it_left_off() {
         // Given
@@ -0,0 +1,634 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.subscription.mongodb.nativedriver.blocking;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import io.cloudevents.CloudEvent;
+import org.bson.BsonDocument;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.occurrent.filter.Filter;
+import org.occurrent.inmemory.filtermatching.FilterMatcher;
+import org.occurrent.mongodb.spring.filterbsonfilterconversion.internal.FilterToBsonFilterConverter;
+import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
+import org.occurrent.retry.RetryStrategy;
+import org.occurrent.retry.RetryStrategy.Retry;
+import org.occurrent.subscription.*;
+import org.occurrent.subscription.api.blocking.PositionAwareSubscriptionModel;
+import org.occurrent.subscription.api.blocking.Subscription;
+import org.occurrent.subscription.api.blocking.SubscriptionModel;
+import org.occurrent.subscription.internal.ExecutorShutdown;
+import org.occurrent.subscription.mongodb.MongoFilterSpecification;
+import org.occurrent.subscription.mongodb.MongoOperationTimeSubscriptionPosition;
+import org.occurrent.subscription.mongodb.MongoResumeTokenSubscriptionPosition;
+import org.occurrent.subscription.mongodb.internal.MongoCloudEventsToJsonDeserializer;
+import org.occurrent.subscription.mongodb.internal.MongoCommons;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static com.mongodb.client.model.Aggregates.match;
+import static java.util.Objects.requireNonNull;
+import static org.occurrent.retry.internal.RetryExecution.executeWithRetry;
+import static org.occurrent.subscription.mongodb.internal.MongoCommons.cannotFindGlobalSubscriptionPositionErrorMessage;
+
+/**
+ * A subscription model that uses the "native" MongoDB Java driver (sync) to listen to changes from the event store, just like {@link NativeMongoSubscriptionModel},
+ * but that multiplexes all subscriptions onto a <i>single</i> change stream. {@link NativeMongoSubscriptionModel} opens one change stream, and occupies one thread,
+ * per subscription, which means that the load on MongoDB grows linearly with the number of subscriptions. This subscription model instead opens one change stream
+ * whose pipeline matches the union of the filters of all subscriptions, decodes each change only once and then dispatches the cloud event to the subscriptions whose
+ * {@link Filter} matches it. The filters are matched in-process, which is why this subscription model only supports {@link OccurrentSubscriptionFilter}'s
+ * (or no filter at all).
+ * <p>
+ * Each subscription keeps its own position. When a subscription is started, or resumed, at a position that is earlier than the position of the change stream,
+ * the change stream is reopened at the earliest position and the subscriptions that have already received the replayed changes will not receive them again.
+ * The change stream is also reopened (from where it left off) when a subscription is started, paused, resumed or cancelled since the pipeline depends on the filters
+ * of the running subscriptions. Note that mixing resume token and operation time positions requires MongoDB 4.2 or later.
+ * </p>
+ * <p>
+ * The actions of all subscriptions are invoked sequentially by the thread that reads the change stream, so a slow action delays the other subscriptions.
+ * If an action fails, it's retried according to the action {@link RetryStrategy}. If it still fails, the subscription is paused (and an error is logged) so that the
+ * other subscriptions keep receiving cloud events. The position of the paused subscription is not moved past the cloud event that failed, so it's delivered again
+ * when the subscription is {@link #resumeSubscription(String) resumed}. Likewise, if reading the change stream fails even after it has been retried according to the
+ * change stream {@link RetryStrategy}, all running subscriptions are paused.
+ * </p>
+ * <p>
+ * Just as {@link NativeMongoSubscriptionModel}, this subscription model doesn't maintain the subscription position, use e.g. the {@code DurableSubscriptionModel}
+ * utility from the {@code org.occurrent:durable-subscription} module for this.
+ * </p>
+ */
+public class NativeMongoMultiplexingSubscriptionModel implements PositionAwareSubscriptionModel {
+    private static final Logger log = LoggerFactory.getLogger(NativeMongoMultiplexingSubscriptionModel.class);
+    private static final int DEFAULT_MAX_ACTION_ATTEMPTS = 5;
+
+    private final MongoDatabase database;
+    private final MongoCollection<Document> eventCollection;
+    private final TimeRepresentation timeRepresentation;
+    private final ExecutorService changeStreamExecutor;
+    // Used when an action fails
+    private final RetryStrategy actionRetryStrategy;
+    // Used when reading the change stream fails
+    private final RetryStrategy changeStreamRetryStrategy;
+    private final ConcurrentMap<String, MultiplexedSubscription> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicBoolean subscriptionsChanged = new AtomicBoolean();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Written by the thread that reads the change stream and reset when the change stream is stopped
+    private MongoResumeTokenSubscriptionPosition changeStreamPosition;
+    private volatile MongoChangeStreamCursor<?> cursor;
+    // Guarded by "lock"
+    private boolean changeStreamRunning = false;
+
+    private volatile boolean shutdown = false;
+    private volatile boolean running = true;
+
+    /**
+     * Create a multiplexing subscription model using the native MongoDB sync driver. It will by default use a {@link RetryStrategy} for retries,
+     * with exponential backoff starting with 100 ms and progressively go up to max 2 seconds wait time between each retry. Reading the change stream is
+     * retried indefinitely, but a failing action is retried at most {@value #DEFAULT_MAX_ACTION_ATTEMPTS} times after which the subscription is paused,
+     * since a cloud event that can't be processed would otherwise prevent all other subscriptions from receiving cloud events.
+     *
+     * @param database             The MongoDB database to use
+     * @param eventCollectionName  The name of the collection that contains the events
+     * @param timeRepresentation   How time is represented in the database, must be the same as what's specified for the EventStore that stores the events.
+     * @param changeStreamExecutor The executor that will be used to read the change stream. Only a single thread is used, regardless of the number of subscriptions.
+     */
+    public NativeMongoMultiplexingSubscriptionModel(MongoDatabase database, String eventCollectionName, TimeRepresentation timeRepresentation, ExecutorService changeStreamExecutor) {
+        this(database, database.getCollection(requireNonNull(eventCollectionName, "Event collection cannot be null")), timeRepresentation, changeStreamExecutor,
+                defaultRetryStrategy().maxAttempts(DEFAULT_MAX_ACTION_ATTEMPTS), defaultRetryStrategy());
+    }
+
+    /**
+     * Create a multiplexing subscription model using the native MongoDB sync driver.
+     *
+     * @param database             The MongoDB database to use
+     * @param eventCollection      The collection that contains the events
+     * @param timeRepresentation   How time is represented in the database, must be the same as what's specified for the EventStore that stores the events.
+     * @param changeStreamExecutor The executor that will be used to read the change stream. Only a single thread is used, regardless of the number of subscriptions.
+     * @param actionRetryStrategy  Configure how retries should be handled when an action fails. Since all actions are invoked by the same thread, a strategy with a
+     *                             limited number of attempts is recommended so that a cloud event that can't be processed doesn't block the other subscriptions forever.
+     *                             Reading the change stream is retried indefinitely with the default {@link RetryStrategy}.
+     */
+    public NativeMongoMultiplexingSubscriptionModel(MongoDatabase database, MongoCollection<Document> eventCollection, TimeRepresentation timeRepresentation,
+                                                    ExecutorService changeStreamExecutor, RetryStrategy actionRetryStrategy) {
+        this(database, eventCollection, timeRepresentation, changeStreamExecutor, actionRetryStrategy, defaultRetryStrategy());
+    }
+
+    /**
+     * Create a multiplexing subscription model using the native MongoDB sync driver.
+     *
+     * @param database                  The MongoDB database to use
+     * @param eventCollection           The collection that contains the events
+     * @param timeRepresentation        How time is represented in the database, must be the same as what's specified for the EventStore that stores the events.
+     * @param changeStreamExecutor      The executor that will be used to read the change stream. Only a single thread is used, regardless of the number of subscriptions.
+     * @param actionRetryStrategy       Configure how retries should be handled when an action fails. The subscription is paused if the action still fails.
+     * @param changeStreamRetryStrategy Configure how retries should be handled when reading the change stream fails. All running subscriptions are paused if it still fails,
+     *                                  so a strategy with an unlimited number of attempts is recommended.
+     */
+    public NativeMongoMultiplexingSubscriptionModel(MongoDatabase database, MongoCollection<Document> eventCollection, TimeRepresentation timeRepresentation,
+                                                    ExecutorService changeStreamExecutor, RetryStrategy actionRetryStrategy, RetryStrategy changeStreamRetryStrategy) {
+        requireNonNull(database, MongoDatabase.class.getSimpleName() + " cannot be null");
+        requireNonNull(eventCollection, "Event collection cannot be null");
+        requireNonNull(timeRepresentation, "Time representation cannot be null");
+        requireNonNull(changeStreamExecutor, "Change stream executor cannot be null");
+        requireNonNull(actionRetryStrategy, "Action " + RetryStrategy.class.getSimpleName() + " cannot be null");
+        requireNonNull(changeStreamRetryStrategy, "Change stream " + RetryStrategy.class.getSimpleName() + " cannot be null");
+        this.database = database;
+        this.eventCollection = eventCollection;
+        this.timeRepresentation = timeRepresentation;
+        this.changeStreamExecutor = changeStreamExecutor;
+        this.actionRetryStrategy = actionRetryStrategy;
+        this.changeStreamRetryStrategy = changeStreamRetryStrategy;
+    }
+
+    @Override
+    public Subscription subscribe(String subscriptionId, SubscriptionFilter filter, StartAt startAt, Consumer<CloudEvent> action) {
+        lock.lock();
+        try {
+            requireNonNull(subscriptionId, "subscriptionId cannot be null");
+            requireNonNull(action, "Action cannot be null");
+            requireNonNull(startAt, StartAt.class.getSimpleName() + " cannot be null");
+
+            if (subscriptions.containsKey(subscriptionId)) {
+                throw new IllegalArgumentException("Subscription " + subscriptionId + " is already defined.");
+            } else if (shutdown || changeStreamExecutor.isShutdown() || changeStreamExecutor.isTerminated()) {
+                throw new IllegalStateException("Cannot start subscription because the executor is shutdown or terminated.");
+            }
+
+            MultiplexedSubscription subscription = new MultiplexedSubscription(subscriptionId, toOccurrentFilter(filter), startAt, action, !running);
+            subscriptions.put(subscriptionId, subscription);
+            if (running) {
+                subscriptionsHasChanged();
+            }
+            return new NativeMongoSubscription(subscriptionId, subscription.startedLatch);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void cancelSubscription(String subscriptionId) {
+        lock.lock();
+        try {
+            MultiplexedSubscription subscription = subscriptions.remove(subscriptionId);
+            if (subscription != null) {
+                subscription.paused = true;
+                subscriptionsHasChanged();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            running = false;
+            subscriptions.values().forEach(subscription -> subscription.paused = true);
+            subscriptions.clear();
+            closeCursor();
+        } finally {
+            lock.unlock();
+        }
+        // The thread that reads the change stream may need the lock before it stops
+        ExecutorShutdown.shutdownSafely(changeStreamExecutor, 5, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public SubscriptionPosition globalSubscriptionPosition() {
+        BsonTimestamp currentOperationTime;
+        try {
+            // Note that we increase the "increment" by 1 in order to not clash with an existing event in the event store.
+            // This is so that we can avoid duplicates in certain rare cases when replaying events.
+            currentOperationTime = MongoCommons.getServerOperationTime(database.runCommand(new Document("hostInfo", 1)), 1);
+        } catch (MongoCommandException e) {
+            log.warn(cannotFindGlobalSubscriptionPositionErrorMessage(e));
+            return null;
+        }
+        return new MongoOperationTimeSubscriptionPosition(currentOperationTime);
+    }
+
+    @Override
+    public void stop() {
+        lock.lock();
+        try {
+            if (!shutdown) {
+                running = false;
+                subscriptions.forEach((subscriptionId, subscription) -> {
+                    if (!subscription.paused) {
+                        pauseSubscription(subscriptionId);
+                    }
+                });
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void start() {
+        List<Subscription> resumedSubscriptions = new ArrayList<>();
+        lock.lock();
+        try {
+            if (shutdown) {
+                return;
+            }
+            running = true;
+            subscriptions.forEach((subscriptionId, subscription) -> {
+                if (subscription.paused) {
+                    resumedSubscriptions.add(resumeSubscription(subscriptionId));
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+        // The thread that reads the change stream needs the lock before it can start the subscriptions
+        resumedSubscriptions.forEach(Subscription::waitUntilStarted);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isRunning(String subscriptionId) {
+        MultiplexedSubscription subscription = subscriptions.get(subscriptionId);
+        return !shutdown && subscription != null && !subscription.paused;
+    }
+
+    @Override
+    public boolean isPaused(String subscriptionId) {
+        MultiplexedSubscription subscription = subscriptions.get(subscriptionId);
+        return !shutdown && subscription != null && subscription.paused;
+    }
+
+    @Override
+    public Subscription resumeSubscription(String subscriptionId) {
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new IllegalStateException(SubscriptionModel.class.getSimpleName() + " is shutdown");
+            } else if (isRunning(subscriptionId)) {
+                throw new IllegalArgumentException("Subscription " + subscriptionId + " is already running");
+            }
+
+            MultiplexedSubscription subscription = subscriptions.get(subscriptionId);
+            if (subscription == null) {
+                throw new IllegalArgumentException("Subscription " + subscriptionId + " isn't paused.");
+            }
+
+            running = true;
+            subscription.resume();
+            subscriptionsHasChanged();
+            return new NativeMongoSubscription(subscriptionId, subscription.startedLatch);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void pauseSubscription(String subscriptionId) {
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new IllegalStateException(SubscriptionModel.class.getSimpleName() + " is shutdown");
+            } else if (isPaused(subscriptionId)) {
+                throw new IllegalArgumentException("Subscription " + subscriptionId + " is already paused");
+            } else if (!isRunning(subscriptionId)) {
+                throw new IllegalArgumentException("Subscription " + subscriptionId + " is not running");
+            }
+
+            subscriptions.get(subscriptionId).paused = true;
+            subscriptionsHasChanged();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Must be called while holding the "lock"
+    private void subscriptionsHasChanged() {
+        subscriptionsChanged.set(true);
+        if (changeStreamRunning) {
+            // Wake up the thread that reads the change stream so that the change stream is reopened with the new set of subscriptions
+            closeCursor();
+        } else if (!shutdown && subscriptions.values().stream().anyMatch(subscription -> !subscription.paused)) {
+            changeStreamRunning = true;
+            changeStreamExecutor.execute(this::readChangeStream);
+        }
+    }
+
+    private void readChangeStream() {
+        while (!shutdown) {
+            subscriptionsChanged.set(false);
+            List<MultiplexedSubscription> runningSubscriptions = runningSubscriptionsOrStopChangeStream();
+            if (runningSubscriptions.isEmpty()) {
+                return;
+            }
+
+            try {
+                executeWithRetry(() -> readChangeStream(runningSubscriptions), __ -> !shutdown && !subscriptionsChanged.get(), changeStreamRetryStrategy).run();
+            } catch (RuntimeException e) {
+                if (shutdown || subscriptionsChanged.get()) {
+                    log.debug("Caught {} (message={}), this might happen when the change stream is closed.", e.getClass().getName(), e.getMessage(), e);
+                } else {
+                    log.error("Failed to read change stream, pausing subscriptions {}. Resume them to read the change stream again.", runningSubscriptions.stream().map(s -> s.subscriptionId).collect(Collectors.toList()), e);
+                    if (pauseSubscriptionsAndStopChangeStream(runningSubscriptions)) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private List<MultiplexedSubscription> runningSubscriptionsOrStopChangeStream() {
+        lock.lock();
+        try {
+            List<MultiplexedSubscription> runningSubscriptions = subscriptions.values().stream().filter(subscription -> !subscription.paused).collect(Collectors.toList());
+            if (shutdown || runningSubscriptions.isEmpty()) {
+                stopChangeStream();
+                return Collections.emptyList();
+            }
+            return runningSubscriptions;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns false if the subscriptions were changed after the change stream failed, in which case the change stream should be reopened
+    private boolean pauseSubscriptionsAndStopChangeStream(List<MultiplexedSubscription> runningSubscriptions) {
+        lock.lock();
+        try {
+            if (subscriptionsChanged.get()) {
+                return false;
+            }
+            runningSubscriptions.forEach(subscription -> subscription.paused = true);
+            stopChangeStream();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void stopChangeStream() {
+        lock.lock();
+        try {
+            // The position is stale when the change stream is started again
+            changeStreamPosition = null;
+            changeStreamRunning = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void readChangeStream(List<MultiplexedSubscription> runningSubscriptions) {
+        for (MultiplexedSubscription subscription : runningSubscriptions) {
+            if (subscription.position == null) {
+                subscription.position = startPosition(subscription.startAt);
+            }
+        }
+
+        ChangeStreamIterable<Document> changeStream = eventCollection.watch(createPipeline(runningSubscriptions), Document.class);
+        SubscriptionPosition earliestPosition = earliestPosition(runningSubscriptions.stream().map(subscription -> subscription.position).collect(Collectors.toList()));
+        if (earliestPosition instanceof MongoResumeTokenSubscriptionPosition) {
+            changeStream = changeStream.startAfter(((MongoResumeTokenSubscriptionPosition) earliestPosition).resumeToken);
+        } else if (earliestPosition instanceof MongoOperationTimeSubscriptionPosition) {
+            changeStream = changeStream.startAtOperationTime(((MongoOperationTimeSubscriptionPosition) earliestPosition).operationTime);
+        }
+
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = changeStream.cursor()) {
+            this.cursor = cursor;
+            if (subscriptionsChanged.get()) {
+                // The subscriptions changed while opening the change stream, the cursor may not have been closed
+                return;
+            }
+            runningSubscriptions.forEach(MultiplexedSubscription::started);
+            while (!shutdown && !subscriptionsChanged.get()) {
+                ChangeStreamDocument<Document> changeStreamDocument = cursor.tryNext();
+                BsonDocument resumeToken = cursor.getResumeToken();
+                if (resumeToken != null) {
+                    changeStreamPosition = new MongoResumeTokenSubscriptionPosition(resumeToken);
+                }
+                dispatch(changeStreamDocument, changeStreamPosition, runningSubscriptions);
+            }
+        } finally {
+            this.cursor = null;
+        }
+    }
+
+    // Dispatches the change (if any) to the running subscriptions and moves their position forward to the position of the change stream.
+    // The position of a paused subscription is not moved so that it receives the change when it's resumed.
+    private void dispatch(ChangeStreamDocument<Document> changeStreamDocument, MongoResumeTokenSubscriptionPosition changeStreamPosition, List<MultiplexedSubscription> runningSubscriptions) {
+        final CloudEvent cloudEvent;
+        if (changeStreamDocument == null) {
+            cloudEvent = null;
+        } else {
+            // Decode the change once, regardless of the number of subscriptions
+            BsonDocument resumeToken = changeStreamDocument.getResumeToken();
+            cloudEvent = MongoCloudEventsToJsonDeserializer.deserializeToCloudEvent(changeStreamDocument, timeRepresentation)
+                    .map(ce -> new PositionAwareCloudEvent(ce, new MongoResumeTokenSubscriptionPosition(resumeToken)))
+                    .orElse(null);
+        }
+
+        for (MultiplexedSubscription subscription : runningSubscriptions) {
+            if (subscription.paused) {
+                continue;
+            }
+
+            if (cloudEvent != null && isAfter(changeStreamDocument.getResumeToken(), changeStreamDocument.getClusterTime(), subscription.position) && subscription.matches(cloudEvent)) {
+                try {
+                    executeWithRetry(subscription.action, __ -> !shutdown && !subscription.paused, actionRetryStrategy).accept(cloudEvent);
+                } catch (Exception e) {
+                    pauseFailedSubscription(subscription, cloudEvent, e);
+                    // Don't move the position past the cloud event so that it's delivered again when the subscription is resumed
+                    continue;
+                }
+            }
+
+            // The change stream may be behind the subscription if it has been reopened at an earlier position for another subscription
+            if (changeStreamPosition != null && isAfter(changeStreamPosition.resumeToken, null, subscription.position)) {
+                subscription.position = changeStreamPosition;
+            }
+        }
+    }
+
+    private void pauseFailedSubscription(MultiplexedSubscription subscription, CloudEvent cloudEvent, Exception e) {
+        lock.lock();
+        try {
+            // The subscription may have been paused or cancelled while the action was retried
+            if (!shutdown && !subscription.paused && subscriptions.get(subscription.subscriptionId) == subscription) {
+                log.error("Failed to process cloud event {} in subscription {}, pausing subscription. Resume it to process the cloud event again.", cloudEvent.getId(), subscription.subscriptionId, e);
+                subscription.paused = true;
+                subscriptionsHasChanged();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Retry defaultRetryStrategy() {
+        return RetryStrategy.exponentialBackoff(Duration.ofMillis(100), Duration.ofSeconds(2), 2.0f);
+    }
+
+    private SubscriptionPosition startPosition(StartAt startAt) {
+        SubscriptionPosition startPosition = MongoCommons.applyStartPosition(null, (__, resumeToken) -> new MongoResumeTokenSubscriptionPosition(resumeToken),
+                (__, operationTime) -> new MongoOperationTimeSubscriptionPosition(operationTime), startAt);
+        if (startPosition == null) {
+            // Start "now", i.e. at the current position of the change stream
+            if (changeStreamPosition == null) {
+                try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = eventCollection.watch().cursor()) {
+                    BsonDocument resumeToken = cursor.getResumeToken();
+                    changeStreamPosition = resumeToken == null ? null : new MongoResumeTokenSubscriptionPosition(resumeToken);
+                }
+            }
+            startPosition = changeStreamPosition;
+        }
+        return startPosition;
+    }
+
+    private List<Bson> createPipeline(List<MultiplexedSubscription> runningSubscriptions) {
+        Set<Filter> filters = new LinkedHashSet<>();
+        for (MultiplexedSubscription subscription : runningSubscriptions) {
+            if (subscription.filter == null) {
+                return Collections.emptyList();
+            }
+            filters.add(subscription.filter);
+        }
+        List<Bson> bsonFilters = filters.stream()
+                .map(filter -> FilterToBsonFilterConverter.convertFilterToBsonFilter(MongoFilterSpecification.FULL_DOCUMENT, timeRepresentation, filter))
+                .collect(Collectors.toList());
+        return Collections.singletonList(match(bsonFilters.size() == 1 ? bsonFilters.get(0) : Filters.or(bsonFilters)));
+    }
+
+    private static Filter toOccurrentFilter(SubscriptionFilter filter) {
+        if (filter == null) {
+            return null;
+        } else if (filter instanceof OccurrentSubscriptionFilter) {
+            return ((OccurrentSubscriptionFilter) filter).filter;
+        }
+        throw new IllegalArgumentException(NativeMongoMultiplexingSubscriptionModel.class.getSimpleName() + " only supports " + OccurrentSubscriptionFilter.class.getSimpleName()
+                + " since the filters are matched in-process, was " + filter.getClass().getName());
+    }
+
+    // A resume token is "after" a resume token position if it's greater than the position (just as "startAfter"), and "after" an operation time position
+    // if its cluster time is greater than or equal to the operation time (just as "startAtOperationTime"). The cluster time is decoded from the resume token if it's not known.
+    private static boolean isAfter(BsonDocument resumeToken, BsonTimestamp clusterTime, SubscriptionPosition position) {
+        if (position instanceof MongoResumeTokenSubscriptionPosition) {
+            return resumeTokenData(resumeToken).compareTo(resumeTokenData(((MongoResumeTokenSubscriptionPosition) position).resumeToken)) > 0;
+        } else if (position instanceof MongoOperationTimeSubscriptionPosition) {
+            BsonTimestamp clusterTimeToUse = clusterTime == null ? clusterTimeOf(resumeToken) : clusterTime;
+            return clusterTimeToUse.compareTo(((MongoOperationTimeSubscriptionPosition) position).operationTime) >= 0;
+        }
+        return true;
+    }
+
+    private static SubscriptionPosition earliestPosition(List<SubscriptionPosition> positions) {
+        List<SubscriptionPosition> definedPositions = positions.stream().filter(Objects::nonNull).collect(Collectors.toList());
+        if (definedPositions.isEmpty()) {
+            return null;
+        } else if (definedPositions.stream().allMatch(position -> position instanceof MongoResumeTokenSubscriptionPosition)) {
+            return definedPositions.stream()
+                    .map(MongoResumeTokenSubscriptionPosition.class::cast)
+                    .min(Comparator.comparing(position -> resumeTokenData(position.resumeToken)))
+                    .orElseThrow(IllegalStateException::new);
+        }
+        return definedPositions.stream()
+                .map(position -> position instanceof MongoResumeTokenSubscriptionPosition ? clusterTimeOf(((MongoResumeTokenSubscriptionPosition) position).resumeToken) : ((MongoOperationTimeSubscriptionPosition) position).operationTime)
+                .min(Comparator.naturalOrder())
+                .map(MongoOperationTimeSubscriptionPosition::new)
+                .orElseThrow(IllegalStateException::new);
+    }
+
+    // Resume tokens are hex encoded strings (since MongoDB 4.2) that sort in the same order as the changes in the change stream
+    private static String resumeTokenData(BsonDocument resumeToken) {
+        return resumeToken.getString("_data").getValue();
+    }
+
+    // The resume token data starts with the type byte of a timestamp (130) followed by the cluster time (seconds and increment) of the change
+    private static BsonTimestamp clusterTimeOf(BsonDocument resumeToken) {
+        String data = resumeTokenData(resumeToken);
+        if (data.length() < 18 || !data.startsWith("82")) {
+            throw new IllegalArgumentException("Cannot determine the cluster time of resume token " + resumeToken.toJson() + ", MongoDB 4.2 or later is required.");
+        }
+        return new BsonTimestamp((int) Long.parseLong(data.substring(2, 10), 16), (int) Long.parseLong(data.substring(10, 18), 16));
+    }
+
+    private void closeCursor() {
+        MongoChangeStreamCursor<?> cursor = this.cursor;
+        if (cursor != null) {
+            try {
+                cursor.close();
+            } catch (Exception e) {
+                log.debug("Failed to close change stream cursor, this might happen if Mongo connection has been shutdown", e);
+            }
+        }
+    }
+
+    private static class MultiplexedSubscription {
+        private final String subscriptionId;
+        private final Filter filter;
+        private final Predicate<CloudEvent> filterMatcher;
+        private final StartAt startAt;
+        private final Consumer<CloudEvent> action;
+
+        private volatile boolean paused;
+        private volatile CountDownLatch startedLatch = new CountDownLatch(1);
+        // Only accessed by the thread that reads the change stream
+        private SubscriptionPosition position;
+
+        private MultiplexedSubscription(String subscriptionId, Filter filter, StartAt startAt, Consumer<CloudEvent> action, boolean paused) {
+            this.subscriptionId = subscriptionId;
+            this.filter = filter;
+            this.filterMatcher = filter == null ? __ -> true : FilterMatcher.compile(filter);
+            this.startAt = startAt;
+            this.action = action;
+            this.paused = paused;
+        }
+
+        private boolean matches(CloudEvent cloudEvent) {
+            return filterMatcher.test(cloudEvent);
+        }
+
+        private void started() {
+            startedLatch.countDown();
+        }
+
+        private void resume() {
+            startedLatch = new CountDownLatch(1);
+            paused = false;
+        }
+    }
+}
@@ -28,6 +28,7 @@ import io.cloudevents.CloudEvent;
 import org.bson.BsonDocument;
 import org.bson.BsonTimestamp;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
 import org.bson.conversions.Bson;
 import org.occurrent.filter.Filter;
 import org.occurrent.mongodb.spring.filterbsonfilterconversion.internal.FilterToBsonFilterConverter;
@@ -49,11 +50,15 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.PreDestroy;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -71,6 +76,10 @@ import static org.occurrent.subscription.mongodb.internal.MongoCommons.cannotFin
  * <a href="https://occurrent.org/documentation#blocking-subscription-position-storage">subscription position storage implementation</a>
  * or use the {@code DurableSubscriptionModel} utility from the {@code org.occurrent:durable-subscription}
  * module.
+ * <p>
+ * Each subscription blocks a thread from the supplied {@link ExecutorService}. On Java 21 and later, use {@link SubscriptionExecutors#newVirtualThreadPerTaskExecutor()}
+ * to run each subscription on a virtual thread instead of a platform thread, which makes it possible to have thousands of subscriptions without sizing a thread pool.
+ * </p>
  */
 public class NativeMongoSubscriptionModel implements PositionAwareSubscriptionModel {
     private static final Logger log = LoggerFactory.getLogger(NativeMongoSubscriptionModel.class);
@@ -82,6 +91,8 @@ public class NativeMongoSubscriptionModel implements PositionAwareSubscriptionMo
     private final ExecutorService cloudEventDispatcher;
     private final RetryStrategy retryStrategy;
     private final MongoDatabase database;
+    private final boolean lazyCloudEvents;
+    private final ReentrantLock lock = new ReentrantLock();
 
     private volatile boolean shutdown = false;
     private volatile boolean running = true;
@@ -127,6 +138,22 @@ public class NativeMongoSubscriptionModel implements PositionAwareSubscriptionMo
      */
     public NativeMongoSubscriptionModel(MongoDatabase database, MongoCollection<Document> eventCollection, TimeRepresentation timeRepresentation,
                                         ExecutorService subscriptionExecutor, RetryStrategy retryStrategy) {
+        this(database, eventCollection, timeRepresentation, subscriptionExecutor, retryStrategy, false);
+    }
+
+    /**
+     * Create a subscription using the native MongoDB sync driver.
+     *
+     * @param database             The MongoDB database to use
+     * @param eventCollection      The collection that contains the events
+     * @param timeRepresentation   How time is represented in the database, must be the same as what's specified for the EventStore that stores the events.
+     * @param subscriptionExecutor The executor that will be used for the subscription. Typically a dedicated thread will be required per subscription.
+     * @param retryStrategy        Configure how retries should be handled
+     * @param lazyCloudEvents      If {@code true}, the change stream returns the events as {@link RawBsonDocument}'s and the subscribers receive {@link CloudEvent}'s that decode their attributes,
+     *                             extensions and data only when they're accessed for the first time. This is useful when subscribers skip most events based on e.g. their type.
+     */
+    public NativeMongoSubscriptionModel(MongoDatabase database, MongoCollection<Document> eventCollection, TimeRepresentation timeRepresentation,
+                                        ExecutorService subscriptionExecutor, RetryStrategy retryStrategy, boolean lazyCloudEvents) {
         requireNonNull(database, MongoDatabase.class.getSimpleName() + " cannot be null");
         requireNonNull(eventCollection, "Event collection cannot be null");
         requireNonNull(timeRepresentation, "Time representation cannot be null");
@@ -137,42 +164,74 @@ public class NativeMongoSubscriptionModel implements PositionAwareSubscriptionMo
         this.cloudEventDispatcher = subscriptionExecutor;
         this.timeRepresentation = timeRepresentation;
         this.eventCollection = eventCollection;
+        this.lazyCloudEvents = lazyCloudEvents;
         this.runningSubscriptions = new ConcurrentHashMap<>();
         this.pausedSubscriptions = new ConcurrentHashMap<>();
     }
 
     @Override
-    public synchronized Subscription subscribe(String subscriptionId, SubscriptionFilter filter, StartAt startAt, Consumer<CloudEvent> action) {
-        requireNonNull(subscriptionId, "subscriptionId cannot be null");
+    public Subscription subscribe(String subscriptionId, SubscriptionFilter filter, StartAt startAt, Consumer<CloudEvent> action) {
         requireNonNull(action, "Action cannot be null");
-        requireNonNull(startAt, StartAt.class.getSimpleName() + " cannot be null");
+        return subscribe(subscriptionId, filter, startAt, null, cloudEvents -> action.accept(cloudEvents.get(0)));
+    }
 
-        if (runningSubscriptions.containsKey(subscriptionId) || pausedSubscriptions.containsKey(subscriptionId)) {
-            throw new IllegalArgumentException("Subscription " + subscriptionId + " is already defined.");
-        }
+    /**
+     * Deliver the cloud events in batches. Cloud events that are already fetched by the change stream cursor are included in the batch without an additional
+     * round-trip to the database. If the batch contains less than {@link BatchConfig#maxSize} cloud events, the subscription waits for more cloud events to arrive until
+     * {@link BatchConfig#maxWait} has elapsed. Note that a single attempt to fetch more cloud events may wait for the "max await time" of the change stream cursor,
+     * so the actual time before a batch is delivered may be slightly longer than {@code maxWait}.
+     */
+    @Override
+    public Subscription subscribeBatch(String subscriptionId, SubscriptionFilter filter, StartAt startAt, BatchConfig batchConfig, Consumer<List<CloudEvent>> action) {
+        requireNonNull(batchConfig, BatchConfig.class.getSimpleName() + " cannot be null");
+        return subscribe(subscriptionId, filter, startAt, batchConfig, action);
+    }
+
+    private Subscription subscribe(String subscriptionId, SubscriptionFilter filter, StartAt startAt, BatchConfig batchConfig, Consumer<List<CloudEvent>> action) {
+        lock.lock();
+        try {
+            requireNonNull(subscriptionId, "subscriptionId cannot be null");
+            requireNonNull(action, "Action cannot be null");
+            requireNonNull(startAt, StartAt.class.getSimpleName() + " cannot be null");
 
-        CountDownLatch subscriptionStartedLatch = new CountDownLatch(1);
+            if (runningSubscriptions.containsKey(subscriptionId) || pausedSubscriptions.containsKey(subscriptionId)) {
+                throw new IllegalArgumentException("Subscription " + subscriptionId + " is already defined.");
+            }
+
+            CountDownLatch subscriptionStartedLatch = new CountDownLatch(1);
 
-        Runnable internalSubscription = () -> newInternalSubscription(subscriptionId, filter, startAt, action, subscriptionStartedLatch);
+            Runnable internalSubscription = () -> newInternalSubscription(subscriptionId, filter, startAt, batchConfig, action, subscriptionStartedLatch);
 
-        if (shutdown || cloudEventDispatcher.isShutdown() || cloudEventDispatcher.isTerminated()) {
-            throw new IllegalStateException("Cannot start subscription because the executor is shutdown or terminated.");
+            if (shutdown || cloudEventDispatcher.isShutdown() || cloudEventDispatcher.isTerminated()) {
+                throw new IllegalStateException("Cannot start subscription because the executor is shutdown or terminated.");
+            }
+            startSubscription(internalSubscription);
+            return new NativeMongoSubscription(subscriptionId, subscriptionStartedLatch);
+        } finally {
+            lock.unlock();
         }
-        startSubscription(internalSubscription);
-        return new NativeMongoSubscription(subscriptionId, subscriptionStartedLatch);
     }
 
     private void startSubscription(Runnable internalSubscription) {
         cloudEventDispatcher.execute(executeWithRetry(internalSubscription, NOT_SHUTDOWN, retryStrategy));
     }
 
-    private void newInternalSubscription(String subscriptionId, SubscriptionFilter filter, StartAt startAt, Consumer<CloudEvent> action, CountDownLatch subscriptionStartedLatch) {
+    private void newInternalSubscription(String subscriptionId, SubscriptionFilter filter, StartAt startAt, BatchConfig batchConfig, Consumer<List<CloudEvent>> action, CountDownLatch subscriptionStartedLatch) {
+        if (lazyCloudEvents) {
+            newInternalSubscription(subscriptionId, filter, startAt, batchConfig, action, subscriptionStartedLatch, RawBsonDocument.class, MongoCloudEventsToJsonDeserializer::deserializeToLazyCloudEvent);
+        } else {
+            newInternalSubscription(subscriptionId, filter, startAt, batchConfig, action, subscriptionStartedLatch, Document.class, changeStreamDocument -> MongoCloudEventsToJsonDeserializer.deserializeToCloudEvent(changeStreamDocument, timeRepresentation));
+        }
+    }
+
+    private <T> void newInternalSubscription(String subscriptionId, SubscriptionFilter filter, StartAt startAt, BatchConfig batchConfig, Consumer<List<CloudEvent>> action, CountDownLatch subscriptionStartedLatch,
+                                             Class<T> documentClass, Function<ChangeStreamDocument<T>, Optional<CloudEvent>> deserializer) {
         List<Bson> pipeline = createPipeline(timeRepresentation, filter);
-        ChangeStreamIterable<Document> changeStreamDocuments = eventCollection.watch(pipeline, Document.class);
-        ChangeStreamIterable<Document> changeStreamDocumentsAtPosition = MongoCommons.applyStartPosition(changeStreamDocuments, ChangeStreamIterable::startAfter, ChangeStreamIterable::startAtOperationTime, startAt.get());
-        MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = changeStreamDocumentsAtPosition.cursor();
+        ChangeStreamIterable<T> changeStreamDocuments = eventCollection.watch(pipeline, documentClass);
+        ChangeStreamIterable<T> changeStreamDocumentsAtPosition = MongoCommons.applyStartPosition(changeStreamDocuments, ChangeStreamIterable::startAfter, ChangeStreamIterable::startAtOperationTime, startAt.get());
+        MongoChangeStreamCursor<ChangeStreamDocument<T>> cursor = changeStreamDocumentsAtPosition.cursor();
 
-        InternalSubscription internalSubscription = new InternalSubscription(cursor, startAt, action, filter, subscriptionStartedLatch);
+        InternalSubscription internalSubscription = new InternalSubscription(cursor, startAt, batchConfig, action, filter, subscriptionStartedLatch);
 
         if (running) {
             runningSubscriptions.put(subscriptionId, internalSubscription);
@@ -182,10 +241,20 @@ public class NativeMongoSubscriptionModel implements PositionAwareSubscriptionMo
 
         internalSubscription.started();
 
+        Function<ChangeStreamDocument<T>, Optional<CloudEvent>> positionAwareDeserializer = changeStreamDocument -> deserializer.apply(changeStreamDocument)
+                .map(cloudEvent -> new PositionAwareCloudEvent(cloudEvent, new MongoResumeTokenSubscriptionPosition(changeStreamDocument.getResumeToken())));
+        Consumer<List<CloudEvent>> actionWithRetry = executeWithRetry(action, NOT_SHUTDOWN, retryStrategy);
         try {
-            cursor.forEachRemaining(changeStreamDocument -> MongoCloudEventsToJsonDeserializer.deserializeToCloudEvent(changeStreamDocument, timeRepresentation)
-                    .map(cloudEvent -> new PositionAwareCloudEvent(cloudEvent, new MongoResumeTokenSubscriptionPosition(changeStreamDocument.getResumeToken())))
-                    .ifPresent(executeWithRetry(action, NOT_SHUTDOWN, retryStrategy)));
+            if (batchConfig == null) {
+                cursor.forEachRemaining(changeStreamDocument -> positionAwareDeserializer.apply(changeStreamDocument).map(Collections::singletonList).ifPresent(actionWithRetry));
+            } else {
+                while (!shutdown) {
+                    List<CloudEvent> batch = nextBatch(cursor, positionAwareDeserializer, batchConfig);
+                    if (!batch.isEmpty()) {
+                        actionWithRetry.accept(batch);
+                    }
+                }
+            }
         } catch (MongoException e) {
             log.debug("Caught {} (code={}, message={}), this might happen when cursor is shutdown.", e.getClass().getName(), e.getCode(), e.getMessage(), e);
         } catch (IllegalStateException e) {
@@ -195,6 +264,28 @@ public class NativeMongoSubscriptionModel implements PositionAwareSubscriptionMo
         }
     }
 
+    // Blocks until at least one change stream document is available and then drains the documents that the cursor has already fetched.
+    // More documents are only fetched from the database while the batch is not full and maxWait hasn't elapsed.
+    private static <T> List<CloudEvent> nextBatch(MongoChangeStreamCursor<ChangeStreamDocument<T>> cursor, Function<ChangeStreamDocument<T>, Optional<CloudEvent>> deserializer, BatchConfig batchConfig) {
+        List<CloudEvent> batch = new ArrayList<>();
+        deserializer.apply(cursor.next()).ifPresent(batch::add);
+        long deadline = System.nanoTime() + batchConfig.maxWait.toNanos();
+        while (batch.size() < batchConfig.maxSize) {
+            final ChangeStreamDocument<T> changeStreamDocument;
+            if (cursor.available() > 0) {
+                changeStreamDocument = cursor.next();
+            } else if (deadline - System.nanoTime() > 0) {
+                changeStreamDocument = cursor.tryNext();
+            } else {
+                break;
+            }
+            if (changeStreamDocument != null) {
+                deserializer.apply(changeStreamDocument).ifPresent(batch::add);
+            }
+        }
+        return Collections.unmodifiableList(batch);
+    }
+
     private static List<Bson> createPipeline(TimeRepresentation timeRepresentation, SubscriptionFilter filter) {
         final List<Bson> pipeline;
         if (filter == null) {
@@ -227,22 +318,32 @@ public class NativeMongoSubscriptionModel implements PositionAwareSubscriptionMo
     }
 
     @Override
-    public synchronized void cancelSubscription(String subscriptionId) {
-        InternalSubscription internalSubscription = runningSubscriptions.remove(subscriptionId);
-        if (internalSubscription != null) {
-            internalSubscription.close();
+    public void cancelSubscription(String subscriptionId) {
+        lock.lock();
+        try {
+            InternalSubscription internalSubscription = runningSubscriptions.remove(subscriptionId);
+            if (internalSubscription != null) {
+                internalSubscription.close();
+            }
+            pausedSubscriptions.remove(subscriptionId);
+        } finally {
+            lock.unlock();
         }
-        pausedSubscriptions.remove(subscriptionId);
     }
 
     @PreDestroy
-    public synchronized void shutdown() {
-        shutdown = true;
-        running = false;
-        runningSubscriptions.keySet().forEach(this::cancelSubscription);
-        runningSubscriptions.clear();
-        pausedSubscriptions.clear();
-        ExecutorShutdown.shutdownSafely(cloudEventDispatcher, 5, TimeUnit.SECONDS);
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            running = false;
+            runningSubscriptions.keySet().forEach(this::cancelSubscription);
+            runningSubscriptions.clear();
+            pausedSubscriptions.clear();
+            ExecutorShutdown.shutdownSafely(cloudEventDispatcher, 5, TimeUnit.SECONDS);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
@@ -263,18 +364,28 @@ public class NativeMongoSubscriptionModel implements PositionAwareSubscriptionMo
 
 
     @Override
-    public synchronized void stop() {
-        if (!shutdown) {
-            running = false;
-            runningSubscriptions.forEach((subscriptionId, __) -> pauseSubscription(subscriptionId));
+    public void stop() {
+        lock.lock();
+        try {
+            if (!shutdown) {
+                running = false;
+                runningSubscriptions.forEach((subscriptionId, __) -> pauseSubscription(subscriptionId));
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
-    public synchronized void start() {
-        if (!shutdown) {
-            running = true;
-            pausedSubscriptions.forEach((subscriptionId, internalSubscription) -> resumeSubscription(subscriptionId).waitUntilStarted());
+    public void start() {
+        lock.lock();
+        try {
+            if (!shutdown) {
+                running = true;
+                pausedSubscriptions.forEach((subscriptionId, internalSubscription) -> resumeSubscription(subscriptionId).waitUntilStarted());
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -294,45 +405,55 @@ public class NativeMongoSubscriptionModel implements PositionAwareSubscriptionMo
     }
 
     @Override
-    public synchronized Subscription resumeSubscription(String subscriptionId) {
-        if (shutdown) {
-            throw new IllegalStateException(SubscriptionModel.class.getSimpleName() + " is shutdown");
-        } else if (isRunning(subscriptionId)) {
-            throw new IllegalArgumentException("Subscription " + subscriptionId + " is already running");
-        }
+    public Subscription resumeSubscription(String subscriptionId) {
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new IllegalStateException(SubscriptionModel.class.getSimpleName() + " is shutdown");
+            } else if (isRunning(subscriptionId)) {
+                throw new IllegalArgumentException("Subscription " + subscriptionId + " is already running");
+            }
 
-        InternalSubscription internalSubscription = pausedSubscriptions.remove(subscriptionId);
-        if (internalSubscription == null) {
-            throw new IllegalArgumentException("Subscription " + subscriptionId + " isn't paused.");
-        }
+            InternalSubscription internalSubscription = pausedSubscriptions.remove(subscriptionId);
+            if (internalSubscription == null) {
+                throw new IllegalArgumentException("Subscription " + subscriptionId + " isn't paused.");
+            }
 
-        running = true;
+            running = true;
 
-        CountDownLatch startedLatch = new CountDownLatch(1);
-        Runnable newSubscription = () -> newInternalSubscription(subscriptionId, internalSubscription.filter,
-                internalSubscription.startAt, internalSubscription.action, startedLatch);
-        startSubscription(newSubscription);
+            CountDownLatch startedLatch = new CountDownLatch(1);
+            Runnable newSubscription = () -> newInternalSubscription(subscriptionId, internalSubscription.filter,
+                    internalSubscription.startAt, internalSubscription.batchConfig, internalSubscription.action, startedLatch);
+            startSubscription(newSubscription);
 
-        return new NativeMongoSubscription(subscriptionId, startedLatch);
+            return new NativeMongoSubscription(subscriptionId, startedLatch);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-    public synchronized void pauseSubscription(String subscriptionId) {
-        if (shutdown) {
-            throw new IllegalStateException(SubscriptionModel.class.getSimpleName() + " is shutdown");
-        } else if (isPaused(subscriptionId)) {
-            throw new IllegalArgumentException("Subscription " + subscriptionId + " is already paused");
-        } else if (!isRunning(subscriptionId)) {
-            throw new IllegalArgumentException("Subscription " + subscriptionId + " is not running");
-        }
+    public void pauseSubscription(String subscriptionId) {
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new IllegalStateException(SubscriptionModel.class.getSimpleName() + " is shutdown");
+            } else if (isPaused(subscriptionId)) {
+                throw new IllegalArgumentException("Subscription " + subscriptionId + " is already paused");
+            } else if (!isRunning(subscriptionId)) {
+                throw new IllegalArgumentException("Subscription " + subscriptionId + " is not running");
+            }
 
-        InternalSubscription internalSubscription = runningSubscriptions.remove(subscriptionId);
-        if (internalSubscription != null) {
-            internalSubscription.close();
-            if (!internalSubscription.waitUntilStopped(Duration.ofSeconds(1))) {
-                log.debug("Failed to stop internal subscription after 1 second");
+            InternalSubscription internalSubscription = runningSubscriptions.remove(subscriptionId);
+            if (internalSubscription != null) {
+                internalSubscription.close();
+                if (!internalSubscription.waitUntilStopped(Duration.ofSeconds(1))) {
+                    log.debug("Failed to stop internal subscription after 1 second");
+                }
+                pausedSubscriptions.put(subscriptionId, internalSubscription);
             }
-            pausedSubscriptions.put(subscriptionId, internalSubscription);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -340,15 +461,17 @@ public class NativeMongoSubscriptionModel implements PositionAwareSubscriptionMo
         private final SubscriptionFilter filter;
         final CountDownLatch startedLatch;
         final CountDownLatch stoppedLatch;
-        final MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+        final MongoChangeStreamCursor<?> cursor;
         final StartAt startAt;
-        final Consumer<CloudEvent> action;
+        final BatchConfig batchConfig;
+        final Consumer<List<CloudEvent>> action;
 
-        private InternalSubscription(MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor, StartAt startAtSupplier, Consumer<CloudEvent> action, SubscriptionFilter filter, CountDownLatch startedLatch) {
+        private InternalSubscription(MongoChangeStreamCursor<?> cursor, StartAt startAtSupplier, BatchConfig batchConfig, Consumer<List<CloudEvent>> action, SubscriptionFilter filter, CountDownLatch startedLatch) {
             this.filter = filter;
             this.startedLatch = startedLatch;
             this.cursor = cursor;
             this.startAt = startAtSupplier;
+            this.batchConfig = batchConfig;
             this.action = action;
             this.stoppedLatch = new CountDownLatch(1);
         }
@@ -358,12 +481,12 @@ public class NativeMongoSubscriptionModel implements PositionAwareSubscriptionMo
             if (this == o) return true;
             if (!(o instanceof InternalSubscription)) return false;
             InternalSubscription that = (InternalSubscription) o;
-            return Objects.equals(filter, that.filter) && Objects.equals(startedLatch, that.startedLatch) && Objects.equals(stoppedLatch, that.stoppedLatch) && Objects.equals(cursor, that.cursor) && Objects.equals(startAt, that.startAt) && Objects.equals(action, that.action);
+            return Objects.equals(filter, that.filter) && Objects.equals(startedLatch, that.startedLatch) && Objects.equals(stoppedLatch, that.stoppedLatch) && Objects.equals(cursor, that.cursor) && Objects.equals(startAt, that.startAt) && Objects.equals(batchConfig, that.batchConfig) && Objects.equals(action, that.action);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(filter, startedLatch, stoppedLatch, cursor, startAt, action);
+            return Objects.hash(filter, startedLatch, stoppedLatch, cursor, startAt, batchConfig, action);
         }
 
         void started() {
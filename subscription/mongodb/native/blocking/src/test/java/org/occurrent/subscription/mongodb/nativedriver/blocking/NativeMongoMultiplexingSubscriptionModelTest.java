@@ -0,0 +1,320 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.subscription.mongodb.nativedriver.blocking;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.ConnectionString;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import org.bson.Document;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.occurrent.domain.DomainEvent;
+import org.occurrent.domain.NameDefined;
+import org.occurrent.domain.NameWasChanged;
+import org.occurrent.eventstore.mongodb.nativedriver.EventStoreConfig;
+import org.occurrent.eventstore.mongodb.nativedriver.MongoEventStore;
+import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
+import org.occurrent.retry.RetryStrategy;
+import org.occurrent.subscription.PositionAwareCloudEvent;
+import org.occurrent.subscription.StartAt;
+import org.occurrent.subscription.SubscriptionPosition;
+import org.occurrent.subscription.internal.ExecutorShutdown;
+import org.occurrent.subscription.mongodb.MongoFilterSpecification.MongoJsonFilterSpecification;
+import org.occurrent.testsupport.mongodb.FlushMongoDBExtension;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static java.time.ZoneOffset.UTC;
+import static java.time.temporal.ChronoUnit.MILLIS;
+import static java.util.Objects.requireNonNull;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.awaitility.Awaitility.await;
+import static org.awaitility.Durations.FIVE_SECONDS;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.occurrent.filter.Filter.type;
+import static org.occurrent.functional.CheckedFunction.unchecked;
+import static org.occurrent.subscription.OccurrentSubscriptionFilter.filter;
+import static org.occurrent.time.TimeConversion.toLocalDateTime;
+
+@Testcontainers
+@Timeout(15000)
+public class NativeMongoMultiplexingSubscriptionModelTest {
+
+    @Container
+    private static final MongoDBContainer mongoDBContainer = new MongoDBContainer("mongo:4.2.8").withReuse(true);
+
+    @RegisterExtension
+    FlushMongoDBExtension flushMongoDBExtension = new FlushMongoDBExtension(new ConnectionString(mongoDBContainer.getReplicaSetUrl()));
+
+    private MongoEventStore mongoEventStore;
+    private NativeMongoMultiplexingSubscriptionModel subscriptionModel;
+    private ObjectMapper objectMapper;
+    private MongoClient mongoClient;
+    private ExecutorService subscriptionExecutor;
+    private MongoDatabase database;
+    private MongoCollection<Document> eventCollection;
+
+    @BeforeEach
+    void create_mongo_event_store() {
+        ConnectionString connectionString = new ConnectionString(mongoDBContainer.getReplicaSetUrl() + ".events");
+        this.mongoClient = MongoClients.create(connectionString);
+        TimeRepresentation timeRepresentation = TimeRepresentation.RFC_3339_STRING;
+        EventStoreConfig config = new EventStoreConfig(timeRepresentation);
+        database = mongoClient.getDatabase(requireNonNull(connectionString.getDatabase()));
+        eventCollection = database.getCollection(requireNonNull(connectionString.getCollection()));
+        mongoEventStore = new MongoEventStore(mongoClient, connectionString.getDatabase(), connectionString.getCollection(), config);
+        subscriptionExecutor = Executors.newCachedThreadPool();
+        subscriptionModel = new NativeMongoMultiplexingSubscriptionModel(database, eventCollection, timeRepresentation, subscriptionExecutor, RetryStrategy.exponentialBackoff(Duration.of(100, MILLIS), Duration.of(500, MILLIS), 2));
+        objectMapper = new ObjectMapper();
+    }
+
+    @AfterEach
+    void shutdown() {
+        subscriptionModel.shutdown();
+        ExecutorShutdown.shutdownSafely(subscriptionExecutor, 10, TimeUnit.SECONDS);
+        mongoClient.close();
+    }
+
+    @Test
+    void all_subscriptions_receive_each_new_event() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        CopyOnWriteArrayList<CloudEvent> state1 = new CopyOnWriteArrayList<>();
+        CopyOnWriteArrayList<CloudEvent> state2 = new CopyOnWriteArrayList<>();
+        subscriptionModel.subscribe("subscription1", state1::add).waitUntilStarted();
+        subscriptionModel.subscribe("subscription2", state2::add).waitUntilStarted();
+
+        // When
+        mongoEventStore.write("1", 0, serialize(new NameDefined(UUID.randomUUID().toString(), now, "name1")));
+        mongoEventStore.write("1", 1, serialize(new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(1), "name2")));
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() -> assertAll(
+                () -> assertThat(state1).hasSize(2),
+                () -> assertThat(state2).hasSize(2)
+        ));
+    }
+
+    @Test
+    void events_are_only_dispatched_to_subscriptions_whose_filter_matches_the_event() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        CopyOnWriteArrayList<CloudEvent> nameDefinedState = new CopyOnWriteArrayList<>();
+        CopyOnWriteArrayList<CloudEvent> nameWasChangedState = new CopyOnWriteArrayList<>();
+        subscriptionModel.subscribe("nameDefined", filter(type(NameDefined.class.getName())), nameDefinedState::add).waitUntilStarted();
+        subscriptionModel.subscribe("nameWasChanged", filter(type(NameWasChanged.class.getName())), nameWasChangedState::add).waitUntilStarted();
+
+        // When
+        mongoEventStore.write("1", 0, serialize(new NameDefined(UUID.randomUUID().toString(), now, "name1")));
+        mongoEventStore.write("1", 1, serialize(new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(1), "name2")));
+        mongoEventStore.write("2", 0, serialize(new NameDefined(UUID.randomUUID().toString(), now.plusSeconds(2), "name3")));
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() -> assertAll(
+                () -> assertThat(nameDefinedState).extracting(CloudEvent::getType).containsExactly(NameDefined.class.getName(), NameDefined.class.getName()),
+                () -> assertThat(nameWasChangedState).extracting(CloudEvent::getType).containsExactly(NameWasChanged.class.getName())
+        ));
+    }
+
+    @Test
+    void subscription_started_at_an_earlier_position_receives_events_after_this_position_without_duplicates_for_other_subscriptions() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        CopyOnWriteArrayList<CloudEvent> state1 = new CopyOnWriteArrayList<>();
+        CopyOnWriteArrayList<CloudEvent> state2 = new CopyOnWriteArrayList<>();
+        subscriptionModel.subscribe("subscription1", state1::add).waitUntilStarted();
+        mongoEventStore.write("1", 0, serialize(new NameDefined(UUID.randomUUID().toString(), now, "name1")));
+        mongoEventStore.write("1", 1, serialize(new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(1), "name2")));
+        mongoEventStore.write("1", 2, serialize(new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(2), "name3")));
+        await().atMost(FIVE_SECONDS).untilAsserted(() -> assertThat(state1).hasSize(3));
+        SubscriptionPosition positionOfFirstEvent = PositionAwareCloudEvent.getSubscriptionPositionOrThrowIAE(state1.get(0));
+
+        // When
+        subscriptionModel.subscribe("subscription2", StartAt.subscriptionPosition(positionOfFirstEvent), state2::add).waitUntilStarted();
+        mongoEventStore.write("1", 3, serialize(new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(3), "name4")));
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() -> assertAll(
+                () -> assertThat(state1).extracting(CloudEvent::getSubject).containsExactly("name1", "name2", "name3", "name4"),
+                () -> assertThat(state2).extracting(CloudEvent::getSubject).containsExactly("name2", "name3", "name4")
+        ));
+    }
+
+    @Test
+    void paused_subscription_receives_the_events_written_while_it_was_paused_when_resumed() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        CopyOnWriteArrayList<CloudEvent> state1 = new CopyOnWriteArrayList<>();
+        CopyOnWriteArrayList<CloudEvent> state2 = new CopyOnWriteArrayList<>();
+        subscriptionModel.subscribe("subscription1", state1::add).waitUntilStarted();
+        subscriptionModel.subscribe("subscription2", state2::add).waitUntilStarted();
+        mongoEventStore.write("1", 0, serialize(new NameDefined(UUID.randomUUID().toString(), now, "name1")));
+        await().atMost(FIVE_SECONDS).untilAsserted(() -> assertThat(state2).hasSize(1));
+
+        // When
+        subscriptionModel.pauseSubscription("subscription2");
+        mongoEventStore.write("1", 1, serialize(new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(1), "name2")));
+        await().atMost(FIVE_SECONDS).untilAsserted(() -> assertThat(state1).hasSize(2));
+        subscriptionModel.resumeSubscription("subscription2").waitUntilStarted();
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() -> assertAll(
+                () -> assertThat(state1).extracting(CloudEvent::getSubject).containsExactly("name1", "name2"),
+                () -> assertThat(state2).extracting(CloudEvent::getSubject).containsExactly("name1", "name2")
+        ));
+    }
+
+    @Test
+    void cancelled_subscription_does_not_receive_any_more_events() throws InterruptedException {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        CopyOnWriteArrayList<CloudEvent> state1 = new CopyOnWriteArrayList<>();
+        CopyOnWriteArrayList<CloudEvent> state2 = new CopyOnWriteArrayList<>();
+        subscriptionModel.subscribe("subscription1", state1::add).waitUntilStarted();
+        subscriptionModel.subscribe("subscription2", state2::add).waitUntilStarted();
+
+        // When
+        subscriptionModel.cancelSubscription("subscription2");
+        mongoEventStore.write("1", 0, serialize(new NameDefined(UUID.randomUUID().toString(), now, "name1")));
+
+        // Then
+        await().atMost(FIVE_SECONDS).untilAsserted(() -> assertThat(state1).hasSize(1));
+        Thread.sleep(200);
+        assertAll(
+                () -> assertThat(state2).isEmpty(),
+                () -> assertThat(subscriptionModel.isRunning("subscription2")).isFalse()
+        );
+    }
+
+    @Test
+    void stopped_subscription_model_receives_the_events_written_while_it_was_stopped_when_started() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        CopyOnWriteArrayList<CloudEvent> state1 = new CopyOnWriteArrayList<>();
+        CopyOnWriteArrayList<CloudEvent> state2 = new CopyOnWriteArrayList<>();
+        subscriptionModel.subscribe("subscription1", state1::add).waitUntilStarted();
+        subscriptionModel.subscribe("subscription2", state2::add).waitUntilStarted();
+        subscriptionModel.stop();
+        mongoEventStore.write("1", 0, serialize(new NameDefined(UUID.randomUUID().toString(), now, "name1")));
+
+        // When
+        subscriptionModel.start();
+
+        // Then
+        await().atMost(FIVE_SECONDS).untilAsserted(() -> assertAll(
+                () -> assertThat(subscriptionModel.isRunning()).isTrue(),
+                () -> assertThat(state1).extracting(CloudEvent::getSubject).containsExactly("name1"),
+                () -> assertThat(state2).extracting(CloudEvent::getSubject).containsExactly("name1")
+        ));
+    }
+
+    @Test
+    void subscription_whose_action_keeps_failing_is_paused_by_default_so_that_the_other_subscriptions_receive_events() {
+        // Given
+        // The subscription model shuts down the executor
+        subscriptionModel.shutdown();
+        subscriptionExecutor = Executors.newCachedThreadPool();
+        subscriptionModel = new NativeMongoMultiplexingSubscriptionModel(database, eventCollection.getNamespace().getCollectionName(), TimeRepresentation.RFC_3339_STRING, subscriptionExecutor);
+        LocalDateTime now = LocalDateTime.now();
+        CopyOnWriteArrayList<CloudEvent> state = new CopyOnWriteArrayList<>();
+        subscriptionModel.subscribe("failing", __ -> {
+            throw new IllegalStateException("expected");
+        }).waitUntilStarted();
+        subscriptionModel.subscribe("subscription", state::add).waitUntilStarted();
+
+        // When
+        mongoEventStore.write("1", 0, serialize(new NameDefined(UUID.randomUUID().toString(), now, "name1")));
+        mongoEventStore.write("1", 1, serialize(new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(1), "name2")));
+
+        // Then
+        await().atMost(Duration.ofSeconds(10)).untilAsserted(() -> assertAll(
+                () -> assertThat(state).extracting(CloudEvent::getSubject).containsExactly("name1", "name2"),
+                () -> assertThat(subscriptionModel.isRunning("failing")).isFalse(),
+                () -> assertThat(subscriptionModel.isPaused("failing")).isTrue()
+        ));
+    }
+
+    @Test
+    void cloud_event_that_could_not_be_processed_is_delivered_again_when_the_paused_subscription_is_resumed() {
+        // Given
+        // The subscription model shuts down the executor
+        subscriptionModel.shutdown();
+        subscriptionExecutor = Executors.newCachedThreadPool();
+        subscriptionModel = new NativeMongoMultiplexingSubscriptionModel(database, eventCollection, TimeRepresentation.RFC_3339_STRING, subscriptionExecutor,
+                RetryStrategy.fixed(Duration.ofMillis(10)).maxAttempts(2));
+        LocalDateTime now = LocalDateTime.now();
+        AtomicBoolean fail = new AtomicBoolean(true);
+        CopyOnWriteArrayList<CloudEvent> state = new CopyOnWriteArrayList<>();
+        subscriptionModel.subscribe("subscription", cloudEvent -> {
+            if (fail.get()) {
+                throw new IllegalStateException("expected");
+            }
+            state.add(cloudEvent);
+        }).waitUntilStarted();
+        mongoEventStore.write("1", 0, serialize(new NameDefined(UUID.randomUUID().toString(), now, "name1")));
+        mongoEventStore.write("1", 1, serialize(new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(1), "name2")));
+        await().atMost(Duration.ofSeconds(10)).until(() -> subscriptionModel.isPaused("subscription"));
+        fail.set(false);
+
+        // When
+        subscriptionModel.resumeSubscription("subscription").waitUntilStarted();
+
+        // Then
+        await().atMost(Duration.ofSeconds(10)).untilAsserted(() -> assertThat(state).extracting(CloudEvent::getSubject).containsExactly("name1", "name2"));
+    }
+
+    @Test
+    void throws_iae_when_subscribing_with_a_mongo_filter_specification() {
+        // When
+        Throwable throwable = catchThrowable(() -> subscriptionModel.subscribe("subscription", MongoJsonFilterSpecification.filter("{ $match: { \"fullDocument.type\" : \"type\" } }"), __ -> {
+        }));
+
+        // Then
+        assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class).hasMessageStartingWith(NativeMongoMultiplexingSubscriptionModel.class.getSimpleName() + " only supports");
+    }
+
+    private Stream<CloudEvent> serialize(DomainEvent e) {
+        return Stream.of(CloudEventBuilder.v1()
+                .withId(e.getEventId())
+                .withSource(URI.create("http://name"))
+                .withType(e.getClass().getName())
+                .withTime(toLocalDateTime(e.getTimestamp()).atOffset(UTC))
+                .withSubject(e.getName())
+                .withDataContentType("application/json")
+                .withData(unchecked(objectMapper::writeValueAsBytes).apply(e))
+                .build());
+    }
+}
@@ -37,7 +37,10 @@ import org.occurrent.eventstore.mongodb.nativedriver.MongoEventStore;
 import org.occurrent.filter.Filter;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
 import org.occurrent.retry.RetryStrategy;
+import org.occurrent.subscription.BatchConfig;
 import org.occurrent.subscription.OccurrentSubscriptionFilter;
+import org.occurrent.subscription.PositionAwareCloudEvent;
+import org.occurrent.subscription.SubscriptionExecutors;
 import org.occurrent.subscription.internal.ExecutorShutdown;
 import org.occurrent.subscription.mongodb.MongoFilterSpecification.MongoJsonFilterSpecification;
 import org.occurrent.testsupport.mongodb.FlushMongoDBExtension;
@@ -49,6 +52,7 @@ import java.net.URI;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
@@ -72,6 +76,7 @@ import static org.awaitility.Durations.FIVE_SECONDS;
 import static org.awaitility.Durations.ONE_SECOND;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.occurrent.filter.Filter.data;
 import static org.occurrent.filter.Filter.type;
 import static org.occurrent.functional.CheckedFunction.unchecked;
@@ -150,6 +155,31 @@ public class NativeMongoSubscriptionModelTest {
         await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() -> assertThat(state).hasSize(3));
     }
 
+    @Test
+    void blocking_native_mongodb_subscription_calls_listener_for_each_new_event_when_running_subscriptions_on_virtual_threads() {
+        assumeTrue(SubscriptionExecutors.isVirtualThreadsSupported(), "Virtual threads are not supported by this JVM");
+
+        // Given
+        subscriptionModel.shutdown();
+        ExecutorShutdown.shutdownSafely(subscriptionExecutor, 10, TimeUnit.SECONDS);
+        ConnectionString connectionString = new ConnectionString(mongoDBContainer.getReplicaSetUrl() + ".events");
+        MongoDatabase database = mongoClient.getDatabase(requireNonNull(connectionString.getDatabase()));
+        subscriptionExecutor = SubscriptionExecutors.newVirtualThreadPerTaskExecutor();
+        subscriptionModel = new NativeMongoSubscriptionModel(database, requireNonNull(connectionString.getCollection()), TimeRepresentation.RFC_3339_STRING, subscriptionExecutor);
+
+        LocalDateTime now = LocalDateTime.now();
+        CopyOnWriteArrayList<CloudEvent> state = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            subscriptionModel.subscribe(UUID.randomUUID().toString(), state::add).waitUntilStarted();
+        }
+
+        // When
+        mongoEventStore.write("1", 0, serialize(new NameDefined(UUID.randomUUID().toString(), now, "name1")));
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() -> assertThat(state).hasSize(100));
+    }
+
     @Test
     void  blocking_native_mongodb_subscription_retries_on_failure() {
         // Given
@@ -176,6 +206,30 @@ public class NativeMongoSubscriptionModelTest {
         await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() -> assertThat(state).hasSize(3));
     }
 
+    @Test
+    void blocking_native_mongodb_subscription_delivers_events_in_batches_when_subscribing_with_batch_config() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        CopyOnWriteArrayList<List<CloudEvent>> batches = new CopyOnWriteArrayList<>();
+        subscriptionModel.subscribeBatch(UUID.randomUUID().toString(), new BatchConfig(2, Duration.ofSeconds(1)), batches::add).waitUntilStarted();
+        NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+        NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.plusSeconds(2), "name2");
+        NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(10), "name3");
+
+        // When
+        mongoEventStore.write("1", 0, Stream.concat(serialize(nameDefined1), serialize(nameWasChanged1)));
+        mongoEventStore.write("2", 0, serialize(nameDefined2));
+
+        // Then
+        await().atMost(FIVE_SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() ->
+                assertThat(batches.stream().flatMap(List::stream)).extracting(CloudEvent::getId).containsExactly(nameDefined1.getEventId(), nameWasChanged1.getEventId(), nameDefined2.getEventId()));
+        List<CloudEvent> lastBatch = batches.get(batches.size() - 1);
+        assertAll(
+                () -> assertThat(batches).allSatisfy(batch -> assertThat(batch).hasSizeBetween(1, 2)),
+                () -> assertThat(PositionAwareCloudEvent.hasSubscriptionPosition(lastBatch.get(lastBatch.size() - 1))).isTrue()
+        );
+    }
+
     @Test
     void blocking_native_mongodb_subscription_allows_cancelling_subscription() throws InterruptedException {
         // Given
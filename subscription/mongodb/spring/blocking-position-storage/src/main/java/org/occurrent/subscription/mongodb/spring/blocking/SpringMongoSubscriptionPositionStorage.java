@@ -16,8 +16,6 @@
 
 package org.occurrent.subscription.mongodb.spring.blocking;
 
-import org.bson.BsonTimestamp;
-import org.bson.BsonValue;
 import org.bson.Document;
 import org.occurrent.retry.RetryStrategy;
 import org.occurrent.subscription.SubscriptionPosition;
@@ -25,13 +23,17 @@ import org.occurrent.subscription.api.blocking.SubscriptionPositionStorage;
 import org.occurrent.subscription.mongodb.MongoOperationTimeSubscriptionPosition;
 import org.occurrent.subscription.mongodb.MongoResumeTokenSubscriptionPosition;
 import org.occurrent.subscription.mongodb.internal.MongoCommons;
+import org.occurrent.subscription.mongodb.internal.WriteBehindSubscriptionPositions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
 import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.data.mongodb.core.query.Update;
 
 import javax.annotation.PreDestroy;
 import java.time.Duration;
+import java.util.Map;
 import java.util.function.Supplier;
 
 import static java.util.Objects.requireNonNull;
@@ -49,6 +51,8 @@ public class SpringMongoSubscriptionPositionStorage implements SubscriptionPosit
     private final MongoOperations mongoOperations;
     private final String subscriptionPositionCollection;
     private final RetryStrategy retryStrategy;
+    // Only defined in write-behind mode
+    private final WriteBehindSubscriptionPositions writeBehindSubscriptionPositions;
 
     private volatile boolean shutdown = false;
 
@@ -72,16 +76,42 @@ public class SpringMongoSubscriptionPositionStorage implements SubscriptionPosit
      * @param retryStrategy                  A custom retry strategy to use if there's a problem reading/saving/deleting the position to the MongoDB storage.
      */
     public SpringMongoSubscriptionPositionStorage(MongoOperations mongoOperations, String subscriptionPositionCollection, RetryStrategy retryStrategy) {
+        this(mongoOperations, subscriptionPositionCollection, retryStrategy, null);
+    }
+
+    /**
+     * Create a {@link SubscriptionPositionStorage} that uses the Spring's {@link MongoOperations} to persist subscription positions in MongoDB.
+     * <p>
+     * If a {@code writeBehindFlushInterval} is specified, {@link #save(String, SubscriptionPosition)} doesn't write to MongoDB but records the position in memory.
+     * The latest position of every subscription that has been saved since the last flush is then written using a single unordered bulk write every {@code writeBehindFlushInterval}.
+     * This greatly reduces the write load when there are many subscriptions, at the expense of that the most recently saved positions may be lost if the
+     * application crashes (which means that a few events may be delivered again after a restart). {@link #read(String)} and {@link #exists(String)} take positions
+     * that are not yet written into account, and pending positions are written on shutdown
+     * (they are logged and discarded if they cannot be written within a few attempts).
+     * </p>
+     *
+     * @param mongoOperations                The {@link MongoOperations} that'll be used to store the subscription position
+     * @param subscriptionPositionCollection The collection into which subscription positions will be stored
+     * @param retryStrategy                  A custom retry strategy to use if there's a problem reading/saving/deleting the position to the MongoDB storage.
+     * @param writeBehindFlushInterval       How often to write the saved positions to MongoDB, or {@code null} to write each position when it's saved.
+     */
+    public SpringMongoSubscriptionPositionStorage(MongoOperations mongoOperations, String subscriptionPositionCollection, RetryStrategy retryStrategy, Duration writeBehindFlushInterval) {
         requireNonNull(mongoOperations, "Mongo operations cannot be null");
         requireNonNull(subscriptionPositionCollection, "subscriptionPositionCollection cannot be null");
         requireNonNull(retryStrategy, RetryStrategy.class.getSimpleName() + " cannot be null");
         this.mongoOperations = mongoOperations;
         this.subscriptionPositionCollection = subscriptionPositionCollection;
         this.retryStrategy = retryStrategy;
+        this.writeBehindSubscriptionPositions = writeBehindFlushInterval == null ? null : new WriteBehindSubscriptionPositions(writeBehindFlushInterval, this::persistStreamPositions);
     }
 
     @Override
     public SubscriptionPosition read(String subscriptionId) {
+        SubscriptionPosition pendingSubscriptionPosition = writeBehindSubscriptionPositions == null ? null : writeBehindSubscriptionPositions.pending(subscriptionId);
+        if (pendingSubscriptionPosition != null) {
+            return pendingSubscriptionPosition;
+        }
+
         Supplier<SubscriptionPosition> read = () -> {
             Document document = mongoOperations.findOne(query(where(ID).is(subscriptionId)), Document.class, subscriptionPositionCollection);
             if (document == null) {
@@ -95,16 +125,13 @@ public class SpringMongoSubscriptionPositionStorage implements SubscriptionPosit
 
     @Override
     public SubscriptionPosition save(String subscriptionId, SubscriptionPosition subscriptionPosition) {
+        if (writeBehindSubscriptionPositions != null) {
+            writeBehindSubscriptionPositions.save(subscriptionId, requireNonNull(subscriptionPosition, SubscriptionPosition.class.getSimpleName() + " cannot be null"));
+            return subscriptionPosition;
+        }
+
         Supplier<SubscriptionPosition> save = () -> {
-            if (subscriptionPosition instanceof MongoResumeTokenSubscriptionPosition) {
-                persistResumeTokenStreamPosition(subscriptionId, ((MongoResumeTokenSubscriptionPosition) subscriptionPosition).resumeToken);
-            } else if (subscriptionPosition instanceof MongoOperationTimeSubscriptionPosition) {
-                persistOperationTimeStreamPosition(subscriptionId, ((MongoOperationTimeSubscriptionPosition) subscriptionPosition).operationTime);
-            } else {
-                String subscriptionPositionString = subscriptionPosition.asString();
-                Document document = MongoCommons.generateGenericSubscriptionPositionDocument(subscriptionId, subscriptionPositionString);
-                persistDocumentStreamPosition(subscriptionId, document);
-            }
+            persistDocumentStreamPosition(subscriptionId, generateStreamPositionDocument(subscriptionId, subscriptionPosition));
             return subscriptionPosition;
         };
 
@@ -113,22 +140,32 @@ public class SpringMongoSubscriptionPositionStorage implements SubscriptionPosit
 
     @Override
     public void delete(String subscriptionId) {
+        if (writeBehindSubscriptionPositions != null) {
+            writeBehindSubscriptionPositions.discard(subscriptionId);
+        }
         Runnable delete = () -> mongoOperations.remove(query(where(ID).is(subscriptionId)), subscriptionPositionCollection);
         executeWithRetry(delete, __ -> !shutdown, retryStrategy).run();
     }
 
     @Override
     public boolean exists(String subscriptionId) {
+        if (writeBehindSubscriptionPositions != null && writeBehindSubscriptionPositions.pending(subscriptionId) != null) {
+            return true;
+        }
         Supplier<Boolean> exists = () -> mongoOperations.exists(query(where(ID).is(subscriptionId)), subscriptionPositionCollection);
         return executeWithRetry(exists, __ -> !shutdown, retryStrategy).get();
     }
 
-    private void persistResumeTokenStreamPosition(String subscriptionId, BsonValue resumeToken) {
-        persistDocumentStreamPosition(subscriptionId, MongoCommons.generateResumeTokenStreamPositionDocument(subscriptionId, resumeToken));
-    }
-
-    private void persistOperationTimeStreamPosition(String subscriptionId, BsonTimestamp operationTime) {
-        persistDocumentStreamPosition(subscriptionId, MongoCommons.generateOperationTimeStreamPositionDocument(subscriptionId, operationTime));
+    private static Document generateStreamPositionDocument(String subscriptionId, SubscriptionPosition subscriptionPosition) {
+        final Document document;
+        if (subscriptionPosition instanceof MongoResumeTokenSubscriptionPosition) {
+            document = MongoCommons.generateResumeTokenStreamPositionDocument(subscriptionId, ((MongoResumeTokenSubscriptionPosition) subscriptionPosition).resumeToken);
+        } else if (subscriptionPosition instanceof MongoOperationTimeSubscriptionPosition) {
+            document = MongoCommons.generateOperationTimeStreamPositionDocument(subscriptionId, ((MongoOperationTimeSubscriptionPosition) subscriptionPosition).operationTime);
+        } else {
+            document = MongoCommons.generateGenericSubscriptionPositionDocument(subscriptionId, subscriptionPosition.asString());
+        }
+        return document;
     }
 
     void persistDocumentStreamPosition(String subscriptionId, Document document) {
@@ -137,8 +174,20 @@ public class SpringMongoSubscriptionPositionStorage implements SubscriptionPosit
                 subscriptionPositionCollection);
     }
 
+    private void persistStreamPositions(Map<String, SubscriptionPosition> subscriptionPositions) {
+        // Not retried since the positions are written again on the next flush if the bulk write fails
+        BulkOperations bulkOperations = mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, subscriptionPositionCollection);
+        subscriptionPositions.forEach((subscriptionId, subscriptionPosition) ->
+                bulkOperations.replaceOne(query(where(ID).is(subscriptionId)), generateStreamPositionDocument(subscriptionId, subscriptionPosition), FindAndReplaceOptions.options().upsert()));
+        bulkOperations.execute();
+    }
+
     @PreDestroy
     void shutdown() {
+        // The pending positions are written with a limited number of attempts, so that shutdown doesn't hang if MongoDB is unavailable
+        if (writeBehindSubscriptionPositions != null) {
+            writeBehindSubscriptionPositions.shutdown();
+        }
         shutdown = true;
     }
 }
\ No newline at end of file
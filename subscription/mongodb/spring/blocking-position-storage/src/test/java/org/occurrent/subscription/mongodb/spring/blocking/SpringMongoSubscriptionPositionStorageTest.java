@@ -167,6 +167,40 @@ public class SpringMongoSubscriptionPositionStorageTest {
         assertThat(actualPosition).isEqualTo(expectedPosition);
     }
 
+    @Test
+    void write_behind_mode_writes_latest_subscription_position_of_each_subscription_in_the_background() {
+        // Given
+        SpringMongoSubscriptionPositionStorage storage = new SpringMongoSubscriptionPositionStorage(mongoTemplate, RESUME_TOKEN_COLLECTION, RetryStrategy.none(), Duration.ofMillis(50));
+
+        // When
+        storage.save("subscription1", new StringBasedSubscriptionPosition("1"));
+        storage.save("subscription1", new StringBasedSubscriptionPosition("2"));
+        storage.save("subscription2", new StringBasedSubscriptionPosition("3"));
+
+        // Then
+        assertThat(storage.read("subscription1")).isEqualTo(new StringBasedSubscriptionPosition("2"));
+        await().atMost(2, SECONDS).untilAsserted(() -> assertThat(mongoTemplate.getCollection(RESUME_TOKEN_COLLECTION).countDocuments()).isEqualTo(2));
+        storage.shutdown();
+        assertThat(new SpringMongoSubscriptionPositionStorage(mongoTemplate, RESUME_TOKEN_COLLECTION).read("subscription1")).isEqualTo(new StringBasedSubscriptionPosition("2"));
+    }
+
+    @Test
+    void write_behind_mode_writes_pending_subscription_positions_on_shutdown_and_replaces_existing_positions() {
+        // Given
+        new SpringMongoSubscriptionPositionStorage(mongoTemplate, RESUME_TOKEN_COLLECTION).save("subscription1", new StringBasedSubscriptionPosition("1"));
+        SpringMongoSubscriptionPositionStorage storage = new SpringMongoSubscriptionPositionStorage(mongoTemplate, RESUME_TOKEN_COLLECTION, RetryStrategy.none(), Duration.ofHours(1));
+        storage.save("subscription1", new StringBasedSubscriptionPosition("2"));
+        storage.save("subscription2", new StringBasedSubscriptionPosition("3"));
+
+        // When
+        storage.shutdown();
+
+        // Then
+        SpringMongoSubscriptionPositionStorage otherStorage = new SpringMongoSubscriptionPositionStorage(mongoTemplate, RESUME_TOKEN_COLLECTION);
+        assertThat(otherStorage.read("subscription1")).isEqualTo(new StringBasedSubscriptionPosition("2"));
+        assertThat(otherStorage.read("subscription2")).isEqualTo(new StringBasedSubscriptionPosition("3"));
+    }
+
     @Test
     void blocking_spring_subscription_stores_every_event_by_default() {
         // Given
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.subscription.mongodb.spring.blocking;
+
+import io.cloudevents.CloudEvent;
+import org.occurrent.subscription.BatchConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Collects the cloud events that the {@code MessageListenerContainer} delivers one by one into batches. A batch is delivered on the listener thread
+ * when it's full (which also applies back-pressure to the change stream) or, when {@link BatchConfig#maxWait} has elapsed since the first cloud event in the batch was received,
+ * on a delivery thread that belongs to this subscription. The {@code scheduler}, which is shared by all subscriptions, only signals that a batch is due and never runs
+ * the action itself, so a batch that fails (and is retried) only delays the batches of its own subscription. Batches are delivered one at a time and in order.
+ * <p>
+ * If a batch that is delivered by the delivery thread fails, it's kept and delivered again on the listener thread together with the next cloud event,
+ * so that the failure is handled in the same way as for a full batch instead of the cloud events being lost.
+ * </p>
+ */
+class BatchingCloudEventConsumer implements Consumer<CloudEvent> {
+    private static final Logger log = LoggerFactory.getLogger(BatchingCloudEventConsumer.class);
+
+    private final String subscriptionId;
+    private final BatchConfig batchConfig;
+    private final Consumer<List<CloudEvent>> action;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService deliveryExecutor;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private List<CloudEvent> batch;
+    private long batchNumber;
+    private ScheduledFuture<?> scheduledDelivery;
+    private boolean deliverWithNextCloudEvent;
+
+    /**
+     * @param scheduler The scheduler that signals that a batch is due when {@link BatchConfig#maxWait} has elapsed, shared by all subscriptions. Not used if {@code maxWait} is zero.
+     */
+    BatchingCloudEventConsumer(String subscriptionId, BatchConfig batchConfig, Consumer<List<CloudEvent>> action, ScheduledExecutorService scheduler) {
+        this.subscriptionId = subscriptionId;
+        this.batchConfig = batchConfig;
+        this.action = action;
+        this.batch = new ArrayList<>(batchConfig.maxSize);
+        this.scheduler = batchConfig.maxWait.isZero() ? null : scheduler;
+        // The thread is only started when the first batch is delivered because maxWait has elapsed
+        this.deliveryExecutor = this.scheduler == null ? null : Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "occurrent-batch-delivery-" + subscriptionId);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void accept(CloudEvent cloudEvent) {
+        lock.lock();
+        try {
+            batch.add(cloudEvent);
+            if (batch.size() >= batchConfig.maxSize || scheduler == null || deliverWithNextCloudEvent) {
+                deliver();
+            } else if (batch.size() == 1) {
+                long batchToDeliver = batchNumber;
+                scheduledDelivery = scheduler.schedule(() -> signalBatchIsDue(batchToDeliver), batchConfig.maxWait.toNanos(), NANOSECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deliver the cloud events that are currently collected, if any.
+     */
+    void flush() {
+        lock.lock();
+        try {
+            if (!batch.isEmpty()) {
+                deliver();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancel the scheduled delivery, cloud events that have not been delivered are discarded. A batch that is being delivered (or retried) by the
+     * delivery thread is interrupted. The consumer cannot be used after it has been closed.
+     */
+    void close() {
+        if (deliveryExecutor != null) {
+            deliveryExecutor.shutdownNow();
+        }
+        lock.lock();
+        try {
+            batch = new ArrayList<>(batchConfig.maxSize);
+            batchNumber++;
+            deliverWithNextCloudEvent = false;
+            cancelScheduledDelivery();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Runs on the shared scheduler thread, which must not wait for the lock or run the action
+    private void signalBatchIsDue(long batchToDeliver) {
+        try {
+            deliveryExecutor.execute(() -> deliverIfPending(batchToDeliver));
+        } catch (RejectedExecutionException e) {
+            log.debug("Batch of cloud events to subscription {} was not delivered since the subscription has been closed", subscriptionId);
+        }
+    }
+
+    private void deliverIfPending(long batchToDeliver) {
+        lock.lock();
+        try {
+            if (batchNumber != batchToDeliver || batch.isEmpty()) {
+                return;
+            }
+            List<CloudEvent> cloudEvents = batch;
+            try {
+                deliver();
+            } catch (Exception e) {
+                log.error("Failed to deliver batch of cloud events to subscription {}, will deliver it again with the next cloud event", subscriptionId, e);
+                batch = cloudEvents;
+                deliverWithNextCloudEvent = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void deliver() {
+        List<CloudEvent> batchToDeliver = Collections.unmodifiableList(batch);
+        batch = new ArrayList<>(batchConfig.maxSize);
+        batchNumber++;
+        deliverWithNextCloudEvent = false;
+        cancelScheduledDelivery();
+        action.accept(batchToDeliver);
+    }
+
+    private void cancelScheduledDelivery() {
+        if (scheduledDelivery != null) {
+            // Don't interrupt the delivery if it's the scheduled delivery that is delivering the batch
+            scheduledDelivery.cancel(false);
+            scheduledDelivery = null;
+        }
+    }
+}
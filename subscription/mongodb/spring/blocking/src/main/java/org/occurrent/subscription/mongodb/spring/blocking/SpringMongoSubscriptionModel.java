@@ -24,6 +24,7 @@ import org.bson.BsonTimestamp;
 import org.bson.Document;
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
 import org.occurrent.retry.RetryStrategy;
+import org.occurrent.subscription.BatchConfig;
 import org.occurrent.subscription.PositionAwareCloudEvent;
 import org.occurrent.subscription.StartAt;
 import org.occurrent.subscription.SubscriptionFilter;
@@ -50,12 +51,16 @@ import org.springframework.data.mongodb.core.messaging.MessageListener;
 import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
 
 import javax.annotation.PreDestroy;
+import java.util.List;
 import java.util.Objects;
 import java.util.StringJoiner;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -84,8 +89,12 @@ public class SpringMongoSubscriptionModel implements PositionAwareSubscriptionMo
     private final MongoOperations mongoOperations;
     private final RetryStrategy retryStrategy;
     private final boolean restartSubscriptionsOnChangeStreamHistoryLost;
+    private final ReentrantLock lock = new ReentrantLock();
 
     private volatile boolean shutdown = false;
+    // Signals that the batches of all subscriptions whose BatchConfig#maxWait has elapsed are due (each subscription delivers them on its own thread),
+    // created when the first such subscription is made
+    private ScheduledExecutorService batchScheduler;
 
     /**
      * Create a blocking subscription using Spring. It will by default use a {@link RetryStrategy} for retries, with exponential backoff starting with 100 ms and progressively
@@ -132,45 +141,85 @@ public class SpringMongoSubscriptionModel implements PositionAwareSubscriptionMo
     }
 
     @Override
-    public synchronized Subscription subscribe(String subscriptionId, SubscriptionFilter filter, StartAt startAt, Consumer<CloudEvent> action) {
-        requireNonNull(subscriptionId, "subscriptionId cannot be null");
+    public Subscription subscribe(String subscriptionId, SubscriptionFilter filter, StartAt startAt, Consumer<CloudEvent> action) {
         requireNonNull(action, "Action cannot be null");
-        requireNonNull(startAt, "StartAt cannot be null");
+        return subscribe(subscriptionId, filter, startAt, executeWithRetry(action, __ -> !shutdown, retryStrategy), null);
+    }
+
+    /**
+     * Deliver the cloud events in batches. Since the {@link MessageListenerContainer} delivers the cloud events one by one, the cloud events are collected
+     * into a batch that is delivered when it contains {@link BatchConfig#maxSize} cloud events, or by a delivery thread of the subscription when {@link BatchConfig#maxWait} has elapsed
+     * (so that a batch that keeps failing doesn't prevent the batches of other subscriptions from being delivered).
+     * Cloud events that have been collected, but not yet delivered, are delivered when the subscription is paused and discarded when it's cancelled or when the
+     * subscription model is shutdown.
+     */
+    @Override
+    public Subscription subscribeBatch(String subscriptionId, SubscriptionFilter filter, StartAt startAt, BatchConfig batchConfig, Consumer<List<CloudEvent>> action) {
+        requireNonNull(batchConfig, BatchConfig.class.getSimpleName() + " cannot be null");
+        requireNonNull(action, "Action cannot be null");
+        lock.lock();
+        try {
+            BatchingCloudEventConsumer batchingConsumer = new BatchingCloudEventConsumer(subscriptionId, batchConfig, executeWithRetry(action, __ -> !shutdown, retryStrategy), batchScheduler());
+            return subscribe(subscriptionId, filter, startAt, batchingConsumer, batchingConsumer);
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        if (runningSubscriptions.containsKey(subscriptionId) || pausedSubscriptions.containsKey(subscriptionId)) {
-            throw new IllegalArgumentException("Subscription " + subscriptionId + " is already defined.");
+    private ScheduledExecutorService batchScheduler() {
+        if (batchScheduler == null) {
+            batchScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "occurrent-batch-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
         }
+        return batchScheduler;
+    }
 
-        // We wrap the creation of ChangeStreamRequestOptions in a supplier since since otherwise the "startAtSupplier"
-        // would be supplied only once, here, during initialization. When using a supplier here, the "startAtSupplier"
-        // is called again when pausing and resuming a subscription. Take the case when a subscription is started with "StartAt.now()".
-        // If we hadn't used a supplier and a subscription is paused and later resumed, it'll be resumed from the _initial_ "StartAt.now()" position,
-        // and not the position the "StartAt.now()" position of when the subscription was resumed. This will lead to historic events being
-        // replayed which is (most likely) not what the user expects.
-        Function<StartAt, ChangeStreamRequestOptions> requestOptionsFunction = overridingStartAt -> {
-            // TODO We should change builder::resumeAt to builder::startAtOperationTime once Spring adds support for it (see https://jira.spring.io/browse/DATAMONGO-2607)
-            ChangeStreamOptionsBuilder builder = MongoCommons.applyStartPosition(ChangeStreamOptions.builder(), ChangeStreamOptionsBuilder::startAfter, ChangeStreamOptionsBuilder::resumeAt, overridingStartAt == null ? startAt : overridingStartAt);
-            final ChangeStreamOptions changeStreamOptions = ApplyFilterToChangeStreamOptionsBuilder.applyFilter(timeRepresentation, filter, builder);
-            return new ChangeStreamRequestOptions(null, eventCollection, changeStreamOptions);
-        };
-
-        MessageListener<ChangeStreamDocument<Document>, Document> listener = change -> {
-            ChangeStreamDocument<Document> raw = change.getRaw();
-            BsonDocument resumeToken = requireNonNull(raw).getResumeToken();
-            MongoCloudEventsToJsonDeserializer.deserializeToCloudEvent(raw, timeRepresentation)
-                    .map(cloudEvent -> new PositionAwareCloudEvent(cloudEvent, new MongoResumeTokenSubscriptionPosition(resumeToken)))
-                    .ifPresent(executeWithRetry(action, __ -> !shutdown, retryStrategy));
-        };
-
-        Function<StartAt, ChangeStreamRequest<Document>> requestBuilder = sa -> new ChangeStreamRequest<>(listener, requestOptionsFunction.apply(sa));
-        final org.springframework.data.mongodb.core.messaging.Subscription subscription = registerNewSpringSubscription(subscriptionId, requestBuilder.apply(null));
-        SpringMongoSubscription springMongoSubscription = new SpringMongoSubscription(subscriptionId, subscription);
-        if (messageListenerContainer.isRunning()) {
-            runningSubscriptions.put(subscriptionId, new InternalSubscription(springMongoSubscription, requestBuilder));
-        } else {
-            pausedSubscriptions.put(subscriptionId, new InternalSubscription(springMongoSubscription, requestBuilder));
+    private Subscription subscribe(String subscriptionId, SubscriptionFilter filter, StartAt startAt, Consumer<CloudEvent> action, BatchingCloudEventConsumer batchingConsumer) {
+        lock.lock();
+        try {
+            requireNonNull(subscriptionId, "subscriptionId cannot be null");
+            requireNonNull(startAt, "StartAt cannot be null");
+
+            if (runningSubscriptions.containsKey(subscriptionId) || pausedSubscriptions.containsKey(subscriptionId)) {
+                throw new IllegalArgumentException("Subscription " + subscriptionId + " is already defined.");
+            }
+
+            // We wrap the creation of ChangeStreamRequestOptions in a supplier since since otherwise the "startAtSupplier"
+            // would be supplied only once, here, during initialization. When using a supplier here, the "startAtSupplier"
+            // is called again when pausing and resuming a subscription. Take the case when a subscription is started with "StartAt.now()".
+            // If we hadn't used a supplier and a subscription is paused and later resumed, it'll be resumed from the _initial_ "StartAt.now()" position,
+            // and not the position the "StartAt.now()" position of when the subscription was resumed. This will lead to historic events being
+            // replayed which is (most likely) not what the user expects.
+            Function<StartAt, ChangeStreamRequestOptions> requestOptionsFunction = overridingStartAt -> {
+                // TODO We should change builder::resumeAt to builder::startAtOperationTime once Spring adds support for it (see https://jira.spring.io/browse/DATAMONGO-2607)
+                ChangeStreamOptionsBuilder builder = MongoCommons.applyStartPosition(ChangeStreamOptions.builder(), ChangeStreamOptionsBuilder::startAfter, ChangeStreamOptionsBuilder::resumeAt, overridingStartAt == null ? startAt : overridingStartAt);
+                final ChangeStreamOptions changeStreamOptions = ApplyFilterToChangeStreamOptionsBuilder.applyFilter(timeRepresentation, filter, builder);
+                return new ChangeStreamRequestOptions(null, eventCollection, changeStreamOptions);
+            };
+
+            MessageListener<ChangeStreamDocument<Document>, Document> listener = change -> {
+                ChangeStreamDocument<Document> raw = change.getRaw();
+                BsonDocument resumeToken = requireNonNull(raw).getResumeToken();
+                MongoCloudEventsToJsonDeserializer.deserializeToCloudEvent(raw, timeRepresentation)
+                        .map(cloudEvent -> new PositionAwareCloudEvent(cloudEvent, new MongoResumeTokenSubscriptionPosition(resumeToken)))
+                        .ifPresent(action);
+            };
+
+            Function<StartAt, ChangeStreamRequest<Document>> requestBuilder = sa -> new ChangeStreamRequest<>(listener, requestOptionsFunction.apply(sa));
+            final org.springframework.data.mongodb.core.messaging.Subscription subscription = registerNewSpringSubscription(subscriptionId, requestBuilder.apply(null));
+            SpringMongoSubscription springMongoSubscription = new SpringMongoSubscription(subscriptionId, subscription);
+            if (messageListenerContainer.isRunning()) {
+                runningSubscriptions.put(subscriptionId, new InternalSubscription(springMongoSubscription, requestBuilder, batchingConsumer));
+            } else {
+                pausedSubscriptions.put(subscriptionId, new InternalSubscription(springMongoSubscription, requestBuilder, batchingConsumer));
+            }
+            return springMongoSubscription;
+        } finally {
+            lock.unlock();
         }
-        return springMongoSubscription;
     }
 
     @Override
@@ -178,18 +227,27 @@ public class SpringMongoSubscriptionModel implements PositionAwareSubscriptionMo
         InternalSubscription subscription = runningSubscriptions.remove(subscriptionId);
         if (subscription != null) {
             messageListenerContainer.remove(subscription.getSpringSubscription());
+            subscription.closeBatchingConsumer();
         }
     }
 
     @PreDestroy
     @Override
-    public synchronized void shutdown() {
-        shutdown = true;
-        runningSubscriptions.forEach((__, internalSubscription) -> internalSubscription.shutdown());
-        runningSubscriptions.clear();
-        pausedSubscriptions.forEach((__, internalSubscription) -> internalSubscription.shutdown());
-        pausedSubscriptions.clear();
-        stopMessageListenerContainer();
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            runningSubscriptions.forEach((__, internalSubscription) -> internalSubscription.shutdown());
+            runningSubscriptions.clear();
+            pausedSubscriptions.forEach((__, internalSubscription) -> internalSubscription.shutdown());
+            pausedSubscriptions.clear();
+            stopMessageListenerContainer();
+            if (batchScheduler != null) {
+                batchScheduler.shutdownNow();
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
@@ -215,30 +273,41 @@ public class SpringMongoSubscriptionModel implements PositionAwareSubscriptionMo
     // Life-cycle implementation
 
     @Override
-    public synchronized void pauseSubscription(String subscriptionId) {
-        InternalSubscription internalSubscription = runningSubscriptions.remove(subscriptionId);
-        if (internalSubscription == null) {
-            throw new IllegalArgumentException("Subscription " + subscriptionId + " isn't running.");
+    public void pauseSubscription(String subscriptionId) {
+        lock.lock();
+        try {
+            InternalSubscription internalSubscription = runningSubscriptions.remove(subscriptionId);
+            if (internalSubscription == null) {
+                throw new IllegalArgumentException("Subscription " + subscriptionId + " isn't running.");
+            }
+            messageListenerContainer.remove(internalSubscription.getSpringSubscription());
+            internalSubscription.flushBatchingConsumer();
+            pausedSubscriptions.put(subscriptionId, internalSubscription);
+        } finally {
+            lock.unlock();
         }
-        messageListenerContainer.remove(internalSubscription.getSpringSubscription());
-        pausedSubscriptions.put(subscriptionId, internalSubscription);
     }
 
     @Override
-    public synchronized Subscription resumeSubscription(String subscriptionId) {
-        InternalSubscription internalSubscription = pausedSubscriptions.remove(subscriptionId);
-        if (internalSubscription == null) {
-            throw new IllegalArgumentException("Subscription " + subscriptionId + " isn't paused.");
-        }
+    public Subscription resumeSubscription(String subscriptionId) {
+        lock.lock();
+        try {
+            InternalSubscription internalSubscription = pausedSubscriptions.remove(subscriptionId);
+            if (internalSubscription == null) {
+                throw new IllegalArgumentException("Subscription " + subscriptionId + " isn't paused.");
+            }
 
-        if (!messageListenerContainer.isRunning()) {
-            messageListenerContainer.start();
-        }
+            if (!messageListenerContainer.isRunning()) {
+                messageListenerContainer.start();
+            }
 
-        org.springframework.data.mongodb.core.messaging.Subscription newSubscription = registerNewSpringSubscription(subscriptionId, internalSubscription.newChangeStreamRequest());
-        InternalSubscription newInternalSubscription = internalSubscription.copy(newSubscription);
-        runningSubscriptions.put(subscriptionId, newInternalSubscription);
-        return new SpringMongoSubscription(subscriptionId, newSubscription);
+            org.springframework.data.mongodb.core.messaging.Subscription newSubscription = registerNewSpringSubscription(subscriptionId, internalSubscription.newChangeStreamRequest());
+            InternalSubscription newInternalSubscription = internalSubscription.copy(newSubscription);
+            runningSubscriptions.put(subscriptionId, newInternalSubscription);
+            return new SpringMongoSubscription(subscriptionId, newSubscription);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
@@ -254,18 +323,28 @@ public class SpringMongoSubscriptionModel implements PositionAwareSubscriptionMo
     // SmartLifecycle
 
     @Override
-    public synchronized void start() {
-        if (!shutdown) {
-            messageListenerContainer.start();
-            pausedSubscriptions.forEach((subscriptionId, __) -> resumeSubscription(subscriptionId).waitUntilStarted());
+    public void start() {
+        lock.lock();
+        try {
+            if (!shutdown) {
+                messageListenerContainer.start();
+                pausedSubscriptions.forEach((subscriptionId, __) -> resumeSubscription(subscriptionId).waitUntilStarted());
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
-    public synchronized void stop() {
-        if (!shutdown) {
-            runningSubscriptions.forEach((subscriptionId, __) -> pauseSubscription(subscriptionId));
-            stopMessageListenerContainer();
+    public void stop() {
+        lock.lock();
+        try {
+            if (!shutdown) {
+                runningSubscriptions.forEach((subscriptionId, __) -> pauseSubscription(subscriptionId));
+                stopMessageListenerContainer();
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -336,14 +415,17 @@ public class SpringMongoSubscriptionModel implements PositionAwareSubscriptionMo
     private static class InternalSubscription {
         private final SpringMongoSubscription occurrentSubscription;
         private final Function<StartAt, ChangeStreamRequest<Document>> changeStreamRequestBuilder;
+        // Only defined for subscriptions that deliver cloud events in batches
+        private final BatchingCloudEventConsumer batchingConsumer;
 
-        private InternalSubscription(SpringMongoSubscription subscription, Function<StartAt, ChangeStreamRequest<Document>> changeStreamRequestBuilder) {
+        private InternalSubscription(SpringMongoSubscription subscription, Function<StartAt, ChangeStreamRequest<Document>> changeStreamRequestBuilder, BatchingCloudEventConsumer batchingConsumer) {
             this.occurrentSubscription = subscription;
             this.changeStreamRequestBuilder = changeStreamRequestBuilder;
+            this.batchingConsumer = batchingConsumer;
         }
 
         InternalSubscription copy(org.springframework.data.mongodb.core.messaging.Subscription springSubscription) {
-            return new InternalSubscription(new SpringMongoSubscription(occurrentSubscription.id(), springSubscription), changeStreamRequestBuilder);
+            return new InternalSubscription(new SpringMongoSubscription(occurrentSubscription.id(), springSubscription), changeStreamRequestBuilder, batchingConsumer);
         }
 
         ChangeStreamRequest<Document> newChangeStreamRequest() {
@@ -359,7 +441,7 @@ public class SpringMongoSubscriptionModel implements PositionAwareSubscriptionMo
             if (this == o) return true;
             if (!(o instanceof InternalSubscription)) return false;
             InternalSubscription that = (InternalSubscription) o;
-            return Objects.equals(occurrentSubscription, that.occurrentSubscription) && Objects.equals(changeStreamRequestBuilder, that.changeStreamRequestBuilder);
+            return Objects.equals(occurrentSubscription, that.occurrentSubscription) && Objects.equals(changeStreamRequestBuilder, that.changeStreamRequestBuilder) && Objects.equals(batchingConsumer, that.batchingConsumer);
         }
 
         org.springframework.data.mongodb.core.messaging.Subscription getSpringSubscription() {
@@ -368,11 +450,24 @@ public class SpringMongoSubscriptionModel implements PositionAwareSubscriptionMo
 
         void shutdown() {
             occurrentSubscription.shutdown();
+            closeBatchingConsumer();
+        }
+
+        void flushBatchingConsumer() {
+            if (batchingConsumer != null) {
+                batchingConsumer.flush();
+            }
+        }
+
+        void closeBatchingConsumer() {
+            if (batchingConsumer != null) {
+                batchingConsumer.close();
+            }
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(occurrentSubscription, changeStreamRequestBuilder);
+            return Objects.hash(occurrentSubscription, changeStreamRequestBuilder, batchingConsumer);
         }
 
         @Override
@@ -380,6 +475,7 @@ public class SpringMongoSubscriptionModel implements PositionAwareSubscriptionMo
             return new StringJoiner(", ", InternalSubscription.class.getSimpleName() + "[", "]")
                     .add("occurrentSubscription=" + occurrentSubscription)
                     .add("changeStreamRequestBuilder=" + changeStreamRequestBuilder)
+                    .add("batchingConsumer=" + batchingConsumer)
                     .toString();
         }
     }
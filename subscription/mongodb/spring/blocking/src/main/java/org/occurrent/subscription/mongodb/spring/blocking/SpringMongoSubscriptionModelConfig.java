@@ -2,6 +2,7 @@ package org.occurrent.subscription.mongodb.spring.blocking;
 
 import org.occurrent.mongodb.timerepresentation.TimeRepresentation;
 import org.occurrent.retry.RetryStrategy;
+import org.occurrent.subscription.SubscriptionExecutors;
 import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
@@ -95,11 +96,24 @@ public class SpringMongoSubscriptionModelConfig {
      * @param executor The executor to use
      * @return A new instance of {@code SpringSubscriptionModelConfig}
      * @see ThreadPoolTaskExecutor
+     * @see #useVirtualThreads()
      */
     public SpringMongoSubscriptionModelConfig executor(Executor executor) {
         return new SpringMongoSubscriptionModelConfig(eventCollection, timeRepresentation, retryStrategy, restartSubscriptionsOnChangeStreamHistoryLost, executor);
     }
 
+    /**
+     * Run each subscription on a virtual thread instead of on a thread from a thread pool. This requires Java 21 or later and is the same as
+     * {@code executor(SubscriptionExecutors.newVirtualThreadPerTaskExecutor())}. Since virtual threads are not pooled, there's no need to shutdown the executor.
+     *
+     * @return A new instance of {@code SpringSubscriptionModelConfig}
+     * @throws UnsupportedOperationException If virtual threads are not supported by the JVM
+     * @see SubscriptionExecutors#newVirtualThreadPerTaskExecutor()
+     */
+    public SpringMongoSubscriptionModelConfig useVirtualThreads() {
+        return executor(SubscriptionExecutors.newVirtualThreadPerTaskExecutor());
+    }
+
     private static Executor defaultExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setQueueCapacity(0);
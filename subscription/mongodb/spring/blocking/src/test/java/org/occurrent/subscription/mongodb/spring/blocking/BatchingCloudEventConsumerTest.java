@@ -0,0 +1,172 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.subscription.mongodb.spring.blocking;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.occurrent.retry.RetryStrategy;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.occurrent.retry.internal.RetryExecution.executeWithRetry;
+import static org.occurrent.subscription.BatchConfig.batchConfig;
+
+@DisplayName("batching cloud event consumer")
+class BatchingCloudEventConsumerTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void shutdown_scheduler() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void batch_is_delivered_when_it_is_full() {
+        // Given
+        BatchingCloudEventConsumer consumer = new BatchingCloudEventConsumer("subscription", batchConfig(2, Duration.ofHours(1)), this::record, scheduler);
+
+        // When
+        consumer.accept(cloudEvent("1"));
+        consumer.accept(cloudEvent("2"));
+        consumer.accept(cloudEvent("3"));
+
+        // Then
+        assertThat(batches).containsExactly(asList("1", "2"));
+    }
+
+    @Test
+    void batch_is_delivered_by_the_scheduler_when_max_wait_has_elapsed() {
+        // Given
+        BatchingCloudEventConsumer consumer = new BatchingCloudEventConsumer("subscription", batchConfig(10, Duration.ofMillis(50)), this::record, scheduler);
+
+        // When
+        consumer.accept(cloudEvent("1"));
+        consumer.accept(cloudEvent("2"));
+
+        // Then
+        await().atMost(2, SECONDS).untilAsserted(() -> assertThat(batches).containsExactly(asList("1", "2")));
+    }
+
+    @Test
+    void batch_that_fails_when_delivered_by_the_scheduler_is_delivered_again_with_the_next_cloud_event() {
+        // Given
+        AtomicBoolean fail = new AtomicBoolean(true);
+        List<Integer> attempts = new CopyOnWriteArrayList<>();
+        BatchingCloudEventConsumer consumer = new BatchingCloudEventConsumer("subscription", batchConfig(10, Duration.ofMillis(50)), cloudEvents -> {
+            attempts.add(cloudEvents.size());
+            if (fail.get()) {
+                throw new IllegalStateException("expected");
+            }
+            record(cloudEvents);
+        }, scheduler);
+        consumer.accept(cloudEvent("1"));
+        await().atMost(2, SECONDS).untilAsserted(() -> assertThat(attempts).hasSize(1));
+        fail.set(false);
+
+        // When
+        consumer.accept(cloudEvent("2"));
+
+        // Then
+        assertThat(batches).containsExactly(asList("1", "2"));
+    }
+
+    @Test
+    void failure_of_batch_that_is_delivered_with_the_next_cloud_event_is_propagated_to_the_caller() {
+        // Given
+        List<Integer> attempts = new CopyOnWriteArrayList<>();
+        BatchingCloudEventConsumer consumer = new BatchingCloudEventConsumer("subscription", batchConfig(10, Duration.ofMillis(50)), cloudEvents -> {
+            attempts.add(cloudEvents.size());
+            throw new IllegalStateException("expected");
+        }, scheduler);
+        consumer.accept(cloudEvent("1"));
+        await().atMost(2, SECONDS).untilAsserted(() -> assertThat(attempts).hasSize(1));
+
+        // When
+        Throwable throwable = catchThrowable(() -> consumer.accept(cloudEvent("2")));
+
+        // Then
+        assertAll(
+                () -> assertThat(throwable).isExactlyInstanceOf(IllegalStateException.class).hasMessage("expected"),
+                () -> assertThat(attempts).containsExactly(1, 2)
+        );
+    }
+
+    @Test
+    void batch_that_keeps_failing_does_not_prevent_batches_of_other_subscriptions_from_being_delivered_when_max_wait_has_elapsed() {
+        // Given
+        List<Integer> attempts = new CopyOnWriteArrayList<>();
+        Consumer<List<CloudEvent>> alwaysFailing = executeWithRetry(cloudEvents -> {
+            attempts.add(cloudEvents.size());
+            throw new IllegalStateException("expected");
+        }, __ -> true, RetryStrategy.fixed(10));
+        BatchingCloudEventConsumer failingConsumer = new BatchingCloudEventConsumer("failing", batchConfig(10, Duration.ofMillis(50)), alwaysFailing, scheduler);
+        BatchingCloudEventConsumer consumer = new BatchingCloudEventConsumer("subscription", batchConfig(10, Duration.ofMillis(100)), this::record, scheduler);
+        failingConsumer.accept(cloudEvent("1"));
+        await().atMost(2, SECONDS).untilAsserted(() -> assertThat(attempts).hasSizeGreaterThan(1));
+
+        // When
+        consumer.accept(cloudEvent("2"));
+
+        // Then
+        try {
+            await().atMost(2, SECONDS).untilAsserted(() -> assertThat(batches).containsExactly(asList("2")));
+        } finally {
+            failingConsumer.close();
+        }
+    }
+
+    @Test
+    void cloud_events_that_have_not_been_delivered_are_delivered_on_flush() {
+        // Given
+        BatchingCloudEventConsumer consumer = new BatchingCloudEventConsumer("subscription", batchConfig(10, Duration.ofHours(1)), this::record, scheduler);
+        consumer.accept(cloudEvent("1"));
+
+        // When
+        consumer.flush();
+
+        // Then
+        assertThat(batches).containsExactly(asList("1"));
+    }
+
+    private void record(List<CloudEvent> cloudEvents) {
+        batches.add(cloudEvents.stream().map(CloudEvent::getId).collect(Collectors.toList()));
+    }
+
+    private static CloudEvent cloudEvent(String id) {
+        return CloudEventBuilder.v1().withId(id).withSource(URI.create("urn:test")).withType("type").build();
+    }
+}
@@ -64,6 +64,7 @@ import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static com.mongodb.client.model.Aggregates.match;
@@ -71,6 +72,8 @@ import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
 import static java.time.ZoneOffset.UTC;
 import static java.time.temporal.ChronoUnit.MILLIS;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -85,6 +88,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 import static org.occurrent.filter.Filter.all;
 import static org.occurrent.filter.Filter.id;
+import static org.occurrent.subscription.BatchConfig.batchConfig;
 import static org.occurrent.subscription.mongodb.MongoFilterSpecification.MongoBsonFilterSpecification.filter;
 import static org.occurrent.subscription.mongodb.spring.blocking.SpringMongoSubscriptionModelConfig.withConfig;
 
@@ -288,6 +292,74 @@ public class SpringMongoSubscriptionModelTest {
         await().atMost(2, SECONDS).with().pollInterval(Duration.of(20, MILLIS)).untilAsserted(() -> assertThat(state).hasSize(3));
     }
 
+    @Nested
+    @DisplayName("Batch")
+    class BatchTest {
+
+        @Test
+        void blocking_spring_subscription_delivers_full_batches_and_the_remaining_cloud_events_when_max_wait_has_elapsed() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            CopyOnWriteArrayList<List<CloudEvent>> batches = new CopyOnWriteArrayList<>();
+            subscriptionModel.subscribeBatch(UUID.randomUUID().toString(), null, StartAt.subscriptionModelDefault(), batchConfig(2, Duration.ofMillis(200)), batches::add)
+                    .waitUntilStarted(Duration.of(10, ChronoUnit.SECONDS));
+            NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+            NameDefined nameDefined2 = new NameDefined(UUID.randomUUID().toString(), now.plusSeconds(2), "name2");
+            NameWasChanged nameWasChanged1 = new NameWasChanged(UUID.randomUUID().toString(), now.plusSeconds(10), "name3");
+
+            // When
+            mongoEventStore.write("1", 0, serialize(nameDefined1));
+            mongoEventStore.write("2", 0, serialize(nameDefined2));
+            mongoEventStore.write("1", 1, serialize(nameWasChanged1));
+
+            // Then
+            await().atMost(2, SECONDS).untilAsserted(() ->
+                    assertThat(batches).extracting(batch -> batch.stream().map(CloudEvent::getId).collect(Collectors.toList())).containsExactly(
+                            asList(nameDefined1.getEventId(), nameDefined2.getEventId()),
+                            singletonList(nameWasChanged1.getEventId())));
+        }
+
+        @Test
+        void blocking_spring_subscription_retries_batch_that_fails_when_max_wait_has_elapsed() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            CopyOnWriteArrayList<CloudEvent> state = new CopyOnWriteArrayList<>();
+            AtomicInteger counter = new AtomicInteger();
+            subscriptionModel.subscribeBatch(UUID.randomUUID().toString(), null, StartAt.subscriptionModelDefault(), batchConfig(10, Duration.ofMillis(100)), cloudEvents -> {
+                if (counter.getAndIncrement() <= 1) {
+                    throw new IllegalStateException("expected");
+                }
+                state.addAll(cloudEvents);
+            }).waitUntilStarted(Duration.of(10, ChronoUnit.SECONDS));
+            NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), now, "name1");
+
+            // When
+            mongoEventStore.write("1", 0, serialize(nameDefined1));
+
+            // Then
+            await().atMost(2, SECONDS).untilAsserted(() -> assertThat(state).extracting(CloudEvent::getId).containsExactly(nameDefined1.getEventId()));
+        }
+
+        @Test
+        void blocking_spring_subscription_delivers_collected_cloud_events_when_subscription_is_paused() {
+            // Given
+            String subscriptionId = UUID.randomUUID().toString();
+            CopyOnWriteArrayList<List<CloudEvent>> batches = new CopyOnWriteArrayList<>();
+            subscriptionModel.subscribeBatch(subscriptionId, null, StartAt.subscriptionModelDefault(), batchConfig(10, Duration.ofHours(1)), batches::add)
+                    .waitUntilStarted(Duration.of(10, ChronoUnit.SECONDS));
+            NameDefined nameDefined1 = new NameDefined(UUID.randomUUID().toString(), LocalDateTime.now(), "name1");
+            mongoEventStore.write("1", 0, serialize(nameDefined1));
+            sleep(500);
+
+            // When
+            subscriptionModel.pauseSubscription(subscriptionId);
+
+            // Then
+            assertThat(batches).hasSize(1);
+            assertThat(batches.get(0)).extracting(CloudEvent::getId).containsExactly(nameDefined1.getEventId());
+        }
+    }
+
     @Nested
     @DisplayName("Lifecycle")
     class LifeCycleTest {
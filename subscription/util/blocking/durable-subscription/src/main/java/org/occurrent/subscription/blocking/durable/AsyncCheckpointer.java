@@ -0,0 +1,171 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.subscription.blocking.durable;
+
+import org.occurrent.subscription.SubscriptionPosition;
+import org.occurrent.subscription.api.blocking.SubscriptionPositionStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Records the position of the latest processed cloud event, per subscription, in memory and stores it in the {@link SubscriptionPositionStorage}
+ * from a background thread. Positions are stored periodically, when explicitly requested and when flushed (e.g. on stop/shutdown).
+ * Positions that are recorded between two writes are coalesced so that only the latest one is stored.
+ */
+class AsyncCheckpointer {
+    private static final Logger log = LoggerFactory.getLogger(AsyncCheckpointer.class);
+
+    private final SubscriptionPositionStorage storage;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, SubscriptionPosition> pendingPositions = new ConcurrentHashMap<>();
+    private final Set<String> requestedCheckpoints = ConcurrentHashMap.newKeySet();
+    // Subscriptions that have been discarded (cancelled), positions that are recorded for these subscriptions after they have been discarded are ignored
+    private final Set<String> discardedSubscriptions = ConcurrentHashMap.newKeySet();
+    // Makes sure that a position is not stored after the subscription has been discarded
+    private final ReentrantLock lock = new ReentrantLock();
+
+    AsyncCheckpointer(SubscriptionPositionStorage storage, Duration checkpointInterval) {
+        this.storage = storage;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "occurrent-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = checkpointInterval.toNanos();
+        scheduler.scheduleWithFixedDelay(this::checkpointAll, intervalNanos, intervalNanos, NANOSECONDS);
+    }
+
+    /**
+     * Record the position of the latest processed cloud event for the subscription.
+     *
+     * @param checkpointNow {@code true} if the position should be stored as soon as possible instead of waiting for the next periodic checkpoint
+     */
+    void record(String subscriptionId, SubscriptionPosition subscriptionPosition, boolean checkpointNow) {
+        pendingPositions.put(subscriptionId, subscriptionPosition);
+        if (discardedSubscriptions.contains(subscriptionId)) {
+            // The subscription was discarded while the cloud event was processed
+            pendingPositions.remove(subscriptionId, subscriptionPosition);
+            return;
+        }
+        if (checkpointNow && requestedCheckpoints.add(subscriptionId)) {
+            try {
+                scheduler.execute(() -> {
+                    requestedCheckpoints.remove(subscriptionId);
+                    checkpointAndLogFailure(subscriptionId);
+                });
+            } catch (RejectedExecutionException e) {
+                // The checkpointer is shutdown, the position is stored by the final flush
+                requestedCheckpoints.remove(subscriptionId);
+            }
+        }
+    }
+
+    /**
+     * Store the pending position of the subscription, if any, in the calling thread.
+     */
+    void flush(String subscriptionId) {
+        lock.lock();
+        try {
+            SubscriptionPosition subscriptionPosition = pendingPositions.remove(subscriptionId);
+            if (subscriptionPosition != null && !discardedSubscriptions.contains(subscriptionId)) {
+                try {
+                    storage.save(subscriptionId, subscriptionPosition);
+                } catch (RuntimeException e) {
+                    // Retry on next checkpoint unless a newer position has been recorded in the mean time
+                    pendingPositions.putIfAbsent(subscriptionId, subscriptionPosition);
+                    throw e;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Store the pending positions of all subscriptions in the calling thread.
+     */
+    void flushAll() {
+        lock.lock();
+        try {
+            new ArrayList<>(pendingPositions.keySet()).forEach(this::flush);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Discard the pending position of the subscription, e.g. when the subscription is cancelled. A checkpoint that is in progress is completed before this method returns.
+     * Positions that are recorded for the subscription after this method has been called are ignored until {@link #restore(String)} is called.
+     */
+    void discard(String subscriptionId) {
+        lock.lock();
+        try {
+            discardedSubscriptions.add(subscriptionId);
+            pendingPositions.remove(subscriptionId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Start recording positions for a subscription that has been discarded, e.g. when a subscription with the same id is started again after it was cancelled.
+     */
+    void restore(String subscriptionId) {
+        discardedSubscriptions.remove(subscriptionId);
+    }
+
+    /**
+     * Store the pending positions of all subscriptions and stop the background thread.
+     */
+    void shutdown() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushAll();
+    }
+
+    private void checkpointAll() {
+        new ArrayList<>(pendingPositions.keySet()).forEach(this::checkpointAndLogFailure);
+    }
+
+    private void checkpointAndLogFailure(String subscriptionId) {
+        try {
+            flush(subscriptionId);
+        } catch (Exception e) {
+            log.warn("Failed to store subscription position for subscription {}, will retry on next checkpoint.", subscriptionId, e);
+        }
+    }
+}
@@ -17,12 +17,14 @@
 package org.occurrent.subscription.blocking.durable;
 
 import io.cloudevents.CloudEvent;
+import org.occurrent.subscription.BatchConfig;
 import org.occurrent.subscription.StartAt;
 import org.occurrent.subscription.SubscriptionFilter;
 import org.occurrent.subscription.SubscriptionPosition;
 import org.occurrent.subscription.api.blocking.*;
 
 import javax.annotation.PreDestroy;
+import java.util.List;
 import java.util.Objects;
 import java.util.function.Consumer;
 
@@ -38,13 +40,16 @@ import static org.occurrent.subscription.util.predicate.EveryN.everyEvent;
  *
  * <p>
  * Note that this implementation stores the subscription position after _every_ action. If you have a lot of events and duplication is not
- * that much of a deal, consider changing this behavior by supplying an instance of {@link DurableSubscriptionModelConfig}.
+ * that much of a deal, consider changing this behavior by supplying an instance of {@link DurableSubscriptionModelConfig}. Use
+ * {@link DurableSubscriptionModelConfig#checkpointInterval(java.time.Duration)} to store the position asynchronously instead.
  */
 public class DurableSubscriptionModel implements PositionAwareSubscriptionModel, DelegatingSubscriptionModel {
 
     private final PositionAwareSubscriptionModel subscriptionModel;
     private final SubscriptionPositionStorage storage;
     private final DurableSubscriptionModelConfig config;
+    // Only defined when subscription positions are stored asynchronously
+    private final AsyncCheckpointer checkpointer;
 
     /**
      * Create a subscription that combines a {@link PositionAwareSubscriptionModel} with a {@link SubscriptionPositionStorage} to automatically
@@ -73,10 +78,56 @@ public class DurableSubscriptionModel implements PositionAwareSubscriptionModel,
         this.storage = storage;
         this.subscriptionModel = subscriptionModel;
         this.config = config;
+        this.checkpointer = config.checkpointInterval == null ? null : new AsyncCheckpointer(storage, config.checkpointInterval);
     }
 
     @Override
     public Subscription subscribe(String subscriptionId, SubscriptionFilter filter, StartAt startAt, Consumer<CloudEvent> action) {
+        restoreCheckpointing(subscriptionId);
+        return subscriptionModel.subscribe(subscriptionId, filter, startAtToUse(subscriptionId, startAt), cloudEvent -> {
+                    action.accept(cloudEvent);
+                    persistPosition(subscriptionId, cloudEvent, config.persistCloudEventPositionPredicate.test(cloudEvent));
+                }
+        );
+    }
+
+    /**
+     * Subscribe to batches of cloud events from the wrapped {@link PositionAwareSubscriptionModel}. The position of the <i>last</i> cloud event in the batch is persisted
+     * after the batch has been successfully processed by the <code>action</code>, if {@link DurableSubscriptionModelConfig#persistCloudEventPositionPredicate}
+     * is fulfilled for any of the cloud events in the batch.
+     */
+    @Override
+    public Subscription subscribeBatch(String subscriptionId, SubscriptionFilter filter, StartAt startAt, BatchConfig batchConfig, Consumer<List<CloudEvent>> action) {
+        restoreCheckpointing(subscriptionId);
+        return subscriptionModel.subscribeBatch(subscriptionId, filter, startAtToUse(subscriptionId, startAt), batchConfig, cloudEvents -> {
+                    action.accept(cloudEvents);
+                    // Evaluate the predicate for every cloud event since it may be stateful (such as EveryN)
+                    boolean persistPosition = false;
+                    for (CloudEvent cloudEvent : cloudEvents) {
+                        persistPosition |= config.persistCloudEventPositionPredicate.test(cloudEvent);
+                    }
+                    persistPosition(subscriptionId, cloudEvents.get(cloudEvents.size() - 1), persistPosition);
+                }
+        );
+    }
+
+    // A subscription with the same id may have been cancelled before
+    private void restoreCheckpointing(String subscriptionId) {
+        if (checkpointer != null) {
+            checkpointer.restore(subscriptionId);
+        }
+    }
+
+    private void persistPosition(String subscriptionId, CloudEvent lastProcessedCloudEvent, boolean predicateFulfilled) {
+        if (checkpointer != null) {
+            checkpointer.record(subscriptionId, getSubscriptionPositionOrThrowIAE(lastProcessedCloudEvent), predicateFulfilled);
+        } else if (predicateFulfilled) {
+            SubscriptionPosition subscriptionPosition = getSubscriptionPositionOrThrowIAE(lastProcessedCloudEvent);
+            storage.save(subscriptionId, subscriptionPosition);
+        }
+    }
+
+    private StartAt startAtToUse(String subscriptionId, StartAt startAt) {
         Objects.requireNonNull(startAt, StartAt.class.getSimpleName() + " supplier cannot be null");
 
         final StartAt startAtToUse;
@@ -96,20 +147,15 @@ public class DurableSubscriptionModel implements PositionAwareSubscriptionModel,
         } else {
             startAtToUse = startAt;
         }
-
-        return subscriptionModel.subscribe(subscriptionId, filter, startAtToUse, cloudEvent -> {
-                    action.accept(cloudEvent);
-                    if (config.persistCloudEventPositionPredicate.test(cloudEvent)) {
-                        SubscriptionPosition subscriptionPosition = getSubscriptionPositionOrThrowIAE(cloudEvent);
-                        storage.save(subscriptionId, subscriptionPosition);
-                    }
-                }
-        );
+        return startAtToUse;
     }
 
     @Override
     public void stop() {
         getDelegatedSubscriptionModel().stop();
+        if (checkpointer != null) {
+            checkpointer.flushAll();
+        }
     }
 
     @Override
@@ -137,9 +183,18 @@ public class DurableSubscriptionModel implements PositionAwareSubscriptionModel,
         return getDelegatedSubscriptionModel().resumeSubscription(subscriptionId);
     }
 
+    /**
+     * Pause a subscription. If a checkpoint interval is configured, the position of the last processed cloud event is stored in the
+     * {@link SubscriptionPositionStorage} by the calling thread before this method returns.
+     *
+     * @param subscriptionId The subscription id to pause
+     */
     @Override
     public void pauseSubscription(String subscriptionId) {
         getDelegatedSubscriptionModel().pauseSubscription(subscriptionId);
+        if (checkpointer != null) {
+            checkpointer.flush(subscriptionId);
+        }
     }
 
     /**
@@ -151,6 +206,9 @@ public class DurableSubscriptionModel implements PositionAwareSubscriptionModel,
     @Override
     public void cancelSubscription(String subscriptionId) {
         subscriptionModel.cancelSubscription(subscriptionId);
+        if (checkpointer != null) {
+            checkpointer.discard(subscriptionId);
+        }
         storage.delete(subscriptionId);
     }
 
@@ -158,6 +216,9 @@ public class DurableSubscriptionModel implements PositionAwareSubscriptionModel,
     @PreDestroy
     public void shutdown() {
         subscriptionModel.shutdown();
+        if (checkpointer != null) {
+            checkpointer.shutdown();
+        }
     }
 
     @Override
@@ -19,6 +19,7 @@ package org.occurrent.subscription.blocking.durable;
 import io.cloudevents.CloudEvent;
 import org.occurrent.subscription.util.predicate.EveryN;
 
+import java.time.Duration;
 import java.util.Objects;
 import java.util.StringJoiner;
 import java.util.function.Predicate;
@@ -29,14 +30,14 @@ import java.util.function.Predicate;
 public class DurableSubscriptionModelConfig {
 
     public final Predicate<CloudEvent> persistCloudEventPositionPredicate;
+    public final Duration checkpointInterval;
 
     /**
      * @param persistCloudEventPositionPredicate A predicate that evaluates to <code>true</code> if the cloud event position should be persisted. See {@link EveryN}.
      *                                           Supply a predicate that always returns {@code false} to never store the position.
      */
     public DurableSubscriptionModelConfig(Predicate<CloudEvent> persistCloudEventPositionPredicate) {
-        Objects.requireNonNull(persistCloudEventPositionPredicate, "persistCloudEventPositionPredicate cannot be null");
-        this.persistCloudEventPositionPredicate = persistCloudEventPositionPredicate;
+        this(persistCloudEventPositionPredicate, null);
     }
 
     /**
@@ -46,23 +47,51 @@ public class DurableSubscriptionModelConfig {
         this(new EveryN(persistPositionForEveryNCloudEvent));
     }
 
+    private DurableSubscriptionModelConfig(Predicate<CloudEvent> persistCloudEventPositionPredicate, Duration checkpointInterval) {
+        Objects.requireNonNull(persistCloudEventPositionPredicate, "persistCloudEventPositionPredicate cannot be null");
+        if (checkpointInterval != null && (checkpointInterval.isNegative() || checkpointInterval.isZero())) {
+            throw new IllegalArgumentException("checkpointInterval must be greater than zero");
+        }
+        this.persistCloudEventPositionPredicate = persistCloudEventPositionPredicate;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Store the subscription position asynchronously instead of in the thread that processes the cloud events. The position of the latest processed cloud event is
+     * recorded in memory and it's stored by a background thread every {@code checkpointInterval}, as well as when the {@link #persistCloudEventPositionPredicate} is fulfilled
+     * and when a subscription is paused or the subscription model is stopped or shutdown. This moves the round-trip to the {@code SubscriptionPositionStorage} away from the
+     * processing of cloud events, while making sure that at most {@code checkpointInterval} worth of cloud events are replayed after a crash (as long as the storage is available).
+     * Since only the latest position is stored, several positions that are recorded between two checkpoints are coalesced into a single write.
+     * <p>
+     * By default, the subscription position is stored synchronously after each cloud event that fulfills the {@link #persistCloudEventPositionPredicate}.
+     * </p>
+     *
+     * @param checkpointInterval How often to store the subscription position of the latest processed cloud event, must be greater than zero.
+     * @return A new instance of {@link DurableSubscriptionModelConfig}
+     */
+    public DurableSubscriptionModelConfig checkpointInterval(Duration checkpointInterval) {
+        Objects.requireNonNull(checkpointInterval, "checkpointInterval cannot be null");
+        return new DurableSubscriptionModelConfig(persistCloudEventPositionPredicate, checkpointInterval);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof DurableSubscriptionModelConfig)) return false;
         DurableSubscriptionModelConfig that = (DurableSubscriptionModelConfig) o;
-        return Objects.equals(persistCloudEventPositionPredicate, that.persistCloudEventPositionPredicate);
+        return Objects.equals(persistCloudEventPositionPredicate, that.persistCloudEventPositionPredicate) && Objects.equals(checkpointInterval, that.checkpointInterval);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(persistCloudEventPositionPredicate);
+        return Objects.hash(persistCloudEventPositionPredicate, checkpointInterval);
     }
 
     @Override
     public String toString() {
         return new StringJoiner(", ", DurableSubscriptionModelConfig.class.getSimpleName() + "[", "]")
                 .add("persistCloudEventPositionPredicate=" + persistCloudEventPositionPredicate)
+                .add("checkpointInterval=" + checkpointInterval)
                 .toString();
     }
 }
\ No newline at end of file
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.subscription.blocking.durable;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.occurrent.subscription.StringBasedSubscriptionPosition;
+import org.occurrent.subscription.SubscriptionPosition;
+
+import java.time.Duration;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+@DisplayName("async checkpointer")
+class AsyncCheckpointerTest {
+
+    private final InMemorySubscriptionPositionStorage storage = new InMemorySubscriptionPositionStorage();
+    private AsyncCheckpointer checkpointer;
+
+    @AfterEach
+    void shutdown_checkpointer() {
+        if (checkpointer != null) {
+            checkpointer.shutdown();
+        }
+    }
+
+    @Test
+    void latest_recorded_position_is_stored_on_next_checkpoint() {
+        // Given
+        checkpointer = new AsyncCheckpointer(storage, Duration.ofMillis(100));
+
+        // When
+        checkpointer.record("subscription", position("1"), false);
+        checkpointer.record("subscription", position("2"), false);
+
+        // Then
+        await().atMost(2, SECONDS).untilAsserted(() -> assertThat(storage.positions).containsEntry("subscription", position("2")));
+        assertThat(storage.saves).containsExactly(position("2"));
+    }
+
+    @Test
+    void position_is_stored_without_waiting_for_the_checkpoint_interval_when_requested() {
+        // Given
+        checkpointer = new AsyncCheckpointer(storage, Duration.ofHours(1));
+
+        // When
+        checkpointer.record("subscription", position("1"), true);
+
+        // Then
+        await().atMost(2, SECONDS).untilAsserted(() -> assertThat(storage.positions).containsEntry("subscription", position("1")));
+    }
+
+    @Test
+    void pending_positions_are_stored_on_flush_and_shutdown() {
+        // Given
+        checkpointer = new AsyncCheckpointer(storage, Duration.ofHours(1));
+        checkpointer.record("subscription1", position("1"), false);
+        checkpointer.record("subscription2", position("2"), false);
+
+        // When
+        checkpointer.flush("subscription1");
+        SubscriptionPosition afterFlush = storage.positions.get("subscription2");
+        checkpointer.shutdown();
+
+        // Then
+        assertAll(
+                () -> assertThat(afterFlush).isNull(),
+                () -> assertThat(storage.positions).containsEntry("subscription1", position("1")).containsEntry("subscription2", position("2"))
+        );
+    }
+
+    @Test
+    void discarded_positions_are_not_stored() {
+        // Given
+        checkpointer = new AsyncCheckpointer(storage, Duration.ofHours(1));
+        checkpointer.record("subscription", position("1"), false);
+
+        // When
+        checkpointer.discard("subscription");
+        checkpointer.flushAll();
+
+        // Then
+        assertThat(storage.positions).isEmpty();
+    }
+
+    @Test
+    void positions_recorded_after_discard_are_not_stored_until_restored() {
+        // Given
+        checkpointer = new AsyncCheckpointer(storage, Duration.ofHours(1));
+        checkpointer.discard("subscription");
+
+        // When
+        checkpointer.record("subscription", position("1"), true);
+        checkpointer.flushAll();
+        checkpointer.restore("subscription");
+        checkpointer.record("subscription", position("2"), false);
+        checkpointer.flushAll();
+
+        // Then
+        assertThat(storage.saves).containsExactly(position("2"));
+    }
+
+    @Test
+    void position_is_retried_on_next_flush_when_storage_fails() {
+        // Given
+        checkpointer = new AsyncCheckpointer(storage, Duration.ofHours(1));
+        checkpointer.record("subscription", position("1"), false);
+        storage.fail.set(true);
+        Throwable throwable = catchThrowable(() -> checkpointer.flush("subscription"));
+        storage.fail.set(false);
+
+        // When
+        checkpointer.flush("subscription");
+
+        // Then
+        assertAll(
+                () -> assertThat(throwable).isExactlyInstanceOf(IllegalStateException.class),
+                () -> assertThat(storage.positions).containsEntry("subscription", position("1"))
+        );
+    }
+
+    @Test
+    void checkpoint_interval_must_be_greater_than_zero() {
+        // When
+        Throwable throwable = catchThrowable(() -> new DurableSubscriptionModelConfig(1).checkpointInterval(Duration.ZERO));
+
+        // Then
+        assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class).hasMessage("checkpointInterval must be greater than zero");
+    }
+
+    private static SubscriptionPosition position(String value) {
+        return new StringBasedSubscriptionPosition(value);
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.subscription.blocking.durable;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.occurrent.subscription.*;
+import org.occurrent.subscription.api.blocking.PositionAwareSubscriptionModel;
+import org.occurrent.subscription.api.blocking.Subscription;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.occurrent.subscription.BatchConfig.batchConfig;
+
+@DisplayName("durable subscription model")
+class DurableSubscriptionModelTest {
+
+    private final InMemorySubscriptionPositionStorage storage = new InMemorySubscriptionPositionStorage();
+    private final StubSubscriptionModel wrappedSubscriptionModel = new StubSubscriptionModel();
+    private DurableSubscriptionModel subscriptionModel;
+
+    @AfterEach
+    void shutdown_subscription_model() {
+        if (subscriptionModel != null) {
+            subscriptionModel.shutdown();
+        }
+    }
+
+    @Nested
+    @DisplayName("subscribeBatch")
+    class SubscribeBatch {
+
+        @Test
+        void position_of_the_last_cloud_event_in_the_batch_is_persisted_after_the_batch_has_been_processed() {
+            // Given
+            subscriptionModel = new DurableSubscriptionModel(wrappedSubscriptionModel, storage);
+            List<List<CloudEvent>> batches = new CopyOnWriteArrayList<>();
+            subscriptionModel.subscribeBatch("subscription", null, StartAt.now(), batchConfig(10, Duration.ofSeconds(1)), batches::add);
+
+            // When
+            wrappedSubscriptionModel.deliverBatch("subscription", cloudEvent("1"), cloudEvent("2"), cloudEvent("3"));
+
+            // Then
+            assertAll(
+                    () -> assertThat(batches).hasSize(1),
+                    () -> assertThat(storage.saves).containsExactly(position("3"))
+            );
+        }
+
+        @Test
+        void position_is_not_persisted_when_the_batch_fails() {
+            // Given
+            subscriptionModel = new DurableSubscriptionModel(wrappedSubscriptionModel, storage);
+            subscriptionModel.subscribeBatch("subscription", null, StartAt.now(), batchConfig(10, Duration.ofSeconds(1)), __ -> {
+                throw new IllegalArgumentException("expected");
+            });
+
+            // When
+            Throwable throwable = catchThrowable(() -> wrappedSubscriptionModel.deliverBatch("subscription", cloudEvent("1"), cloudEvent("2")));
+
+            // Then
+            assertAll(
+                    () -> assertThat(throwable).isExactlyInstanceOf(IllegalArgumentException.class),
+                    () -> assertThat(storage.positions).isEmpty()
+            );
+        }
+
+        @Test
+        void position_is_persisted_when_the_predicate_is_fulfilled_for_any_cloud_event_in_the_batch() {
+            // Given
+            subscriptionModel = new DurableSubscriptionModel(wrappedSubscriptionModel, storage, new DurableSubscriptionModelConfig(3));
+            subscriptionModel.subscribeBatch("subscription", null, StartAt.now(), batchConfig(10, Duration.ofSeconds(1)), __ -> {
+            });
+
+            // When
+            wrappedSubscriptionModel.deliverBatch("subscription", cloudEvent("1"), cloudEvent("2"));
+            wrappedSubscriptionModel.deliverBatch("subscription", cloudEvent("3"), cloudEvent("4"));
+
+            // Then
+            assertThat(storage.saves).containsExactly(position("4"));
+        }
+
+        @Test
+        void position_of_the_last_cloud_event_in_the_batch_is_stored_on_stop_when_using_checkpoint_interval() {
+            // Given
+            subscriptionModel = new DurableSubscriptionModel(wrappedSubscriptionModel, storage, new DurableSubscriptionModelConfig(100).checkpointInterval(Duration.ofHours(1)));
+            subscriptionModel.subscribeBatch("subscription", null, StartAt.now(), batchConfig(10, Duration.ofSeconds(1)), __ -> {
+            });
+            wrappedSubscriptionModel.deliverBatch("subscription", cloudEvent("1"), cloudEvent("2"));
+
+            // When
+            subscriptionModel.stop();
+
+            // Then
+            assertThat(storage.positions).containsEntry("subscription", position("2"));
+        }
+    }
+
+    @Nested
+    @DisplayName("cancelSubscription")
+    class CancelSubscription {
+
+        @Test
+        void position_of_cloud_event_that_is_processed_while_the_subscription_is_cancelled_is_not_stored_when_using_checkpoint_interval() throws Exception {
+            // Given
+            subscriptionModel = new DurableSubscriptionModel(wrappedSubscriptionModel, storage, new DurableSubscriptionModelConfig(1).checkpointInterval(Duration.ofMillis(10)));
+            CountDownLatch processing = new CountDownLatch(1);
+            CountDownLatch cancelled = new CountDownLatch(1);
+            subscriptionModel.subscribe("subscription", cloudEvent -> {
+                processing.countDown();
+                awaitUninterruptibly(cancelled);
+            });
+            Thread listenerThread = new Thread(() -> wrappedSubscriptionModel.deliverBatch("subscription", cloudEvent("1")));
+            listenerThread.start();
+            processing.await();
+
+            // When
+            subscriptionModel.cancelSubscription("subscription");
+            cancelled.countDown();
+            listenerThread.join();
+            subscriptionModel.shutdown();
+
+            // Then
+            assertThat(storage.saves).isEmpty();
+        }
+
+        @Test
+        void positions_are_stored_when_a_cancelled_subscription_is_started_again_when_using_checkpoint_interval() {
+            // Given
+            subscriptionModel = new DurableSubscriptionModel(wrappedSubscriptionModel, storage, new DurableSubscriptionModelConfig(1).checkpointInterval(Duration.ofHours(1)));
+            subscriptionModel.subscribe("subscription", __ -> {
+            });
+            subscriptionModel.cancelSubscription("subscription");
+
+            // When
+            subscriptionModel.subscribe("subscription", __ -> {
+            });
+            wrappedSubscriptionModel.deliverBatch("subscription", cloudEvent("1"));
+            subscriptionModel.stop();
+
+            // Then
+            assertThat(storage.positions).containsEntry("subscription", position("1"));
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static CloudEvent cloudEvent(String id) {
+        CloudEvent cloudEvent = CloudEventBuilder.v1().withId(id).withSource(URI.create("urn:test")).withType("type").build();
+        return new PositionAwareCloudEvent(cloudEvent, position(id));
+    }
+
+    private static SubscriptionPosition position(String value) {
+        return new StringBasedSubscriptionPosition(value);
+    }
+
+    /**
+     * A {@link PositionAwareSubscriptionModel} that delivers the cloud events that the test tells it to deliver
+     */
+    private static class StubSubscriptionModel implements PositionAwareSubscriptionModel {
+        private final Map<String, Consumer<List<CloudEvent>>> batchActions = new ConcurrentHashMap<>();
+        private volatile boolean running = true;
+
+        void deliverBatch(String subscriptionId, CloudEvent... cloudEvents) {
+            batchActions.get(subscriptionId).accept(Arrays.asList(cloudEvents));
+        }
+
+        @Override
+        public Subscription subscribeBatch(String subscriptionId, SubscriptionFilter filter, StartAt startAt, BatchConfig batchConfig, Consumer<List<CloudEvent>> action) {
+            batchActions.put(subscriptionId, action);
+            return new StubSubscription(subscriptionId);
+        }
+
+        @Override
+        public Subscription subscribe(String subscriptionId, SubscriptionFilter filter, StartAt startAt, Consumer<CloudEvent> action) {
+            return subscribeBatch(subscriptionId, filter, startAt, batchConfig(1, Duration.ZERO), cloudEvents -> cloudEvents.forEach(action));
+        }
+
+        @Override
+        public SubscriptionPosition globalSubscriptionPosition() {
+            return null;
+        }
+
+        @Override
+        public void stop() {
+            running = false;
+        }
+
+        @Override
+        public void start() {
+            running = true;
+        }
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+
+        @Override
+        public boolean isRunning(String subscriptionId) {
+            return running && batchActions.containsKey(subscriptionId);
+        }
+
+        @Override
+        public boolean isPaused(String subscriptionId) {
+            return false;
+        }
+
+        @Override
+        public Subscription resumeSubscription(String subscriptionId) {
+            return new StubSubscription(subscriptionId);
+        }
+
+        @Override
+        public void pauseSubscription(String subscriptionId) {
+        }
+
+        @Override
+        public void cancelSubscription(String subscriptionId) {
+            batchActions.remove(subscriptionId);
+        }
+    }
+
+    private static class StubSubscription implements Subscription {
+        private final String subscriptionId;
+
+        private StubSubscription(String subscriptionId) {
+            this.subscriptionId = subscriptionId;
+        }
+
+        @Override
+        public String id() {
+            return subscriptionId;
+        }
+
+        @Override
+        public void waitUntilStarted() {
+        }
+
+        @Override
+        public boolean waitUntilStarted(Duration timeout) {
+            return true;
+        }
+    }
+}
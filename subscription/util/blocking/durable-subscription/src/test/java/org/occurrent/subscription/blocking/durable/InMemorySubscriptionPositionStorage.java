@@ -0,0 +1,58 @@
+/*
+ * Copyright 2021 Johan Haleby
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.occurrent.subscription.blocking.durable;
+
+import org.occurrent.subscription.SubscriptionPosition;
+import org.occurrent.subscription.api.blocking.SubscriptionPositionStorage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class InMemorySubscriptionPositionStorage implements SubscriptionPositionStorage {
+    final Map<String, SubscriptionPosition> positions = new ConcurrentHashMap<>();
+    final List<SubscriptionPosition> saves = new CopyOnWriteArrayList<>();
+    final AtomicBoolean fail = new AtomicBoolean();
+
+    @Override
+    public SubscriptionPosition read(String subscriptionId) {
+        return positions.get(subscriptionId);
+    }
+
+    @Override
+    public SubscriptionPosition save(String subscriptionId, SubscriptionPosition subscriptionPosition) {
+        if (fail.get()) {
+            throw new IllegalStateException("expected");
+        }
+        saves.add(subscriptionPosition);
+        positions.put(subscriptionId, subscriptionPosition);
+        return subscriptionPosition;
+    }
+
+    @Override
+    public void delete(String subscriptionId) {
+        positions.remove(subscriptionId);
+    }
+
+    @Override
+    public boolean exists(String subscriptionId) {
+        return positions.containsKey(subscriptionId);
+    }
+}